@@ -175,6 +175,7 @@ CTX.INPUT['catalog'] = """
  database.cpp
  index.cpp
  materializedviewinfo.cpp
+ materializedviewjoin.cpp
  planfragment.cpp
  statement.cpp
  table.cpp
@@ -194,6 +195,9 @@ CTX.INPUT['common'] = """
  SerializableEEException.cpp
  SQLException.cpp
  InterruptException.cpp
+ LargePageAllocator.cpp
+ PlannerDomValue.cpp
+ StringCompressor.cpp
  StringRef.cpp
  tabletuple.cpp
  TupleSchema.cpp
@@ -249,6 +253,7 @@ CTX.INPUT['expressions'] = """
  functionexpression.cpp
  tupleaddressexpression.cpp
  parametervalueexpression.cpp
+ compiledpredicate.cpp
 """
 
 CTX.INPUT['plannodes'] = """
@@ -378,8 +383,10 @@ if whichtests in ("${eetestsuite}", "common"):
      valuearray_test
      nvalue_test
      pool_test
+     large_page_allocator_test
      tabletuple_test
      elastic_hashinator_test
+     hyperloglog_test
     """
 
 if whichtests in ("${eetestsuite}", "execution"):
@@ -387,11 +394,13 @@ if whichtests in ("${eetestsuite}", "execution"):
      add_drop_table
      engine_test
      FragmentManagerTest
+     scan_aggregate_benchmark
     """
 
 if whichtests in ("${eetestsuite}", "expressions"):
     CTX.TESTS['expressions'] = """
      expression_test
+     compiledpredicate_test
     """
 
 if whichtests in ("${eetestsuite}", "indexes"):
@@ -401,11 +410,13 @@ if whichtests in ("${eetestsuite}", "indexes"):
      index_test
      compacting_hash_index
      CompactingTreeMultiIndexTest
+     CompactingBTreeIndexTest
     """
 
 if whichtests in ("${eetestsuite}", "storage"):
     CTX.TESTS['storage'] = """
      CompactionTest
+     CompressedStringTest
      constraint_test
      CopyOnWriteTest
      filter_test
@@ -425,6 +436,7 @@ if whichtests in ("${eetestsuite}", "storage"):
 if whichtests in ("${eetestsuite}", "structures"):
     CTX.TESTS['structures'] = """
      CompactingMapTest
+     CompactingBTreeTest
      CompactingMapIndexCountTest
      CompactingHashTest
      CompactingPoolTest
@@ -440,6 +440,9 @@ public class CatalogDiffEngine {
             if (table.getIsdred()) {
                 return "May not dynamically add, drop, or rename DR table columns.";
             }
+            if (CatalogUtil.isTableInMaterializedViewJoin((Database)table.getParent(), table)) {
+                return "May not dynamically add, drop, or rename the columns of tables joined by a materialized view.";
+            }
             if (changeType == ChangeType.ADDITION) {
                 Column col = (Column) suspect;
                 if ((! col.getNullable()) && (col.getDefaultvalue() == null)) {
@@ -476,7 +479,8 @@ public class CatalogDiffEngine {
             return "May not dynamically add unique indexes that don't cover existing unique indexes.\n";
         }
 
-        else if (suspect instanceof MaterializedViewInfo && ! m_inStrictMatViewDiffMode) {
+        else if ((suspect instanceof MaterializedViewInfo || suspect instanceof MaterializedViewJoin) &&
+                 ! m_inStrictMatViewDiffMode) {
             return null;
         }
 
@@ -611,7 +615,7 @@ public class CatalogDiffEngine {
 
         if (suspect instanceof Systemsettings &&
                 (field.equals("elasticduration") || field.equals("elasticthroughput")
-                        || field.equals("querytimeout"))) {
+                        || field.equals("elasticlatency") || field.equals("querytimeout"))) {
             return null;
         } else {
             m_canOccurWithElasticRebalance = false;
@@ -681,6 +685,10 @@ public class CatalogDiffEngine {
             if (parent instanceof Statement) {
                 return null;
             }
+            // compression is internal to the EE, existing values decompress either way
+            if (field.equals("compressed")) {
+                return null;
+            }
 
             // all table column changes require snapshot isolation for now
             m_requiresSnapshotIsolation = true;
@@ -693,6 +701,9 @@ public class CatalogDiffEngine {
             if (table.getIsdred()) {
                 return "May not dynamically modify DR table columns.";
             }
+            if (CatalogUtil.isTableInMaterializedViewJoin((Database)table.getParent(), table)) {
+                return "May not dynamically modify the columns of tables joined by a materialized view.";
+            }
 
             if (field.equals("index")) {
                 return null;
@@ -759,6 +770,12 @@ public class CatalogDiffEngine {
             }
         }
 
+        // The EE looks up the indexes of a view's joins by name whenever the catalog changes.
+        else if (suspect instanceof MaterializedViewJoin &&
+                 (field.equals("index") || field.equals("sourceIndex"))) {
+            return null;
+        }
+
         else if (isTableLimitDeleteStmt(suspect)) {
             return null;
         }
@@ -0,0 +1,92 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef HYPERLOGLOG_H_
+#define HYPERLOGLOG_H_
+
+#include <stdint.h>
+#include <cmath>
+#include <cstring>
+
+namespace voltdb {
+
+/**
+ * A fixed size HyperLogLog sketch that estimates the number of distinct
+ * 64-bit hashes added to it to within a few percent, using 1KB of
+ * registers no matter how many values it has seen.
+ * Callers are expected to pass well mixed hashes; mix() can be used to
+ * finish a weak hash such as the one produced by NValue::hashCombine.
+ */
+class HyperLogLog {
+public:
+    HyperLogLog()
+    {
+        ::memset(m_registers, 0, sizeof(m_registers));
+    }
+
+    /** 64-bit finalizer from MurmurHash3. */
+    static uint64_t mix(uint64_t hash)
+    {
+        hash ^= hash >> 33;
+        hash *= 0xff51afd7ed558ccdULL;
+        hash ^= hash >> 33;
+        hash *= 0xc4ceb9fe1a85ec53ULL;
+        hash ^= hash >> 33;
+        return hash;
+    }
+
+    void add(uint64_t hash)
+    {
+        const uint32_t bucket = static_cast<uint32_t>(hash >> (64 - PRECISION));
+        // The remaining bits, with a sentinel so the rank is bounded.
+        const uint64_t rest = (hash << PRECISION) | (1ULL << (PRECISION - 1));
+        const uint8_t rank = static_cast<uint8_t>(__builtin_clzll(rest) + 1);
+        if (rank > m_registers[bucket]) {
+            m_registers[bucket] = rank;
+        }
+    }
+
+    int64_t estimate() const
+    {
+        const double m = static_cast<double>(REGISTERS);
+        double sum = 0.0;
+        int zeros = 0;
+        for (int i = 0; i < REGISTERS; ++i) {
+            sum += std::ldexp(1.0, -static_cast<int>(m_registers[i]));
+            if (m_registers[i] == 0) {
+                ++zeros;
+            }
+        }
+        const double alpha = 0.7213 / (1.0 + 1.079 / m);
+        double result = alpha * m * m / sum;
+        if (result <= 2.5 * m && zeros != 0) {
+            // Linear counting is more accurate for small cardinalities.
+            result = m * std::log(m / static_cast<double>(zeros));
+        }
+        return static_cast<int64_t>(result + 0.5);
+    }
+
+private:
+    static const int PRECISION = 10;
+    static const int REGISTERS = 1 << PRECISION;
+
+    uint8_t m_registers[REGISTERS];
+};
+
+}
+
+#endif /* HYPERLOGLOG_H_ */
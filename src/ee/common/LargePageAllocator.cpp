@@ -0,0 +1,317 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "common/LargePageAllocator.h"
+#include "common/FatalException.hpp"
+#include "logging/LogManager.h"
+
+#include <boost/unordered_map.hpp>
+#include <pthread.h>
+#include <sys/mman.h>
+#include <unistd.h>
+#include <errno.h>
+#include <cstdlib>
+#include <cstring>
+#include <string>
+
+#ifdef __linux__
+#include <sys/syscall.h>
+#endif
+
+// Older headers lack the flags; the kernel ignores what it doesn't know.
+#ifdef __linux__
+#ifndef MAP_HUGETLB
+#define MAP_HUGETLB 0x40000
+#endif
+#ifndef MAP_HUGE_SHIFT
+#define MAP_HUGE_SHIFT 26
+#endif
+#ifndef MAP_HUGE_2MB
+#define MAP_HUGE_2MB (21 << MAP_HUGE_SHIFT)
+#endif
+#ifndef MADV_HUGEPAGE
+#define MADV_HUGEPAGE 14
+#endif
+#endif
+
+#ifndef MAP_ANONYMOUS
+#define MAP_ANONYMOUS MAP_ANON
+#endif
+
+namespace voltdb {
+
+const std::size_t LargePageAllocator::HUGE_PAGE_SIZE;
+
+namespace {
+
+enum MappingFlags {
+    MAPPING_HUGETLB = 1,
+    MAPPING_TRANSPARENT = 2,
+    MAPPING_NUMA_LOCAL = 4
+};
+
+struct ThreadState {
+    ThreadState() : hugePageBytes(0), transparentBytes(0), numaLocalBytes(0) {}
+    int64_t hugePageBytes;
+    int64_t transparentBytes;
+    int64_t numaLocalBytes;
+    // Large mappings made by this thread and how they are backed
+    boost::unordered_map<void*, uint8_t> mappings;
+};
+
+pthread_key_t s_stateKey;
+pthread_once_t s_once = PTHREAD_ONCE_INIT;
+volatile int s_policy = LargePageAllocator::POLICY_TRANSPARENT;
+// Set once an attempt to map reserved huge pages fails, so later
+// allocations don't keep paying for a failing system call.
+volatile bool s_hugetlbUnavailable = false;
+
+void deleteThreadState(void *state) {
+    delete static_cast<ThreadState*>(state);
+}
+
+void initialize() {
+    (void)pthread_key_create(&s_stateKey, deleteThreadState);
+    const char *setting = ::getenv("VOLTDB_EE_HUGEPAGES");
+    if (setting == NULL) {
+        return;
+    }
+    std::string value(setting);
+    if (value == "hugetlb") {
+        s_policy = LargePageAllocator::POLICY_HUGETLB;
+    }
+    else if (value == "off") {
+        s_policy = LargePageAllocator::POLICY_OFF;
+    }
+}
+
+ThreadState& threadState() {
+    (void)pthread_once(&s_once, initialize);
+    ThreadState *state = static_cast<ThreadState*>(pthread_getspecific(s_stateKey));
+    if (state == NULL) {
+        state = new ThreadState();
+        pthread_setspecific(s_stateKey, state);
+    }
+    return *state;
+}
+
+inline std::size_t roundToHugePages(std::size_t bytes) {
+    const std::size_t mask = LargePageAllocator::HUGE_PAGE_SIZE - 1;
+    return (bytes + mask) & ~mask;
+}
+
+void* mapReservedHugePages(std::size_t length) {
+#ifdef __linux__
+    void *memory = ::mmap(NULL, length, PROT_READ | PROT_WRITE,
+                          MAP_PRIVATE | MAP_ANONYMOUS | MAP_HUGETLB | MAP_HUGE_2MB, -1, 0);
+    if (memory != MAP_FAILED) {
+        return memory;
+    }
+    if (!s_hugetlbUnavailable) {
+        s_hugetlbUnavailable = true;
+        char message[256];
+        snprintf(message, sizeof(message),
+                 "Unable to map reserved huge pages (%s), falling back to transparent huge pages. "
+                 "Reserve more with vm.nr_hugepages to use them.", strerror(errno));
+        message[sizeof(message) - 1] = '\0';
+        LogManager::getThreadLogger(LOGGERID_HOST)->log(LOGLEVEL_WARN, message);
+    }
+#else
+    (void)length;
+#endif
+    return NULL;
+}
+
+/**
+ * Map length bytes starting on a huge page boundary, which transparent
+ * huge pages require, by over-mapping and trimming both ends.
+ */
+void* mapAligned(std::size_t length) {
+    const std::size_t padded = length + LargePageAllocator::HUGE_PAGE_SIZE;
+    char *raw = static_cast<char*>(::mmap(NULL, padded, PROT_READ | PROT_WRITE,
+                                          MAP_PRIVATE | MAP_ANONYMOUS, -1, 0));
+    if (raw == MAP_FAILED) {
+        return NULL;
+    }
+    const uintptr_t address = reinterpret_cast<uintptr_t>(raw);
+    const uintptr_t aligned = (address + LargePageAllocator::HUGE_PAGE_SIZE - 1) &
+        ~static_cast<uintptr_t>(LargePageAllocator::HUGE_PAGE_SIZE - 1);
+    const std::size_t head = aligned - address;
+    const std::size_t tail = padded - head - length;
+    if (head > 0) {
+        ::munmap(raw, head);
+    }
+    if (tail > 0) {
+        ::munmap(raw + head + length, tail);
+    }
+    char *memory = raw + head;
+#ifdef __linux__
+    // Advisory only; kernels built without THP return EINVAL.
+    (void)::madvise(memory, length, MADV_HUGEPAGE);
+#endif
+    return memory;
+}
+
+/** Prefer the given NUMA node for the pages of a mapping not yet touched */
+bool bindToNode(void *memory, std::size_t length, int32_t node) {
+#if defined(__linux__) && defined(SYS_mbind)
+    const int MPOL_PREFERRED = 1;
+    unsigned long nodeMask[1];
+    const int32_t maskBits = static_cast<int32_t>(sizeof(nodeMask) * 8);
+    if (node < 0 || node >= maskBits) {
+        return false;
+    }
+    nodeMask[0] = 1UL << node;
+    return ::syscall(SYS_mbind, memory, length, MPOL_PREFERRED, nodeMask,
+                     static_cast<unsigned long>(maskBits), 0) == 0;
+#else
+    (void)memory;
+    (void)length;
+    (void)node;
+    return false;
+#endif
+}
+
+}
+
+LargePageAllocator::Policy LargePageAllocator::policy() {
+    (void)pthread_once(&s_once, initialize);
+    return static_cast<Policy>(s_policy);
+}
+
+void LargePageAllocator::setPolicy(Policy policy) {
+    (void)pthread_once(&s_once, initialize);
+    s_policy = policy;
+    s_hugetlbUnavailable = false;
+}
+
+bool LargePageAllocator::usesLargePages(std::size_t bytes) {
+#ifdef MEMCHECK
+    (void)bytes;
+    return false;
+#else
+    return bytes >= HUGE_PAGE_SIZE / 2;
+#endif
+}
+
+std::size_t LargePageAllocator::allocationSize(std::size_t bytes) {
+    return usesLargePages(bytes) ? roundToHugePages(bytes) : bytes;
+}
+
+void* LargePageAllocator::allocate(std::size_t bytes) {
+    if (!usesLargePages(bytes)) {
+        void *memory = ::malloc(bytes);
+        if (memory == NULL) {
+            throwFatalException("Failed to allocate %lu bytes", static_cast<unsigned long>(bytes));
+        }
+        return memory;
+    }
+
+    ThreadState &state = threadState();
+    const std::size_t length = roundToHugePages(bytes);
+    const Policy currentPolicy = policy();
+    uint8_t flags = 0;
+    void *memory = NULL;
+    if (currentPolicy == POLICY_OFF) {
+        memory = ::mmap(NULL, length, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS, -1, 0);
+        if (memory == MAP_FAILED) {
+            memory = NULL;
+        }
+    }
+    else {
+        if (currentPolicy == POLICY_HUGETLB && !s_hugetlbUnavailable) {
+            memory = mapReservedHugePages(length);
+            if (memory != NULL) {
+                flags |= MAPPING_HUGETLB;
+                state.hugePageBytes += length;
+            }
+        }
+        if (memory == NULL) {
+            memory = mapAligned(length);
+            if (memory != NULL) {
+                flags |= MAPPING_TRANSPARENT;
+                state.transparentBytes += length;
+            }
+        }
+        if (memory != NULL && bindToNode(memory, length, currentNumaNode())) {
+            flags |= MAPPING_NUMA_LOCAL;
+            state.numaLocalBytes += length;
+        }
+    }
+    if (memory == NULL) {
+        throwFatalException("Failed to map %lu bytes: %s",
+                            static_cast<unsigned long>(length), strerror(errno));
+    }
+    state.mappings[memory] = flags;
+    return memory;
+}
+
+void LargePageAllocator::deallocate(void* memory, std::size_t bytes) {
+    if (memory == NULL) {
+        return;
+    }
+    if (!usesLargePages(bytes)) {
+        ::free(memory);
+        return;
+    }
+
+    const std::size_t length = roundToHugePages(bytes);
+    ThreadState &state = threadState();
+    boost::unordered_map<void*, uint8_t>::iterator iter = state.mappings.find(memory);
+    // Mappings freed by a thread other than the one that made them are
+    // simply not accounted for.
+    if (iter != state.mappings.end()) {
+        if (iter->second & MAPPING_HUGETLB) {
+            state.hugePageBytes -= length;
+        }
+        if (iter->second & MAPPING_TRANSPARENT) {
+            state.transparentBytes -= length;
+        }
+        if (iter->second & MAPPING_NUMA_LOCAL) {
+            state.numaLocalBytes -= length;
+        }
+        state.mappings.erase(iter);
+    }
+    if (::munmap(memory, length) != 0) {
+        throwFatalException("Failed munmap: %s", strerror(errno));
+    }
+}
+
+int64_t LargePageAllocator::getHugePageBytes() {
+    return threadState().hugePageBytes;
+}
+
+int64_t LargePageAllocator::getTransparentHugePageBytes() {
+    return threadState().transparentBytes;
+}
+
+int64_t LargePageAllocator::getNumaLocalBytes() {
+    return threadState().numaLocalBytes;
+}
+
+int32_t LargePageAllocator::currentNumaNode() {
+#if defined(__linux__) && defined(SYS_getcpu)
+    unsigned cpu = 0;
+    unsigned node = 0;
+    if (::syscall(SYS_getcpu, &cpu, &node, NULL) == 0) {
+        return static_cast<int32_t>(node);
+    }
+#endif
+    return -1;
+}
+
+}
@@ -0,0 +1,92 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef LARGEPAGEALLOCATOR_H_
+#define LARGEPAGEALLOCATOR_H_
+
+#include <cstddef>
+#include <stdint.h>
+
+namespace voltdb {
+
+/**
+ * Allocates the big, long lived buffers behind tuple blocks and index
+ * node pools.
+ *
+ * Buffers of at least half a huge page are rounded up to whole 2MB huge
+ * pages and mapped directly, so the TLB covers a large table with few
+ * entries. Depending on the policy they are backed by pages reserved
+ * through hugetlbfs (MAP_HUGETLB) or by ordinary pages aligned to 2MB and
+ * advised for transparent huge pages. Either way they are bound to the
+ * NUMA node of the CPU the allocating site thread runs on, which is the
+ * node the site was pinned to. Smaller buffers come from the heap, where
+ * first touch by the pinned site thread already places them locally.
+ *
+ * Everything degrades quietly: when no huge pages are reserved the
+ * transparent path is used, and when the kernel has no NUMA support the
+ * memory is simply left unbound.
+ *
+ * The policy is read once from the VOLTDB_EE_HUGEPAGES environment
+ * variable: "hugetlb" to try reserved huge pages first, "off" for plain
+ * unadvised, unbound mappings, anything else for the transparent default.
+ *
+ * Allocation counts are kept per thread, i.e. per site, and reported by
+ * @Statistics MEMORY.
+ */
+class LargePageAllocator {
+public:
+    enum Policy {
+        POLICY_OFF,
+        POLICY_TRANSPARENT,
+        POLICY_HUGETLB
+    };
+
+    static const std::size_t HUGE_PAGE_SIZE = 2 * 1024 * 1024;
+
+    /** Return at least bytes of memory. Throws a FatalException when out of memory. */
+    static void* allocate(std::size_t bytes);
+
+    /** Release memory from allocate(). bytes must match the allocation. */
+    static void deallocate(void* memory, std::size_t bytes);
+
+    /** Bytes of address space an allocation of the given size really takes */
+    static std::size_t allocationSize(std::size_t bytes);
+
+    /** Would an allocation of this size be mapped in huge pages? */
+    static bool usesLargePages(std::size_t bytes);
+
+    static Policy policy();
+
+    /** Override the policy read from the environment. For tests. */
+    static void setPolicy(Policy policy);
+
+    /** Bytes this thread holds in reserved (hugetlbfs) huge pages */
+    static int64_t getHugePageBytes();
+
+    /** Bytes this thread holds in 2MB aligned mappings advised for transparent huge pages */
+    static int64_t getTransparentHugePageBytes();
+
+    /** Bytes of this thread's large mappings bound to its local NUMA node */
+    static int64_t getNumaLocalBytes();
+
+    /** NUMA node of the CPU this thread is running on, or -1 if unknown */
+    static int32_t currentNumaNode();
+};
+
+}
+
+#endif /* LARGEPAGEALLOCATOR_H_ */
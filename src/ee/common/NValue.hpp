@@ -38,6 +38,7 @@
 #include "common/FatalException.hpp"
 #include "common/Pool.hpp"
 #include "common/SQLException.h"
+#include "common/StringCompressor.h"
 #include "common/StringRef.h"
 #include "common/ThreadLocalPool.h"
 #include "common/debuglog.h"
@@ -2568,6 +2569,12 @@ inline NValue NValue::initFromTupleStorage(const void *storage, ValueType type,
             retval.tagAsNull();
             break;
         }
+        // Values of compressed columns are expanded into the temp string
+        // pool only when something actually looks at them.
+        if (sref->isCompressed()) {
+            sref = StringCompressor::decompress(sref, getTempStringPool());
+            *reinterpret_cast<StringRef**>(retval.m_data) = sref;
+        }
 
         // Cache the object length in the NValue.
 
@@ -0,0 +1,290 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "common/PlannerDomValue.h"
+
+#include <cstring>
+#include <map>
+#include <vector>
+
+namespace voltdb {
+
+namespace {
+
+// Value tags of the binary plan format. These must match BinaryPlanWriter.java.
+enum BinaryPlanTag {
+    TAG_NULL = 0,
+    TAG_FALSE = 1,
+    TAG_TRUE = 2,
+    TAG_INT = 3,        // zig-zag varint
+    TAG_DOUBLE = 4,     // 8 bytes, big endian IEEE 754
+    TAG_STRING = 5,     // varint byte length, UTF-8 bytes
+    TAG_ARRAY = 6,      // values, then TAG_END
+    TAG_OBJECT = 7,     // (varint key index + 1, value) pairs, then a 0
+    TAG_END = 8
+};
+
+void throwBadPlan(const char *what) {
+    char msg[1024];
+    snprintf(msg, 1024, "PlannerDomValue: binary plan is %s", what);
+    throw SerializableEEException(VOLT_EE_EXCEPTION_TYPE_EEEXCEPTION, msg);
+}
+
+class BinaryPlanReader {
+public:
+    BinaryPlanReader(const char *plan, size_t length, rapidjson::Document::AllocatorType &allocator)
+        : m_pos(plan), m_end(plan + length), m_allocator(allocator)
+    {}
+
+    void readHeader() {
+        readByte();
+        if (readByte() != PlannerDomRoot::BINARY_PLAN_VERSION) {
+            throwBadPlan("of an unsupported version");
+        }
+        uint64_t keyCount = readVarint();
+        m_keys.reserve(static_cast<size_t>(keyCount));
+        for (uint64_t ii = 0; ii < keyCount; ++ii) {
+            rapidjson::SizeType length = readLength();
+            // Copy each key once; every member naming it then refers to the copy.
+            char *key = static_cast<char*>(m_allocator.Malloc(length + 1));
+            ::memcpy(key, m_pos, length);
+            key[length] = '\0';
+            m_pos += length;
+            m_keys.push_back(std::make_pair(key, length));
+        }
+    }
+
+    void readValue(rapidjson::Value &value) {
+        readValue(readByte(), value);
+    }
+
+    bool atEnd() const {
+        return m_pos == m_end;
+    }
+
+private:
+    void readValue(int8_t tag, rapidjson::Value &value) {
+        switch (tag) {
+        case TAG_NULL:
+            value.SetNull();
+            break;
+        case TAG_FALSE:
+            value.SetBool(false);
+            break;
+        case TAG_TRUE:
+            value.SetBool(true);
+            break;
+        case TAG_INT: {
+            uint64_t zigzag = readVarint();
+            value.SetInt64(static_cast<int64_t>(zigzag >> 1) ^ -static_cast<int64_t>(zigzag & 1));
+            break;
+        }
+        case TAG_DOUBLE: {
+            need(8);
+            uint64_t bits = 0;
+            for (int ii = 0; ii < 8; ++ii) {
+                bits = (bits << 8) | static_cast<uint8_t>(m_pos[ii]);
+            }
+            m_pos += 8;
+            double d;
+            ::memcpy(&d, &bits, sizeof(d));
+            value.SetDouble(d);
+            break;
+        }
+        case TAG_STRING: {
+            rapidjson::SizeType length = readLength();
+            value.SetString(m_pos, length, m_allocator);
+            m_pos += length;
+            break;
+        }
+        case TAG_ARRAY: {
+            value.SetArray();
+            int8_t elementTag;
+            while ((elementTag = readByte()) != TAG_END) {
+                rapidjson::Value element;
+                readValue(elementTag, element);
+                value.PushBack(element, m_allocator);
+            }
+            break;
+        }
+        case TAG_OBJECT: {
+            value.SetObject();
+            uint64_t keyIndex;
+            while ((keyIndex = readVarint()) != 0) {
+                if (keyIndex > m_keys.size()) {
+                    throwBadPlan("referring to an unknown key");
+                }
+                const std::pair<const char*, rapidjson::SizeType> &key = m_keys[keyIndex - 1];
+                rapidjson::Value name(key.first, key.second);
+                rapidjson::Value member;
+                readValue(member);
+                value.AddMember(name, member, m_allocator);
+            }
+            break;
+        }
+        default:
+            throwBadPlan("corrupt");
+        }
+    }
+
+    void need(size_t bytes) {
+        if (static_cast<size_t>(m_end - m_pos) < bytes) {
+            throwBadPlan("truncated");
+        }
+    }
+
+    int8_t readByte() {
+        need(1);
+        return *m_pos++;
+    }
+
+    uint64_t readVarint() {
+        uint64_t result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            uint8_t b = static_cast<uint8_t>(readByte());
+            result |= static_cast<uint64_t>(b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throwBadPlan("corrupt");
+        return 0;
+    }
+
+    rapidjson::SizeType readLength() {
+        uint64_t length = readVarint();
+        need(static_cast<size_t>(length));
+        return static_cast<rapidjson::SizeType>(length);
+    }
+
+    const char *m_pos;
+    const char *m_end;
+    rapidjson::Document::AllocatorType &m_allocator;
+    std::vector<std::pair<const char*, rapidjson::SizeType> > m_keys;
+};
+
+class BinaryPlanWriter {
+public:
+    std::string finish() {
+        std::string header;
+        header.push_back(PlannerDomRoot::BINARY_PLAN_MAGIC);
+        header.push_back(PlannerDomRoot::BINARY_PLAN_VERSION);
+        writeVarint(header, m_keyOrder.size());
+        for (std::vector<std::string>::const_iterator key = m_keyOrder.begin();
+             key != m_keyOrder.end(); ++key) {
+            writeVarint(header, key->size());
+            header.append(*key);
+        }
+        return header + m_body;
+    }
+
+    void writeValue(const rapidjson::Value &value) {
+        switch (value.GetType()) {
+        case rapidjson::kNullType:
+            m_body.push_back(TAG_NULL);
+            break;
+        case rapidjson::kFalseType:
+            m_body.push_back(TAG_FALSE);
+            break;
+        case rapidjson::kTrueType:
+            m_body.push_back(TAG_TRUE);
+            break;
+        case rapidjson::kNumberType:
+            if (value.IsInt64()) {
+                int64_t i = value.GetInt64();
+                m_body.push_back(TAG_INT);
+                writeVarint(m_body, (static_cast<uint64_t>(i) << 1) ^ static_cast<uint64_t>(i >> 63));
+            }
+            else {
+                double d = value.IsUint64() ? static_cast<double>(value.GetUint64()) : value.GetDouble();
+                uint64_t bits;
+                ::memcpy(&bits, &d, sizeof(bits));
+                m_body.push_back(TAG_DOUBLE);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    m_body.push_back(static_cast<char>(bits >> shift));
+                }
+            }
+            break;
+        case rapidjson::kStringType:
+            m_body.push_back(TAG_STRING);
+            writeVarint(m_body, value.GetStringLength());
+            m_body.append(value.GetString(), value.GetStringLength());
+            break;
+        case rapidjson::kArrayType:
+            m_body.push_back(TAG_ARRAY);
+            for (rapidjson::Value::ConstValueIterator element = value.Begin();
+                 element != value.End(); ++element) {
+                writeValue(*element);
+            }
+            m_body.push_back(TAG_END);
+            break;
+        case rapidjson::kObjectType:
+            m_body.push_back(TAG_OBJECT);
+            for (rapidjson::Value::ConstMemberIterator member = value.MemberBegin();
+                 member != value.MemberEnd(); ++member) {
+                writeVarint(m_body, keyIndex(member->name) + 1);
+                writeValue(member->value);
+            }
+            writeVarint(m_body, 0);
+            break;
+        }
+    }
+
+private:
+    size_t keyIndex(const rapidjson::Value &name) {
+        std::string key(name.GetString(), name.GetStringLength());
+        std::map<std::string, size_t>::const_iterator found = m_keyIndexes.find(key);
+        if (found != m_keyIndexes.end()) {
+            return found->second;
+        }
+        size_t index = m_keyOrder.size();
+        m_keyIndexes[key] = index;
+        m_keyOrder.push_back(key);
+        return index;
+    }
+
+    static void writeVarint(std::string &out, uint64_t value) {
+        while (value >= 0x80) {
+            out.push_back(static_cast<char>((value & 0x7f) | 0x80));
+            value >>= 7;
+        }
+        out.push_back(static_cast<char>(value));
+    }
+
+    std::string m_body;
+    std::map<std::string, size_t> m_keyIndexes;
+    std::vector<std::string> m_keyOrder;
+};
+
+} // namespace
+
+void PlannerDomRoot::decodeBinaryPlan(const char *plan, size_t length) {
+    BinaryPlanReader reader(plan, length, m_document.GetAllocator());
+    reader.readHeader();
+    reader.readValue(m_document);
+    if ( ! reader.atEnd()) {
+        throwBadPlan("followed by unexpected bytes");
+    }
+}
+
+std::string PlannerDomRoot::toBinaryPlan() const {
+    BinaryPlanWriter writer;
+    writer.writeValue(m_document);
+    return writer.finish();
+}
+
+} // namespace voltdb
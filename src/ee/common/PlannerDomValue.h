@@ -26,6 +26,7 @@
 #include <cstdlib>
 #include <climits>
 #include <inttypes.h>
+#include <string>
 
 namespace voltdb {
 
@@ -166,6 +167,12 @@ namespace voltdb {
      * Also owns the memory, as it's sole member var is not a reference, but a value.
      * This means if you're still using the DOM when this object gets popped off the
      * stack, bad things might happen. Best to use the DOM and be done with it.
+     *
+     * Plans may also arrive in the binary encoding written by the Java
+     * BinaryPlanWriter: a zero byte (which can never start JSON text), a
+     * version byte, a table of the distinct keys and then the tagged values,
+     * objects referring to their keys by index. It decodes straight into the
+     * same DOM, so everything reading a PlannerDomValue works with either.
      */
     class PlannerDomRoot {
     public:
@@ -173,6 +180,19 @@ namespace voltdb {
             m_document.Parse<0>(jsonStr);
         }
 
+        /**
+         * Accepts either encoding. JSON text must still be null terminated,
+         * as it is in a std::string.
+         */
+        PlannerDomRoot(const char *plan, size_t length) {
+            if (isBinaryPlan(plan, length)) {
+                decodeBinaryPlan(plan, length);
+            }
+            else {
+                m_document.Parse<0>(plan);
+            }
+        }
+
         bool isNull() {
             return m_document.IsNull();
         }
@@ -181,7 +201,21 @@ namespace voltdb {
             return PlannerDomValue(m_document);
         }
 
+        /** Encode the document in the binary plan format */
+        std::string toBinaryPlan() const;
+
+        static bool isBinaryPlan(const char *plan, size_t length) {
+            return length >= 2 && plan[0] == BINARY_PLAN_MAGIC;
+        }
+
+        enum {
+            BINARY_PLAN_MAGIC = 0,
+            BINARY_PLAN_VERSION = 1
+        };
+
     private:
+        void decodeBinaryPlan(const char *plan, size_t length);
+
         rapidjson::Document m_document;
     };
 }
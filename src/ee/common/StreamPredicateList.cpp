@@ -34,7 +34,8 @@ namespace voltdb
 bool StreamPredicateList::parseStrings(
         const std::vector<std::string> &predicateStrings,
         std::ostringstream& errmsg,
-        std::vector<bool> &predicateDeletes)
+        std::vector<bool> &predicateDeletes,
+        std::vector<bool> *predicateDeletedRows)
 {
     bool failed = false;
     for (std::vector<std::string>::const_iterator iter = predicateStrings.begin();
@@ -48,6 +49,10 @@ bool StreamPredicateList::parseStrings(
                     PlannerDomValue predicateObject = domRoot.rootObject();
 
                     predicateDeletes.push_back(predicateObject.valueForKey("triggersDelete").asBool());
+                    if (predicateDeletedRows != NULL) {
+                        predicateDeletedRows->push_back(predicateObject.hasKey("deletedRows") &&
+                                                        predicateObject.valueForKey("deletedRows").asBool());
+                    }
 
                     AbstractExpression *expr = NULL;
                     if (predicateObject.hasKey("predicateExpression")) {
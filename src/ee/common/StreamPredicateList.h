@@ -45,10 +45,16 @@ public:
     virtual ~StreamPredicateList()
     {}
 
-    /** Parse expression strings and add generated predicate objects to list. */
+    /**
+     * Parse expression strings and add generated predicate objects to list.
+     * If predicateDeletedRowFlags is provided it receives, for each JSON
+     * predicate, whether its stream wants the rows deleted since the previous
+     * incremental snapshot instead of the table rows.
+     */
     bool parseStrings(const std::vector<std::string> &predicateStrings,
                       std::ostringstream& errmsg,
-                      std::vector<bool> &predicateDeleteFlags);
+                      std::vector<bool> &predicateDeleteFlags,
+                      std::vector<bool> *predicateDeletedRowFlags = NULL);
 };
 
 } // namespace voltdb
@@ -0,0 +1,442 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "StringCompressor.h"
+
+#include "StringRef.h"
+#include "FatalException.hpp"
+
+#include <boost/unordered_map.hpp>
+#include <boost/unordered_set.hpp>
+
+#include <algorithm>
+#include <cassert>
+#include <cstring>
+
+using namespace voltdb;
+using namespace std;
+
+namespace {
+
+/**
+ * Written at the start of the memory of every compressed StringRef.
+ */
+struct CompressedHeader {
+    StringCompressor* owner;
+    int32_t uncompressedLength;
+    int32_t compressedLength;
+    // 0 if the value was compressed before the dictionary was trained
+    int32_t dictionaryLength;
+};
+
+const int32_t MIN_MATCH = 4;
+const int32_t MAX_OFFSET = 65535;
+const int32_t RUN_MASK = 15;
+const int32_t SKIP_TRIGGER = 6;
+
+// Segments and k-mers used to score dictionary candidates
+const size_t SEGMENT_LENGTH = 64;
+const size_t KMER_LENGTH = 8;
+
+inline uint32_t read32(const char* p) {
+    uint32_t value;
+    ::memcpy(&value, p, sizeof(value));
+    return value;
+}
+
+inline uint32_t hashSequence(uint32_t sequence) {
+    return (sequence * 2654435761U) >> (32 - StringCompressor::HASH_LOG);
+}
+
+inline char* writeLength(char* op, int32_t length) {
+    while (length >= 255) {
+        *op++ = static_cast<char>(255);
+        length -= 255;
+    }
+    *op++ = static_cast<char>(length);
+    return op;
+}
+
+inline char* writeLiterals(char* op, char* token, const char* literals, int32_t literalLength) {
+    if (literalLength >= RUN_MASK) {
+        *token = static_cast<char>(RUN_MASK << 4);
+        op = writeLength(op, literalLength - RUN_MASK);
+    }
+    else {
+        *token = static_cast<char>(literalLength << 4);
+    }
+    ::memcpy(op, literals, literalLength);
+    return op + literalLength;
+}
+
+inline char* writeSequence(char* op, const char* literals, int32_t literalLength,
+                           int32_t offset, int32_t matchLength) {
+    char* token = op++;
+    op = writeLiterals(op, token, literals, literalLength);
+    *op++ = static_cast<char>(offset & 0xff);
+    *op++ = static_cast<char>((offset >> 8) & 0xff);
+    int32_t extraLength = matchLength - MIN_MATCH;
+    if (extraLength >= RUN_MASK) {
+        *token = static_cast<char>(*token | RUN_MASK);
+        op = writeLength(op, extraLength - RUN_MASK);
+    }
+    else {
+        *token = static_cast<char>(*token | extraLength);
+    }
+    return op;
+}
+
+/**
+ * Read an extended length. Return false if the block ends first.
+ */
+inline bool readLength(const unsigned char* &ip, const unsigned char* iend, int32_t &length) {
+    unsigned char byte;
+    do {
+        if (ip >= iend) {
+            return false;
+        }
+        byte = *ip++;
+        length += byte;
+    } while (byte == 255);
+    return true;
+}
+
+inline CompressedHeader readHeader(const StringRef* sref) {
+    assert(sref->isCompressed());
+    CompressedHeader header;
+    ::memcpy(&header, sref->get(), sizeof(header));
+    return header;
+}
+
+struct SegmentScore {
+    int64_t score;
+    size_t sample;
+    size_t offset;
+    size_t length;
+
+    bool operator<(const SegmentScore &other) const {
+        return score > other.score;
+    }
+};
+
+}
+
+StringCompressor::StringCompressor()
+    : m_sampledBytes(0), m_uncompressedBytes(0), m_compressedBytes(0)
+{
+}
+
+StringCompressor::~StringCompressor()
+{
+}
+
+void StringCompressor::sample(const char* data, int32_t length)
+{
+    int32_t sampleLength = std::min(length, static_cast<int32_t>(MAX_SAMPLE_LENGTH));
+    m_samples.push_back(string(data, sampleLength));
+    m_sampledBytes += sampleLength;
+    if (m_samples.size() < TRAINING_SAMPLE_COUNT && m_sampledBytes < TRAINING_SAMPLE_BYTES) {
+        return;
+    }
+
+    m_dictionary = trainDictionary(m_samples, MAX_DICTIONARY_LENGTH);
+    if (!m_dictionary.empty()) {
+        m_dictionaryTable.resize(HASH_SIZE);
+        buildDictionaryTable(m_dictionary.data(), static_cast<int32_t>(m_dictionary.size()),
+                             &m_dictionaryTable[0]);
+    }
+    // Training happens once. Samples that produced no dictionary mean the
+    // values have nothing in common worth remembering.
+    vector<string>().swap(m_samples);
+    m_sampledBytes = TRAINING_SAMPLE_BYTES;
+}
+
+StringRef* StringCompressor::compress(const char* data, int32_t length)
+{
+    if (length < MIN_COMPRESSIBLE_LENGTH) {
+        return NULL;
+    }
+    if (m_dictionary.empty() && m_sampledBytes < TRAINING_SAMPLE_BYTES) {
+        sample(data, length);
+    }
+
+    const int32_t dictionaryLength = static_cast<int32_t>(m_dictionary.size());
+    vector<char> block(compressBound(length));
+    const int32_t compressedLength =
+        compressBlock(m_dictionary.data(), dictionaryLength,
+                      dictionaryLength > 0 ? &m_dictionaryTable[0] : NULL,
+                      data, length, &block[0]);
+    const int32_t storedLength = static_cast<int32_t>(sizeof(CompressedHeader)) + compressedLength;
+    if (storedLength >= length) {
+        return NULL;
+    }
+
+    CompressedHeader header;
+    header.owner = this;
+    header.uncompressedLength = length;
+    header.compressedLength = compressedLength;
+    header.dictionaryLength = dictionaryLength;
+
+    StringRef* sref = StringRef::create(storedLength, NULL);
+    sref->m_compressed = true;
+    ::memcpy(sref->get(), &header, sizeof(header));
+    ::memcpy(sref->get() + sizeof(header), &block[0], compressedLength);
+
+    m_uncompressedBytes += length;
+    m_compressedBytes += storedLength;
+    return sref;
+}
+
+StringRef* StringCompressor::decompress(const StringRef* sref, Pool* pool)
+{
+    StringRef* result = StringRef::create(getUncompressedLength(sref), pool);
+    decompressInto(sref, result->get());
+    return result;
+}
+
+void StringCompressor::decompressInto(const StringRef* sref, char* buffer)
+{
+    const CompressedHeader header = readHeader(sref);
+    const int32_t length =
+        decompressBlock(header.owner->m_dictionary.data(), header.dictionaryLength,
+                        sref->get() + sizeof(header), header.compressedLength,
+                        buffer, header.uncompressedLength);
+    if (length != header.uncompressedLength) {
+        throwFatalException("Compressed string value is corrupt: expected %d bytes, decoded %d",
+                            header.uncompressedLength, length);
+    }
+}
+
+int32_t StringCompressor::getUncompressedLength(const StringRef* sref)
+{
+    return readHeader(sref).uncompressedLength;
+}
+
+int32_t StringCompressor::getStoredLength(const StringRef* sref)
+{
+    return static_cast<int32_t>(sizeof(CompressedHeader)) + readHeader(sref).compressedLength;
+}
+
+void StringCompressor::release(const StringRef* sref)
+{
+    const CompressedHeader header = readHeader(sref);
+    header.owner->m_uncompressedBytes -= header.uncompressedLength;
+    header.owner->m_compressedBytes -= sizeof(CompressedHeader) + header.compressedLength;
+}
+
+int32_t StringCompressor::compressBound(int32_t length)
+{
+    return length + (length / 255) + 16;
+}
+
+void StringCompressor::buildDictionaryTable(const char* dictionary, int32_t dictionaryLength,
+                                            uint16_t* dictionaryTable)
+{
+    assert(dictionaryLength < MAX_OFFSET);
+    // Positions are stored plus one so that zero means empty. Later
+    // positions overwrite earlier ones since they are closer to the input.
+    std::fill(dictionaryTable, dictionaryTable + HASH_SIZE, 0);
+    for (int32_t pos = 0; pos + MIN_MATCH <= dictionaryLength; ++pos) {
+        dictionaryTable[hashSequence(read32(dictionary + pos))] = static_cast<uint16_t>(pos + 1);
+    }
+}
+
+int32_t StringCompressor::compressBlock(const char* dictionary, int32_t dictionaryLength,
+                                        const uint16_t* dictionaryTable,
+                                        const char* source, int32_t sourceLength,
+                                        char* dest)
+{
+    int32_t table[HASH_SIZE];
+    std::fill(table, table + HASH_SIZE, -1);
+
+    char* op = dest;
+    int32_t anchor = 0;
+    int32_t pos = 0;
+    int32_t misses = 0;
+    while (pos + MIN_MATCH <= sourceLength) {
+        const uint32_t sequence = read32(source + pos);
+        const uint32_t hash = hashSequence(sequence);
+        const int32_t candidate = table[hash];
+        table[hash] = pos;
+
+        int32_t matchLength = 0;
+        int32_t offset = 0;
+        if (candidate >= 0 && pos - candidate <= MAX_OFFSET &&
+            read32(source + candidate) == sequence) {
+            matchLength = MIN_MATCH;
+            while (pos + matchLength < sourceLength &&
+                   source[candidate + matchLength] == source[pos + matchLength]) {
+                ++matchLength;
+            }
+            offset = pos - candidate;
+        }
+        else if (dictionaryTable != NULL && dictionaryTable[hash] != 0) {
+            const int32_t dictionaryPos = dictionaryTable[hash] - 1;
+            const int32_t distance = pos + dictionaryLength - dictionaryPos;
+            if (distance <= MAX_OFFSET && read32(dictionary + dictionaryPos) == sequence) {
+                // Dictionary matches stop at the end of the dictionary
+                // rather than running on into the input.
+                matchLength = MIN_MATCH;
+                while (dictionaryPos + matchLength < dictionaryLength &&
+                       pos + matchLength < sourceLength &&
+                       dictionary[dictionaryPos + matchLength] == source[pos + matchLength]) {
+                    ++matchLength;
+                }
+                offset = distance;
+            }
+        }
+
+        if (matchLength == 0) {
+            // Step faster through data that is not compressing.
+            pos += 1 + (misses++ >> SKIP_TRIGGER);
+            continue;
+        }
+        misses = 0;
+        op = writeSequence(op, source + anchor, pos - anchor, offset, matchLength);
+        pos += matchLength;
+        anchor = pos;
+    }
+
+    // The block always ends with a literals-only sequence, possibly empty.
+    char* token = op++;
+    op = writeLiterals(op, token, source + anchor, sourceLength - anchor);
+    return static_cast<int32_t>(op - dest);
+}
+
+int32_t StringCompressor::decompressBlock(const char* dictionary, int32_t dictionaryLength,
+                                          const char* source, int32_t sourceLength,
+                                          char* dest, int32_t destLength)
+{
+    const unsigned char* ip = reinterpret_cast<const unsigned char*>(source);
+    const unsigned char* const iend = ip + sourceLength;
+    int32_t op = 0;
+    while (ip < iend) {
+        const unsigned char token = *ip++;
+
+        int32_t literalLength = token >> 4;
+        if (literalLength == RUN_MASK && !readLength(ip, iend, literalLength)) {
+            return -1;
+        }
+        if (literalLength > iend - ip || literalLength > destLength - op) {
+            return -1;
+        }
+        ::memcpy(dest + op, ip, literalLength);
+        ip += literalLength;
+        op += literalLength;
+        if (ip == iend) {
+            break;
+        }
+
+        if (iend - ip < 2) {
+            return -1;
+        }
+        const int32_t offset = ip[0] | (ip[1] << 8);
+        ip += 2;
+        int32_t matchLength = token & RUN_MASK;
+        if (matchLength == RUN_MASK && !readLength(ip, iend, matchLength)) {
+            return -1;
+        }
+        matchLength += MIN_MATCH;
+        if (offset == 0 || offset > op + dictionaryLength || matchLength > destLength - op) {
+            return -1;
+        }
+
+        if (offset > op) {
+            // The match starts in the dictionary.
+            const int32_t dictionaryPos = dictionaryLength - (offset - op);
+            const int32_t fromDictionary = std::min(matchLength, dictionaryLength - dictionaryPos);
+            ::memcpy(dest + op, dictionary + dictionaryPos, fromDictionary);
+            op += fromDictionary;
+            matchLength -= fromDictionary;
+        }
+        const char* match = dest + op - offset;
+        if (offset >= matchLength) {
+            ::memcpy(dest + op, match, matchLength);
+        }
+        else {
+            // Overlapping copy repeats the last offset bytes.
+            for (int32_t ii = 0; ii < matchLength; ++ii) {
+                dest[op + ii] = match[ii];
+            }
+        }
+        op += matchLength;
+    }
+    return op;
+}
+
+string StringCompressor::trainDictionary(const vector<string> &samples, int32_t maxLength)
+{
+    // Count the samples each k-mer appears in. A k-mer seen in many
+    // samples is likely to be seen in later values too.
+    typedef boost::unordered_map<string, pair<int32_t, size_t> > KmerCounts;
+    KmerCounts counts;
+    for (size_t ii = 0; ii < samples.size(); ++ii) {
+        const string &sample = samples[ii];
+        for (size_t pos = 0; pos + KMER_LENGTH <= sample.size(); ++pos) {
+            pair<int32_t, size_t> &count = counts[sample.substr(pos, KMER_LENGTH)];
+            if (count.first == 0 || count.second != ii) {
+                ++count.first;
+                count.second = ii;
+            }
+        }
+    }
+
+    // Score each segment of each sample by how widely its k-mers are shared.
+    vector<SegmentScore> segments;
+    for (size_t ii = 0; ii < samples.size(); ++ii) {
+        const string &sample = samples[ii];
+        for (size_t offset = 0; offset < sample.size(); offset += SEGMENT_LENGTH) {
+            SegmentScore segment;
+            segment.score = 0;
+            segment.sample = ii;
+            segment.offset = offset;
+            segment.length = std::min(SEGMENT_LENGTH, sample.size() - offset);
+            for (size_t pos = offset;
+                 pos < offset + segment.length && pos + KMER_LENGTH <= sample.size();
+                 ++pos) {
+                segment.score += counts[sample.substr(pos, KMER_LENGTH)].first - 1;
+            }
+            if (segment.score > 0) {
+                segments.push_back(segment);
+            }
+        }
+    }
+    std::stable_sort(segments.begin(), segments.end());
+
+    vector<string> chosen;
+    boost::unordered_set<string> seen;
+    int32_t length = 0;
+    for (vector<SegmentScore>::const_iterator it = segments.begin(); it != segments.end(); ++it) {
+        if (length + static_cast<int32_t>(it->length) > maxLength) {
+            continue;
+        }
+        string segment = samples[it->sample].substr(it->offset, it->length);
+        if (!seen.insert(segment).second) {
+            continue;
+        }
+        length += static_cast<int32_t>(segment.size());
+        chosen.push_back(segment);
+    }
+
+    // The most valuable segments go last, nearest the data being compressed.
+    string dictionary;
+    dictionary.reserve(length);
+    for (vector<string>::reverse_iterator it = chosen.rbegin(); it != chosen.rend(); ++it) {
+        dictionary += *it;
+    }
+    return dictionary;
+}
@@ -0,0 +1,141 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef STRINGCOMPRESSOR_H
+#define STRINGCOMPRESSOR_H
+
+#include <stdint.h>
+#include <string>
+#include <vector>
+
+namespace voltdb
+{
+    class Pool;
+    class StringRef;
+
+    /**
+     * Compresses the out-of-line values of one VARCHAR or VARBINARY
+     * column of a persistent table.
+     *
+     * The first values handed to a compressor are sampled to train a
+     * dictionary of the substrings they have in common (JSON keys, URL
+     * prefixes and the like). Later values are compressed with an LZ77
+     * codec that may refer back into that dictionary, so even values
+     * with little internal redundancy shrink well.
+     *
+     * A compressed value is a StringRef flagged as compressed whose
+     * memory holds a small header followed by the compressed block. The
+     * header points back at the compressor that wrote it, so the value
+     * can be decompressed without knowing the table or column it came
+     * from. The compressor must therefore outlive every value it has
+     * compressed, which the owning PersistentTable guarantees.
+     */
+    class StringCompressor
+    {
+    public:
+        StringCompressor();
+        ~StringCompressor();
+
+        /**
+         * Return a compressed copy, allocated from the persistent string
+         * pool, of the length prefixed object representation in
+         * [data, data + length). Return NULL if compression would not
+         * save any memory.
+         */
+        StringRef* compress(const char* data, int32_t length);
+
+        /**
+         * Decompress a value into a new StringRef allocated from the
+         * given (temporary) pool.
+         */
+        static StringRef* decompress(const StringRef* sref, Pool* pool);
+
+        /**
+         * Decompress a value into the buffer provided, which must be at
+         * least getUncompressedLength(sref) bytes long.
+         */
+        static void decompressInto(const StringRef* sref, char* buffer);
+
+        /** Length of the object representation before compression */
+        static int32_t getUncompressedLength(const StringRef* sref);
+
+        /** Bytes of string memory a compressed value actually occupies */
+        static int32_t getStoredLength(const StringRef* sref);
+
+        /**
+         * Account for a compressed value about to be freed. Called by
+         * StringRef::destroy.
+         */
+        static void release(const StringRef* sref);
+
+        /** Bytes the values compressed by this compressor would occupy uncompressed */
+        int64_t getUncompressedBytes() const { return m_uncompressedBytes; }
+
+        /** Bytes the values compressed by this compressor occupy */
+        int64_t getCompressedBytes() const { return m_compressedBytes; }
+
+        bool hasDictionary() const { return !m_dictionary.empty(); }
+
+        /*
+         * The raw block codec, exposed for tests. Blocks are sequences
+         * of LZ4 style (token, literals, offset, match length) records.
+         * Matches may reach back into the dictionary as if it immediately
+         * preceded the input.
+         */
+        static int32_t compressBound(int32_t length);
+        static int32_t compressBlock(const char* dictionary, int32_t dictionaryLength,
+                                     const uint16_t* dictionaryTable,
+                                     const char* source, int32_t sourceLength,
+                                     char* dest);
+        static int32_t decompressBlock(const char* dictionary, int32_t dictionaryLength,
+                                       const char* source, int32_t sourceLength,
+                                       char* dest, int32_t destLength);
+        static void buildDictionaryTable(const char* dictionary, int32_t dictionaryLength,
+                                         uint16_t* dictionaryTable);
+
+        /**
+         * Pick the substrings shared most widely by the samples and
+         * concatenate them into a dictionary of at most maxLength bytes.
+         */
+        static std::string trainDictionary(const std::vector<std::string> &samples,
+                                           int32_t maxLength);
+
+        enum {
+            HASH_LOG = 12,
+            HASH_SIZE = 1 << HASH_LOG,
+            MAX_DICTIONARY_LENGTH = 32 * 1024,
+            // Values sampled before a dictionary is trained
+            TRAINING_SAMPLE_COUNT = 128,
+            TRAINING_SAMPLE_BYTES = 128 * 1024,
+            MAX_SAMPLE_LENGTH = 4 * 1024,
+            // Shorter values are not worth the header
+            MIN_COMPRESSIBLE_LENGTH = 32
+        };
+
+    private:
+        void sample(const char* data, int32_t length);
+
+        std::string m_dictionary;
+        std::vector<uint16_t> m_dictionaryTable;
+        std::vector<std::string> m_samples;
+        int32_t m_sampledBytes;
+        int64_t m_uncompressedBytes;
+        int64_t m_compressedBytes;
+    };
+}
+
+#endif // STRINGCOMPRESSOR_H
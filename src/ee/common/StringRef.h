@@ -40,6 +40,7 @@ namespace voltdb
         static std::size_t computeStringMemoryUsed(std::size_t length);
 
         friend class CompactingStringPool;
+        friend class StringCompressor;
         /// Create and return a new StringRef object which points to an
         /// allocated memory block of the requested size.  The caller
         /// may provide an optional Pool from which the memory (and
@@ -59,6 +60,11 @@ namespace voltdb
         char* get();
         const char* get() const;
 
+        /// True if the memory behind this StringRef holds a value
+        /// compressed by a StringCompressor rather than the length
+        /// prefixed object itself.
+        bool isCompressed() const { return m_compressed; }
+
     private:
         StringRef(std::size_t size);
         StringRef(std::size_t size, Pool* dataPool);
@@ -72,6 +78,7 @@ namespace voltdb
 
         std::size_t m_size;
         bool m_tempPool;
+        bool m_compressed;
         char* m_stringPtr;
     };
 }
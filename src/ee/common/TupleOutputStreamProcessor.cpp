@@ -50,6 +50,7 @@ void TupleOutputStreamProcessor::clearState()
 {
     m_maxTupleLength = 0;
     m_predicates = NULL;
+    m_predicateDeletedRows = NULL;
     m_table = NULL;
 }
 
@@ -66,7 +67,8 @@ void TupleOutputStreamProcessor::open(PersistentTable &table,
                                       std::size_t maxTupleLength,
                                       int32_t partitionId,
                                       StreamPredicateList &predicates,
-                                      std::vector<bool> &predicateDeletes)
+                                      std::vector<bool> &predicateDeletes,
+                                      std::vector<bool> *predicateDeletedRows)
 {
     m_table = &table;
     m_maxTupleLength = maxTupleLength;
@@ -77,6 +79,7 @@ void TupleOutputStreamProcessor::open(PersistentTable &table,
     }
     m_predicates = &predicates;
     m_predicateDeletes = &predicateDeletes;
+    m_predicateDeletedRows = predicateDeletedRows;
     for (TupleOutputStreamProcessor::iterator iter = begin(); iter != end(); ++iter) {
         iter->startRows(partitionId);
     }
@@ -99,6 +102,25 @@ void TupleOutputStreamProcessor::close()
 bool TupleOutputStreamProcessor::writeRow(TupleSerializer &tupleSerializer,
                                           TableTuple &tuple,
                                           bool *deleteRow)
+{
+    return writeRowToStreams(tupleSerializer, tuple, false, deleteRow);
+}
+
+/**
+ * Write a deleted row to the streams that asked for deleted rows.
+ * Expects buffer space was already checked.
+ * Returns true when the caller should yield to allow other work to proceed.
+ */
+bool TupleOutputStreamProcessor::writeDeletedRow(TupleSerializer &tupleSerializer,
+                                                 TableTuple &tuple)
+{
+    return writeRowToStreams(tupleSerializer, tuple, true, NULL);
+}
+
+bool TupleOutputStreamProcessor::writeRowToStreams(TupleSerializer &tupleSerializer,
+                                                   TableTuple &tuple,
+                                                   bool deletedRow,
+                                                   bool *deleteRow)
 {
     if (m_table == NULL) {
         throwFatalException("TupleOutputStreamProcessor::writeRow() was called before open().");
@@ -115,7 +137,20 @@ bool TupleOutputStreamProcessor::writeRow(TupleSerializer &tupleSerializer,
     }
 
     bool yield = false;
-    for (TupleOutputStreamProcessor::iterator iter = begin(); iter != end(); ++iter) {
+    std::size_t streamIndex = 0;
+    for (TupleOutputStreamProcessor::iterator iter = begin(); iter != end(); ++iter, ++streamIndex) {
+        // Table rows and deleted rows go to separate streams.
+        bool deletedRowStream = (   m_predicateDeletedRows != NULL
+                                 && streamIndex < m_predicateDeletedRows->size()
+                                 && (*m_predicateDeletedRows)[streamIndex]);
+        if (deletedRowStream != deletedRow) {
+            if (!m_predicates->empty()) {
+                ++ipredicate;
+                ++iDeleteFlag;
+            }
+            continue;
+        }
+
         // Get approval from corresponding output stream predicate, if provided.
         bool accepted = true;
         if (!m_predicates->empty()) {
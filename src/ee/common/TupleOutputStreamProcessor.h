@@ -53,7 +53,8 @@ public:
               std::size_t maxTupleLength,
               int32_t partitionId,
               StreamPredicateList &predicates,
-              std::vector<bool> &predicateDeletes);
+              std::vector<bool> &predicateDeletes,
+              std::vector<bool> *predicateDeletedRows = NULL);
 
     /** Stop serializing. */
     void close();
@@ -68,6 +69,14 @@ public:
                   TableTuple &tuple,
                   bool *deleteRow = NULL);
 
+    /**
+     * Write a row deleted since the previous incremental snapshot. Only the
+     * streams whose predicate asked for deleted rows get it, writeRow() skips
+     * those streams.
+     * Returns true when the caller should yield to allow other work to proceed.
+     */
+    bool writeDeletedRow(TupleSerializer &tupleSerializer, TableTuple &tuple);
+
 private:
 
     /** The maximum tuple length. */
@@ -85,6 +94,15 @@ private:
     /** Vector of booleans that indicates whether the predicate return true means the row should be deleted */
     std::vector<bool> *m_predicateDeletes;
 
+    /** Vector of booleans that indicates whether the stream gets deleted rows. May be NULL. */
+    std::vector<bool> *m_predicateDeletedRows;
+
+    /** Write a tuple to the table row streams or to the deleted row streams. */
+    bool writeRowToStreams(TupleSerializer &tupleSerializer,
+                           TableTuple &tuple,
+                           bool deletedRow,
+                           bool *deleteRow);
+
     /** Private method used by constructors, etc. to clear state. */
     void clearState();
 };
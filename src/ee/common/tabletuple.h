@@ -53,6 +53,8 @@
 #include "common/FatalException.hpp"
 #include "common/ExportSerializeIo.h"
 
+#include "boost/scoped_array.hpp"
+
 #include <cassert>
 #include <ostream>
 #include <iostream>
@@ -209,12 +211,19 @@ public:
                 if (((columnType == VALUE_TYPE_VARCHAR) || (columnType == VALUE_TYPE_VARBINARY)) &&
                     !columnInfo->inlined)
                 {
-                    const NValue val = getNValue(i);
-                    if (!val.isNull())
-                    {
+                    const StringRef* sref =
+                        *reinterpret_cast<StringRef* const*>(getDataPtr(columnInfo));
+                    if (sref == NULL) {
+                        continue;
+                    }
+                    if (sref->isCompressed()) {
                         bytes += StringRef::computeStringMemoryUsed(
-                                (ValuePeeker::peekObjectLength_withoutNull(val)));
+                                StringCompressor::getStoredLength(sref));
+                        continue;
                     }
+                    const NValue val = getNValue(i);
+                    bytes += StringRef::computeStringMemoryUsed(
+                            (ValuePeeker::peekObjectLength_withoutNull(val)));
                 }
             }
         }
@@ -272,6 +281,11 @@ public:
 
     /** Is the column value null? */
     inline bool isNull(const int idx) const {
+        const TupleSchema::ColumnInfo *columnInfo = m_schema->getColumnInfo(idx);
+        if (!columnInfo->inlined) {
+            // Checking the StringRef directly avoids expanding compressed values
+            return *reinterpret_cast<StringRef* const*>(getDataPtr(columnInfo)) == NULL;
+        }
         return getNValue(idx).isNull();
     }
 
@@ -334,6 +348,8 @@ public:
     size_t hashCode() const;
 
 private:
+    static void serializeCompressedObjectTo(const StringRef* sref, voltdb::SerializeOutput &output);
+
     inline void setActiveTrue() {
         // treat the first "value" as a boolean flag
         *(reinterpret_cast<char*> (m_data)) |= static_cast<char>(ACTIVE_MASK);
@@ -750,6 +766,16 @@ inline void TableTuple::serializeTo(voltdb::SerializeOutput &output) {
 
     for (int j = 0; j < m_schema->columnCount(); ++j) {
         //int fieldStart = output.position();
+        const TupleSchema::ColumnInfo *columnInfo = m_schema->getColumnInfo(j);
+        if (!columnInfo->inlined) {
+            // Stream compressed values without parking a decompressed
+            // copy of each one in the temp string pool.
+            const StringRef* sref = *reinterpret_cast<StringRef* const*>(getDataPtr(columnInfo));
+            if (sref != NULL && sref->isCompressed()) {
+                serializeCompressedObjectTo(sref, output);
+                continue;
+            }
+        }
         NValue value = getNValue(j);
         value.serializeTo(output);
     }
@@ -758,6 +784,19 @@ inline void TableTuple::serializeTo(voltdb::SerializeOutput &output) {
     output.writeIntAt(start, static_cast<int32_t>(output.position() - start - sizeof(int32_t)));
 }
 
+inline void TableTuple::serializeCompressedObjectTo(const StringRef* sref,
+                                                    voltdb::SerializeOutput &output) {
+    const int32_t length = StringCompressor::getUncompressedLength(sref);
+    boost::scoped_array<char> buffer(new char[length]);
+    StringCompressor::decompressInto(sref, buffer.get());
+    // Same wire format as NValue::serializeTo: a 4-byte length and the
+    // bytes, without the in-memory length prefix.
+    const int32_t lengthLength = ((buffer[0] & OBJECT_CONTINUATION_BIT) != 0) ?
+            LONG_OBJECT_LENGTHLENGTH : SHORT_OBJECT_LENGTHLENGTH;
+    output.writeInt(length - lengthLength);
+    output.writeBytes(buffer.get() + lengthLength, length - lengthLength);
+}
+
 inline
 void
 TableTuple::serializeToExport(ExportSerializeOutput &io,
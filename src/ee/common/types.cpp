@@ -185,6 +185,12 @@ std::string tableStreamTypeToString(TableStreamType type) {
       case TABLE_STREAM_ELASTIC_INDEX_CLEAR: {
           return "TABLE_STREAM_ELASTIC_INDEX_CLEAR";
       }
+      case TABLE_STREAM_SNAPSHOT_BASE: {
+          return "TABLE_STREAM_SNAPSHOT_BASE";
+      }
+      case TABLE_STREAM_SNAPSHOT_DELTA: {
+          return "TABLE_STREAM_SNAPSHOT_DELTA";
+      }
       case TABLE_STREAM_RECOVERY: {
           return "TABLE_STREAM_RECOVERY";
       }
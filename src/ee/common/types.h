@@ -324,6 +324,7 @@ enum ExpressionType {
 enum TableIndexType {
     BALANCED_TREE_INDEX     = 1,
     HASH_TABLE_INDEX        = 2,
+    BTREE_INDEX             = 3,
 };
 
 // ------------------------------------------------------------------
@@ -364,6 +365,12 @@ enum TableStreamType {
     // was used for TABLE_STREAM_ELASTIC_INDEX_READ.
     TABLE_STREAM_ELASTIC_INDEX_CLEAR,
 
+    // Incremental snapshots. A base snapshot streams the whole table and
+    // starts tracking changes, a delta streams what changed since the
+    // previous base or delta.
+    TABLE_STREAM_SNAPSHOT_BASE,
+    TABLE_STREAM_SNAPSHOT_DELTA,
+
     // Table stream types that don't use predicates.
     // Add new non-predicate types below TABLE_STREAM_RECOVERY so
     // that tableStreamTypeHasPredicates() doesn't have to change.
@@ -385,14 +392,18 @@ enum TableStreamSerializationError {
 inline bool tableStreamTypeHasPredicates(TableStreamType streamType) {
     return streamType == TABLE_STREAM_SNAPSHOT
         || streamType == TABLE_STREAM_ELASTIC_INDEX
-        || streamType == TABLE_STREAM_ELASTIC_INDEX_READ;
+        || streamType == TABLE_STREAM_ELASTIC_INDEX_READ
+        || streamType == TABLE_STREAM_SNAPSHOT_BASE
+        || streamType == TABLE_STREAM_SNAPSHOT_DELTA;
 }
 
 /**
  * Return true if the table stream type is performing a snapshot.
  */
 inline bool tableStreamTypeIsSnapshot(TableStreamType streamType) {
-    return streamType == TABLE_STREAM_SNAPSHOT;
+    return streamType == TABLE_STREAM_SNAPSHOT
+        || streamType == TABLE_STREAM_SNAPSHOT_BASE
+        || streamType == TABLE_STREAM_SNAPSHOT_DELTA;
 }
 
 /**
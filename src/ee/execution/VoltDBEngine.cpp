@@ -62,6 +62,7 @@
 #include "common/FailureInjection.h"
 #include "common/FatalException.hpp"
 #include "common/LegacyHashinator.h"
+#include "common/PlannerDomValue.h"
 #include "common/InterruptException.h"
 #include "common/RecoveryProtoMessage.h"
 #include "common/SerializableEEException.h"
@@ -116,6 +117,7 @@ typedef std::pair<std::string, CatalogDelegate*> LabeledCD;
 typedef std::pair<std::string, catalog::Column*> LabeledColumn;
 typedef std::pair<std::string, catalog::Index*> LabeledIndex;
 typedef std::pair<std::string, catalog::Table*> LabeledTable;
+typedef std::pair<CatalogId, Table*> TableIdPair;
 typedef std::pair<std::string, catalog::MaterializedViewInfo*> LabeledView;
 
 /**
@@ -139,8 +141,14 @@ public:
         }
         catch (...) {
             char msg[1024 * 100];
-            snprintf(msg, 1024 * 100, "Unable to initialize PlanNodeFragment for PlanFragment '%jd' with plan:\n%s",
-                     (intmax_t)fragId, jsonPlan.c_str());
+            if (PlannerDomRoot::isBinaryPlan(jsonPlan.c_str(), jsonPlan.size())) {
+                snprintf(msg, 1024 * 100, "Unable to initialize PlanNodeFragment for PlanFragment '%jd' with %d byte binary plan",
+                         (intmax_t)fragId, (int)jsonPlan.size());
+            }
+            else {
+                snprintf(msg, 1024 * 100, "Unable to initialize PlanNodeFragment for PlanFragment '%jd' with plan:\n%s",
+                         (intmax_t)fragId, jsonPlan.c_str());
+            }
             VOLT_ERROR("%s", msg);
             throw SerializableEEException(VOLT_EE_EXCEPTION_TYPE_EEEXCEPTION, msg);
         }
@@ -366,6 +374,8 @@ VoltDBEngine::VoltDBEngine(Topend *topend, LogProxy *logProxy)
       m_currentUndoQuantum(NULL),
       m_hashinator(NULL),
       m_staticParams(MAX_PARAM_COUNT),
+      m_tableWriteEpochs(NULL),
+      m_tableWriteEpochCapacity(0),
       m_pfCount(0),
       m_currentInputDepId(-1),
       m_stringPool(16777216, 2),
@@ -1049,6 +1059,10 @@ VoltDBEngine::processCatalogAdditions(int64_t timestamp)
                 continue;
             }
 
+            // Columns can start or stop being compressed without a rebuild;
+            // values already stored keep their current form.
+            persistenttable->setCompressedColumns(TableCatalogDelegate::getCompressedColumns(*catalogTable));
+
             //
             // Same schema, but TUPLE_LIMIT may change.
             // Because there is no table rebuilt work next, no special need to take care of
@@ -1322,6 +1336,8 @@ void VoltDBEngine::rebuildTableCollections()
             }
         }
     }
+
+    bindTableWriteEpochs();
 }
 
 ExecutorVector *VoltDBEngine::getExecutorVectorForFragmentId(const int64_t fragId)
@@ -1436,6 +1452,32 @@ void VoltDBEngine::setBuffers(char *parameterBuffer, int parameterBuffercapacity
     m_exceptionBufferCapacity = exceptionBufferCapacity;
 }
 
+void VoltDBEngine::setTableWriteEpochBuffer(char *epochBuffer, int epochBufferCapacity) {
+    m_tableWriteEpochs = reinterpret_cast<int64_t*>(epochBuffer);
+    m_tableWriteEpochCapacity = epochBufferCapacity / static_cast<int>(sizeof(int64_t));
+    bindTableWriteEpochs();
+}
+
+/*
+ * Point every persistent table at its slot of the write epoch buffer.
+ * Tables without a slot keep counting privately, java only caches
+ * results of procedures whose tables all have one.
+ */
+void VoltDBEngine::bindTableWriteEpochs()
+{
+    BOOST_FOREACH (TableIdPair tablePair, m_tables) {
+        PersistentTable *table = dynamic_cast<PersistentTable*>(tablePair.second);
+        if (table == NULL) {
+            continue;
+        }
+        if (tablePair.first < m_tableWriteEpochCapacity) {
+            table->setWriteEpoch(&m_tableWriteEpochs[tablePair.first]);
+        } else {
+            table->setWriteEpoch(NULL);
+        }
+    }
+}
+
 // -------------------------------------------------
 // MISC FUNCTIONS
 // -------------------------------------------------
@@ -1537,7 +1579,8 @@ int VoltDBEngine::getStats(int selector, int locators[], int numLocators,
         case STATISTICS_SELECTOR_TYPE_INDEX:
             for (int ii = 0; ii < numLocators; ii++) {
                 CatalogId locator = static_cast<CatalogId>(locators[ii]);
-                if ( ! getTable(locator)) {
+                Table *table = getTable(locator);
+                if ( ! table) {
                     char message[256];
                     snprintf(message, 256,  "getStats() called with selector %d, and"
                             " an invalid locator %d that does not correspond to"
@@ -1545,6 +1588,8 @@ int VoltDBEngine::getStats(int selector, int locators[], int numLocators,
                     throw SerializableEEException(VOLT_EE_EXCEPTION_TYPE_EEEXCEPTION,
                                                   message);
                 }
+                // Bring the planner's key statistics up to date before reporting them.
+                IndexStats::refreshKeyStatistics(table, now);
             }
 
             resultTable = m_statsManager.getStats(
@@ -1919,7 +1964,8 @@ void VoltDBEngine::applyBinaryLog(int64_t txnId,
                                   int64_t lastCommittedSpHandle,
                                   int64_t uniqueId,
                                   int64_t undoToken,
-                                  const char *log) {
+                                  const char *log,
+                                  bool checksumsVerified) {
     setUndoToken(undoToken);
     m_executorContext->setupForPlanFragments(getCurrentUndoQuantum(),
                                              txnId,
@@ -1927,7 +1973,7 @@ void VoltDBEngine::applyBinaryLog(int64_t txnId,
                                              lastCommittedSpHandle,
                                              uniqueId);
 
-    m_binaryLogSink.apply(log, m_tablesBySignatureHash, &m_stringPool, this);
+    m_binaryLogSink.apply(log, m_tablesBySignatureHash, &m_stringPool, this, checksumsVerified);
 }
 
 void VoltDBEngine::executeTask(TaskType taskType, const char* taskParams) {
@@ -199,6 +199,7 @@ class __attribute__((visibility("default"))) VoltDBEngine {
         void setBuffers(char *parameter_buffer, int m_parameterBuffercapacity,
                 char *resultBuffer, int resultBufferCapacity,
                 char *exceptionBuffer, int exceptionBufferCapacity);
+        void setTableWriteEpochBuffer(char *epochBuffer, int epochBufferCapacity);
         const char* getParameterBuffer() const { return m_parameterBuffer; }
         /** Returns the size of buffer for passing parameters to EE. */
         int getParameterBufferCapacity() const { return m_parameterBufferCapacity; }
@@ -372,7 +373,8 @@ class __attribute__((visibility("default"))) VoltDBEngine {
                             int64_t lastCommittedSpHandle,
                             int64_t uniqueId,
                             int64_t undoToken,
-                            const char *log);
+                            const char *log,
+                            bool checksumsVerified);
 
         /*
          * Execute an arbitrary task represented by the task id and serialized parameters.
@@ -409,6 +411,7 @@ class __attribute__((visibility("default"))) VoltDBEngine {
         // -------------------------------------------------
         void processCatalogDeletes(int64_t timestamp);
         void initMaterializedViewsAndLimitDeletePlans();
+        void bindTableWriteEpochs();
         bool updateCatalogDatabaseReference();
 
         /**
@@ -529,6 +532,11 @@ class __attribute__((visibility("default"))) VoltDBEngine {
         /** size of reused_result_buffer. */
         int m_reusedResultCapacity;
 
+        /** write epoch of each table by catalog relative index, shared with java. */
+        int64_t* m_tableWriteEpochs;
+        /** number of epochs in m_tableWriteEpochs. */
+        int m_tableWriteEpochCapacity;
+
         // arrays to hold fragment ids and dep ids from java
         // n.b. these are 8k each, should be boost shared arrays?
         int64_t m_batchFragmentIdsContainer[MAX_BATCH_COUNT];
@@ -46,10 +46,12 @@
 #include "executors/aggregateexecutor.h"
 
 #include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
 #include "common/common.h"
 #include "common/debuglog.h"
 #include "common/SerializableEEException.h"
 #include "expressions/abstractexpression.h"
+#include "expressions/tuplevalueexpression.h"
 #include "plannodes/aggregatenode.h"
 #include "plannodes/limitnode.h"
 #include "storage/temptable.h"
@@ -59,6 +61,7 @@
 #include "boost/unordered_map.hpp"
 
 #include <algorithm>
+#include <cmath>
 #include <limits>
 #include <set>
 #include <stdint.h>
@@ -78,6 +81,8 @@ typedef boost::unordered_set<NValue,
  * It is specified as a parameter class that determines the type of the ifDistinct data member.
  */
 struct Distinct : public AggregateNValueSetType {
+    static const bool excludesRepeats = true;
+
     bool excludeValue(const NValue& val)
     {
         // find this value in the set.  If it doesn't exist, add
@@ -99,6 +104,8 @@ struct Distinct : public AggregateNValueSetType {
  * It is specified as a parameter class that determines the type of the ifDistinct data member.
  */
 struct NotDistinct {
+    static const bool excludesRepeats = false;
+
     void clear() { }
     bool excludeValue(const NValue& val)
     {
@@ -106,12 +113,153 @@ struct NotDistinct {
     }
 };
 
+/*
+ * Loops over the storage of a fixed width column in each of a batch of rows,
+ * for aggregates to take the batch as a whole with the results of advancing
+ * over the rows one at a time.
+ */
+template<typename T>
+inline T columnValue(const char* row, uint32_t offset)
+{
+    return *reinterpret_cast<const T*>(row + TUPLE_HEADER_SIZE + offset);
+}
+
+inline bool isNullColumnValue(int8_t value) { return value == INT8_NULL; }
+inline bool isNullColumnValue(int16_t value) { return value == INT16_NULL; }
+inline bool isNullColumnValue(int32_t value) { return value == INT32_NULL; }
+inline bool isNullColumnValue(int64_t value) { return value == INT64_NULL; }
+inline bool isNullColumnValue(double value) { return value <= DOUBLE_NULL; }
+
+/* Compare as NValue does, which for doubles means NaNs are equal and less than anything else */
+template<typename T>
+inline int compareColumnValues(T lhs, T rhs)
+{
+    return lhs > rhs ? VALUE_COMPARE_GREATERTHAN : lhs < rhs ? VALUE_COMPARE_LESSTHAN : VALUE_COMPARE_EQUAL;
+}
+
+template<>
+inline int compareColumnValues<double>(double lhs, double rhs)
+{
+    if (std::isnan(lhs)) {
+        return std::isnan(rhs) ? VALUE_COMPARE_EQUAL : VALUE_COMPARE_LESSTHAN;
+    }
+    if (std::isnan(rhs)) {
+        return VALUE_COMPARE_GREATERTHAN;
+    }
+    return lhs > rhs ? VALUE_COMPARE_GREATERTHAN : lhs < rhs ? VALUE_COMPARE_LESSTHAN : VALUE_COMPARE_EQUAL;
+}
+
+template<typename T>
+int64_t countColumn(char* const* rows, int count, uint32_t offset)
+{
+    int64_t nonNull = 0;
+    for (int ii = 0; ii < count; ii++) {
+        if (!isNullColumnValue(columnValue<T>(rows[ii], offset))) {
+            ++nonNull;
+        }
+    }
+    return nonNull;
+}
+
+/*
+ * Returns false where op_add would throw, on overflow, or would make the sum
+ * NULL, when it comes to INT64_NULL.
+ */
+template<typename T>
+bool sumIntegerColumn(char* const* rows, int count, uint32_t offset, int64_t& sum, bool& haveValue)
+{
+    for (int ii = 0; ii < count; ii++) {
+        const T value = columnValue<T>(rows[ii], offset);
+        if (isNullColumnValue(value)) {
+            continue;
+        }
+        if (!haveValue) {
+            sum = value;
+            haveValue = true;
+            continue;
+        }
+        if (value > 0 ? sum > std::numeric_limits<int64_t>::max() - value
+                      : sum < std::numeric_limits<int64_t>::min() - value) {
+            return false;
+        }
+        sum += value;
+        if (sum == INT64_NULL) {
+            return false;
+        }
+    }
+    return true;
+}
+
+/* Returns false where op_add would throw, on a sum that is infinite or NaN */
+inline bool sumDoubleColumn(char* const* rows, int count, uint32_t offset, double& sum, bool& haveValue)
+{
+    for (int ii = 0; ii < count; ii++) {
+        const double value = columnValue<double>(rows[ii], offset);
+        if (isNullColumnValue(value)) {
+            continue;
+        }
+        if (!haveValue) {
+            sum = value;
+            haveValue = true;
+            continue;
+        }
+        sum += value;
+        if (std::isnan(sum) || std::isinf(sum)) {
+            return false;
+        }
+    }
+    return true;
+}
+
+/*
+ * The row whose value op_max (or op_min) would end up with, -1 if they are all NULL.
+ * Of equal values, that is the last one.
+ */
+template<typename T, bool IS_MAX>
+int extremeRowOfColumn(char* const* rows, int count, uint32_t offset)
+{
+    int extremeRow = -1;
+    T extreme = T();
+    for (int ii = 0; ii < count; ii++) {
+        const T value = columnValue<T>(rows[ii], offset);
+        if (isNullColumnValue(value)) {
+            continue;
+        }
+        const int cmp = compareColumnValues(extreme, value);
+        if (extremeRow < 0 || (IS_MAX ? cmp <= 0 : cmp >= 0)) {
+            extremeRow = ii;
+            extreme = value;
+        }
+    }
+    return extremeRow;
+}
+
+template<bool IS_MAX>
+int extremeRowInBatch(const TupleSchema* schema, char* const* rows, int count, int column)
+{
+    const uint32_t offset = schema->getColumnInfo(column)->offset;
+    switch (schema->columnType(column)) {
+    case VALUE_TYPE_TINYINT:
+        return extremeRowOfColumn<int8_t, IS_MAX>(rows, count, offset);
+    case VALUE_TYPE_SMALLINT:
+        return extremeRowOfColumn<int16_t, IS_MAX>(rows, count, offset);
+    case VALUE_TYPE_INTEGER:
+        return extremeRowOfColumn<int32_t, IS_MAX>(rows, count, offset);
+    case VALUE_TYPE_BIGINT:
+    case VALUE_TYPE_TIMESTAMP:
+        return extremeRowOfColumn<int64_t, IS_MAX>(rows, count, offset);
+    default:
+        assert(schema->columnType(column) == VALUE_TYPE_DOUBLE);
+        return extremeRowOfColumn<double, IS_MAX>(rows, count, offset);
+    }
+}
+
 // Parameter D is either Distinct of NotDistinct.
 template<class D>
 class SumAgg : public Agg
 {
   public:
-    SumAgg() {}
+    SumAgg() : m_batchHaveAdvanced(false) {}
 
     virtual void advance(const NValue& val)
     {
@@ -133,8 +281,60 @@ class SumAgg : public Agg
         return Agg::finalize(type);
     }
 
+    virtual bool prepareBatch(TableTuple &tuple, char *const *rows, int count, int column)
+    {
+        if (D::excludesRepeats || (m_haveAdvanced && m_value.isNull())) {
+            return false;
+        }
+        const TupleSchema* schema = tuple.getSchema();
+        const uint32_t offset = schema->getColumnInfo(column)->offset;
+        const ValueType type = schema->columnType(column);
+        m_batchHaveAdvanced = m_haveAdvanced;
+        if (type == VALUE_TYPE_DOUBLE) {
+            double sum = m_haveAdvanced ? ValuePeeker::peekDouble(m_value) : 0;
+            if (!sumDoubleColumn(rows, count, offset, sum, m_batchHaveAdvanced)) {
+                return false;
+            }
+            m_batchValue = ValueFactory::getDoubleValue(sum);
+            return true;
+        }
+        int64_t sum = m_haveAdvanced ? ValuePeeker::peekAsRawInt64(m_value) : 0;
+        bool summed;
+        switch (type) {
+        case VALUE_TYPE_TINYINT:
+            summed = sumIntegerColumn<int8_t>(rows, count, offset, sum, m_batchHaveAdvanced);
+            break;
+        case VALUE_TYPE_SMALLINT:
+            summed = sumIntegerColumn<int16_t>(rows, count, offset, sum, m_batchHaveAdvanced);
+            break;
+        case VALUE_TYPE_INTEGER:
+            summed = sumIntegerColumn<int32_t>(rows, count, offset, sum, m_batchHaveAdvanced);
+            break;
+        case VALUE_TYPE_BIGINT:
+            summed = sumIntegerColumn<int64_t>(rows, count, offset, sum, m_batchHaveAdvanced);
+            break;
+        default:
+            return false;
+        }
+        if (!summed) {
+            return false;
+        }
+        m_batchValue = ValueFactory::getBigIntValue(sum);
+        return true;
+    }
+
+    virtual void applyBatch()
+    {
+        if (m_batchHaveAdvanced) {
+            m_value = m_batchValue;
+            m_haveAdvanced = true;
+        }
+    }
+
 private:
     D ifDistinct;
+    NValue m_batchValue;
+    bool m_batchHaveAdvanced;
 };
 
 
@@ -187,7 +387,7 @@ template<class D>
 class CountAgg : public Agg
 {
 public:
-    CountAgg() : m_count(0) {}
+    CountAgg() : m_count(0), m_batchCount(0) {}
 
     virtual void advance(const NValue& val)
     {
@@ -209,15 +409,50 @@ public:
         m_count = 0;
     }
 
+    virtual bool prepareBatch(TableTuple &tuple, char *const *rows, int count, int column)
+    {
+        if (D::excludesRepeats) {
+            return false;
+        }
+        const TupleSchema* schema = tuple.getSchema();
+        const uint32_t offset = schema->getColumnInfo(column)->offset;
+        switch (schema->columnType(column)) {
+        case VALUE_TYPE_TINYINT:
+            m_batchCount = countColumn<int8_t>(rows, count, offset);
+            return true;
+        case VALUE_TYPE_SMALLINT:
+            m_batchCount = countColumn<int16_t>(rows, count, offset);
+            return true;
+        case VALUE_TYPE_INTEGER:
+            m_batchCount = countColumn<int32_t>(rows, count, offset);
+            return true;
+        case VALUE_TYPE_BIGINT:
+        case VALUE_TYPE_TIMESTAMP:
+            m_batchCount = countColumn<int64_t>(rows, count, offset);
+            return true;
+        case VALUE_TYPE_DOUBLE:
+            m_batchCount = countColumn<double>(rows, count, offset);
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    virtual void applyBatch()
+    {
+        m_count += m_batchCount;
+    }
+
 private:
     D ifDistinct;
     int64_t m_count;
+    int64_t m_batchCount;
 };
 
 class CountStarAgg : public Agg
 {
 public:
-    CountStarAgg() : m_count(0) {}
+    CountStarAgg() : m_count(0), m_batchCount(0) {}
 
     virtual void advance(const NValue& val)
     {
@@ -235,15 +470,27 @@ public:
         m_count = 0;
     }
 
+    virtual bool prepareBatch(TableTuple &tuple, char *const *rows, int count, int column)
+    {
+        m_batchCount = count;
+        return true;
+    }
+
+    virtual void applyBatch()
+    {
+        m_count += m_batchCount;
+    }
+
 private:
     int64_t m_count;
+    int64_t m_batchCount;
 };
 
 class MaxAgg : public Agg
 {
 public:
     MaxAgg(Pool* memoryPool)
-        : m_memoryPool(memoryPool)
+        : m_memoryPool(memoryPool), m_batchHaveValue(false)
     {
     }
 
@@ -289,15 +536,35 @@ public:
         return m_value;
     }
 
+    virtual bool prepareBatch(TableTuple &tuple, char *const *rows, int count, int column)
+    {
+        const int extremeRow = extremeRowInBatch<true>(tuple.getSchema(), rows, count, column);
+        m_batchHaveValue = extremeRow >= 0;
+        if (m_batchHaveValue) {
+            tuple.move(rows[extremeRow]);
+            m_batchValue = tuple.getNValue(column);
+        }
+        return true;
+    }
+
+    virtual void applyBatch()
+    {
+        if (m_batchHaveValue) {
+            advance(m_batchValue);
+        }
+    }
+
 private:
     Pool* m_memoryPool;
+    NValue m_batchValue;
+    bool m_batchHaveValue;
 };
 
 class MinAgg : public Agg
 {
 public:
     MinAgg(Pool* memoryPool)
-        : m_memoryPool(memoryPool)
+        : m_memoryPool(memoryPool), m_batchHaveValue(false)
     {
     }
 
@@ -336,8 +603,28 @@ public:
         return m_value;
     }
 
+    virtual bool prepareBatch(TableTuple &tuple, char *const *rows, int count, int column)
+    {
+        const int extremeRow = extremeRowInBatch<false>(tuple.getSchema(), rows, count, column);
+        m_batchHaveValue = extremeRow >= 0;
+        if (m_batchHaveValue) {
+            tuple.move(rows[extremeRow]);
+            m_batchValue = tuple.getNValue(column);
+        }
+        return true;
+    }
+
+    virtual void applyBatch()
+    {
+        if (m_batchHaveValue) {
+            advance(m_batchValue);
+        }
+    }
+
 private:
     Pool* m_memoryPool;
+    NValue m_batchValue;
+    bool m_batchHaveValue;
 };
 
 /*
@@ -544,6 +831,21 @@ inline void AggregateExecutorBase::advanceAggs(AggregateRow* aggregateRow, const
     }
 }
 
+bool AggregateExecutorBase::advanceAggsBatch(AggregateRow* aggregateRow, TableTuple& tuple,
+                                             char* const* rows, int count, const std::vector<int>& columns)
+{
+    Agg** aggs = aggregateRow->m_aggregates;
+    for (int ii = 0; ii < m_aggTypes.size(); ii++) {
+        if (!aggs[ii]->prepareBatch(tuple, rows, count, columns[ii])) {
+            return false;
+        }
+    }
+    for (int ii = 0; ii < m_aggTypes.size(); ii++) {
+        aggs[ii]->applyBatch();
+    }
+    return true;
+}
+
 /*
  * Create an instance of an aggregator for the specified aggregate type.
  * The object is constructed in memory from the provided memory pool.
@@ -716,6 +1018,46 @@ void AggregateHashExecutor::p_execute_finish() {
 
 AggregateSerialExecutor::~AggregateSerialExecutor() {}
 
+/*
+ * The input column of an aggregate that can take batches of rows: the fixed width column
+ * that its input expression is, or -1 for COUNT(*). -2 if it can't take batches.
+ */
+static int batchInputColumn(ExpressionType aggType, bool isDistinct,
+                            const AbstractExpression* inputExpr, const TupleSchema* schema)
+{
+    if (aggType == EXPRESSION_TYPE_AGGREGATE_COUNT_STAR) {
+        return -1;
+    }
+    if (isDistinct || inputExpr == NULL || inputExpr->getExpressionType() != EXPRESSION_TYPE_VALUE_TUPLE) {
+        return -2;
+    }
+    switch (aggType) {
+    case EXPRESSION_TYPE_AGGREGATE_COUNT:
+    case EXPRESSION_TYPE_AGGREGATE_SUM:
+    case EXPRESSION_TYPE_AGGREGATE_MIN:
+    case EXPRESSION_TYPE_AGGREGATE_MAX:
+        break;
+    default:
+        return -2;
+    }
+    const TupleValueExpression* tve = static_cast<const TupleValueExpression*>(inputExpr);
+    const int column = tve->getColumnId();
+    if (tve->getTupleId() != 0 || column >= schema->columnCount()) {
+        return -2;
+    }
+    switch (schema->columnType(column)) {
+    case VALUE_TYPE_TINYINT:
+    case VALUE_TYPE_SMALLINT:
+    case VALUE_TYPE_INTEGER:
+    case VALUE_TYPE_BIGINT:
+    case VALUE_TYPE_TIMESTAMP:
+    case VALUE_TYPE_DOUBLE:
+        return column;
+    default:
+        return -2;
+    }
+}
+
 
 TableTuple AggregateSerialExecutor::p_execute_init(const NValueArray& params,
         ProgressMonitorProxy* pmp, const TupleSchema * schema, TempTable* newTempTable)
@@ -728,6 +1070,15 @@ TableTuple AggregateSerialExecutor::p_execute_init(const NValueArray& params,
     m_noInputRows = true;
     m_failPrePredicateOnFirstRow = false;
 
+    // Without a group by, every row after the first just advances the aggregates.
+    m_batchColumns.clear();
+    m_batchAggs = m_groupByExpressions.empty() && m_prePredicate == NULL;
+    for (int ii = 0; m_batchAggs && ii < m_aggTypes.size(); ii++) {
+        m_batchColumns.push_back(batchInputColumn(m_aggTypes[ii], m_distinctAggs[ii],
+                                                  m_inputExpressions[ii], schema));
+        m_batchAggs = m_batchColumns.back() != -2;
+    }
+
     char* storage = reinterpret_cast<char*>(
             m_memoryPool.allocateZeroes(schema->tupleLength() + TUPLE_HEADER_SIZE));
     m_passThroughTupleSource = TableTuple(storage, schema);
@@ -808,6 +1159,25 @@ bool AggregateSerialExecutor::p_execute_tuple(const TableTuple& nextTuple) {
     return false;
 }
 
+bool AggregateSerialExecutor::p_execute_batch(TableTuple& tuple, char* const* rows, int count,
+                                              const std::vector<int>* columnMap)
+{
+    // The first row primes the aggregates.
+    if (!m_batchAggs || m_noInputRows) {
+        return false;
+    }
+    const std::vector<int>* columns = &m_batchColumns;
+    if (columnMap != NULL) {
+        m_mappedBatchColumns.resize(m_batchColumns.size());
+        for (int ii = 0; ii < m_batchColumns.size(); ii++) {
+            const int column = m_batchColumns[ii];
+            m_mappedBatchColumns[ii] = column < 0 ? column : (*columnMap)[column];
+        }
+        columns = &m_mappedBatchColumns;
+    }
+    return advanceAggsBatch(m_aggregateRow, tuple, rows, count, *columns);
+}
+
 void AggregateSerialExecutor::p_execute_finish()
 {
     if (!m_earlyReturn) {
@@ -90,6 +90,23 @@ public:
         m_inlineCopiedToOutline = false;
     }
 
+    /**
+     * Work out advancing over a batch of rows, the storage of tuples like the
+     * given one, taking the input from the fixed width column of that index
+     * (or no input, for COUNT(*)), without changing the aggregate yet.
+     * Returns false if the aggregate doesn't take batches or a row would raise
+     * an error, in which case the rows go through advance() one at a time.
+     */
+    virtual bool prepareBatch(TableTuple &tuple, char *const *rows, int count, int column)
+    {
+        return false;
+    }
+
+    /** Take the batch that prepareBatch worked out */
+    virtual void applyBatch()
+    {
+    }
+
 protected:
     NValue m_value;
     /**
@@ -181,6 +198,19 @@ public:
      */
     virtual bool p_execute_tuple(const TableTuple& nextTuple) = 0;
 
+    /**
+     * Aggregate a batch of rows as a whole, the same as p_execute_tuple for each of them.
+     * The rows are the storage of tuples like the given one, which are tuples of the input
+     * schema unless columnMap gives the column of them that each input column is (for an
+     * inline projection that only picks columns). Returns false, having done nothing,
+     * if the rows have to go through p_execute_tuple one at a time, which by default they do.
+     */
+    virtual bool p_execute_batch(TableTuple& tuple, char* const* rows, int count,
+                                 const std::vector<int>* columnMap)
+    {
+        return false;
+    }
+
     /**
      * Last method to insert the results to output table and clean up memory or variables.
      */
@@ -202,6 +232,13 @@ protected:
 
     void advanceAggs(AggregateRow* aggregateRow, const TableTuple& tuple);
 
+    /*
+     * Advance every aggregate over a batch of rows, taking their input from the given columns,
+     * if they all can take the batch as a whole. Returns false, having changed nothing, otherwise.
+     */
+    bool advanceAggsBatch(AggregateRow* aggregateRow, TableTuple& tuple, char* const* rows, int count,
+                          const std::vector<int>& columns);
+
     /*
      * Create an instance of an aggregator for the specified aggregate type.
      * The object is constructed in memory from the provided memory pool.
@@ -297,12 +334,14 @@ public:
     AggregateSerialExecutor(VoltDBEngine* engine, AbstractPlanNode* abstract_node) :
         AggregateExecutorBase(engine, abstract_node),
         m_aggregateRow(NULL), m_noInputRows(true),
-        m_failPrePredicateOnFirstRow(false) { }
+        m_failPrePredicateOnFirstRow(false), m_batchAggs(false) { }
     ~AggregateSerialExecutor();
 
     TableTuple p_execute_init(const NValueArray& params, ProgressMonitorProxy* pmp,
                               const TupleSchema * schema, TempTable* newTempTable  = NULL);
     bool p_execute_tuple(const TableTuple& nextTuple);
+    bool p_execute_batch(TableTuple& tuple, char* const* rows, int count,
+                         const std::vector<int>* columnMap);
     void p_execute_finish();
 
 protected:
@@ -311,6 +350,12 @@ protected:
     bool m_noInputRows;
     bool m_failPrePredicateOnFirstRow;
 
+    // Without a group by, the input column of each aggregate (-1 for COUNT(*))
+    // when they all read one directly, so that they can take batches of rows.
+    std::vector<int> m_batchColumns;
+    std::vector<int> m_mappedBatchColumns;
+    bool m_batchAggs;
+
     TableTuple m_passThroughTupleSource;
 
 private:
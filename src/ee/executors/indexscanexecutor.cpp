@@ -66,8 +66,32 @@
 #include "storage/temptable.h"
 #include "storage/persistenttable.h"
 
+#include <algorithm>
+#include <vector>
+
 using namespace voltdb;
 
+/**
+ * Return the next entry that matches the EQ search key. When the scan is probing
+ * the elements of an IN LIST and the entries for the current element run out,
+ * move on to the next element of the (sorted and deduped) list.
+ */
+static inline TableTuple nextValueAtKeyOrInListElement(TableIndex *tableIndex,
+                                                       IndexCursor &indexCursor,
+                                                       TableTuple &searchKey,
+                                                       int inListKeyIndex,
+                                                       const std::vector<NValue> &inListValues,
+                                                       size_t &nextInListValue)
+{
+    TableTuple tuple = tableIndex->nextValueAtKey(indexCursor);
+    while (tuple.isNullTuple() && nextInListValue < inListValues.size()) {
+        searchKey.setNValue(inListKeyIndex, inListValues[nextInListValue++]);
+        tableIndex->moveToKey(&searchKey, indexCursor);
+        tuple = tableIndex->nextValueAtKey(indexCursor);
+    }
+    return tuple;
+}
+
 bool IndexScanExecutor::p_init(AbstractPlanNode *abstractNode,
         TempTableLimits* limits)
 {
@@ -151,6 +175,9 @@ bool IndexScanExecutor::p_init(AbstractPlanNode *abstractNode,
     //
     m_lookupType = m_node->getLookupType();
     m_sortDirection = m_node->getSortDirection();
+    m_inListKeyIndex = m_node->getInListKeyIndex();
+    assert(m_inListKeyIndex < 0 ||
+           (m_lookupType == INDEX_LOOKUP_TYPE_EQ && m_inListKeyIndex < m_numOfSearchkeys));
 
     VOLT_DEBUG("IndexScan: %s.%s\n", targetTable->name().c_str(), tableIndex->getName().c_str());
 
@@ -199,10 +226,35 @@ bool IndexScanExecutor::p_execute(const NValueArray &params)
     //
     bool earlyReturnForSearchKeyOutOfRange = false;
 
+    // The elements of an indexed IN LIST, cast to the key type, sorted in scan order
+    // and deduped, so that each distinct key is probed once and in index order.
+    std::vector<NValue> inListValues;
+    size_t nextInListValue = 0;
+
     searchKey.setAllNulls();
     VOLT_TRACE("Initial (all null) search key: '%s'", searchKey.debugNoHeader().c_str());
     for (int ctr = 0; ctr < activeNumOfSearchKeys; ctr++) {
         NValue candidateValue = m_searchKeyArray[ctr]->eval(NULL, NULL);
+        if (ctr == m_inListKeyIndex) {
+            // Elements that can not be cast to the key type can not match any key,
+            // and a NULL element never satisfies the IN LIST filter.
+            std::vector<NValue> sortedUniques;
+            candidateValue.castAndSortAndDedupArrayForInList(searchKey.getSchema()->columnType(ctr),
+                                                             sortedUniques);
+            for (size_t ii = 0; ii < sortedUniques.size(); ii++) {
+                if ( ! sortedUniques[ii].isNull()) {
+                    inListValues.push_back(sortedUniques[ii]);
+                }
+            }
+            if (inListValues.empty()) {
+                earlyReturnForSearchKeyOutOfRange = true;
+                break;
+            }
+            if (localSortDirection == SORT_DIRECTION_TYPE_DESC) {
+                std::reverse(inListValues.begin(), inListValues.end());
+            }
+            candidateValue = inListValues[nextInListValue++];
+        }
         try {
             searchKey.setNValue(ctr, candidateValue);
         }
@@ -382,7 +434,9 @@ bool IndexScanExecutor::p_execute(const NValueArray &params)
     //
     while ((limit == -1 || tuple_ctr < limit) &&
             ((localLookupType == INDEX_LOOKUP_TYPE_EQ &&
-                    !(tuple = tableIndex->nextValueAtKey(indexCursor)).isNullTuple()) ||
+                    !(tuple = nextValueAtKeyOrInListElement(tableIndex, indexCursor, searchKey,
+                                                            m_inListKeyIndex, inListValues,
+                                                            nextInListValue)).isNullTuple()) ||
                     ((localLookupType != INDEX_LOOKUP_TYPE_EQ || activeNumOfSearchKeys == 0) &&
                             !(tuple = tableIndex->nextValue(indexCursor)).isNullTuple()))) {
         VOLT_TRACE("LOOPING in indexscan: tuple: '%s'\n", tuple.debug("tablename").c_str());
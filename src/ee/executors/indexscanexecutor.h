@@ -100,6 +100,8 @@ private:
 
     IndexLookupType m_lookupType;
     SortDirectionType m_sortDirection;
+    // Search key position of an indexed IN LIST, or -1
+    int m_inListKeyIndex;
 
     // IndexScan Information
     TempTable* m_outputTable;
@@ -52,6 +52,7 @@
 #include "executors/aggregateexecutor.h"
 #include "execution/ProgressMonitorProxy.h"
 #include "expressions/abstractexpression.h"
+#include "expressions/tuplevalueexpression.h"
 #include "plannodes/aggregatenode.h"
 #include "plannodes/seqscannode.h"
 #include "plannodes/projectionnode.h"
@@ -63,6 +64,8 @@
 
 using namespace voltdb;
 
+bool SeqScanExecutor::s_batchExecution = true;
+
 bool SeqScanExecutor::p_init(AbstractPlanNode* abstract_node,
                              TempTableLimits* limits)
 {
@@ -103,6 +106,22 @@ bool SeqScanExecutor::p_init(AbstractPlanNode* abstract_node,
     // Inline aggregation can be serial, partial or hash
     m_aggExec = voltdb::getInlineAggregateExecutor(node);
 
+    // An inline projection that only picks columns can be fused with the
+    // aggregate, which then reads those columns of the scanned tuples.
+    ProjectionPlanNode* projection_node =
+        dynamic_cast<ProjectionPlanNode*>(node->getInlinePlanNode(PLAN_NODE_TYPE_PROJECTION));
+    m_projectedColumns.clear();
+    m_projectionPicksColumns = projection_node != NULL;
+    for (int ctr = 0; m_projectionPicksColumns &&
+             ctr < projection_node->getOutputColumnExpressions().size(); ctr++) {
+        TupleValueExpression* tve =
+            dynamic_cast<TupleValueExpression*>(projection_node->getOutputColumnExpressions()[ctr]);
+        m_projectionPicksColumns = tve != NULL && tve->getTupleId() == 0;
+        if (m_projectionPicksColumns) {
+            m_projectedColumns.push_back(tve->getColumnId());
+        }
+    }
+
     return true;
 }
 
@@ -172,6 +191,24 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
             VOLT_TRACE("SCAN PREDICATE A:\n%s\n", predicate->debug(true).c_str());
         }
 
+        //
+        // OPTIMIZATION: COMPILED PREDICATE
+        // Predicates of the common shapes are tested on the tuple storage
+        // directly. TRUNCATE replaces the target table, schema included,
+        // without replacing the plan, so compile again if the schema changes.
+        //
+        CompiledPredicate* compiled = NULL;
+        if (predicate) {
+            if (!m_predicateCompiled ||
+                (m_compiledPredicate && m_compiledPredicate->getSchema() != input_table->schema())) {
+                m_compiledPredicate.reset(CompiledPredicate::compile(predicate, input_table->schema()));
+                m_predicateCompiled = true;
+            }
+            if (m_compiledPredicate && m_compiledPredicate->bind()) {
+                compiled = m_compiledPredicate.get();
+            }
+        }
+
         int limit = -1;
         int offset = -1;
         if (limit_node) {
@@ -195,58 +232,77 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
             temp_tuple = output_temp_table->tempTuple();
         }
 
-        while ((limit == -1 || tuple_ctr < limit) && iterator.next(tuple))
-        {
-            VOLT_TRACE("INPUT TUPLE: %s, %d/%d\n",
-                       tuple.debug(input_table->name()).c_str(), tuple_ctr,
-                       (int)input_table->activeTupleCount());
-            pmp.countdownProgress();
-            //
-            // For each tuple we need to evaluate it against our predicate
-            //
-            if (predicate == NULL || predicate->eval(&tuple, NULL).isTrue())
+        //
+        // OPTIMIZATION: BATCHES
+        // The tuples of a persistent table stay put for the scan, so they can
+        // be taken a batch at a time for the compiled predicate to filter a
+        // term at a time and for an inline aggregate to take as a whole.
+        // A subquery's temp table frees its blocks as it is iterated, and a
+        // scan with a LIMIT usually stops early, so those go a tuple at a time,
+        // as do the predicates that only the expression tree can evaluate.
+        //
+        if (s_batchExecution && !node->isSubQuery() && limit_node == NULL &&
+            (predicate == NULL ?
+             (m_aggExec != NULL && (projection_node == NULL || m_projectionPicksColumns)) :
+             compiled != NULL)) {
+            scanBatches(iterator, tuple, predicate, compiled, projection_node,
+                        temp_tuple, output_temp_table, pmp);
+        }
+        else {
+            while ((limit == -1 || tuple_ctr < limit) && iterator.next(tuple))
             {
-                // Check if we have to skip this tuple because of offset
-                if (tuple_skipped < offset) {
-                    tuple_skipped++;
-                    continue;
-                }
-                ++tuple_ctr;
-
+                VOLT_TRACE("INPUT TUPLE: %s, %d/%d\n",
+                           tuple.debug(input_table->name()).c_str(), tuple_ctr,
+                           (int)input_table->activeTupleCount());
+                pmp.countdownProgress();
                 //
-                // Nested Projection
-                // Project (or replace) values from input tuple
+                // For each tuple we need to evaluate it against our predicate
                 //
-                if (projection_node != NULL)
+                if (predicate == NULL ||
+                    (compiled ? compiled->eval(tuple) : predicate->eval(&tuple, NULL).isTrue()))
                 {
-                    VOLT_TRACE("inline projection...");
-                    for (int ctr = 0; ctr < num_of_columns; ctr++) {
-                        NValue value = projection_node->getOutputColumnExpressions()[ctr]->eval(&tuple, NULL);
-                        temp_tuple.setNValue(ctr, value);
+                    // Check if we have to skip this tuple because of offset
+                    if (tuple_skipped < offset) {
+                        tuple_skipped++;
+                        continue;
                     }
+                    ++tuple_ctr;
+
+                    //
+                    // Nested Projection
+                    // Project (or replace) values from input tuple
+                    //
+                    if (projection_node != NULL)
+                    {
+                        VOLT_TRACE("inline projection...");
+                        for (int ctr = 0; ctr < num_of_columns; ctr++) {
+                            NValue value = projection_node->getOutputColumnExpressions()[ctr]->eval(&tuple, NULL);
+                            temp_tuple.setNValue(ctr, value);
+                        }
 
-                    if (m_aggExec != NULL) {
-                        if (m_aggExec->p_execute_tuple(temp_tuple)) {
-                            break;
+                        if (m_aggExec != NULL) {
+                            if (m_aggExec->p_execute_tuple(temp_tuple)) {
+                                break;
+                            }
+                        } else {
+                            output_temp_table->insertTupleNonVirtual(temp_tuple);
                         }
-                    } else {
-                        output_temp_table->insertTupleNonVirtual(temp_tuple);
                     }
-                }
-                else
-                {
-                    if (m_aggExec != NULL) {
-                        if (m_aggExec->p_execute_tuple(tuple)) {
-                            break;
+                    else
+                    {
+                        if (m_aggExec != NULL) {
+                            if (m_aggExec->p_execute_tuple(tuple)) {
+                                break;
+                            }
+                        } else {
+                            //
+                            // Insert the tuple into our output table
+                            //
+                            output_temp_table->insertTupleNonVirtual(tuple);
                         }
-                    } else {
-                        //
-                        // Insert the tuple into our output table
-                        //
-                        output_temp_table->insertTupleNonVirtual(tuple);
                     }
+                    pmp.countdownProgress();
                 }
-                pmp.countdownProgress();
             }
         }
 
@@ -263,3 +319,78 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
 
     return true;
 }
+
+void SeqScanExecutor::scanBatches(TableIterator &iterator, TableTuple &tuple, AbstractExpression *predicate,
+                                  const CompiledPredicate *compiled, ProjectionPlanNode *projection_node,
+                                  TableTuple &temp_tuple, TempTable *output_temp_table,
+                                  ProgressMonitorProxy &pmp)
+{
+    char *rows[CompiledPredicate::MAX_BATCH];
+    bool undecided[CompiledPredicate::MAX_BATCH];
+    TableTuple row(tuple.getSchema());
+    const int num_of_columns = projection_node == NULL ? -1 :
+            static_cast<int>(projection_node->getOutputColumnExpressions().size());
+
+    while (true) {
+        int count = 0;
+        while (count < CompiledPredicate::MAX_BATCH && iterator.next(tuple)) {
+            pmp.countdownProgress();
+            rows[count++] = tuple.address();
+        }
+        if (count == 0) {
+            return;
+        }
+
+        bool anyUndecided = false;
+        if (compiled != NULL) {
+            count = compiled->filter(rows, count, undecided);
+            for (int ii = 0; ii < count && !anyUndecided; ii++) {
+                anyUndecided = undecided[ii];
+            }
+        }
+
+        // The aggregate may take the rows that passed as a whole, through
+        // the projection if it only picks columns, unless the tree has yet
+        // to decide some, which it has to do in turn with the aggregation of
+        // the rows before them.
+        if (m_aggExec != NULL && !anyUndecided &&
+            (projection_node == NULL || m_projectionPicksColumns) &&
+            m_aggExec->p_execute_batch(row, rows, count,
+                                       projection_node == NULL ? NULL : &m_projectedColumns)) {
+            for (int ii = 0; ii < count; ii++) {
+                pmp.countdownProgress();
+            }
+            continue;
+        }
+
+        for (int ii = 0; ii < count; ii++) {
+            row.move(rows[ii]);
+            if (anyUndecided && undecided[ii] && !predicate->eval(&row, NULL).isTrue()) {
+                continue;
+            }
+            if (projection_node != NULL) {
+                for (int ctr = 0; ctr < num_of_columns; ctr++) {
+                    NValue value = projection_node->getOutputColumnExpressions()[ctr]->eval(&row, NULL);
+                    temp_tuple.setNValue(ctr, value);
+                }
+                if (m_aggExec != NULL) {
+                    if (m_aggExec->p_execute_tuple(temp_tuple)) {
+                        return;
+                    }
+                } else {
+                    output_temp_table->insertTupleNonVirtual(temp_tuple);
+                }
+            }
+            else {
+                if (m_aggExec != NULL) {
+                    if (m_aggExec->p_execute_tuple(row)) {
+                        return;
+                    }
+                } else {
+                    output_temp_table->insertTupleNonVirtual(row);
+                }
+            }
+            pmp.countdownProgress();
+        }
+    }
+}
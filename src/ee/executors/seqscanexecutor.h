@@ -50,26 +50,57 @@
 #include "common/valuevector.h"
 #include "executors/abstractexecutor.h"
 #include "execution/VoltDBEngine.h"
+#include "expressions/compiledpredicate.h"
+
+#include "boost/scoped_ptr.hpp"
 
 namespace voltdb
 {
     class UndoLog;
     class ReadWriteSet;
     class AggregateExecutorBase;
+    class ProgressMonitorProxy;
+    class ProjectionPlanNode;
+    class TableIterator;
+    class TempTable;
 
     class SeqScanExecutor : public AbstractExecutor {
     public:
         SeqScanExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node)
             : AbstractExecutor(engine, abstract_node)
             , m_aggExec(NULL)
+            , m_projectionPicksColumns(false)
+            , m_predicateCompiled(false)
         {}
     protected:
         bool p_init(AbstractPlanNode* abstract_node,
                     TempTableLimits* limits);
         bool p_execute(const NValueArray& params);
 
+    public:
+        /**
+         * Whether scans of persistent tables may take tuples a batch at a
+         * time, which they do by default. Tests and benchmarks turn it off
+         * to compare with the tuple at a time path.
+         */
+        static void setBatchExecution(bool enabled) { s_batchExecution = enabled; }
+
     private:
+        void scanBatches(TableIterator &iterator, TableTuple &tuple, AbstractExpression *predicate,
+                         const CompiledPredicate *compiled, ProjectionPlanNode *projection_node,
+                         TableTuple &temp_tuple, TempTable *output_temp_table,
+                         ProgressMonitorProxy &pmp);
+
+        static bool s_batchExecution;
+
         AggregateExecutorBase* m_aggExec;
+        // The input column that each column of an inline projection is,
+        // when the projection only picks columns
+        std::vector<int> m_projectedColumns;
+        bool m_projectionPicksColumns;
+        // The predicate compiled for the input table's schema, if it compiles
+        boost::scoped_ptr<CompiledPredicate> m_compiledPredicate;
+        bool m_predicateCompiled;
     };
 }
 
@@ -0,0 +1,848 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "expressions/compiledpredicate.h"
+
+#include "common/NValue.hpp"
+#include "common/TupleSchema.h"
+#include "common/ValuePeeker.hpp"
+#include "common/tabletuple.h"
+#include "expressions/abstractexpression.h"
+#include "expressions/tuplevalueexpression.h"
+
+#include <cmath>
+#include <cstring>
+#include <string>
+
+namespace voltdb {
+
+namespace {
+
+/**
+ * What a term, or an operand of one, came to for a row.
+ * UNKNOWN means the generic evaluation would raise an error, or might:
+ * the row has to be evaluated by the expression tree.
+ */
+enum TermResult {
+    TERM_FALSE,
+    TERM_TRUE,
+    TERM_NULL,
+    TERM_UNKNOWN
+};
+
+/** Compare doubles the way NValue does: NaNs are equal, and less than anything else */
+inline int compareDoubles(double lhs, double rhs)
+{
+    if (std::isnan(lhs)) {
+        return std::isnan(rhs) ? VALUE_COMPARE_EQUAL : VALUE_COMPARE_LESSTHAN;
+    }
+    if (std::isnan(rhs)) {
+        return VALUE_COMPARE_GREATERTHAN;
+    }
+    return lhs > rhs ? VALUE_COMPARE_GREATERTHAN :
+           lhs < rhs ? VALUE_COMPARE_LESSTHAN : VALUE_COMPARE_EQUAL;
+}
+
+inline int compareInts(int64_t lhs, int64_t rhs)
+{
+    return lhs > rhs ? VALUE_COMPARE_GREATERTHAN :
+           lhs < rhs ? VALUE_COMPARE_LESSTHAN : VALUE_COMPARE_EQUAL;
+}
+
+/** Apply a comparison operator to the result of a compare */
+inline TermResult applyComparison(ExpressionType cmp, int comparison)
+{
+    bool result;
+    switch (cmp) {
+    case EXPRESSION_TYPE_COMPARE_EQUAL:
+        result = comparison == VALUE_COMPARE_EQUAL;
+        break;
+    case EXPRESSION_TYPE_COMPARE_NOTEQUAL:
+        result = comparison != VALUE_COMPARE_EQUAL;
+        break;
+    case EXPRESSION_TYPE_COMPARE_LESSTHAN:
+        result = comparison == VALUE_COMPARE_LESSTHAN;
+        break;
+    case EXPRESSION_TYPE_COMPARE_GREATERTHAN:
+        result = comparison == VALUE_COMPARE_GREATERTHAN;
+        break;
+    case EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO:
+        result = comparison != VALUE_COMPARE_GREATERTHAN;
+        break;
+    default:
+        assert(cmp == EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO);
+        result = comparison != VALUE_COMPARE_LESSTHAN;
+        break;
+    }
+    return result ? TERM_TRUE : TERM_FALSE;
+}
+
+/** The comparison that gives the same result with its operands swapped */
+ExpressionType reverseComparison(ExpressionType cmp)
+{
+    switch (cmp) {
+    case EXPRESSION_TYPE_COMPARE_LESSTHAN:
+        return EXPRESSION_TYPE_COMPARE_GREATERTHAN;
+    case EXPRESSION_TYPE_COMPARE_GREATERTHAN:
+        return EXPRESSION_TYPE_COMPARE_LESSTHAN;
+    case EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO:
+        return EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO;
+    case EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO:
+        return EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO;
+    default:
+        return cmp;
+    }
+}
+
+bool isNumericComparison(ExpressionType type)
+{
+    switch (type) {
+    case EXPRESSION_TYPE_COMPARE_EQUAL:
+    case EXPRESSION_TYPE_COMPARE_NOTEQUAL:
+    case EXPRESSION_TYPE_COMPARE_LESSTHAN:
+    case EXPRESSION_TYPE_COMPARE_GREATERTHAN:
+    case EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO:
+    case EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO:
+        return true;
+    default:
+        return false;
+    }
+}
+
+/** The types NValue compares, and does arithmetic on, as int64_t */
+bool isBigIntArithmeticType(ValueType type)
+{
+    switch (type) {
+    case VALUE_TYPE_TINYINT:
+    case VALUE_TYPE_SMALLINT:
+    case VALUE_TYPE_INTEGER:
+    case VALUE_TYPE_BIGINT:
+    case VALUE_TYPE_TIMESTAMP:
+        return true;
+    default:
+        return false;
+    }
+}
+
+/** A parameter or constant, which the compiled terms read once per execution */
+bool isValue(const AbstractExpression *expr)
+{
+    return expr->getExpressionType() == EXPRESSION_TYPE_VALUE_PARAMETER ||
+           expr->getExpressionType() == EXPRESSION_TYPE_VALUE_CONSTANT;
+}
+
+/** The column of the scanned tuple the expression reads, or -1 */
+int columnOf(const AbstractExpression *expr, const TupleSchema *schema)
+{
+    const TupleValueExpression *tve = dynamic_cast<const TupleValueExpression*>(expr);
+    if (tve == NULL || tve->getTupleId() != 0 ||
+        tve->getColumnId() < 0 || tve->getColumnId() >= schema->columnCount()) {
+        return -1;
+    }
+    return tve->getColumnId();
+}
+
+inline const char* columnData(const TableTuple &tuple, uint32_t offset)
+{
+    return tuple.address() + TUPLE_HEADER_SIZE + offset;
+}
+
+inline bool isNullStorage(int8_t value) { return value == INT8_NULL; }
+inline bool isNullStorage(int16_t value) { return value == INT16_NULL; }
+inline bool isNullStorage(int32_t value) { return value == INT32_NULL; }
+inline bool isNullStorage(int64_t value) { return value == INT64_NULL; }
+inline bool isNullStorage(double value) { return value <= DOUBLE_NULL; }
+
+template <typename T> inline bool isDoubleStorage(T) { return false; }
+inline bool isDoubleStorage(double) { return true; }
+
+/**
+ * A number in BIGINT or FLOAT arithmetic, whichever the operand's types promote to.
+ */
+struct Number {
+    int64_t i;
+    double d;
+};
+
+/**
+ * A numeric operand: a column, a parameter or constant, or arithmetic on operands.
+ */
+class Operand {
+public:
+    enum Kind {
+        COLUMN,
+        VALUE,
+        ARITHMETIC
+    };
+
+    static Operand* compile(const AbstractExpression *expr, const TupleSchema *schema)
+    {
+        if (expr == NULL) {
+            return NULL;
+        }
+        int column = columnOf(expr, schema);
+        if (column >= 0) {
+            ValueType type = schema->columnType(column);
+            if (!isBigIntArithmeticType(type) && type != VALUE_TYPE_DOUBLE) {
+                return NULL;
+            }
+            Operand *operand = new Operand(COLUMN, expr);
+            operand->m_columnType = type;
+            operand->m_offset = schema->getColumnInfo(column)->offset;
+            operand->m_isDouble = type == VALUE_TYPE_DOUBLE;
+            return operand;
+        }
+        if (isValue(expr)) {
+            return new Operand(VALUE, expr);
+        }
+        switch (expr->getExpressionType()) {
+        case EXPRESSION_TYPE_OPERATOR_PLUS:
+        case EXPRESSION_TYPE_OPERATOR_MINUS:
+        case EXPRESSION_TYPE_OPERATOR_MULTIPLY:
+        case EXPRESSION_TYPE_OPERATOR_DIVIDE:
+            break;
+        default:
+            return NULL;
+        }
+        Operand *left = compile(expr->getLeft(), schema);
+        if (left == NULL) {
+            return NULL;
+        }
+        Operand *right = compile(expr->getRight(), schema);
+        if (right == NULL) {
+            delete left;
+            return NULL;
+        }
+        Operand *operand = new Operand(ARITHMETIC, expr);
+        operand->m_left = left;
+        operand->m_right = right;
+        return operand;
+    }
+
+    ~Operand()
+    {
+        delete m_left;
+        delete m_right;
+    }
+
+    /**
+     * Read parameters and constants, and work out which arithmetic the
+     * operand is in. False if a value isn't a number.
+     */
+    bool bind()
+    {
+        switch (m_kind) {
+        case COLUMN:
+            return true;
+        case VALUE: {
+            NValue value = m_expr->eval(NULL, NULL);
+            ValueType type = ValuePeeker::peekValueType(value);
+            m_isNull = value.isNull();
+            if (isBigIntArithmeticType(type)) {
+                m_isDouble = false;
+                m_value.i = m_isNull ? 0 : ValuePeeker::peekAsRawInt64(value);
+                return true;
+            }
+            if (type == VALUE_TYPE_DOUBLE) {
+                m_isDouble = true;
+                m_value.d = m_isNull ? 0 : ValuePeeker::peekDouble(value);
+                return true;
+            }
+            return false;
+        }
+        default:
+            if (!m_left->bind() || !m_right->bind()) {
+                return false;
+            }
+            m_isDouble = m_left->m_isDouble || m_right->m_isDouble;
+            return true;
+        }
+    }
+
+    bool isDouble() const { return m_isDouble; }
+
+    double asDouble(const Number &number) const
+    {
+        return m_isDouble ? number.d : static_cast<double>(number.i);
+    }
+
+    TermResult eval(const TableTuple &tuple, Number &out) const
+    {
+        switch (m_kind) {
+        case COLUMN:
+            return readColumn(columnData(tuple, m_offset), out);
+        case VALUE:
+            if (m_isNull) {
+                return TERM_NULL;
+            }
+            out = m_value;
+            return TERM_TRUE;
+        default:
+            return evalArithmetic(tuple, out);
+        }
+    }
+
+private:
+    Operand(Kind kind, const AbstractExpression *expr)
+        : m_kind(kind), m_expr(expr), m_columnType(VALUE_TYPE_INVALID), m_offset(0),
+          m_isDouble(false), m_isNull(false), m_left(NULL), m_right(NULL)
+    {
+        m_value.i = 0;
+        m_value.d = 0;
+    }
+
+    template <typename T>
+    static TermResult readStorage(const char *data, Number &out)
+    {
+        const T value = *reinterpret_cast<const T*>(data);
+        if (isNullStorage(value)) {
+            return TERM_NULL;
+        }
+        out.i = value;
+        return TERM_TRUE;
+    }
+
+    TermResult readColumn(const char *data, Number &out) const
+    {
+        switch (m_columnType) {
+        case VALUE_TYPE_TINYINT:
+            return readStorage<int8_t>(data, out);
+        case VALUE_TYPE_SMALLINT:
+            return readStorage<int16_t>(data, out);
+        case VALUE_TYPE_INTEGER:
+            return readStorage<int32_t>(data, out);
+        case VALUE_TYPE_DOUBLE: {
+            const double value = *reinterpret_cast<const double*>(data);
+            if (isNullStorage(value)) {
+                return TERM_NULL;
+            }
+            out.d = value;
+            return TERM_TRUE;
+        }
+        default:
+            return readStorage<int64_t>(data, out);
+        }
+    }
+
+    /**
+     * Both operands are always evaluated, as OperatorExpression does, so an
+     * error on either side wins over a NULL on the other.
+     */
+    TermResult evalArithmetic(const TableTuple &tuple, Number &out) const
+    {
+        Number lhs = Number();
+        Number rhs = Number();
+        const TermResult left = m_left->eval(tuple, lhs);
+        const TermResult right = m_right->eval(tuple, rhs);
+        if (left == TERM_UNKNOWN || right == TERM_UNKNOWN) {
+            return TERM_UNKNOWN;
+        }
+        if (left == TERM_NULL || right == TERM_NULL) {
+            return TERM_NULL;
+        }
+        if (m_isDouble) {
+            const double l = m_left->asDouble(lhs);
+            const double r = m_right->asDouble(rhs);
+            double result;
+            switch (m_expr->getExpressionType()) {
+            case EXPRESSION_TYPE_OPERATOR_PLUS:
+                result = l + r;
+                break;
+            case EXPRESSION_TYPE_OPERATOR_MINUS:
+                result = l - r;
+                break;
+            case EXPRESSION_TYPE_OPERATOR_MULTIPLY:
+                result = l * r;
+                break;
+            default:
+                result = l / r;
+                break;
+            }
+            if (std::isnan(result) || std::isinf(result)) {
+                return TERM_UNKNOWN;
+            }
+            if (result <= DOUBLE_NULL) {
+                return TERM_NULL;
+            }
+            out.d = result;
+            return TERM_TRUE;
+        }
+
+        // The unsigned arithmetic wraps, and the sign tests below catch the overflow
+        // NValue would throw for. A result that lands on INT64_NULL is left to NValue too.
+        const int64_t l = lhs.i;
+        const int64_t r = rhs.i;
+        int64_t result;
+        switch (m_expr->getExpressionType()) {
+        case EXPRESSION_TYPE_OPERATOR_PLUS:
+            result = static_cast<int64_t>(static_cast<uint64_t>(l) + static_cast<uint64_t>(r));
+            if (((l ^ result) & (r ^ result)) < 0) {
+                return TERM_UNKNOWN;
+            }
+            break;
+        case EXPRESSION_TYPE_OPERATOR_MINUS:
+            result = static_cast<int64_t>(static_cast<uint64_t>(l) - static_cast<uint64_t>(r));
+            if (((l ^ r) & (l ^ result)) < 0) {
+                return TERM_UNKNOWN;
+            }
+            break;
+        case EXPRESSION_TYPE_OPERATOR_MULTIPLY:
+            // Products of 32 bit values always fit; leave the rest to NValue's checks
+            if (l != static_cast<int32_t>(l) || r != static_cast<int32_t>(r)) {
+                return TERM_UNKNOWN;
+            }
+            result = l * r;
+            break;
+        default:
+            if (r == 0) {
+                return TERM_UNKNOWN;
+            }
+            result = l / r;
+            break;
+        }
+        if (result == INT64_NULL) {
+            return TERM_UNKNOWN;
+        }
+        out.i = result;
+        return TERM_TRUE;
+    }
+
+    const Kind m_kind;
+    const AbstractExpression *m_expr;
+    ValueType m_columnType;
+    uint32_t m_offset;
+    bool m_isDouble;
+    bool m_isNull;
+    Number m_value;
+    Operand *m_left;
+    Operand *m_right;
+};
+
+}
+
+/**
+ * One conjunct of the predicate.
+ */
+class CompiledPredicate::Term {
+public:
+    virtual ~Term() {}
+    virtual bool bind() = 0;
+    virtual TermResult test(const TableTuple &tuple) const = 0;
+
+    /**
+     * test() each of the selected rows of a batch, recording in verdicts the
+     * results other than TRUE, and keep in the selection the rows that later
+     * terms still have to test: those that are TRUE or NULL. Returns how many.
+     * By default this tests the rows through the given tuple. Terms on a
+     * single column override it with a loop over the column's storage.
+     */
+    virtual int testBatch(char *const *rows, uint16_t *selection, int count,
+                          TableTuple &tuple, TermResult *verdicts) const
+    {
+        int kept = 0;
+        for (int i = 0; i < count; ++i) {
+            tuple.move(rows[selection[i]]);
+            kept = select(selection[i], test(tuple), selection, kept, verdicts);
+        }
+        return kept;
+    }
+
+protected:
+    static inline int select(uint16_t row, TermResult result, uint16_t *selection, int kept,
+                             TermResult *verdicts)
+    {
+        if (result != TERM_TRUE) {
+            verdicts[row] = result;
+        }
+        selection[kept] = row;
+        return result == TERM_TRUE || result == TERM_NULL ? kept + 1 : kept;
+    }
+};
+
+namespace {
+
+/**
+ * The common case, a fixed width column against a parameter or constant,
+ * specialized for the column's storage type and the comparison.
+ */
+template <typename T, ExpressionType CMP>
+class ColumnTerm : public CompiledPredicate::Term {
+public:
+    ColumnTerm(uint32_t offset, const AbstractExpression *value)
+        : m_offset(offset), m_value(value), m_isNull(false), m_isDouble(false), m_int(0), m_double(0)
+    {}
+
+    bool bind()
+    {
+        NValue value = m_value->eval(NULL, NULL);
+        // A NULL of any type makes the comparison NULL without looking at the type
+        m_isNull = value.isNull();
+        if (m_isNull) {
+            return true;
+        }
+        ValueType type = ValuePeeker::peekValueType(value);
+        if (isBigIntArithmeticType(type)) {
+            m_int = ValuePeeker::peekAsRawInt64(value);
+            m_double = static_cast<double>(m_int);
+            m_isDouble = false;
+            return true;
+        }
+        if (type == VALUE_TYPE_DOUBLE) {
+            m_double = ValuePeeker::peekDouble(value);
+            m_isDouble = true;
+            return true;
+        }
+        return false;
+    }
+
+    TermResult test(const TableTuple &tuple) const
+    {
+        if (m_isNull) {
+            return TERM_NULL;
+        }
+        return testColumn(columnData(tuple, m_offset));
+    }
+
+    int testBatch(char *const *rows, uint16_t *selection, int count,
+                  TableTuple &, TermResult *verdicts) const
+    {
+        if (m_isNull) {
+            for (int i = 0; i < count; ++i) {
+                verdicts[selection[i]] = TERM_NULL;
+            }
+            return count;
+        }
+        int kept = 0;
+        for (int i = 0; i < count; ++i) {
+            const uint16_t row = selection[i];
+            kept = select(row, testColumn(rows[row] + TUPLE_HEADER_SIZE + m_offset), selection, kept, verdicts);
+        }
+        return kept;
+    }
+
+private:
+    inline TermResult testColumn(const char *data) const
+    {
+        const T column = *reinterpret_cast<const T*>(data);
+        if (isNullStorage(column)) {
+            return TERM_NULL;
+        }
+        if (m_isDouble || isDoubleStorage(column)) {
+            return applyComparison(CMP, compareDoubles(static_cast<double>(column), m_double));
+        }
+        return applyComparison(CMP, compareInts(static_cast<int64_t>(column), m_int));
+    }
+
+    const uint32_t m_offset;
+    const AbstractExpression *m_value;
+    bool m_isNull;
+    bool m_isDouble;
+    int64_t m_int;
+    double m_double;
+};
+
+template <typename T>
+CompiledPredicate::Term* newColumnTerm(ExpressionType cmp, uint32_t offset, const AbstractExpression *value)
+{
+    switch (cmp) {
+    case EXPRESSION_TYPE_COMPARE_EQUAL:
+        return new ColumnTerm<T, EXPRESSION_TYPE_COMPARE_EQUAL>(offset, value);
+    case EXPRESSION_TYPE_COMPARE_NOTEQUAL:
+        return new ColumnTerm<T, EXPRESSION_TYPE_COMPARE_NOTEQUAL>(offset, value);
+    case EXPRESSION_TYPE_COMPARE_LESSTHAN:
+        return new ColumnTerm<T, EXPRESSION_TYPE_COMPARE_LESSTHAN>(offset, value);
+    case EXPRESSION_TYPE_COMPARE_GREATERTHAN:
+        return new ColumnTerm<T, EXPRESSION_TYPE_COMPARE_GREATERTHAN>(offset, value);
+    case EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO:
+        return new ColumnTerm<T, EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO>(offset, value);
+    default:
+        return new ColumnTerm<T, EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO>(offset, value);
+    }
+}
+
+CompiledPredicate::Term* newColumnTerm(ExpressionType cmp, const TupleSchema *schema, int column,
+                                       const AbstractExpression *value)
+{
+    const uint32_t offset = schema->getColumnInfo(column)->offset;
+    switch (schema->columnType(column)) {
+    case VALUE_TYPE_TINYINT:
+        return newColumnTerm<int8_t>(cmp, offset, value);
+    case VALUE_TYPE_SMALLINT:
+        return newColumnTerm<int16_t>(cmp, offset, value);
+    case VALUE_TYPE_INTEGER:
+        return newColumnTerm<int32_t>(cmp, offset, value);
+    case VALUE_TYPE_BIGINT:
+    case VALUE_TYPE_TIMESTAMP:
+        return newColumnTerm<int64_t>(cmp, offset, value);
+    case VALUE_TYPE_DOUBLE:
+        return newColumnTerm<double>(cmp, offset, value);
+    default:
+        return NULL;
+    }
+}
+
+/**
+ * Any other numeric comparison. As in ComparisonExpression, a NULL left
+ * operand makes the result NULL without evaluating the right one.
+ */
+class ComparisonTerm : public CompiledPredicate::Term {
+public:
+    ComparisonTerm(ExpressionType cmp, Operand *left, Operand *right)
+        : m_cmp(cmp), m_left(left), m_right(right), m_isDouble(false)
+    {}
+
+    ~ComparisonTerm()
+    {
+        delete m_left;
+        delete m_right;
+    }
+
+    bool bind()
+    {
+        if (!m_left->bind() || !m_right->bind()) {
+            return false;
+        }
+        m_isDouble = m_left->isDouble() || m_right->isDouble();
+        return true;
+    }
+
+    TermResult test(const TableTuple &tuple) const
+    {
+        Number lhs = Number();
+        Number rhs = Number();
+        TermResult result = m_left->eval(tuple, lhs);
+        if (result != TERM_TRUE) {
+            return result;
+        }
+        result = m_right->eval(tuple, rhs);
+        if (result != TERM_TRUE) {
+            return result;
+        }
+        if (m_isDouble) {
+            return applyComparison(m_cmp, compareDoubles(m_left->asDouble(lhs), m_right->asDouble(rhs)));
+        }
+        return applyComparison(m_cmp, compareInts(lhs.i, rhs.i));
+    }
+
+private:
+    const ExpressionType m_cmp;
+    Operand *m_left;
+    Operand *m_right;
+    bool m_isDouble;
+};
+
+/**
+ * VARCHAR column LIKE 'prefix%', or LIKE a pattern without wildcards,
+ * which is a plain comparison of the bytes.
+ */
+class LikeTerm : public CompiledPredicate::Term {
+public:
+    LikeTerm(int column, const AbstractExpression *pattern)
+        : m_column(column), m_pattern(pattern), m_isNull(false), m_isPrefix(false)
+    {}
+
+    bool bind()
+    {
+        NValue pattern = m_pattern->eval(NULL, NULL);
+        m_isNull = pattern.isNull();
+        if (m_isNull) {
+            return true;
+        }
+        if (ValuePeeker::peekValueType(pattern) != VALUE_TYPE_VARCHAR) {
+            return false;
+        }
+        const char *chars = static_cast<const char*>(ValuePeeker::peekObjectValue_withoutNull(pattern));
+        const int32_t length = ValuePeeker::peekObjectLength_withoutNull(pattern);
+        for (int32_t i = 0; i < length; ++i) {
+            if (chars[i] == '_' || (chars[i] == '%' && i != length - 1)) {
+                return false;
+            }
+        }
+        m_isPrefix = length > 0 && chars[length - 1] == '%';
+        m_bytes.assign(chars, m_isPrefix ? length - 1 : length);
+        return true;
+    }
+
+    TermResult test(const TableTuple &tuple) const
+    {
+        const NValue value = tuple.getNValue(m_column);
+        if (value.isNull() || m_isNull) {
+            return TERM_NULL;
+        }
+        const size_t length = ValuePeeker::peekObjectLength_withoutNull(value);
+        if (m_isPrefix ? length < m_bytes.size() : length != m_bytes.size()) {
+            return TERM_FALSE;
+        }
+        return ::memcmp(ValuePeeker::peekObjectValue_withoutNull(value), m_bytes.data(),
+                        m_bytes.size()) == 0 ? TERM_TRUE : TERM_FALSE;
+    }
+
+private:
+    const int m_column;
+    const AbstractExpression *m_pattern;
+    bool m_isNull;
+    bool m_isPrefix;
+    std::string m_bytes;
+};
+
+CompiledPredicate::Term* compileComparison(const AbstractExpression *expr, const TupleSchema *schema)
+{
+    const ExpressionType type = expr->getExpressionType();
+    const AbstractExpression *left = expr->getLeft();
+    const AbstractExpression *right = expr->getRight();
+    if (left == NULL || right == NULL) {
+        return NULL;
+    }
+
+    if (type == EXPRESSION_TYPE_COMPARE_LIKE) {
+        int column = columnOf(left, schema);
+        if (column < 0 || schema->columnType(column) != VALUE_TYPE_VARCHAR || !isValue(right)) {
+            return NULL;
+        }
+        return new LikeTerm(column, right);
+    }
+
+    if (!isNumericComparison(type)) {
+        return NULL;
+    }
+    int column = columnOf(left, schema);
+    if (column >= 0 && isValue(right)) {
+        return newColumnTerm(type, schema, column, right);
+    }
+    column = columnOf(right, schema);
+    if (column >= 0 && isValue(left)) {
+        return newColumnTerm(reverseComparison(type), schema, column, left);
+    }
+
+    Operand *lhs = Operand::compile(left, schema);
+    if (lhs == NULL) {
+        return NULL;
+    }
+    Operand *rhs = Operand::compile(right, schema);
+    if (rhs == NULL) {
+        delete lhs;
+        return NULL;
+    }
+    return new ComparisonTerm(type, lhs, rhs);
+}
+
+}
+
+CompiledPredicate* CompiledPredicate::compile(const AbstractExpression *predicate, const TupleSchema *schema)
+{
+    if (predicate == NULL) {
+        return NULL;
+    }
+    CompiledPredicate *compiled = new CompiledPredicate(predicate, schema);
+    if (!compiled->addTerms(predicate)) {
+        delete compiled;
+        return NULL;
+    }
+    return compiled;
+}
+
+CompiledPredicate::~CompiledPredicate()
+{
+    for (size_t i = 0; i < m_terms.size(); ++i) {
+        delete m_terms[i];
+    }
+}
+
+/**
+ * Flatten nested ANDs left to right, the order ConjunctionExpression
+ * evaluates them in.
+ */
+bool CompiledPredicate::addTerms(const AbstractExpression *expr)
+{
+    if (expr->getExpressionType() == EXPRESSION_TYPE_CONJUNCTION_AND) {
+        return expr->getLeft() != NULL && expr->getRight() != NULL &&
+               addTerms(expr->getLeft()) && addTerms(expr->getRight());
+    }
+    Term *term = compileComparison(expr, m_schema);
+    if (term == NULL) {
+        return false;
+    }
+    m_terms.push_back(term);
+    return true;
+}
+
+bool CompiledPredicate::bind()
+{
+    for (size_t i = 0; i < m_terms.size(); ++i) {
+        if (!m_terms[i]->bind()) {
+            return false;
+        }
+    }
+    return true;
+}
+
+/**
+ * AND stops at the first FALSE but evaluates past a NULL, so a term that
+ * can't be decided only matters if every term before it was TRUE or NULL.
+ */
+bool CompiledPredicate::eval(const TableTuple &tuple) const
+{
+    bool allTrue = true;
+    for (size_t i = 0; i < m_terms.size(); ++i) {
+        switch (m_terms[i]->test(tuple)) {
+        case TERM_FALSE:
+            return false;
+        case TERM_NULL:
+            allTrue = false;
+            break;
+        case TERM_UNKNOWN:
+            return m_predicate->eval(&tuple, NULL).isTrue();
+        default:
+            break;
+        }
+    }
+    return allTrue;
+}
+
+/**
+ * The same decisions as eval(), made a term at a time for the whole batch:
+ * a row stays in the running until a term is FALSE for it, or can't be
+ * decided, which leaves the row to the expression tree.
+ */
+int CompiledPredicate::filter(char **rows, int count, bool *undecided) const
+{
+    assert(count <= MAX_BATCH);
+    TermResult verdicts[MAX_BATCH];
+    uint16_t selection[MAX_BATCH];
+    for (int i = 0; i < count; ++i) {
+        verdicts[i] = TERM_TRUE;
+        selection[i] = static_cast<uint16_t>(i);
+    }
+
+    TableTuple tuple(m_schema);
+    int selected = count;
+    for (size_t t = 0; t < m_terms.size() && selected > 0; ++t) {
+        selected = m_terms[t]->testBatch(rows, selection, selected, tuple, verdicts);
+    }
+
+    int kept = 0;
+    for (int i = 0; i < count; ++i) {
+        if (verdicts[i] == TERM_TRUE || verdicts[i] == TERM_UNKNOWN) {
+            rows[kept] = rows[i];
+            undecided[kept] = verdicts[i] == TERM_UNKNOWN;
+            ++kept;
+        }
+    }
+    return kept;
+}
+
+}
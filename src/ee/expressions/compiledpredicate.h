@@ -0,0 +1,97 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef COMPILEDPREDICATE_H
+#define COMPILEDPREDICATE_H
+
+#include <vector>
+
+namespace voltdb {
+
+class AbstractExpression;
+class TableTuple;
+class TupleSchema;
+
+/**
+ * A scan predicate compiled into evaluators specialized for its operators and
+ * column types, so that testing a row reads the column bytes in place rather
+ * than building an NValue at every node of the expression tree.
+ *
+ * Predicates that compile are conjunctions (AND) of:
+ *  - comparisons (=, <>, <, >, <=, >=) between TINYINT to BIGINT, TIMESTAMP or
+ *    FLOAT columns, parameters and constants, and +, -, *, / of those
+ *  - VARCHAR column LIKE a parameter or constant whose only wildcard is a
+ *    trailing '%'
+ *
+ * The expression tree remains the reference: anything else falls back to it,
+ * for a whole execution when a parameter has a type the evaluators don't
+ * handle and for a single row when a term would raise an error (overflow,
+ * division by zero), so results and errors are those of the generic path.
+ */
+class CompiledPredicate {
+public:
+    class Term;
+
+    /**
+     * Compile a predicate on tuples of the given schema.
+     * Returns NULL if the predicate isn't one of the supported shapes.
+     */
+    static CompiledPredicate* compile(const AbstractExpression *predicate, const TupleSchema *schema);
+
+    ~CompiledPredicate();
+
+    /**
+     * Take the current values of the parameters and constants. Returns false
+     * if one of them can't be handled, in which case this execution should
+     * evaluate the expression tree instead.
+     */
+    bool bind();
+
+    /** The same as predicate->eval(&tuple, NULL).isTrue() */
+    bool eval(const TableTuple &tuple) const;
+
+    /**
+     * Test a batch of at most MAX_BATCH tuples, given as the addresses of
+     * their storage, one term at a time over the whole batch. Keeps in rows,
+     * in their order, those the predicate accepts or that only the expression
+     * tree can decide, and returns how many. undecided[i] is set for the
+     * latter: the caller evaluates the tree for them, in order with the rest
+     * of its work on the rows, so errors are raised where the row at a time
+     * evaluation would raise them.
+     */
+    int filter(char **rows, int count, bool *undecided) const;
+
+    static const int MAX_BATCH = 1024;
+
+    const TupleSchema* getSchema() const { return m_schema; }
+
+private:
+    CompiledPredicate(const AbstractExpression *predicate, const TupleSchema *schema)
+        : m_predicate(predicate), m_schema(schema)
+    {}
+
+    bool addTerms(const AbstractExpression *expr);
+
+    const AbstractExpression *m_predicate;
+    const TupleSchema *m_schema;
+    // In the order the expression tree evaluates them
+    std::vector<Term*> m_terms;
+};
+
+}
+
+#endif
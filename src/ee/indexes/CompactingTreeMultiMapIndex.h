@@ -47,6 +47,7 @@
 #define COMPACTINGTREEMULTIMAPINDEX_H_
 
 #include <iostream>
+#include <vector>
 #include <cassert>
 #include "indexes/tableindex.h"
 #include "common/tabletuple.h"
@@ -83,6 +84,25 @@ class CompactingTreeMultiMapIndex : public TableIndex
         return m_entries.insert(setKeyFromTuple(tuple), tuple->address());
     }
 
+    void addEntriesInBulkDo(const std::vector<TableTuple> &tuples, std::vector<TableTuple> &conflicts)
+    {
+        if (KeyType::keyUsesNonInlinedMemory()) {
+            TableIndex::addEntriesInBulkDo(tuples, conflicts);
+            return;
+        }
+        // Adding the batch in key order walks the tree left to right, so
+        // consecutive inserts mostly touch nodes that are already cached.
+        std::vector<std::pair<KeyType, const void*> > entries;
+        sortBulkEntries(tuples, m_cmp, entries, conflicts);
+        for (size_t i = 0; i < entries.size(); ++i) {
+            ++m_inserts;
+            if ( ! m_entries.insert(entries[i].first, entries[i].second)) {
+                conflicts.push_back(TableTuple(const_cast<char*>(static_cast<const char*>(entries[i].second)),
+                                               getTupleSchema()));
+            }
+        }
+    }
+
     bool deleteEntryDo(const TableTuple *tuple)
     {
         ++m_deletes;
@@ -15,6 +15,8 @@
  * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+#include <algorithm>
+#include <sstream>
 #include <vector>
 #include <string>
 #include "indexes/IndexStats.h"
@@ -22,14 +24,139 @@
 #include "common/TupleSchema.h"
 #include "common/ids.h"
 #include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "common/HyperLogLog.h"
+#include "expressions/abstractexpression.h"
 #include "common/tabletuple.h"
 #include "storage/table.h"
 #include "storage/tablefactory.h"
+#include "storage/tableiterator.h"
 #include "indexes/tableindex.h"
 
 using namespace voltdb;
 using namespace std;
 
+namespace {
+
+// Rebuilding key statistics scans the whole table, so after a rebuild the
+// next one waits a millisecond for every this many entries, keeping the time
+// spent on rebuilds to a small fraction of the time spent doing anything else.
+const int64_t KEY_STATISTICS_REBUILD_ENTRIES_PER_MS = 100;
+// Number of leading key values sampled for the histogram, and its buckets
+const size_t HISTOGRAM_SAMPLE_SIZE = 1024;
+const size_t HISTOGRAM_BUCKETS = 16;
+
+bool isHistogramType(ValueType type) {
+    switch (type) {
+    case VALUE_TYPE_TINYINT:
+    case VALUE_TYPE_SMALLINT:
+    case VALUE_TYPE_INTEGER:
+    case VALUE_TYPE_BIGINT:
+    case VALUE_TYPE_TIMESTAMP:
+    case VALUE_TYPE_DOUBLE:
+    case VALUE_TYPE_DECIMAL:
+        return true;
+    default:
+        return false;
+    }
+}
+
+/**
+ * Accumulates the key statistics of one index over a scan of its table:
+ * distinct estimates of the full key and of the leading key column, and a
+ * reservoir sample of numeric leading key values for an equi-depth histogram.
+ */
+class KeyStatisticsBuilder {
+public:
+    KeyStatisticsBuilder(const TableIndex *index)
+        : m_index(index),
+          m_withHistogram(isHistogramType(index->getKeySchema()->columnType(0))),
+          m_sampled(0),
+          m_random(0x9e3779b97f4a7c15ULL)
+    {
+        if (m_withHistogram) {
+            m_sample.reserve(HISTOGRAM_SAMPLE_SIZE);
+        }
+    }
+
+    void add(const TableTuple &tuple) {
+        const vector<AbstractExpression*> &expressions = m_index->getIndexedExpressions();
+        const vector<int> &columns = m_index->getColumnIndices();
+        const size_t keyCount = expressions.empty() ? columns.size() : expressions.size();
+        size_t keyHash = 0;
+        for (size_t ii = 0; ii < keyCount; ++ii) {
+            NValue value = expressions.empty() ?
+                    tuple.getNValue(columns[ii]) : expressions[ii]->eval(&tuple, NULL);
+            value.hashCombine(keyHash);
+            if (ii == 0) {
+                size_t leadingHash = 0;
+                value.hashCombine(leadingHash);
+                m_leadingKeys.add(HyperLogLog::mix(leadingHash));
+                if (m_withHistogram && ! value.isNull()) {
+                    sample(ValuePeeker::peekDouble(value.castAs(VALUE_TYPE_DOUBLE)));
+                }
+            }
+        }
+        m_keys.add(HyperLogLog::mix(keyHash));
+    }
+
+    int64_t distinctKeys() const {
+        return m_keys.estimate();
+    }
+
+    int64_t leadingDistinctKeys() const {
+        return m_leadingKeys.estimate();
+    }
+
+    /**
+     * Boundaries of equal-height buckets over the sampled leading key values,
+     * as a comma-separated list, or an empty string if nothing was sampled.
+     */
+    string histogram() {
+        if (m_sample.empty()) {
+            return string();
+        }
+        std::sort(m_sample.begin(), m_sample.end());
+        ostringstream buffer;
+        buffer.precision(17);
+        const size_t last = m_sample.size() - 1;
+        for (size_t ii = 0; ii <= HISTOGRAM_BUCKETS; ++ii) {
+            if (ii > 0) {
+                buffer << ",";
+            }
+            buffer << m_sample[last * ii / HISTOGRAM_BUCKETS];
+        }
+        return buffer.str();
+    }
+
+private:
+    void sample(double value) {
+        ++m_sampled;
+        if (m_sample.size() < HISTOGRAM_SAMPLE_SIZE) {
+            m_sample.push_back(value);
+            return;
+        }
+        // Reservoir sampling keeps each value seen so far with equal probability.
+        m_random ^= m_random << 13;
+        m_random ^= m_random >> 7;
+        m_random ^= m_random << 17;
+        uint64_t slot = m_random % m_sampled;
+        if (slot < HISTOGRAM_SAMPLE_SIZE) {
+            m_sample[slot] = value;
+        }
+    }
+
+    const TableIndex *m_index;
+    const bool m_withHistogram;
+    HyperLogLog m_keys;
+    HyperLogLog m_leadingKeys;
+    vector<double> m_sample;
+    uint64_t m_sampled;
+    uint64_t m_random;
+};
+
+}
+
 vector<string> IndexStats::generateIndexStatsColumnNames() {
     vector<string> columnNames = StatsSource::generateBaseStatsColumnNames();
     columnNames.push_back("INDEX_NAME");
@@ -39,6 +166,11 @@ vector<string> IndexStats::generateIndexStatsColumnNames() {
     columnNames.push_back("IS_COUNTABLE");
     columnNames.push_back("ENTRY_COUNT");
     columnNames.push_back("MEMORY_ESTIMATE");
+    columnNames.push_back("BULK_BUILD_ENTRIES");
+    columnNames.push_back("BULK_BUILD_MILLIS");
+    columnNames.push_back("DISTINCT_KEYS");
+    columnNames.push_back("LEADING_DISTINCT_KEYS");
+    columnNames.push_back("KEY_HISTOGRAM");
 
     return columnNames;
 }
@@ -91,6 +223,36 @@ void IndexStats::populateIndexStatsSchema(
     columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_INTEGER));
     allowNull.push_back(false);
     inBytes.push_back(false);
+
+    // entries added by bulk index builds
+    types.push_back(VALUE_TYPE_BIGINT);
+    columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+    allowNull.push_back(false);
+    inBytes.push_back(false);
+
+    // time spent in bulk index builds
+    types.push_back(VALUE_TYPE_BIGINT);
+    columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+    allowNull.push_back(false);
+    inBytes.push_back(false);
+
+    // estimated number of distinct keys
+    types.push_back(VALUE_TYPE_BIGINT);
+    columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+    allowNull.push_back(false);
+    inBytes.push_back(false);
+
+    // estimated number of distinct values of the leading key column
+    types.push_back(VALUE_TYPE_BIGINT);
+    columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+    allowNull.push_back(false);
+    inBytes.push_back(false);
+
+    // equi-depth histogram boundaries of the leading key column
+    types.push_back(VALUE_TYPE_VARCHAR);
+    columnLengths.push_back(4096);
+    allowNull.push_back(false);
+    inBytes.push_back(false);
 }
 
 Table*
@@ -125,7 +287,12 @@ IndexStats::generateEmptyIndexStatsTable()
  */
 IndexStats::IndexStats(TableIndex* index)
     : StatsSource(), m_index(index), m_isUnique(0), m_isCountable(0),
-      m_lastTupleCount(0), m_lastMemEstimate(0)
+      m_lastTupleCount(0), m_lastMemEstimate(0),
+      m_bulkBuildEntries(0), m_bulkBuildMicros(0),
+      m_lastBulkBuildEntries(0), m_lastBulkBuildMicros(0),
+      m_hasKeyStatistics(false), m_keyChanges(0), m_keyStatisticsBuiltAt(0),
+      m_distinctKeys(0), m_leadingDistinctKeys(0),
+      m_keyHistogram(ValueFactory::getNullStringValue())
 {
 }
 
@@ -151,6 +318,75 @@ void IndexStats::configure(
     m_isCountable = static_cast<int8_t>(m_index->isCountableIndex() ? 1 : 0);
 }
 
+/**
+ * Account for a batch of entries added through TableIndex::addEntriesInBulk.
+ */
+void IndexStats::recordBulkBuild(int64_t entries, int64_t micros) {
+    m_bulkBuildEntries += entries;
+    m_bulkBuildMicros += micros;
+}
+
+bool IndexStats::keyStatisticsAreStale(int64_t now) const {
+    if ( ! m_hasKeyStatistics) {
+        return true;
+    }
+    if (m_keyChanges == 0 || m_keyChanges * 10 < static_cast<int64_t>(m_index->getSize())) {
+        return false;
+    }
+    return now - m_keyStatisticsBuiltAt >=
+            static_cast<int64_t>(m_index->getSize()) / KEY_STATISTICS_REBUILD_ENTRIES_PER_MS;
+}
+
+void IndexStats::setKeyStatistics(int64_t distinctKeys, int64_t leadingDistinctKeys,
+                                  const string &histogram, int64_t now) {
+    const int64_t entries = static_cast<int64_t>(m_index->getSize());
+    // The sketches are approximate, but an index can't have more keys than
+    // entries, and every entry of a unique index has its own key.
+    m_distinctKeys = m_index->isUniqueIndex() ? entries : std::min(distinctKeys, entries);
+    m_leadingDistinctKeys = std::min(leadingDistinctKeys, m_distinctKeys);
+    m_keyHistogram.free();
+    m_keyHistogram = ValueFactory::getStringValue(histogram);
+    m_hasKeyStatistics = true;
+    m_keyChanges = 0;
+    m_keyStatisticsBuiltAt = now;
+}
+
+void IndexStats::refreshKeyStatistics(Table *table, int64_t now) {
+    vector<TableIndex*> stale;
+    const vector<TableIndex*> &indexes = table->allIndexes();
+    for (size_t ii = 0; ii < indexes.size(); ++ii) {
+        if (indexes[ii]->getIndexStats()->keyStatisticsAreStale(now)) {
+            stale.push_back(indexes[ii]);
+        }
+    }
+    if (stale.empty()) {
+        return;
+    }
+
+    vector<KeyStatisticsBuilder> builders;
+    builders.reserve(stale.size());
+    for (size_t ii = 0; ii < stale.size(); ++ii) {
+        builders.push_back(KeyStatisticsBuilder(stale[ii]));
+    }
+    TableTuple tuple(table->schema());
+    TableIterator &iterator = table->iterator();
+    while (iterator.next(tuple)) {
+        for (size_t ii = 0; ii < stale.size(); ++ii) {
+            if (stale[ii]->isPartialIndex() &&
+                    ! stale[ii]->getPredicate()->eval(&tuple, NULL).isTrue()) {
+                continue;
+            }
+            builders[ii].add(tuple);
+        }
+    }
+    for (size_t ii = 0; ii < stale.size(); ++ii) {
+        stale[ii]->getIndexStats()->setKeyStatistics(builders[ii].distinctKeys(),
+                                                     builders[ii].leadingDistinctKeys(),
+                                                     builders[ii].histogram(),
+                                                     now);
+    }
+}
+
 void IndexStats::rename(std::string name) {
     m_indexName.free();
     m_indexName = ValueFactory::getStringValue(name);
@@ -183,6 +419,15 @@ void IndexStats::updateStatsTuple(TableTuple *tuple) {
         m_lastMemEstimate = m_index->getMemoryEstimate();
     }
 
+    int64_t bulkEntries = m_bulkBuildEntries;
+    int64_t bulkMicros = m_bulkBuildMicros;
+    if (interval()) {
+        bulkEntries -= m_lastBulkBuildEntries;
+        bulkMicros -= m_lastBulkBuildMicros;
+        m_lastBulkBuildEntries = m_bulkBuildEntries;
+        m_lastBulkBuildMicros = m_bulkBuildMicros;
+    }
+
     if (mem_estimate_kb > INT32_MAX)
     {
         mem_estimate_kb = -1;
@@ -199,6 +444,15 @@ void IndexStats::updateStatsTuple(TableTuple *tuple) {
     tuple->setNValue(StatsSource::m_columnName2Index["MEMORY_ESTIMATE"],
                      ValueFactory::
                      getIntegerValue(static_cast<int32_t>(mem_estimate_kb)));
+    tuple->setNValue(StatsSource::m_columnName2Index["BULK_BUILD_ENTRIES"],
+                     ValueFactory::getBigIntValue(bulkEntries));
+    tuple->setNValue(StatsSource::m_columnName2Index["BULK_BUILD_MILLIS"],
+                     ValueFactory::getBigIntValue(bulkMicros / 1000));
+    tuple->setNValue(StatsSource::m_columnName2Index["DISTINCT_KEYS"],
+                     ValueFactory::getBigIntValue(m_distinctKeys));
+    tuple->setNValue(StatsSource::m_columnName2Index["LEADING_DISTINCT_KEYS"],
+                     ValueFactory::getBigIntValue(m_leadingDistinctKeys));
+    tuple->setNValue(StatsSource::m_columnName2Index["KEY_HISTOGRAM"], m_keyHistogram);
 }
 
 /**
@@ -218,4 +472,5 @@ IndexStats::~IndexStats() {
     m_indexName.free();
     m_indexType.free();
     m_tableName.free();
+    m_keyHistogram.free();
 }
@@ -26,6 +26,7 @@
 
 namespace voltdb {
 
+class Table;
 class TableIndex;
 
 /**
@@ -74,6 +75,28 @@ public:
 
     void rename(std::string name);
 
+    /**
+     * Account for entries added by a bulk index build and the time it took.
+     */
+    void recordBulkBuild(int64_t entries, int64_t micros);
+
+    /**
+     * Account for entries added to or removed from the index.
+     */
+    void recordKeyChange(int64_t entries = 1) {
+        m_keyChanges += entries;
+    }
+
+    /**
+     * Rebuild the distinct key estimates and the leading key histogram of
+     * those of the table's indexes that have never had them built, or that
+     * have changed by a tenth of their size since the last build, as long as
+     * that wasn't too recent for the size of the index. All stale indexes
+     * share a single scan of the table.
+     * @parameter now Current time in milliseconds
+     */
+    static void refreshKeyStatistics(voltdb::Table *table, int64_t now);
+
 protected:
 
     /**
@@ -96,6 +119,11 @@ protected:
             std::vector<bool> &allowNull, std::vector<bool> &inBytes);
 
 private:
+    bool keyStatisticsAreStale(int64_t now) const;
+
+    void setKeyStatistics(int64_t distinctKeys, int64_t leadingDistinctKeys,
+                          const std::string &histogram, int64_t now);
+
     /**
      * Index whose stats are being collected.
      */
@@ -110,6 +138,21 @@ private:
 
     int64_t m_lastTupleCount;
     int64_t m_lastMemEstimate;
+
+    int64_t m_bulkBuildEntries;
+    int64_t m_bulkBuildMicros;
+    int64_t m_lastBulkBuildEntries;
+    int64_t m_lastBulkBuildMicros;
+
+    // Key statistics for the planner, and the number of entries added or
+    // removed since they were built. The histogram stays NULL until the
+    // first build.
+    bool m_hasKeyStatistics;
+    int64_t m_keyChanges;
+    int64_t m_keyStatisticsBuiltAt;
+    int64_t m_distinctKeys;
+    int64_t m_leadingDistinctKeys;
+    voltdb::NValue m_keyHistogram;
 };
 
 }
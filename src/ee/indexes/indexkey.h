@@ -118,6 +118,7 @@ inline uint64_t convertSignedValueToUnsignedValue<INT64_MAX, int64_t, uint64_t>(
 template <std::size_t keySize> struct IntsEqualityChecker;
 template <std::size_t keySize> struct IntsComparator;
 template <std::size_t keySize> struct IntsHasher;
+template <std::size_t keySize> struct IntsKeyPrefix;
 
 /**
  *  Integer key that will pack all key data into keySize number of uint64_t.
@@ -129,6 +130,7 @@ struct IntsKey
     typedef IntsEqualityChecker<keySize> KeyEqualityChecker;
     typedef IntsComparator<keySize> KeyComparator;
     typedef IntsHasher<keySize> KeyHasher;
+    typedef IntsKeyPrefix<keySize> KeyPrefix;
 
     static inline bool keyDependsOnTupleAddress() { return false; }
     static inline bool keyUsesNonInlinedMemory() { return false; }
@@ -412,9 +414,27 @@ struct IntsHasher
     }
 };
 
+/**
+ * Order-preserving 64-bit prefix of an IntsKey.
+ * Required by CompactingBTree keyed by IntsKey<>
+ * The packed key data already compares as unsigned words, so the leading
+ * word is the prefix.
+ */
+template <std::size_t keySize>
+struct IntsKeyPrefix
+{
+    IntsKeyPrefix() {}
+    IntsKeyPrefix(const TupleSchema *unused_keySchema) {}
+
+    inline bool enabled() const { return true; }
+
+    inline uint64_t operator()(const IntsKey<keySize> &key) const { return key.data[0]; }
+};
+
 template <std::size_t keySize> struct GenericEqualityChecker;
 template <std::size_t keySize> struct GenericComparator;
 template <std::size_t keySize> struct GenericHasher;
+template <std::size_t keySize> struct GenericKeyPrefix;
 
 /**
  * Key object for indexes of mixed types.
@@ -426,6 +446,7 @@ struct GenericKey
     typedef GenericEqualityChecker<keySize> KeyEqualityChecker;
     typedef GenericComparator<keySize> KeyComparator;
     typedef GenericHasher<keySize> KeyHasher;
+    typedef GenericKeyPrefix<keySize> KeyPrefix;
 
     static inline bool keyDependsOnTupleAddress() { return false; }
     static inline bool keyUsesNonInlinedMemory() { return true; } // maybe
@@ -642,6 +663,73 @@ private:
     const TupleSchema *m_keySchema;
 };
 
+/**
+ * Order-preserving 64-bit prefix of a GenericKey.
+ * Required by CompactingBTree keyed by GenericKey<>
+ * Only keys that lead with a fixed-width integral column get a prefix. The
+ * value is biased like an IntsKey column so that it compares as unsigned.
+ * NULLs are stored as the type's minimum value, so they still sort first.
+ */
+template <std::size_t keySize>
+struct GenericKeyPrefix
+{
+    GenericKeyPrefix() : m_leadingType(VALUE_TYPE_INVALID), m_offset(0) {}
+
+    GenericKeyPrefix(const TupleSchema *keySchema) : m_leadingType(VALUE_TYPE_INVALID), m_offset(0)
+    {
+        switch (keySchema->columnType(0)) {
+        case VALUE_TYPE_TINYINT:
+        case VALUE_TYPE_SMALLINT:
+        case VALUE_TYPE_INTEGER:
+        case VALUE_TYPE_BIGINT:
+        case VALUE_TYPE_TIMESTAMP:
+            m_leadingType = keySchema->columnType(0);
+            m_offset = keySchema->getColumnInfo(0)->offset;
+            break;
+        default:
+            break;
+        }
+    }
+
+    inline bool enabled() const { return m_leadingType != VALUE_TYPE_INVALID; }
+
+    inline uint64_t operator()(const GenericKey<keySize> &key) const
+    {
+        const char *column = key.data + m_offset;
+        int64_t value;
+        switch (m_leadingType) {
+        case VALUE_TYPE_TINYINT: {
+            int8_t narrow;
+            ::memcpy(&narrow, column, sizeof(narrow));
+            value = narrow;
+            break;
+        }
+        case VALUE_TYPE_SMALLINT: {
+            int16_t narrow;
+            ::memcpy(&narrow, column, sizeof(narrow));
+            value = narrow;
+            break;
+        }
+        case VALUE_TYPE_INTEGER: {
+            int32_t narrow;
+            ::memcpy(&narrow, column, sizeof(narrow));
+            value = narrow;
+            break;
+        }
+        case VALUE_TYPE_BIGINT:
+        case VALUE_TYPE_TIMESTAMP:
+            ::memcpy(&value, column, sizeof(value));
+            break;
+        default:
+            return 0;
+        }
+        return convertSignedValueToUnsignedValue<INT64_MAX, int64_t, uint64_t>(value);
+    }
+private:
+    ValueType m_leadingType;
+    uint32_t m_offset;
+};
+
 struct TupleKeyComparator;
 
 /*
@@ -44,6 +44,7 @@
  */
 
 #include <iostream>
+#include <sys/time.h>
 #include "indexes/tableindex.h"
 #include "expressions/abstractexpression.h"
 #include "expressions/expressionutil.h"
@@ -170,15 +171,52 @@ bool TableIndex::addEntry(const TableTuple *tuple)
         // Tuple fails the predicate. Do not add it.
         return true;
     }
+    m_stats.recordKeyChange();
     return addEntryDo(tuple);
 }
 
+void TableIndex::addEntriesInBulk(const std::vector<TableTuple> &tuples, std::vector<TableTuple> &conflicts)
+{
+    struct timeval start;
+    gettimeofday(&start, NULL);
+
+    if (isPartialIndex()) {
+        // Tuples that fail the predicate are not added.
+        std::vector<TableTuple> qualified;
+        qualified.reserve(tuples.size());
+        for (size_t i = 0; i < tuples.size(); ++i) {
+            if (getPredicate()->eval(&tuples[i], NULL).isTrue()) {
+                qualified.push_back(tuples[i]);
+            }
+        }
+        addEntriesInBulkDo(qualified, conflicts);
+    } else {
+        addEntriesInBulkDo(tuples, conflicts);
+    }
+
+    struct timeval end;
+    gettimeofday(&end, NULL);
+    int64_t elapsedMicros = (end.tv_sec - start.tv_sec) * 1000000 + (end.tv_usec - start.tv_usec);
+    m_stats.recordBulkBuild(static_cast<int64_t>(tuples.size()), elapsedMicros);
+    m_stats.recordKeyChange(static_cast<int64_t>(tuples.size()));
+}
+
+void TableIndex::addEntriesInBulkDo(const std::vector<TableTuple> &tuples, std::vector<TableTuple> &conflicts)
+{
+    for (size_t i = 0; i < tuples.size(); ++i) {
+        if ( ! addEntryDo(&tuples[i])) {
+            conflicts.push_back(tuples[i]);
+        }
+    }
+}
+
 bool TableIndex::deleteEntry(const TableTuple *tuple)
 {
     if (isPartialIndex() && !getPredicate()->eval(tuple, NULL).isTrue()) {
         // Tuple fails the predicate. Nothing to delete
         return true;
     }
+    m_stats.recordKeyChange();
     return deleteEntryDo(tuple);
 }
 
@@ -194,9 +232,11 @@ bool TableIndex::replaceEntryNoKeyChange(const TableTuple &destinationTuple, con
         } else if (predicate->eval(&destinationTuple, NULL).isTrue() && !predicate->eval(&originalTuple, NULL).isTrue()) {
             // The original tuple fails the predicate meaning the tuple is not indexed.
             // Simply add the new tuple
+            m_stats.recordKeyChange();
             return addEntryDo(&destinationTuple);
         } else if (!predicate->eval(&destinationTuple, NULL).isTrue() && predicate->eval(&originalTuple, NULL).isTrue()) {
             // The destination tuple fails the predicate. Simply delete the original tuple
+            m_stats.recordKeyChange();
             return deleteEntryDo(&originalTuple);
         } else {
             // both tuples pass the predicate.
@@ -48,6 +48,8 @@
 
 #include <vector>
 #include <string>
+#include <algorithm>
+#include <utility>
 #include "boost/shared_ptr.hpp"
 #include "boost/tuple/tuple.hpp"
 #include "common/ids.h"
@@ -230,6 +232,15 @@ public:
     bool replaceEntryNoKeyChange(const TableTuple &destinationTuple,
                                  const TableTuple &originalTuple);
 
+    /**
+     * Adds entries for a batch of tuples that were loaded into the table
+     * without index maintenance. Tuples whose key would be a duplicate in
+     * a unique index, either of an existing entry or of a tuple earlier in
+     * the batch, are not added and are appended to conflicts instead
+     * (in no particular order).
+     */
+    void addEntriesInBulk(const std::vector<TableTuple> &tuples, std::vector<TableTuple> &conflicts);
+
     /**
      * Does the key out-of-line strings or binary data?
      * Used for an optimization when key values are the same.
@@ -527,6 +538,43 @@ protected:
                                          const TableTuple &originalTuple) = 0;
     virtual bool existsDo(const TableTuple* values) const = 0;
     virtual bool checkForIndexChangeDo(const TableTuple *lhs, const TableTuple *rhs) const = 0;
+    // Adds the batch one entry at a time. Ordered indexes override this to
+    // add the batch in key order.
+    virtual void addEntriesInBulkDo(const std::vector<TableTuple> &tuples, std::vector<TableTuple> &conflicts);
+
+    /**
+     * Builds the keys for a batch of tuples and sorts them into index
+     * order. The sort is stable, so for a unique index the first tuple
+     * loaded with a given key stays first, and the ones after it are moved
+     * to conflicts. Keys that own out-of-line memory can't be copied around
+     * like this; callers are expected to use the one-at-a-time path for them.
+     */
+    template<typename KeyType, typename KeyComparator>
+    void sortBulkEntries(const std::vector<TableTuple> &tuples, const KeyComparator &cmp,
+                         std::vector<std::pair<KeyType, const void*> > &entries,
+                         std::vector<TableTuple> &conflicts) const
+    {
+        entries.reserve(tuples.size());
+        for (size_t i = 0; i < tuples.size(); ++i) {
+            entries.push_back(std::pair<KeyType, const void*>(
+                    KeyType(&tuples[i], m_scheme.columnIndices, m_scheme.indexedExpressions, m_keySchema),
+                    tuples[i].address()));
+        }
+        std::stable_sort(entries.begin(), entries.end(), BulkEntryLess<KeyType, KeyComparator>(cmp));
+        if ( ! isUniqueIndex() || entries.empty()) {
+            return;
+        }
+        size_t kept = 1;
+        for (size_t i = 1; i < entries.size(); ++i) {
+            if (cmp(entries[kept - 1].first, entries[i].first) == 0) {
+                conflicts.push_back(TableTuple(const_cast<char*>(static_cast<const char*>(entries[i].second)),
+                                               getTupleSchema()));
+            } else {
+                entries[kept++] = entries[i];
+            }
+        }
+        entries.resize(kept, entries[0]);
+    }
 
 private:
 
@@ -535,6 +583,17 @@ private:
         throwFatalException("Primary key index discovered to be non-unique or missing a cloneEmptyTreeIndex implementation.");
     }
 
+    template<typename KeyType, typename KeyComparator>
+    struct BulkEntryLess {
+        BulkEntryLess(const KeyComparator &cmp) : m_cmp(cmp) {}
+        bool operator()(const std::pair<KeyType, const void*> &lhs,
+                        const std::pair<KeyType, const void*> &rhs) const
+        {
+            return m_cmp(lhs.first, rhs.first) < 0;
+        }
+        const KeyComparator &m_cmp;
+    };
+
     ThreadLocalPool m_tlPool;
 };
 
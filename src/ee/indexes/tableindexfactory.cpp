@@ -54,6 +54,8 @@
 #include "indexes/indexkey.h"
 #include "indexes/CompactingTreeUniqueIndex.h"
 #include "indexes/CompactingTreeMultiMapIndex.h"
+#include "indexes/CompactingBTreeUniqueIndex.h"
+#include "indexes/CompactingBTreeMultiMapIndex.h"
 #include "indexes/CompactingHashUniqueIndex.h"
 #include "indexes/CompactingHashMultiMapIndex.h"
 
@@ -65,16 +67,26 @@ class TableIndexPicker
     TableIndex *getInstanceForKeyType() const
     {
         if (m_scheme.unique) {
-            if (m_type != BALANCED_TREE_INDEX) {
+            if (m_type == HASH_TABLE_INDEX) {
                 return new CompactingHashUniqueIndex<TKeyType >(m_keySchema, m_scheme);
+            } else if (m_type == BTREE_INDEX) {
+                if (m_scheme.countable) {
+                    return new CompactingBTreeUniqueIndex<NormalKeyValuePair<TKeyType>, true>(m_keySchema, m_scheme);
+                }
+                return new CompactingBTreeUniqueIndex<NormalKeyValuePair<TKeyType>, false>(m_keySchema, m_scheme);
             } else if (m_scheme.countable) {
                 return new CompactingTreeUniqueIndex<NormalKeyValuePair<TKeyType>, true>(m_keySchema, m_scheme);
             } else {
                 return new CompactingTreeUniqueIndex<NormalKeyValuePair<TKeyType>, false>(m_keySchema, m_scheme);
             }
         } else {
-            if (m_type != BALANCED_TREE_INDEX) {
+            if (m_type == HASH_TABLE_INDEX) {
                 return new CompactingHashMultiMapIndex<TKeyType >(m_keySchema, m_scheme);
+            } else if (m_type == BTREE_INDEX) {
+                if (m_scheme.countable) {
+                    return new CompactingBTreeMultiMapIndex<PointerKeyValuePair<TKeyType>, true>(m_keySchema, m_scheme);
+                }
+                return new CompactingBTreeMultiMapIndex<PointerKeyValuePair<TKeyType>, false>(m_keySchema, m_scheme);
             } else if (m_scheme.countable) {
                 return new CompactingTreeMultiMapIndex<PointerKeyValuePair<TKeyType>, true>(m_keySchema, m_scheme);
             } else {
@@ -109,6 +121,13 @@ class TableIndexPicker
         if (m_inlinesOrColumnsOnly) {
             return getInstanceForKeyType<GenericKey<KeySize> >();
         }
+        if (m_type == BTREE_INDEX) {
+            // CompactingBTree moves keys around by copying, which GenericPersistentKey does not tolerate.
+            VOLT_INFO("Producing a tree index for %s: "
+                      "B+tree index not currently supported for this index key.\n",
+                      m_scheme.name.c_str());
+            m_type = BALANCED_TREE_INDEX;
+        }
         return getInstanceForKeyType<GenericPersistentKey<KeySize> >();
     }
 
@@ -65,6 +65,10 @@ std::string IndexScanPlanNode::debugInfo(const std::string &spacer) const
     buffer << spacer << "SortDirection["
            << sortDirectionToString(m_sort_direction) << "]\n";
 
+    if (m_in_list_key_index >= 0) {
+        buffer << spacer << "InListKeyIndex[" << m_in_list_key_index << "]\n";
+    }
+
     buffer << spacer << "SearchKey Expressions:\n";
     for (int ctr = 0, cnt = (int)m_searchkey_expressions.size(); ctr < cnt; ctr++) {
         buffer << m_searchkey_expressions[ctr]->debug(spacer);
@@ -105,6 +109,10 @@ void IndexScanPlanNode::loadFromJSONObject(PlannerDomValue obj)
 
     m_target_index_name = obj.valueForKey("TARGET_INDEX_NAME").asStr();
 
+    if (obj.hasNonNullKey("IN_LIST_KEY_INDEX")) {
+        m_in_list_key_index = obj.valueForKey("IN_LIST_KEY_INDEX").asInt();
+    }
+
     m_end_expression.reset(loadExpressionFromJSONObject("END_EXPRESSION", obj));
     m_initial_expression.reset(loadExpressionFromJSONObject("INITIAL_EXPRESSION", obj));
     m_skip_null_predicate.reset(loadExpressionFromJSONObject("SKIP_NULL_PREDICATE", obj));
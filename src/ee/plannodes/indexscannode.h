@@ -58,6 +58,7 @@ public:
     IndexScanPlanNode()
         : m_lookup_type(INDEX_LOOKUP_TYPE_EQ)
         , m_sort_direction(SORT_DIRECTION_TYPE_INVALID)
+        , m_in_list_key_index(-1)
     { }
     ~IndexScanPlanNode();
     PlanNodeType getPlanNodeType() const;
@@ -78,6 +79,8 @@ public:
 
     AbstractExpression* getSkipNullPredicate() const { return m_skip_null_predicate.get(); }
 
+    int getInListKeyIndex() const { return m_in_list_key_index; }
+
 protected:
     void loadFromJSONObject(PlannerDomValue obj);
 
@@ -101,6 +104,10 @@ protected:
 
     // null row predicate for underflow edge case
     boost::scoped_ptr<AbstractExpression> m_skip_null_predicate;
+
+    // Position of the search key that evaluates to an IN LIST whose elements
+    // are each probed as an EQ key, or -1 for a single-key lookup
+    int m_in_list_key_index;
 };
 
 } // namespace voltdb
@@ -91,7 +91,7 @@ PlanNodeFragment::createFromCatalog(const string value)
     //cout << "DEBUG PlanNodeFragment::createFromCatalog: value.size() == " << value.size() << endl;
     //cout << "DEBUG PlanNodeFragment::createFromCatalog: value == " << value << endl;
 
-    PlannerDomRoot domRoot(value.c_str());
+    PlannerDomRoot domRoot(value.c_str(), value.size());
 
     PlanNodeFragment *retval = PlanNodeFragment::fromJSONObject(domRoot.rootObject());
     return retval;
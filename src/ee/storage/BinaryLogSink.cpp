@@ -32,7 +32,8 @@ namespace voltdb {
 
 BinaryLogSink::BinaryLogSink() {}
 
-void BinaryLogSink::apply(const char *taskParams, boost::unordered_map<int64_t, PersistentTable*> &tables, Pool *pool, VoltDBEngine *engine) {
+void BinaryLogSink::apply(const char *taskParams, boost::unordered_map<int64_t, PersistentTable*> &tables, Pool *pool, VoltDBEngine *engine,
+                          bool checksumsVerified) {
     ReferenceSerializeInputLE taskInfo(taskParams + 4, ntohl(*reinterpret_cast<const int32_t*>(taskParams)));
 
     int64_t __attribute__ ((unused)) uniqueId = 0;
@@ -57,7 +58,9 @@ void BinaryLogSink::apply(const char *taskParams, boost::unordered_map<int64_t,
             int32_t rowLength = taskInfo.readInt();
             rowData = reinterpret_cast<const char *>(taskInfo.getRawPointer(rowLength));
             checksum = taskInfo.readInt();
-            validateChecksum(checksum, recordStart, taskInfo.getRawPointer());
+            if (!checksumsVerified) {
+                validateChecksum(checksum, recordStart, taskInfo.getRawPointer());
+            }
 
             boost::unordered_map<int64_t, PersistentTable*>::iterator tableIter = tables.find(tableHandle);
             if (tableIter == tables.end()) {
@@ -105,7 +108,9 @@ void BinaryLogSink::apply(const char *taskParams, boost::unordered_map<int64_t,
             }
             sequenceNumber = tempSequenceNumber;
             checksum = taskInfo.readInt();
-            validateChecksum(checksum, recordStart, taskInfo.getRawPointer());
+            if (!checksumsVerified) {
+                validateChecksum(checksum, recordStart, taskInfo.getRawPointer());
+            }
             break;
         }
         case DR_RECORD_END_TXN: {
@@ -116,7 +121,9 @@ void BinaryLogSink::apply(const char *taskParams, boost::unordered_map<int64_t,
             }
 
             checksum = taskInfo.readInt();
-            validateChecksum(checksum, recordStart, taskInfo.getRawPointer());
+            if (!checksumsVerified) {
+                validateChecksum(checksum, recordStart, taskInfo.getRawPointer());
+            }
             break;
         }
         case DR_RECORD_TRUNCATE_TABLE: {
@@ -124,7 +131,9 @@ void BinaryLogSink::apply(const char *taskParams, boost::unordered_map<int64_t,
             std::string tableName = taskInfo.readTextString();
 
             checksum = taskInfo.readInt();
-            validateChecksum(checksum, recordStart, taskInfo.getRawPointer());
+            if (!checksumsVerified) {
+                validateChecksum(checksum, recordStart, taskInfo.getRawPointer());
+            }
 
             boost::unordered_map<int64_t, PersistentTable*>::iterator tableIter = tables.find(tableHandle);
             if (tableIter == tables.end()) {
@@ -29,7 +29,12 @@ class VoltDBEngine;
 class BinaryLogSink {
 public:
     BinaryLogSink();
-    void apply(const char* taskParams, boost::unordered_map<int64_t, PersistentTable*> &tables, Pool *pool, VoltDBEngine *engine);
+    /*
+     * checksumsVerified is set when the CRC of every record has already been
+     * checked by the caller, off the site thread
+     */
+    void apply(const char* taskParams, boost::unordered_map<int64_t, PersistentTable*> &tables, Pool *pool, VoltDBEngine *engine,
+               bool checksumsVerified = false);
 private:
     void validateChecksum(uint32_t expected, const char *start, const char *end);
 };
@@ -47,6 +47,7 @@ CopyOnWriteContext::CopyOnWriteContext(
              m_blocks(surgeon.getData()),
              m_tuple(table.schema()),
              m_finishedTableScan(false),
+             m_streamingDeletedTuples(false),
              m_totalTuples(totalTuples),
              m_tuplesRemaining(totalTuples),
              m_blocksCompacted(0),
@@ -70,7 +71,7 @@ TableStreamerContext::ActivationReturnCode
 CopyOnWriteContext::handleActivation(TableStreamType streamType)
 {
     // Only support snapshot streams.
-    if (streamType != TABLE_STREAM_SNAPSHOT) {
+    if (!tableStreamTypeIsSnapshot(streamType)) {
         return ACTIVATION_UNSUPPORTED;
     }
 
@@ -80,7 +81,32 @@ CopyOnWriteContext::handleActivation(TableStreamType streamType)
         return ACTIVATION_FAILED;
     }
 
-    m_surgeon.activateSnapshot();
+    if (streamType == TABLE_STREAM_SNAPSHOT_DELTA) {
+        // Rows are applied by primary key, and only on top of a base.
+        if (!m_surgeon.isTrackingChanges() || getTable().primaryKeyIndex() == NULL) {
+            char message[256];
+            snprintf(message, 256, "Can't take an incremental snapshot of table %s, "
+                     "changes to it were not tracked since the last one.",
+                     getTable().name().c_str());
+            LogManager::getThreadLogger(LOGGERID_HOST)->log(LOGLEVEL_WARN, message);
+            return ACTIVATION_FAILED;
+        }
+
+        // Only the blocks written to are scanned, followed by the deleted tuples.
+        m_surgeon.takeChanges(m_blocks, m_deletedTuples, m_deletedTuplesPool);
+        m_surgeon.activateDeltaSnapshot(m_blocks);
+        m_totalTuples = m_deletedTuples->activeTupleCount();
+        for (TBMapI i = m_blocks.begin(); i != m_blocks.end(); i++) {
+            m_totalTuples += i.data()->activeTuples();
+        }
+        m_tuplesRemaining = m_totalTuples;
+    }
+    else {
+        if (streamType == TABLE_STREAM_SNAPSHOT_BASE) {
+            m_surgeon.startTrackingChanges();
+        }
+        m_surgeon.activateSnapshot();
+    }
 
     m_iterator.reset(new CopyOnWriteIterator(&getTable(), &m_surgeon, m_blocks));
 
@@ -108,7 +134,8 @@ int64_t CopyOnWriteContext::handleStreamMore(TupleOutputStreamProcessor &outputS
                        getMaxTupleLength(),
                        getPartitionId(),
                        getPredicates(),
-                       getPredicateDeleteFlags());
+                       getPredicateDeleteFlags(),
+                       &getPredicateDeletedRowFlags());
 
     //=== Tuple processing loop
 
@@ -135,7 +162,11 @@ int64_t CopyOnWriteContext::handleStreamMore(TupleOutputStreamProcessor &outputS
              * The returned copy count helps decide when to delete if m_doDelete is true.
              */
             bool deleteTuple = false;
-            yield = outputStreams.writeRow(getSerializer(), tuple, &deleteTuple);
+            if (m_streamingDeletedTuples) {
+                yield = outputStreams.writeDeletedRow(getSerializer(), tuple);
+            } else {
+                yield = outputStreams.writeRow(getSerializer(), tuple, &deleteTuple);
+            }
             /*
              * May want to delete tuple if processing the actual table.
              */
@@ -169,6 +200,14 @@ int64_t CopyOnWriteContext::handleStreamMore(TupleOutputStreamProcessor &outputS
             m_finishedTableScan = true;
             m_iterator.reset(m_backedUpTuples.get()->makeIterator());
 
+        } else if (m_deletedTuples != NULL && !m_streamingDeletedTuples) {
+            /*
+             * A delta snapshot follows with the tuples deleted since the
+             * previous one.
+             */
+            m_streamingDeletedTuples = true;
+            m_iterator.reset(m_deletedTuples->makeIterator());
+
         } else {
             /*
              * No more tuples in the temp table and had previously finished the
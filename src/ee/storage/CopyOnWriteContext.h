@@ -126,6 +126,16 @@ private:
 
     bool m_finishedTableScan;
 
+    /**
+     * Copies of the tuples deleted since the previous incremental snapshot,
+     * streamed after the backed up tuples by a delta snapshot, and the pool
+     * that holds their strings. NULL for other snapshots.
+     */
+    boost::scoped_ptr<TempTable> m_deletedTuples;
+    boost::scoped_ptr<Pool> m_deletedTuplesPool;
+
+    bool m_streamingDeletedTuples;
+
     int64_t m_totalTuples;
     int64_t m_tuplesRemaining;
     int64_t m_blocksCompacted;
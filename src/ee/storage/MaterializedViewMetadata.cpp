@@ -15,6 +15,7 @@
  * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
  */
 #include "storage/MaterializedViewMetadata.h"
+#include <algorithm>
 #include <cassert>
 #include <cstdio>
 #include <vector>
@@ -22,6 +23,11 @@
 #include "common/PlannerDomValue.h"
 #include "common/FatalException.hpp"
 #include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "common/StringRef.h"
+#include "common/UndoAction.h"
+#include "common/UndoQuantum.h"
+#include "common/executorcontext.hpp"
 #include "catalog/catalog.h"
 #include "catalog/columnref.h"
 #include "catalog/column.h"
@@ -31,18 +37,115 @@
 #include "expressions/constantvalueexpression.h"
 #include "expressions/comparisonexpression.h"
 #include "expressions/expressionutil.h"
+#include "execution/VoltDBEngine.h"
 #include "indexes/tableindex.h"
 #include "storage/persistenttable.h"
+#include "storage/TableCatalogDelegate.hpp"
 #include "boost/foreach.hpp"
 #include "boost/shared_array.hpp"
 
 namespace voltdb {
 
+namespace {
+
+// What a node of a std::map costs beyond its value: the color and three links.
+const int64_t MAP_NODE_OVERHEAD = 4 * sizeof(void*);
+
+bool isObject(const NValue &value)
+{
+    const ValueType type = ValuePeeker::peekValueType(value);
+    return (type == VALUE_TYPE_VARCHAR || type == VALUE_TYPE_VARBINARY) && ! value.isNull();
+}
+
+/**
+ * A copy of the value that owns its object, if it has one, where the value
+ * may point into a tuple or the temp string pool.
+ */
+NValue persistentCopy(const NValue &value)
+{
+    if ( ! isObject(value)) {
+        return value;
+    }
+    const char *data = static_cast<const char*>(ValuePeeker::peekObjectValue_withoutNull(value));
+    const int32_t length = ValuePeeker::peekObjectLength_withoutNull(value);
+    if (ValuePeeker::peekValueType(value) == VALUE_TYPE_VARCHAR) {
+        return ValueFactory::getStringValue(std::string(data, length));
+    }
+    return ValueFactory::getBinaryValue(reinterpret_cast<const unsigned char*>(data), length);
+}
+
+int64_t objectMemory(const NValue &value)
+{
+    if ( ! isObject(value)) {
+        return 0;
+    }
+    return static_cast<int64_t>(StringRef::computeStringMemoryUsed(ValuePeeker::peekObjectLength_withoutNull(value)));
+}
+
+/**
+ * Reverses a change to the values a view keeps for a MIN or MAX column.
+ */
+class MinMaxValueUndoAction : public UndoAction {
+public:
+    MinMaxValueUndoAction(MaterializedViewMetadata *view, const std::vector<NValue> &groupKey,
+                          int aggIndex, const NValue &value, int64_t delta)
+        : m_view(view), m_aggIndex(aggIndex), m_value(persistentCopy(value)), m_delta(delta)
+    {
+        m_groupKey.reserve(groupKey.size());
+        for (size_t ii = 0; ii < groupKey.size(); ii++) {
+            m_groupKey.push_back(persistentCopy(groupKey[ii]));
+        }
+    }
+
+    virtual ~MinMaxValueUndoAction()
+    {
+        for (size_t ii = 0; ii < m_groupKey.size(); ii++) {
+            if (isObject(m_groupKey[ii])) {
+                m_groupKey[ii].free();
+            }
+        }
+        if (isObject(m_value)) {
+            m_value.free();
+        }
+    }
+
+    void undo() { m_view->changeMinMaxValueCount(m_groupKey, m_aggIndex, m_value, -m_delta); }
+
+    void release() {}
+
+private:
+    MaterializedViewMetadata *m_view;
+    std::vector<NValue> m_groupKey;
+    const int m_aggIndex;
+    const NValue m_value;
+    const int64_t m_delta;
+};
+
+}
+
+bool MaterializedViewMetadata::GroupKeyLess::operator()(const std::vector<NValue> &lhs,
+                                                        const std::vector<NValue> &rhs) const
+{
+    for (size_t ii = 0; ii < lhs.size(); ii++) {
+        const int comparison = lhs[ii].compare(rhs[ii]);
+        if (comparison != 0) {
+            return comparison < 0;
+        }
+    }
+    return false;
+}
+
 MaterializedViewMetadata::MaterializedViewMetadata(PersistentTable *srcTable,
                                                    PersistentTable *destTable,
                                                    catalog::MaterializedViewInfo *mvInfo)
     : m_srcTable(srcTable), m_target(destTable), m_index(destTable->primaryKeyIndex())
     , m_indexForMinMax(NULL)
+    , m_keepsMinMaxValues(false)
+    , m_minMaxSlotCount(0)
+    , m_minMaxValuesMemory(0)
+    , m_joinsResolved(true)
+    , m_joinedSchema(NULL)
+    , m_joinedTupleBackingStore(NULL)
     , m_filterPredicate(parsePredicate(mvInfo))
     , m_groupByColumnCount(parseGroupBy(mvInfo)) // also loads m_groupByExprs/Columns as needed
     , m_searchKeyValue(m_groupByColumnCount)
@@ -54,6 +157,7 @@ MaterializedViewMetadata::MaterializedViewMetadata(PersistentTable *srcTable,
     m_mvInfo = mvInfo;
 
     m_target->incrementRefcount();
+    m_target->setMaterializedViewSource(this);
     srcTable->addMaterializedView(this);
 
     // When updateTupleWithSpecificIndexes needs to be called,
@@ -70,23 +174,35 @@ MaterializedViewMetadata::MaterializedViewMetadata(PersistentTable *srcTable,
     }
 
     // handle index for min / max support
-    setIndexForMinMax(mvInfo->indexForMinMax());
+    for (int aggIndex = 0; aggIndex < m_aggColumnCount; aggIndex++) {
+        if (m_aggTypes[aggIndex] == EXPRESSION_TYPE_AGGREGATE_MIN ||
+            m_aggTypes[aggIndex] == EXPRESSION_TYPE_AGGREGATE_MAX) {
+            m_minMaxSlots.push_back((int)m_minMaxSlotCount++);
+        } else {
+            m_minMaxSlots.push_back(-1);
+        }
+    }
+    m_indexForMinMax = findIndex(m_srcTable, mvInfo->indexForMinMax());
+    m_keepsMinMaxValues = m_indexForMinMax == NULL && m_minMaxSlotCount > 0;
 
     allocateBackedTuples();
 
-    // Catch up on pre-existing source tuples UNLESS target tuples have already been migrated in.
-    if (( ! srcTable->isPersistentTableEmpty()) && m_target->isPersistentTableEmpty()) {
-        TableTuple scannedTuple(srcTable->schema());
-        TableIterator &iterator = srcTable->iterator();
-        while (iterator.next(scannedTuple)) {
-            processTupleInsert(scannedTuple, false);
-        }
+    // A view whose joined tables aren't all there yet catches up once they are.
+    initJoins();
+    if (m_joinsResolved) {
+        catchUpWithSourceTable();
     }
     VOLT_TRACE("Finish initialization...");
 }
 
 MaterializedViewMetadata::~MaterializedViewMetadata() {
     freeBackedTuples();
+    freeMinMaxValues();
+    releaseJoins(m_joins);
+    if (m_joinedSchema) {
+        TupleSchema::freeTupleSchema(m_joinedSchema);
+    }
+    delete[] m_joinedTupleBackingStore;
     delete m_filterPredicate;
     for (int ii = 0; ii < m_groupByExprs.size(); ++ii) {
         delete m_groupByExprs[ii];
@@ -94,6 +210,9 @@ MaterializedViewMetadata::~MaterializedViewMetadata() {
     for (int ii = 0; ii < m_aggExprs.size(); ++ii) {
         delete m_aggExprs[ii];
     }
+    if (m_target->materializedViewSource() == this) {
+        m_target->setMaterializedViewSource(NULL);
+    }
     m_target->decrementRefcount();
 }
 
@@ -103,6 +222,10 @@ void MaterializedViewMetadata::setTargetTable(PersistentTable * target)
 
     m_target = target;
     target->incrementRefcount();
+    target->setMaterializedViewSource(this);
+    if (oldTarget->materializedViewSource() == this) {
+        oldTarget->setMaterializedViewSource(NULL);
+    }
 
     // Re-initialize dependencies on the target table, allowing for widened columns
     m_index = m_target->primaryKeyIndex();
@@ -115,18 +238,430 @@ void MaterializedViewMetadata::setTargetTable(PersistentTable * target)
 
 void MaterializedViewMetadata::setIndexForMinMax(std::string indexForMinOrMax)
 {
-    m_indexForMinMax = NULL;
-    if (indexForMinOrMax.compare("") != 0) {
-        std::vector<TableIndex*> candidates = m_srcTable->allIndexes();
+    m_indexForMinMax = findIndex(m_srcTable, indexForMinOrMax);
+
+    // Keep the MIN and MAX values only for as long as there is no index to find them.
+    bool keepsMinMaxValues = m_indexForMinMax == NULL && m_minMaxSlotCount > 0;
+    if (keepsMinMaxValues != m_keepsMinMaxValues) {
+        freeMinMaxValues();
+        m_keepsMinMaxValues = keepsMinMaxValues;
+        if (m_keepsMinMaxValues) {
+            keepExistingMinMaxValues();
+        }
+    }
+}
+
+TableIndex* MaterializedViewMetadata::findIndex(PersistentTable *table, const std::string &indexName)
+{
+    if (indexName.compare("") != 0) {
+        std::vector<TableIndex*> candidates = table->allIndexes();
         for (int i = 0; i < candidates.size(); i++) {
-            if (indexForMinOrMax.compare(candidates[i]->getName()) == 0) {
-                m_indexForMinMax = candidates[i];
+            if (indexName.compare(candidates[i]->getName()) == 0) {
+                return candidates[i];
+            }
+        }
+    }
+    return NULL;
+}
+
+void MaterializedViewMetadata::catchUpWithSourceTable()
+{
+    // Catch up on pre-existing source tuples UNLESS target tuples have already been migrated in.
+    if (( ! m_srcTable->isPersistentTableEmpty()) && m_target->isPersistentTableEmpty()) {
+        TableTuple scannedTuple(m_srcTable->schema());
+        TableIterator &iterator = m_srcTable->iterator();
+        while (iterator.next(scannedTuple)) {
+            processTupleInsert(scannedTuple, false);
+        }
+    }
+    else if (m_keepsMinMaxValues) {
+        keepExistingMinMaxValues();
+    }
+}
+
+void MaterializedViewMetadata::initJoins()
+{
+    const catalog::CatalogMap<catalog::MaterializedViewJoin> &catalogJoins = m_mvInfo->joins();
+    m_joinsResolved = true;
+    if (catalogJoins.size() == 0) {
+        return;
+    }
+
+    // In the order of their columns in a joined row
+    std::map<int32_t, catalog::MaterializedViewJoin*> byPosition;
+    for (catalog::CatalogMap<catalog::MaterializedViewJoin>::field_map_iter joinIterator = catalogJoins.begin();
+         joinIterator != catalogJoins.end(); joinIterator++) {
+        byPosition[joinIterator->second->position()] = joinIterator->second;
+    }
+    m_joins.resize(byPosition.size());
+    size_t ii = 0;
+    for (std::map<int32_t, catalog::MaterializedViewJoin*>::const_iterator joinIterator = byPosition.begin();
+         joinIterator != byPosition.end(); ++joinIterator, ++ii) {
+        JoinedTable &join = m_joins[ii];
+        join.catalogJoin = joinIterator->second;
+        join.table = NULL;
+        join.index = NULL;
+        join.sourceIndex = NULL;
+        join.offset = joinIterator->first;
+        join.keyBackingStore = NULL;
+        join.sourceKeyBackingStore = NULL;
+        const catalog::CatalogMap<catalog::ColumnRef> &sourceColumns = join.catalogJoin->sourceColumns();
+        join.sourceColumns.resize(sourceColumns.size());
+        for (catalog::CatalogMap<catalog::ColumnRef>::field_map_iter colRefIterator = sourceColumns.begin();
+             colRefIterator != sourceColumns.end(); colRefIterator++) {
+            join.sourceColumns[colRefIterator->second->index()] = colRefIterator->second->column()->index();
+        }
+        if ( ! resolveJoin(join)) {
+            m_joinsResolved = false;
+        }
+    }
+
+    if (m_joinedSchema) {
+        TupleSchema::freeTupleSchema(m_joinedSchema);
+        m_joinedSchema = NULL;
+    }
+    delete[] m_joinedTupleBackingStore;
+    m_joinedTupleBackingStore = NULL;
+    m_joinedTuple = TableTuple();
+    if ( ! m_joinsResolved) {
+        return;
+    }
+
+    m_joinedSchema = TupleSchema::createTupleSchema(m_srcTable->schema());
+    BOOST_FOREACH(JoinedTable &join, m_joins) {
+        assert(join.offset == m_joinedSchema->columnCount());
+        TupleSchema *joinedSchema = TupleSchema::createTupleSchema(m_joinedSchema, join.table->schema());
+        TupleSchema::freeTupleSchema(m_joinedSchema);
+        m_joinedSchema = joinedSchema;
+    }
+    m_joinedTuple = TableTuple(m_joinedSchema);
+    m_joinedTupleBackingStore = new char[m_joinedSchema->tupleLength() + 1];
+    memset(m_joinedTupleBackingStore, 0, m_joinedSchema->tupleLength() + 1);
+    m_joinedTuple.move(m_joinedTupleBackingStore);
+}
+
+bool MaterializedViewMetadata::resolveJoin(JoinedTable &join)
+{
+    VoltDBEngine *engine = ExecutorContext::getEngine();
+    TableCatalogDelegate *tcd = engine ? engine->getTableDelegate(join.catalogJoin->table()->name()) : NULL;
+    if (tcd == NULL || tcd->getPersistentTable() == NULL) {
+        return false;
+    }
+    join.table = tcd->getPersistentTable();
+    join.table->incrementRefcount();
+    join.table->addJoinedMaterializedView(this);
+
+    join.index = findIndex(join.table, join.catalogJoin->index());
+    join.sourceIndex = findIndex(m_srcTable, join.catalogJoin->sourceIndex());
+    // While the catalog is changing, an index by that name may not be the one it describes yet.
+    if (join.index == NULL || join.sourceIndex == NULL ||
+        join.index->getColumnIndices().size() != join.sourceColumns.size() ||
+        join.sourceIndex->getColumnIndices().size() < join.sourceColumns.size()) {
+        return false;
+    }
+
+    // The leading columns of the source index are the source columns of the
+    // join, in an order of their own.
+    const std::vector<int> &sourceIndexColumns = join.sourceIndex->getColumnIndices();
+    join.columnsForSourceIndex.clear();
+    for (size_t keyIndex = 0; keyIndex < join.sourceColumns.size(); keyIndex++) {
+        std::vector<int>::const_iterator found =
+            std::find(join.sourceColumns.begin(), join.sourceColumns.end(), sourceIndexColumns[keyIndex]);
+        if (found == join.sourceColumns.end()) {
+            return false;
+        }
+        join.columnsForSourceIndex.push_back(join.index->getColumnIndices()[found - join.sourceColumns.begin()]);
+    }
+
+    const TupleSchema *keySchema = join.index->getKeySchema();
+    join.key = TableTuple(keySchema);
+    join.keyBackingStore = new char[keySchema->tupleLength() + 1];
+    memset(join.keyBackingStore, 0, keySchema->tupleLength() + 1);
+    join.key.move(join.keyBackingStore);
+
+    const TupleSchema *sourceKeySchema = join.sourceIndex->getKeySchema();
+    join.sourceKey = TableTuple(sourceKeySchema);
+    join.sourceKeyBackingStore = new char[sourceKeySchema->tupleLength() + 1];
+    memset(join.sourceKeyBackingStore, 0, sourceKeySchema->tupleLength() + 1);
+    join.sourceKey.move(join.sourceKeyBackingStore);
+    return true;
+}
+
+void MaterializedViewMetadata::releaseJoins(std::vector<JoinedTable> &joins)
+{
+    BOOST_FOREACH(JoinedTable &join, joins) {
+        if (join.table) {
+            join.table->dropJoinedMaterializedView(this);
+            join.table->decrementRefcount();
+        }
+        delete[] join.keyBackingStore;
+        delete[] join.sourceKeyBackingStore;
+    }
+    joins.clear();
+}
+
+void MaterializedViewMetadata::resolveJoins()
+{
+    if (m_joins.empty() && m_mvInfo->joins().size() == 0) {
+        return;
+    }
+    bool wasResolved = m_joinsResolved;
+    // Hold on to the tables until they are joined again.
+    std::vector<JoinedTable> previousJoins;
+    previousJoins.swap(m_joins);
+    initJoins();
+    releaseJoins(previousJoins);
+    if (m_joinsResolved && ! wasResolved) {
+        catchUpWithSourceTable();
+    }
+}
+
+bool MaterializedViewMetadata::joinSourceRow(const TableTuple &sourceTuple, const JoinedTable *changed,
+                                             const TableTuple *changedTuple)
+{
+    m_joinedTuple.setNValues(0, sourceTuple, 0, sourceTuple.sizeInValues());
+    BOOST_FOREACH(JoinedTable &join, m_joins) {
+        TableTuple joinedTuple;
+        if (&join == changed) {
+            joinedTuple = *changedTuple;
+        }
+        else {
+            for (int keyIndex = 0; keyIndex < join.sourceColumns.size(); keyIndex++) {
+                NValue value = sourceTuple.getNValue(join.sourceColumns[keyIndex]);
+                // A null joins nothing.
+                if (value.isNull()) {
+                    return false;
+                }
+                join.key.setNValue(keyIndex, value);
+            }
+            IndexCursor indexCursor(join.index->getTupleSchema());
+            join.index->moveToKey(&join.key, indexCursor);
+            joinedTuple = join.index->nextValueAtKey(indexCursor);
+            if (joinedTuple.isNullTuple()) {
+                return false;
+            }
+        }
+        m_joinedTuple.setNValues(join.offset, joinedTuple, 0, joinedTuple.sizeInValues());
+    }
+    return true;
+}
+
+void MaterializedViewMetadata::processJoinedTupleInsert(PersistentTable *joinedTable, const TableTuple &newTuple,
+                                                        bool fallible)
+{
+    processJoinedTupleChange(joinedTable, newTuple, true, fallible);
+}
+
+void MaterializedViewMetadata::processJoinedTupleDelete(PersistentTable *joinedTable, const TableTuple &oldTuple,
+                                                        bool fallible)
+{
+    processJoinedTupleChange(joinedTable, oldTuple, false, fallible);
+}
+
+void MaterializedViewMetadata::processJoinedTupleChange(PersistentTable *joinedTable, const TableTuple &tuple,
+                                                        bool isInsert, bool fallible)
+{
+    if ( ! m_joinsResolved) {
+        return;
+    }
+    JoinedTable *changed = NULL;
+    BOOST_FOREACH(JoinedTable &join, m_joins) {
+        if (join.table == joinedTable) {
+            changed = &join;
+            break;
+        }
+    }
+    if (changed == NULL) {
+        return;
+    }
+
+    // Look up the source rows with the tuple's join key, which may be a prefix
+    // of the source index's key.
+    TableIndex *sourceIndex = changed->sourceIndex;
+    const int keyCount = static_cast<int>(changed->columnsForSourceIndex.size());
+    const bool isPrefix = keyCount < sourceIndex->getColumnIndices().size();
+    changed->sourceKey.setAllNulls();
+    for (int keyIndex = 0; keyIndex < keyCount; keyIndex++) {
+        NValue value = tuple.getNValue(changed->columnsForSourceIndex[keyIndex]);
+        if (value.isNull()) {
+            return;
+        }
+        changed->sourceKey.setNValue(keyIndex, value);
+    }
+
+    const std::vector<int> &sourceIndexColumns = sourceIndex->getColumnIndices();
+    IndexCursor indexCursor(sourceIndex->getTupleSchema());
+    if (isPrefix) {
+        // Nulls sort first, so this is the first entry with the prefix.
+        sourceIndex->moveToKeyOrGreater(&changed->sourceKey, indexCursor);
+    }
+    else {
+        sourceIndex->moveToKey(&changed->sourceKey, indexCursor);
+    }
+    while (true) {
+        TableTuple sourceTuple;
+        if (isPrefix) {
+            sourceTuple = sourceIndex->nextValue(indexCursor);
+            if (sourceTuple.isNullTuple()) {
+                break;
+            }
+            bool matches = true;
+            for (int keyIndex = 0; keyIndex < keyCount; keyIndex++) {
+                if (sourceTuple.getNValue(sourceIndexColumns[keyIndex]).compare(
+                        changed->sourceKey.getNValue(keyIndex)) != 0) {
+                    matches = false;
+                    break;
+                }
+            }
+            if ( ! matches) {
                 break;
             }
         }
+        else {
+            sourceTuple = sourceIndex->nextValueAtKey(indexCursor);
+            if (sourceTuple.isNullTuple()) {
+                break;
+            }
+        }
+        if ( ! joinSourceRow(sourceTuple, changed, &tuple)) {
+            continue;
+        }
+        if (isInsert) {
+            processRowInsert(m_joinedTuple, fallible);
+        }
+        else {
+            processRowDelete(m_joinedTuple, fallible);
+        }
     }
 }
 
+void MaterializedViewMetadata::keepExistingMinMaxValues()
+{
+    TableTuple sourceTuple(m_srcTable->schema());
+    TableIterator &iterator = m_srcTable->iterator();
+    while (iterator.next(sourceTuple)) {
+        if ( ! m_joins.empty() && ! joinSourceRow(sourceTuple, NULL, NULL)) {
+            continue;
+        }
+        const TableTuple &tuple = m_joins.empty() ? sourceTuple : m_joinedTuple;
+        if (m_filterPredicate && !m_filterPredicate->eval(&tuple, NULL).isTrue()) {
+            continue;
+        }
+        for (int colindex = 0; colindex < m_groupByColumnCount; colindex++) {
+            m_searchKeyValue[colindex] = getGroupByValueFromSrcTuple(colindex, tuple);
+        }
+        for (int aggIndex = 0; aggIndex < m_aggColumnCount; aggIndex++) {
+            if (m_minMaxSlots[aggIndex] >= 0) {
+                NValue value = getAggInputFromSrcTuple(aggIndex, tuple);
+                if ( ! value.isNull()) {
+                    trackMinMaxValue(aggIndex, value, 1, false);
+                }
+            }
+        }
+    }
+}
+
+void MaterializedViewMetadata::freeMinMaxValues()
+{
+    for (MinMaxGroups::iterator group = m_minMaxValues.begin(); group != m_minMaxValues.end(); ++group) {
+        for (size_t ii = 0; ii < group->first.size(); ii++) {
+            if (isObject(group->first[ii])) {
+                group->first[ii].free();
+            }
+        }
+        for (size_t slot = 0; slot < group->second.size(); slot++) {
+            const MinMaxValues &values = group->second[slot];
+            for (MinMaxValues::const_iterator value = values.begin(); value != values.end(); ++value) {
+                if (isObject(value->first)) {
+                    value->first.free();
+                }
+            }
+        }
+    }
+    m_minMaxValues.clear();
+    m_minMaxValuesMemory = 0;
+}
+
+void MaterializedViewMetadata::trackMinMaxValue(int aggIndex, const NValue &value, int64_t delta, bool fallible)
+{
+    changeMinMaxValueCount(m_searchKeyValue, aggIndex, value, delta);
+    if (fallible) {
+        UndoQuantum *uq = ExecutorContext::currentUndoQuantum();
+        if (uq) {
+            uq->registerUndoAction(new (*uq) MinMaxValueUndoAction(this, m_searchKeyValue, aggIndex, value, delta));
+        }
+    }
+}
+
+void MaterializedViewMetadata::changeMinMaxValueCount(const std::vector<NValue> &groupKey, int aggIndex,
+                                                      const NValue &value, int64_t delta)
+{
+    MinMaxGroups::iterator group = m_minMaxValues.find(groupKey);
+    if (group == m_minMaxValues.end()) {
+        assert(delta > 0);
+        std::vector<NValue> ownKey;
+        ownKey.reserve(groupKey.size());
+        for (size_t ii = 0; ii < groupKey.size(); ii++) {
+            ownKey.push_back(persistentCopy(groupKey[ii]));
+            m_minMaxValuesMemory += objectMemory(groupKey[ii]);
+        }
+        group = m_minMaxValues.insert(std::make_pair(ownKey, std::vector<MinMaxValues>(m_minMaxSlotCount))).first;
+        m_minMaxValuesMemory += MAP_NODE_OVERHEAD + sizeof(MinMaxGroups::value_type) +
+            groupKey.size() * sizeof(NValue) + m_minMaxSlotCount * sizeof(MinMaxValues);
+    }
+
+    MinMaxValues &values = group->second[m_minMaxSlots[aggIndex]];
+    MinMaxValues::iterator kept = values.find(value);
+    if (kept == values.end()) {
+        assert(delta > 0);
+        values.insert(std::make_pair(persistentCopy(value), delta));
+        m_minMaxValuesMemory += MAP_NODE_OVERHEAD + sizeof(MinMaxValues::value_type) + objectMemory(value);
+        return;
+    }
+    kept->second += delta;
+    if (kept->second > 0) {
+        return;
+    }
+    assert(kept->second == 0);
+    m_minMaxValuesMemory -= MAP_NODE_OVERHEAD + sizeof(MinMaxValues::value_type) + objectMemory(kept->first);
+    if (isObject(kept->first)) {
+        kept->first.free();
+    }
+    values.erase(kept);
+
+    // The last row of the group is gone when all of its values are.
+    for (size_t slot = 0; slot < group->second.size(); slot++) {
+        if ( ! group->second[slot].empty()) {
+            return;
+        }
+    }
+    for (size_t ii = 0; ii < group->first.size(); ii++) {
+        m_minMaxValuesMemory -= objectMemory(group->first[ii]);
+        if (isObject(group->first[ii])) {
+            group->first[ii].free();
+        }
+    }
+    m_minMaxValuesMemory -= MAP_NODE_OVERHEAD + sizeof(MinMaxGroups::value_type) +
+        group->first.size() * sizeof(NValue) + m_minMaxSlotCount * sizeof(MinMaxValues);
+    m_minMaxValues.erase(group);
+}
+
+NValue MaterializedViewMetadata::keptMinMaxValue(int aggIndex, const NValue &initialNull)
+{
+    MinMaxGroups::const_iterator group = m_minMaxValues.find(m_searchKeyValue);
+    if (group == m_minMaxValues.end()) {
+        return initialNull;
+    }
+    const MinMaxValues &values = group->second[m_minMaxSlots[aggIndex]];
+    if (values.empty()) {
+        return initialNull;
+    }
+    if (m_aggTypes[aggIndex] == EXPRESSION_TYPE_AGGREGATE_MIN) {
+        return values.begin()->first;
+    }
+    return values.rbegin()->first;
+}
+
 void MaterializedViewMetadata::freeBackedTuples()
 {
     delete[] m_searchKeyBackingStore;
@@ -373,6 +908,26 @@ NValue MaterializedViewMetadata::findMinMaxFallbackValueSequential(const TableTu
 }
 
 void MaterializedViewMetadata::processTupleInsert(const TableTuple &newTuple, bool fallible)
+{
+    if (m_joins.empty()) {
+        processRowInsert(newTuple, fallible);
+    }
+    else if (m_joinsResolved && joinSourceRow(newTuple, NULL, NULL)) {
+        processRowInsert(m_joinedTuple, fallible);
+    }
+}
+
+void MaterializedViewMetadata::processTupleDelete(const TableTuple &oldTuple, bool fallible)
+{
+    if (m_joins.empty()) {
+        processRowDelete(oldTuple, fallible);
+    }
+    else if (m_joinsResolved && joinSourceRow(oldTuple, NULL, NULL)) {
+        processRowDelete(m_joinedTuple, fallible);
+    }
+}
+
+void MaterializedViewMetadata::processRowInsert(const TableTuple &newTuple, bool fallible)
 {
     // don't change the view if this tuple doesn't match the predicate
     if (m_filterPredicate && !m_filterPredicate->eval(&newTuple, NULL).isTrue()) {
@@ -409,6 +964,9 @@ void MaterializedViewMetadata::processTupleInsert(const TableTuple &newTuple, bo
         for (int aggIndex = 0; aggIndex < m_aggColumnCount; aggIndex++) {
             NValue existingValue = m_existingTuple.getNValue(aggOffset+aggIndex);
             NValue newValue = getAggInputFromSrcTuple(aggIndex, newTuple);
+            if (m_keepsMinMaxValues && m_minMaxSlots[aggIndex] >= 0 && ! newValue.isNull()) {
+                trackMinMaxValue(aggIndex, newValue, 1, fallible);
+            }
             if (newValue.isNull()) {
                 newValue = existingValue;
             } else {
@@ -455,6 +1013,9 @@ void MaterializedViewMetadata::processTupleInsert(const TableTuple &newTuple, bo
         // source column value is null.
         for (int aggIndex = 0; aggIndex < m_aggColumnCount; aggIndex++) {
             NValue newValue = getAggInputFromSrcTuple(aggIndex, newTuple);
+            if (m_keepsMinMaxValues && m_minMaxSlots[aggIndex] >= 0 && ! newValue.isNull()) {
+                trackMinMaxValue(aggIndex, newValue, 1, fallible);
+            }
             if (m_aggTypes[aggIndex] == EXPRESSION_TYPE_AGGREGATE_COUNT) {
                 if (newValue.isNull()) {
                     newValue = ValueFactory::getBigIntValue(0);
@@ -468,7 +1029,7 @@ void MaterializedViewMetadata::processTupleInsert(const TableTuple &newTuple, bo
     }
 }
 
-void MaterializedViewMetadata::processTupleDelete(const TableTuple &oldTuple, bool fallible)
+void MaterializedViewMetadata::processRowDelete(const TableTuple &oldTuple, bool fallible)
 {
     // don't change the view if this tuple doesn't match the predicate
     if (m_filterPredicate && !m_filterPredicate->eval(&oldTuple, NULL).isTrue())
@@ -489,6 +1050,17 @@ void MaterializedViewMetadata::processTupleDelete(const TableTuple &oldTuple, bo
 
     // check if we should remove the tuple
     if (count.isZero()) {
+        // The group's kept MIN and MAX values go with its last row.
+        if (m_keepsMinMaxValues) {
+            for (int aggIndex = 0; aggIndex < m_aggColumnCount; aggIndex++) {
+                if (m_minMaxSlots[aggIndex] >= 0) {
+                    NValue oldValue = getAggInputFromSrcTuple(aggIndex, oldTuple);
+                    if ( ! oldValue.isNull()) {
+                        trackMinMaxValue(aggIndex, oldValue, -1, fallible);
+                    }
+                }
+            }
+        }
         m_target->deleteTuple(m_existingTuple, fallible);
         return;
     }
@@ -524,12 +1096,18 @@ void MaterializedViewMetadata::processTupleDelete(const TableTuple &oldTuple, bo
                 reversedForMin = -1; // fall through...
                 /* no break */
             case EXPRESSION_TYPE_AGGREGATE_MAX:
+                if (m_keepsMinMaxValues) {
+                    trackMinMaxValue(aggIndex, oldValue, -1, fallible);
+                }
                 if (oldValue.compare(existingValue) == 0) {
                     // re-calculate MIN / MAX
                     newValue = NValue::getNullValue(m_target->schema()->columnType(aggOffset+aggIndex));
 
-                    // indexscan if an index is available, otherwise tablescan
-                    if (m_indexForMinMax) {
+                    // the kept values if there are any, else indexscan if an index is available,
+                    // otherwise tablescan
+                    if (m_keepsMinMaxValues) {
+                        newValue = keptMinMaxValue(aggIndex, newValue);
+                    } else if (m_indexForMinMax) {
                         newValue = findMinMaxFallbackValueIndexed(oldTuple, existingValue, newValue,
                                                                   reversedForMin, aggIndex);
                     } else {
@@ -18,12 +18,14 @@
 #ifndef MATERIALIZEDVIEWMETADATA_H_
 #define MATERIALIZEDVIEWMETADATA_H_
 
+#include <map>
 #include <vector>
 
 #include "common/types.h"
 #include "common/tabletuple.h"
 #include "indexes/tableindex.h"
 #include "catalog/materializedviewinfo.h"
+#include "catalog/materializedviewjoin.h"
 
 namespace voltdb {
 
@@ -55,6 +57,25 @@ public:
      */
     void processTupleDelete(const TableTuple &oldTuple, bool fallible);
 
+    /**
+     * Called when a table the view joins with its source table is inserting a tuple.
+     * The rows of the source table it joins are found through the join's source index
+     * and added to the view, joined with the new tuple.
+     */
+    void processJoinedTupleInsert(PersistentTable *joinedTable, const TableTuple &newTuple, bool fallible);
+
+    /**
+     * Called when a table the view joins with its source table is deleting a tuple,
+     * to take the rows of the source table it joins out of the view.
+     */
+    void processJoinedTupleDelete(PersistentTable *joinedTable, const TableTuple &oldTuple, bool fallible);
+
+    /**
+     * Look up the tables the view joins and their indexes again, as named by the
+     * catalog, after it has changed.
+     */
+    void resolveJoins();
+
     PersistentTable * targetTable() const { return m_target; }
     std::string indexForMinMax() const { return m_indexForMinMax == NULL ? "" : m_indexForMinMax->getName(); }
 
@@ -64,11 +85,83 @@ public:
     catalog::MaterializedViewInfo* getMaterializedViewInfo() {
         return m_mvInfo;
     }
+
+    /**
+     * Bytes held by the values kept per group for the MIN and MAX columns,
+     * which is zero unless the view keeps them.
+     */
+    int64_t minMaxValuesMemorySize() const { return m_minMaxValuesMemory; }
+
+    /**
+     * Add delta rows with the given value to the values kept for a MIN or
+     * MAX column of a group. Used directly only to undo a change.
+     */
+    void changeMinMaxValueCount(const std::vector<NValue> &groupKey, int aggIndex,
+                                const NValue &value, int64_t delta);
+
 private:
+    // A table the view joins with its source table, on the key of one of its
+    // unique indexes, so a source row joins at most one of its rows.
+    struct JoinedTable {
+        catalog::MaterializedViewJoin *catalogJoin;
+        PersistentTable *table;
+        // its unique index on the join key
+        TableIndex *index;
+        // the columns of the source table equal to the columns of that key, in key order
+        std::vector<int> sourceColumns;
+        // an index on the source table whose leading columns are the source columns
+        TableIndex *sourceIndex;
+        // for each of those leading columns, the column of this table it is equal to
+        std::vector<int> columnsForSourceIndex;
+        // where the columns of this table start in a joined row
+        int offset;
+        TableTuple key;
+        char *keyBackingStore;
+        TableTuple sourceKey;
+        char *sourceKeyBackingStore;
+    };
+
+    // The distinct values of a MIN or MAX column in one group, each with the
+    // number of source rows that have it.
+    typedef std::map<NValue, int64_t, NValue::ltNValue> MinMaxValues;
+
+    struct GroupKeyLess {
+        bool operator()(const std::vector<NValue> &lhs, const std::vector<NValue> &rhs) const;
+    };
+
+    // The MinMaxValues of each MIN or MAX column, by group.
+    typedef std::map<std::vector<NValue>, std::vector<MinMaxValues>, GroupKeyLess> MinMaxGroups;
+
+    static TableIndex* findIndex(PersistentTable *table, const std::string &indexName);
 
     void freeBackedTuples();
     void allocateBackedTuples();
 
+    /** Set up the joins from the catalog, resolving them if the tables are there yet */
+    void initJoins();
+    bool resolveJoin(JoinedTable &join);
+    void releaseJoins(std::vector<JoinedTable> &joins);
+
+    /** Bring a new view up to date with the rows already in its tables */
+    void catchUpWithSourceTable();
+
+    /**
+     * Fill the joined row with a source row and the row of each joined table it
+     * joins, using the given row for the changed table if there is one. Returns
+     * false if the source row doesn't join a row of every table.
+     */
+    bool joinSourceRow(const TableTuple &sourceTuple, const JoinedTable *changed, const TableTuple *changedTuple);
+
+    /**
+     * Apply a change to a row of a joined table to the view, for each source row
+     * it joins.
+     */
+    void processJoinedTupleChange(PersistentTable *joinedTable, const TableTuple &tuple, bool isInsert, bool fallible);
+
+    /** The view maintenance for one row of the source table, or joined row */
+    void processRowInsert(const TableTuple &newTuple, bool fallible);
+    void processRowDelete(const TableTuple &oldTuple, bool fallible);
+
     /** load a predicate from the catalog structure if it's there */
     static AbstractExpression* parsePredicate(catalog::MaterializedViewInfo *mvInfo);
 
@@ -95,6 +188,20 @@ private:
                                              int negate_for_min,
                                              int aggIndex);
 
+    /**
+     * Count a source row's value for a MIN or MAX column into (delta 1) or
+     * out of (delta -1) the values kept for the group in m_searchKeyValue,
+     * with an undo action if the change is fallible.
+     */
+    void trackMinMaxValue(int aggIndex, const NValue &value, int64_t delta, bool fallible);
+
+    /** The least (MIN) or greatest (MAX) value kept for the group in m_searchKeyValue */
+    NValue keptMinMaxValue(int aggIndex, const NValue &initialNull);
+
+    /** Keep the values of the source rows already in the view */
+    void keepExistingMinMaxValues();
+    void freeMinMaxValues();
+
     // the source persistent table
     PersistentTable *m_srcTable;
     // the materialized view table
@@ -109,6 +216,17 @@ private:
     // the index on srcTable which can be used to maintain min/max
     TableIndex *m_indexForMinMax;
 
+    // Without such an index, deleting a row with a group's MIN or MAX would
+    // have to scan the whole source table for the new one. Instead the view
+    // keeps the values of those columns in order, per group.
+    bool m_keepsMinMaxValues;
+    MinMaxGroups m_minMaxValues;
+    // for each aggregate, its position in the vector of MinMaxValues of a
+    // group if it is a MIN or MAX, and -1 otherwise
+    std::vector<int> m_minMaxSlots;
+    std::size_t m_minMaxSlotCount;
+    int64_t m_minMaxValuesMemory;
+
     // space to store temp view tuples
     TableTuple m_existingTuple;
     TableTuple m_updatedTuple;
@@ -116,6 +234,18 @@ private:
     TableTuple m_emptyTuple;
     char *m_emptyTupleBackingStore;
 
+    // The tables the view joins with the source table, in the order of their
+    // columns in a joined row, which starts with the columns of the source table.
+    // The predicate and the group by and aggregate expressions of such a view are
+    // evaluated on the joined row.
+    std::vector<JoinedTable> m_joins;
+    // Whether the joins have been resolved since the view was set up, which
+    // waits for the catalog to have all of the tables a view joins.
+    bool m_joinsResolved;
+    TupleSchema *m_joinedSchema;
+    TableTuple m_joinedTuple;
+    char *m_joinedTupleBackingStore;
+
     // predicate to include or exclude rows from being
     // part of the aggregation in the materialized view
     AbstractExpression *m_filterPredicate;
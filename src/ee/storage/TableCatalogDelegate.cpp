@@ -42,6 +42,7 @@
 #include <boost/foreach.hpp>
 #include <boost/lexical_cast.hpp>
 
+#include <algorithm>
 #include <string>
 #include <vector>
 #include <map>
@@ -94,6 +95,20 @@ TupleSchema *TableCatalogDelegate::createTupleSchema(catalog::Table const &catal
                                           columnInBytes);
 }
 
+vector<int> TableCatalogDelegate::getCompressedColumns(catalog::Table const &catalogTable) {
+    vector<int> columnIndexes;
+    map<string, catalog::Column*>::const_iterator col_iterator;
+    for (col_iterator = catalogTable.columns().begin();
+         col_iterator != catalogTable.columns().end(); col_iterator++) {
+        const catalog::Column *catalog_column = col_iterator->second;
+        if (catalog_column->compressed()) {
+            columnIndexes.push_back(catalog_column->index());
+        }
+    }
+    std::sort(columnIndexes.begin(), columnIndexes.end());
+    return columnIndexes;
+}
+
 bool TableCatalogDelegate::getIndexScheme(catalog::Table const &catalogTable,
                                           catalog::Index const &catalogIndex,
                                           const TupleSchema *schema,
@@ -173,6 +188,9 @@ getIndexIdFromMap(TableIndexType type, bool countable, bool isUnique,
         case HASH_TABLE_INDEX:
             retval += "H";
             break;
+        case BTREE_INDEX:
+            retval += "P";
+            break;
         default:
             // this would need to change if we added index types
             assert(false);
@@ -399,6 +417,11 @@ Table *TableCatalogDelegate::constructTableFromCatalog(catalog::Database const &
                                                     compactionThreshold,
                                                     drEnabled);
 
+    PersistentTable *persistentTable = dynamic_cast<PersistentTable*>(table);
+    if (persistentTable != NULL) {
+        persistentTable->setCompressedColumns(getCompressedColumns(catalogTable));
+    }
+
     // add a pkey index if one exists
     if (pkey_index_id.size() != 0) {
         TableIndex *pkeyIndex = TableIndexFactory::getInstance(pkey_index_scheme);
@@ -75,6 +75,11 @@ class TableCatalogDelegate : public CatalogDelegate {
 
     static TupleSchema *createTupleSchema(catalog::Table const &catalogTable);
 
+    /**
+     * Return the indexes of the columns marked to be stored compressed.
+     */
+    static std::vector<int> getCompressedColumns(catalog::Table const &catalogTable);
+
     static bool getIndexScheme(catalog::Table const &catalogTable,
                                catalog::Index const &catalogIndex,
                                const TupleSchema *schema,
@@ -39,6 +39,9 @@ vector<string> TableStats::generateTableStatsColumnNames() {
     columnNames.push_back("STRING_DATA_MEMORY");
     columnNames.push_back("TUPLE_LIMIT");
     columnNames.push_back("PERCENT_FULL");
+    columnNames.push_back("STRING_COMPRESSED_MEMORY");
+    columnNames.push_back("STRING_UNCOMPRESSED_MEMORY");
+    columnNames.push_back("VIEW_MINMAX_MEMORY");
     return columnNames;
 }
 
@@ -56,6 +59,11 @@ void TableStats::populateTableStatsSchema(
     types.push_back(VALUE_TYPE_INTEGER); columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_INTEGER)); allowNull.push_back(false);inBytes.push_back(false);
     types.push_back(VALUE_TYPE_INTEGER); columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_INTEGER)); allowNull.push_back(false);inBytes.push_back(false);
     types.push_back(VALUE_TYPE_INTEGER); columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_INTEGER)); allowNull.push_back(false);inBytes.push_back(false);
+    // compressed string data memory and what it would be uncompressed
+    types.push_back(VALUE_TYPE_INTEGER); columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_INTEGER)); allowNull.push_back(false);inBytes.push_back(false);
+    types.push_back(VALUE_TYPE_INTEGER); columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_INTEGER)); allowNull.push_back(false);inBytes.push_back(false);
+    // memory a view keeps its MIN and MAX values in
+    types.push_back(VALUE_TYPE_INTEGER); columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_INTEGER)); allowNull.push_back(false);inBytes.push_back(false);
 }
 
 Table*
@@ -91,7 +99,8 @@ TableStats::generateEmptyTableStatsTable()
 TableStats::TableStats(Table* table)
     : StatsSource(), m_table(table), m_lastTupleCount(0),
       m_lastAllocatedTupleMemory(0), m_lastOccupiedTupleMemory(0),
-      m_lastStringDataMemory(0)
+      m_lastStringDataMemory(0), m_lastCompressedStringMemory(0),
+      m_lastUncompressedStringMemory(0), m_lastViewMinMaxMemory(0)
 {
 }
 
@@ -137,6 +146,9 @@ void TableStats::updateStatsTuple(TableTuple *tuple) {
         occupied_tuple_mem_kb = m_table->occupiedTupleMemory() / 1024;
     }
     int64_t string_data_mem_kb = m_table->nonInlinedMemorySize() / 1024;
+    int64_t compressed_string_mem_kb = m_table->compressedStringMemorySize() / 1024;
+    int64_t uncompressed_string_mem_kb = m_table->uncompressedStringMemorySize() / 1024;
+    int64_t view_minmax_mem_kb = m_table->viewMinMaxMemorySize() / 1024;
 
     if (interval()) {
         tupleCount = tupleCount - m_lastTupleCount;
@@ -150,6 +162,15 @@ void TableStats::updateStatsTuple(TableTuple *tuple) {
         string_data_mem_kb =
             string_data_mem_kb - (m_lastStringDataMemory / 1024);
         m_lastStringDataMemory = m_table->nonInlinedMemorySize();
+        compressed_string_mem_kb =
+            compressed_string_mem_kb - (m_lastCompressedStringMemory / 1024);
+        m_lastCompressedStringMemory = m_table->compressedStringMemorySize();
+        uncompressed_string_mem_kb =
+            uncompressed_string_mem_kb - (m_lastUncompressedStringMemory / 1024);
+        m_lastUncompressedStringMemory = m_table->uncompressedStringMemorySize();
+        view_minmax_mem_kb =
+            view_minmax_mem_kb - (m_lastViewMinMaxMemory / 1024);
+        m_lastViewMinMaxMemory = m_table->viewMinMaxMemorySize();
     }
 
     if (string_data_mem_kb > INT32_MAX)
@@ -164,6 +185,18 @@ void TableStats::updateStatsTuple(TableTuple *tuple) {
     {
         occupied_tuple_mem_kb = -1;
     }
+    if (compressed_string_mem_kb > INT32_MAX)
+    {
+        compressed_string_mem_kb = -1;
+    }
+    if (uncompressed_string_mem_kb > INT32_MAX)
+    {
+        uncompressed_string_mem_kb = -1;
+    }
+    if (view_minmax_mem_kb > INT32_MAX)
+    {
+        view_minmax_mem_kb = -1;
+    }
 
     tuple->setNValue(
             StatsSource::m_columnName2Index["TUPLE_COUNT"],
@@ -183,6 +216,12 @@ void TableStats::updateStatsTuple(TableTuple *tuple) {
         percentage = static_cast<int32_t> (ceil(static_cast<double>(tupleCount) * 100.0 / tupleLimit));
     }
     tuple->setNValue(StatsSource::m_columnName2Index["PERCENT_FULL"],ValueFactory::getIntegerValue(percentage));
+    tuple->setNValue(StatsSource::m_columnName2Index["STRING_COMPRESSED_MEMORY"],
+            ValueFactory::getIntegerValue(static_cast<int32_t>(compressed_string_mem_kb)));
+    tuple->setNValue(StatsSource::m_columnName2Index["STRING_UNCOMPRESSED_MEMORY"],
+            ValueFactory::getIntegerValue(static_cast<int32_t>(uncompressed_string_mem_kb)));
+    tuple->setNValue(StatsSource::m_columnName2Index["VIEW_MINMAX_MEMORY"],
+            ValueFactory::getIntegerValue(static_cast<int32_t>(view_minmax_mem_kb)));
 }
 
 /**
@@ -108,6 +108,9 @@ private:
     int64_t m_lastAllocatedTupleMemory;
     int64_t m_lastOccupiedTupleMemory;
     int64_t m_lastStringDataMemory;
+    int64_t m_lastCompressedStringMemory;
+    int64_t m_lastUncompressedStringMemory;
+    int64_t m_lastViewMinMaxMemory;
 };
 
 }
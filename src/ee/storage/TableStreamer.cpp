@@ -98,6 +98,8 @@ bool TableStreamer::activateStream(PersistentTableSurgeon &surgeon,
             boost::shared_ptr<TableStreamerContext> context;
             switch (streamType) {
                 case TABLE_STREAM_SNAPSHOT:
+                case TABLE_STREAM_SNAPSHOT_BASE:
+                case TABLE_STREAM_SNAPSHOT_DELTA:
                     // Constructor can throw exception when it parses the predicates.
                     context.reset(
                         new CopyOnWriteContext(m_table, surgeon, serializer, m_partitionId,
@@ -197,6 +197,14 @@ protected:
         return m_predicateDeleteFlags;
     }
 
+    /**
+     * Predicate deleted rows flags accessor.
+     */
+    std::vector<bool> &getPredicateDeletedRowFlags()
+    {
+        return m_predicateDeletedRowFlags;
+    }
+
     PersistentTableSurgeon &m_surgeon;
 
     /**
@@ -216,6 +224,12 @@ private:
      */
     std::vector<bool> m_predicateDeleteFlags;
 
+    /**
+     * Per-predicate flags, true if the stream gets the rows deleted since the
+     * previous incremental snapshot rather than the table rows.
+     */
+    std::vector<bool> m_predicateDeletedRowFlags;
+
     /**
      * Maximum serialized length of a tuple
      */
@@ -19,6 +19,7 @@
 #include <sys/mman.h>
 #include <errno.h>
 #include "common/ThreadLocalPool.h"
+#include "common/LargePageAllocator.h"
 
 namespace voltdb {
 
@@ -26,6 +27,7 @@ volatile int tupleBlocksAllocated = 0;
 
 TupleBlock::TupleBlock(Table *table, TBBucketPtr bucket) :
         m_storage(NULL),
+        m_storageSize(static_cast<size_t>(table->m_tableAllocationSize)),
         m_references(0),
         m_tupleLength(table->m_tupleLength),
         m_tuplesPerBlock(table->m_tuplesPerBlock),
@@ -34,7 +36,8 @@ TupleBlock::TupleBlock(Table *table, TBBucketPtr bucket) :
         m_lastCompactionOffset(0),
         m_tuplesPerBlockDivNumBuckets(m_tuplesPerBlock / static_cast<double>(TUPLE_BLOCK_NUM_BUCKETS)),
         m_bucket(bucket),
-        m_bucketIndex(0)
+        m_bucketIndex(0),
+        m_changed(true)
 {
 #ifdef USE_MMAP
     size_t tableAllocationSize = static_cast<size_t> (m_tupleLength * m_tuplesPerBlock);
@@ -44,7 +47,7 @@ TupleBlock::TupleBlock(Table *table, TBBucketPtr bucket) :
         throwFatalException("Failed mmap");
     }
 #else
-    m_storage = new char[table->m_tableAllocationSize];
+    m_storage = static_cast<char*>(LargePageAllocator::allocate(m_storageSize));
 #endif
     tupleBlocksAllocated++;
 }
@@ -57,7 +60,7 @@ TupleBlock::~TupleBlock() {
         throwFatalException("Failed munmap");
     }
 #else
-    delete []m_storage;
+    LargePageAllocator::deallocate(m_storage, m_storageSize);
 #endif
 }
 
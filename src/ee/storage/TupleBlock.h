@@ -222,8 +222,25 @@ public:
     inline TBBucketPtr currentBucket() {
         return m_bucket;
     }
+
+    /**
+     * Whether a tuple was written to this block since the last incremental
+     * snapshot. Only maintained while the table is tracking changes.
+     */
+    inline bool isChanged() const {
+        return m_changed;
+    }
+
+    inline void markChanged() {
+        m_changed = true;
+    }
+
+    inline void clearChanged() {
+        m_changed = false;
+    }
 private:
     char*   m_storage;
+    size_t m_storageSize;
     uint32_t m_references;
     uint32_t m_tupleLength;
     uint32_t m_tuplesPerBlock;
@@ -243,6 +260,7 @@ private:
 
     TBBucketPtr m_bucket;
     int m_bucketIndex;
+    bool m_changed;
 };
 
 /**
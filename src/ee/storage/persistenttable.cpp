@@ -70,6 +70,7 @@
 #include "logging/LogManager.h"
 #include "storage/tableiterator.h"
 #include "storage/tablefactory.h"
+#include "storage/temptable.h"
 #include "storage/TableCatalogDelegate.hpp"
 #include "storage/PersistentTableStats.h"
 #include "storage/PersistentTableUndoInsertAction.h"
@@ -88,6 +89,13 @@ TableTuple keyTuple;
 
 #define TABLE_BLOCKSIZE 2097152
 
+// Loaded batches at least this big get their index entries built in bulk.
+#define BULK_INDEX_BUILD_MIN_TUPLES 100
+
+// Change tracking gives up once more tuples than this, or than the table
+// holds, were deleted since the last incremental snapshot.
+#define DELETED_SINCE_SNAPSHOT_MIN_LIMIT 100000
+
 PersistentTable::PersistentTable(int partitionColumn, char * signature, bool isMaterialized, int tableAllocationTargetSize, int tupleLimit, bool drEnabled) :
     Table(tableAllocationTargetSize == 0 ? TABLE_BLOCKSIZE : tableAllocationTargetSize),
     m_iter(this),
@@ -95,7 +103,12 @@ PersistentTable::PersistentTable(int partitionColumn, char * signature, bool isM
     m_partitionColumn(partitionColumn),
     m_tupleLimit(tupleLimit),
     m_purgeExecutorVector(),
+    m_materializedViewSource(NULL),
+    m_deferIndexMaintenance(false),
     stats_(this),
+    m_trackChanges(false),
+    m_writeEpoch(&m_unsharedWriteEpoch),
+    m_unsharedWriteEpoch(0),
     m_failedCompactionCount(0),
     m_invisibleTuplesPendingDeleteCount(0),
     m_surgeon(*this),
@@ -135,6 +148,11 @@ PersistentTable::~PersistentTable()
         delete m_views[i];
     }
 
+    // only after every compressed value is gone
+    BOOST_FOREACH(StringCompressor *compressor, m_stringCompressors) {
+        delete compressor;
+    }
+
     // Indexes are deleted in parent class Table destructor.
 }
 
@@ -168,6 +186,9 @@ void PersistentTable::nextFreeTuple(TableTuple *tuple) {
 
         tuple->move(retval.first);
         ++m_tupleCount;
+        if (m_trackChanges) {
+            block->markChanged();
+        }
         if (!block->hasFreeTuples()) {
             m_blocksWithSpace.erase(block);
         }
@@ -209,6 +230,26 @@ void PersistentTable::nextFreeTuple(TableTuple *tuple) {
     }
 }
 
+void PersistentTable::recordDeletedTuple(TableTuple &tuple) {
+    m_deletedSinceSnapshot->insertTupleNonVirtualWithDeepCopy(tuple, m_deletedSinceSnapshotPool.get());
+    int64_t limit = std::max(activeTupleCount(), static_cast<int64_t>(DELETED_SINCE_SNAPSHOT_MIN_LIMIT));
+    if (m_deletedSinceSnapshot->activeTupleCount() > limit) {
+        // A delta would not be any cheaper than a full snapshot by now.
+        char message[256];
+        snprintf(message, 256, "Stopped tracking changes to table %s after %jd deletes, "
+                 "the next incremental snapshot needs a new base.",
+                 m_name.c_str(), (intmax_t)m_deletedSinceSnapshot->activeTupleCount());
+        LogManager::getThreadLogger(LOGGERID_HOST)->log(LOGLEVEL_WARN, message);
+        stopTrackingChanges();
+    }
+}
+
+void PersistentTable::stopTrackingChanges() {
+    m_trackChanges = false;
+    m_deletedSinceSnapshot.reset(NULL);
+    m_deletedSinceSnapshotPool.reset(NULL);
+}
+
 void PersistentTable::deleteAllTuples(bool freeAllocatedStrings) {
     // nothing interesting
     TableIterator ti(this, m_data.begin());
@@ -236,11 +277,13 @@ void PersistentTable::truncateTableForUndo(VoltDBEngine * engine, TableCatalogDe
         targetTcd->deleteCommand();
         // update the view table pointer with the original view
         targetTcd->setTable(targetTable);
+        targetTable->bumpWriteEpoch();
     }
     this->decrementRefcount();
 
     // reset base table pointer
     tcd->setTable(originalTable);
+    originalTable->bumpWriteEpoch();
 
     engine->rebuildTableCollections();
 }
@@ -273,6 +316,13 @@ void PersistentTable::truncateTableRelease(PersistentTable *originalTable) {
 
 
 void PersistentTable::truncateTable(VoltDBEngine* engine, bool fallible) {
+    // The views that join this table with their source table hold on to it,
+    // so its rows are deleted one at a time, each taken out of those views.
+    if ( ! m_joinedViews.empty()) {
+        deleteAllTuples(true);
+        return;
+    }
+
     TableCatalogDelegate * tcd = engine->getTableDelegate(m_name);
     assert(tcd);
 
@@ -286,6 +336,8 @@ void PersistentTable::truncateTable(VoltDBEngine* engine, bool fallible) {
     PersistentTable * emptyTable = tcd->getPersistentTable();
     assert(emptyTable);
     assert(emptyTable->views().size() == 0);
+    // The empty tables take over the write epochs when the collections are rebuilt
+    bumpWriteEpoch();
     if (m_tableStreamer != NULL && m_tableStreamer->hasStreamType(TABLE_STREAM_ELASTIC_INDEX)) {
         // There is an Elastic Index work going on and it should continue access the old table.
         // Add one reference count to keep the original table.
@@ -295,6 +347,7 @@ void PersistentTable::truncateTable(VoltDBEngine* engine, bool fallible) {
     // add matView
     BOOST_FOREACH(MaterializedViewMetadata * originalView, m_views) {
         PersistentTable * targetTable = originalView->targetTable();
+        targetTable->bumpWriteEpoch();
         TableCatalogDelegate * targetTcd =  engine->getTableDelegate(targetTable->name());
         catalog::Table *catalogViewTable = engine->getCatalogTable(targetTable->name());
 
@@ -388,6 +441,7 @@ void PersistentTable::insertPersistentTuple(TableTuple &source, bool fallible)
     // Then copy the source into the target
     //
     target.copyForPersistentInsert(source); // tuple in freelist must be already cleared
+    compressObjectColumns(target);
 
     try {
         insertTupleCommon(source, target, fallible);
@@ -397,7 +451,103 @@ void PersistentTable::insertPersistentTuple(TableTuple &source, bool fallible)
     }
 }
 
+void PersistentTable::compressObjectColumns(TableTuple &tuple, std::vector<char*> *changedObjects)
+{
+    BOOST_FOREACH(int columnIndex, m_compressedColumns) {
+        const TupleSchema::ColumnInfo *columnInfo = m_schema->getColumnInfo(columnIndex);
+        StringRef **slot = reinterpret_cast<StringRef**>(tuple.getWritableDataPtr(columnInfo));
+        StringRef *sref = *slot;
+        if (sref == NULL || sref->isCompressed()) {
+            continue;
+        }
+        std::vector<char*>::iterator changed;
+        if (changedObjects != NULL) {
+            changed = std::find(changedObjects->begin(), changedObjects->end(),
+                                reinterpret_cast<char*>(sref));
+            if (changed == changedObjects->end()) {
+                continue;
+            }
+        }
+
+        // Compress the whole in-memory representation, length prefix included.
+        const NValue value = tuple.getNValue(columnIndex);
+        const char *object = static_cast<const char*>(ValuePeeker::peekObjectValue_withoutNull(value));
+        const int32_t length = static_cast<int32_t>(object - sref->get()) +
+                ValuePeeker::peekObjectLength_withoutNull(value);
+        StringRef *compressed = m_stringCompressors[columnIndex]->compress(sref->get(), length);
+        if (compressed == NULL) {
+            continue;
+        }
+        StringRef::destroy(sref);
+        *slot = compressed;
+        if (changedObjects != NULL) {
+            *changed = reinterpret_cast<char*>(compressed);
+        }
+    }
+}
+
+void PersistentTable::setCompressedColumns(const std::vector<int> &columnIndexes)
+{
+    m_stringCompressors.resize(m_schema->columnCount(), NULL);
+    m_compressedColumns.clear();
+    BOOST_FOREACH(int columnIndex, columnIndexes) {
+        const TupleSchema::ColumnInfo *columnInfo = m_schema->getColumnInfo(columnIndex);
+        // Inlined values live in the tuple itself; there is nothing to save.
+        if (columnInfo->inlined) {
+            continue;
+        }
+        assert(columnInfo->getVoltType() == VALUE_TYPE_VARCHAR ||
+               columnInfo->getVoltType() == VALUE_TYPE_VARBINARY);
+        if (m_stringCompressors[columnIndex] == NULL) {
+            m_stringCompressors[columnIndex] = new StringCompressor();
+        }
+        m_compressedColumns.push_back(columnIndex);
+    }
+}
+
+int64_t PersistentTable::compressedStringMemorySize() const
+{
+    int64_t bytes = 0;
+    BOOST_FOREACH(StringCompressor *compressor, m_stringCompressors) {
+        if (compressor != NULL) {
+            bytes += compressor->getCompressedBytes();
+        }
+    }
+    return bytes;
+}
+
+int64_t PersistentTable::uncompressedStringMemorySize() const
+{
+    int64_t bytes = 0;
+    BOOST_FOREACH(StringCompressor *compressor, m_stringCompressors) {
+        if (compressor != NULL) {
+            bytes += compressor->getUncompressedBytes();
+        }
+    }
+    return bytes;
+}
+
+int64_t PersistentTable::viewMinMaxMemorySize() const
+{
+    if (m_materializedViewSource == NULL) {
+        return 0;
+    }
+    return m_materializedViewSource->minMaxValuesMemorySize();
+}
+
 void PersistentTable::insertTupleCommon(TableTuple &source, TableTuple &target, bool fallible, bool shouldDRStream)
+{
+    prepareTupleForInsert(source, target, fallible);
+
+    if (!tryInsertOnAllIndexes(&target)) {
+        throw ConstraintFailureException(this, source, TableTuple(),
+                CONSTRAINT_TYPE_UNIQUE);
+    }
+
+    completeTupleInsert(target, fallible, shouldDRStream);
+}
+
+void PersistentTable::prepareTupleForInsert(TableTuple &source, TableTuple &target, bool fallible)
 {
     if (fallible) {
         // not null checks at first
@@ -425,11 +575,11 @@ void PersistentTable::insertTupleCommon(TableTuple &source, TableTuple &target,
     if (m_tableStreamer == NULL || !m_tableStreamer->notifyTupleInsert(target)) {
         target.setDirtyFalse();
     }
+}
 
-    if (!tryInsertOnAllIndexes(&target)) {
-        throw ConstraintFailureException(this, source, TableTuple(),
-                CONSTRAINT_TYPE_UNIQUE);
-    }
+void PersistentTable::completeTupleInsert(TableTuple &target, bool fallible, bool shouldDRStream)
+{
+    bumpWriteEpoch();
 
     ExecutorContext *ec = ExecutorContext::getExecutorContext();
     DRTupleStream *drStream = getDRTupleStream(ec);
@@ -463,6 +613,9 @@ void PersistentTable::insertTupleCommon(TableTuple &source, TableTuple &target,
     for (int i = 0; i < m_views.size(); i++) {
         m_views[i]->processTupleInsert(target, fallible);
     }
+    for (int i = 0; i < m_joinedViews.size(); i++) {
+        m_joinedViews[i]->processJoinedTupleInsert(this, target, fallible);
+    }
 }
 
 /*
@@ -476,6 +629,7 @@ void PersistentTable::insertTupleForUndo(char *tuple)
     target.setPendingDeleteOnUndoReleaseFalse();
     m_tuplesPinnedByUndo--;
     --m_invisibleTuplesPendingDeleteCount;
+    bumpWriteEpoch();
 
     /*
      * The only thing to do is reinsert the tuple into the indexes. It was never moved,
@@ -539,10 +693,24 @@ bool PersistentTable::updateTupleWithSpecificIndexes(TableTuple &targetTupleToUp
         }
     }
 
+    bumpWriteEpoch();
+
     if (m_tableStreamer != NULL) {
         m_tableStreamer->notifyTupleUpdate(targetTupleToUpdate);
     }
 
+    if (m_trackChanges) {
+        TBPtr block = findBlock(targetTupleToUpdate.address(), m_data, m_tableAllocationSize);
+        if (block.get() != NULL) {
+            block->markChanged();
+        }
+        // A new primary key leaves the row with the old one behind as deleted.
+        TableIndex *pkeyIndex = primaryKeyIndex();
+        if (pkeyIndex != NULL && pkeyIndex->checkForIndexChange(&targetTupleToUpdate, &sourceTupleWithNewValues)) {
+            recordDeletedTuple(targetTupleToUpdate);
+        }
+    }
+
     /**
      * Remove the current tuple from any indexes.
      */
@@ -570,6 +738,9 @@ bool PersistentTable::updateTupleWithSpecificIndexes(TableTuple &targetTupleToUp
     for (int i = 0; i < m_views.size(); i++) {
         m_views[i]->processTupleDelete(targetTupleToUpdate, fallible);
     }
+    for (int i = 0; i < m_joinedViews.size(); i++) {
+        m_joinedViews[i]->processJoinedTupleDelete(this, targetTupleToUpdate, fallible);
+    }
 
     ExecutorContext *ec = ExecutorContext::getExecutorContext();
     DRTupleStream *drStream = getDRTupleStream(ec);
@@ -586,7 +757,6 @@ bool PersistentTable::updateTupleWithSpecificIndexes(TableTuple &targetTupleToUp
 
     if (m_schema->getUninlinedObjectColumnCount() != 0) {
         decreaseStringMemCount(targetTupleToUpdate.getNonInlinedMemorySize());
-        increaseStringMemCount(sourceTupleWithNewValues.getNonInlinedMemorySize());
     }
 
     // TODO: This is a little messed up.
@@ -613,6 +783,11 @@ bool PersistentTable::updateTupleWithSpecificIndexes(TableTuple &targetTupleToUp
 
     // this is the actual write of the new values
     targetTupleToUpdate.copyForPersistentUpdate(sourceTupleWithNewValues, oldObjects, newObjects);
+    if (m_schema->getUninlinedObjectColumnCount() != 0) {
+        compressObjectColumns(targetTupleToUpdate, &newObjects);
+        // Counted after compression so the count matches what is stored.
+        increaseStringMemCount(targetTupleToUpdate.getNonInlinedMemorySize());
+    }
 
     if (uq) {
         /*
@@ -650,6 +825,9 @@ bool PersistentTable::updateTupleWithSpecificIndexes(TableTuple &targetTupleToUp
     for (int i = 0; i < m_views.size(); i++) {
         m_views[i]->processTupleInsert(targetTupleToUpdate, fallible);
     }
+    for (int i = 0; i < m_joinedViews.size(); i++) {
+        m_joinedViews[i]->processJoinedTupleInsert(this, targetTupleToUpdate, fallible);
+    }
     return true;
 }
 
@@ -677,6 +855,7 @@ void PersistentTable::updateTupleForUndo(char* tupleWithUnwantedValues,
     }
     TableTuple targetTupleToUpdate = lookupTupleForUndo(matchable);
     TableTuple sourceTupleWithNewValues(sourceTupleDataWithNewValues, m_schema);
+    bumpWriteEpoch();
 
     //If the indexes were never updated there is no need to revert them.
     if (revertIndexes) {
@@ -721,6 +900,8 @@ bool PersistentTable::deleteTuple(TableTuple &target, bool fallible) {
     // The tempTuple is forever!
     assert(&target != &m_tempTuple);
 
+    bumpWriteEpoch();
+
     // Just like insert, we want to remove this tuple from all of our indexes
     deleteFromAllIndexes(&target);
 
@@ -728,6 +909,9 @@ bool PersistentTable::deleteTuple(TableTuple &target, bool fallible) {
     for (int i = 0; i < m_views.size(); i++) {
         m_views[i]->processTupleDelete(target, fallible);
     }
+    for (int i = 0; i < m_joinedViews.size(); i++) {
+        m_joinedViews[i]->processJoinedTupleDelete(this, target, fallible);
+    }
 
     ExecutorContext *ec = ExecutorContext::getExecutorContext();
     DRTupleStream *drStream = getDRTupleStream(ec);
@@ -777,6 +961,11 @@ void PersistentTable::deleteTupleRelease(char* tupleData)
  */
 void PersistentTable::deleteTupleFinalize(TableTuple &target)
 {
+    // Copy it while its strings are still around.
+    if (m_trackChanges && !target.isPendingDelete()) {
+        recordDeletedTuple(target);
+    }
+
     // A snapshot (background scan) in progress can still cause a hold-up.
     // notifyTupleDelete() defaults to returning true for all context types
     // other than CopyOnWriteContext.
@@ -852,6 +1041,7 @@ void PersistentTable::deleteTupleForUndo(char* tupleData, bool skipLookup) {
     // Make sure that they are not trying to delete the same tuple twice
     assert(target.isActive());
 
+    bumpWriteEpoch();
     deleteFromAllIndexes(&target);
     deleteTupleFinalize(target); // also frees object columns
 }
@@ -986,6 +1176,18 @@ void PersistentTable::dropMaterializedView(MaterializedViewMetadata *targetView)
     delete targetView;
 }
 
+void PersistentTable::addJoinedMaterializedView(MaterializedViewMetadata *view)
+{
+    m_joinedViews.push_back(view);
+}
+
+void PersistentTable::dropJoinedMaterializedView(MaterializedViewMetadata *view)
+{
+    std::vector<MaterializedViewMetadata*>::iterator toView = find(m_joinedViews.begin(), m_joinedViews.end(), view);
+    assert(toView != m_joinedViews.end());
+    m_joinedViews.erase(toView);
+}
+
 void
 PersistentTable::segregateMaterializedViews(std::map<std::string, catalog::MaterializedViewInfo*>::const_iterator const & start,
                                             std::map<std::string, catalog::MaterializedViewInfo*>::const_iterator const & end,
@@ -1037,6 +1239,7 @@ PersistentTable::updateMaterializedViewTargetTable(PersistentTable* target, cata
             if (currView->indexForMinMax().compare(targetMvInfo->indexForMinMax()) != 0) {
                 currView->setIndexForMinMax(targetMvInfo->indexForMinMax());
             }
+            currView->resolveJoins();
             return;
         }
 
@@ -1047,6 +1250,7 @@ PersistentTable::updateMaterializedViewTargetTable(PersistentTable* target, cata
             // the view was initialized, so re-initialize the view.
             currView->setTargetTable(target);
             currView->setIndexForMinMax(targetMvInfo->indexForMinMax());
+            currView->resolveJoins();
             return;
         }
     }
@@ -1112,17 +1316,18 @@ void PersistentTable::processLoadedTuple(TableTuple &tuple,
                                          int32_t &serializedTupleCount,
                                          size_t &tupleCountPosition,
                                          bool shouldDRStreamRows) {
+    compressObjectColumns(tuple);
     try {
-        insertTupleCommon(tuple, tuple, true, shouldDRStreamRows);
+        if (m_deferIndexMaintenance) {
+            // The rest of the insert happens in finishLoadingTuples.
+            prepareTupleForInsert(tuple, tuple, true);
+            m_tuplesPendingIndexBuild.push_back(tuple);
+        } else {
+            insertTupleCommon(tuple, tuple, true, shouldDRStreamRows);
+        }
     } catch (ConstraintFailureException &e) {
         if (uniqueViolationOutput) {
-            if (serializedTupleCount == 0) {
-                serializeColumnHeaderTo(*uniqueViolationOutput);
-                tupleCountPosition = uniqueViolationOutput->reserveBytes(sizeof(int32_t));
-            }
-            serializedTupleCount++;
-            tuple.serializeTo(*uniqueViolationOutput);
-            deleteTupleStorage(tuple);
+            rejectLoadedTuple(tuple, *uniqueViolationOutput, serializedTupleCount, tupleCountPosition);
             return;
         } else {
             throw;
@@ -1130,6 +1335,113 @@ void PersistentTable::processLoadedTuple(TableTuple &tuple,
     }
 }
 
+void PersistentTable::rejectLoadedTuple(TableTuple &tuple,
+                                        ReferenceSerializeOutput &uniqueViolationOutput,
+                                        int32_t &serializedTupleCount,
+                                        size_t &tupleCountPosition) {
+    if (serializedTupleCount == 0) {
+        serializeColumnHeaderTo(uniqueViolationOutput);
+        tupleCountPosition = uniqueViolationOutput.reserveBytes(sizeof(int32_t));
+    }
+    serializedTupleCount++;
+    tuple.serializeTo(uniqueViolationOutput);
+    deleteTupleStorage(tuple);
+}
+
+void PersistentTable::startLoadingTuples(int tupleCount) {
+    assert(m_tuplesPendingIndexBuild.empty());
+    m_deferIndexMaintenance = (tupleCount >= BULK_INDEX_BUILD_MIN_TUPLES && !m_indexes.empty());
+    if (m_deferIndexMaintenance) {
+        m_tuplesPendingIndexBuild.reserve(tupleCount);
+    }
+}
+
+/*
+ * Build the index entries for a batch loaded with m_deferIndexMaintenance
+ * set, then finish inserting its tuples (DR, undo and views) in load
+ * order. Indexes are built in the same (reverse) order as
+ * tryInsertOnAllIndexes uses, and a tuple that conflicts in a unique index
+ * is taken back out of the indexes that were built before it, so every
+ * tuple that stays has an entry in every index.
+ */
+void PersistentTable::finishLoadingTuples(ReferenceSerializeOutput *uniqueViolationOutput,
+                                          int32_t &serializedTupleCount,
+                                          size_t &tupleCountPosition,
+                                          bool shouldDRStreamRows) {
+    if (!m_deferIndexMaintenance) {
+        return;
+    }
+    m_deferIndexMaintenance = false;
+    std::vector<TableTuple> loaded;
+    loaded.swap(m_tuplesPendingIndexBuild);
+
+    std::vector<TableTuple> pending(loaded);
+    std::vector<char*> rejected;
+    for (int i = static_cast<int>(m_indexes.size()) - 1; i >= 0; --i) {
+        std::vector<TableTuple> conflicts;
+        m_indexes[i]->addEntriesInBulk(pending, conflicts);
+        if (conflicts.empty()) {
+            continue;
+        }
+        VOLT_DEBUG("%d loaded tuples conflict in index %s,%s",
+                   static_cast<int>(conflicts.size()),
+                   m_indexes[i]->getTypeName().c_str(),
+                   m_indexes[i]->getName().c_str());
+        BOOST_FOREACH(TableTuple &conflict, conflicts) {
+            for (int j = i + 1; j < m_indexes.size(); ++j) {
+                m_indexes[j]->deleteEntry(&conflict);
+            }
+            rejected.push_back(conflict.address());
+        }
+        std::sort(rejected.begin(), rejected.end());
+        std::vector<TableTuple> remaining;
+        remaining.reserve(pending.size());
+        BOOST_FOREACH(TableTuple &tuple, pending) {
+            if (!std::binary_search(rejected.begin(), rejected.end(), tuple.address())) {
+                remaining.push_back(tuple);
+            }
+        }
+        pending.swap(remaining);
+    }
+
+    TableTuple firstConflict(m_schema);
+    BOOST_FOREACH(TableTuple &tuple, loaded) {
+        if (rejected.empty() || !std::binary_search(rejected.begin(), rejected.end(), tuple.address())) {
+            completeTupleInsert(tuple, true, shouldDRStreamRows);
+        } else if (uniqueViolationOutput) {
+            rejectLoadedTuple(tuple, *uniqueViolationOutput, serializedTupleCount, tupleCountPosition);
+        } else if (firstConflict.isNullTuple()) {
+            firstConflict = tuple;
+        } else {
+            deleteTupleStorage(tuple);
+        }
+    }
+    if (!firstConflict.isNullTuple()) {
+        throw ConstraintFailureException(this, firstConflict, TableTuple(), CONSTRAINT_TYPE_UNIQUE);
+    }
+}
+
+/*
+ * Loading the batch failed part way. Give the tuples loaded so far their
+ * index entries one at a time, so that the table is left consistent for
+ * whatever undo or cleanup follows.
+ */
+void PersistentTable::abortLoadingTuples(bool shouldDRStreamRows) {
+    if (!m_deferIndexMaintenance) {
+        return;
+    }
+    m_deferIndexMaintenance = false;
+    std::vector<TableTuple> loaded;
+    loaded.swap(m_tuplesPendingIndexBuild);
+    BOOST_FOREACH(TableTuple &tuple, loaded) {
+        if (tryInsertOnAllIndexes(&tuple)) {
+            completeTupleInsert(tuple, true, shouldDRStreamRows);
+        } else {
+            deleteTupleStorage(tuple);
+        }
+    }
+}
+
 TableStats* PersistentTable::getTableStats() {
     return &stats_;
 }
@@ -1271,6 +1583,9 @@ void PersistentTable::notifyBlockWasCompactedAway(TBPtr block) {
 // Call-back from TupleBlock::merge() for each tuple moved.
 void PersistentTable::notifyTupleMovement(TBPtr sourceBlock, TBPtr targetBlock,
                                           TableTuple &sourceTuple, TableTuple &targetTuple) {
+    if (m_trackChanges) {
+        targetBlock->markChanged();
+    }
     if (m_tableStreamer != NULL) {
         m_tableStreamer->notifyTupleMovement(sourceBlock, targetBlock, sourceTuple, targetTuple);
     }
@@ -1564,4 +1879,56 @@ void PersistentTableSurgeon::activateSnapshot() {
     }
 }
 
+void PersistentTableSurgeon::startTrackingChanges() {
+    for (TBMapI i = m_table.m_data.begin(); i != m_table.m_data.end(); i++) {
+        i.data()->clearChanged();
+    }
+    m_table.m_deletedSinceSnapshot.reset(TableFactory::getCopiedTempTable(m_table.databaseId(),
+                                                                          "Deleted rows of " + m_table.name(),
+                                                                          &m_table, NULL));
+    m_table.m_deletedSinceSnapshotPool.reset(new Pool());
+    m_table.m_trackChanges = true;
+}
+
+bool PersistentTableSurgeon::isTrackingChanges() const {
+    return m_table.m_trackChanges;
+}
+
+/*
+ * Hand over the blocks written to and the tuples deleted since tracking
+ * started or changes were last taken, and start over.
+ */
+void PersistentTableSurgeon::takeChanges(TBMap &changedBlocks,
+                                         boost::scoped_ptr<TempTable> &deletedTuples,
+                                         boost::scoped_ptr<Pool> &deletedTuplesPool) {
+    assert(m_table.m_trackChanges);
+    changedBlocks.clear();
+    for (TBMapI i = m_table.m_data.begin(); i != m_table.m_data.end(); i++) {
+        if (i.data()->isChanged()) {
+            changedBlocks.insert(i.key(), i.data());
+            i.data()->clearChanged();
+        }
+    }
+    deletedTuples.swap(m_table.m_deletedSinceSnapshot);
+    deletedTuplesPool.swap(m_table.m_deletedSinceSnapshotPool);
+    m_table.m_deletedSinceSnapshot.reset(TableFactory::getCopiedTempTable(m_table.databaseId(),
+                                                                          "Deleted rows of " + m_table.name(),
+                                                                          &m_table, NULL));
+    m_table.m_deletedSinceSnapshotPool.reset(new Pool());
+}
+
+void PersistentTableSurgeon::activateDeltaSnapshot(TBMap &changedBlocks) {
+    //Only the changed blocks are pending snapshot
+    for (TBMapI i = changedBlocks.begin(); i != changedBlocks.end(); i++) {
+        TBPtr block = i.data();
+        assert(m_table.m_blocksNotPendingSnapshot.find(block) != m_table.m_blocksNotPendingSnapshot.end());
+        m_table.m_blocksNotPendingSnapshot.erase(block);
+        m_table.m_blocksPendingSnapshot.insert(block);
+        int bucketIndex = block->calculateBucketIndex();
+        if (bucketIndex != -1) {
+            block->swapToBucket(m_table.m_blocksPendingSnapshotLoad[bucketIndex]);
+        }
+    }
+}
+
 } // namespace voltdb
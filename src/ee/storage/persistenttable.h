@@ -81,6 +81,8 @@ class MaterializedViewInfo;
 
 namespace voltdb {
 
+class TempTable;
+
 /**
  * Interface used by contexts, scanners, iterators, and undo actions to access
  * normally-private stuff in PersistentTable.
@@ -131,6 +133,15 @@ public:
     boost::shared_ptr<ElasticIndexTupleRangeIterator>
             getIndexTupleRangeIterator(const ElasticIndexHashRange &range);
     void activateSnapshot();
+
+    // Change tracking methods. Used by CopyOnWriteContext for incremental snapshots.
+    void startTrackingChanges();
+    bool isTrackingChanges() const;
+    void takeChanges(TBMap &changedBlocks,
+                     boost::scoped_ptr<TempTable> &deletedTuples,
+                     boost::scoped_ptr<Pool> &deletedTuplesPool);
+    void activateDeltaSnapshot(TBMap &changedBlocks);
+
     void printIndex(std::ostream &os, int32_t limit) const;
     ElasticHash generateTupleHash(TableTuple &tuple) const;
     void DRRollback(size_t drMark);
@@ -307,6 +318,17 @@ class PersistentTable : public Table, public UndoQuantumReleaseInterest,
         return m_views;
     }
 
+    /** The view that this table materializes, if it is a view's table */
+    MaterializedViewMetadata* materializedViewSource() const {
+        return m_materializedViewSource;
+    }
+
+    void setMaterializedViewSource(MaterializedViewMetadata *view) {
+        m_materializedViewSource = view;
+    }
+
+    virtual int64_t viewMinMaxMemorySize() const;
+
     /** inlined here because it can't be inlined in base Table, as it
      *  uses Tuple.copy.
      */
@@ -333,6 +355,13 @@ class PersistentTable : public Table, public UndoQuantumReleaseInterest,
                                     std::vector<MaterializedViewMetadata*> &obsoleteViewsOut);
     void updateMaterializedViewTargetTable(PersistentTable* target, catalog::MaterializedViewInfo* targetMvInfo);
 
+    /**
+     * Add/drop the views that join this table with their source table. Their
+     * source table owns them; this table only passes its changes on to them.
+     */
+    void addJoinedMaterializedView(MaterializedViewMetadata *view);
+    void dropJoinedMaterializedView(MaterializedViewMetadata *view);
+
     /**
      * Attempt to stream more tuples from the table to the provided
      * output stream.
@@ -360,6 +389,20 @@ class PersistentTable : public Table, public UndoQuantumReleaseInterest,
     void doIdleCompaction();
     void printBucketInfo();
 
+    /**
+     * Store the out-of-line values of the given VARCHAR and VARBINARY
+     * columns compressed from now on. Values already stored keep
+     * whatever form they have.
+     */
+    void setCompressedColumns(const std::vector<int> &columnIndexes);
+
+    const std::vector<int>& compressedColumns() const {
+        return m_compressedColumns;
+    }
+
+    virtual int64_t compressedStringMemorySize() const;
+    virtual int64_t uncompressedStringMemorySize() const;
+
     void increaseStringMemCount(size_t bytes)
     {
         m_nonInlinedMemorySize += bytes;
@@ -389,6 +432,20 @@ class PersistentTable : public Table, public UndoQuantumReleaseInterest,
         m_tupleLimit = newLimit;
     }
 
+    /**
+     * Point the table's write epoch at a slot of the buffer shared with
+     * the frontend, or back at a private counter when NULL.
+     */
+    void setWriteEpoch(int64_t *writeEpoch) {
+        m_writeEpoch = (writeEpoch == NULL) ? &m_unsharedWriteEpoch : writeEpoch;
+    }
+
+    int64_t writeEpoch() const { return *m_writeEpoch; }
+
+    // Called on every change to the visible contents of the table,
+    // including the ones made by undo.
+    void bumpWriteEpoch() { ++(*m_writeEpoch); }
+
     bool isPersistentTableEmpty()
     {
         // The narrow usage of this function (while updating the catalog)
@@ -494,6 +551,11 @@ class PersistentTable : public Table, public UndoQuantumReleaseInterest,
     }
 
     void nextFreeTuple(TableTuple *tuple);
+
+    // Keep a copy of a deleted tuple for the next incremental snapshot.
+    void recordDeletedTuple(TableTuple &tuple);
+    void stopTrackingChanges();
+
     bool doCompactionWithinSubset(TBBucketMap *bucketMap);
     void doForcedCompaction();
 
@@ -521,6 +583,13 @@ class PersistentTable : public Table, public UndoQuantumReleaseInterest,
     // source tuple's memory should still be retained until the exception is
     // handled.
     void insertTupleCommon(TableTuple &source, TableTuple &target, bool fallible, bool shouldDRStream = true);
+    // The parts of insertTupleCommon before and after the index updates.
+    void prepareTupleForInsert(TableTuple &source, TableTuple &target, bool fallible);
+    void completeTupleInsert(TableTuple &target, bool fallible, bool shouldDRStream);
+    // Replace the values of the compressed columns with compressed copies.
+    // If changedObjects is given, only the values listed there are
+    // replaced, and the list is updated to the new copies.
+    void compressObjectColumns(TableTuple &tuple, std::vector<char*> *changedObjects = NULL);
     void insertTupleForUndo(char *tuple);
     void updateTupleForUndo(char* targetTupleToUpdate,
                             char* sourceTupleWithNewValues,
@@ -544,6 +613,24 @@ class PersistentTable : public Table, public UndoQuantumReleaseInterest,
                                     size_t &tupleCountPosition,
                                     bool shouldDRStreamRows);
 
+    /*
+     * Large batches are loaded without index maintenance. Each index is
+     * then built from the whole batch in key order when the batch is done,
+     * which is much cheaper than descending every index once per row.
+     */
+    virtual void startLoadingTuples(int tupleCount);
+    virtual void finishLoadingTuples(ReferenceSerializeOutput *uniqueViolationOutput,
+                                     int32_t &serializedTupleCount,
+                                     size_t &tupleCountPosition,
+                                     bool shouldDRStreamRows);
+    virtual void abortLoadingTuples(bool shouldDRStreamRows);
+
+    // Report a loaded tuple that violates a constraint and release its storage.
+    void rejectLoadedTuple(TableTuple &tuple,
+                           ReferenceSerializeOutput &uniqueViolationOutput,
+                           int32_t &serializedTupleCount,
+                           size_t &tupleCountPosition);
+
     TableTuple lookupTuple(TableTuple tuple, bool forUndo);
 
     TBPtr allocateNextBlock();
@@ -572,6 +659,23 @@ class PersistentTable : public Table, public UndoQuantumReleaseInterest,
     // list of materialized views that are sourced from this table
     std::vector<MaterializedViewMetadata *> m_views;
 
+    // views sourced from other tables that join this table
+    std::vector<MaterializedViewMetadata *> m_joinedViews;
+
+    // the view that maintains this table, if it is a view's table
+    MaterializedViewMetadata *m_materializedViewSource;
+
+    // Tuples of the batch being loaded that don't have index entries yet,
+    // in load order. Only used while m_deferIndexMaintenance is set.
+    std::vector<TableTuple> m_tuplesPendingIndexBuild;
+    bool m_deferIndexMaintenance;
+
+    // One compressor for each column that has ever been compressed, by
+    // column index. They live as long as the table because compressed
+    // values point back at the compressor that wrote them.
+    std::vector<StringCompressor*> m_stringCompressors;
+    std::vector<int> m_compressedColumns;
+
     // STATS
     voltdb::PersistentTableStats stats_;
     voltdb::TableStats* getTableStats();
@@ -592,6 +696,25 @@ class PersistentTable : public Table, public UndoQuantumReleaseInterest,
     // that have never been allocated
     stx::btree_set<TBPtr > m_blocksWithSpace;
 
+    // CHANGE TRACKING
+
+    // Set by an incremental base snapshot. While set, blocks written to are
+    // flagged changed and deleted tuples are copied for the next delta.
+    bool m_trackChanges;
+
+    // Copies of the tuples deleted since the previous incremental snapshot,
+    // and the pool that holds their strings.
+    boost::scoped_ptr<TempTable> m_deletedSinceSnapshot;
+    boost::scoped_ptr<Pool> m_deletedSinceSnapshotPool;
+
+    // WRITE EPOCH
+
+    // Counts changes to the table so the frontend can tell whether cached
+    // procedure results that read it are still valid. Points into the
+    // engine's shared buffer once bound, at m_unsharedWriteEpoch before.
+    int64_t *m_writeEpoch;
+    int64_t m_unsharedWriteEpoch;
+
     // Provides access to all table streaming apparati, including COW and recovery.
     boost::shared_ptr<TableStreamerInterface> m_tableStreamer;
 
@@ -404,17 +404,24 @@ void Table::loadTuplesFromNoHeader(SerializeInputBE &serialize_io,
         lengthPosition = uniqueViolationOutput->reserveBytes(4);
     }
 
-    for (int i = 0; i < tupleCount; ++i) {
-        nextFreeTuple(&target);
-        target.setActiveTrue();
-        target.setDirtyFalse();
-        target.setPendingDeleteFalse();
-        target.setPendingDeleteOnUndoReleaseFalse();
-
-        target.deserializeFrom(serialize_io, stringPool);
-
-        processLoadedTuple(target, uniqueViolationOutput, serializedTupleCount, tupleCountPosition, shouldDRStreamRow);
+    startLoadingTuples(tupleCount);
+    try {
+        for (int i = 0; i < tupleCount; ++i) {
+            nextFreeTuple(&target);
+            target.setActiveTrue();
+            target.setDirtyFalse();
+            target.setPendingDeleteFalse();
+            target.setPendingDeleteOnUndoReleaseFalse();
+
+            target.deserializeFrom(serialize_io, stringPool);
+
+            processLoadedTuple(target, uniqueViolationOutput, serializedTupleCount, tupleCountPosition, shouldDRStreamRow);
+        }
+    } catch (...) {
+        abortLoadingTuples(shouldDRStreamRow);
+        throw;
     }
+    finishLoadingTuples(uniqueViolationOutput, serializedTupleCount, tupleCountPosition, shouldDRStreamRow);
 
     //If unique constraints are being handled, write the length/size of constraints that occured
     if (uniqueViolationOutput != NULL) {
@@ -173,6 +173,22 @@ class Table {
         return m_nonInlinedMemorySize;
     }
 
+    // Bytes held by compressed out-of-line values, and the bytes those
+    // values would hold uncompressed. Only persistent tables compress.
+    virtual int64_t compressedStringMemorySize() const {
+        return 0;
+    }
+
+    virtual int64_t uncompressedStringMemorySize() const {
+        return 0;
+    }
+
+    // Bytes a materialized view holds, beyond its table, to maintain the
+    // MIN and MAX columns. Only persistent tables are views.
+    virtual int64_t viewMinMaxMemorySize() const {
+        return 0;
+    }
+
     virtual int tupleLimit() const {
         return INT_MIN;
     }
@@ -357,6 +373,24 @@ protected:
                                     bool shouldDRStreamRow) {
     };
 
+    /*
+     * Implemented by persistent table and called by Table::loadTuplesFrom
+     * around each batch of loaded tuples, so that work like index
+     * maintenance can be done once for the whole batch
+     */
+    virtual void startLoadingTuples(int tupleCount) {
+    };
+
+    virtual void finishLoadingTuples(ReferenceSerializeOutput *uniqueViolationOutput,
+                                     int32_t &serializedTupleCount,
+                                     size_t &tupleCountPosition,
+                                     bool shouldDRStreamRow) {
+    };
+
+    // Called instead of finishLoadingTuples when loading a batch fails part way.
+    virtual void abortLoadingTuples(bool shouldDRStreamRow) {
+    };
+
     virtual void swapTuples(TableTuple &sourceTupleWithNewValues, TableTuple &destinationTuple) {
         throwFatalException("Unsupported operation");
     }
@@ -0,0 +1,1263 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef COMPACTINGBTREE_H_
+#define COMPACTINGBTREE_H_
+
+#include "ContiguousAllocator.h"
+#include "CompactingMap.h"
+
+#include <cstdio>
+#include <cstdlib>
+#include <stdint.h>
+#include <new>
+#include <utility>
+#include <vector>
+#include <cassert>
+
+namespace voltdb {
+
+/**
+ * Key prefix extractor for key types that have no cheap order-preserving
+ * 64-bit prefix. The B+tree falls back to full key comparisons.
+ */
+template <typename Key>
+struct NoKeyPrefix {
+    NoKeyPrefix() {}
+    NoKeyPrefix(const void *unusedKeySchema) {}
+    inline bool enabled() const { return false; }
+    inline uint64_t operator()(const Key &key) const { return 0; }
+};
+
+/**
+ * In-memory B+tree with the same loose stl::map-like interface as
+ * CompactingMap, so the tree indexes can use either one.
+ *
+ * Where CompactingMap spends one node (and usually one cache miss) per
+ * key comparison, this tree packs many keys into each node. Nodes are
+ * sized to a handful of cache lines, and each node is prefetched as a
+ * whole before it is searched, so a lookup costs roughly one miss per
+ * level of a tree that is only log_fanout(n) deep.
+ *
+ * Inner nodes keep, next to every separator key, a 64-bit order-preserving
+ * prefix of that key supplied by the KeyPrefix functor (see IntsKeyPrefix
+ * and GenericKeyPrefix in indexkey.h). The binary search over an inner node
+ * compares those packed prefixes first and only touches the full key on a
+ * prefix tie. The contract for a KeyPrefix is that prefix(a) < prefix(b)
+ * implies a < b.
+ *
+ * When hasRank is set, every inner node keeps the number of entries under
+ * each child so that rank lookups for countable indexes stay logarithmic.
+ *
+ * Like CompactingMap, all nodes live in ContiguousAllocator buffer chains
+ * (one for leaves, one for inner nodes). Freeing a node moves the last
+ * allocated node of the same kind into the hole, so memory is returned as
+ * the tree shrinks. The same caveats apply:
+ * 1. Entries move around in memory, both within and across nodes, using
+ *    the copy constructor and assignment operator. Keys that own memory
+ *    (like GenericPersistentKey) are not supported.
+ * 2. Iterators are invalidated by any mutation of the tree.
+ * 3. Iterators have no overloaded operators. Use equals() and isEnd().
+ */
+template<typename KeyValuePair, typename Compare, bool hasRank=false,
+         typename KeyPrefix=NoKeyPrefix<typename KeyValuePair::first_type> >
+class CompactingBTree {
+    typedef typename KeyValuePair::first_type Key;
+    typedef typename KeyValuePair::second_type Data;
+
+    struct InnerNode;
+
+    enum {
+        CACHE_LINE_BYTES = 64,
+        // Target node size: eight cache lines.
+        NODE_BYTES = 8 * CACHE_LINE_BYTES,
+        // Never let wide keys degrade a node below this many entries.
+        MIN_FANOUT = 8,
+        LEAF_HEADER_BYTES = 3 * sizeof(void*) + sizeof(int64_t),
+        INNER_HEADER_BYTES = sizeof(void*) + sizeof(int64_t),
+        LEAF_SLOTS = (NODE_BYTES - LEAF_HEADER_BYTES) / sizeof(KeyValuePair),
+        INNER_SLOTS = (NODE_BYTES - INNER_HEADER_BYTES) /
+            (sizeof(Key) + sizeof(uint64_t) + sizeof(void*) + (hasRank ? sizeof(int64_t) : 0)),
+        LEAF_FANOUT = LEAF_SLOTS > MIN_FANOUT ? LEAF_SLOTS : MIN_FANOUT,
+        INNER_FANOUT = INNER_SLOTS > MIN_FANOUT ? INNER_SLOTS : MIN_FANOUT,
+        LEAF_MIN = LEAF_FANOUT / 2,
+        INNER_MIN = INNER_FANOUT / 2
+    };
+
+    struct LeafNode {
+        InnerNode *parent;
+        LeafNode *prev;
+        LeafNode *next;
+        int32_t count;
+        KeyValuePair kv[LEAF_FANOUT];
+
+        const Key &key(int i) const { return kv[i].getKey(); }
+    };
+
+    struct InnerNode {
+        InnerNode *parent;
+        // number of separator keys; there are count + 1 children
+        int32_t count;
+        bool leafChildren;
+        // The prefixes are kept apart from the keys so that a search touches
+        // as few cache lines as possible.
+        uint64_t prefix[INNER_FANOUT];
+        Key keys[INNER_FANOUT];
+        void *children[INNER_FANOUT + 1];
+        // entries under each child, only maintained when hasRank
+        int64_t subct[hasRank ? INNER_FANOUT + 1 : 1];
+    };
+
+    int64_t m_count;
+    // the root is a LeafNode when m_height == 1 and an InnerNode above that
+    void *m_root;
+    int m_height;
+    LeafNode *m_first;
+    LeafNode *m_last;
+    ContiguousAllocator m_leafAllocator;
+    ContiguousAllocator m_innerAllocator;
+    bool m_unique;
+
+    // templated comparison function object
+    // follows STL conventions
+    Compare m_comper;
+    KeyPrefix m_prefix;
+
+public:
+    class iterator {
+        friend class CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>;
+    protected:
+        // This must fit into IndexCursor::m_keyIter, so keep it to 16 bytes.
+        LeafNode *m_leaf;
+        int32_t m_pos;
+        iterator(LeafNode *leaf, int32_t pos) : m_leaf(leaf), m_pos(pos) {}
+    public:
+        iterator() : m_leaf(NULL), m_pos(0) {}
+        iterator(const iterator &iter) : m_leaf(iter.m_leaf), m_pos(iter.m_pos) {}
+        const Key &key() const { return m_leaf->kv[m_pos].getKey(); }
+        const Data &value() const { return m_leaf->kv[m_pos].getValue(); }
+        void setValue(const Data &value) { m_leaf->kv[m_pos].setValue(value); }
+        void moveNext()
+        {
+            if (m_leaf == NULL) {
+                return;
+            }
+            if (++m_pos >= m_leaf->count) {
+                m_leaf = m_leaf->next;
+                m_pos = 0;
+            }
+        }
+        void movePrev()
+        {
+            if (m_leaf == NULL) {
+                return;
+            }
+            if (m_pos == 0) {
+                m_leaf = m_leaf->prev;
+                m_pos = m_leaf ? m_leaf->count - 1 : 0;
+            } else {
+                --m_pos;
+            }
+        }
+        bool isEnd() const { return m_leaf == NULL; }
+        bool equals(const iterator &iter) const {
+            if (isEnd()) {
+                return iter.isEnd();
+            }
+            return m_leaf == iter.m_leaf && m_pos == iter.m_pos;
+        }
+    };
+
+    CompactingBTree(bool unique, Compare comper);
+    CompactingBTree(bool unique, Compare comper, KeyPrefix prefix);
+    ~CompactingBTree();
+
+    bool insert(std::pair<Key, Data> value) { return insert(value.first, value.second); };
+    bool insert(const Key &key, const Data &data);
+    bool erase(const Key &key);
+    bool erase(iterator &iter);
+
+    /**
+     * Build an empty tree bottom-up from [first, last), a range of
+     * std::pair<Key, Data> that is already in key order (and free of
+     * duplicates for a unique tree). Each level is written once, left to
+     * right, instead of descending from the root for every entry, and
+     * nodes are left a little short of full so that the inserts that
+     * follow a bulk load don't immediately split every leaf.
+     */
+    template<typename Iterator>
+    void bulkLoad(Iterator first, Iterator last);
+
+    iterator find(const Key &key) const;
+    iterator findRank(int64_t ith) const;
+    int64_t size() const { return m_count; }
+    iterator begin() const { return iterator(m_first, 0); }
+    iterator rbegin() const
+    {
+        if (m_last == NULL) {
+            return iterator();
+        }
+        return iterator(m_last, m_last->count - 1);
+    }
+
+    iterator lowerBound(const Key &key) const;
+    iterator upperBound(const Key &key) const;
+
+    std::pair<iterator, iterator> equalRange(const Key &key) const;
+
+    size_t bytesAllocated() const
+    {
+        return m_leafAllocator.bytesAllocated() + m_innerAllocator.bytesAllocated();
+    }
+
+    // Must pass a key that is already in the map, or else return -1
+    int64_t rankAsc(const Key& key) const;
+    int64_t rankUpper(const Key& key) const;
+
+    int height() const { return m_height; }
+    static int leafFanout() { return LEAF_FANOUT; }
+    static int innerFanout() { return INNER_FANOUT; }
+
+    /**
+     * For debugging: verify ordering, linkage, occupancy and counts. SLOW.
+     */
+    bool verify() const;
+
+private:
+    // not copyable
+    CompactingBTree(const CompactingBTree&);
+    CompactingBTree& operator=(const CompactingBTree&);
+
+    static inline void prefetchNode(const void *node, size_t bytes)
+    {
+        const char *p = static_cast<const char*>(node);
+        for (size_t offset = 0; offset < bytes; offset += CACHE_LINE_BYTES) {
+            __builtin_prefetch(p + offset);
+        }
+    }
+
+    inline uint64_t prefixOf(const Key &key) const
+    {
+        return m_prefix.enabled() ? m_prefix(key) : 0;
+    }
+
+    inline int compareSeparator(const InnerNode *node, int i, const Key &key, uint64_t keyPrefix) const
+    {
+        if (m_prefix.enabled()) {
+            if (node->prefix[i] < keyPrefix) {
+                return -1;
+            }
+            if (node->prefix[i] > keyPrefix) {
+                return 1;
+            }
+        }
+        return m_comper(node->keys[i], key);
+    }
+
+    // The number of separators less than (inclusive == false) or
+    // less than or equal to (inclusive == true) the key.
+    int childIndex(const InnerNode *node, const Key &key, uint64_t keyPrefix, bool inclusive) const;
+    // first entry >= key (inclusive == false) or > key (inclusive == true)
+    int leafBound(const LeafNode *leaf, const Key &key, bool inclusive) const;
+    LeafNode *findLeaf(const Key &key, bool inclusive) const;
+    iterator bound(const Key &key, bool inclusive) const;
+    int64_t position(const iterator &iter) const;
+
+    static int childSlot(const InnerNode *parent, const void *child);
+    static void setParent(void *child, bool leafChild, InnerNode *parent);
+    int64_t countUnder(const void *child, bool leafChild) const;
+    void adjustCounts(const LeafNode *leaf, int64_t delta);
+
+    void setSeparator(InnerNode *node, int i, const Key &key);
+    LeafNode *splitLeaf(LeafNode *leaf);
+    void insertIntoParent(void *left, bool leafChild, const Key &separator, void *right);
+
+    void removeFromInner(InnerNode *node, int i);
+    void rebalanceLeaf(LeafNode *leaf);
+    void rebalanceInner(InnerNode *node);
+    void mergeLeaves(LeafNode *left, LeafNode *right, InnerNode *parent, int i);
+    void mergeInner(InnerNode *left, InnerNode *right, InnerNode *&parent, int i);
+
+    // number of nodes to spread `items` entries or children over during a bulk load
+    static int64_t bulkNodeCount(int64_t items, int64_t fill, int64_t minimum);
+
+    LeafNode *allocLeaf();
+    InnerNode *allocInner(bool leafChildren);
+    void freeLeaf(LeafNode *leaf);
+    void freeInner(InnerNode *node, InnerNode **tracked);
+    void destroySubtree(void *node, bool isLeaf);
+
+    int64_t verify(const void *node, bool isLeaf, const InnerNode *parent,
+                   const Key *low, const Key *high, int depth, bool &ok) const;
+};
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::CompactingBTree(bool unique, Compare comper)
+    : m_count(0),
+      m_root(NULL),
+      m_height(0),
+      m_first(NULL),
+      m_last(NULL),
+      m_leafAllocator(static_cast<int32_t>(sizeof(LeafNode)), 1000, true),
+      m_innerAllocator(static_cast<int32_t>(sizeof(InnerNode)), 100, true),
+      m_unique(unique),
+      m_comper(comper),
+      m_prefix()
+{
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::CompactingBTree(bool unique, Compare comper, KeyPrefix prefix)
+    : m_count(0),
+      m_root(NULL),
+      m_height(0),
+      m_first(NULL),
+      m_last(NULL),
+      m_leafAllocator(static_cast<int32_t>(sizeof(LeafNode)), 1000, true),
+      m_innerAllocator(static_cast<int32_t>(sizeof(InnerNode)), 100, true),
+      m_unique(unique),
+      m_comper(comper),
+      m_prefix(prefix)
+{
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::~CompactingBTree()
+{
+    if (m_root != NULL) {
+        destroySubtree(m_root, m_height == 1);
+    }
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+void CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::destroySubtree(void *node, bool isLeaf)
+{
+    if (isLeaf) {
+        static_cast<LeafNode*>(node)->~LeafNode();
+        return;
+    }
+    InnerNode *inner = static_cast<InnerNode*>(node);
+    for (int i = 0; i <= inner->count; ++i) {
+        destroySubtree(inner->children[i], inner->leafChildren);
+    }
+    inner->~InnerNode();
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+int CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::childIndex(
+        const InnerNode *node, const Key &key, uint64_t keyPrefix, bool inclusive) const
+{
+    int lo = 0;
+    int hi = node->count;
+    while (lo < hi) {
+        int mid = (lo + hi) >> 1;
+        int cmp = compareSeparator(node, mid, key, keyPrefix);
+        if (cmp < 0 || (inclusive && cmp == 0)) {
+            lo = mid + 1;
+        } else {
+            hi = mid;
+        }
+    }
+    return lo;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+int CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::leafBound(
+        const LeafNode *leaf, const Key &key, bool inclusive) const
+{
+    int lo = 0;
+    int hi = leaf->count;
+    while (lo < hi) {
+        int mid = (lo + hi) >> 1;
+        int cmp = m_comper(leaf->key(mid), key);
+        if (cmp < 0 || (inclusive && cmp == 0)) {
+            lo = mid + 1;
+        } else {
+            hi = mid;
+        }
+    }
+    return lo;
+}
+
+/*
+ * Separators bound their subtrees inclusively: every entry under
+ * children[i] is >= keys[i-1] and <= keys[i]. So the leftmost leaf that can
+ * hold an entry >= key is found by skipping separators < key, and the
+ * leftmost leaf that can hold an entry > key by skipping separators <= key.
+ */
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+typename CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::LeafNode*
+CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::findLeaf(const Key &key, bool inclusive) const
+{
+    if (m_root == NULL) {
+        return NULL;
+    }
+    const uint64_t keyPrefix = prefixOf(key);
+    void *node = m_root;
+    for (int level = m_height; level > 1; --level) {
+        const InnerNode *inner = static_cast<const InnerNode*>(node);
+        node = inner->children[childIndex(inner, key, keyPrefix, inclusive)];
+        prefetchNode(node, level == 2 ? sizeof(LeafNode) : sizeof(InnerNode));
+    }
+    return static_cast<LeafNode*>(node);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+typename CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::iterator
+CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::bound(const Key &key, bool inclusive) const
+{
+    LeafNode *leaf = findLeaf(key, inclusive);
+    if (leaf == NULL) {
+        return iterator();
+    }
+    int pos = leafBound(leaf, key, inclusive);
+    if (pos == leaf->count) {
+        // every non-root leaf holds at least one entry
+        return iterator(leaf->next, 0);
+    }
+    return iterator(leaf, pos);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+typename CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::iterator
+CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::lowerBound(const Key &key) const
+{
+    return bound(key, false);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+typename CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::iterator
+CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::upperBound(const Key &key) const
+{
+    Key tmpKey(key);
+    setPointerValue(tmpKey, MAXPOINTER);
+    return bound(tmpKey, true);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+typename std::pair<typename CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::iterator,
+                   typename CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::iterator>
+CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::equalRange(const Key &key) const
+{
+    return std::pair<iterator, iterator>(lowerBound(key), upperBound(key));
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+typename CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::iterator
+CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::find(const Key &key) const
+{
+    iterator iter = bound(key, false);
+    if (iter.isEnd() || m_comper(iter.key(), key) != 0) {
+        return iterator();
+    }
+    return iter;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+int CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::childSlot(const InnerNode *parent, const void *child)
+{
+    for (int i = 0; i <= parent->count; ++i) {
+        if (parent->children[i] == child) {
+            return i;
+        }
+    }
+    assert(false);
+    return -1;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+void CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::setParent(void *child, bool leafChild, InnerNode *parent)
+{
+    if (leafChild) {
+        static_cast<LeafNode*>(child)->parent = parent;
+    } else {
+        static_cast<InnerNode*>(child)->parent = parent;
+    }
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+int64_t CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::countUnder(const void *child, bool leafChild) const
+{
+    if (leafChild) {
+        return static_cast<const LeafNode*>(child)->count;
+    }
+    const InnerNode *inner = static_cast<const InnerNode*>(child);
+    int64_t total = 0;
+    for (int i = 0; i <= inner->count; ++i) {
+        total += inner->subct[i];
+    }
+    return total;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+void CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::adjustCounts(const LeafNode *leaf, int64_t delta)
+{
+    const void *child = leaf;
+    InnerNode *parent = leaf->parent;
+    while (parent != NULL) {
+        parent->subct[childSlot(parent, child)] += delta;
+        child = parent;
+        parent = parent->parent;
+    }
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+void CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::setSeparator(InnerNode *node, int i, const Key &key)
+{
+    node->keys[i] = key;
+    node->prefix[i] = prefixOf(key);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+bool CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::insert(const Key &key, const Data &value)
+{
+    if (m_root == NULL) {
+        LeafNode *leaf = allocLeaf();
+        m_root = m_first = m_last = leaf;
+        m_height = 1;
+    }
+
+    LeafNode *leaf;
+    int pos;
+    if (m_unique) {
+        leaf = findLeaf(key, false);
+        pos = leafBound(leaf, key, false);
+        // An equal key may be the first entry of the following leaf.
+        const LeafNode *probe = leaf;
+        int probePos = pos;
+        if (probePos == probe->count) {
+            probe = probe->next;
+            probePos = 0;
+        }
+        if (probe != NULL && m_comper(probe->key(probePos), key) == 0) {
+            // Inserting exact matches fails for unique indexes.
+            return false;
+        }
+    } else {
+        // New duplicates go after (to the right of) existing ones.
+        leaf = findLeaf(key, true);
+        pos = leafBound(leaf, key, true);
+    }
+
+    if (leaf->count == LEAF_FANOUT) {
+        LeafNode *right = splitLeaf(leaf);
+        if (pos > leaf->count) {
+            pos -= leaf->count;
+            leaf = right;
+        }
+    }
+
+    for (int i = leaf->count; i > pos; --i) {
+        leaf->kv[i] = leaf->kv[i - 1];
+    }
+    leaf->kv[pos].setKey(key);
+    leaf->kv[pos].setValue(value); // for PointerKeyType, this is a little duplicating process
+    ++leaf->count;
+    ++m_count;
+    if (hasRank) {
+        adjustCounts(leaf, 1);
+    }
+    return true;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+typename CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::LeafNode*
+CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::splitLeaf(LeafNode *leaf)
+{
+    LeafNode *right = allocLeaf();
+    const int keep = leaf->count / 2;
+    for (int i = keep; i < leaf->count; ++i) {
+        right->kv[i - keep] = leaf->kv[i];
+    }
+    right->count = leaf->count - keep;
+    leaf->count = keep;
+
+    right->next = leaf->next;
+    right->prev = leaf;
+    if (leaf->next != NULL) {
+        leaf->next->prev = right;
+    } else {
+        m_last = right;
+    }
+    leaf->next = right;
+
+    insertIntoParent(leaf, true, right->key(0), right);
+    return right;
+}
+
+/*
+ * Hang a new right sibling next to a node that was just split. The entry
+ * count recorded for the left node still covers both halves, so splitting
+ * the parent first keeps the counts above it correct.
+ */
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+void CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::insertIntoParent(
+        void *left, bool leafChild, const Key &separator, void *right)
+{
+    InnerNode *parent = leafChild ? static_cast<LeafNode*>(left)->parent : static_cast<InnerNode*>(left)->parent;
+    if (parent == NULL) {
+        InnerNode *root = allocInner(leafChild);
+        root->count = 1;
+        setSeparator(root, 0, separator);
+        root->children[0] = left;
+        root->children[1] = right;
+        if (hasRank) {
+            root->subct[0] = countUnder(left, leafChild);
+            root->subct[1] = countUnder(right, leafChild);
+        }
+        setParent(left, leafChild, root);
+        setParent(right, leafChild, root);
+        m_root = root;
+        ++m_height;
+        return;
+    }
+
+    int slot = childSlot(parent, left);
+    if (parent->count == INNER_FANOUT) {
+        // keys [0, mid) stay, keys[mid] moves up, keys (mid, count) move to the sibling
+        InnerNode *sibling = allocInner(parent->leafChildren);
+        const int mid = parent->count / 2;
+        for (int i = mid + 1; i < parent->count; ++i) {
+            sibling->keys[i - mid - 1] = parent->keys[i];
+            sibling->prefix[i - mid - 1] = parent->prefix[i];
+        }
+        for (int i = mid + 1; i <= parent->count; ++i) {
+            sibling->children[i - mid - 1] = parent->children[i];
+            if (hasRank) {
+                sibling->subct[i - mid - 1] = parent->subct[i];
+            }
+            setParent(parent->children[i], parent->leafChildren, sibling);
+        }
+        sibling->count = parent->count - mid - 1;
+        parent->count = mid;
+        // parent->keys[mid] is left in place but is no longer a live key.
+        insertIntoParent(parent, false, parent->keys[mid], sibling);
+        if (slot > mid) {
+            slot -= mid + 1;
+            parent = sibling;
+        }
+    }
+
+    for (int i = parent->count; i > slot; --i) {
+        parent->keys[i] = parent->keys[i - 1];
+        parent->prefix[i] = parent->prefix[i - 1];
+    }
+    for (int i = parent->count + 1; i > slot + 1; --i) {
+        parent->children[i] = parent->children[i - 1];
+        if (hasRank) {
+            parent->subct[i] = parent->subct[i - 1];
+        }
+    }
+    setSeparator(parent, slot, separator);
+    parent->children[slot + 1] = right;
+    ++parent->count;
+    if (hasRank) {
+        parent->subct[slot] = countUnder(left, leafChild);
+        parent->subct[slot + 1] = countUnder(right, leafChild);
+    }
+    setParent(right, leafChild, parent);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+bool CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::erase(const Key &key)
+{
+    iterator iter = find(key);
+    if (iter.isEnd()) {
+        return false;
+    }
+    return erase(iter);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+bool CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::erase(iterator &iter)
+{
+    assert( ! iter.isEnd());
+    LeafNode *leaf = iter.m_leaf;
+    for (int i = iter.m_pos + 1; i < leaf->count; ++i) {
+        leaf->kv[i - 1] = leaf->kv[i];
+    }
+    --leaf->count;
+    --m_count;
+    if (hasRank) {
+        adjustCounts(leaf, -1);
+    }
+    rebalanceLeaf(leaf);
+    return true;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+void CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::removeFromInner(InnerNode *node, int i)
+{
+    // drop keys[i] and children[i + 1], folding the dropped child's count into children[i]
+    if (hasRank) {
+        node->subct[i] += node->subct[i + 1];
+    }
+    for (int j = i + 1; j < node->count; ++j) {
+        node->keys[j - 1] = node->keys[j];
+        node->prefix[j - 1] = node->prefix[j];
+    }
+    for (int j = i + 2; j <= node->count; ++j) {
+        node->children[j - 1] = node->children[j];
+        if (hasRank) {
+            node->subct[j - 1] = node->subct[j];
+        }
+    }
+    --node->count;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+void CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::rebalanceLeaf(LeafNode *leaf)
+{
+    InnerNode *parent = leaf->parent;
+    if (parent == NULL) {
+        if (leaf->count == 0) {
+            freeLeaf(leaf);
+            m_root = m_first = m_last = NULL;
+            m_height = 0;
+        }
+        return;
+    }
+    if (leaf->count >= LEAF_MIN) {
+        return;
+    }
+
+    const int slot = childSlot(parent, leaf);
+    LeafNode *left = slot > 0 ? static_cast<LeafNode*>(parent->children[slot - 1]) : NULL;
+    LeafNode *right = slot < parent->count ? static_cast<LeafNode*>(parent->children[slot + 1]) : NULL;
+
+    if (left != NULL && left->count > LEAF_MIN) {
+        for (int i = leaf->count; i > 0; --i) {
+            leaf->kv[i] = leaf->kv[i - 1];
+        }
+        leaf->kv[0] = left->kv[left->count - 1];
+        --left->count;
+        ++leaf->count;
+        setSeparator(parent, slot - 1, leaf->key(0));
+        if (hasRank) {
+            --parent->subct[slot - 1];
+            ++parent->subct[slot];
+        }
+        return;
+    }
+    if (right != NULL && right->count > LEAF_MIN) {
+        leaf->kv[leaf->count] = right->kv[0];
+        ++leaf->count;
+        for (int i = 1; i < right->count; ++i) {
+            right->kv[i - 1] = right->kv[i];
+        }
+        --right->count;
+        setSeparator(parent, slot, right->key(0));
+        if (hasRank) {
+            ++parent->subct[slot];
+            --parent->subct[slot + 1];
+        }
+        return;
+    }
+
+    if (left != NULL) {
+        mergeLeaves(left, leaf, parent, slot - 1);
+    } else {
+        mergeLeaves(leaf, right, parent, slot);
+    }
+    rebalanceInner(parent);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+void CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::mergeLeaves(
+        LeafNode *left, LeafNode *right, InnerNode *parent, int i)
+{
+    for (int j = 0; j < right->count; ++j) {
+        left->kv[left->count + j] = right->kv[j];
+    }
+    left->count += right->count;
+    left->next = right->next;
+    if (right->next != NULL) {
+        right->next->prev = left;
+    } else {
+        m_last = left;
+    }
+    removeFromInner(parent, i);
+    freeLeaf(right);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+void CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::rebalanceInner(InnerNode *node)
+{
+    while (true) {
+        InnerNode *parent = node->parent;
+        if (parent == NULL) {
+            if (node->count == 0) {
+                // the root has a single child left; that child becomes the root
+                void *child = node->children[0];
+                setParent(child, node->leafChildren, NULL);
+                m_root = child;
+                --m_height;
+                freeInner(node, NULL);
+            }
+            return;
+        }
+        if (node->count >= INNER_MIN) {
+            return;
+        }
+
+        const int slot = childSlot(parent, node);
+        InnerNode *left = slot > 0 ? static_cast<InnerNode*>(parent->children[slot - 1]) : NULL;
+        InnerNode *right = slot < parent->count ? static_cast<InnerNode*>(parent->children[slot + 1]) : NULL;
+
+        if (left != NULL && left->count > INNER_MIN) {
+            // rotate the last child of the left sibling through the parent
+            for (int i = node->count; i > 0; --i) {
+                node->keys[i] = node->keys[i - 1];
+                node->prefix[i] = node->prefix[i - 1];
+            }
+            for (int i = node->count + 1; i > 0; --i) {
+                node->children[i] = node->children[i - 1];
+                if (hasRank) {
+                    node->subct[i] = node->subct[i - 1];
+                }
+            }
+            node->keys[0] = parent->keys[slot - 1];
+            node->prefix[0] = parent->prefix[slot - 1];
+            node->children[0] = left->children[left->count];
+            setParent(node->children[0], node->leafChildren, node);
+            parent->keys[slot - 1] = left->keys[left->count - 1];
+            parent->prefix[slot - 1] = left->prefix[left->count - 1];
+            if (hasRank) {
+                const int64_t moved = left->subct[left->count];
+                node->subct[0] = moved;
+                parent->subct[slot - 1] -= moved;
+                parent->subct[slot] += moved;
+            }
+            --left->count;
+            ++node->count;
+            return;
+        }
+        if (right != NULL && right->count > INNER_MIN) {
+            // rotate the first child of the right sibling through the parent
+            node->keys[node->count] = parent->keys[slot];
+            node->prefix[node->count] = parent->prefix[slot];
+            node->children[node->count + 1] = right->children[0];
+            setParent(right->children[0], node->leafChildren, node);
+            if (hasRank) {
+                const int64_t moved = right->subct[0];
+                node->subct[node->count + 1] = moved;
+                parent->subct[slot] += moved;
+                parent->subct[slot + 1] -= moved;
+            }
+            ++node->count;
+            parent->keys[slot] = right->keys[0];
+            parent->prefix[slot] = right->prefix[0];
+            for (int i = 1; i < right->count; ++i) {
+                right->keys[i - 1] = right->keys[i];
+                right->prefix[i - 1] = right->prefix[i];
+            }
+            for (int i = 1; i <= right->count; ++i) {
+                right->children[i - 1] = right->children[i];
+                if (hasRank) {
+                    right->subct[i - 1] = right->subct[i];
+                }
+            }
+            --right->count;
+            return;
+        }
+
+        if (left != NULL) {
+            mergeInner(left, node, parent, slot - 1);
+        } else {
+            mergeInner(node, right, parent, slot);
+        }
+        // mergeInner keeps parent pointing at the right node even if it was relocated.
+        node = parent;
+    }
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+void CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::mergeInner(
+        InnerNode *left, InnerNode *right, InnerNode *&parent, int i)
+{
+    // pull the separator down and append everything from the right node
+    left->keys[left->count] = parent->keys[i];
+    left->prefix[left->count] = parent->prefix[i];
+    for (int j = 0; j < right->count; ++j) {
+        left->keys[left->count + 1 + j] = right->keys[j];
+        left->prefix[left->count + 1 + j] = right->prefix[j];
+    }
+    for (int j = 0; j <= right->count; ++j) {
+        left->children[left->count + 1 + j] = right->children[j];
+        if (hasRank) {
+            left->subct[left->count + 1 + j] = right->subct[j];
+        }
+        setParent(right->children[j], right->leafChildren, left);
+    }
+    left->count += right->count + 1;
+    removeFromInner(parent, i);
+    freeInner(right, &parent);
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+int64_t CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::bulkNodeCount(
+        int64_t items, int64_t fill, int64_t minimum)
+{
+    int64_t nodes = (items + fill - 1) / fill;
+    // Spreading evenly over that many nodes can leave each one under the
+    // minimum occupancy for small levels. Use fewer, fuller nodes then.
+    if (nodes > 1 && items / nodes < minimum) {
+        nodes = items / minimum;
+    }
+    return nodes;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+template<typename Iterator>
+void CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::bulkLoad(Iterator first, Iterator last)
+{
+    assert(m_root == NULL);
+    int64_t total = 0;
+    for (Iterator it = first; it != last; ++it) {
+        ++total;
+    }
+    if (total == 0) {
+        return;
+    }
+
+    // the nodes of the level being built, with the smallest key and the
+    // number of entries under each of them
+    std::vector<void*> nodes;
+    std::vector<const Key*> lowKeys;
+    std::vector<int64_t> counts;
+
+    const int64_t leafCount = bulkNodeCount(total, LEAF_FANOUT - LEAF_FANOUT / 8, LEAF_MIN);
+    nodes.reserve(static_cast<size_t>(leafCount));
+    lowKeys.reserve(static_cast<size_t>(leafCount));
+    counts.reserve(static_cast<size_t>(leafCount));
+    LeafNode *prev = NULL;
+    Iterator it = first;
+    for (int64_t n = 0; n < leafCount; ++n) {
+        LeafNode *leaf = allocLeaf();
+        const int64_t entries = total / leafCount + (n < total % leafCount ? 1 : 0);
+        for (int i = 0; i < entries; ++i, ++it) {
+            leaf->kv[i].setKey(it->first);
+            leaf->kv[i].setValue(it->second);
+        }
+        leaf->count = static_cast<int32_t>(entries);
+        leaf->prev = prev;
+        if (prev != NULL) {
+            prev->next = leaf;
+        } else {
+            m_first = leaf;
+        }
+        prev = leaf;
+        nodes.push_back(leaf);
+        lowKeys.push_back(&leaf->key(0));
+        counts.push_back(entries);
+    }
+    m_last = prev;
+    m_count = total;
+    m_height = 1;
+
+    // Each pass hangs the current level under a new level of inner nodes,
+    // using the smallest key under each child after the first as its
+    // separator.
+    bool leafChildren = true;
+    while (nodes.size() > 1) {
+        const int64_t children = static_cast<int64_t>(nodes.size());
+        const int64_t parentCount = bulkNodeCount(children, INNER_FANOUT + 1 - (INNER_FANOUT + 1) / 8,
+                                                  INNER_MIN + 1);
+        std::vector<void*> parents;
+        std::vector<const Key*> parentLowKeys;
+        std::vector<int64_t> parentCounts;
+        parents.reserve(static_cast<size_t>(parentCount));
+        parentLowKeys.reserve(static_cast<size_t>(parentCount));
+        parentCounts.reserve(static_cast<size_t>(parentCount));
+        size_t child = 0;
+        for (int64_t n = 0; n < parentCount; ++n) {
+            InnerNode *inner = allocInner(leafChildren);
+            const int64_t fanout = children / parentCount + (n < children % parentCount ? 1 : 0);
+            int64_t under = 0;
+            for (int i = 0; i < fanout; ++i, ++child) {
+                inner->children[i] = nodes[child];
+                setParent(nodes[child], leafChildren, inner);
+                if (i > 0) {
+                    setSeparator(inner, i - 1, *lowKeys[child]);
+                }
+                if (hasRank) {
+                    inner->subct[i] = counts[child];
+                }
+                under += counts[child];
+            }
+            inner->count = static_cast<int32_t>(fanout - 1);
+            parents.push_back(inner);
+            parentLowKeys.push_back(lowKeys[child - static_cast<size_t>(fanout)]);
+            parentCounts.push_back(under);
+        }
+        nodes.swap(parents);
+        lowKeys.swap(parentLowKeys);
+        counts.swap(parentCounts);
+        leafChildren = false;
+        ++m_height;
+    }
+    m_root = nodes[0];
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+typename CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::LeafNode*
+CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::allocLeaf()
+{
+    void *memory = m_leafAllocator.alloc();
+    assert(memory);
+    // placement new
+    LeafNode *leaf = new(memory) LeafNode();
+    leaf->parent = NULL;
+    leaf->prev = leaf->next = NULL;
+    leaf->count = 0;
+    return leaf;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+typename CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::InnerNode*
+CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::allocInner(bool leafChildren)
+{
+    void *memory = m_innerAllocator.alloc();
+    assert(memory);
+    // placement new
+    InnerNode *node = new(memory) InnerNode();
+    node->parent = NULL;
+    node->count = 0;
+    node->leafChildren = leafChildren;
+    return node;
+}
+
+/*
+ * Release a leaf by moving the last allocated leaf into its memory, keeping
+ * the allocator's buffer chain dense (see CompactingMap::fragmentFixup).
+ */
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+void CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::freeLeaf(LeafNode *leaf)
+{
+    LeafNode *last = static_cast<LeafNode*>(m_leafAllocator.last());
+    leaf->~LeafNode();
+    if (last != leaf) {
+        new(leaf) LeafNode(*last);
+        if (leaf->parent != NULL) {
+            leaf->parent->children[childSlot(leaf->parent, last)] = leaf;
+        } else {
+            m_root = leaf;
+        }
+        if (leaf->prev != NULL) {
+            leaf->prev->next = leaf;
+        } else {
+            m_first = leaf;
+        }
+        if (leaf->next != NULL) {
+            leaf->next->prev = leaf;
+        } else {
+            m_last = leaf;
+        }
+        last->~LeafNode();
+    }
+    m_leafAllocator.trim();
+}
+
+/*
+ * Release an inner node the same way. If tracked points at the node that
+ * gets relocated, it is updated to the node's new address.
+ */
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+void CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::freeInner(InnerNode *node, InnerNode **tracked)
+{
+    InnerNode *last = static_cast<InnerNode*>(m_innerAllocator.last());
+    node->~InnerNode();
+    if (last != node) {
+        new(node) InnerNode(*last);
+        if (node->parent != NULL) {
+            node->parent->children[childSlot(node->parent, last)] = node;
+        } else {
+            m_root = node;
+        }
+        for (int i = 0; i <= node->count; ++i) {
+            setParent(node->children[i], node->leafChildren, node);
+        }
+        if (tracked != NULL && *tracked == last) {
+            *tracked = node;
+        }
+        last->~InnerNode();
+    }
+    m_innerAllocator.trim();
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+int64_t CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::position(const iterator &iter) const
+{
+    if (iter.isEnd()) {
+        return m_count;
+    }
+    int64_t pos = iter.m_pos;
+    const void *child = iter.m_leaf;
+    const InnerNode *parent = iter.m_leaf->parent;
+    while (parent != NULL) {
+        const int slot = childSlot(parent, child);
+        for (int i = 0; i < slot; ++i) {
+            pos += parent->subct[i];
+        }
+        child = parent;
+        parent = parent->parent;
+    }
+    return pos;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+int64_t CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::rankAsc(const Key& key) const
+{
+    if (!hasRank) {
+        return -1;
+    }
+    // return -1 if the key passed in is not in the map
+    if (find(key).isEnd()) {
+        return -1;
+    }
+    // only compare the "data" part of the key
+    Key tmpKey(key);
+    setPointerValue(tmpKey, NULL);
+    return position(lowerBound(tmpKey)) + 1;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+int64_t CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::rankUpper(const Key& key) const
+{
+    if (!hasRank) {
+        return -1;
+    }
+    if (m_unique) {
+        return rankAsc(key);
+    }
+    // return -1 if the key passed in is not in the map
+    if (find(key).isEnd()) {
+        return -1;
+    }
+    return position(upperBound(key));
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+typename CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::iterator
+CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::findRank(int64_t ith) const
+{
+    if ((!hasRank) || ith < 1 || ith > m_count) {
+        return iterator();
+    }
+    int64_t rk = ith - 1;
+    void *node = m_root;
+    for (int level = m_height; level > 1; --level) {
+        const InnerNode *inner = static_cast<const InnerNode*>(node);
+        int i = 0;
+        while (i < inner->count && rk >= inner->subct[i]) {
+            rk -= inner->subct[i];
+            ++i;
+        }
+        node = inner->children[i];
+    }
+    return iterator(static_cast<LeafNode*>(node), static_cast<int32_t>(rk));
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+bool CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::verify() const
+{
+    if (m_root == NULL) {
+        return m_count == 0 && m_height == 0 && m_first == NULL && m_last == NULL;
+    }
+    bool ok = true;
+    int64_t total = verify(m_root, m_height == 1, NULL, NULL, NULL, 1, ok);
+    if (total != m_count) {
+        printf("B+tree holds %ld entries but counts %ld\n", (long)total, (long)m_count);
+        ok = false;
+    }
+    // walk the leaf chain both ways
+    int64_t forward = 0;
+    const LeafNode *prev = NULL;
+    for (const LeafNode *leaf = m_first; leaf != NULL; leaf = leaf->next) {
+        if (leaf->prev != prev) {
+            printf("B+tree leaf chain is broken\n");
+            ok = false;
+        }
+        if (prev != NULL && m_comper(prev->key(prev->count - 1), leaf->key(0)) > 0) {
+            printf("B+tree leaves are out of order\n");
+            ok = false;
+        }
+        forward += leaf->count;
+        prev = leaf;
+    }
+    if (prev != m_last || forward != m_count) {
+        printf("B+tree leaf chain does not cover all entries\n");
+        ok = false;
+    }
+    return ok;
+}
+
+template<typename KeyValuePair, typename Compare, bool hasRank, typename KeyPrefix>
+int64_t CompactingBTree<KeyValuePair, Compare, hasRank, KeyPrefix>::verify(
+        const void *node, bool isLeaf, const InnerNode *parent,
+        const Key *low, const Key *high, int depth, bool &ok) const
+{
+    if (isLeaf) {
+        const LeafNode *leaf = static_cast<const LeafNode*>(node);
+        if (depth != m_height || leaf->parent != parent) {
+            printf("B+tree leaf at wrong depth or with wrong parent\n");
+            ok = false;
+        }
+        if (leaf->count < 1 || (parent != NULL && leaf->count > LEAF_FANOUT)) {
+            printf("B+tree leaf has bad count %d\n", leaf->count);
+            ok = false;
+        }
+        for (int i = 0; i < leaf->count; ++i) {
+            if (i > 0 && m_comper(leaf->key(i - 1), leaf->key(i)) > (m_unique ? -1 : 0)) {
+                printf("B+tree leaf is out of order\n");
+                ok = false;
+            }
+            if ((low && m_comper(*low, leaf->key(i)) > 0) || (high && m_comper(leaf->key(i), *high) > 0)) {
+                printf("B+tree leaf entry outside of its separators\n");
+                ok = false;
+            }
+        }
+        return leaf->count;
+    }
+    const InnerNode *inner = static_cast<const InnerNode*>(node);
+    if (inner->parent != parent || inner->count < 1 || inner->count > INNER_FANOUT) {
+        printf("B+tree inner node has bad parent or count %d\n", inner->count);
+        ok = false;
+    }
+    int64_t total = 0;
+    for (int i = 0; i <= inner->count; ++i) {
+        if (i < inner->count && inner->prefix[i] != prefixOf(inner->keys[i])) {
+            printf("B+tree separator prefix is stale\n");
+            ok = false;
+        }
+        const Key *childLow = i > 0 ? &inner->keys[i - 1] : low;
+        const Key *childHigh = i < inner->count ? &inner->keys[i] : high;
+        int64_t under = verify(inner->children[i], inner->leafChildren, inner,
+                               childLow, childHigh, depth + 1, ok);
+        if (hasRank && under != inner->subct[i]) {
+            printf("B+tree count for child %d is %ld but should be %ld\n",
+                   i, (long)inner->subct[i], (long)under);
+            ok = false;
+        }
+        total += under;
+    }
+    return total;
+}
+
+} // namespace voltdb
+
+#endif // COMPACTINGBTREE_H_
@@ -16,44 +16,69 @@
  */
 
 #include "ContiguousAllocator.h"
+#include "common/LargePageAllocator.h"
 
 #include <cassert>
 
 using namespace voltdb;
 
-ContiguousAllocator::ContiguousAllocator(int32_t allocSize, int32_t chunkSize)
-: m_count(0), m_allocSize(allocSize), m_chunkSize(chunkSize), m_tail(NULL), m_blockCount(0) {}
+ContiguousAllocator::ContiguousAllocator(int32_t allocSize, int32_t chunkSize, bool largeBuffers)
+: m_count(0), m_allocSize(allocSize), m_chunkSize(chunkSize), m_tail(NULL), m_tailCount(0),
+  m_blockCount(0), m_bytesAllocated(0), m_largeBuffers(largeBuffers) {}
 
 ContiguousAllocator::~ContiguousAllocator() {
     while (m_tail) {
         Buffer *buf = m_tail->prev;
-        free(m_tail);
+        freeBuffer(m_tail);
         m_tail = buf;
     }
 }
 
+void ContiguousAllocator::freeBuffer(Buffer *buf) {
+    if (m_largeBuffers) {
+        LargePageAllocator::deallocate(buf, sizeof(Buffer) + m_allocSize * buf->capacity);
+    }
+    else {
+        free(buf);
+    }
+}
+
+int64_t ContiguousAllocator::nextBufferCapacity() const {
+    if (m_largeBuffers && m_bytesAllocated >= LargePageAllocator::HUGE_PAGE_SIZE) {
+        int64_t hugeCapacity =
+            static_cast<int64_t>((LargePageAllocator::HUGE_PAGE_SIZE - sizeof(Buffer)) / m_allocSize);
+        if (hugeCapacity > m_chunkSize) {
+            return hugeCapacity;
+        }
+    }
+    return m_chunkSize;
+}
+
 void *ContiguousAllocator::alloc() {
     m_count++;
 
-    // determine where in the current block the new alloc will go
-    int64_t blockOffset = (m_count - 1) % m_chunkSize;
-
     // if a new block is needed...
-    if (blockOffset == 0) {
-        void *memory = malloc(sizeof(Buffer) + m_allocSize * m_chunkSize);
+    if (m_tail == NULL || m_tailCount == m_tail->capacity) {
+        int64_t capacity = nextBufferCapacity();
+        size_t bytes = sizeof(Buffer) + m_allocSize * capacity;
+        void *memory = m_largeBuffers ? LargePageAllocator::allocate(bytes) : malloc(bytes);
 
         Buffer *buf = reinterpret_cast<Buffer*>(memory);
 
         // for debugging
-        //memset(buf, 0, sizeof(sizeof(ChainedBuffer) + m_allocSize * m_chunkSize));
+        //memset(buf, 0, sizeof(sizeof(ChainedBuffer) + m_allocSize * capacity));
 
         buf->prev = m_tail;
+        buf->capacity = capacity;
         m_tail = buf;
+        m_tailCount = 0;
         m_blockCount++;
+        m_bytesAllocated += static_cast<size_t>(m_allocSize * capacity);
     }
 
     // get a pointer to where the new alloc will live
-    void *retval = m_tail->data + (m_allocSize * blockOffset);
+    void *retval = m_tail->data + (m_allocSize * m_tailCount);
+    m_tailCount++;
     assert(retval == last());
     return retval;
 }
@@ -61,10 +86,9 @@ void *ContiguousAllocator::alloc() {
 void *ContiguousAllocator::last() const {
     assert(m_count > 0);
     assert(m_tail != NULL);
+    assert(m_tailCount > 0);
 
-    // determine where in the current block the last alloc is
-    int64_t blockOffset = (m_count - 1) % m_chunkSize;
-    return m_tail->data + (m_allocSize * blockOffset);
+    return m_tail->data + (m_allocSize * (m_tailCount - 1));
 }
 
 void ContiguousAllocator::trim() {
@@ -75,22 +99,20 @@ void ContiguousAllocator::trim() {
     assert(m_tail != NULL);
 
     m_count--;
-
-    // determine where in the current block the last alloc is
-    int64_t blockOffset = m_count % m_chunkSize;
+    m_tailCount--;
 
     // yay! kill a block
-    if (blockOffset == 0) {
+    if (m_tailCount == 0) {
         Buffer *buf = m_tail->prev;
-        free(m_tail);
+        m_bytesAllocated -= static_cast<size_t>(m_allocSize * m_tail->capacity);
+        freeBuffer(m_tail);
         m_tail = buf;
+        // every buffer but the tail is full
+        m_tailCount = m_tail ? m_tail->capacity : 0;
         m_blockCount--;
     }
 }
 
 size_t ContiguousAllocator::bytesAllocated() const {
-    size_t total = static_cast<size_t>(m_blockCount) *
-        static_cast<size_t>(m_allocSize) *
-        static_cast<size_t>(m_chunkSize);
-    return total;
+    return m_bytesAllocated;
 }
@@ -19,6 +19,7 @@
 #define CONTIGUOUSALLOCATOR_H_
 
 #include <cstdlib>
+#include <stdint.h>
 
 namespace voltdb {
 
@@ -27,11 +28,17 @@ namespace voltdb {
  * fixed size indivual allocations to consumers within those
  * buffers.
  *
+ * With large buffers enabled, once the allocator holds a huge page
+ * worth of buffers it switches to buffers that exactly fill one, so big
+ * indexes end up in huge page backed memory (see LargePageAllocator)
+ * while small ones keep their small footprint.
+ *
  * Note, there are few checks here when running in release mode.
  */
 class ContiguousAllocator {
     struct Buffer {
         Buffer *prev;
+        int64_t capacity;
         char data[0];
     };
 
@@ -39,14 +46,21 @@ class ContiguousAllocator {
     int32_t m_allocSize;
     int32_t m_chunkSize;
     Buffer *m_tail;
+    int64_t m_tailCount;
     int32_t m_blockCount;
+    size_t m_bytesAllocated;
+    const bool m_largeBuffers;
+
+    int64_t nextBufferCapacity() const;
+    void freeBuffer(Buffer *buf);
 
 public:
     /**
      * @param allocSize is the size in bytes of individual allocations.
      * @param chunkSize is the number of allocations per buffer (not bytes).
+     * @param largeBuffers grow into huge page sized buffers once big enough.
      */
-    ContiguousAllocator(int32_t allocSize, int32_t chunkSize);
+    ContiguousAllocator(int32_t allocSize, int32_t chunkSize, bool largeBuffers = false);
     ~ContiguousAllocator();
 
     void *alloc();
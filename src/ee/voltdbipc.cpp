@@ -23,6 +23,7 @@
  */
 
 #include "common/Topend.h"
+#include "common/LargePageAllocator.h"
 
 #include "execution/VoltDBEngine.h"
 #include "logging/StdoutLogProxy.h"
@@ -170,6 +171,8 @@ private:
 
     void threadLocalPoolAllocations();
 
+    void largePageAllocations();
+
     void applyBinaryLog(struct ipc_command*);
 
     void executeTask(struct ipc_command*);
@@ -338,6 +341,7 @@ typedef struct {
     int64_t lastCommittedSpHandle;
     int64_t uniqueId;
     int64_t undoToken;
+    int8_t checksumsVerified;
     char log[0];
 }__attribute__((packed)) apply_binary_log;
 
@@ -486,6 +490,10 @@ bool VoltDBIPC::execute(struct ipc_command *cmd) {
           applyBinaryLog(cmd);
           result = kErrorCode_None;
           break;
+      case 30:
+          largePageAllocations();
+          result = kErrorCode_None;
+          break;
       default:
         result = stub(cmd);
     }
@@ -1448,6 +1456,15 @@ void VoltDBIPC::threadLocalPoolAllocations() {
     writeOrDie(m_fd, (unsigned char*)response, 9);
 }
 
+void VoltDBIPC::largePageAllocations() {
+    char response[25];
+    response[0] = kErrorCode_Success;
+    *reinterpret_cast<int64_t*>(&response[1]) = htonll(LargePageAllocator::getHugePageBytes());
+    *reinterpret_cast<int64_t*>(&response[9]) = htonll(LargePageAllocator::getTransparentHugePageBytes());
+    *reinterpret_cast<int64_t*>(&response[17]) = htonll(LargePageAllocator::getNumaLocalBytes());
+    writeOrDie(m_fd, (unsigned char*)response, 25);
+}
+
 int64_t VoltDBIPC::getQueuedExportBytes(int32_t partitionId, std::string signature) {
     m_reusedResultBuffer[0] = kErrorCode_getQueuedExportBytes;
     *reinterpret_cast<int32_t*>(&m_reusedResultBuffer[1]) = htonl(partitionId);
@@ -1534,7 +1551,8 @@ void VoltDBIPC::applyBinaryLog(struct ipc_command *cmd) {
                                  ntohll(params->lastCommittedSpHandle),
                                  ntohll(params->uniqueId),
                                  ntohll(params->undoToken),
-                                 params->log);
+                                 params->log,
+                                 params->checksumsVerified != 0);
     } catch (const FatalException& e) {
         crashVoltDB(e);
     }
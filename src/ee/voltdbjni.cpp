@@ -105,6 +105,7 @@
 #include "common/serializeio.h"
 #include "common/TheHashinator.h"
 #include "common/Pool.hpp"
+#include "common/LargePageAllocator.h"
 #include "common/FatalException.hpp"
 #include "common/SegvException.hpp"
 #include "common/RecoveryProtoMessage.h"
@@ -533,6 +534,36 @@ SHAREDLIB_JNIEXPORT jint JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeSetBu
     return org_voltdb_jni_ExecutionEngine_ERRORCODE_SUCCESS;
 }
 
+/**
+ * Sets (or re-sets) the buffer the EE counts writes to each table in, so
+ * java can tell whether cached procedure results are still valid.
+ * @param pointer the VoltDBEngine pointer
+ * @param epoch_buffer direct byte buffer of native order longs, indexed by
+ *        catalog table relative index
+ * @param epoch_buffer_size size of the buffer in bytes
+ * @return error code
+*/
+SHAREDLIB_JNIEXPORT jint JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeSetTableWriteEpochBuffer
+  (JNIEnv *env, jobject obj, jlong engine_ptr, jobject epoch_buffer, jint epoch_buffer_size)
+{
+    VOLT_DEBUG("nativeSetTableWriteEpochBuffer() start");
+    VoltDBEngine *engine = castToEngine(engine_ptr);
+    if (engine == NULL) {
+        return org_voltdb_jni_ExecutionEngine_ERRORCODE_ERROR;
+    }
+    Topend *topend = static_cast<JNITopend*>(engine->getTopend())->updateJNIEnv(env);
+    try {
+        updateJNILogProxy(engine); //JNIEnv pointer can change between calls, must be updated
+
+        char *epochBuffer = reinterpret_cast<char*>(env->GetDirectBufferAddress(epoch_buffer));
+        engine->setTableWriteEpochBuffer(epochBuffer, epoch_buffer_size);
+    } catch (const FatalException &e) {
+        topend->crashVoltDB(e);
+    }
+
+    return org_voltdb_jni_ExecutionEngine_ERRORCODE_SUCCESS;
+}
+
 /**
  * Executes multiple plan fragments with the given parameter sets and gets the results.
  * @param pointer the VoltDBEngine pointer
@@ -1240,6 +1271,25 @@ SHAREDLIB_JNIEXPORT jlong JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeGetT
     return ThreadLocalPool::getPoolAllocationSize();
 }
 
+/*
+ * Class:     org_voltdb_jni_ExecutionEngine
+ * Method:    nativeGetLargePageAllocations
+ * Signature: ()[J
+ */
+SHAREDLIB_JNIEXPORT jlongArray JNICALL Java_org_voltdb_jni_ExecutionEngine_nativeGetLargePageAllocations
+  (JNIEnv *env, jclass) {
+    jlongArray retval = env->NewLongArray(3);
+    if (retval == NULL) {
+        return NULL;
+    }
+    jlong counters[3];
+    counters[0] = LargePageAllocator::getHugePageBytes();
+    counters[1] = LargePageAllocator::getTransparentHugePageBytes();
+    counters[2] = LargePageAllocator::getNumaLocalBytes();
+    env->SetLongArrayRegion(retval, 0, 3, counters);
+    return retval;
+}
+
 /*
  * Class:     org_voltdb_jni_ExecutionEngine
  * Method:    nativeGetRSS
@@ -1360,7 +1410,8 @@ SHAREDLIB_JNIEXPORT jlong JNICALL Java_org_voltdb_utils_PosixAdvise_fallocate
 SHAREDLIB_JNIEXPORT jint JNICALL
 Java_org_voltdb_jni_ExecutionEngine_nativeApplyBinaryLog (
     JNIEnv *env, jobject obj, jlong engine_ptr,
-    jlong txnId, jlong spHandle, jlong lastCommittedSpHandle, jlong uniqueId, jlong undoToken)
+    jlong txnId, jlong spHandle, jlong lastCommittedSpHandle, jlong uniqueId, jlong undoToken,
+    jboolean checksumsVerified)
 {
     VoltDBEngine *engine = castToEngine(engine_ptr);
     Topend *topend = static_cast<JNITopend*>(engine->getTopend())->updateJNIEnv(env);
@@ -1376,7 +1427,8 @@ Java_org_voltdb_jni_ExecutionEngine_nativeApplyBinaryLog (
 
     try {
         engine->applyBinaryLog(txnId, spHandle, lastCommittedSpHandle, uniqueId, undoToken,
-                               engine->getParameterBuffer() + sizeof(int64_t));
+                               engine->getParameterBuffer() + sizeof(int64_t),
+                               checksumsVerified == JNI_TRUE);
         return org_voltdb_jni_ExecutionEngine_ERRORCODE_SUCCESS;
     } catch (const SerializableEEException &e) {
         engine->resetReusedResultOutputBuffer();
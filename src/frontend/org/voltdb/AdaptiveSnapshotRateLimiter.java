@@ -0,0 +1,149 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.concurrent.TimeUnit;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltdb.utils.FsyncLatencyTracker;
+
+import com.google_voltpatches.common.util.concurrent.UnsynchronizedRateLimiter;
+
+/**
+ * Limits how fast snapshot data is written.
+ *
+ * The rate never goes over the configured ceiling, which is unlimited by
+ * default. While command log or export fsync latency is rising the rate is
+ * halved, starting from the throughput actually achieved, down to a floor.
+ * Once latency settles it grows back by a quarter per interval until it
+ * reaches the ceiling again, and an unlimited ceiling stops limiting.
+ */
+class AdaptiveSnapshotRateLimiter {
+    private static final VoltLogger SNAP_LOG = new VoltLogger("SNAPSHOT");
+
+    static final double MEGABYTE = 1024.0 * 1024.0;
+    static final long ADJUST_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    static final double FLOOR =
+        Math.max(1, Integer.getInteger("SNAPSHOT_RATELIMIT_MIN_MEGABYTES", 16)) * MEGABYTE;
+    static final double BACKOFF = 0.5;
+    static final double RECOVERY = 1.25;
+
+    private final UnsynchronizedRateLimiter m_limiter;
+    private final double m_defaultCeiling;
+    private double m_ceiling;
+    private boolean m_adaptive = true;
+    // Current rate, only enforced while limiting
+    private double m_rate;
+    private boolean m_limiting;
+
+    private long m_windowStartNanos;
+    private long m_windowBytes = 0;
+
+    /**
+     * @param ceilingMegabytes most megabytes per second, Integer.MAX_VALUE for no limit
+     */
+    AdaptiveSnapshotRateLimiter(int ceilingMegabytes) {
+        this(ceilingMegabytes, System.nanoTime());
+    }
+
+    AdaptiveSnapshotRateLimiter(int ceilingMegabytes, long nowNanos) {
+        m_defaultCeiling = ceilingMegabytes * MEGABYTE;
+        m_ceiling = m_defaultCeiling;
+        m_rate = m_ceiling;
+        m_limiting = isLimited(m_ceiling);
+        m_limiter = UnsynchronizedRateLimiter.create(m_rate, 1, TimeUnit.SECONDS);
+        m_windowStartNanos = nowNanos;
+    }
+
+    private static boolean isLimited(double ceiling) {
+        return ceiling < Integer.MAX_VALUE * MEGABYTE;
+    }
+
+    /**
+     * Wait until the bytes may be written.
+     */
+    synchronized void acquire(int bytes) {
+        adjust(System.nanoTime());
+        m_windowBytes += bytes;
+        if (m_limiting) {
+            m_limiter.acquire(bytes);
+        }
+    }
+
+    /**
+     * Replace the ceiling. An explicit rate is held as is, null restores the
+     * configured ceiling and lets the rate adapt again.
+     */
+    synchronized void setCeiling(Integer megabytesPerSecond) {
+        if (megabytesPerSecond == null) {
+            m_ceiling = m_defaultCeiling;
+            m_adaptive = true;
+        } else {
+            m_ceiling = megabytesPerSecond * MEGABYTE;
+            m_adaptive = false;
+        }
+        m_rate = m_ceiling;
+        m_limiting = isLimited(m_ceiling);
+        if (m_limiting) {
+            m_limiter.setRate(m_rate);
+        }
+    }
+
+    synchronized void adjust(long nowNanos) {
+        final long elapsed = nowNanos - m_windowStartNanos;
+        if (elapsed < ADJUST_INTERVAL_NANOS) {
+            return;
+        }
+        final double throughput = m_windowBytes * (double)TimeUnit.SECONDS.toNanos(1) / elapsed;
+        m_windowStartNanos = nowNanos;
+        m_windowBytes = 0;
+        if (!m_adaptive) {
+            return;
+        }
+
+        if (FsyncLatencyTracker.isRising()) {
+            final double from = m_limiting ? m_rate : Math.min(throughput, m_ceiling);
+            final double rate = Math.max(FLOOR, from * BACKOFF);
+            if (!m_limiting || rate < m_rate) {
+                if (!m_limiting) {
+                    SNAP_LOG.debug("Fsync latency is rising, limiting snapshot writes to " +
+                                   (long)(rate / MEGABYTE) + " megabytes/second");
+                }
+                m_rate = rate;
+                m_limiting = true;
+                m_limiter.setRate(m_rate);
+            }
+        } else if (m_limiting && m_rate < m_ceiling) {
+            m_rate = Math.min(m_ceiling, m_rate * RECOVERY);
+            if (m_rate >= m_ceiling && !isLimited(m_ceiling)) {
+                SNAP_LOG.debug("Fsync latency has settled, no longer limiting snapshot writes");
+                m_limiting = false;
+            } else {
+                m_limiter.setRate(m_rate);
+            }
+        }
+    }
+
+    synchronized boolean isLimiting() {
+        return m_limiting;
+    }
+
+    synchronized double getRate() {
+        return m_rate;
+    }
+}
@@ -0,0 +1,52 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Asks the server to cache the results of a stored procedure by parameter
+ * values, separately in each partition.</p>
+ *
+ * <p>A cached result is returned as long as none of the tables the
+ * procedure's statements read has changed since it was computed, without
+ * running the procedure again. Only read-only, single-partition Java
+ * procedures whose statements are all deterministic, including row order,
+ * are cached. The compiler warns about annotated procedures that don't
+ * qualify.</p>
+ *
+ * <p>The procedure itself must also be deterministic: it may not depend on
+ * anything but its parameters and the results of its SQL, so no random
+ * numbers, transaction ids or times, and no ad hoc SQL.</p>
+ *
+ * @see VoltProcedure
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface CacheResults {
+
+    /**
+     * Bound on the memory the cached results of the procedure take in each
+     * partition. The least recently used results are evicted past it.
+     * @return Kilobytes of results to keep per partition.
+     */
+    int maxKilobytes() default 1024;
+}
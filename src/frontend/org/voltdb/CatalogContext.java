@@ -32,6 +32,7 @@ import org.voltdb.catalog.Deployment;
 import org.voltdb.catalog.Procedure;
 import org.voltdb.catalog.SnapshotSchedule;
 import org.voltdb.catalog.Table;
+import org.voltdb.compiler.DatabaseStatistics;
 import org.voltdb.compiler.PlannerTool;
 import org.voltdb.compiler.deploymentfile.DeploymentType;
 import org.voltdb.utils.CatalogUtil;
@@ -79,6 +80,12 @@ public class CatalogContext {
      */
     public final PlannerTool m_ptool;
 
+    /*
+     * Row counts and index key statistics reported by the sites, which the
+     * planner costs ad hoc plans with. Carried over by catalog updates.
+     */
+    public final DatabaseStatistics m_statistics;
+
     // PRIVATE
     private final InMemoryJarfile m_jarfile;
 
@@ -92,6 +99,19 @@ public class CatalogContext {
             byte[] catalogBytes,
             byte[] deploymentBytes,
             int version)
+    {
+        this(transactionId, uniqueId, catalog, catalogBytes, deploymentBytes, version,
+             new DatabaseStatistics());
+    }
+
+    private CatalogContext(
+            long transactionId,
+            long uniqueId,
+            Catalog catalog,
+            byte[] catalogBytes,
+            byte[] deploymentBytes,
+            int version,
+            DatabaseStatistics statistics)
     {
         m_transactionId = transactionId;
         m_uniqueId = uniqueId;
@@ -135,7 +155,8 @@ public class CatalogContext {
         m_defaultProcs = new DefaultProcedureManager(database);
 
         m_jdbc = new JdbcDatabaseMetaDataGenerator(catalog, m_defaultProcs, m_jarfile);
-        m_ptool = new PlannerTool(cluster, database, catalogHash);
+        m_statistics = statistics;
+        m_ptool = new PlannerTool(cluster, database, catalogHash, statistics);
         catalogVersion = version;
 
         if (procedures != null) {
@@ -182,7 +203,8 @@ public class CatalogContext {
                     newCatalog,
                     bytes,
                     depbytes,
-                    catalogVersion + incValue);
+                    catalogVersion + incValue,
+                    m_statistics);
         return retval;
     }
 
@@ -152,6 +152,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
     public static final long SNAPSHOT_UTIL_CID          = Long.MIN_VALUE + 2;
     public static final long ELASTIC_JOIN_CID           = Long.MIN_VALUE + 3;
     public static final long DR_REPLICATION_CID         = Long.MIN_VALUE + 4;
+    public static final long RESULT_CURSOR_CID          = Long.MIN_VALUE + 5;
     // Leave CL_REPLAY_BASE_CID at the end, it uses this as a base and generates more cids
     public static final long CL_REPLAY_BASE_CID         = Long.MIN_VALUE + 100;
 
@@ -171,6 +172,11 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
     private final SnapshotDaemon m_snapshotDaemon = new SnapshotDaemon();
     private final SnapshotDaemonAdapter m_snapshotDaemonAdapter = new SnapshotDaemonAdapter();
 
+    // Runs the queries of @OpenCursor and receives their results
+    private final SimpleClientResponseAdapter m_cursorAdapter =
+            new SimpleClientResponseAdapter(RESULT_CURSOR_CID, "ResultCursorAdapter");
+    private final ResultCursorManager m_cursors;
+
     // Atomically allows the catalog reference to change between access
     private final AtomicReference<CatalogContext> m_catalogContext = new AtomicReference<CatalogContext>(null);
 
@@ -817,6 +823,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
              */
             ClientInterfaceHandleManager cihm = m_cihm.remove(connectionId());
             cihm.freeOutstandingTxns();
+            m_cursors.closeAll(connectionId());
             cihm.m_acg.removeMember(this);
             m_notifier.removeConnection(c);
         }
@@ -1203,6 +1210,8 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         m_zk = messenger.getZK();
         m_siteId = m_mailbox.getHSId();
         m_isConfiguredForHSQL = (VoltDB.instance().getBackendTargetType() == BackendTarget.HSQLDB_BACKEND);
+        m_cursors = new ResultCursorManager(messenger.getHostId());
+        bindAdapter(m_cursorAdapter, null);
     }
 
     private void handlePartitionFailOver(BinaryPayloadMessage message) {
@@ -1436,7 +1445,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                 proc = m_catalogContext.get().m_defaultProcs.checkForDefaultProcedure(procName);
                 if (proc != null) {
                     String sql = m_catalogContext.get().m_defaultProcs.sqlForDefaultProc(proc);
-                    dispatchAdHocCommon(task, handler, ccxn, ExplainMode.EXPLAIN_DEFAULT_PROC, sql, new Object[0], null, user);
+                    dispatchAdHocCommon(task, handler.connectionId(), handler.isAdmin(), ccxn, ExplainMode.EXPLAIN_DEFAULT_PROC, sql, new Object[0], null, user);
                     return null;
                 }
 
@@ -1482,7 +1491,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             userParams = Arrays.copyOfRange(paramArray, 1, paramArray.length);
         }
         ExplainMode explainMode = isExplain ? ExplainMode.EXPLAIN_ADHOC : ExplainMode.NONE;
-        dispatchAdHocCommon(task, handler, ccxn, explainMode, sql, userParams, null, user);
+        dispatchAdHocCommon(task, handler.connectionId(), handler.isAdmin(), ccxn, explainMode, sql, userParams, null, user);
         return null;
     }
 
@@ -1501,20 +1510,20 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             userParams = Arrays.copyOfRange(paramArray, 2, paramArray.length);
         }
         ExplainMode explainMode = isExplain ? ExplainMode.EXPLAIN_ADHOC : ExplainMode.NONE;
-        dispatchAdHocCommon(task, handler, ccxn, explainMode, sql, userParams, userPartitionKey, user);
+        dispatchAdHocCommon(task, handler.connectionId(), handler.isAdmin(), ccxn, explainMode, sql, userParams, userPartitionKey, user);
         return null;
     }
 
     private final void dispatchAdHocCommon(StoredProcedureInvocation task,
-            ClientInputHandler handler, Connection ccxn, ExplainMode explainMode,
+            long connectionId, boolean isAdmin, Connection ccxn, ExplainMode explainMode,
             String sql, Object[] userParams, Object[] userPartitionKey, AuthSystem.AuthUser user) {
         List<String> sqlStatements = SQLLexer.splitStatements(sql);
         String[] stmtsArray = sqlStatements.toArray(new String[sqlStatements.size()]);
 
         AdHocPlannerWork ahpw = new AdHocPlannerWork(
                 m_siteId,
-                task.clientHandle, handler.connectionId(),
-                handler.isAdmin(), ccxn,
+                task.clientHandle, connectionId,
+                isAdmin, ccxn,
                 sql, stmtsArray, userParams, null, explainMode,
                 userPartitionKey == null, userPartitionKey,
                 task.procName, task.type, task.originalTxnId, task.originalUniqueId,
@@ -1526,6 +1535,95 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         m_mailbox.send(m_plannerSiteId, work);
     }
 
+    /*
+     * Run a query and keep its result so the client can read it in chunks.
+     * The query runs as ad hoc SQL on behalf of the cursor adapter, whose callback
+     * keeps the result and answers the client with the first chunk.
+     */
+    private ClientResponseImpl dispatchOpenCursor(StoredProcedureInvocation task,
+            ClientInputHandler handler, final Connection ccxn, AuthSystem.AuthUser user) {
+        final Object[] params = task.getParams().toArray();
+        if (params.length < 2 || !(params[0] instanceof Number) || !(params[1] instanceof String) ||
+                ((Number) params[0]).intValue() <= 0) {
+            return new ClientResponseImpl(ClientResponseImpl.GRACEFUL_FAILURE, new VoltTable[0],
+                    "@OpenCursor requires a positive fetch size and a query, followed by the query's parameters",
+                    task.clientHandle);
+        }
+        final int fetchSize = ((Number) params[0]).intValue();
+        final long connectionId = handler.connectionId();
+        final long clientHandle = task.clientHandle;
+        final long handle = m_cursorAdapter.registerCallback(new SimpleClientResponseAdapter.Callback() {
+            @Override
+            public void handleResponse(ClientResponse response) {
+                ClientResponseImpl result = (ClientResponseImpl) response;
+                if (result.getStatus() == ClientResponse.SUCCESS) {
+                    result = openCursor(connectionId, fetchSize, result);
+                }
+                result.setClientHandle(clientHandle);
+                ByteBuffer buf = ByteBuffer.allocate(result.getSerializedSize() + 4);
+                buf.putInt(buf.capacity() - 4);
+                result.flattenToBuffer(buf);
+                buf.flip();
+                ccxn.writeStream().enqueue(buf);
+            }
+        });
+
+        final StoredProcedureInvocation query = new StoredProcedureInvocation();
+        query.setProcName("@AdHoc");
+        query.setParams(Arrays.copyOfRange(params, 1, params.length));
+        query.setClientHandle(handle);
+        final Object[] userParams = params.length > 2 ? Arrays.copyOfRange(params, 2, params.length) : null;
+        dispatchAdHocCommon(query, m_cursorAdapter.connectionId(), handler.isAdmin(), m_cursorAdapter,
+                ExplainMode.NONE, (String) params[1], userParams, null, user);
+        return null;
+    }
+
+    private ClientResponseImpl openCursor(long connectionId, int fetchSize, ClientResponseImpl response) {
+        final VoltTable[] results = response.getResults();
+        if (results.length != 1) {
+            return new ClientResponseImpl(ClientResponseImpl.GRACEFUL_FAILURE, new VoltTable[0],
+                    "@OpenCursor requires a single statement, got " + results.length + " results", 0);
+        }
+        if (!m_cihm.containsKey(connectionId)) {
+            // Client went away while the query ran
+            return response;
+        }
+        final VoltTable[] chunk = m_cursors.open(connectionId, results[0], fetchSize);
+        if (chunk == null) {
+            return new ClientResponseImpl(ClientResponseImpl.GRACEFUL_FAILURE, new VoltTable[0],
+                    "Too many open cursors on this connection, close some before opening more", 0);
+        }
+        return new ClientResponseImpl(ClientResponseImpl.SUCCESS, chunk, null, 0);
+    }
+
+    private ClientResponseImpl dispatchFetchCursor(StoredProcedureInvocation task, ClientInputHandler handler) {
+        final Object[] params = task.getParams().toArray();
+        if (params.length != 2 || !(params[0] instanceof Number) || !(params[1] instanceof Number) ||
+                ((Number) params[1]).intValue() <= 0) {
+            return new ClientResponseImpl(ClientResponseImpl.GRACEFUL_FAILURE, new VoltTable[0],
+                    "@FetchCursor requires a cursor id and a positive fetch size", task.clientHandle);
+        }
+        final long cursorId = ((Number) params[0]).longValue();
+        final VoltTable[] chunk =
+            m_cursors.fetch(handler.connectionId(), cursorId, ((Number) params[1]).intValue());
+        if (chunk == null) {
+            return new ClientResponseImpl(ClientResponseImpl.GRACEFUL_FAILURE, new VoltTable[0],
+                    "Cursor " + cursorId + " is not open on this connection", task.clientHandle);
+        }
+        return new ClientResponseImpl(ClientResponseImpl.SUCCESS, chunk, null, task.clientHandle);
+    }
+
+    private ClientResponseImpl dispatchCloseCursor(StoredProcedureInvocation task, ClientInputHandler handler) {
+        final Object[] params = task.getParams().toArray();
+        if (params.length != 1 || !(params[0] instanceof Number)) {
+            return new ClientResponseImpl(ClientResponseImpl.GRACEFUL_FAILURE, new VoltTable[0],
+                    "@CloseCursor requires a cursor id", task.clientHandle);
+        }
+        // Closing a cursor that was read to the end or expired is not an error
+        m_cursors.close(handler.connectionId(), ((Number) params[0]).longValue());
+        return new ClientResponseImpl(ClientResponseImpl.SUCCESS, new VoltTable[0], null, task.clientHandle);
+    }
+
     ClientResponseImpl dispatchUpdateApplicationCatalog(StoredProcedureInvocation task,
             ClientInputHandler handler, Connection ccxn, AuthSystem.AuthUser user)
     {
@@ -1747,7 +1845,9 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
 
         if (catProc == null) {
             String proc = task.procName;
-            if (task.procName.equals("@AdHoc") || task.procName.equals("@AdHocSpForTest")) {
+            if (task.procName.equals("@AdHoc") || task.procName.equals("@AdHocSpForTest") ||
+                    task.procName.equals("@OpenCursor") || task.procName.equals("@FetchCursor") ||
+                    task.procName.equals("@CloseCursor")) {
                 // Map @AdHoc... to @AdHoc_RW_MP for validation. In the future if security is
                 // configured differently for @AdHoc... variants this code will have to
                 // change in order to use the proper variant based on whether the work
@@ -1845,6 +1945,15 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             else if (task.procName.equals("@AdHocSpForTest")) {
                 return dispatchAdHocSpForTest(task, handler, ccxn, false, user);
             }
+            else if (task.procName.equals("@OpenCursor")) {
+                return dispatchOpenCursor(task, handler, ccxn, user);
+            }
+            else if (task.procName.equals("@FetchCursor")) {
+                return dispatchFetchCursor(task, handler);
+            }
+            else if (task.procName.equals("@CloseCursor")) {
+                return dispatchCloseCursor(task, handler);
+            }
             else if (task.procName.equals("@LoadMultipartitionTable")) {
                 /*
                  * For IV2 DR: This will generate a sentinel for each partition,
@@ -2403,6 +2512,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                 try {
                     //Using the current time makes this vulnerable to NTP weirdness...
                     checkForDeadConnections(EstTime.currentTimeMillis());
+                    m_cursors.expireIdle(EstTime.currentTimeMillis());
                 } catch (Exception ex) {
                     log.warn("Exception while checking for dead connections", ex);
                 }
@@ -2902,6 +3012,19 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         return latencyStats;
     }
 
+    /**
+     * @return true if any admission control group is currently
+     * applying transaction backpressure to its clients
+     */
+    public boolean hasBackPressure() {
+        for (AdmissionControlGroup acg : m_allACGs) {
+            if (acg.hasBackPressure()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     //Generate a mispartitioned response also log the message.
     private ClientResponseImpl getMispartitionedErrorResponse(StoredProcedureInvocation task,
             Procedure catProc, Exception ex) {
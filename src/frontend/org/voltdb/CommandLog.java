@@ -24,6 +24,11 @@ import org.voltdb.messaging.Iv2InitiateTaskMessage;
 
 import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 
+/**
+ * Implementations report how long each fsync of the log takes to
+ * {@link org.voltdb.utils.FsyncLatencyTracker}, so snapshot writes back off
+ * while the log is slowing down.
+ */
 public interface CommandLog {
     /**
      *
@@ -0,0 +1,452 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cliffc_voltpatches.high_scale_lib.NonBlockingHashMap;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DBBPool;
+import org.voltdb.PartitionDRGateway.DRRecordType;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.iv2.UniqueIdGenerator;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Replica side pipeline between the binary logs received from a master and
+ * the sites that apply them.
+ *
+ * Every log is checked record by record (CRC32C and transaction sequencing)
+ * on a pool of decoder threads as soon as it arrives, so the site thread only
+ * applies it, with {@link SiteProcedureConnection#applyBinaryLog(long, long, long, byte[], boolean)}
+ * told to skip the checksums. Decoded logs wait in a queue per partition, in
+ * arrival order, and {@link #nextBatch(int)} joins consecutive ones into a
+ * single log of up to {@link #MAX_BATCH_BYTES}, so one crossing into the EE
+ * applies many transactions.
+ *
+ * Logs of one partition must be offered by one thread at a time, and its
+ * batches taken by one thread at a time. Partitions are independent.
+ *
+ * Per partition queue depth, apply rate and replication lag are reported
+ * through the DRCONSUMERAPPLY statistics selector.
+ */
+public class DRApplyPipeline extends StatsSource {
+    static final int DECODE_THREADS =
+        Integer.getInteger("DR_APPLY_DECODE_THREADS", Math.max(2, CoreUtils.availableProcessors() / 4));
+    // Most log bytes handed to a site in one apply
+    static final int MAX_BATCH_BYTES = Integer.getInteger("DR_APPLY_MAX_BATCH_BYTES", 2 * 1024 * 1024);
+
+    /**
+     * A validated log and the range of transactions in it
+     */
+    static class DecodedLog {
+        final byte[] m_log;
+        final int m_txnCount;
+        // Sequence numbers of the first and last transactions begun, -1 if none
+        final long m_firstSequenceNumber;
+        final long m_lastSequenceNumber;
+        final long m_lastUniqueId;
+
+        DecodedLog(byte[] log, int txnCount, long firstSequenceNumber, long lastSequenceNumber, long lastUniqueId) {
+            m_log = log;
+            m_txnCount = txnCount;
+            m_firstSequenceNumber = firstSequenceNumber;
+            m_lastSequenceNumber = lastSequenceNumber;
+            m_lastUniqueId = lastUniqueId;
+        }
+
+        /** True if this log can be applied in the same call as prev */
+        boolean follows(DecodedLog prev) {
+            return prev.m_lastSequenceNumber < 0 || m_firstSequenceNumber < 0 ||
+                   m_firstSequenceNumber == prev.m_lastSequenceNumber + 1;
+        }
+    }
+
+    /**
+     * Consecutive logs of a partition joined into one, ready to apply
+     */
+    public static class Batch {
+        public final int partitionId;
+        public final byte[] log;
+        public final int logCount;
+        public final int txnCount;
+        public final long firstSequenceNumber;
+        public final long lastSequenceNumber;
+        public final long lastUniqueId;
+
+        Batch(int partitionId, byte[] log, int logCount, int txnCount,
+              long firstSequenceNumber, long lastSequenceNumber, long lastUniqueId) {
+            this.partitionId = partitionId;
+            this.log = log;
+            this.logCount = logCount;
+            this.txnCount = txnCount;
+            this.firstSequenceNumber = firstSequenceNumber;
+            this.lastSequenceNumber = lastSequenceNumber;
+            this.lastUniqueId = lastUniqueId;
+        }
+    }
+
+    private static class PendingLog {
+        final int m_size;
+        final ListenableFuture<DecodedLog> m_decoded;
+
+        PendingLog(int size, ListenableFuture<DecodedLog> decoded) {
+            m_size = size;
+            m_decoded = decoded;
+        }
+    }
+
+    private static class PartitionQueue {
+        final Queue<PendingLog> m_pending = new ConcurrentLinkedQueue<PendingLog>();
+        final AtomicLong m_queuedLogs = new AtomicLong();
+        final AtomicLong m_queuedBytes = new AtomicLong();
+
+        // Updated by the applying thread, read by stats
+        volatile long m_txnsApplied = 0;
+        volatile long m_bytesApplied = 0;
+        volatile long m_batchesApplied = 0;
+        volatile long m_lastAppliedUniqueId = -1;
+
+        // Start of the current stats interval, guarded by the pipeline
+        long m_intervalStartMillis = System.currentTimeMillis();
+        long m_intervalStartTxns = 0;
+    }
+
+    // Per decoder thread direct buffer for the native CRC32C
+    private static final ThreadLocal<ByteBuffer[]> m_scratch = new ThreadLocal<ByteBuffer[]>() {
+        @Override
+        protected ByteBuffer[] initialValue() {
+            return new ByteBuffer[] { ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN) };
+        }
+    };
+
+    private final NonBlockingHashMap<Integer, PartitionQueue> m_partitions = new NonBlockingHashMap<Integer, PartitionQueue>();
+    private final ListeningExecutorService m_decoders;
+    private final long m_createdMillis = System.currentTimeMillis();
+
+    // Set by getStatsRowKeyIterator() for the rows that follow, under the lock getStatsRows() holds
+    private boolean m_interval = false;
+    private long m_now = 0;
+
+    public DRApplyPipeline() {
+        this(DECODE_THREADS);
+    }
+
+    public DRApplyPipeline(int decodeThreads) {
+        super(false);
+        m_decoders = CoreUtils.getListeningExecutorService("DR Apply Decoder", decodeThreads);
+    }
+
+    private PartitionQueue getQueue(int partitionId) {
+        PartitionQueue queue = m_partitions.get(partitionId);
+        if (queue == null) {
+            queue = new PartitionQueue();
+            PartitionQueue existing = m_partitions.putIfAbsent(partitionId, queue);
+            if (existing != null) {
+                queue = existing;
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Queue a binary log for a partition, it is decoded in the background
+     */
+    public void offer(int partitionId, final byte[] log) {
+        final PartitionQueue queue = getQueue(partitionId);
+        queue.m_queuedLogs.incrementAndGet();
+        queue.m_queuedBytes.addAndGet(log.length);
+        queue.m_pending.offer(new PendingLog(log.length, m_decoders.submit(new Callable<DecodedLog>() {
+            @Override
+            public DecodedLog call() throws IOException {
+                return decode(log);
+            }
+        })));
+    }
+
+    /**
+     * Take the decoded logs at the head of a partition's queue, as many as
+     * follow each other and fit in {@link #MAX_BATCH_BYTES}, and join them.
+     * Never waits for a log still being decoded.
+     * @return the batch, or null if the log at the head is not decoded yet
+     * @throws IOException if the log at the head is corrupt, it is dropped
+     */
+    public Batch nextBatch(int partitionId) throws IOException {
+        final PartitionQueue queue = m_partitions.get(partitionId);
+        if (queue == null) {
+            return null;
+        }
+        final List<DecodedLog> logs = new ArrayList<DecodedLog>();
+        int bytes = 0;
+        int txnCount = 0;
+        while (true) {
+            final PendingLog head = queue.m_pending.peek();
+            if (head == null || !head.m_decoded.isDone()) {
+                break;
+            }
+            final DecodedLog log;
+            try {
+                log = head.m_decoded.get();
+            } catch (ExecutionException e) {
+                if (!logs.isEmpty()) {
+                    // apply what came before it first
+                    break;
+                }
+                dequeued(queue, head);
+                throw new IOException("Invalid binary log for partition " + partitionId, e.getCause());
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (!logs.isEmpty() &&
+                (bytes + log.m_log.length > MAX_BATCH_BYTES || !log.follows(logs.get(logs.size() - 1)))) {
+                break;
+            }
+            dequeued(queue, head);
+            logs.add(log);
+            bytes += log.m_log.length;
+            txnCount += log.m_txnCount;
+        }
+        if (logs.isEmpty()) {
+            return null;
+        }
+
+        final byte[] joined;
+        if (logs.size() == 1) {
+            joined = logs.get(0).m_log;
+        } else {
+            joined = new byte[bytes];
+            int offset = 0;
+            for (DecodedLog log : logs) {
+                System.arraycopy(log.m_log, 0, joined, offset, log.m_log.length);
+                offset += log.m_log.length;
+            }
+        }
+        long firstSequenceNumber = -1;
+        long lastSequenceNumber = -1;
+        long lastUniqueId = -1;
+        for (DecodedLog log : logs) {
+            if (firstSequenceNumber < 0) {
+                firstSequenceNumber = log.m_firstSequenceNumber;
+            }
+            if (log.m_lastSequenceNumber >= 0) {
+                lastSequenceNumber = log.m_lastSequenceNumber;
+                lastUniqueId = log.m_lastUniqueId;
+            }
+        }
+        return new Batch(partitionId, joined, logs.size(), txnCount, firstSequenceNumber, lastSequenceNumber, lastUniqueId);
+    }
+
+    private static void dequeued(PartitionQueue queue, PendingLog head) {
+        queue.m_pending.poll();
+        queue.m_queuedLogs.decrementAndGet();
+        queue.m_queuedBytes.addAndGet(-head.m_size);
+    }
+
+    /**
+     * Record that a batch has been applied by its partition's site
+     */
+    public void applied(Batch batch) {
+        final PartitionQueue queue = getQueue(batch.partitionId);
+        queue.m_txnsApplied += batch.txnCount;
+        queue.m_bytesApplied += batch.log.length;
+        queue.m_batchesApplied++;
+        if (batch.lastUniqueId >= 0) {
+            queue.m_lastAppliedUniqueId = batch.lastUniqueId;
+        }
+    }
+
+    /** Number of logs queued for a partition, decoded or not */
+    public long getQueuedLogs(int partitionId) {
+        final PartitionQueue queue = m_partitions.get(partitionId);
+        return queue == null ? 0 : queue.m_queuedLogs.get();
+    }
+
+    public void shutdown() throws InterruptedException {
+        m_decoders.shutdownNow();
+        m_decoders.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Check every record of a binary log the way the EE's BinaryLogSink does
+     * before applying it: version, type, CRC32C and the sequencing of the
+     * transactions in it.
+     */
+    static DecodedLog decode(byte[] log) throws IOException {
+        ByteBuffer[] scratch = m_scratch.get();
+        if (scratch[0].capacity() < log.length) {
+            scratch[0] = ByteBuffer.allocateDirect(Math.max(log.length, scratch[0].capacity() * 2))
+                                   .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        final ByteBuffer buf = scratch[0];
+        buf.clear();
+        buf.put(log);
+        buf.flip();
+
+        int txnCount = 0;
+        long firstSequenceNumber = -1;
+        long sequenceNumber = -1;
+        long uniqueId = -1;
+        try {
+            while (buf.hasRemaining()) {
+                final int recordStart = buf.position();
+                final byte version = buf.get();
+                if (version != 0) {
+                    throw new IOException("Unsupported DR version " + version);
+                }
+                final int typeValue = buf.get();
+                final DRRecordType type = DRRecordType.valueOf(typeValue);
+                if (type == null) {
+                    throw new IOException("Unrecognized DR record type " + typeValue);
+                }
+                switch (type) {
+                case INSERT:
+                case DELETE: {
+                    buf.getLong(); // table handle
+                    final int rowLength = buf.getInt();
+                    buf.position(buf.position() + rowLength);
+                    break;
+                }
+                case BEGIN_TXN: {
+                    uniqueId = buf.getLong();
+                    final long tempSequenceNumber = buf.getLong();
+                    if (sequenceNumber >= 0 && tempSequenceNumber != sequenceNumber + 1) {
+                        throw new IOException("Found out of order sequencing inside a binary log segment. Expected " +
+                                              (sequenceNumber + 1) + " but found " + tempSequenceNumber);
+                    }
+                    sequenceNumber = tempSequenceNumber;
+                    if (firstSequenceNumber < 0) {
+                        firstSequenceNumber = sequenceNumber;
+                    }
+                    txnCount++;
+                    break;
+                }
+                case END_TXN: {
+                    final long tempSequenceNumber = buf.getLong();
+                    if (tempSequenceNumber != sequenceNumber) {
+                        throw new IOException("Closing the wrong transaction inside a binary log segment. Expected " +
+                                              sequenceNumber + " but found " + tempSequenceNumber);
+                    }
+                    break;
+                }
+                case TRUNCATE_TABLE: {
+                    buf.getLong(); // table handle
+                    final int nameLength = buf.getInt();
+                    buf.position(buf.position() + nameLength);
+                    break;
+                }
+                default:
+                    throw new IOException("Unrecognized DR record type " + type);
+                }
+                final int checksum = buf.getInt();
+                final int calculatedChecksum = DBBPool.getBufferCRC32C(buf, recordStart, buf.position() - recordStart - 4);
+                if (calculatedChecksum != checksum) {
+                    throw new IOException("CRC mismatch of DR log data " + checksum + " and " + calculatedChecksum);
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated binary log record", e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Truncated binary log record", e);
+        }
+        return new DecodedLog(log, txnCount, firstSequenceNumber, sequenceNumber, uniqueId);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("PARTITION_ID", VoltType.INTEGER));
+        columns.add(new ColumnInfo("QUEUED_BUFFERS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("QUEUED_BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("TRANSACTIONS_APPLIED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES_APPLIED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("APPLY_CALLS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("APPLY_RATE", VoltType.BIGINT));
+        columns.add(new ColumnInfo("REPLICATION_LAG", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final PartitionQueue queue = m_partitions.get(rowKey);
+        final long queuedLogs = queue.m_queuedLogs.get();
+        final long txnsApplied = queue.m_txnsApplied;
+
+        // Transactions per second over the interval, or since the start
+        final long start = m_interval ? queue.m_intervalStartMillis : m_createdMillis;
+        final long txns = m_interval ? txnsApplied - queue.m_intervalStartTxns : txnsApplied;
+        final long rate = m_now > start ? txns * 1000 / (m_now - start) : 0;
+        if (m_interval) {
+            queue.m_intervalStartMillis = m_now;
+            queue.m_intervalStartTxns = txnsApplied;
+        }
+
+        // Seconds between the master committing the last applied transaction and now,
+        // a replica with nothing waiting is caught up
+        long lag = 0;
+        final long lastAppliedUniqueId = queue.m_lastAppliedUniqueId;
+        if (queuedLogs > 0 && lastAppliedUniqueId >= 0) {
+            lag = Math.max(0, (m_now - UniqueIdGenerator.getTimestampFromUniqueId(lastAppliedUniqueId)) / 1000);
+        }
+
+        rowValues[columnNameToIndex.get("PARTITION_ID")] = rowKey;
+        rowValues[columnNameToIndex.get("QUEUED_BUFFERS")] = queuedLogs;
+        rowValues[columnNameToIndex.get("QUEUED_BYTES")] = queue.m_queuedBytes.get();
+        rowValues[columnNameToIndex.get("TRANSACTIONS_APPLIED")] = txnsApplied;
+        rowValues[columnNameToIndex.get("BYTES_APPLIED")] = queue.m_bytesApplied;
+        rowValues[columnNameToIndex.get("APPLY_CALLS")] = queue.m_batchesApplied;
+        rowValues[columnNameToIndex.get("APPLY_RATE")] = rate;
+        rowValues[columnNameToIndex.get("REPLICATION_LAG")] = lag;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        m_interval = interval;
+        m_now = System.currentTimeMillis();
+        final Iterator<Integer> iter = m_partitions.keySet().iterator();
+        return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                return iter.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -35,6 +35,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.HdrHistogram_voltpatches.HistogramData;
 import org.apache.hadoop_voltpatches.util.PureJavaCrc32;
 import org.apache.hadoop_voltpatches.util.PureJavaCrc32C;
 import org.json_voltpatches.JSONObject;
@@ -44,6 +46,7 @@ import org.voltcore.utils.Bits;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.dtxn.LatencyStats;
 import org.voltdb.messaging.FastSerializer;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
 import org.voltdb.utils.CompressionService;
@@ -55,7 +58,6 @@ import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
 import com.google_voltpatches.common.util.concurrent.ListeningScheduledExecutorService;
 import com.google_voltpatches.common.util.concurrent.MoreExecutors;
-import com.google_voltpatches.common.util.concurrent.UnsynchronizedRateLimiter;
 
 
 public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
@@ -69,6 +71,8 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     private final File m_file;
     private final FileChannel m_channel;
     private final FileOutputStream m_fos;
+    // Set when chunks are coalesced and written with O_DIRECT instead of through m_channel
+    private final DirectSnapshotFileWriter m_directWriter;
     private static final VoltLogger SNAP_LOG = new VoltLogger("SNAPSHOT");
     private Runnable m_onCloseHandler = null;
 
@@ -111,7 +115,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     public static final int SNAPSHOT_SYNC_FREQUENCY = Integer.getInteger("SNAPSHOT_SYNC_FREQUENCY", 500);
     public static final int SNAPSHOT_FADVISE_BYTES = Integer.getInteger("SNAPSHOT_FADVISE_BYTES", 1024 * 1024 * 2);
     public static final int SNAPSHOT_RATELIMIT_MEGABYTES;
-    public static final boolean USE_SNAPSHOT_RATELIMIT;
+    public static final boolean USE_SNAPSHOT_DIRECT_IO = Boolean.getBoolean("SNAPSHOT_DIRECT_IO");
 
     static {
         int limit = Integer.getInteger("SNAPSHOT_RATELIMIT_MEGABYTES", Integer.MAX_VALUE);
@@ -122,20 +126,48 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             SNAPSHOT_RATELIMIT_MEGABYTES = limit;
         }
         if (SNAPSHOT_RATELIMIT_MEGABYTES < Integer.MAX_VALUE) {
-            USE_SNAPSHOT_RATELIMIT = true;
             SNAP_LOG.info("Rate limiting snapshots to " + SNAPSHOT_RATELIMIT_MEGABYTES + " megabytes/second");
-        } else {
-            USE_SNAPSHOT_RATELIMIT = false;
         }
     }
 
-    public static final UnsynchronizedRateLimiter SNAPSHOT_RATELIMITER =
-            UnsynchronizedRateLimiter.create(SNAPSHOT_RATELIMIT_MEGABYTES * 1024.0 * 1024.0, 1, TimeUnit.SECONDS);
+    /*
+     * Backs off while command log or export fsyncs slow down, never exceeding
+     * SNAPSHOT_RATELIMIT_MEGABYTES
+     */
+    static final AdaptiveSnapshotRateLimiter SNAPSHOT_RATELIMITER =
+            new AdaptiveSnapshotRateLimiter(SNAPSHOT_RATELIMIT_MEGABYTES);
 
     public static void enforceSnapshotRateLimit(int permits) {
-        if (USE_SNAPSHOT_RATELIMIT) {
-            SNAPSHOT_RATELIMITER.acquire(permits);
+        SNAPSHOT_RATELIMITER.acquire(permits);
+    }
+
+    /*
+     * Latency of each write to a snapshot file in microseconds, reported and
+     * reset when a snapshot completes
+     */
+    private static final AbstractHistogram m_writeLatencyMicros = LatencyStats.constructHistogram(true);
+
+    private static void recordWriteLatency(long startNanos) {
+        m_writeLatencyMicros.recordValue(
+                Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos),
+                         m_writeLatencyMicros.getHighestTrackableValue()));
+    }
+
+    /**
+     * Log the write latency percentiles of the snapshot that just completed
+     * on this host, and start over for the next one.
+     */
+    public static void logWriteLatency() {
+        final HistogramData data = m_writeLatencyMicros.getHistogramData();
+        if (data.getTotalCount() > 0) {
+            SNAP_LOG.info("Snapshot file writes: " + data.getTotalCount() +
+                          (USE_SNAPSHOT_DIRECT_IO ? " direct" : " buffered") +
+                          ", latency in microseconds p50 " + data.getValueAtPercentile(50.0) +
+                          ", p99 " + data.getValueAtPercentile(99.0) +
+                          ", p99.9 " + data.getValueAtPercentile(99.9) +
+                          ", max " + data.getMaxValue());
         }
+        m_writeLatencyMicros.reset();
     }
 
     public DefaultSnapshotDataTarget(
@@ -249,6 +281,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         final int crcValue = (int) crc.getValue();
         aggregateBuffer.putInt(crcValue).position(8);
         aggregateBuffer.put((byte)0).position(0);//Haven't actually finished writing file
+        final ByteBuffer header = aggregateBuffer.duplicate();
 
         if (m_simulateFullDiskWritingHeader) {
             m_writeException = new IOException("Disk full");
@@ -278,6 +311,25 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             throw m_writeException;
         }
 
+        /*
+         * With direct I/O the data never sits dirty in the page cache, so there is
+         * nothing to sync_file_range or fadvise away while writing
+         */
+        if (USE_SNAPSHOT_DIRECT_IO) {
+            try {
+                m_directWriter = DirectSnapshotFileWriter.open(m_file, header, m_writeLatencyMicros);
+            } catch (IOException e) {
+                m_fos.close();
+                throw e;
+            }
+        } else {
+            m_directWriter = null;
+        }
+        if (m_directWriter != null) {
+            m_syncTask = null;
+            return;
+        }
+
         ScheduledFuture<?> syncTask = null;
         syncTask = m_syncService.scheduleAtFixedRate(new Runnable() {
             private long fadvisedBytes = 0;
@@ -351,21 +403,29 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             } finally {
                 m_outstandingWriteTasksLock.unlock();
             }
-            m_syncTask.cancel(false);
-            ListenableFuture<?> task = m_syncService.submit(new Runnable() {
-                @Override
-                public void run() {
-                    // Empty task to wait on 'cancel' above, since m_syncTask.get()
-                    // will immediately throw a CancellationException
+            if (m_directWriter != null) {
+                // Drops the padding after the last block
+                m_channel.truncate(m_directWriter.finish());
+            } else {
+                m_syncTask.cancel(false);
+                ListenableFuture<?> task = m_syncService.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Empty task to wait on 'cancel' above, since m_syncTask.get()
+                        // will immediately throw a CancellationException
+                    }
+                });
+                try {
+                    task.get();
+                } catch (ExecutionException e) {
+                    SNAP_LOG.error("Error waiting on snapshot sync task cancellation", e);
                 }
-            });
-            try {
-                task.get();
-            } catch (ExecutionException e) {
-                SNAP_LOG.error("Error waiting on snapshot sync task cancellation", e);
             }
             m_channel.force(false);
         } finally {
+            if (m_directWriter != null) {
+                m_directWriter.close();
+            }
             m_bytesAllowedBeforeSync.release(m_bytesWrittenSinceLastSync.getAndSet(0));
         }
         m_channel.position(8);
@@ -464,7 +524,9 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
                             payloadBuffer.position(0);
 
                             ByteBuffer lengthPrefix = ByteBuffer.allocate(12);
-                            m_bytesAllowedBeforeSync.acquire(payloadBuffer.remaining());
+                            if (m_directWriter == null) {
+                                m_bytesAllowedBeforeSync.acquire(payloadBuffer.remaining());
+                            }
                             //Length prefix does not include 4 header items, just compressd payload
                             //that follows
                             lengthPrefix.putInt(payloadBuffer.remaining() - 16);//length prefix
@@ -485,8 +547,15 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
                             /*
                              * Write payload to file
                              */
-                            while (payloadBuffer.hasRemaining()) {
-                                totalWritten += m_channel.write(payloadBuffer);
+                            if (m_directWriter != null) {
+                                totalWritten = payloadBuffer.remaining();
+                                m_directWriter.write(payloadBuffer);
+                            } else {
+                                final long start = System.nanoTime();
+                                while (payloadBuffer.hasRemaining()) {
+                                    totalWritten += m_channel.write(payloadBuffer);
+                                }
+                                recordWriteLatency(start);
                             }
                         } finally {
                             payloadContainer.discard();
@@ -497,7 +566,9 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
                         }
                     }
                     m_bytesWritten += totalWritten;
-                    m_bytesWrittenSinceLastSync.addAndGet(totalWritten);
+                    if (m_directWriter == null) {
+                        m_bytesWrittenSinceLastSync.addAndGet(totalWritten);
+                    }
                 } catch (IOException e) {
                     m_writeException = e;
                     SNAP_LOG.error("Error while attempting to write snapshot data to file " + m_file, e);
@@ -538,6 +609,15 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         m_onCloseHandler = onClose;
     }
 
+    /**
+     * Leave the file marked as not completed when it is closed, for a table
+     * whose rows could not be streamed.
+     */
+    public void markFailed(IOException cause) {
+        m_writeException = cause;
+        m_writeFailed = true;
+    }
+
     @Override
     public IOException getLastWriteException() {
         return m_writeException;
@@ -567,11 +647,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         m_es.execute(new Runnable() {
             @Override
             public void run() {
-                if (megabytesPerSecond == null) {
-                    SNAPSHOT_RATELIMITER.setRate(SNAPSHOT_RATELIMIT_MEGABYTES * 1024.0 * 1024.0);
-                } else {
-                    SNAPSHOT_RATELIMITER.setRate(megabytesPerSecond * 1024.0 * 1024.0);
-                }
+                SNAPSHOT_RATELIMITER.setCeiling(megabytesPerSecond);
             }
         });
     }
@@ -0,0 +1,169 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.Bits;
+import org.voltdb.utils.CLibrary;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+
+/**
+ * Appends to a snapshot file with O_DIRECT so the data never goes through
+ * the page cache.
+ *
+ * Writes are coalesced into one large aligned buffer that mirrors the file
+ * from an aligned offset, and the buffer is written whenever it fills. The
+ * last partial buffer is written padded to the block size, the caller then
+ * truncates the file to {@link #finish()}'s length.
+ *
+ * Not thread safe, all writes of a file come from the snapshot write thread.
+ */
+final class DirectSnapshotFileWriter {
+    private static final VoltLogger SNAP_LOG = new VoltLogger("SNAPSHOT");
+    private static final AtomicBoolean m_warnedUnsupported = new AtomicBoolean(false);
+
+    static final int ALIGNMENT = Bits.pageSize();
+    static final int BUFFER_BYTES =
+        alignUp(Integer.getInteger("SNAPSHOT_DIRECT_IO_BUFFER_BYTES", 1024 * 1024 * 4));
+
+    private final File m_file;
+    private final int m_fd;
+    private final AbstractHistogram m_writeLatencyMicros;
+    // Keeps the allocation alive, m_buffer is an aligned view of it
+    private final Memory m_memory;
+    private final Memory m_aligned;
+    private final ByteBuffer m_buffer;
+    // File offset of the start of the buffer
+    private long m_bufferOffset = 0;
+    private boolean m_closed = false;
+
+    private DirectSnapshotFileWriter(File file, int fd, AbstractHistogram writeLatencyMicros) {
+        m_file = file;
+        m_fd = fd;
+        m_writeLatencyMicros = writeLatencyMicros;
+        m_memory = new Memory(BUFFER_BYTES + ALIGNMENT);
+        m_aligned = m_memory.align(ALIGNMENT);
+        m_buffer = m_aligned.getByteBuffer(0, BUFFER_BYTES);
+    }
+
+    static int alignUp(long length) {
+        return (int)(((length + ALIGNMENT - 1) / ALIGNMENT) * ALIGNMENT);
+    }
+
+    /**
+     * Open a file for direct writes, starting over from the beginning of the file.
+     *
+     * @param header the bytes already at the start of the file
+     * @return null if the platform or file system can't do direct I/O
+     */
+    static DirectSnapshotFileWriter open(File file, ByteBuffer header, AbstractHistogram writeLatencyMicros)
+    throws IOException {
+        if (!System.getProperty("os.name").equalsIgnoreCase("linux")) {
+            warnUnsupported("direct I/O is only available on Linux");
+            return null;
+        }
+        final int fd;
+        try {
+            fd = CLibrary.open(file.getPath(), CLibrary.O_WRONLY | CLibrary.O_DIRECT_LINUX, 0);
+        } catch (Throwable t) {
+            warnUnsupported(t.toString());
+            return null;
+        }
+        if (fd < 0) {
+            warnUnsupported("open of " + file + " failed with errno " + Native.getLastError());
+            return null;
+        }
+        DirectSnapshotFileWriter writer = new DirectSnapshotFileWriter(file, fd, writeLatencyMicros);
+        writer.write(header);
+        return writer;
+    }
+
+    private static void warnUnsupported(String reason) {
+        if (m_warnedUnsupported.compareAndSet(false, true)) {
+            SNAP_LOG.warn("Snapshot direct I/O is not available, writing through the page cache instead: " + reason);
+        }
+    }
+
+    void write(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            final int length = Math.min(data.remaining(), m_buffer.remaining());
+            final ByteBuffer slice = data.duplicate();
+            slice.limit(slice.position() + length);
+            m_buffer.put(slice);
+            data.position(data.position() + length);
+            if (!m_buffer.hasRemaining()) {
+                writeBuffer(BUFFER_BYTES);
+                m_bufferOffset += BUFFER_BYTES;
+                m_buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * Write what is left in the buffer and close the file descriptor.
+     *
+     * @return the length of the file, which ends with padding up to the block size
+     */
+    long finish() throws IOException {
+        final int position = m_buffer.position();
+        try {
+            if (position > 0) {
+                final int padded = alignUp(position);
+                while (m_buffer.position() < padded) {
+                    m_buffer.put((byte)0);
+                }
+                writeBuffer(padded);
+            }
+        } finally {
+            close();
+        }
+        return m_bufferOffset + position;
+    }
+
+    void close() {
+        if (!m_closed) {
+            m_closed = true;
+            CLibrary.close(m_fd);
+        }
+    }
+
+    private void writeBuffer(int length) throws IOException {
+        final long start = System.nanoTime();
+        long written = 0;
+        while (written < length) {
+            final long retval = CLibrary.pwrite(m_fd, m_aligned.share(written), length - written, m_bufferOffset + written);
+            if (retval < 0) {
+                throw new IOException("Direct write to " + m_file + " at offset " +
+                        (m_bufferOffset + written) + " failed with errno " + Native.getLastError());
+            }
+            written += retval;
+        }
+        m_writeLatencyMicros.recordValue(
+                Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start),
+                         m_writeLatencyMicros.getHighestTrackableValue()));
+    }
+}
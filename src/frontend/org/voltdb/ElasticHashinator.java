@@ -27,7 +27,6 @@ import com.google_voltpatches.common.collect.ImmutableSortedSet;
 import com.google_voltpatches.common.collect.Maps;
 import com.google_voltpatches.common.collect.SortedMapDifference;
 
-import org.apache.cassandra_voltpatches.MurmurHash3;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.Bits;
 import org.voltcore.utils.Pair;
@@ -38,6 +37,7 @@ import com.google_voltpatches.common.base.Suppliers;
 import com.google_voltpatches.common.collect.ImmutableSortedMap;
 import com.google_voltpatches.common.collect.UnmodifiableIterator;
 
+import org.voltdb.client.TokenRing;
 import org.voltdb.utils.CompressionService;
 
 import sun.misc.Cleaner;
@@ -67,6 +67,10 @@ public class ElasticHashinator extends TheHashinator {
     private final long m_tokens;
     private final int m_tokenCount;
     private final Cleaner m_cleaner;
+    /*
+     * On-heap copy of the tokens used for routing, the off-heap array is what the EE sees.
+     */
+    private final TokenRing m_ring;
 
     private final Supplier<byte[]> m_configBytes;
     private final Supplier<byte[]> m_configBytesSupplier = Suppliers.memoize(new Supplier<byte[]>() {
@@ -108,6 +112,7 @@ public class ElasticHashinator extends TheHashinator {
         m_tokens = p.getFirst();
         m_tokenCount = p.getSecond();
         m_cleaner = Cleaner.create(this, new Deallocator(m_tokens, m_tokenCount * 8));
+        m_ring = new TokenRing(m_tokens, m_tokenCount);
         m_configBytes = !cooked ? Suppliers.ofInstance(configBytes) : m_configBytesSupplier;
         m_cookedBytes = cooked ? Suppliers.ofInstance(configBytes) : m_cookedBytesSupplier;
         m_tokensMap =  Suppliers.memoize(new Supplier<ImmutableSortedMap<Integer, Integer>>() {
@@ -146,6 +151,7 @@ public class ElasticHashinator extends TheHashinator {
             ii++;
         }
         m_tokenCount = tokens.size();
+        m_ring = new TokenRing(m_tokens, m_tokenCount);
         m_configBytes = m_configBytesSupplier;
         m_cookedBytes = m_cookedBytesSupplier;
     }
@@ -199,8 +205,7 @@ public class ElasticHashinator extends TheHashinator {
      * it wraps around to the last token in the ring closest to Long.MAX_VALUE
      */
     public int partitionForToken(int hash) {
-        long token = getTokenPtr(hash);
-        return Bits.unsafe.getInt(token + 4);
+        return m_ring.partitionForToken(hash);
     }
 
     /**
@@ -248,16 +253,27 @@ public class ElasticHashinator extends TheHashinator {
 
     @Override
     public int pHashinateLong(long value) {
-        if (value == Long.MIN_VALUE) return 0;
-
-        return partitionForToken(MurmurHash3.hash3_x64_128(value));
+        return m_ring.partitionForLong(value);
     }
 
     @Override
     public int pHashinateBytes(byte[] bytes) {
-        ByteBuffer buf = ByteBuffer.wrap(bytes);
-        final int token = MurmurHash3.hash3_x64_128(buf, 0, bytes.length, 0);
-        return partitionForToken(token);
+        return m_ring.partitionForBytes(bytes);
+    }
+
+    @Override
+    public void hashinateLongs(long[] values, int count, int[] partitions) {
+        m_ring.partitionsForLongs(values, count, partitions);
+    }
+
+    @Override
+    public void hashinateBytes(byte[][] values, int count, int[] partitions) {
+        m_ring.partitionsForBytes(values, count, partitions);
+    }
+
+    @Override
+    public void hashinateStrings(String[] values, int count, int[] partitions) {
+        m_ring.partitionsForStrings(values, count, partitions);
     }
 
     @Override
@@ -478,26 +494,6 @@ public class ElasticHashinator extends TheHashinator {
         return Pair.of(tokens, numEntries);
     }
 
-    private long getTokenPtr(int hash) {
-        int min = 0;
-        int max = m_tokenCount - 1;
-
-        while (min <= max) {
-            int mid = (min + max) >>> 1;
-            final long midPtr = m_tokens + (8 * mid);
-            int midval = Bits.unsafe.getInt(midPtr);
-
-            if (midval < hash) {
-                min = mid + 1;
-            } else if (midval > hash) {
-                max = mid - 1;
-            } else {
-                return midPtr;
-            }
-        }
-        return m_tokens + (min - 1) * 8;
-    }
-
     /**
      * Update from optimized (cooked) wire format.
      *      token-1 token-2 ...
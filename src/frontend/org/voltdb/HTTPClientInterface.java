@@ -20,16 +20,22 @@ package org.voltdb;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.continuation.Continuation;
 import org.eclipse.jetty.continuation.ContinuationSupport;
 import org.eclipse.jetty.server.Request;
+import org.json_voltpatches.JSONArray;
+import org.json_voltpatches.JSONObject;
 import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.EstTime;
+import org.voltcore.utils.Pair;
 import org.voltcore.utils.RateLimitedLogger;
 import org.voltdb.VoltDB.Configuration;
 import org.voltdb.client.AuthenticatedConnectionCache;
@@ -48,48 +54,93 @@ public class HTTPClientInterface {
 
     AuthenticatedConnectionCache m_connections = null;
     static final int CACHE_TARGET_SIZE = 10;
+    // Idle authenticated sessions are closed after this long
+    static final long SESSION_TTL_MILLIS =
+        TimeUnit.SECONDS.toMillis(Integer.getInteger("HTTP_SESSION_TTL_SECONDS", 300));
     private final AtomicBoolean m_shouldUpdateCatalog = new AtomicBoolean(false);
 
     public static final String PARAM_USERNAME = "User";
     public static final String PARAM_PASSWORD = "Password";
     public static final String PARAM_HASHEDPASSWORD = "Hashedpassword";
     public static final String PARAM_ADMIN = "admin";
+    public static final String PARAM_PROCEDURE = "Procedure";
+    public static final String PARAM_PARAMETERS = "Parameters";
+    public static final String PARAM_BATCH = "Batch";
     int m_timeout = 0;
     final String m_timeoutResponse;
 
     public final static int MAX_QUERY_PARAM_SIZE = 2 * 1024 * 1024; // 2MB
 
+    // MessageDigest is not thread safe (ENG-5438), so keep one per thread instead of one per request
+    private static final ThreadLocal<MessageDigest> m_passwordDigest = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance(ClientAuthHashScheme.getDigestScheme(ClientAuthHashScheme.HASH_SHA256));
+            } catch (NoSuchAlgorithmException e) {
+                return null;
+            }
+        }
+    };
+
     public void setTimeout(int seconds) {
         m_timeout = seconds * 1000;
     }
 
+    /**
+     * Responses to the invocations of one request, in the order they were
+     * given. Complete once every invocation has answered.
+     */
+    static class JSONResponses {
+        final ClientResponseImpl[] m_responses;
+        // A single Procedure is answered with an object, a Batch with an array
+        final boolean m_isBatch;
+        final String m_jsonp;
+        private final AtomicInteger m_outstanding;
+
+        JSONResponses(int count, boolean isBatch, String jsonp) {
+            m_responses = new ClientResponseImpl[count];
+            m_isBatch = isBatch;
+            m_jsonp = jsonp;
+            m_outstanding = new AtomicInteger(count);
+        }
+
+        /** @return true when this was the last outstanding response */
+        boolean setResponse(int index, ClientResponseImpl response) {
+            m_responses[index] = response;
+            return m_outstanding.decrementAndGet() == 0;
+        }
+
+        boolean isComplete() {
+            return m_outstanding.get() == 0;
+        }
+    }
+
     class JSONProcCallback implements ProcedureCallback {
 
         final Request m_request;
         final Continuation m_continuation;
-        final String m_jsonp;
+        final JSONResponses m_responses;
+        final int m_index;
 
-        public JSONProcCallback(Request request, Continuation continuation, String jsonp) {
+        public JSONProcCallback(Request request, Continuation continuation, JSONResponses responses, int index) {
             assert(request != null);
             assert(continuation != null);
 
             m_request = request;
             m_continuation = continuation;
-            m_jsonp = jsonp;
+            m_responses = responses;
+            m_index = index;
         }
 
         @Override
         public void clientCallback(ClientResponse clientResponse) throws Exception {
-            ClientResponseImpl rimpl = (ClientResponseImpl) clientResponse;
-            String msg = rimpl.toJSONString();
-
-            // handle jsonp pattern
-            // http://en.wikipedia.org/wiki/JSON#The_Basic_Idea:_Retrieving_JSON_via_Script_Tags
-            if (m_jsonp != null) {
-                msg = String.format("%s( %s )", m_jsonp, msg);
+            if (!m_responses.setResponse(m_index, (ClientResponseImpl) clientResponse)) {
+                return;
             }
 
-            m_request.setAttribute("result", msg);
+            // The JSON is written by the resumed request, straight to the response stream
+            m_request.setAttribute("result", m_responses);
             if (!m_continuation.isInitial()) try {
                 m_continuation.resume();
             } catch (IllegalStateException e) {
@@ -106,6 +157,68 @@ public class HTTPClientInterface {
         m_timeoutResponse = r.toJSONString();
     }
 
+    /**
+     * Write the responses of a request as JSON, one object for a single
+     * procedure or an array for a batch.
+     */
+    private static void writeResponses(Request request, HttpServletResponse response,
+            JSONResponses responses) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        request.setHandled(true);
+        JSONResponseWriter writer = new JSONResponseWriter(response.getOutputStream());
+        if (responses.m_jsonp != null) {
+            writer.writeJSONPStart(responses.m_jsonp);
+        }
+        if (responses.m_isBatch) {
+            writer.writeArrayStart();
+            for (int i = 0; i < responses.m_responses.length; i++) {
+                if (i > 0) {
+                    writer.writeArraySeparator();
+                }
+                writer.writeResponse(responses.m_responses[i]);
+            }
+            writer.writeArrayEnd();
+        } else {
+            writer.writeResponse(responses.m_responses[0]);
+        }
+        if (responses.m_jsonp != null) {
+            writer.writeJSONPEnd();
+        }
+        writer.flush();
+    }
+
+    private static void writeError(Request request, HttpServletResponse response,
+            String msg, String jsonp) throws IOException {
+        JSONResponses error = new JSONResponses(1, false, jsonp);
+        error.setResponse(0, new ClientResponseImpl(ClientResponse.UNEXPECTED_FAILURE, new VoltTable[0], msg));
+        writeResponses(request, response, error);
+    }
+
+    /**
+     * Parse the Batch parameter, a JSON array of objects with a Procedure
+     * and optional Parameters.
+     * @return the procedure names and their parameters, or null if malformed
+     */
+    private static Pair<String[], ParameterSet[]> parseBatch(String batch) {
+        try {
+            JSONArray invocations = new JSONArray(batch);
+            if (invocations.length() == 0) {
+                return null;
+            }
+            String[] procNames = new String[invocations.length()];
+            ParameterSet[] paramSets = new ParameterSet[invocations.length()];
+            for (int i = 0; i < invocations.length(); i++) {
+                JSONObject invocation = invocations.getJSONObject(i);
+                procNames[i] = invocation.getString(PARAM_PROCEDURE);
+                JSONArray params = invocation.optJSONArray(PARAM_PARAMETERS);
+                paramSets[i] = params == null ? ParameterSet.emptyParameterSet() : ParameterSet.fromJSONArray(params);
+            }
+            return Pair.of(procNames, paramSets);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     public void process(Request request, HttpServletResponse response) {
         AuthenticationResult authResult = null;
         boolean suspended = false;
@@ -114,12 +227,10 @@ public class HTTPClientInterface {
         if (m_timeout > 0) {
             continuation.setTimeout(m_timeout);
         }
-        String result = (String )request.getAttribute("result");
+        JSONResponses result = (JSONResponses) request.getAttribute("result");
         if (result != null) {
             try {
-                response.setStatus(HttpServletResponse.SC_OK);
-                request.setHandled(true);
-                response.getWriter().print(result);
+                writeResponses(request, response, result);
             } catch (IllegalStateException | IOException e){
                // Thrown when we shut down the server via the JSON/HTTP (web studio) API
                // Essentially we're closing everything down from underneath the HTTP request.
@@ -152,79 +263,96 @@ public class HTTPClientInterface {
                 }
             }
 
-            String procName = request.getParameter("Procedure");
-            String params = request.getParameter("Parameters");
+            String procName = request.getParameter(PARAM_PROCEDURE);
+            String params = request.getParameter(PARAM_PARAMETERS);
+            String batch = request.getParameter(PARAM_BATCH);
 
             // null procs are bad news
-            if (procName == null) {
+            if (procName == null && batch == null) {
                 response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                 return;
             }
 
+            String[] procNames;
+            ParameterSet[] paramSets;
+            if (batch != null) {
+                Pair<String[], ParameterSet[]> invocations = parseBatch(batch);
+                if (invocations == null) {
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    return;
+                }
+                procNames = invocations.getFirst();
+                paramSets = invocations.getSecond();
+            }
+            else {
+                ParameterSet paramSet = ParameterSet.emptyParameterSet();
+                if (params != null) {
+                    try {
+                        paramSet = ParameterSet.fromJSONString(params);
+                    }
+                    // if decoding params has a fail, then fail
+                    catch (Exception e) {
+                        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                        return;
+                    }
+                    // if the paramset has content, but decodes to null, fail
+                    if (paramSet == null) {
+                        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                        return;
+                    }
+                }
+                procNames = new String[] { procName };
+                paramSets = new ParameterSet[] { paramSet };
+            }
+
             authResult = authenticate(request);
             if (!authResult.isAuthenticated()) {
-                String msg = authResult.m_message;
-                ClientResponseImpl rimpl = new ClientResponseImpl(ClientResponse.UNEXPECTED_FAILURE, new VoltTable[0], msg);
-                msg = rimpl.toJSONString();
-                if (jsonp != null) {
-                    msg = String.format("%s( %s )", jsonp, msg);
-                }
-                response.setStatus(HttpServletResponse.SC_OK);
-                request.setHandled(true);
                 try {
-                    response.getWriter().print(msg);
+                    writeError(request, response, authResult.m_message, jsonp);
                 } catch (IOException e1) {} // Ignore this as browser must have closed.
                 return;
             }
 
             continuation.suspend(response);
             suspended = true;
-            JSONProcCallback cb = new JSONProcCallback(request, continuation, jsonp);
-            boolean success;
-            if (params != null) {
-                ParameterSet paramSet = null;
-                try {
-                    paramSet = ParameterSet.fromJSONString(params);
-                }
-                // if decoding params has a fail, then fail
-                catch (Exception e) {
-                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                    continuation.complete();
-                    return;
-                }
-                // if the paramset has content, but decodes to null, fail
-                if (paramSet == null) {
-                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                    continuation.complete();
-                    return;
+            JSONResponses responses = new JSONResponses(procNames.length, batch != null, jsonp);
+            request.setAttribute("SQLSUBMITTED", Boolean.TRUE);
+            if (batch == null) {
+                JSONProcCallback cb = new JSONProcCallback(request, continuation, responses, 0);
+                if (!authResult.m_client.callProcedure(cb, procNames[0], paramSets[0].toArray())) {
+                    throw new Exception("Server is not accepting work at this time.");
                 }
-                success = authResult.m_client.callProcedure(cb, procName, paramSet.toArray());
             }
             else {
-                success = authResult.m_client.callProcedure(cb, procName);
-            }
-            if (!success) {
-                throw new Exception("Server is not accepting work at this time.");
+                // Pipeline the whole batch, the response is written once the last one answers
+                for (int i = 0; i < procNames.length; i++) {
+                    JSONProcCallback cb = new JSONProcCallback(request, continuation, responses, i);
+                    String msg = null;
+                    try {
+                        if (!authResult.m_client.callProcedure(cb, procNames[i], paramSets[i].toArray())) {
+                            msg = "Server is not accepting work at this time.";
+                        }
+                    } catch (IOException e) {
+                        forceClose = true;
+                        msg = e.getMessage();
+                    }
+                    if (msg != null) {
+                        cb.clientCallback(new ClientResponseImpl(ClientResponse.UNEXPECTED_FAILURE, new VoltTable[0], msg));
+                    }
+                }
             }
-            if (jsonp != null) {
-                request.setAttribute("jsonp", jsonp);
+            // Everything may have answered before the request was suspended
+            if (responses.isComplete()) {
+                continuation.resume();
             }
-            request.setAttribute("SQLSUBMITTED", Boolean.TRUE);
         } catch (Exception e) {
             String msg = e.getMessage();
             if (e instanceof IOException || e instanceof NoConnectionsException) {
                 forceClose = true;
             }
             m_rate_limited_log.log("JSON interface exception: " + msg, EstTime.currentTimeMillis());
-            ClientResponseImpl rimpl = new ClientResponseImpl(ClientResponse.UNEXPECTED_FAILURE, new VoltTable[0], msg);
-            msg = rimpl.toJSONString();
-            if (jsonp != null) {
-                msg = String.format("%s( %s )", jsonp, msg);
-            }
-            response.setStatus(HttpServletResponse.SC_OK);
-            request.setHandled(true);
             try {
-                response.getWriter().print(msg);
+                writeError(request, response, msg, jsonp);
                 if (suspended) {
                     continuation.complete();
                 }
@@ -301,7 +429,8 @@ public class HTTPClientInterface {
             if (config.m_adminInterface.length() > 0) {
                 adminInterface = config.m_adminInterface;
             }
-            m_connections = new AuthenticatedConnectionCache(10, clientInterface, port, adminInterface, adminPort);
+            m_connections = new AuthenticatedConnectionCache(CACHE_TARGET_SIZE, clientInterface, port,
+                    adminInterface, adminPort, SESSION_TTL_MILLIS);
         }
 
         // check for admin mode
@@ -315,13 +444,11 @@ public class HTTPClientInterface {
         byte[] hashedPasswordBytes = null;
 
         if (password != null) {
-            try {
-                // Create a MessageDigest every time because MessageDigest is not thread safe (ENG-5438)
-                MessageDigest md = MessageDigest.getInstance(ClientAuthHashScheme.getDigestScheme(ClientAuthHashScheme.HASH_SHA256));
-                hashedPasswordBytes = md.digest(password.getBytes(StandardCharsets.UTF_8));
-            } catch (Exception e) {
-                return new AuthenticationResult(null, adminMode, username, "JVM doesn't support SHA-1 hashing. Please use a supported JVM" + e);
+            MessageDigest md = m_passwordDigest.get();
+            if (md == null) {
+                return new AuthenticationResult(null, adminMode, username, "JVM doesn't support SHA-256 hashing. Please use a supported JVM");
             }
+            hashedPasswordBytes = md.digest(password.getBytes(StandardCharsets.UTF_8));
         }
         // note that HTTP Var "Hashedpassword" has a higher priority
         // Hashedassword must be a 40-byte hex-encoded SHA-1 hash (20 bytes unencoded)
@@ -47,5 +47,10 @@ public class IndexStats extends SiteStatsSource {
         columns.add(new ColumnInfo("IS_COUNTABLE", VoltType.TINYINT));
         columns.add(new ColumnInfo("ENTRY_COUNT", VoltType.BIGINT));
         columns.add(new ColumnInfo("MEMORY_ESTIMATE", VoltType.INTEGER));
+        columns.add(new ColumnInfo("BULK_BUILD_ENTRIES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BULK_BUILD_MILLIS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("DISTINCT_KEYS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("LEADING_DISTINCT_KEYS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("KEY_HISTOGRAM", VoltType.STRING));
     }
 }
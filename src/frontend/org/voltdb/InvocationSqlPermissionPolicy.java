@@ -45,7 +45,11 @@ public class InvocationSqlPermissionPolicy extends InvocationPermissionPolicy {
             }
             return PolicyResult.DENY;
         }
-        if (proc.getSystemproc() && invocation.procName.startsWith("@AdHoc")) {
+        // Result cursors only read what an ad hoc query returned
+        if (proc.getSystemproc() && (invocation.procName.startsWith("@AdHoc") ||
+                                     invocation.procName.equals("@OpenCursor") ||
+                                     invocation.procName.equals("@FetchCursor") ||
+                                     invocation.procName.equals("@CloseCursor"))) {
             if (user.hasPermission(Permission.SQLREAD)) {
                 return PolicyResult.ALLOW;
             }
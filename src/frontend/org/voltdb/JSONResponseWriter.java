@@ -0,0 +1,382 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.voltdb.common.Constants;
+
+/**
+ * Writes client responses as JSON straight to an output stream.
+ *
+ * The output is byte for byte what {@link ClientResponseImpl#toJSONString()}
+ * produces, but numbers are formatted into a reused buffer and VARCHAR and
+ * VARBINARY values are escaped or hex encoded from the table's own buffer, so
+ * no String is built per value, per table or per response.
+ *
+ * Not thread safe, use one writer per HTTP response.
+ */
+final class JSONResponseWriter {
+    private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+    private static final byte[] HEX_UPPER = "0123456789ABCDEF".getBytes(Constants.UTF8ENCODING);
+    private static final byte[] HEX_LOWER = "0123456789abcdef".getBytes(Constants.UTF8ENCODING);
+
+    private final OutputStream m_out;
+    private final byte[] m_buf = new byte[8192];
+    private int m_pos = 0;
+
+    JSONResponseWriter(OutputStream out) {
+        m_out = out;
+    }
+
+    /** JSONP wraps the response as callback( response ) */
+    void writeJSONPStart(String jsonp) throws IOException {
+        writeRaw(jsonp);
+        writeRaw("( ");
+    }
+
+    void writeJSONPEnd() throws IOException {
+        writeRaw(" )");
+    }
+
+    void writeArrayStart() throws IOException {
+        write('[');
+    }
+
+    void writeArraySeparator() throws IOException {
+        write(',');
+    }
+
+    void writeArrayEnd() throws IOException {
+        write(']');
+    }
+
+    void writeResponse(ClientResponseImpl response) throws IOException {
+        write('{');
+        writeKey(ClientResponseImpl.JSON_STATUS_KEY);
+        writeLong(response.getStatus());
+        write(',');
+        writeKey(ClientResponseImpl.JSON_APPSTATUS_KEY);
+        writeLong(response.getAppStatus());
+        write(',');
+        writeKey(ClientResponseImpl.JSON_STATUSSTRING_KEY);
+        writeString(response.getStatusString());
+        write(',');
+        writeKey(ClientResponseImpl.JSON_APPSTATUSSTRING_KEY);
+        writeString(response.getAppStatusString());
+        write(',');
+        writeKey(ClientResponseImpl.JSON_RESULTS_KEY);
+        write('[');
+        final VoltTable[] results = response.getResults();
+        for (int i = 0; i < results.length; i++) {
+            if (i > 0) {
+                write(',');
+            }
+            writeTable(results[i]);
+        }
+        write(']');
+        write('}');
+    }
+
+    void writeTable(VoltTable table) throws IOException {
+        final int columnCount = table.getColumnCount();
+        write('{');
+        writeKey(VoltTable.JSON_STATUS_KEY);
+        writeLong(table.getStatusCode());
+        write(',');
+        writeKey(VoltTable.JSON_SCHEMA_KEY);
+        write('[');
+        for (int i = 0; i < columnCount; i++) {
+            if (i > 0) {
+                write(',');
+            }
+            write('{');
+            writeKey(VoltTable.JSON_NAME_KEY);
+            writeString(table.getColumnName(i));
+            write(',');
+            writeKey(VoltTable.JSON_TYPE_KEY);
+            writeLong(table.getColumnType(i).getValue());
+            write('}');
+        }
+        write(']');
+        write(',');
+        writeKey(VoltTable.JSON_DATA_KEY);
+        write('[');
+        final VoltTableRow row = table.cloneRow();
+        row.resetRowPosition();
+        boolean first = true;
+        while (row.advanceRow()) {
+            if (!first) {
+                write(',');
+            }
+            first = false;
+            write('[');
+            for (int i = 0; i < columnCount; i++) {
+                if (i > 0) {
+                    write(',');
+                }
+                writeValue(row, i);
+            }
+            write(']');
+        }
+        write(']');
+        write('}');
+    }
+
+    /** Same representation as VoltTableRow.putJSONRep() */
+    private void writeValue(VoltTableRow row, int columnIndex) throws IOException {
+        long value;
+        switch (row.getColumnType(columnIndex)) {
+        case TINYINT:
+        case SMALLINT:
+        case INTEGER:
+        case BIGINT:
+            value = row.getLong(columnIndex);
+            if (row.wasNull()) {
+                writeRaw(NULL);
+            } else {
+                writeLong(value);
+            }
+            break;
+        case TIMESTAMP:
+            value = row.getTimestampAsLong(columnIndex);
+            if (value == VoltType.NULL_BIGINT) {
+                writeRaw(NULL);
+            } else {
+                writeLong(value);
+            }
+            break;
+        case FLOAT:
+            final double dvalue = row.getDouble(columnIndex);
+            if (dvalue == VoltType.NULL_FLOAT) {
+                writeRaw(NULL);
+            } else {
+                try {
+                    writeRaw(JSONObject.numberToString(dvalue));
+                } catch (JSONException e) {
+                    throw new RuntimeException("Failed to serialized a table to JSON.", e);
+                }
+            }
+            break;
+        case STRING:
+            writeUTF8String(row.m_buffer, row.getOffset(columnIndex));
+            break;
+        case VARBINARY:
+            writeHex(row.m_buffer, row.getOffset(columnIndex));
+            break;
+        case DECIMAL:
+            final BigDecimal dec = row.getDecimalAsBigDecimal(columnIndex);
+            if (dec == null) {
+                writeRaw(NULL);
+            } else {
+                // Digits, sign and point need no escaping
+                write('"');
+                writeRaw(dec.toString());
+                write('"');
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    private void writeKey(String key) throws IOException {
+        writeString(key);
+        write(':');
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            writeRaw(NULL);
+        } else {
+            writeRaw(JSONObject.quote(value));
+        }
+    }
+
+    /**
+     * Quote a length prefixed UTF-8 string the way JSONObject.quote() does,
+     * working on the encoded bytes. Only ASCII and the two ranges quote()
+     * escapes (U+0080-U+009F and U+2000-U+20FF) need to be recognized, every
+     * other byte is copied as is.
+     */
+    private void writeUTF8String(ByteBuffer buf, int offset) throws IOException {
+        final int len = buf.getInt(offset);
+        if (len == VoltTable.NULL_STRING_INDICATOR) {
+            writeRaw(NULL);
+            return;
+        }
+        write('"');
+        final int end = offset + 4 + len;
+        int prev = 0;
+        for (int i = offset + 4; i < end; i++) {
+            final int b = buf.get(i) & 0xFF;
+            if (b < 0x80) {
+                switch (b) {
+                case '\\':
+                case '"':
+                    write('\\');
+                    write(b);
+                    break;
+                case '/':
+                    if (prev == '<') {
+                        write('\\');
+                    }
+                    write(b);
+                    break;
+                case '\b':
+                    write('\\'); write('b');
+                    break;
+                case '\t':
+                    write('\\'); write('t');
+                    break;
+                case '\n':
+                    write('\\'); write('n');
+                    break;
+                case '\f':
+                    write('\\'); write('f');
+                    break;
+                case '\r':
+                    write('\\'); write('r');
+                    break;
+                default:
+                    if (b < ' ') {
+                        writeUnicodeEscape(0, b);
+                    } else {
+                        write(b);
+                    }
+                }
+                prev = b;
+                continue;
+            }
+            if (b == 0xC2 && i + 1 < end) {
+                final int b2 = buf.get(i + 1) & 0xFF;
+                if (b2 >= 0x80 && b2 < 0xA0) {
+                    // U+0080-U+009F
+                    writeUnicodeEscape(0x00, b2);
+                    i += 1;
+                    prev = b2;
+                    continue;
+                }
+            } else if (b == 0xE2 && i + 2 < end) {
+                final int b2 = buf.get(i + 1) & 0xFF;
+                if (b2 >= 0x80 && b2 < 0x84) {
+                    // U+2000-U+20FF
+                    writeUnicodeEscape(0x20, ((b2 & 0x03) << 6) | (buf.get(i + 2) & 0x3F));
+                    i += 2;
+                    prev = 0x2000;
+                    continue;
+                }
+            }
+            write(b);
+            prev = b;
+        }
+        write('"');
+    }
+
+    private void writeUnicodeEscape(int high, int low) throws IOException {
+        write('\\');
+        write('u');
+        write(HEX_LOWER[(high >> 4) & 0xF]);
+        write(HEX_LOWER[high & 0xF]);
+        write(HEX_LOWER[(low >> 4) & 0xF]);
+        write(HEX_LOWER[low & 0xF]);
+    }
+
+    /** Upper case hex of a length prefixed VARBINARY, as Encoder.hexEncode() */
+    private void writeHex(ByteBuffer buf, int offset) throws IOException {
+        final int len = buf.getInt(offset);
+        if (len == VoltTable.NULL_STRING_INDICATOR) {
+            writeRaw(NULL);
+            return;
+        }
+        write('"');
+        final int end = offset + 4 + len;
+        for (int i = offset + 4; i < end; i++) {
+            final int b = buf.get(i);
+            write(HEX_UPPER[(b >> 4) & 0xF]);
+            write(HEX_UPPER[b & 0xF]);
+        }
+        write('"');
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeRaw(Long.toString(value));
+            return;
+        }
+        if (m_buf.length - m_pos < 20) {
+            flushBuffer();
+        }
+        if (value < 0) {
+            m_buf[m_pos++] = '-';
+            value = -value;
+        }
+        // Digits go in backwards from the end of the number
+        int digits = 1;
+        for (long v = value / 10; v != 0; v /= 10) {
+            digits++;
+        }
+        int pos = m_pos + digits;
+        m_pos = pos;
+        do {
+            m_buf[--pos] = (byte)('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+    }
+
+    private void write(int b) throws IOException {
+        if (m_pos == m_buf.length) {
+            flushBuffer();
+        }
+        m_buf[m_pos++] = (byte)b;
+    }
+
+    private void writeRaw(byte[] bytes) throws IOException {
+        if (m_buf.length - m_pos < bytes.length) {
+            flushBuffer();
+            if (bytes.length > m_buf.length) {
+                m_out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, m_buf, m_pos, bytes.length);
+        m_pos += bytes.length;
+    }
+
+    private void writeRaw(String s) throws IOException {
+        writeRaw(s.getBytes(Constants.UTF8ENCODING));
+    }
+
+    private void flushBuffer() throws IOException {
+        if (m_pos > 0) {
+            m_out.write(m_buf, 0, m_pos);
+            m_pos = 0;
+        }
+    }
+
+    /** Hand everything written so far to the stream */
+    void flush() throws IOException {
+        flushBuffer();
+        m_out.flush();
+    }
+}
@@ -34,6 +34,11 @@ public class MemoryStats extends StatsSource {
         int indexMem = 0;
         int stringMem = 0;
         long pooledMem = 0;
+        int compressedStringMem = 0;
+        int uncompressedStringMem = 0;
+        long hugePageMem = 0;
+        long transparentHugePageMem = 0;
+        long numaLocalMem = 0;
     }
     Map<Long, PartitionMemRow> m_memoryStats = new TreeMap<Long, PartitionMemRow>();
 
@@ -82,6 +87,11 @@ public class MemoryStats extends StatsSource {
         columns.add(new VoltTable.ColumnInfo("POOLEDMEMORY", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("PHYSICALMEMORY", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("JAVAMAXHEAP", VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo("STRINGCOMPRESSED", VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo("STRINGUNCOMPRESSED", VoltType.INTEGER));
+        columns.add(new VoltTable.ColumnInfo("HUGEPAGEMEMORY", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("THPMEMORY", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("NUMALOCALMEMORY", VoltType.BIGINT));
     }
 
     @Override
@@ -95,6 +105,11 @@ public class MemoryStats extends StatsSource {
             totals.indexMem += pmr.indexMem;
             totals.stringMem += pmr.stringMem;
             totals.pooledMem += pmr.pooledMem;
+            totals.compressedStringMem += pmr.compressedStringMem;
+            totals.uncompressedStringMem += pmr.uncompressedStringMem;
+            totals.hugePageMem += pmr.hugePageMem;
+            totals.transparentHugePageMem += pmr.transparentHugePageMem;
+            totals.numaLocalMem += pmr.numaLocalMem;
         }
 
         // get system statistics
@@ -119,6 +134,11 @@ public class MemoryStats extends StatsSource {
         //in kb to make math simpler with other mem values.
         rowValues[columnNameToIndex.get("PHYSICALMEMORY")] = PlatformProperties.getPlatformProperties().ramInMegabytes * 1024;
         rowValues[columnNameToIndex.get("JAVAMAXHEAP")] = Runtime.getRuntime().maxMemory() / 1024;
+        rowValues[columnNameToIndex.get("STRINGCOMPRESSED")] = totals.compressedStringMem;
+        rowValues[columnNameToIndex.get("STRINGUNCOMPRESSED")] = totals.uncompressedStringMem;
+        rowValues[columnNameToIndex.get("HUGEPAGEMEMORY")] = totals.hugePageMem / 1024;
+        rowValues[columnNameToIndex.get("THPMEMORY")] = totals.transparentHugePageMem / 1024;
+        rowValues[columnNameToIndex.get("NUMALOCALMEMORY")] = totals.numaLocalMem / 1024;
         super.updateStatsRow(rowKey, rowValues);
     }
 
@@ -128,14 +148,23 @@ public class MemoryStats extends StatsSource {
                                               int tupleAllocatedMem,
                                               int indexMem,
                                               int stringMem,
-                                              long pooledMemory) {
+                                              int compressedStringMem,
+                                              int uncompressedStringMem,
+                                              long pooledMemory,
+                                              long[] largePageMemory) {
         PartitionMemRow pmr = new PartitionMemRow();
         pmr.tupleCount = tupleCount;
         pmr.tupleDataMem = tupleDataMem;
         pmr.tupleAllocatedMem = tupleAllocatedMem;
         pmr.indexMem = indexMem;
         pmr.stringMem = stringMem;
+        pmr.compressedStringMem = compressedStringMem;
+        pmr.uncompressedStringMem = uncompressedStringMem;
         pmr.pooledMem = pooledMemory;
+        // reserved huge pages, transparent huge pages, NUMA local
+        pmr.hugePageMem = largePageMemory[0];
+        pmr.transparentHugePageMem = largePageMemory[1];
+        pmr.numaLocalMem = largePageMemory[2];
         m_memoryStats.put(siteId, pmr);
     }
 }
@@ -140,7 +140,12 @@ public class PartitionDRGateway {
         }
     };
 
-    public static synchronized void pushDRBuffer(
+    /**
+     * Called from the EE of each partition's site thread. Not synchronized,
+     * a partition only ever pushes from its own thread and the trace state
+     * is per thread, so sites of a host don't wait on each other.
+     */
+    public static void pushDRBuffer(
             int partitionId,
             long startSequenceNumber,
             long lastSequenceNumber,
@@ -0,0 +1,239 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.catalog.Table;
+
+/**
+ * Results of a {@link CacheResults} procedure at one site, by parameter values.
+ *
+ * An entry keeps the write epochs the EE reported for the tables the
+ * procedure's statements read when the results were computed, and is only
+ * used while they are all unchanged. Entries are evicted least recently used
+ * first once their results take more memory than the procedure allows.
+ *
+ * Only used from the site thread.
+ */
+public final class ProcedureResultCache {
+
+    // Rough per-entry overhead of the key, entry and map node objects
+    static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    static final class Key {
+        private final byte[] m_params;
+        private final int m_hash;
+
+        Key(byte[] params) {
+            m_params = params;
+            m_hash = Arrays.hashCode(params);
+        }
+
+        @Override
+        public int hashCode() {
+            return m_hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return m_hash == other.m_hash && Arrays.equals(m_params, other.m_params);
+        }
+    }
+
+    static final class Entry {
+        private final long[] m_writeEpochs;
+        private final ByteBuffer[] m_results;
+        final byte m_appStatusCode;
+        final String m_appStatusString;
+        final int m_bytes;
+
+        private Entry(Key key, long[] writeEpochs, VoltTable[] results, byte appStatusCode, String appStatusString) {
+            m_writeEpochs = writeEpochs;
+            m_results = new ByteBuffer[results.length];
+            int bytes = ENTRY_OVERHEAD_BYTES + key.m_params.length + writeEpochs.length * 8;
+            for (int i = 0; i < results.length; i++) {
+                m_results[i] = ByteBuffer.allocate(results[i].getSerializedSize());
+                results[i].flattenToBuffer(m_results[i]);
+                m_results[i].flip();
+                bytes += m_results[i].capacity();
+            }
+            m_appStatusCode = appStatusCode;
+            m_appStatusString = appStatusString;
+            m_bytes = bytes;
+        }
+
+        /**
+         * @return new read-only tables over the cached results, so
+         * concurrent responses don't share positions
+         */
+        VoltTable[] getResults() {
+            VoltTable[] results = new VoltTable[m_results.length];
+            for (int i = 0; i < m_results.length; i++) {
+                results[i] = PrivateVoltTableFactory.createVoltTableFromSharedBuffer(m_results[i].duplicate());
+            }
+            return results;
+        }
+    }
+
+    private final SiteProcedureConnection m_site;
+    // Catalog relative indexes of the tables the procedure reads
+    private final int[] m_tableIds;
+    private final long m_maxBytes;
+    private long m_bytes = 0;
+    private final LinkedHashMap<Key, Entry> m_entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+    ProcedureResultCache(SiteProcedureConnection site, int[] tableIds, long maxBytes) {
+        m_site = site;
+        m_tableIds = tableIds;
+        m_maxBytes = maxBytes;
+    }
+
+    /**
+     * @return a cache for the procedure if it asks for one and qualifies, null otherwise
+     */
+    static ProcedureResultCache create(VoltProcedure procedure, Procedure catProc, SiteProcedureConnection site) {
+        final CacheResults annotation = procedure.getClass().getAnnotation(CacheResults.class);
+        if (annotation == null || annotation.maxKilobytes() <= 0 || getIneligibilityReason(catProc) != null) {
+            return null;
+        }
+
+        final Database db = (Database) catProc.getParent();
+        final TreeSet<Integer> tableIds = new TreeSet<Integer>();
+        for (Statement stmt : catProc.getStatements()) {
+            for (String tableName : stmt.getTablesread().split(",")) {
+                if (tableName.isEmpty()) {
+                    continue;
+                }
+                Table table = db.getTables().get(tableName);
+                if (table == null) {
+                    return null;
+                }
+                tableIds.add(table.getRelativeIndex());
+            }
+        }
+        int[] ids = new int[tableIds.size()];
+        int i = 0;
+        for (int id : tableIds) {
+            ids[i++] = id;
+        }
+        return new ProcedureResultCache(site, ids, annotation.maxKilobytes() * 1024L);
+    }
+
+    /**
+     * @return why the procedure's results can't be cached, or null if they can
+     */
+    public static String getIneligibilityReason(Procedure catProc) {
+        if (catProc.getSystemproc() || !catProc.getHasjava()) {
+            return "it is not a Java procedure";
+        }
+        if (!catProc.getReadonly()) {
+            return "it is not read-only";
+        }
+        if (!catProc.getSinglepartition()) {
+            return "it is not single-partition";
+        }
+        for (Statement stmt : catProc.getStatements()) {
+            if (!stmt.getIscontentdeterministic() || !stmt.getIsorderdeterministic()) {
+                return "statement \"" + stmt.getSqltext() + "\" is not deterministic";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the key of the parameters, or null if they can't be serialized
+     */
+    Key makeKey(Object[] params) {
+        try {
+            ParameterSet pset = ParameterSet.fromArrayNoCopy(params);
+            ByteBuffer buf = ByteBuffer.allocate(pset.getSerializedSize());
+            pset.flattenToBuffer(buf);
+            return new Key(buf.array());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the current write epochs of the tables the procedure reads,
+     * or null if the backend doesn't track them
+     */
+    long[] getWriteEpochs() {
+        long[] epochs = new long[m_tableIds.length];
+        for (int i = 0; i < m_tableIds.length; i++) {
+            epochs[i] = m_site.getTableWriteEpoch(m_tableIds[i]);
+            if (epochs[i] < 0) {
+                return null;
+            }
+        }
+        return epochs;
+    }
+
+    /**
+     * @return the entry for the key if none of its tables changed since, null otherwise
+     */
+    Entry get(Key key, long[] writeEpochs) {
+        Entry entry = m_entries.get(key);
+        if (entry != null && !Arrays.equals(entry.m_writeEpochs, writeEpochs)) {
+            m_entries.remove(key);
+            m_bytes -= entry.m_bytes;
+            return null;
+        }
+        return entry;
+    }
+
+    void put(Key key, long[] writeEpochs, VoltTable[] results, byte appStatusCode, String appStatusString) {
+        Entry entry = new Entry(key, writeEpochs, results, appStatusCode, appStatusString);
+        if (entry.m_bytes > m_maxBytes) {
+            return;
+        }
+        Entry previous = m_entries.put(key, entry);
+        if (previous != null) {
+            m_bytes -= previous.m_bytes;
+        }
+        m_bytes += entry.m_bytes;
+
+        Iterator<Map.Entry<Key, Entry>> iter = m_entries.entrySet().iterator();
+        while (m_bytes > m_maxBytes && iter.hasNext()) {
+            m_bytes -= iter.next().getValue().m_bytes;
+            iter.remove();
+        }
+    }
+
+    int size() {
+        return m_entries.size();
+    }
+
+    long getBytes() {
+        return m_bytes;
+    }
+}
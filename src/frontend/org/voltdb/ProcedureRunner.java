@@ -114,6 +114,9 @@ public class ProcedureRunner {
     // cached txnid-seeded RNG so all calls to getSeededRandomNumberGenerator() for
     // a given call don't re-seed and generate the same number over and over
     private Random m_cachedRNG = null;
+    // cleared when the procedure uses anything besides its parameters and
+    // SQL results, so the results of the call are not cached
+    private boolean m_cacheableCall = false;
 
     // hooks into other parts of voltdb
     //
@@ -124,6 +127,8 @@ public class ProcedureRunner {
     // per procedure state and catalog info
     //
     protected ProcedureStatsCollector m_statsCollector;
+    // null unless the procedure asked for its results to be cached and qualifies
+    protected final ProcedureResultCache m_resultCache;
     protected final Procedure m_catProc;
     protected final boolean m_isSysProc;
     protected final boolean m_isSinglePartition;
@@ -219,6 +224,8 @@ public class ProcedureRunner {
                 site.getCorrespondingSiteId(),
                 m_statsCollector);
 
+        m_resultCache = ProcedureResultCache.create(m_procedure, m_catProc, m_site);
+
         reflect();
     }
 
@@ -238,6 +245,7 @@ public class ProcedureRunner {
      * @return The transaction id for determinism, not for ordering.
      */
     long getTransactionId() {
+        m_cacheableCall = false;
         StoredProcedureInvocation invocation = m_txnState.getInvocation();
         if (invocation != null && invocation.getType() == ProcedureInvocationType.REPLICATED) {
             return invocation.getOriginalTxnId();
@@ -317,10 +325,29 @@ public class ProcedureRunner {
                 }
             }
 
+            // look for results of an earlier call with the same parameters
+            ProcedureResultCache.Key cacheKey = null;
+            long[] cacheWriteEpochs = null;
+            ProcedureResultCache.Entry cached = null;
+            if (m_resultCache != null) {
+                cacheKey = m_resultCache.makeKey(paramList);
+                cacheWriteEpochs = m_resultCache.getWriteEpochs();
+                if (cacheKey != null && cacheWriteEpochs != null) {
+                    cached = m_resultCache.get(cacheKey, cacheWriteEpochs);
+                    m_statsCollector.recordCacheLookup(cached != null);
+                    m_cacheableCall = (cached == null);
+                }
+            }
+
             boolean error = false;
             boolean abort = false;
+            if (cached != null) {
+                results = cached.getResults();
+                m_appStatusCode = cached.m_appStatusCode;
+                m_appStatusString = cached.m_appStatusString;
+            }
             // run a regular java class
-            if (m_hasJava) {
+            else if (m_hasJava) {
                 try {
                     if (m_language == Language.JAVA) {
                         if (HOST_TRACE_ENABLED) {
@@ -403,6 +430,10 @@ public class ProcedureRunner {
                 results = new VoltTable[0];
             }
 
+            if (m_cacheableCall && retval == null && m_statusCode == ClientResponse.SUCCESS) {
+                m_resultCache.put(cacheKey, cacheWriteEpochs, results, m_appStatusCode, m_appStatusString);
+            }
+
             if (retval == null) {
                 retval = new ClientResponseImpl(
                         m_statusCode,
@@ -436,6 +467,7 @@ public class ProcedureRunner {
             m_appStatusCode = ClientResponse.UNINITIALIZED_APP_STATUS_CODE;
             m_appStatusString = null;
             m_cachedRNG = null;
+            m_cacheableCall = false;
             m_cachedSingleStmt.params = null;
             m_cachedSingleStmt.expectation = null;
             m_seenFinalBatch = false;
@@ -546,6 +578,7 @@ public class ProcedureRunner {
      * a pre-IV2 transaction id.
      */
     public Date getTransactionTime() {
+        m_cacheableCall = false;
         StoredProcedureInvocation invocation = m_txnState.getInvocation();
         if (invocation != null && invocation.getType() == ProcedureInvocationType.REPLICATED) {
             return new Date(UniqueIdGenerator.getTimestampFromUniqueId(invocation.getOriginalUniqueId()));
@@ -561,6 +594,7 @@ public class ProcedureRunner {
      * partition so plenty of headroom.
      */
     public long getUniqueId() {
+        m_cacheableCall = false;
         StoredProcedureInvocation invocation = m_txnState.getInvocation();
         if (invocation != null && invocation.getType() == ProcedureInvocationType.REPLICATED) {
             return invocation.getOriginalUniqueId();
@@ -606,6 +640,8 @@ public class ProcedureRunner {
     }
 
     public void voltQueueSQL(final String sql, Object... args) {
+        // the tables ad hoc SQL reads aren't known up front
+        m_cacheableCall = false;
         if (sql == null || sql.isEmpty()) {
             throw new IllegalArgumentException("SQL statement '" + sql + "' is null or the empty string");
         }
@@ -789,6 +825,7 @@ public class ProcedureRunner {
                               String tableName, VoltTable data, boolean returnUniqueViolations, boolean shouldDRStream)
     throws VoltAbortException
     {
+        m_cacheableCall = false;
         if (data == null || data.getRowCount() == 0) {
             return null;
         }
@@ -119,6 +119,14 @@ class ProcedureStatsCollector extends SiteStatsSource {
     private long m_totalParameterSetSize = 0;
     private long m_lastTotalParameterSetSize = 0;
 
+    /**
+     * Invocations answered from the result cache, and ones that looked in it and had to run
+     */
+    private long m_cacheHits = 0;
+    private long m_lastCacheHits = 0;
+    private long m_cacheMisses = 0;
+    private long m_lastCacheMisses = 0;
+
     /**
      * Whether to return results in intervals since polling or since the beginning
      */
@@ -210,6 +218,17 @@ class ProcedureStatsCollector extends SiteStatsSource {
         m_invocations++;
     }
 
+    /**
+     * Called for each invocation of a procedure with a result cache.
+     */
+    public final void recordCacheLookup(boolean hit) {
+        if (hit) {
+            m_cacheHits++;
+        } else {
+            m_cacheMisses++;
+        }
+    }
+
     /**
      * Update the rowValues array with the latest statistical information.
      * This method is overrides the super class version
@@ -234,6 +253,8 @@ class ProcedureStatsCollector extends SiteStatsSource {
         long minParameterSetSize = m_minParameterSetSize;
         long maxParameterSetSize = m_maxParameterSetSize;
         long totalParameterSetSize = m_totalParameterSetSize;
+        long cacheHits = m_cacheHits;
+        long cacheMisses = m_cacheMisses;
 
         if (m_interval) {
             invocations = m_invocations - m_lastInvocations;
@@ -266,6 +287,12 @@ class ProcedureStatsCollector extends SiteStatsSource {
 
             totalParameterSetSize = m_totalParameterSetSize - m_lastTotalParameterSetSize;
             m_lastTotalParameterSetSize = m_totalParameterSetSize;
+
+            cacheHits = m_cacheHits - m_lastCacheHits;
+            m_lastCacheHits = m_cacheHits;
+
+            cacheMisses = m_cacheMisses - m_lastCacheMisses;
+            m_lastCacheMisses = m_cacheMisses;
         }
 
         rowValues[columnNameToIndex.get("INVOCATIONS")] = invocations;
@@ -290,6 +317,8 @@ class ProcedureStatsCollector extends SiteStatsSource {
         rowValues[columnNameToIndex.get("MAX_RESULT_SIZE")] = maxResultSize;
         rowValues[columnNameToIndex.get("MIN_PARAMETER_SET_SIZE")] = minParameterSetSize;
         rowValues[columnNameToIndex.get("MAX_PARAMETER_SET_SIZE")] = maxParameterSetSize;
+        rowValues[columnNameToIndex.get("CACHE_HITS")] = cacheHits;
+        rowValues[columnNameToIndex.get("CACHE_MISSES")] = cacheMisses;
     }
 
     /**
@@ -314,6 +343,8 @@ class ProcedureStatsCollector extends SiteStatsSource {
         columns.add(new VoltTable.ColumnInfo("AVG_PARAMETER_SET_SIZE", VoltType.INTEGER));
         columns.add(new VoltTable.ColumnInfo("ABORTS", VoltType.BIGINT));
         columns.add(new VoltTable.ColumnInfo("FAILURES", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("CACHE_HITS", VoltType.BIGINT));
+        columns.add(new VoltTable.ColumnInfo("CACHE_MISSES", VoltType.BIGINT));
     }
 
     @Override
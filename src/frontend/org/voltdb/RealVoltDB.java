@@ -116,6 +116,7 @@ import org.voltdb.messaging.VoltDbMessageFactory;
 import org.voltdb.planner.ActivePlanRepository;
 import org.voltdb.rejoin.Iv2RejoinCoordinator;
 import org.voltdb.rejoin.JoinCoordinator;
+import org.voltdb.rejoin.StreamSnapshotStats;
 import org.voltdb.utils.CLibrary;
 import org.voltdb.utils.CatalogUtil;
 import org.voltdb.utils.CatalogUtil.CatalogAndIds;
@@ -243,6 +244,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback {
     // Rejoin coordinator
     private JoinCoordinator m_joinCoordinator = null;
     private ElasticJoinService m_elasticJoinService = null;
+    private BalancePartitionsStatistics m_rebalanceStats = null;
 
     // Snapshot IO agent
     private SnapshotIOAgent m_snapshotIOAgent = null;
@@ -677,8 +679,11 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback {
                     0, m_latencyHistogramStats);
 
 
-            BalancePartitionsStatistics rebalanceStats = new BalancePartitionsStatistics();
-            getStatsAgent().registerStatsSource(StatsSelector.REBALANCE, 0, rebalanceStats);
+            m_rebalanceStats = new BalancePartitionsStatistics();
+            m_rebalanceStats.getScheduler().updateConfig(m_catalogContext);
+            getStatsAgent().registerStatsSource(StatsSelector.REBALANCE, 0, m_rebalanceStats);
+            getStatsAgent().registerStatsSource(StatsSelector.REBALANCE_HISTORY, 0, m_rebalanceStats.getHistory());
+            getStatsAgent().registerStatsSource(StatsSelector.REJOIN, 0, new StreamSnapshotStats());
 
             KSafetyStats kSafetyStats = new KSafetyStats();
             getStatsAgent().registerStatsSource(StatsSelector.KSAFETY, 0, kSafetyStats);
@@ -947,7 +952,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback {
                                 m_messenger,
                                 m_clientInterface,
                                 m_cartographer,
-                                rebalanceStats,
+                                m_rebalanceStats,
                                 clSnapshotPath,
                                 m_catalogContext.getDeployment().getCluster().getKfactor());
                     m_elasticJoinService.updateConfig(m_catalogContext);
@@ -1458,6 +1463,9 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback {
                 if (sysType.getElastic() != null) {
                     hostLog.info("Elastic duration set to " + sysType.getElastic().getDuration() + " milliseconds");
                     hostLog.info("Elastic throughput set to " + sysType.getElastic().getThroughput() + " mb/s");
+                    if (sysType.getElastic().getLatency() > 0) {
+                        hostLog.info("Elastic latency budget set to " + sysType.getElastic().getLatency() + " milliseconds");
+                    }
                 }
                 if (sysType.getTemptables() != null) {
                     hostLog.info("Max temptable size set to " + sysType.getTemptables().getMaxsize() + " mb");
@@ -1853,6 +1861,9 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback {
 
         hostLog.info("Elastic duration set to " + sysSettings.getElasticduration() + " milliseconds");
         hostLog.info("Elastic throughput set to " + sysSettings.getElasticthroughput() + " mb/s");
+        if (sysSettings.getElasticlatency() > 0) {
+            hostLog.info("Elastic latency budget set to " + sysSettings.getElasticlatency() + " milliseconds");
+        }
         hostLog.info("Max temptable size set to " + sysSettings.getTemptablemaxsize() + " mb");
         hostLog.info("Snapshot priority set to " + sysSettings.getSnapshotpriority() + " [0 - 10]");
 
@@ -2149,6 +2160,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback {
 
             // 1.1 Update the elastic join throughput settings
             if (m_elasticJoinService != null) m_elasticJoinService.updateConfig(m_catalogContext);
+            if (m_rebalanceStats != null) m_rebalanceStats.getScheduler().updateConfig(m_catalogContext);
 
             // 1.5 update the dead host timeout
             if (m_catalogContext.cluster.getHeartbeattimeout() * 1000 != m_config.m_deadHostTimeoutMS) {
@@ -136,6 +136,10 @@ SnapshotCompletionInterest, Promotable
 
     // The snapshot to restore
     private SnapshotInfo m_snapshotToRestore = null;
+    // The incremental snapshots to restore in order, the base first and
+    // m_snapshotToRestore last. Null when restoring a single snapshot.
+    private List<SnapshotInfo> m_snapshotChainToRestore = null;
+    private int m_snapshotChainPosition = 0;
 
     // The txnId of the truncation snapshot generated at the end.
     private long m_truncationSnapshot = Long.MIN_VALUE;
@@ -178,21 +182,11 @@ SnapshotCompletionInterest, Promotable
                     sendSnapshotTxnId(m_snapshotToRestore);
 
                     if (m_snapshotToRestore != null) {
-                        LOG.debug("Initiating snapshot " + m_snapshotToRestore.nonce +
-                                " in " + m_snapshotToRestore.path);
-                        JSONObject jsObj = new JSONObject();
-                        jsObj.put(SnapshotUtil.JSON_PATH, m_snapshotToRestore.path);
-                        jsObj.put(SnapshotUtil.JSON_NONCE, m_snapshotToRestore.nonce);
-                        if (m_action == StartAction.SAFE_RECOVER) {
-                            jsObj.put(SnapshotUtil.JSON_DUPLICATES_PATH, m_voltdbrootPath);
+                        if (m_snapshotChainToRestore == null) {
+                            m_snapshotChainToRestore = Arrays.asList(m_snapshotToRestore);
                         }
-                        if (m_replayAgent.hasReplayedSegments() &&
-                            TheHashinator.getConfiguredHashinatorType() == TheHashinator.HashinatorType.ELASTIC) {
-                            // Restore the hashinator if there's command log to replay and we're running elastic
-                            jsObj.put(SnapshotUtil.JSON_HASHINATOR, true);
-                        }
-                        Object[] params = new Object[] { jsObj.toString() };
-                        initSnapshotWork(params);
+                        m_snapshotChainPosition = 0;
+                        restoreNextInChain();
                     }
 
                     // if no snapshot to restore, transition immediately.
@@ -233,11 +227,26 @@ SnapshotCompletionInterest, Promotable
         public final Set<String> digestTables = new HashSet<String>();
         // Track the tables for which we found files on the node reporting this SnapshotInfo
         public final Set<String> fileTables = new HashSet<String>();
+        // Incremental snapshots only. A base has no parent, a delta is restored
+        // on top of its parent and holds the rows deleted since for the tracked tables.
+        public boolean incremental = false;
+        public String parentNonce = null;
+        public final Set<String> trackedTables = new HashSet<String>();
 
         public void setPidToTxnIdMap(Map<Integer,Long> map) {
             partitionToTxnId.putAll(map);
         }
 
+        public void setIncremental(String parentNonce, Collection<String> trackedTables) {
+            this.incremental = true;
+            this.parentNonce = parentNonce;
+            this.trackedTables.addAll(trackedTables);
+        }
+
+        public boolean isDelta() {
+            return incremental && parentNonce != null;
+        }
+
         public SnapshotInfo(long txnId, String path, String nonce,
                             int partitions, int newPartitionCount,
                             long catalogCrc, int hostId, InstanceId instanceId,
@@ -295,6 +304,14 @@ SnapshotCompletionInterest, Promotable
             for (int i = 0; i < ft.length(); i++) {
                 fileTables.add(ft.getString(i));
             }
+            incremental = jo.optBoolean("incremental", false);
+            parentNonce = jo.optString("parentNonce", null);
+            JSONArray tt = jo.optJSONArray("trackedTables");
+            if (tt != null) {
+                for (int i = 0; i < tt.length(); i++) {
+                    trackedTables.add(tt.getString(i));
+                }
+            }
         }
 
         public JSONObject toJSONObject()
@@ -337,6 +354,17 @@ SnapshotCompletionInterest, Promotable
                     stringer.value(fileTable);
                 }
                 stringer.endArray();
+                if (incremental) {
+                    stringer.key("incremental").value(true);
+                    if (parentNonce != null) {
+                        stringer.key("parentNonce").value(parentNonce);
+                    }
+                    stringer.key("trackedTables").array();
+                    for (String trackedTable : trackedTables) {
+                        stringer.value(trackedTable);
+                    }
+                    stringer.endArray();
+                }
                 stringer.endObject();
                 return new JSONObject(stringer.toString());
             } catch (JSONException e) {
@@ -399,6 +427,33 @@ SnapshotCompletionInterest, Promotable
         }
     }
 
+    /**
+     * Restore the next snapshot of the chain. Each delta of an incremental
+     * chain is restored on top of the snapshots before it, its deleted rows
+     * are removed before its rows are loaded.
+     */
+    private void restoreNextInChain() throws JSONException {
+        SnapshotInfo snapshot = m_snapshotChainToRestore.get(m_snapshotChainPosition);
+        boolean last = m_snapshotChainPosition == m_snapshotChainToRestore.size() - 1;
+        LOG.debug("Initiating snapshot " + snapshot.nonce + " in " + snapshot.path);
+        JSONObject jsObj = new JSONObject();
+        jsObj.put(SnapshotUtil.JSON_PATH, snapshot.path);
+        jsObj.put(SnapshotUtil.JSON_NONCE, snapshot.nonce);
+        if (snapshot.isDelta()) {
+            jsObj.put(SnapshotUtil.JSON_DELTA, true);
+        }
+        if (m_action == StartAction.SAFE_RECOVER) {
+            jsObj.put(SnapshotUtil.JSON_DUPLICATES_PATH, m_voltdbrootPath);
+        }
+        if (last && m_replayAgent.hasReplayedSegments() &&
+            TheHashinator.getConfiguredHashinatorType() == TheHashinator.HashinatorType.ELASTIC) {
+            // Restore the hashinator if there's command log to replay and we're running elastic
+            jsObj.put(SnapshotUtil.JSON_HASHINATOR, true);
+        }
+        Object[] params = new Object[] { jsObj.toString() };
+        initSnapshotWork(params);
+    }
+
     /*
      * A reusable callback for the incoming responses
      */
@@ -434,7 +489,18 @@ SnapshotCompletionInterest, Promotable
                         Thread networkHandoff = new Thread() {
                             @Override
                             public void run() {
-                                m_changeStateFunctor.run();
+                                if (m_snapshotChainToRestore != null &&
+                                    m_snapshotChainPosition < m_snapshotChainToRestore.size() - 1) {
+                                    m_snapshotChainPosition++;
+                                    try {
+                                        restoreNextInChain();
+                                    } catch (JSONException e) {
+                                        VoltDB.crashGlobalVoltDB("Failed to restore from snapshot: " +
+                                                e.getMessage(), false, e);
+                                    }
+                                } else {
+                                    m_changeStateFunctor.run();
+                                }
                             }
                         };
                         networkHandoff.start();
@@ -744,6 +810,7 @@ SnapshotCompletionInterest, Promotable
         // Create a valid but meaningless InstanceId to support pre-instanceId checking versions
         InstanceId instanceId = new InstanceId(0, 0);
         int newParitionCount = -1;
+        JSONObject incremental = null;
         try
         {
             JSONObject digest_detail = SnapshotUtil.CRCCheck(digest, LOG);
@@ -775,6 +842,8 @@ SnapshotCompletionInterest, Promotable
                     digestTableNames.add(tableObj.getString(i));
                 }
             }
+
+            incremental = digest_detail.optJSONObject(SnapshotUtil.JSON_INCREMENTAL);
         }
         catch (IOException ioe)
         {
@@ -854,10 +923,29 @@ SnapshotCompletionInterest, Promotable
             if (!tableFile.m_isReplicated) {
                 info.partitions.put(te.getKey(), ids);
             }
-            // keep track of tables for which we've seen files while we're here
-            info.fileTables.add(te.getKey());
+            // keep track of tables for which we've seen files while we're here,
+            // the deleted rows of a delta are not tables of the digest
+            if (!SnapshotUtil.isTombstonesTableName(te.getKey())) {
+                info.fileTables.add(te.getKey());
+            }
         }
         info.setPidToTxnIdMap(pidToTxnMap);
+        if (incremental != null) {
+            try {
+                List<String> trackedTables = new ArrayList<String>();
+                JSONArray tracked = incremental.getJSONArray(SnapshotUtil.JSON_TRACKED_TABLES);
+                for (int i = 0; i < tracked.length(); i++) {
+                    trackedTables.add(tracked.getString(i));
+                }
+                info.setIncremental(incremental.optString(SnapshotUtil.JSON_PARENT_NONCE, null), trackedTables);
+            } catch (JSONException je) {
+                m_snapshotErrLogStr.append("\nRejected snapshot ")
+                                .append(s.getNonce())
+                                .append(" because its incremental snapshot details could not be read: ")
+                                .append(je.getMessage());
+                return null;
+            }
+        }
         return info;
     }
 
@@ -1018,7 +1106,7 @@ SnapshotCompletionInterest, Promotable
         HashMap<String, Map<String, Set<Integer>>> snapshotTablePartitions =
             new HashMap<String, Map<String,Set<Integer>>>();
         Iterator<Entry<String, Set<SnapshotInfo>>> it = snapshotFragments.entrySet().iterator();
-        SnapshotInfo newest = null;
+        Map<String, SnapshotInfo> viable = new HashMap<String, SnapshotInfo>();
         while (it.hasNext()) {
             Entry<String, Set<SnapshotInfo>> e = it.next();
             Set<String> fileTables = new HashSet<String>();
@@ -1032,8 +1120,23 @@ SnapshotCompletionInterest, Promotable
 
             int totalPartitions = -1;
             boolean inconsistent = false;
+            SnapshotInfo first = null;
             Set<SnapshotInfo> fragments = e.getValue();
             for (SnapshotInfo s : fragments) {
+                if (first == null) {
+                    first = s;
+                }
+                else if (first.incremental != s.incremental ||
+                         (first.parentNonce == null ? s.parentNonce != null : !first.parentNonce.equals(s.parentNonce))) {
+                    m_snapshotErrLogStr.append("\nRejected snapshot ")
+                                    .append(s.nonce)
+                                    .append(" due to disagreement in the parent of an incremental snapshot.  Got ")
+                                    .append(s.parentNonce)
+                                    .append(", expecting ")
+                                    .append(first.parentNonce);
+                    inconsistent = true;
+                    break;
+                }
                 LOG.debug("SnapshotInfo " + s.nonce + " claims digest tables: " + s.digestTables);
                 LOG.debug("SnapshotInfo " + s.nonce + " claims files for tables: " + s.fileTables);
                 if (digestTables == null) {
@@ -1088,6 +1191,20 @@ SnapshotCompletionInterest, Promotable
                 inconsistent = true;
             }
 
+            // A delta needs the deleted rows of every tracked table
+            if (!inconsistent && first != null && first.isDelta()) {
+                for (String table : first.trackedTables) {
+                    if (!tablePartitions.containsKey(table + SnapshotUtil.TOMBSTONES_SUFFIX)) {
+                        m_snapshotErrLogStr.append("\nRejected snapshot ")
+                            .append(nonce)
+                            .append(" because the deleted rows of table ")
+                            .append(table)
+                            .append(" were not found");
+                        inconsistent = true;
+                    }
+                }
+            }
+
             // Check if we have all the partitions
             for (Set<Integer> partitions : tablePartitions.values()) {
                 if (partitions.size() != totalPartitions) {
@@ -1105,11 +1222,27 @@ SnapshotCompletionInterest, Promotable
                 it.remove();
             }
             else {
-                SnapshotInfo current = consolidateSnapshotInfos(fragments);
-                if (newest == null || current.isNewerThan(newest)) {
-                    newest = current;
+                viable.put(nonce, consolidateSnapshotInfos(fragments));
+            }
+        }
+
+        // Restore from the newest snapshot that can be restored on its own
+        // or through its chain of incremental snapshots
+        List<SnapshotInfo> candidates = new ArrayList<SnapshotInfo>(viable.values());
+        SnapshotInfo newest = null;
+        while (newest == null && !candidates.isEmpty()) {
+            SnapshotInfo candidate = candidates.get(0);
+            for (SnapshotInfo s : candidates) {
+                if (s.isNewerThan(candidate)) {
+                    candidate = s;
                 }
             }
+            candidates.remove(candidate);
+            List<SnapshotInfo> chain = getSnapshotChain(candidate, viable);
+            if (chain != null) {
+                newest = candidate;
+                m_snapshotChainToRestore = chain;
+            }
         }
 
         // If we have a command log and it requires a snapshot but no snapshot
@@ -1132,6 +1265,35 @@ SnapshotCompletionInterest, Promotable
         }
     }
 
+    /**
+     * Walk an incremental snapshot back to its base.
+     *
+     * @return The snapshots to restore in order, the base first, or null if
+     * any snapshot of the chain is missing or unusable.
+     */
+    private List<SnapshotInfo> getSnapshotChain(SnapshotInfo snapshot, Map<String, SnapshotInfo> viable) {
+        List<SnapshotInfo> chain = new ArrayList<SnapshotInfo>();
+        chain.add(snapshot);
+        SnapshotInfo current = snapshot;
+        while (current.isDelta()) {
+            // Parents are strictly older, so the walk always ends
+            SnapshotInfo parent = viable.get(current.parentNonce);
+            if (parent == null || !parent.incremental ||
+                !parent.instanceId.equals(current.instanceId) ||
+                parent.txnId >= current.txnId) {
+                m_snapshotErrLogStr.append("\nRejected snapshot ")
+                                .append(snapshot.nonce)
+                                .append(" because its incremental parent ")
+                                .append(current.parentNonce)
+                                .append(" could not be restored");
+                return null;
+            }
+            chain.add(0, parent);
+            current = parent;
+        }
+        return chain;
+    }
+
     /**
      * This function, like all good functions, does three things.
      * It produces the command log start transaction Id.
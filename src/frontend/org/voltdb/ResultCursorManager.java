@@ -0,0 +1,157 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * Query results held by the client interface so a client can read them in
+ * chunks with @FetchCursor instead of receiving them in one response.
+ *
+ * A cursor belongs to the connection that opened it and lives until it is
+ * read to the end, closed with @CloseCursor, its connection goes away or it
+ * has been idle for {@link #IDLE_TIMEOUT_MILLIS}. Each chunk is copied out
+ * of the result, so the client only ever holds one chunk at a time.
+ */
+public class ResultCursorManager {
+    static final long IDLE_TIMEOUT_MILLIS =
+        Long.getLong("CURSOR_IDLE_TIMEOUT_MS", TimeUnit.MINUTES.toMillis(10));
+    static final int MAX_CURSORS_PER_CONNECTION = Integer.getInteger("MAX_CURSORS_PER_CONNECTION", 16);
+
+    /** Schema of the status table that follows every chunk */
+    static final ColumnInfo[] STATUS_SCHEMA = new ColumnInfo[] {
+        new ColumnInfo("CURSOR_ID", VoltType.BIGINT),
+        new ColumnInfo("HOST_ID", VoltType.INTEGER),
+        new ColumnInfo("ROWS_REMAINING", VoltType.BIGINT)
+    };
+
+    private static class Cursor {
+        final long connectionId;
+        final VoltTable table;
+        long lastAccessMillis;
+
+        Cursor(long connectionId, VoltTable table, long now) {
+            this.connectionId = connectionId;
+            this.table = table;
+            this.lastAccessMillis = now;
+            table.resetRowPosition();
+        }
+
+        int remaining() {
+            return table.getRowCount() - table.getActiveRowIndex() - 1;
+        }
+    }
+
+    private final int m_hostId;
+    private final Map<Long, Cursor> m_cursors = new HashMap<Long, Cursor>();
+    private long m_nextCursorId = 0;
+
+    public ResultCursorManager(int hostId) {
+        m_hostId = hostId;
+    }
+
+    /**
+     * Keep a result for a connection and return its first chunk.
+     * @return the first chunk and the status of the new cursor, or null if the
+     * connection already has too many cursors open
+     */
+    public synchronized VoltTable[] open(long connectionId, VoltTable table, int maxRows) {
+        int open = 0;
+        for (Cursor cursor : m_cursors.values()) {
+            if (cursor.connectionId == connectionId) {
+                open++;
+            }
+        }
+        if (open >= MAX_CURSORS_PER_CONNECTION) {
+            return null;
+        }
+        final long cursorId = m_nextCursorId++;
+        m_cursors.put(cursorId, new Cursor(connectionId, table, System.currentTimeMillis()));
+        return fetch(connectionId, cursorId, maxRows);
+    }
+
+    /**
+     * Copy the next maxRows rows out of a cursor. The cursor is closed once
+     * the last row has been read.
+     * @return the chunk and the status of the cursor, or null if the connection
+     * has no such cursor
+     */
+    public synchronized VoltTable[] fetch(long connectionId, long cursorId, int maxRows) {
+        final Cursor cursor = m_cursors.get(cursorId);
+        if (cursor == null || cursor.connectionId != connectionId) {
+            return null;
+        }
+        cursor.lastAccessMillis = System.currentTimeMillis();
+
+        final VoltTable chunk = new VoltTable(cursor.table.getTableSchema());
+        // Stop before advanceRow() runs off the end, which moves the row index past it
+        for (int i = 0; i < maxRows && cursor.remaining() > 0; i++) {
+            cursor.table.advanceRow();
+            chunk.add(cursor.table);
+        }
+        final int remaining = cursor.remaining();
+        if (remaining == 0) {
+            m_cursors.remove(cursorId);
+        }
+
+        final VoltTable status = new VoltTable(STATUS_SCHEMA);
+        status.addRow(cursorId, m_hostId, remaining);
+        return new VoltTable[] { chunk, status };
+    }
+
+    /**
+     * @return true if the connection had the cursor open
+     */
+    public synchronized boolean close(long connectionId, long cursorId) {
+        final Cursor cursor = m_cursors.get(cursorId);
+        if (cursor == null || cursor.connectionId != connectionId) {
+            return false;
+        }
+        m_cursors.remove(cursorId);
+        return true;
+    }
+
+    /** Drop the cursors of a connection that went away */
+    public synchronized void closeAll(long connectionId) {
+        final Iterator<Cursor> iter = m_cursors.values().iterator();
+        while (iter.hasNext()) {
+            if (iter.next().connectionId == connectionId) {
+                iter.remove();
+            }
+        }
+    }
+
+    /** Drop cursors nobody has read from for the idle timeout */
+    public synchronized void expireIdle(long now) {
+        final Iterator<Cursor> iter = m_cursors.values().iterator();
+        while (iter.hasNext()) {
+            if (now - iter.next().lastAccessMillis > IDLE_TIMEOUT_MILLIS) {
+                iter.remove();
+            }
+        }
+    }
+
+    synchronized int getOpenCursorCount() {
+        return m_cursors.size();
+    }
+}
@@ -153,6 +153,13 @@ public interface SiteProcedureConnection {
      */
     public ProcedureRunner getProcedureRunner(String procedureName);
 
+    /**
+     * @param tableId catalog relative index of the table
+     * @return a count that changes whenever the table's contents may have,
+     * or -1 if the backend doesn't track writes
+     */
+    public long getTableWriteEpoch(int tableId);
+
     /*
      * This isn't just a simple setter, it has behavior side effects
      * as well because it causes the Site to start replaying log data
@@ -194,4 +201,9 @@ public interface SiteProcedureConnection {
     public long[] validatePartitioning(long tableIds[], int hashinatorType, byte hashinatorConfig[]);
     public void notifyOfSnapshotNonce(String nonce, long snapshotSpHandle);
     public void applyBinaryLog(long txnId, long spHandle, long uniqueId, byte logData[]);
+    /**
+     * Apply a binary log, possibly many transactions long, in one call into the EE.
+     * @param checksumsVerified true if the log already passed {@link DRApplyPipeline} validation
+     */
+    public void applyBinaryLog(long txnId, long spHandle, long uniqueId, byte logData[], boolean checksumsVerified);
 }
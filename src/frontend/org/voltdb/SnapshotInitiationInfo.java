@@ -21,6 +21,7 @@ import java.net.URI;
 
 import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONObject;
+import org.voltdb.sysprocs.saverestore.SnapshotUtil;
 
 /**
  * Encapsulate the parameters provided to @SnapshotSave needed to initiate a snapshot.
@@ -131,6 +132,12 @@ public class SnapshotInitiationInfo
      *   as blocking.  true/false will be interpreted as you'd expect
      *
      *   format: one of 'native' or 'csv'.
+     *
+     *   (optional) incremental: true to take a native snapshot that tracks changes
+     *   to the partitioned tables with a primary key from here on.
+     *
+     *   (optional) parentNonce: nonce of the previous incremental snapshot. Makes
+     *   this an incremental snapshot with only the rows written and deleted since.
      */
     private void parseJsonParams(Object[] params) throws Exception
     {
@@ -209,6 +216,19 @@ public class SnapshotInitiationInfo
             throw new Exception("@SnapshotSave format param is a " + m_format +
                     " and should be one of [\"native\" | \"csv\"]");
         }
+
+        final boolean incremental = jsObj.optBoolean(SnapshotUtil.JSON_INCREMENTAL, false);
+        if (incremental && m_format != SnapshotFormat.NATIVE) {
+            throw new Exception("Incremental snapshots must use the native format");
+        }
+        if (jsObj.has(SnapshotUtil.JSON_PARENT_NONCE)) {
+            if (!incremental) {
+                throw new Exception(SnapshotUtil.JSON_PARENT_NONCE + " requires an incremental snapshot");
+            }
+            if (jsObj.getString(SnapshotUtil.JSON_PARENT_NONCE).isEmpty()) {
+                throw new Exception(SnapshotUtil.JSON_PARENT_NONCE + " cannot be empty");
+            }
+        }
         m_data = (String)params[0];
     }
 
@@ -169,6 +169,13 @@ public class SnapshotSiteProcessor {
      */
     private static final AtomicInteger m_availableSnapshotBuffers = new AtomicInteger(16);
 
+    /**
+     * Number of tables a site serializes a block from each time it does work for a
+     * stream snapshot. Several table streams in flight keep the compression service
+     * and the network busy while the site goes back to transactions.
+     */
+    private static final int m_streamTablesPerPass = Math.max(1, Integer.getInteger("REJOIN_TABLE_STREAMS", 2));
+
     /**
      * The last EE out has to shut off the lights. Cache a list
      * of targets in case this EE ends up being the one that needs
@@ -184,6 +191,13 @@ public class SnapshotSiteProcessor {
     private ListMultimap<Integer, SnapshotTableTask> m_snapshotTableTasks = null;
     private Map<Integer, TableStreamer> m_streamers = null;
 
+    /**
+     * Tasks of tables whose stream could not be activated, an incremental snapshot
+     * of a table that has not been tracking changes. Their targets are marked failed
+     * once they are created.
+     */
+    private List<SnapshotTableTask> m_failedTableTasks = null;
+
     private long m_lastSnapshotTxnId;
     private final int m_snapshotPriority;
 
@@ -407,6 +421,7 @@ public class SnapshotSiteProcessor {
         m_lastSnapshotTxnId = txnId;
         m_snapshotTableTasks = MiscUtils.sortedArrayListMultimap();
         m_streamers = Maps.newHashMap();
+        m_failedTableTasks = Lists.newArrayList();
         m_snapshotTargetTerminators = new ArrayList<Thread>();
         m_exportSequenceNumbersToLogOnCompletion = exportSequenceNumbers;
         m_drTupleStreamInfoToLogOnCompletion = drTupleStreamInfo;
@@ -415,11 +430,26 @@ public class SnapshotSiteProcessor {
         // Table doesn't implement hashCode(), so use the table ID as key
         for (Map.Entry<Integer, byte[]> tablePredicates : makeTablesAndPredicatesToSnapshot(tasks).entrySet()) {
             int tableId = tablePredicates.getKey();
-            TableStreamer streamer =
-                new TableStreamer(tableId, format.getStreamType(), m_snapshotTableTasks.get(tableId));
+            List<SnapshotTableTask> tableTasks = m_snapshotTableTasks.get(tableId);
+            TableStreamType streamType = tableTasks.get(0).m_streamType;
+            if (streamType == null) {
+                streamType = format.getStreamType();
+            }
+            TableStreamer streamer = new TableStreamer(tableId, streamType, tableTasks);
             if (!streamer.activate(context, tablePredicates.getValue())) {
+                final String tableName = CatalogUtil.getTableNameFromId(context.getDatabase(), tableId);
+                if (streamType == TableStreamType.SNAPSHOT_DELTA) {
+                    // Changes were not tracked, e.g. the table was truncated or the site
+                    // rejoined since the last incremental snapshot. Fail the snapshot
+                    // instead of writing an incomplete delta.
+                    SNAP_LOG.error("Failed to activate incremental snapshot stream on table " + tableName +
+                                   ", a new base snapshot is required");
+                    m_lastSnapshotSucceded = false;
+                    m_failedTableTasks.addAll(m_snapshotTableTasks.removeAll(tableId));
+                    continue;
+                }
                 VoltDB.crashLocalVoltDB("Failed to activate snapshot stream on table " +
-                                        CatalogUtil.getTableNameFromId(context.getDatabase(), tableId), false, null);
+                                        tableName, false, null);
             }
             m_streamers.put(tableId, streamer);
         }
@@ -453,6 +483,16 @@ public class SnapshotSiteProcessor {
             t.getTarget();
         }
 
+        // Nothing is written for tables that failed to activate, leave their files incomplete
+        for (SnapshotTableTask t : m_failedTableTasks) {
+            SnapshotDataTarget target = t.getTarget(true);
+            if (target instanceof DefaultSnapshotDataTarget) {
+                ((DefaultSnapshotDataTarget) target).markFailed(
+                        new IOException("Snapshot stream of table " + t.m_table.getTypeName() + " was not activated"));
+            }
+        }
+        m_failedTableTasks = null;
+
         ArrayList<SnapshotDataTarget> targetsToClose = Lists.newArrayList();
         for (final SnapshotDataTarget target : targets) {
             if (target.needsFinalClose()) {
@@ -495,7 +535,7 @@ public class SnapshotSiteProcessor {
                 tablesAndPredicates.put(task.m_table.getRelativeIndex(), predicates);
             }
 
-            predicates.addPredicate(task.m_predicate, task.m_deleteTuples);
+            predicates.addPredicate(task.m_predicate, task.m_deleteTuples, task.m_deletedRows);
         }
 
         for (Map.Entry<Integer, SnapshotPredicates> e : tablesAndPredicates.entrySet()) {
@@ -588,14 +628,19 @@ public class SnapshotSiteProcessor {
          * Try to serialize a block from a table, if the table is finished,
          * remove the tasks from the task map and move on to the next table. If a block is
          * successfully serialized, break out of the loop and release the site thread for more
-         * transaction work.
+         * transaction work. Stream snapshots serialize a block from a few tables before
+         * breaking out.
          */
+        int tablesStreamed = 0;
         Iterator<Map.Entry<Integer, Collection<SnapshotTableTask>>> taskIter =
             m_snapshotTableTasks.asMap().entrySet().iterator();
         while (taskIter.hasNext()) {
             Map.Entry<Integer, Collection<SnapshotTableTask>> taskEntry = taskIter.next();
             final int tableId = taskEntry.getKey();
             final Collection<SnapshotTableTask> tableTasks = taskEntry.getValue();
+            final int tablesPerPass =
+                tableTasks.iterator().next().m_target.getFormat() == SnapshotFormat.STREAM ?
+                m_streamTablesPerPass : 1;
 
             final List<BBContainer> outputBuffers = getOutputBuffers(tableTasks, noSchedule);
             if (outputBuffers == null) {
@@ -643,7 +688,7 @@ public class SnapshotSiteProcessor {
                 taskIter.remove();
                 SNAP_LOG.debug("Finished snapshot tasks for table " + tableId +
                                ": " + tableTasks);
-            } else {
+            } else if (++tablesStreamed >= tablesPerPass) {
                 break;
             }
         }
@@ -717,6 +762,7 @@ public class SnapshotSiteProcessor {
                                     throw new RuntimeException(e);
                                 }
                             }
+                            DefaultSnapshotDataTarget.logWriteLatency();
 
                             Runnable r = null;
                             while ((r = m_tasksOnSnapshotCompletion.poll()) != null) {
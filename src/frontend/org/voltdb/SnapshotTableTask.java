@@ -30,6 +30,12 @@ public class SnapshotTableTask
     public final SnapshotDataFilter m_filters[];
     public final AbstractExpression m_predicate;
     public final boolean m_deleteTuples;
+    // Stream type for the table if it differs from the one of the snapshot format,
+    // used by incremental snapshots
+    public final TableStreamType m_streamType;
+    // Whether the target gets the rows deleted since the previous incremental
+    // snapshot instead of the rows of the table
+    public final boolean m_deletedRows;
 
     volatile SnapshotDataTarget m_target;
 
@@ -38,11 +44,24 @@ public class SnapshotTableTask
             final SnapshotDataFilter filters[],
             final AbstractExpression predicate,
             final boolean deleteTuples)
+    {
+        this(table, filters, predicate, deleteTuples, null, false);
+    }
+
+    public SnapshotTableTask(
+            final Table table,
+            final SnapshotDataFilter filters[],
+            final AbstractExpression predicate,
+            final boolean deleteTuples,
+            final TableStreamType streamType,
+            final boolean deletedRows)
     {
         m_table = table;
         m_filters = filters;
         m_predicate = predicate;
         m_deleteTuples = deleteTuples;
+        m_streamType = streamType;
+        m_deletedRows = deletedRows;
     }
 
     public void setTarget(SnapshotDataTarget target)
@@ -71,7 +90,9 @@ public class SnapshotTableTask
     {
         return ("SnapshotTableTask for " + m_table.getTypeName() +
                 " replicated " + m_table.getIsreplicated() +
-                ", delete " + m_deleteTuples);
+                ", delete " + m_deleteTuples +
+                (m_streamType != null ? ", stream " + m_streamType : "") +
+                (m_deletedRows ? ", deleted rows" : ""));
     }
 }
 
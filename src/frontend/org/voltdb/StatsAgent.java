@@ -408,6 +408,12 @@ public class StatsAgent extends OpsAgent
         case REBALANCE:
             stats = collectRebalanceStats(interval);
             break;
+        case REBALANCE_HISTORY:
+            stats = collectRebalanceHistoryStats(interval);
+            break;
+        case REJOIN:
+            stats = collectRejoinStats(interval);
+            break;
         case KSAFETY:
             stats = collectKSafetyStats(interval);
             break;
@@ -420,6 +426,9 @@ public class StatsAgent extends OpsAgent
         case DRCONSUMERPARTITION:
             stats = collectDRConsumerPartitionStats();
             break;
+        case DRCONSUMERAPPLY:
+            stats = collectDRConsumerApplyStats(interval);
+            break;
         default:
             // Should have been successfully groomed in collectStatsImpl().  Log something
             // for our information but let the null check below return harmlessly
@@ -510,6 +519,19 @@ public class StatsAgent extends OpsAgent
         return stats;
     }
 
+    private VoltTable[] collectDRConsumerApplyStats(boolean interval) {
+        Long now = System.currentTimeMillis();
+        VoltTable[] stats = null;
+
+        VoltTable applyStats = getStatsAggregate(StatsSelector.DRCONSUMERAPPLY, interval, now);
+        if (applyStats != null) {
+            stats = new VoltTable[1];
+            stats[0] = applyStats;
+        }
+
+        return stats;
+    }
+
     private VoltTable[] collectSnapshotStatusStats()
     {
         Long now = System.currentTimeMillis();
@@ -729,6 +751,32 @@ public class StatsAgent extends OpsAgent
         return stats;
     }
 
+    private VoltTable[] collectRebalanceHistoryStats(boolean interval)
+    {
+        Long now = System.currentTimeMillis();
+        VoltTable[] stats = null;
+
+        VoltTable hStats = getStatsAggregate(StatsSelector.REBALANCE_HISTORY, interval, now);
+        if (hStats != null) {
+            stats = new VoltTable[1];
+            stats[0] = hStats;
+        }
+        return stats;
+    }
+
+    private VoltTable[] collectRejoinStats(boolean interval)
+    {
+        Long now = System.currentTimeMillis();
+        VoltTable[] stats = null;
+
+        VoltTable rStats = getStatsAggregate(StatsSelector.REJOIN, interval, now);
+        if (rStats != null) {
+            stats = new VoltTable[1];
+            stats[0] = rStats;
+        }
+        return stats;
+    }
+
     private VoltTable[] collectKSafetyStats(boolean interval)
     {
         Long now = System.currentTimeMillis();
@@ -46,9 +46,12 @@ public enum StatsSelector {
     DRCONSUMER,
     DRCONSUMERNODE,
     DRCONSUMERPARTITION,
+    DRCONSUMERAPPLY,  // replica side binary log apply rate and lag, per partition
 
     TOPO,           // return leader and site info for iv2
     REBALANCE,      // return elastic rebalance progress
+    REBALANCE_HISTORY, // return elastic rebalance progress over time
+    REJOIN,         // return rejoin and join data stream progress
     KSAFETY,         // return ksafety coverage information
     CPU // Return CPU Stats
 }
@@ -48,5 +48,8 @@ public class TableStats extends SiteStatsSource {
         columns.add(new ColumnInfo("STRING_DATA_MEMORY", VoltType.INTEGER));
         columns.add(new ColumnInfo("TUPLE_LIMIT", VoltType.INTEGER));
         columns.add(new ColumnInfo("PERCENT_FULL", VoltType.INTEGER));
+        columns.add(new ColumnInfo("STRING_COMPRESSED_MEMORY", VoltType.INTEGER));
+        columns.add(new ColumnInfo("STRING_UNCOMPRESSED_MEMORY", VoltType.INTEGER));
+        columns.add(new ColumnInfo("VIEW_MINMAX_MEMORY", VoltType.INTEGER));
     }
 }
@@ -43,6 +43,17 @@ public enum TableStreamType {
      * Activation clears the index and the referenced tuples.
      */
     ELASTIC_INDEX_CLEAR,
+    /*
+     * A SNAPSHOT stream that also starts tracking changes to the table, so that
+     * later SNAPSHOT_DELTA streams only need to write what changed.
+     */
+    SNAPSHOT_BASE,
+    /*
+     * The rows of the blocks changed since the previous SNAPSHOT_BASE or SNAPSHOT_DELTA,
+     * followed by the rows deleted since then for the streams that asked for deleted rows.
+     * Activation fails if the table is not tracking changes.
+     */
+    SNAPSHOT_DELTA,
     /*
      * A stream of tuple data that can be used to retrieve the latest state of a table
      * that is actively being modified. The stream starts by transporting all the tuple data
@@ -201,6 +201,41 @@ public abstract class TheHashinator {
         }
     }
 
+    /**
+     * Route a batch of integer partition values, the same as hashinating
+     * each one. Null values of any integer type must be passed as
+     * Long.MIN_VALUE.
+     * @param values      partition values
+     * @param count       number of values to route from the start of values
+     * @param partitions  receives the partition of values[i] at index i
+     */
+    public void hashinateLongs(long[] values, int count, int[] partitions) {
+        for (int ii = 0; ii < count; ii++) {
+            partitions[ii] = pHashinateLong(values[ii]);
+        }
+    }
+
+    /**
+     * Route a batch of VARBINARY partition values.
+     * @see #hashinateLongs(long[], int, int[])
+     */
+    public void hashinateBytes(byte[][] values, int count, int[] partitions) {
+        for (int ii = 0; ii < count; ii++) {
+            partitions[ii] = hashinateBytes(values[ii]);
+        }
+    }
+
+    /**
+     * Route a batch of VARCHAR partition values by their UTF-8 bytes.
+     * @see #hashinateLongs(long[], int, int[])
+     */
+    public void hashinateStrings(String[] values, int count, int[] partitions) {
+        for (int ii = 0; ii < count; ii++) {
+            partitions[ii] = values[ii] == null ? 0 :
+                hashinateBytes(values[ii].getBytes(Charsets.UTF_8));
+        }
+    }
+
     /**
      * Given an object, map it to a partition. DON'T EVER MAKE ME PUBLIC
      */
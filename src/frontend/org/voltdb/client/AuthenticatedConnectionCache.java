@@ -20,9 +20,10 @@ package org.voltdb.client;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeMap;
 
 import org.voltcore.logging.VoltLogger;
 
@@ -38,6 +39,9 @@ import com.google_voltpatches.common.collect.FluentIterable;
  *
  * If the sane M users connect to a Volt server over and over,
  * and M <= N, then this should be as fast an auth as possible.
+ * A connection nobody has used for the session TTL is closed, so
+ * credentials are checked against the server again after that.
+ * Beyond N, the least recently used idle connection goes first.
  *
  * This is probably not threadsafe yet.
  */
@@ -51,6 +55,7 @@ public class AuthenticatedConnectionCache {
     final int m_port;
     final int m_adminPort;
     final int m_targetSize; // goal size of the client cache
+    final long m_ttlMillis; // idle time before a connection is closed, 0 to keep it
 
     /**
      * Metadata about a connection.
@@ -61,6 +66,7 @@ public class AuthenticatedConnectionCache {
         String user;
         byte[] hashedPassword;
         int passHash;
+        long lastUsedMillis;
     }
 
     /**
@@ -82,14 +88,19 @@ public class AuthenticatedConnectionCache {
     }
 
 
-    // The set of active connections.
-    Map<String, Connection> m_connections = new TreeMap<String, Connection>();
+    // The set of active connections, least recently used first.
+    Map<String, Connection> m_connections = new LinkedHashMap<String, Connection>(16, 0.75f, true);
     // The optional unauthenticated clients which should only work if auth is off
     ClientImpl m_unauthClient = null;
     // The optional unauthenticated adming client which should work if auth if off
     ClientImpl m_adminUnauthClient = null;
 
     public AuthenticatedConnectionCache(int targetSize, String serverHostname, int serverPort, String adminHostName, int adminPort) {
+        this(targetSize, serverHostname, serverPort, adminHostName, adminPort, 0);
+    }
+
+    public AuthenticatedConnectionCache(int targetSize, String serverHostname, int serverPort, String adminHostName, int adminPort,
+            long ttlMillis) {
         assert(serverHostname != null);
         assert(serverPort > 0);
 
@@ -98,6 +109,7 @@ public class AuthenticatedConnectionCache {
         m_port = serverPort;
         m_adminPort = adminPort;
         m_targetSize = targetSize;
+        m_ttlMillis = ttlMillis;
     }
 
     public synchronized Client getClient(String userName, String password, byte[] hashedPassword, boolean admin) throws IOException {
@@ -155,6 +167,8 @@ public class AuthenticatedConnectionCache {
         }
 
         // AUTHENTICATED
+        final long now = System.currentTimeMillis();
+        expireIdleConnections(now);
         int passHash = 0;
         if (hashedPassword != null) {
             passHash = Arrays.hashCode(hashedPassword);
@@ -166,11 +180,13 @@ public class AuthenticatedConnectionCache {
                 throw new IOException("Incorrect authorization credentials.");
             }
             conn.refCount++;
+            conn.lastUsedMillis = now;
         }
         else {
             conn = new Connection();
             conn.refCount = 1;
             conn.passHash = passHash;
+            conn.lastUsedMillis = now;
             if (hashedPassword != null)
             {
                 conn.hashedPassword = Arrays.copyOf(hashedPassword, hashedPassword.length);
@@ -262,6 +278,8 @@ public class AuthenticatedConnectionCache {
         } else {
             conn.refCount--;
         }
+        // idle from now on, the lookup above also made it the most recently used
+        conn.lastUsedMillis = System.currentTimeMillis();
         attemptToShrinkPoolIfNeeded();
     }
 
@@ -303,21 +321,39 @@ public class AuthenticatedConnectionCache {
     }
 
     /**
-     * If the size of the pool > target size, see if any
-     * connections can be closed and removed.
+     * If the size of the pool > target size, close and remove the
+     * least recently used connections that are not in use.
      */
     private void attemptToShrinkPoolIfNeeded() {
-        while (m_connections.size() > m_targetSize) {
-            for (Entry<String, Connection> e : m_connections.entrySet()) {
-                if (e.getValue().refCount <= 0) {
-                    m_connections.remove(e.getKey());
-                    closeClient(e.getValue().client);
-                    break; // from the for to continue the while
-                }
+        Iterator<Connection> iter = m_connections.values().iterator();
+        while (m_connections.size() > m_targetSize && iter.hasNext()) {
+            Connection conn = iter.next();
+            if (conn.refCount <= 0) {
+                iter.remove();
+                closeClient(conn.client);
             }
-            // if unable to remove anything, exit here
+        }
+    }
+
+    /**
+     * Close the connections not in use that have been idle for longer than the TTL.
+     */
+    private void expireIdleConnections(long now) {
+        if (m_ttlMillis <= 0) {
             return;
         }
+        Iterator<Connection> iter = m_connections.values().iterator();
+        while (iter.hasNext()) {
+            Connection conn = iter.next();
+            if (now - conn.lastUsedMillis <= m_ttlMillis) {
+                // the rest were used more recently
+                return;
+            }
+            if (conn.refCount <= 0) {
+                iter.remove();
+                closeClient(conn.client);
+            }
+        }
     }
 
     //Used for testing today.
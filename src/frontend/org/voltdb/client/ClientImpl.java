@@ -223,7 +223,29 @@ public final class ClientImpl implements Client, ReplicaProcCaller {
         cb.setArgs(parameters);
         final ProcedureInvocation invocation
                 = new ProcedureInvocation(m_handle.getAndIncrement(), procName, parameters);
-        return callProcedure(cb, System.nanoTime(), unit.toNanos(timeout), invocation);
+        return callProcedure(cb, System.nanoTime(), unit.toNanos(timeout), invocation, -1);
+    }
+
+    /**
+     * Synchronously invoke a procedure on the connection to a specific host. For calls
+     * that use state the host keeps for this client, such as an open result cursor.
+     *
+     * @param hostId id of the host, as reported by the call that created the state.
+     * @param procName class name (not qualified by package) of the procedure to execute.
+     * @param timeout timeout for the procedure
+     * @param unit TimeUnit of procedure timeout
+     * @param parameters vararg list of procedure's parameter values.
+     * @return ClientResponse for execution.
+     * @throws org.voltdb.client.ProcCallException
+     * @throws NoConnectionsException if there is no connection to the host
+     */
+    public ClientResponse callProcedureOnHost(int hostId, String procName, long timeout, TimeUnit unit,
+            Object... parameters) throws IOException, NoConnectionsException, ProcCallException {
+        final SyncCallback cb = new SyncCallback();
+        cb.setArgs(parameters);
+        final ProcedureInvocation invocation
+                = new ProcedureInvocation(m_handle.getAndIncrement(), procName, parameters);
+        return callProcedure(cb, System.nanoTime(), unit.toNanos(timeout), invocation, hostId);
     }
 
     /**
@@ -243,10 +265,11 @@ public final class ClientImpl implements Client, ReplicaProcCaller {
             new ProcedureInvocation(originalTxnId, originalUniqueId,
                                     m_handle.getAndIncrement(),
                                     procName, parameters);
-        return callProcedure(cb, System.nanoTime(), Distributer.USE_DEFAULT_TIMEOUT, invocation);
+        return callProcedure(cb, System.nanoTime(), Distributer.USE_DEFAULT_TIMEOUT, invocation, -1);
     }
 
-    private final ClientResponse callProcedure(SyncCallback cb, long nowNanos, long timeout, ProcedureInvocation invocation)
+    private final ClientResponse callProcedure(SyncCallback cb, long nowNanos, long timeout,
+            ProcedureInvocation invocation, int hostId)
             throws IOException, NoConnectionsException, ProcCallException
     {
         if (m_isShutdown) {
@@ -258,10 +281,14 @@ public final class ClientImpl implements Client, ReplicaProcCaller {
                     " without deadlocking the client library");
         }
 
-        m_distributer.queue(
-                invocation,
-                cb,
-                true, nowNanos, timeout);
+        if (hostId < 0) {
+            m_distributer.queue(
+                    invocation,
+                    cb,
+                    true, nowNanos, timeout);
+        } else {
+            m_distributer.queueOnHost(hostId, invocation, cb, nowNanos, timeout);
+        }
 
         try {
             cb.waitForResponse();
@@ -353,12 +353,15 @@ class Distributer {
         private final NonBlockingHashMap<String, ClientStats> m_stats = new NonBlockingHashMap<String, ClientStats>();
         private Connection m_connection;
         private volatile boolean m_isConnected = true;
+        private final int m_hostId;
 
         volatile long m_lastResponseTimeNanos = System.nanoTime();
         boolean m_outstandingPing = false;
         ClientStatusListenerExt.DisconnectCause m_closeCause = DisconnectCause.CONNECTION_CLOSED;
 
-        public NodeConnection(long ids[]) {}
+        public NodeConnection(long ids[]) {
+            m_hostId = (int)ids[0];
+        }
 
         /*
          * NodeConnection uses ignoreBackpressure to get rate limiter to not
@@ -1135,6 +1138,42 @@ class Distributer {
         return !backpressure;
     }
 
+    /**
+     * Queue an invocation on the connection to a given host, ignoring backpressure.
+     * For calls that use state the host keeps for this client, such as an open
+     * result cursor.
+     */
+    void queueOnHost(
+            int hostId,
+            ProcedureInvocation invocation,
+            ProcedureCallback cb,
+            final long nowNanos, final long timeoutNanos)
+            throws NoConnectionsException {
+        assert(invocation != null);
+        assert(cb != null);
+
+        NodeConnection cxn = null;
+        synchronized (this) {
+            for (NodeConnection c : m_connections) {
+                if (c.m_hostId == hostId && c.m_isConnected) {
+                    cxn = c;
+                    break;
+                }
+            }
+        }
+        if (cxn == null) {
+            throw new NoConnectionsException("No connection to host " + hostId);
+        }
+
+        ByteBuffer buf = null;
+        try {
+            buf = serializeSPI(invocation);
+        } catch (Exception e) {
+            Throwables.propagate(e);
+        }
+        cxn.createWork(nowNanos, invocation.getHandle(), invocation.getProcName(), buf, cb, true, timeoutNanos);
+    }
+
     /**
      * Shutdown the VoltNetwork allowing the Ports to close and free resources
      * like memory pools
@@ -23,7 +23,6 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.zip.InflaterOutputStream;
 
-import org.apache.cassandra_voltpatches.MurmurHash3;
 import org.voltcore.utils.Bits;
 import org.voltcore.utils.Pair;
 import org.voltdb.ParameterConverter;
@@ -64,12 +63,7 @@ public class HashinatorLite {
     private int catalogPartitionCount;
 
     //Values for Elastic
-    /*
-     * Pointer to an array of integers containing the tokens and partitions. Even values are tokens and odd values
-     * are partition ids.
-     */
-    private long m_etokens = 0;
-    private int m_etokenCount;
+    private TokenRing m_ring = null;
 
     private final HashinatorLiteType m_type;
 
@@ -86,8 +80,9 @@ public class HashinatorLite {
 
         if (type == HashinatorLiteType.ELASTIC) {
             Pair<Long, Integer> p = (cooked ? updateCooked(configBytes) : updateRaw(configBytes));
-            m_etokens = p.getFirst();
-            m_etokenCount = p.getSecond();
+            // Routing only needs the on-heap copy
+            m_ring = new TokenRing(p.getFirst(), p.getSecond());
+            Bits.unsafe.freeMemory(p.getFirst());
         }
         else {
             catalogPartitionCount = ByteBuffer.wrap(configBytes).getInt();
@@ -98,13 +93,6 @@ public class HashinatorLite {
         this(HashinatorLiteType.LEGACY, getLegacyConfigureBytes(numPartitions), false);
     }
 
-    @Override
-    public void finalize() {
-        if (m_etokens != 0) {
-            Bits.unsafe.freeMemory(m_etokens);
-        }
-    }
-
     /**
      * Update from optimized (cooked) wire format. token-1 token-2 ... partition-1 partition-2 ... tokens are 4 bytes
      *
@@ -195,7 +183,7 @@ public class HashinatorLite {
                 return 0;
             }
 
-            return partitionForToken(MurmurHash3.hash3_x64_128(value));
+            return m_ring.partitionForLong(value);
         } else {
             // special case this hard to hash value to 0 (in both c++ and java)
             if (value == Long.MIN_VALUE) {
@@ -214,28 +202,16 @@ public class HashinatorLite {
      * Long.MAX_VALUE
      */
     public int partitionForToken(int hash) {
-        long token = getTokenPtr(hash);
-        return Bits.unsafe.getInt(token + 4);
+        return m_ring.partitionForToken(hash);
     }
 
-    /**
-     * Given an byte[] bytes, pick a partition to store the data.
-     *
-     * @param value The value to hash.
-     * @param partitionCount The number of partitions to choose from.
-     * @return A value between 0 and partitionCount-1, hopefully pretty evenly
-     * distributed.
-     */
     int hashinateBytes(byte[] bytes) {
         if (bytes == null) {
             return 0;
         }
 
         if (m_type.equals(HashinatorLiteType.ELASTIC)) {
-            ByteBuffer buf = ByteBuffer.wrap(bytes);
-            final int hash = MurmurHash3.hash3_x64_128(buf, 0, bytes.length, 0);
-            long token = getTokenPtr(hash);
-            return Bits.unsafe.getInt(token + 4);
+            return m_ring.partitionForBytes(bytes);
         } else {
             int hashCode = 0;
             int offset = 0;
@@ -246,29 +222,54 @@ public class HashinatorLite {
         }
     }
 
-    private long getTokenPtr(int hash) {
-        int min = 0;
-        int max = m_etokenCount - 1;
-
-        while (min <= max) {
-            int mid = (min + max) >>> 1;
-            final long midPtr = m_etokens + (8 * mid);
-            int midval = Bits.unsafe.getInt(midPtr);
-
-            if (midval < hash) {
-                min = mid + 1;
-            } else if (midval > hash) {
-                max = mid - 1;
-            } else {
-                return midPtr;
+    /**
+     * Route a batch of integer partition values, the same as calling
+     * {@link #getHashedPartitionForParameter} for each. Null values of any
+     * integer type must be passed as Long.MIN_VALUE.
+     * @param values      partition values
+     * @param count       number of values to route from the start of values
+     * @param partitions  receives the partition of values[i] at index i
+     */
+    public void hashinateLongs(long[] values, int count, int[] partitions) {
+        if (m_type.equals(HashinatorLiteType.ELASTIC)) {
+            m_ring.partitionsForLongs(values, count, partitions);
+        } else {
+            for (int ii = 0; ii < count; ii++) {
+                partitions[ii] = hashinateLong(values[ii]);
             }
         }
-        return m_etokens + (min - 1) * 8;
     }
 
     /**
-     * Given an object, map it to a partition. DON'T EVER MAKE ME PUBLIC
+     * Route a batch of VARBINARY partition values.
+     * @see #hashinateLongs(long[], int, int[])
      */
+    public void hashinateBytes(byte[][] values, int count, int[] partitions) {
+        if (m_type.equals(HashinatorLiteType.ELASTIC)) {
+            m_ring.partitionsForBytes(values, count, partitions);
+        } else {
+            for (int ii = 0; ii < count; ii++) {
+                partitions[ii] = hashinateBytes(values[ii]);
+            }
+        }
+    }
+
+    /**
+     * Route a batch of VARCHAR partition values. Numeric partition columns
+     * given as strings still need {@link #getHashedPartitionForParameter}.
+     * @see #hashinateLongs(long[], int, int[])
+     */
+    public void hashinateStrings(String[] values, int count, int[] partitions) {
+        if (m_type.equals(HashinatorLiteType.ELASTIC)) {
+            m_ring.partitionsForStrings(values, count, partitions);
+        } else {
+            for (int ii = 0; ii < count; ii++) {
+                partitions[ii] = values[ii] == null ? 0 :
+                    hashinateBytes(values[ii].getBytes(Constants.UTF8ENCODING));
+            }
+        }
+    }
+
     int hashToPartition(VoltType type, Object obj) {
         if (m_type.equals(HashinatorLiteType.ELASTIC)) {
             return hashinateBytes(valueToBytes(obj));
@@ -0,0 +1,170 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import org.apache.cassandra_voltpatches.MurmurHash3;
+import org.voltcore.utils.Bits;
+import org.voltdb.common.Constants;
+
+/**
+ * On-heap copy of an elastic hash ring, laid out for routing many values
+ * per call.
+ *
+ * Tokens and partitions sit in two flat int arrays instead of interleaved
+ * off heap, and the token search is a fixed number of halving steps whose
+ * only data dependent choice is a conditional move, so there is no
+ * mispredicted branch per lookup and the first steps stay hot in cache
+ * across a batch. ASCII strings are copied into a per thread scratch
+ * buffer rather than encoded into a new array per key.
+ *
+ * Shared by {@link HashinatorLite} on the client and ElasticHashinator on
+ * the server so both route identically.
+ */
+public final class TokenRing {
+    private final int[] m_tokens;
+    private final int[] m_partitions;
+
+    /** Per thread buffer for encoding string keys */
+    private static final ThreadLocal<byte[][]> m_scratch = new ThreadLocal<byte[][]>() {
+        @Override
+        protected byte[][] initialValue() {
+            return new byte[][] { new byte[256] };
+        }
+    };
+
+    /**
+     * Copy the ring from its off-heap form, tokenCount pairs of a 4 byte
+     * token and a 4 byte partition id sorted by token.
+     */
+    public TokenRing(long tokens, int tokenCount) {
+        m_tokens = new int[tokenCount];
+        m_partitions = new int[tokenCount];
+        for (int ii = 0; ii < tokenCount; ii++) {
+            final long ptr = tokens + (ii * 8);
+            m_tokens[ii] = Bits.unsafe.getInt(ptr);
+            m_partitions[ii] = Bits.unsafe.getInt(ptr + 4);
+        }
+    }
+
+    /**
+     * Index of the last token <= hash. A hash below the first token wraps
+     * around to the last token on the ring.
+     */
+    private int tokenIndex(int hash) {
+        final int[] tokens = m_tokens;
+        int base = 0;
+        int n = tokens.length;
+        while (n > 1) {
+            final int half = n >>> 1;
+            base = tokens[base + half] <= hash ? base + half : base;
+            n -= half;
+        }
+        return tokens[base] <= hash ? base : tokens.length - 1;
+    }
+
+    public int partitionForToken(int hash) {
+        return m_partitions[tokenIndex(hash)];
+    }
+
+    public int partitionForLong(long value) {
+        // Long.MIN_VALUE is null and always goes to partition 0
+        if (value == Long.MIN_VALUE) {
+            return 0;
+        }
+        return m_partitions[tokenIndex(MurmurHash3.hash3_x64_128(value, 0))];
+    }
+
+    public int partitionForBytes(byte[] value) {
+        if (value == null) {
+            return 0;
+        }
+        return m_partitions[tokenIndex(MurmurHash3.hash3_x64_128(value, 0, value.length, 0))];
+    }
+
+    /**
+     * Route count integer keys. Null values of any integer type must be
+     * passed as Long.MIN_VALUE.
+     * @param values      keys
+     * @param count       number of keys to route from the start of values
+     * @param partitions  receives the partition of values[i] at index i
+     */
+    public void partitionsForLongs(long[] values, int count, int[] partitions) {
+        for (int ii = 0; ii < count; ii++) {
+            partitions[ii] = partitionForLong(values[ii]);
+        }
+    }
+
+    /**
+     * Route count VARBINARY keys, null keys go to partition 0.
+     */
+    public void partitionsForBytes(byte[][] values, int count, int[] partitions) {
+        for (int ii = 0; ii < count; ii++) {
+            partitions[ii] = partitionForBytes(values[ii]);
+        }
+    }
+
+    /**
+     * Route count VARCHAR keys by their UTF-8 bytes, null keys go to
+     * partition 0.
+     */
+    public void partitionsForStrings(String[] values, int count, int[] partitions) {
+        final byte[][] scratch = m_scratch.get();
+        for (int ii = 0; ii < count; ii++) {
+            final String value = values[ii];
+            if (value == null) {
+                partitions[ii] = 0;
+                continue;
+            }
+            final int length = encodeAscii(scratch, value);
+            final int hash;
+            if (length >= 0) {
+                hash = MurmurHash3.hash3_x64_128(scratch[0], 0, length, 0);
+            } else {
+                final byte[] bytes = value.getBytes(Constants.UTF8ENCODING);
+                hash = MurmurHash3.hash3_x64_128(bytes, 0, bytes.length, 0);
+            }
+            partitions[ii] = m_partitions[tokenIndex(hash)];
+        }
+    }
+
+    /**
+     * Copy an all ASCII string into the scratch buffer, where its UTF-8
+     * bytes are the chars themselves, growing the buffer as needed.
+     * @return the number of bytes, or -1 if the string is not all ASCII
+     * and has to go through the full encoder
+     */
+    private static int encodeAscii(byte[][] scratch, String value) {
+        final int length = value.length();
+        if (scratch[0].length < length) {
+            scratch[0] = new byte[Math.max(length, scratch[0].length * 2)];
+        }
+        final byte[] bytes = scratch[0];
+        for (int ii = 0; ii < length; ii++) {
+            final char c = value.charAt(ii);
+            if (c >= 0x80) {
+                return -1;
+            }
+            bytes[ii] = (byte)c;
+        }
+        return length;
+    }
+
+    public int getTokenCount() {
+        return m_tokens.length;
+    }
+}
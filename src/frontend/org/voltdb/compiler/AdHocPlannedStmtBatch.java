@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.json_voltpatches.JSONArray;
 import org.json_voltpatches.JSONException;
@@ -34,6 +35,7 @@ import org.voltdb.VoltTypeException;
 import org.voltdb.catalog.Database;
 import org.voltdb.common.Constants;
 import org.voltdb.compiler.AsyncCompilerWork.AsyncCompilerWorkCompletionHandler;
+import org.voltdb.planner.BinaryPlanReader;
 import org.voltdb.planner.CorePlan;
 import org.voltdb.plannodes.PlanNodeTree;
 import org.voltdb.plannodes.SendPlanNode;
@@ -354,24 +356,26 @@ public class AdHocPlannedStmtBatch extends AsyncCompilerResult implements Clonea
     public String explainStatement(int i, Database db) {
         String str = "";
         AdHocPlannedStatement plannedStatement = plannedStatements.get(i);
-        String aggplan = new String(plannedStatement.core.aggregatorFragment, Constants.UTF8ENCODING);
         PlanNodeTree pnt = new PlanNodeTree();
         try {
-            JSONObject jobj = new JSONObject( aggplan );
+            JSONObject jobj = BinaryPlanReader.toJSONObject(plannedStatement.core.aggregatorFragment);
             JSONArray jarray =  jobj.getJSONArray(PlanNodeTree.Members.PLAN_NODES.name());
             pnt.loadFromJSONArray(jarray, db);
 
             if( plannedStatement.core.collectorFragment != null ) {
                 //multi-partition query plan
-                String collplan = new String(plannedStatement.core.collectorFragment, Constants.UTF8ENCODING);
                 PlanNodeTree collpnt = new PlanNodeTree();
                 //reattach plan fragments
-                jobj = new JSONObject( collplan );
+                jobj = BinaryPlanReader.toJSONObject(plannedStatement.core.collectorFragment);
                 jarray =  jobj.getJSONArray(PlanNodeTree.Members.PLAN_NODES.name());
                 collpnt.loadFromJSONArray(jarray, db);
                 assert( collpnt.getRootPlanNode() instanceof SendPlanNode);
                 pnt.getRootPlanNode().reattachFragment( (SendPlanNode) collpnt.getRootPlanNode() );
             }
+            Map<Integer, Long> estimates = plannedStatement.core.getEstimatedOutputTupleCounts();
+            if (estimates != null) {
+                pnt.getRootPlanNode().explainEstimatedOutputTupleCounts(estimates);
+            }
             str = pnt.getRootPlanNode().toExplainPlanString();
         } catch (JSONException e) {
             System.out.println(e.getMessage());
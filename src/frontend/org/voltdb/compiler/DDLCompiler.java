@@ -35,6 +35,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.regex.Matcher;
 
 import org.apache.commons.lang3.StringUtils;
@@ -56,6 +57,7 @@ import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Group;
 import org.voltdb.catalog.Index;
 import org.voltdb.catalog.MaterializedViewInfo;
+import org.voltdb.catalog.MaterializedViewJoin;
 import org.voltdb.catalog.Statement;
 import org.voltdb.catalog.Table;
 import org.voltdb.common.Constants;
@@ -99,6 +101,8 @@ public class DDLCompiler {
     static final int MAX_COLUMNS = 1024; // KEEP THIS < MAX_PARAM_COUNT to enable default CRUD update.
     static final int MAX_ROW_SIZE = 1024 * 1024 * 2;
     static final int MAX_BYTES_PER_UTF8_CHARACTER = 4;
+    // Matches the EE threshold at which variable length values move out of line
+    static final int UNINLINEABLE_OBJECT_LENGTH = 64;
 
     static final String TABLE = "TABLE";
     static final String PROCEDURE = "PROCEDURE";
@@ -107,6 +111,7 @@ public class DDLCompiler {
     static final String EXPORT = "EXPORT";
     static final String ROLE = "ROLE";
     static final String DR = "DR";
+    static final String COMPRESS = "COMPRESS";
 
     HSQLInterface m_hsql;
     VoltCompiler m_compiler;
@@ -277,6 +282,22 @@ public class DDLCompiler {
             m_compiler.addWarn(String.format("Partition column %s was dropped from table %s.  Attempting to change table to replicated.", partitionCol, tableElement.attributes.get("name")));
             tableElement.attributes.remove("partitioncolumn");
         }
+        // likewise forget any compression setting for a removed column
+        String compressedCols = tableElement.attributes.get("compressedcolumns");
+        if (compressedCols != null) {
+            List<String> remaining = new ArrayList<String>();
+            for (String col : compressedCols.split(",")) {
+                if ( ! removedColumns.contains(col)) {
+                    remaining.add(col);
+                }
+            }
+            if (remaining.isEmpty()) {
+                tableElement.attributes.remove("compressedcolumns");
+            }
+            else {
+                tableElement.attributes.put("compressedcolumns", StringUtils.join(remaining, ","));
+            }
+        }
     }
 
     /**
@@ -404,7 +425,7 @@ public class DDLCompiler {
             return false;
         }
 
-        // either PROCEDURE, REPLICATE, PARTITION, ROLE, EXPORT or DR
+        // either PROCEDURE, REPLICATE, PARTITION, ROLE, EXPORT, DR or COMPRESS
         String commandPrefix = statementMatcher.group(1).toUpperCase();
 
         // matches if it is CREATE PROCEDURE [ALLOW <role> ...] [PARTITION ON ...] FROM CLASS <class-name>;
@@ -801,6 +822,43 @@ public class DDLCompiler {
             return true;
         }
 
+        // matches if it is COMPRESS TABLE <table-name> COLUMN <column-name> [DISABLE]
+        // group 1 -- table name
+        // group 2 -- column name
+        // group 3 -- NULL: compress the column
+        //            NOT NULL: stop compressing the column
+        statementMatcher = SQLParser.matchCompressTable(statement);
+        if (statementMatcher.matches()) {
+            String tableName = checkIdentifierStart(statementMatcher.group(1), statement);
+            String columnName = checkIdentifierStart(statementMatcher.group(2), statement).toUpperCase();
+
+            VoltXMLElement tableXML = m_schema.findChild("table", tableName.toUpperCase());
+            if (tableXML == null) {
+                throw m_compiler.new VoltCompilerException(String.format(
+                        "Invalid COMPRESS statement: table %s was not present in the catalog.",
+                        tableName));
+            }
+            // The column itself is validated when the catalog table is built.
+            Set<String> columns = new TreeSet<String>();
+            String compressedCols = tableXML.attributes.get("compressedcolumns");
+            if (compressedCols != null) {
+                columns.addAll(Arrays.asList(compressedCols.split(",")));
+            }
+            if (statementMatcher.group(3) != null) {
+                columns.remove(columnName);
+            }
+            else {
+                columns.add(columnName);
+            }
+            if (columns.isEmpty()) {
+                tableXML.attributes.remove("compressedcolumns");
+            }
+            else {
+                tableXML.attributes.put("compressedcolumns", StringUtils.join(columns, ","));
+            }
+            return true;
+        }
+
         /*
          * if no correct syntax regex matched above then at this juncture
          * the statement is syntax incorrect
@@ -852,6 +910,13 @@ public class DDLCompiler {
                     statement.substring(0,statement.length()-1))); // remove trailing semicolon
         }
 
+        if (COMPRESS.equals(commandPrefix)) {
+            throw m_compiler.new VoltCompilerException(String.format(
+                    "Invalid COMPRESS TABLE statement: \"%s\", " +
+                    "expected syntax: COMPRESS TABLE <table> COLUMN <column> [DISABLE]",
+                    statement.substring(0,statement.length()-1))); // remove trailing semicolon
+        }
+
         // Not a VoltDB-specific DDL statement.
         return false;
     }
@@ -1360,6 +1425,13 @@ public class DDLCompiler {
             }
         }
 
+        String compressedCols = node.attributes.get("compressedcolumns");
+        if (compressedCols != null) {
+            for (String colName : compressedCols.split(",")) {
+                markColumnCompressed(table, colName);
+            }
+        }
+
         table.setSignature(CatalogUtil.getSignatureForTable(name, columnTypes));
 
         /*
@@ -1536,6 +1608,36 @@ public class DDLCompiler {
         columnMap.put(name, column);
     }
 
+    /**
+     * Flag a column named by a COMPRESS TABLE statement. Only variable length
+     * columns wide enough to be stored out of line can be compressed.
+     */
+    private void markColumnCompressed(Table table, String colName) throws VoltCompilerException {
+        Column column = columnMap.get(colName);
+        if (column == null) {
+            throw m_compiler.new VoltCompilerException(String.format(
+                    "Invalid COMPRESS statement: column %s was not present in table %s.",
+                    colName, table.getTypeName()));
+        }
+        VoltType type = VoltType.get((byte)column.getType());
+        if (type != VoltType.STRING && type != VoltType.VARBINARY) {
+            throw m_compiler.new VoltCompilerException(String.format(
+                    "Invalid COMPRESS statement: column %s.%s is of type %s, " +
+                    "only VARCHAR and VARBINARY columns can be compressed.",
+                    table.getTypeName(), colName, type.toSQLString()));
+        }
+        int capacity = column.getSize();
+        if (type == VoltType.STRING && ! column.getInbytes()) {
+            capacity *= MAX_BYTES_PER_UTF8_CHARACTER;
+        }
+        if (capacity < UNINLINEABLE_OBJECT_LENGTH) {
+            throw m_compiler.new VoltCompilerException(String.format(
+                    "Invalid COMPRESS statement: column %s.%s is stored inline in the tuple " +
+                    "and cannot be compressed.", table.getTypeName(), colName));
+        }
+        column.setCompressed(true);
+    }
+
     /**
      * Return true if the two indexes are identical with a different name.
      */
@@ -1708,7 +1810,12 @@ public class DDLCompiler {
         // set the type of the index based on the index name and column types
         // Currently, only int types can use hash or array indexes
         String indexNameNoCase = name.toLowerCase();
-        if (indexNameNoCase.contains("tree"))
+        if (indexNameNoCase.contains("btree"))
+        {
+            index.setType(IndexType.BTREE.getValue());
+            index.setCountable(true);
+        }
+        else if (indexNameNoCase.contains("tree"))
         {
             index.setType(IndexType.BALANCED_TREE.getValue());
             index.setCountable(true);
@@ -1947,7 +2054,9 @@ public class DDLCompiler {
         if (catalog_index != null) {
             // if the constraint name contains index type hints, exercise them (giant hack)
             String constraintNameNoCase = name.toLowerCase();
-            if (constraintNameNoCase.contains("tree"))
+            if (constraintNameNoCase.contains("btree"))
+                catalog_index.setType(IndexType.BTREE.getValue());
+            else if (constraintNameNoCase.contains("tree"))
                 catalog_index.setType(IndexType.BALANCED_TREE.getValue());
             if (constraintNameNoCase.contains("hash"))
                 catalog_index.setType(IndexType.HASH_TABLE.getValue());
@@ -2011,17 +2120,33 @@ public class DDLCompiler {
                 }
             }
 
-            // create the materializedviewinfo catalog node for the source table
-            Table srcTable = stmt.m_tableList.get(0);
-            if (viewTableNames.contains(srcTable.getTypeName())) {
-                String msg = String.format("A materialized view (%s) can not be defined on another view (%s).",
-                        viewName, srcTable.getTypeName());
-                throw m_compiler.new VoltCompilerException(msg);
+            for (Table table : stmt.m_tableList) {
+                if (viewTableNames.contains(table.getTypeName())) {
+                    String msg = String.format("A materialized view (%s) can not be defined on another view (%s).",
+                            viewName, table.getTypeName());
+                    throw m_compiler.new VoltCompilerException(msg);
+                }
             }
 
+            // create the materializedviewinfo catalog node for the source table
+            Table srcTable = findViewSourceTable(viewName, stmt);
             MaterializedViewInfo matviewinfo = srcTable.getViews().add(viewName);
             matviewinfo.setDest(destTable);
-            AbstractExpression where = stmt.getSingleTableFilterExpression();
+
+            // A view with joins is maintained from rows of the source table joined with
+            // the rows of the other tables, so its expressions refer to columns of that
+            // joined row: the source table's columns followed by each joined table's.
+            boolean hasJoins = stmt.m_tableList.size() > 1;
+            Map<String, Integer> joinedRowOffsets = null;
+            AbstractExpression where;
+            if (hasJoins) {
+                joinedRowOffsets = new HashMap<String, Integer>();
+                where = toJoinedRowExpression(
+                        processMaterializedViewJoins(viewName, stmt, srcTable, matviewinfo, joinedRowOffsets),
+                        joinedRowOffsets);
+            } else {
+                where = stmt.getSingleTableFilterExpression();
+            }
             if (where != null) {
                 String hex = Encoder.hexEncode(where.toJSONString());
                 matviewinfo.setPredicate(hex);
@@ -2034,10 +2159,11 @@ public class DDLCompiler {
             List<Column> destColumnArray = CatalogUtil.getSortedCatalogItems(destTable.getColumns(), "index");
             List<AbstractExpression> groupbyExprs = null;
 
-            if (stmt.hasComplexGroupby()) {
+            if (hasJoins || stmt.hasComplexGroupby()) {
                 groupbyExprs = new ArrayList<AbstractExpression>();
                 for (ParsedColInfo col: stmt.m_groupByColumns) {
-                    groupbyExprs.add(col.expression);
+                    groupbyExprs.add(hasJoins ? toJoinedRowExpression(col.expression, joinedRowOffsets)
+                                              : col.expression);
                 }
                 // Parse group by expressions to json string
                 String groupbyExprsJson = null;
@@ -2097,7 +2223,7 @@ public class DDLCompiler {
 
             // prepare info for aggregation columns.
             List<AbstractExpression> aggregationExprs = new ArrayList<AbstractExpression>();
-            boolean hasAggregationExprs = false;
+            boolean hasAggregationExprs = hasJoins;
             boolean hasMinOrMaxAgg = false;
             ArrayList<AbstractExpression> minMaxAggs = new ArrayList<AbstractExpression>();
             for (int i = stmt.m_groupByColumns.size() + 1; i < stmt.m_displayColumns.size(); i++) {
@@ -2106,6 +2232,9 @@ public class DDLCompiler {
                 if (aggExpr.getExpressionType() != ExpressionType.VALUE_TUPLE) {
                     hasAggregationExprs = true;
                 }
+                if (hasJoins) {
+                    aggExpr = toJoinedRowExpression(aggExpr, joinedRowOffsets);
+                }
                 aggregationExprs.add(aggExpr);
                 if (col.expression.getExpressionType() ==  ExpressionType.AGGREGATE_MIN ||
                         col.expression.getExpressionType() == ExpressionType.AGGREGATE_MAX) {
@@ -2126,7 +2255,11 @@ public class DDLCompiler {
                 matviewinfo.setAggregationexpressionsjson(aggregationExprsJson);
             }
 
-            if (hasMinOrMaxAgg) {
+            if (hasMinOrMaxAgg && hasJoins) {
+                // The EE keeps the MIN and MAX values of each group of a view with joins,
+                // since the rows of a group are not those of any one index.
+                matviewinfo.setIndexforminmax("");
+            } else if (hasMinOrMaxAgg) {
                 // TODO: deal with minMaxAggs, i.e. if only one min/max agg, try to find the index
                 // with group by cols followed by this agg col; if multiple min/max aggs, decide
                 // what to do (probably the index on group by cols is the best choice)
@@ -2150,7 +2283,8 @@ public class DDLCompiler {
 
                 AbstractExpression colExpr = col.expression.getLeft();
                 TupleValueExpression tve = null;
-                if (colExpr.getExpressionType() == ExpressionType.VALUE_TUPLE) {
+                if (colExpr.getExpressionType() == ExpressionType.VALUE_TUPLE &&
+                        ((TupleValueExpression)colExpr).getTableName().equalsIgnoreCase(srcTable.getTypeName())) {
                     tve = (TupleValueExpression)colExpr;
                 }
                 processMaterializedViewColumn(matviewinfo, srcTable, destColumn,
@@ -2163,6 +2297,215 @@ public class DDLCompiler {
         }
     }
 
+    /**
+     * The table whose changes a materialized view is defined on: its only table,
+     * or, when it joins several, the partitioned one. A view may join at most one
+     * partitioned table, since the rows it joins with must be found in the same
+     * partition. A view of replicated tables only is defined on the first of them.
+     */
+    private Table findViewSourceTable(String viewName, ParsedSelectStmt stmt) throws VoltCompilerException {
+        Table srcTable = null;
+        for (Table table : stmt.m_tableList) {
+            // The tables are partitioned in the catalog only after the views are processed,
+            // so look for a PARTITION statement, or a partition from the project file.
+            VoltXMLElement tableXML = m_schema.findChild("table", table.getTypeName().toUpperCase());
+            if ((tableXML == null || tableXML.attributes.get("partitioncolumn") == null) &&
+                    m_tracker.m_partitionMap.get(table.getTypeName().toLowerCase()) == null) {
+                continue;
+            }
+            if (srcTable != null) {
+                String msg = "Materialized view \"" + viewName + "\" joins the partitioned tables " +
+                        srcTable.getTypeName() + " and " + table.getTypeName() + ". " +
+                        "Only one of the tables of a materialized view may be partitioned.";
+                throw m_compiler.new VoltCompilerException(msg);
+            }
+            srcTable = table;
+        }
+        return (srcTable == null) ? stmt.m_tableList.get(0) : srcTable;
+    }
+
+    /**
+     * Describe how the EE joins a row of the source table of a materialized view with
+     * the other tables, and how it finds the source rows that join a changed row of
+     * one of those tables, so that the view is maintained from either side without a
+     * scan. Each joined table must be equated with the source table on all of the
+     * columns of one of its unique indexes, so a source row joins at most one of its
+     * rows, and the source table must have an index leading with the columns it is
+     * joined on.
+     *
+     * @param joinedRowOffsets filled with the offset of each table's columns in a
+     * joined row, by table name
+     * @return the view's filter, less the equalities that join the tables
+     */
+    private AbstractExpression processMaterializedViewJoins(String viewName, ParsedSelectStmt stmt,
+            Table srcTable, MaterializedViewInfo matviewinfo, Map<String, Integer> joinedRowOffsets)
+            throws VoltCompilerException
+    {
+        String msg = "Materialized view \"" + viewName + "\" ";
+        String srcName = srcTable.getTypeName();
+        List<AbstractExpression> filters =
+                new ArrayList<AbstractExpression>(ExpressionUtil.uncombineAny(stmt.m_joinTree.getAllInnerJoinFilters()));
+
+        joinedRowOffsets.put(srcName, 0);
+        int position = srcTable.getColumns().size();
+        for (Table table : stmt.m_tableList) {
+            String tableName = table.getTypeName();
+            if (table == srcTable) {
+                continue;
+            }
+
+            // The columns of this table that are equal to a column of the source table.
+            Map<String, TupleValueExpression> equatedSrcColumns = new HashMap<String, TupleValueExpression>();
+            Map<String, AbstractExpression> equalities = new HashMap<String, AbstractExpression>();
+            for (AbstractExpression filter : filters) {
+                if (filter.getExpressionType() != ExpressionType.COMPARE_EQUAL ||
+                        ! (filter.getLeft() instanceof TupleValueExpression) ||
+                        ! (filter.getRight() instanceof TupleValueExpression)) {
+                    continue;
+                }
+                TupleValueExpression left = (TupleValueExpression) filter.getLeft();
+                TupleValueExpression right = (TupleValueExpression) filter.getRight();
+                if (left.getTableName().equals(tableName) && right.getTableName().equals(srcName)) {
+                    TupleValueExpression swap = left;
+                    left = right;
+                    right = swap;
+                }
+                if ( ! left.getTableName().equals(srcName) || ! right.getTableName().equals(tableName) ||
+                        equatedSrcColumns.containsKey(right.getColumnName())) {
+                    continue;
+                }
+                equatedSrcColumns.put(right.getColumnName(), left);
+                equalities.put(right.getColumnName(), filter);
+            }
+
+            // The unique index of the table on the fewest of those columns.
+            Index joinIndex = null;
+            List<ColumnRef> joinColumns = null;
+            for (Index index : table.getIndexes()) {
+                if ( ! (index.getUnique() || index.getAssumeunique()) ||
+                        ! index.getExpressionsjson().isEmpty() || ! index.getPredicatejson().isEmpty()) {
+                    continue;
+                }
+                List<ColumnRef> indexedColRefs = CatalogUtil.getSortedCatalogItems(index.getColumns(), "index");
+                if (joinColumns != null && joinColumns.size() <= indexedColRefs.size()) {
+                    continue;
+                }
+                boolean covered = true;
+                for (ColumnRef colRef : indexedColRefs) {
+                    if ( ! equatedSrcColumns.containsKey(colRef.getColumn().getTypeName())) {
+                        covered = false;
+                        break;
+                    }
+                }
+                if (covered) {
+                    joinIndex = index;
+                    joinColumns = indexedColRefs;
+                }
+            }
+            if (joinIndex == null) {
+                msg += "joins table " + tableName + " other than on all of the columns of one of its " +
+                        "UNIQUE or PRIMARY KEY indexes. Each table joined with " + srcName +
+                        " must be joined by equality on the columns of such an index.";
+                throw m_compiler.new VoltCompilerException(msg);
+            }
+
+            MaterializedViewJoin join = matviewinfo.getJoins().add(tableName);
+            join.setTable(table);
+            join.setIndex(joinIndex.getTypeName());
+            join.setPosition(position);
+            Set<String> srcColumnNames = new TreeSet<String>();
+            for (int i = 0; i < joinColumns.size(); i++) {
+                Column joinedColumn = joinColumns.get(i).getColumn();
+                Column srcColumn = srcTable.getColumns().getIgnoreCase(
+                        equatedSrcColumns.get(joinedColumn.getTypeName()).getColumnName());
+                // The key of each table's index is built from the other table's value.
+                if (srcColumn.getType() != joinedColumn.getType() ||
+                        srcColumn.getSize() != joinedColumn.getSize() ||
+                        srcColumn.getInbytes() != joinedColumn.getInbytes()) {
+                    msg += "joins " + srcName + "." + srcColumn.getTypeName() + " with " +
+                            tableName + "." + joinedColumn.getTypeName() + ", which has a different type " +
+                            "or size. Joined columns must have the same type and size.";
+                    throw m_compiler.new VoltCompilerException(msg);
+                }
+                ColumnRef cref = join.getSourcecolumns().add(String.valueOf(i));
+                cref.setColumn(srcColumn);
+                cref.setIndex(i);
+                srcColumnNames.add(srcColumn.getTypeName());
+                filters.remove(equalities.get(joinedColumn.getTypeName()));
+            }
+
+            Index sourceIndex = findMatviewJoinSourceIndex(srcTable, srcColumnNames);
+            if (sourceIndex == null) {
+                msg += "requires an index on " + srcName + " whose leading columns are " +
+                        StringUtils.join(srcColumnNames, ", ") + ", to find the rows of " + srcName +
+                        " that join a changed row of " + tableName + ".";
+                throw m_compiler.new VoltCompilerException(msg);
+            }
+            join.setSourceindex(sourceIndex.getTypeName());
+
+            joinedRowOffsets.put(tableName, position);
+            position += table.getColumns().size();
+        }
+        return ExpressionUtil.combine(filters);
+    }
+
+    /**
+     * Find an index on the columns of the source table of a view with joins that
+     * join it with another table, in any order, possibly followed by others.
+     * An index on exactly those columns is preferred.
+     */
+    private static Index findMatviewJoinSourceIndex(Table srcTable, Set<String> joinColumnNames) {
+        Index found = null;
+        for (Index index : srcTable.getIndexes()) {
+            if ( ! index.getExpressionsjson().isEmpty() || ! index.getPredicatejson().isEmpty()) {
+                continue;
+            }
+            List<ColumnRef> indexedColRefs = CatalogUtil.getSortedCatalogItems(index.getColumns(), "index");
+            if (indexedColRefs.size() < joinColumnNames.size()) {
+                continue;
+            }
+            // Only an ordered index can be scanned for a prefix of its key.
+            if (indexedColRefs.size() > joinColumnNames.size() &&
+                    index.getType() == IndexType.HASH_TABLE.getValue()) {
+                continue;
+            }
+            Set<String> leadingColumnNames = new HashSet<String>();
+            for (int i = 0; i < joinColumnNames.size(); i++) {
+                leadingColumnNames.add(indexedColRefs.get(i).getColumn().getTypeName());
+            }
+            if ( ! leadingColumnNames.equals(joinColumnNames)) {
+                continue;
+            }
+            if (indexedColRefs.size() == joinColumnNames.size()) {
+                return index;
+            }
+            if (found == null || CatalogUtil.getSortedCatalogItems(found.getColumns(), "index").size() >
+                    indexedColRefs.size()) {
+                found = index;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * A copy of a view's expression on the row of a table that refers to the same
+     * columns of the joined row the EE maintains the view from.
+     */
+    private static AbstractExpression toJoinedRowExpression(AbstractExpression expr,
+            Map<String, Integer> joinedRowOffsets) {
+        if (expr == null) {
+            return null;
+        }
+        AbstractExpression joinedRowExpr = (AbstractExpression) expr.clone();
+        for (AbstractExpression subExpr :
+                joinedRowExpr.findAllSubexpressionsOfClass(TupleValueExpression.class)) {
+            TupleValueExpression tve = (TupleValueExpression) subExpr;
+            tve.setColumnIndex(joinedRowOffsets.get(tve.getTableName()) + tve.getColumnIndex());
+            tve.setTableIndex(0);
+        }
+        return joinedRowExpr;
+    }
+
     // if the materialized view has MIN / MAX, try to find an index defined on the source table
     // covering all group by cols / exprs to avoid expensive tablescan.
     // For now, the only acceptable index is defined exactly on the group by columns IN ORDER.
@@ -2320,10 +2663,19 @@ public class DDLCompiler {
             throw m_compiler.new VoltCompilerException(msg);
         }
 
-        if (stmt.m_tableList.size() != 1) {
-            msg += "has " + String.valueOf(stmt.m_tableList.size()) + " sources. " +
-            "Only one source table is allowed.";
-            throw m_compiler.new VoltCompilerException(msg);
+        if (stmt.m_tableAliasMap.size() > 1) {
+            if (stmt.m_joinTree.hasOuterJoin()) {
+                msg += "with an OUTER JOIN is not supported.";
+                throw m_compiler.new VoltCompilerException(msg);
+            }
+            // The table list has each table once, however many times it is joined.
+            Set<String> tableNames = new HashSet<String>();
+            for (StmtTableScan tableScan : stmt.m_tableAliasMap.values()) {
+                if ( ! tableNames.add(tableScan.getTableName())) {
+                    msg += "joins the table " + tableScan.getTableName() + " with itself, which is not supported.";
+                    throw m_compiler.new VoltCompilerException(msg);
+                }
+            }
         }
 
         if (stmt.orderByColumns().size() != 0) {
@@ -2379,7 +2731,8 @@ public class DDLCompiler {
         }
 
         // Check unsupported SQL functions like: NOW, CURRENT_TIMESTAMP
-        AbstractExpression where = stmt.getSingleTableFilterExpression();
+        AbstractExpression where = (stmt.m_tableList.size() > 1) ? stmt.m_joinTree.getAllInnerJoinFilters()
+                                                                 : stmt.getSingleTableFilterExpression();
         checkExpressions.add(where);
 
         for (AbstractExpression expr: checkExpressions) {
@@ -22,18 +22,118 @@ import java.util.HashMap;
 
 public class DatabaseEstimates {
 
+    /**
+     * Key statistics of one index gathered from a running database,
+     * per partition.
+     */
+    public static class IndexEstimates {
+        public final long entryCount;
+        public final long distinctKeys;
+        public final long leadingDistinctKeys;
+        /** Boundaries of equal-height buckets over the leading key column, or null. */
+        public final double[] histogram;
+
+        public IndexEstimates(long entryCount, long distinctKeys, long leadingDistinctKeys,
+                              double[] histogram) {
+            this.entryCount = entryCount;
+            this.distinctKeys = Math.max(1, distinctKeys);
+            this.leadingDistinctKeys = Math.max(1, Math.min(leadingDistinctKeys, this.distinctKeys));
+            this.histogram = (histogram != null && histogram.length > 1) ? histogram : null;
+        }
+
+        /**
+         * Estimate the fraction of entries that match an equality filter on
+         * the first keyWidth columns of an index with keyCount columns.
+         * Only the selectivity of the leading column and of the full key are
+         * known, so prefixes in between are interpolated geometrically.
+         */
+        public double equalitySelectivity(int keyWidth, int keyCount) {
+            double full = 1.0 / distinctKeys;
+            if (keyWidth >= keyCount) {
+                return full;
+            }
+            double leading = 1.0 / leadingDistinctKeys;
+            if (keyWidth <= 1) {
+                return leading;
+            }
+            double weight = (keyWidth - 1) / (double) (keyCount - 1);
+            return leading * Math.pow(full / leading, weight);
+        }
+
+        /**
+         * Estimate the fraction of entries whose leading key value falls
+         * between lower and upper, either of which may be null for an open
+         * end, or return -1 if there is no histogram to tell.
+         */
+        public double rangeSelectivity(Double lower, Double upper) {
+            if (histogram == null) {
+                return -1;
+            }
+            double from = (lower == null) ? 0.0 : fractionBelow(lower);
+            double to = (upper == null) ? 1.0 : fractionBelow(upper);
+            return Math.max(0.0, to - from);
+        }
+
+        private double fractionBelow(double value) {
+            int buckets = histogram.length - 1;
+            double covered = 0.0;
+            for (int i = 0; i < buckets; ++i) {
+                double lo = histogram[i];
+                double hi = histogram[i + 1];
+                if (value >= hi) {
+                    covered += 1.0;
+                }
+                else {
+                    if (value > lo) {
+                        covered += (value - lo) / (hi - lo);
+                    }
+                    break;
+                }
+            }
+            return covered / buckets;
+        }
+    }
+
     public static class TableEstimates {
         public long maxTuples = 1000000;
         public long minTuples = 100000;
         public ArrayList<ScalarValueHints> valueHints = new ArrayList<ScalarValueHints>();
+        /** Index estimates by index name, for tables with statistics. */
+        public HashMap<String, IndexEstimates> indexEstimates = new HashMap<String, IndexEstimates>();
+
+        /**
+         * @return the statistics of the named index, or null if the
+         * heuristic estimates should be used instead.
+         */
+        public IndexEstimates getIndexEstimates(String indexName) {
+            return indexEstimates.get(indexName);
+        }
     }
 
     HashMap<String, TableEstimates> tables = new HashMap<String, TableEstimates>();
 
+    public DatabaseEstimates() {
+    }
+
+    /**
+     * Copy constructor sharing the (read-only) table estimates, so that a
+     * snapshot can be handed to concurrent planners.
+     */
+    public DatabaseEstimates(DatabaseEstimates other) {
+        tables.putAll(other.tables);
+    }
+
     public TableEstimates getEstimatesForTable(String tableName) {
         if (tables.containsKey(tableName) == false)
             tables.put(tableName, new TableEstimates());
 
         return tables.get(tableName);
     }
+
+    /**
+     * @return true if no estimates have been recorded for any table.
+     */
+    public boolean isEmpty() {
+        return tables.isEmpty();
+    }
 }
@@ -0,0 +1,201 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.compiler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTableRow;
+import org.voltdb.compiler.DatabaseEstimates.IndexEstimates;
+import org.voltdb.compiler.DatabaseEstimates.TableEstimates;
+
+/**
+ * Collects the table row counts and index key statistics that the sites
+ * already fetch from their EEs every stats tick, and turns them into
+ * per-partition {@link DatabaseEstimates} for the planner.
+ * Tables with fewer rows than {@link #MIN_ROWS_PER_PARTITION} are left out,
+ * so small tables keep the heuristic estimates.
+ */
+public class DatabaseStatistics {
+
+    public static final long MIN_ROWS_PER_PARTITION = 1000;
+    // How long a snapshot of the estimates is reused before it is rebuilt
+    static final long SNAPSHOT_INTERVAL_MS = 1000;
+
+    private static class IndexRow {
+        final long entryCount;
+        final long distinctKeys;
+        final long leadingDistinctKeys;
+        final String histogram;
+
+        IndexRow(long entryCount, long distinctKeys, long leadingDistinctKeys, String histogram) {
+            this.entryCount = entryCount;
+            this.distinctKeys = distinctKeys;
+            this.leadingDistinctKeys = leadingDistinctKeys;
+            this.histogram = histogram;
+        }
+    }
+
+    private static class SiteStatistics {
+        final Map<String, Long> tableRows = new HashMap<String, Long>();
+        final Map<String, Map<String, IndexRow>> indexes = new HashMap<String, Map<String, IndexRow>>();
+    }
+
+    private final ConcurrentHashMap<Long, SiteStatistics> m_sites =
+            new ConcurrentHashMap<Long, SiteStatistics>();
+
+    private DatabaseEstimates m_snapshot = null;
+    private long m_snapshotTime = 0;
+
+    /**
+     * Record the latest TABLE and INDEX statistics of a site, replacing
+     * whatever it reported before. Either table may be null.
+     * The tables' row positions are left alone.
+     */
+    public void update(long siteId, VoltTable tableStats, VoltTable indexStats) {
+        SiteStatistics site = new SiteStatistics();
+        if (tableStats != null) {
+            for (int i = 0; i < tableStats.getRowCount(); ++i) {
+                VoltTableRow row = tableStats.fetchRow(i);
+                site.tableRows.put(row.getString("TABLE_NAME"), row.getLong("TUPLE_COUNT"));
+            }
+        }
+        if (indexStats != null) {
+            for (int i = 0; i < indexStats.getRowCount(); ++i) {
+                VoltTableRow row = indexStats.fetchRow(i);
+                String tableName = row.getString("TABLE_NAME");
+                Map<String, IndexRow> tableIndexes = site.indexes.get(tableName);
+                if (tableIndexes == null) {
+                    tableIndexes = new HashMap<String, IndexRow>();
+                    site.indexes.put(tableName, tableIndexes);
+                }
+                tableIndexes.put(row.getString("INDEX_NAME"),
+                                 new IndexRow(row.getLong("ENTRY_COUNT"),
+                                              row.getLong("DISTINCT_KEYS"),
+                                              row.getLong("LEADING_DISTINCT_KEYS"),
+                                              row.getString("KEY_HISTOGRAM")));
+            }
+        }
+        m_sites.put(siteId, site);
+    }
+
+    /**
+     * @return estimates for the tables large enough to have them, rebuilt
+     * from the sites' latest statistics at most once a second,
+     * or null if there are none.
+     * The result is shared and must be copied before it is planned with.
+     */
+    public synchronized DatabaseEstimates getEstimates() {
+        long now = System.currentTimeMillis();
+        if (m_snapshot == null || now - m_snapshotTime >= SNAPSHOT_INTERVAL_MS) {
+            m_snapshot = buildEstimates();
+            m_snapshotTime = now;
+        }
+        return m_snapshot.isEmpty() ? null : m_snapshot;
+    }
+
+    private DatabaseEstimates buildEstimates() {
+        // Sum up the sites' statistics per table and index
+        Map<String, long[]> rowTotals = new HashMap<String, long[]>();
+        Map<String, Map<String, long[]>> indexTotals = new HashMap<String, Map<String, long[]>>();
+        Map<String, Map<String, IndexRow>> largestIndexes = new HashMap<String, Map<String, IndexRow>>();
+        for (SiteStatistics site : m_sites.values()) {
+            for (Entry<String, Long> table : site.tableRows.entrySet()) {
+                long[] totals = rowTotals.get(table.getKey());
+                if (totals == null) {
+                    totals = new long[2];
+                    rowTotals.put(table.getKey(), totals);
+                }
+                totals[0] += table.getValue();
+                totals[1]++;
+            }
+            for (Entry<String, Map<String, IndexRow>> table : site.indexes.entrySet()) {
+                Map<String, long[]> tableTotals = indexTotals.get(table.getKey());
+                Map<String, IndexRow> tableLargest = largestIndexes.get(table.getKey());
+                if (tableTotals == null) {
+                    tableTotals = new HashMap<String, long[]>();
+                    indexTotals.put(table.getKey(), tableTotals);
+                    tableLargest = new HashMap<String, IndexRow>();
+                    largestIndexes.put(table.getKey(), tableLargest);
+                }
+                for (Entry<String, IndexRow> index : table.getValue().entrySet()) {
+                    IndexRow row = index.getValue();
+                    long[] totals = tableTotals.get(index.getKey());
+                    if (totals == null) {
+                        totals = new long[4];
+                        tableTotals.put(index.getKey(), totals);
+                    }
+                    totals[0] += row.entryCount;
+                    totals[1] += row.distinctKeys;
+                    totals[2] += row.leadingDistinctKeys;
+                    totals[3]++;
+                    // The histogram comes from the partition with the most entries
+                    IndexRow largest = tableLargest.get(index.getKey());
+                    if (largest == null || largest.entryCount < row.entryCount) {
+                        tableLargest.put(index.getKey(), row);
+                    }
+                }
+            }
+        }
+
+        DatabaseEstimates estimates = new DatabaseEstimates();
+        for (Entry<String, long[]> table : rowTotals.entrySet()) {
+            long rows = table.getValue()[0] / table.getValue()[1];
+            if (rows < MIN_ROWS_PER_PARTITION) {
+                continue;
+            }
+            TableEstimates tableEstimates = estimates.getEstimatesForTable(table.getKey());
+            tableEstimates.maxTuples = rows;
+            tableEstimates.minTuples = rows;
+            Map<String, long[]> tableTotals = indexTotals.get(table.getKey());
+            if (tableTotals == null) {
+                continue;
+            }
+            for (Entry<String, long[]> index : tableTotals.entrySet()) {
+                long[] totals = index.getValue();
+                String histogram = largestIndexes.get(table.getKey()).get(index.getKey()).histogram;
+                tableEstimates.indexEstimates.put(index.getKey(),
+                        new IndexEstimates(totals[0] / totals[3],
+                                           totals[1] / totals[3],
+                                           totals[2] / totals[3],
+                                           parseHistogram(histogram)));
+            }
+        }
+        return estimates;
+    }
+
+    private static double[] parseHistogram(String histogram) {
+        if (histogram == null || histogram.isEmpty()) {
+            return null;
+        }
+        String[] boundaries = histogram.split(",");
+        double[] result = new double[boundaries.length];
+        try {
+            for (int i = 0; i < boundaries.length; ++i) {
+                result[i] = Double.parseDouble(boundaries[i]);
+            }
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+        return result;
+    }
+}
@@ -31,11 +31,13 @@ import org.voltdb.VoltDB;
 import org.voltdb.catalog.Cluster;
 import org.voltdb.catalog.Database;
 import org.voltdb.common.Constants;
+import org.voltdb.planner.AbstractCostModel;
 import org.voltdb.planner.BoundPlan;
 import org.voltdb.planner.CompiledPlan;
 import org.voltdb.planner.CorePlan;
 import org.voltdb.planner.QueryPlanner;
 import org.voltdb.planner.StatementPartitioning;
+import org.voltdb.planner.StatisticalCostModel;
 import org.voltdb.planner.TrivialCostModel;
 import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.utils.Encoder;
@@ -52,11 +54,22 @@ public class PlannerTool {
     final HSQLInterface m_hsql;
     final byte[] m_catalogHash;
     final AdHocCompilerCache m_cache;
+    final DatabaseStatistics m_statistics;
     static PlannerStatsCollector m_plannerStats;
 
     public static final int AD_HOC_JOINED_TABLE_LIMIT = 5;
 
     public PlannerTool(final Cluster cluster, final Database database, byte[] catalogHash)
+    {
+        this(cluster, database, catalogHash, null);
+    }
+
+    /**
+     * @param statistics Statistics gathered from the running database to cost
+     *        ad hoc plans with, or null to use the planner's default estimates.
+     */
+    public PlannerTool(final Cluster cluster, final Database database, byte[] catalogHash,
+                       DatabaseStatistics statistics)
     {
         assert(cluster != null);
         assert(database != null);
@@ -64,6 +77,7 @@ public class PlannerTool {
         m_database = database;
         m_cluster = cluster;
         m_catalogHash = catalogHash;
+        m_statistics = statistics;
         m_cache = AdHocCompilerCache.getCacheForCatalogHash(catalogHash);
 
         // LOAD HSQL
@@ -172,7 +186,10 @@ public class PlannerTool {
             // PLAN THE STMT
             //////////////////////
 
-            TrivialCostModel costModel = new TrivialCostModel();
+            // Cost the plan with the database's statistics once there are any.
+            DatabaseEstimates statistics = (m_statistics == null) ? null : m_statistics.getEstimates();
+            AbstractCostModel costModel = (statistics == null) ?
+                    new TrivialCostModel() : new StatisticalCostModel(statistics);
             DatabaseEstimates estimates = new DatabaseEstimates();
             QueryPlanner planner = new QueryPlanner(
                     sql, "PlannerTool", "PlannerToolProc", m_cluster, m_database,
@@ -234,6 +251,9 @@ public class PlannerTool {
             // OUTPUT THE RESULT
             //////////////////////
             CorePlan core = new CorePlan(plan, m_catalogHash);
+            if (statistics != null) {
+                core.setEstimatedOutputTupleCounts(plan);
+            }
             AdHocPlannedStatement ahps = new AdHocPlannedStatement(plan, core);
 
             if (partitioning.isInferred()) {
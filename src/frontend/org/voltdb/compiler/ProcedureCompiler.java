@@ -28,8 +28,10 @@ import java.util.Map.Entry;
 
 import org.hsqldb_voltpatches.HSQLInterface;
 import org.voltcore.logging.VoltLogger;
+import org.voltdb.CacheResults;
 import org.voltdb.ProcInfo;
 import org.voltdb.ProcInfoData;
+import org.voltdb.ProcedureResultCache;
 import org.voltdb.SQLStmt;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltProcedure;
@@ -625,6 +627,14 @@ public abstract class ProcedureCompiler implements GroovyCodeBlockConstants {
             }
         }
 
+        if (procClass.getAnnotation(CacheResults.class) != null) {
+            String reason = ProcedureResultCache.getIneligibilityReason(procedure);
+            if (reason != null) {
+                compiler.addWarn("Procedure " + shortName + " is annotated with @CacheResults but " +
+                        reason + ", its results will not be cached.");
+            }
+        }
+
         // put the compiled code for this procedure into the jarfile
         // need to find the outermost ancestor class for the procedure in the event
         // that it's actually an inner (or inner inner...) class.
@@ -270,6 +270,7 @@ public class VoltProjectBuilder {
 
     private Integer m_elasticThroughput = null;
     private Integer m_elasticDuration = null;
+    private Integer m_elasticLatency = null;
     private Integer m_queryTimeout = null;
 
     private boolean m_useDDLSchema = false;
@@ -293,6 +294,11 @@ public class VoltProjectBuilder {
         return this;
     }
 
+    public VoltProjectBuilder setElasticLatency(int target) {
+        m_elasticLatency = target;
+        return this;
+    }
+
     public void setDeadHostTimeout(Integer deadHostTimeout) {
         m_deadHostTimeout = deadHostTimeout;
     }
@@ -972,10 +978,11 @@ public class VoltProjectBuilder {
             snapshot.setPriority(m_snapshotPriority);
             systemSettingType.setSnapshot(snapshot);
         }
-        if (m_elasticThroughput != null || m_elasticDuration != null) {
+        if (m_elasticThroughput != null || m_elasticDuration != null || m_elasticLatency != null) {
             SystemSettingsType.Elastic elastic = factory.createSystemSettingsTypeElastic();
             if (m_elasticThroughput != null) elastic.setThroughput(m_elasticThroughput);
             if (m_elasticDuration != null) elastic.setDuration(m_elasticDuration);
+            if (m_elasticLatency != null) elastic.setLatency(m_elasticLatency);
             systemSettingType.setElastic(elastic);
         }
         if (m_queryTimeout != null) {
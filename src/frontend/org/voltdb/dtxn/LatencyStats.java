@@ -26,6 +26,8 @@ import java.util.concurrent.TimeUnit;
 import org.HdrHistogram_voltpatches.AbstractHistogram;
 import org.HdrHistogram_voltpatches.AtomicHistogram;
 import org.HdrHistogram_voltpatches.Histogram;
+import org.HdrHistogram_voltpatches.HistogramData;
+import org.HdrHistogram_voltpatches.HistogramIterationValue;
 import org.voltcore.utils.CompressionStrategySnappy;
 import org.voltdb.ClientInterface;
 import org.voltdb.SiteStatsSource;
@@ -79,6 +81,50 @@ public class LatencyStats extends SiteStatsSource {
         }
     }
 
+    /**
+     * Sum the client latency histograms of all admission control groups into
+     * a new histogram. Unlike the stats cache this is never shared, so it can
+     * be kept and compared with a later snapshot.
+     */
+    public static AbstractHistogram snapshotHistogram() {
+        AbstractHistogram snapshot = constructHistogram(false);
+        ClientInterface ci = VoltDB.instance().getClientInterface();
+        if (ci != null) {
+            for (AbstractHistogram info : ci.getLatencyStats()) {
+                snapshot.add(info);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Value at the given percentile of only those values recorded between
+     * two snapshots of the same cumulative histogram.
+     * @return the value in microseconds, or -1 if nothing was recorded in between
+     */
+    public static long getValueAtPercentileBetween(AbstractHistogram before,
+                                                   AbstractHistogram after,
+                                                   double percentile) {
+        final HistogramData beforeData = before.getHistogramData();
+        final HistogramData afterData = after.getHistogramData();
+        final long total = afterData.getTotalCount() - beforeData.getTotalCount();
+        if (total <= 0) {
+            return -1;
+        }
+        final long countAtPercentile =
+            Math.max(1, (long)((Math.min(percentile, 100.0) / 100.0) * total + 0.5));
+        long count = 0;
+        long value = -1;
+        for (HistogramIterationValue v : afterData.recordedValues()) {
+            value = v.getValueIteratedTo();
+            count += v.getCountAtValueIteratedTo() - beforeData.getCountAtValue(value);
+            if (count >= countAtPercentile) {
+                break;
+            }
+        }
+        return value;
+    }
+
     private WeakReference<byte[]> m_compressedCache = null;
     private WeakReference<byte[]> m_serializedCache = null;
 
@@ -501,6 +501,11 @@ public class MpRoSite implements Runnable, SiteProcedureConnection
         return m_loadedProcedures.getProcByName(procedureName);
     }
 
+    @Override
+    public long getTableWriteEpoch(int tableId) {
+        return -1;
+    }
+
     /**
      * Update the catalog.  If we're the MPI, don't bother with the EE.
      */
@@ -555,4 +560,9 @@ public class MpRoSite implements Runnable, SiteProcedureConnection
     public void applyBinaryLog(long txnId, long spHandle, long uniqueId, byte log[]) {
         throw new UnsupportedOperationException("RO MP Site doesn't do this, shouldn't be here");
     }
+
+    @Override
+    public void applyBinaryLog(long txnId, long spHandle, long uniqueId, byte log[], boolean checksumsVerified) {
+        throw new UnsupportedOperationException("RO MP Site doesn't do this, shouldn't be here");
+    }
 }
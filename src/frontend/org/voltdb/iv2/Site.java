@@ -516,6 +516,7 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                             m_mpDrGateway != null);
             }
             eeTemp.loadCatalog(m_startupConfig.m_timestamp, m_startupConfig.m_serializableCatalog.serialize());
+            eeTemp.setTableWriteEpochCapacity(m_context.database.getTables().size());
             eeTemp.setTimeoutLatency(m_context.cluster.getDeployment().get("deployment").
                             getSystemsettings().get("systemsettings").getQuerytimeout());
         }
@@ -982,13 +983,17 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
             int tupleAllocatedMem = 0;
             int indexMem = 0;
             int stringMem = 0;
+            int compressedStringMem = 0;
+            int uncompressedStringMem = 0;
 
             // update table stats
             final VoltTable[] s1 =
                 m_ee.getStats(StatsSelector.TABLE, tableIds, false, time);
+            VoltTable tableStats = null;
             if ((s1 != null) && (s1.length > 0)) {
                 VoltTable stats = s1[0];
                 assert(stats != null);
+                tableStats = stats;
 
                 // rollup the table memory stats for this site
                 while (stats.advanceRow()) {
@@ -1001,6 +1006,10 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                     tupleDataMem += (int) stats.getLong(9);
                     assert(stats.getColumnName(10).equals("STRING_DATA_MEMORY"));
                     stringMem += (int) stats.getLong(10);
+                    assert(stats.getColumnName(13).equals("STRING_COMPRESSED_MEMORY"));
+                    compressedStringMem += (int) stats.getLong(13);
+                    assert(stats.getColumnName(14).equals("STRING_UNCOMPRESSED_MEMORY"));
+                    uncompressedStringMem += (int) stats.getLong(14);
                 }
                 stats.resetRowPosition();
 
@@ -1015,9 +1024,11 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
             // update index stats
             final VoltTable[] s2 =
                 m_ee.getStats(StatsSelector.INDEX, tableIds, false, time);
+            VoltTable indexStats = null;
             if ((s2 != null) && (s2.length > 0)) {
                 VoltTable stats = s2[0];
                 assert(stats != null);
+                indexStats = stats;
 
                 // rollup the index memory stats for this site
                 while (stats.advanceRow()) {
@@ -1035,6 +1046,9 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                 m_indexStats.resetStatsTable();
             }
 
+            // share the row counts and index key statistics with the planner
+            m_context.m_statistics.update(m_siteId, tableStats, indexStats);
+
             // update the rolled up memory statistics
             if (m_memStats != null) {
                 m_memStats.eeUpdateMemStats(m_siteId,
@@ -1043,7 +1057,10 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                                             tupleAllocatedMem,
                                             indexMem,
                                             stringMem,
-                                            m_ee.getThreadLocalPoolAllocations());
+                                            compressedStringMem,
+                                            uncompressedStringMem,
+                                            m_ee.getThreadLocalPoolAllocations(),
+                                            m_ee.getLargePageAllocations());
             }
         }
     }
@@ -1177,6 +1194,11 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         return m_loadedProcedures.getProcByName(procedureName);
     }
 
+    @Override
+    public long getTableWriteEpoch(int tableId) {
+        return m_ee.getTableWriteEpoch(tableId);
+    }
+
     /**
      * Update the catalog.  If we're the MPI, don't bother with the EE.
      */
@@ -1213,6 +1235,7 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         //so export data for the old generation is pushed to Java.
         m_ee.quiesce(m_lastCommittedSpHandle);
         m_ee.updateCatalog(m_context.m_uniqueId, diffCmds);
+        m_ee.setTableWriteEpochCapacity(m_context.database.getTables().size());
 
         return true;
     }
@@ -1302,10 +1325,16 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
     @Override
     public void applyBinaryLog(long txnId, long spHandle,
                                long uniqueId, byte log[]) throws EEException {
+        applyBinaryLog(txnId, spHandle, uniqueId, log, false);
+    }
+
+    @Override
+    public void applyBinaryLog(long txnId, long spHandle,
+                               long uniqueId, byte log[], boolean checksumsVerified) throws EEException {
         ByteBuffer paramBuffer = m_ee.getParamBufferForExecuteTask(4 + log.length);
         paramBuffer.putInt(log.length);
         paramBuffer.put(log);
         m_ee.applyBinaryLog(paramBuffer, txnId, spHandle, m_lastCommittedSpHandle, uniqueId,
-                            getNextUndoToken(m_currentTxnId));
+                            getNextUndoToken(m_currentTxnId), checksumsVerified);
     }
 }
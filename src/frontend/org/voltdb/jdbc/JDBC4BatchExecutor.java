@@ -0,0 +1,255 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.jdbc;
+
+import java.io.IOException;
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import org.voltdb.VoltTable;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.client.VoltBulkLoader.BulkLoaderFailureCallBack;
+import org.voltdb.client.VoltBulkLoader.VoltBulkLoader;
+import org.voltdb.jdbc.JDBC4Statement.VoltSQL;
+
+/**
+ * Runs the statements of a JDBC batch without waiting a round trip for each one.
+ *
+ * Statements are pipelined through the asynchronous client and their update counts are
+ * collected as the responses arrive. Like any asynchronous calls, statements routed to
+ * different partitions may complete in either order, so a DDL statement first waits for
+ * everything before it and runs on its own. At most {@link #MAX_OUTSTANDING} statements are
+ * in flight, ad hoc statements beyond that would be turned away by the server's planner queue.
+ *
+ * With grouping enabled, a run of consecutive "INSERT INTO t VALUES (?, ...)" statements on
+ * the same table is handed to a {@link VoltBulkLoader}, which sends the rows of each
+ * partition together in one call. A run waits for the statements before it and is drained
+ * before the statements after it are sent.
+ */
+class JDBC4BatchExecutor
+{
+    // Rows per partition the bulk loader sends in one call
+    static final int BULK_INSERT_BATCH_SIZE = Integer.getInteger("JDBC_BULK_INSERT_BATCH_SIZE", 200);
+    // Statements in flight at once, kept well under the 250 deep ad hoc planner queue of a host
+    static final int MAX_OUTSTANDING = Integer.getInteger("JDBC_BATCH_MAX_OUTSTANDING", 100);
+
+    private final JDBC4ClientConnection connection;
+    private final long timeout;
+    private final boolean groupInserts;
+
+    private final int[] updateCounts;
+    private final SQLException[] errors;
+    // Statements sent but not yet answered, guarded by this
+    private int outstanding = 0;
+
+    // Loader and table of the current run of grouped inserts
+    private VoltBulkLoader loader = null;
+    private String loaderTable = null;
+
+    JDBC4BatchExecutor(JDBC4ClientConnection connection, long timeout, boolean groupInserts, int size)
+    {
+        this.connection = connection;
+        this.timeout = timeout;
+        this.groupInserts = groupInserts;
+        this.updateCounts = new int[size];
+        this.errors = new SQLException[size];
+    }
+
+    /**
+     * Run the batch.
+     *
+     * @return the update count of every statement.
+     * @throws BatchUpdateException
+     *             if any statement failed. Its update counts hold EXECUTE_FAILED for the failed
+     *             statements, and stop at the statement that could not be sent if the
+     *             connection was lost.
+     */
+    int[] execute(List<VoltSQL> batch) throws SQLException
+    {
+        int sent = batch.size();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                VoltSQL query = batch.get(i);
+                if (groupInserts && insert(i, query)) {
+                    continue;
+                }
+                endInsertRun();
+                try {
+                    if (query.isDDL()) {
+                        awaitOutstanding();
+                        completed(i, query.execute(connection, timeout));
+                    } else {
+                        send(i, query);
+                    }
+                } catch (SQLException x) {
+                    failed(i, x);
+                    if (SQLError.isConnectionError(x.getSQLState())) {
+                        sent = i + 1;
+                        break;
+                    }
+                }
+            }
+            endInsertRun();
+            awaitOutstanding();
+        } catch (InterruptedException x) {
+            throw SQLError.get(x, SQLError.GENERAL_ERROR, x.getMessage());
+        } finally {
+            closeLoader();
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < sent; i++) {
+                if (errors[i] != null) {
+                    throw new BatchUpdateException(Arrays.copyOf(updateCounts, sent), errors[i]);
+                }
+            }
+            return updateCounts;
+        }
+    }
+
+    private void send(final int index, VoltSQL query) throws SQLException, InterruptedException
+    {
+        synchronized (this) {
+            while (outstanding >= MAX_OUTSTANDING) {
+                wait();
+            }
+            outstanding++;
+        }
+        boolean queued = false;
+        try {
+            queued = connection.executeAsync(new ProcedureCallback() {
+                @Override
+                public void clientCallback(ClientResponse response) throws Exception
+                {
+                    if (response.getStatus() == ClientResponse.SUCCESS) {
+                        completed(index, response.getResults());
+                    } else {
+                        failed(index, VoltSQL.getResponseError(null, response, response.getStatusString()));
+                    }
+                    done();
+                }
+            }, timeout, query.getProcedure(), query.getProcedureParameters());
+        } catch (IOException x) {
+            throw SQLError.get(x, SQLError.CONNECTION_FAILURE, x.getMessage());
+        } finally {
+            if (!queued) {
+                done();
+            }
+        }
+        if (!queued) {
+            throw SQLError.get(SQLError.CONNECTION_CLOSED);
+        }
+    }
+
+    /**
+     * Add a bound insert to the current run of grouped inserts, starting a new run if it is on
+     * another table.
+     *
+     * @return false if the statement cannot be grouped and has to be sent on its own.
+     */
+    private boolean insert(int index, VoltSQL query) throws InterruptedException
+    {
+        String table = query.getInsertTable();
+        if (table == null) {
+            return false;
+        }
+        Object[] values = query.getInsertValues();
+        if (loader == null || !table.equalsIgnoreCase(loaderTable)) {
+            endInsertRun();
+            awaitOutstanding();
+            try {
+                loader = connection.getNewBulkLoader(table, BULK_INSERT_BATCH_SIZE, new BulkLoaderFailureCallBack() {
+                    @Override
+                    public void failureCallback(Object rowHandle, Object[] fieldList, ClientResponse response)
+                    {
+                        failed((Integer) rowHandle,
+                               VoltSQL.getResponseError(null, response, response.getStatusString()));
+                    }
+                });
+                loaderTable = table;
+            } catch (Exception x) {
+                // Unknown table or no connection, the statement will report it on its own
+                return false;
+            }
+        }
+        if (loader.getColumnTypes().length != values.length) {
+            return false;
+        }
+        synchronized (this) {
+            updateCounts[index] = 1;
+        }
+        loader.insertRow(index, values);
+        return true;
+    }
+
+    // Wait until every row of the current run of grouped inserts has been answered
+    private void endInsertRun() throws InterruptedException
+    {
+        if (loader != null) {
+            loader.drain();
+            closeLoader();
+        }
+    }
+
+    private void closeLoader()
+    {
+        if (loader != null) {
+            try {
+                loader.close();
+            } catch (Exception x) {
+                // ignore, every row was drained or the batch already failed
+            }
+            loader = null;
+            loaderTable = null;
+        }
+    }
+
+    private synchronized void completed(int index, VoltTable[] results)
+    {
+        try {
+            updateCounts[index] = (int) results[0].fetchRow(0).getLong(0);
+        } catch (RuntimeException x) {
+            failed(index, SQLError.get(x, SQLError.GENERAL_ERROR, x.getMessage()));
+        }
+    }
+
+    private synchronized void failed(int index, SQLException error)
+    {
+        updateCounts[index] = Statement.EXECUTE_FAILED;
+        if (errors[index] == null) {
+            errors[index] = error;
+        }
+    }
+
+    private synchronized void done()
+    {
+        outstanding--;
+        notifyAll();
+    }
+
+    private synchronized void awaitOutstanding() throws InterruptedException
+    {
+        while (outstanding > 0) {
+            wait();
+        }
+    }
+}
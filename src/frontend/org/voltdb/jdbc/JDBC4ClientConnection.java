@@ -36,6 +36,8 @@ import org.voltdb.client.ClientStatsContext;
 import org.voltdb.client.NoConnectionsException;
 import org.voltdb.client.ProcCallException;
 import org.voltdb.client.ProcedureCallback;
+import org.voltdb.client.VoltBulkLoader.BulkLoaderFailureCallBack;
+import org.voltdb.client.VoltBulkLoader.VoltBulkLoader;
 
 /**
  * Provides a high-level wrapper around the core {@link Client} class to provide performance
@@ -288,6 +290,34 @@ public class JDBC4ClientConnection implements Closeable {
         }
     }
 
+    /**
+     * Executes a procedure synchronously on a connection to the given host, for calls that
+     * depend on state kept by that host's client interface.
+     *
+     * @param hostId
+     *            the id of the host to call.
+     * @param procedure
+     *            the name of the procedure to call.
+     * @param parameters
+     *            the list of parameters to pass to the procedure.
+     * @return the response sent back by the VoltDB cluster for the procedure execution.
+     * @throws IOException
+     * @throws NoConnectionsException
+     *             if there is no connection to the host.
+     * @throws ProcCallException
+     */
+    public ClientResponse executeOnHost(int hostId, String procedure, long timeout, Object... parameters)
+            throws NoConnectionsException, IOException, ProcCallException {
+        ClientImpl currentClient = this.getClient();
+        try {
+            return currentClient.callProcedureOnHost(hostId, procedure, timeout, TimeUnit.SECONDS, parameters);
+        }
+        catch (NoConnectionsException e) {
+            this.dropClient(currentClient);
+            throw e;
+        }
+    }
+
     /**
      * Internal asynchronous callback used to track the execution performance of asynchronous calls.
      */
@@ -355,6 +385,53 @@ public class JDBC4ClientConnection implements Closeable {
         }
     }
 
+    /**
+     * Executes a procedure asynchronously with a call timeout, then calls the provided user
+     * callback with the server response upon completion.
+     *
+     * @param callback
+     *            the user-specified callback to call with the server response upon execution
+     *            completion.
+     * @param timeout
+     *            the call timeout in seconds, as for {@link #execute(String, long, Object...)}.
+     * @param procedure
+     *            the name of the procedure to call.
+     * @param parameters
+     *            the list of parameters to pass to the procedure.
+     * @return the result of the submission false if the client connection was terminated and unable
+     *         to post the request to the server, true otherwise.
+     */
+    public boolean executeAsync(ProcedureCallback callback, long timeout, String procedure, Object... parameters)
+            throws NoConnectionsException, IOException
+    {
+        ClientImpl currentClient = this.getClient();
+        try {
+            return currentClient.callProcedureWithTimeout(new TrackingCallback(this, procedure, callback),
+                    procedure, timeout, TimeUnit.SECONDS, parameters);
+        }
+        catch (NoConnectionsException e) {
+            this.dropClient(currentClient);
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a bulk loader for a table on the underlying client.
+     *
+     * @param tableName
+     *            the table rows will be inserted into.
+     * @param maxBatchSize
+     *            the number of rows sent per partition in one call.
+     * @param callback
+     *            called for every row that could not be inserted.
+     * @return the new loader, to be closed by the caller.
+     */
+    public VoltBulkLoader getNewBulkLoader(String tableName, int maxBatchSize, BulkLoaderFailureCallBack callback)
+            throws Exception
+    {
+        return this.getClient().getNewBulkLoader(tableName, maxBatchSize, callback);
+    }
+
     /**
      * Executes a procedure asynchronously, returning a Future that can be used by the caller to
      * wait upon completion before processing the server response.
@@ -43,6 +43,7 @@ public class JDBC4Connection implements java.sql.Connection, IVoltDBConnection
 {
     public static final String COMMIT_THROW_EXCEPTION = "jdbc.committhrowexception";
     public static final String ROLLBACK_THROW_EXCEPTION = "jdbc.rollbackthrowexception";
+    public static final String BATCH_GROUP_INSERTS = "jdbc.batchgroupinserts";
 
     protected final JDBC4ClientConnection NativeConnection;
     protected final String User;
@@ -57,6 +58,12 @@ public class JDBC4Connection implements java.sql.Connection, IVoltDBConnection
         this.User = this.props.getProperty("user", "");
     }
 
+    // Whether executeBatch may send runs of parameterized inserts through a bulk loader
+    protected boolean isGroupedBatchInserts()
+    {
+        return props.getProperty(BATCH_GROUP_INSERTS, "false").equalsIgnoreCase("true");
+    }
+
     private void checkClosed() throws SQLException
     {
         if (this.isClosed())
@@ -0,0 +1,199 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.jdbc;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.voltdb.VoltTable;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcCallException;
+import org.voltdb.jdbc.JDBC4Statement.VoltSQL;
+
+/**
+ * Forward only result set over a server side cursor opened with @OpenCursor.
+ *
+ * Only the current chunk of fetch size rows is held, the next one is read with
+ * @FetchCursor from the host that keeps the cursor once the current one runs out.
+ * The cursor is closed on the server when the last row has been read, or with
+ * @CloseCursor when the result set is closed early.
+ */
+class JDBC4CursorResultSet extends JDBC4ResultSet {
+    private final JDBC4ClientConnection connection;
+    private final long timeout;
+    private final int maxRows;
+
+    private final long cursorId;
+    private final int hostId;
+    private long rowsRemaining;
+    // Rows read so far, including those of earlier chunks
+    private int rowsRead = 0;
+    // Rows in the chunks before the current one
+    private int rowsBeforeChunk = 0;
+    private int chunkRows;
+
+    /**
+     * @param firstChunk
+     *            the response to @OpenCursor: the first chunk and the status of the cursor.
+     * @param maxRows
+     *            most rows the result set returns, 0 for all of them.
+     */
+    JDBC4CursorResultSet(Statement statement, JDBC4ClientConnection connection, long timeout,
+            int fetchSize, int maxRows, VoltTable[] firstChunk) throws SQLException {
+        super(statement, firstChunk[0]);
+        this.connection = connection;
+        this.timeout = timeout;
+        this.maxRows = maxRows;
+        setFetchSize(fetchSize);
+
+        VoltTable status = firstChunk[1];
+        status.advanceRow();
+        cursorId = status.getLong("CURSOR_ID");
+        hostId = (int) status.getLong("HOST_ID");
+        rowsRemaining = status.getLong("ROWS_REMAINING");
+        chunkRows = firstChunk[0].getRowCount();
+    }
+
+    // Moves the cursor forward one row from its current position, reading the
+    // next chunk when the current one has been read.
+    @Override
+    public boolean next() throws SQLException {
+        checkClosed();
+        if (maxRows > 0 && rowsRead >= maxRows) {
+            closeCursor();
+            super.afterLast();
+            return false;
+        }
+        while (!super.next()) {
+            if (rowsRemaining == 0) {
+                return false;
+            }
+            fetch();
+        }
+        rowsRead++;
+        return true;
+    }
+
+    private void fetch() throws SQLException {
+        int fetchSize = getFetchSize();
+        if (maxRows > 0) {
+            fetchSize = fetchSize > 0 ? Math.min(fetchSize, maxRows - rowsRead) : maxRows - rowsRead;
+        } else if (fetchSize == 0) {
+            fetchSize = Integer.MAX_VALUE;
+        }
+        VoltTable[] results = call("@FetchCursor", cursorId, fetchSize);
+        VoltTable status = results[1];
+        status.advanceRow();
+        rowsRemaining = status.getLong("ROWS_REMAINING");
+        rowsBeforeChunk += chunkRows;
+        chunkRows = results[0].getRowCount();
+        setChunk(results[0]);
+    }
+
+    private void closeCursor() throws SQLException {
+        if (rowsRemaining > 0) {
+            rowsRemaining = 0;
+            call("@CloseCursor", cursorId);
+        }
+    }
+
+    private VoltTable[] call(String procedure, Object... parameters) throws SQLException {
+        try {
+            return connection.executeOnHost(hostId, procedure, timeout, parameters).getResults();
+        } catch (ProcCallException e) {
+            ClientResponse response = e.getClientResponse();
+            if (response != null) {
+                throw VoltSQL.getResponseError(e, response, e.getMessage());
+            } else {
+                throw SQLError.get(e, SQLError.GENERAL_ERROR, e.getMessage());
+            }
+        } catch (IOException e) {
+            throw SQLError.get(e, SQLError.CONNECTION_FAILURE, e.getMessage());
+        }
+    }
+
+    // Releases the chunk and the cursor on the server, if it has not been read to the end.
+    @Override
+    public void close() throws SQLException {
+        if (!isClosed()) {
+            try {
+                closeCursor();
+            } finally {
+                super.close();
+            }
+        }
+    }
+
+    // Retrieves the current row number.
+    @Override
+    public int getRow() throws SQLException {
+        int row = super.getRow();
+        return row == 0 ? 0 : rowsBeforeChunk + row;
+    }
+
+    // Retrieves the type of this ResultSet object.
+    @Override
+    public int getType() throws SQLException {
+        return TYPE_FORWARD_ONLY;
+    }
+
+    // Retrieves whether the cursor is on the last row of this ResultSet object.
+    @Override
+    public boolean isLast() throws SQLException {
+        if (maxRows > 0 && rowsRead >= maxRows) {
+            return getRow() > 0;
+        }
+        return rowsRemaining == 0 && super.isLast();
+    }
+
+    @Override
+    public boolean absolute(int row) throws SQLException {
+        throw SQLError.noSupport();
+    }
+
+    @Override
+    public boolean relative(int rows) throws SQLException {
+        throw SQLError.noSupport();
+    }
+
+    @Override
+    public boolean previous() throws SQLException {
+        throw SQLError.noSupport();
+    }
+
+    @Override
+    public boolean first() throws SQLException {
+        throw SQLError.noSupport();
+    }
+
+    @Override
+    public boolean last() throws SQLException {
+        throw SQLError.noSupport();
+    }
+
+    @Override
+    public void beforeFirst() throws SQLException {
+        throw SQLError.noSupport();
+    }
+
+    @Override
+    public void afterLast() throws SQLException {
+        throw SQLError.noSupport();
+    }
+}
@@ -81,6 +81,14 @@ public class JDBC4ResultSet implements java.sql.ResultSet {
         }
     }
 
+    // Replaces the rows with the next chunk of a result that is read in
+    // chunks, leaving the cursor before its first row
+    protected void setChunk(VoltTable chunk) {
+        table = chunk;
+        rowCount = chunk.getRowCount();
+        cursorPosition = Position.beforeFirst;
+    }
+
     protected final void checkClosed() throws SQLException {
         if (this.isClosed())
             throw SQLError.get(SQLError.CONNECTION_CLOSED);
@@ -18,7 +18,6 @@
 package org.voltdb.jdbc;
 
 import java.io.IOException;
-import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -29,6 +28,8 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.voltdb.VoltTable;
 import org.voltdb.VoltType;
@@ -49,11 +50,16 @@ public class JDBC4Statement implements java.sql.Statement
         public static final byte TYPE_UPDATE = 2;
         public static final byte TYPE_EXEC = 3;
 
+        private static final Pattern PAT_PARAMETER_INSERT = Pattern.compile(
+                "\\s*INSERT\\s+INTO\\s+(\\w+)\\s+VALUES\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)\\s*;",
+                Pattern.CASE_INSENSITIVE);
+
         private final String[] sql;
         private final int parameterCount;
         private final byte type;
         private final byte queryType;   // Type of query EXEC'd by @AdHoc
         private final Object[] parameters;
+        private String insertTable = null;
 
         private VoltSQL(String[] sql, int parameterCount, byte type)
         {
@@ -113,36 +119,34 @@ public class JDBC4Statement implements java.sql.Statement
         }
 
         protected VoltTable[] execute(JDBC4ClientConnection connection, long timeout) throws SQLException {
+            return call(connection, timeout, getProcedure(), getProcedureParameters());
+        }
+
+        /**
+         * Run a SELECT into a server side cursor that is read fetchSize rows at a time.
+         *
+         * @return the first chunk and the status of the cursor.
+         */
+        protected VoltTable[] openCursor(JDBC4ClientConnection connection, long timeout, int fetchSize) throws SQLException {
+            // @OpenCursor takes the arguments of @AdHoc after the fetch size
+            Object[] adHocParameters = getProcedureParameters();
+            Object[] cursorParameters = new Object[adHocParameters.length + 1];
+            cursorParameters[0] = fetchSize;
+            System.arraycopy(adHocParameters, 0, cursorParameters, 1, adHocParameters.length);
+            return call(connection, timeout, "@OpenCursor", cursorParameters);
+        }
+
+        private static VoltTable[] call(JDBC4ClientConnection connection, long timeout, String procedure,
+                Object[] parameters) throws SQLException {
             try
             {
-                if (this.type == TYPE_EXEC) {
-                    return connection.execute(this.sql[0], timeout, this.parameters).getResults();
-                } else {
-                    return connection.execute("@AdHoc", timeout, this.sql[0]).getResults();
-                }
+                return connection.execute(procedure, timeout, parameters).getResults();
             }
             catch(ProcCallException e)
             {
                 ClientResponse response = e.getClientResponse();
                 if (response != null) {
-                    // Map response status to specific JDBC exception, mostly GENERAL_ERROR except
-                    // for connection problems.
-                    switch (response.getStatus()) {
-                    case ClientResponse.CONNECTION_LOST:
-                        throw SQLError.get(e, SQLError.CONNECTION_CLOSED, "CONNECTION_LOST", e.getMessage());
-                    case ClientResponse.CONNECTION_TIMEOUT:
-                        throw SQLError.get(e, SQLError.CONNECTION_FAILURE, "CONNECTION_TIMEOUT", e.getMessage());
-                    case ClientResponse.SERVER_UNAVAILABLE:
-                        throw SQLError.get(e, SQLError.CONNECTION_FAILURE, "CONNECTION_UNAVAILABLE", e.getMessage());
-                    case ClientResponse.USER_ABORT:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, "USER_ABORT", e.getMessage());
-                    case ClientResponse.UNEXPECTED_FAILURE:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, "UNEXPECTED_FAILURE", e.getMessage());
-                    case ClientResponse.GRACEFUL_FAILURE:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, "GRACEFUL_FAILURE", e.getMessage());
-                    default:
-                        throw SQLError.get(e, SQLError.GENERAL_ERROR, String.format("status=%d", (int)response.getStatus()), e.getMessage());
-                    }
+                    throw getResponseError(e, response, e.getMessage());
                 } else {
                     throw SQLError.get(e, SQLError.GENERAL_ERROR, e.getMessage());
                 }
@@ -153,6 +157,68 @@ public class JDBC4Statement implements java.sql.Statement
             }
         }
 
+        /**
+         * Map a failed response status to a specific JDBC exception, mostly GENERAL_ERROR
+         * except for connection problems.
+         */
+        static SQLException getResponseError(Exception cause, ClientResponse response, String message)
+        {
+            switch (response.getStatus()) {
+            case ClientResponse.CONNECTION_LOST:
+                return SQLError.get(cause, SQLError.CONNECTION_CLOSED, "CONNECTION_LOST", message);
+            case ClientResponse.CONNECTION_TIMEOUT:
+                return SQLError.get(cause, SQLError.CONNECTION_FAILURE, "CONNECTION_TIMEOUT", message);
+            case ClientResponse.SERVER_UNAVAILABLE:
+                return SQLError.get(cause, SQLError.CONNECTION_FAILURE, "CONNECTION_UNAVAILABLE", message);
+            case ClientResponse.USER_ABORT:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, "USER_ABORT", message);
+            case ClientResponse.UNEXPECTED_FAILURE:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, "UNEXPECTED_FAILURE", message);
+            case ClientResponse.GRACEFUL_FAILURE:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, "GRACEFUL_FAILURE", message);
+            default:
+                return SQLError.get(cause, SQLError.GENERAL_ERROR, String.format("status=%d", (int)response.getStatus()), message);
+            }
+        }
+
+        // Procedure and parameters the statement is run with
+        String getProcedure()
+        {
+            return this.type == TYPE_EXEC ? this.sql[0] : "@AdHoc";
+        }
+
+        Object[] getProcedureParameters()
+        {
+            return this.type == TYPE_EXEC ? this.parameters : new Object[] {this.sql[0]};
+        }
+
+        // True for DDL, which later statements of a batch may depend on
+        boolean isDDL()
+        {
+            String query = null;
+            if (this.type != TYPE_EXEC) {
+                query = this.sql[0];
+            } else if (this.sql[0].equals("@AdHoc") && this.parameters != null && this.parameters[0] instanceof String) {
+                query = (String) this.parameters[0];
+            }
+            return query != null && SQLLexer.extractDDLToken(query) != null;
+        }
+
+        /**
+         * The table of an "INSERT INTO table VALUES (?, ...)" whose values are all parameters,
+         * which can go through a bulk loader, or null for anything else.
+         */
+        String getInsertTable()
+        {
+            return this.parameters != null ? this.insertTable : null;
+        }
+
+        // Parameter values of a bound insert, in column order
+        Object[] getInsertValues()
+        {
+            return Arrays.copyOfRange(this.parameters, 1, this.parameters.length);
+        }
+
         public static boolean isUpdateResult(VoltTable table)
         {
             return ((table.getColumnName(0).length() == 0 || table.getColumnName(0).equals("modified_tuples"))&& table.getRowCount() == 1 && table.getColumnCount() == 1 && table.getColumnType(0) == VoltType.BIGINT);
@@ -178,7 +244,9 @@ public class JDBC4Statement implements java.sql.Statement
                 for (int i = 0; i < params.length; ++i) {
                     paramsOut[i+1] = params[i];
                 }
-                return new VoltSQL(new String[] {"@AdHoc"}, this.parameterCount, TYPE_EXEC, this.type, paramsOut);
+                VoltSQL query = new VoltSQL(new String[] {"@AdHoc"}, this.parameterCount, TYPE_EXEC, this.type, paramsOut);
+                query.insertTable = this.insertTable;
+                return query;
             }
         }
 
@@ -222,7 +290,14 @@ public class JDBC4Statement implements java.sql.Statement
                 parameterCount = queryParts.length-1;
             }
 
-            return new VoltSQL(new String[] {query}, parameterCount, type);
+            VoltSQL result = new VoltSQL(new String[] {query}, parameterCount, type);
+            if (parameterCount > 0) {
+                Matcher matcher = PAT_PARAMETER_INSERT.matcher(query);
+                if (matcher.matches()) {
+                    result.insertTable = matcher.group(1);
+                }
+            }
+            return result;
         }
     }
 
@@ -292,6 +367,21 @@ public class JDBC4Statement implements java.sql.Statement
         this.result = createTrimmedResultSet(this.tableResults[this.tableResultIndex]);
     }
 
+    // With a fetch size set, a SELECT is read through a server side cursor in chunks
+    private boolean isCursorQuery(VoltSQL query)
+    {
+        return this.fetchSize > 0 && query.isQueryOfType(VoltSQL.TYPE_SELECT);
+    }
+
+    private void setCursorResult(VoltSQL query) throws SQLException
+    {
+        VoltTable[] firstChunk = query.openCursor(this.sourceConnection.NativeConnection, this.m_timeout, this.fetchSize);
+        setCurrentResult(new VoltTable[0], -1);
+        this.tableResultIndex = 0;
+        this.result = new JDBC4CursorResultSet(this, this.sourceConnection.NativeConnection, this.m_timeout,
+                                               this.fetchSize, this.maxRows, firstChunk);
+    }
+
     private void closeAllOpenResults() throws SQLException
     {
         if (this.openResults != null)
@@ -365,7 +455,12 @@ public class JDBC4Statement implements java.sql.Statement
     protected boolean execute(VoltSQL query) throws SQLException
     {
         checkClosed();
-        if (query.isQueryOfType(VoltSQL.TYPE_SELECT,VoltSQL.TYPE_EXEC))
+        if (isCursorQuery(query))
+        {
+            setCursorResult(query);
+            return true;
+        }
+        else if (query.isQueryOfType(VoltSQL.TYPE_SELECT,VoltSQL.TYPE_EXEC))
         {
             setCurrentResult(query.execute(this.sourceConnection.NativeConnection, this.m_timeout), -1);
             return true;
@@ -420,35 +515,34 @@ public class JDBC4Statement implements java.sql.Statement
             return new int[0];
         }
 
-        int[] updateCounts = new int[batch.size()];
-        // keep a running total of update counts
-        int runningUpdateCount = 0;
-
-        for(int i = 0; i < batch.size(); i++)
-        {
-            try
-            {
-                setCurrentResult(null, (int) batch.get(i).execute(sourceConnection.NativeConnection,
-                        this.m_timeout)[0].fetchRow(0).getLong(0));
-                updateCounts[i] = this.lastUpdateCount;
-                runningUpdateCount += this.lastUpdateCount;
-            }
-            catch(SQLException x)
-            {
-                updateCounts[i] = EXECUTE_FAILED;
-                throw new BatchUpdateException(Arrays.copyOf(updateCounts, i+1), x);
-            }
+        // Statements are pipelined, failures surface as a BatchUpdateException once all
+        // sent statements have been answered
+        JDBC4BatchExecutor executor = new JDBC4BatchExecutor(sourceConnection.NativeConnection,
+                this.m_timeout, sourceConnection.isGroupedBatchInserts(), batch.size());
+        int[] updateCounts;
+        try {
+            updateCounts = executor.execute(batch);
+        } finally {
+            // the batch is reset once it has been run, whether or not it succeeded
+            batch = null;
         }
 
-        // replace the update count from the last statement with the update count
-        // from the last batch.
-        this.lastUpdateCount = runningUpdateCount;
+        // the update count is the total from the whole batch
+        int runningUpdateCount = 0;
+        for (int updateCount : updateCounts) {
+            runningUpdateCount += updateCount;
+        }
+        setCurrentResult(null, runningUpdateCount);
 
         return updateCounts;
     }
 
     protected ResultSet executeQuery(VoltSQL query) throws SQLException
     {
+        if (isCursorQuery(query)) {
+            setCursorResult(query);
+            return this.result;
+        }
         setCurrentResult(query.execute(this.sourceConnection.NativeConnection, this.m_timeout), -1);
         return this.result;
     }
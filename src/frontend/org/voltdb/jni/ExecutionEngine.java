@@ -511,6 +511,22 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
     /** Pass diffs to apply to the EE's catalog to update it */
     abstract public void updateCatalog(final long timestamp, final String diffCommands) throws EEException;
 
+    /**
+     * Make room to count writes to every table of a catalog with this many
+     * tables. Engines that don't count writes ignore it.
+     */
+    public void setTableWriteEpochCapacity(int tableCount) {}
+
+    /**
+     * The write epoch of a table changes whenever its contents may have,
+     * including on rollback. It never goes backwards within a catalog version.
+     * @param tableId catalog relative index of the table
+     * @return the current write epoch, or -1 if the engine doesn't count writes to the table
+     */
+    public long getTableWriteEpoch(int tableId) {
+        return -1;
+    }
+
     public void setBatch(int batchIndex) {
         m_currentBatchIndex = batchIndex;
     }
@@ -571,6 +587,12 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
 
     abstract public long getThreadLocalPoolAllocations();
 
+    /**
+     * Bytes of this site's tuple and index memory mapped in huge pages, as
+     * {reserved huge pages, transparent huge pages, bound to the local NUMA node}
+     */
+    abstract public long[] getLargePageAllocations();
+
     abstract public byte[] loadTable(
         int tableId, VoltTable table, long txnId, long spHandle,
         long lastCommittedSpHandle, long uniqueId, boolean returnUniqueViolations, boolean shouldDRStream,
@@ -676,6 +698,7 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
      * @param lastCommittedSpHandle    The spHandle of the last committed transaction
      * @param uniqueId                 The uniqueId of the current transaction
      * @param undoToken                For undo
+     * @param checksumsVerified        True if the CRC of every record has already been checked
      * @throws EEException
      */
     public abstract void applyBinaryLog(ByteBuffer log,
@@ -683,7 +706,8 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
                                         long spHandle,
                                         long lastCommittedSpHandle,
                                         long uniqueId,
-                                        long undoToken) throws EEException;
+                                        long undoToken,
+                                        boolean checksumsVerified) throws EEException;
 
     /**
      * Execute an arbitrary non-transactional task that is described by the task id and
@@ -760,6 +784,15 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
                                           ByteBuffer resultBuffer, int result_buffer_size,
                                           ByteBuffer exceptionBuffer, int exception_buffer_size);
 
+    /**
+     * Sets (or re-sets) the direct byte buffer the EE counts writes to each table in.
+     * @param pointer
+     * @param epoch_buffer native order longs indexed by catalog table relative index
+     * @param epoch_buffer_size
+     * @return error code
+     */
+    protected native int nativeSetTableWriteEpochBuffer(long pointer, ByteBuffer epoch_buffer, int epoch_buffer_size);
+
     /**
      * Load the system catalog for this engine.
      * @param pointer the VoltDBEngine pointer
@@ -880,6 +913,12 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
      */
     protected static native long nativeGetThreadLocalPoolAllocations();
 
+    /**
+     * Retrieve the thread local counters of memory mapped in huge pages
+     * @return {reserved huge page bytes, transparent huge page bytes, NUMA local bytes}
+     */
+    protected static native long[] nativeGetLargePageAllocations();
+
     /**
      * @param nextUndoToken The undo token to associate with future work
      * @return true for success false for failure
@@ -948,7 +987,8 @@ public abstract class ExecutionEngine implements FastDeserializer.Deserializatio
                                               long spHandle,
                                               long lastCommittedSpHandle,
                                               long uniqueId,
-                                              long undoToken);
+                                              long undoToken,
+                                              boolean checksumsVerified);
 
     /**
      * Execute an arbitrary task based on the task ID and serialized task parameters.
@@ -124,7 +124,8 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         GetUSOs(25),
         updateHashinator(27),
         executeTask(28),
-        applyBinaryLog(29);
+        applyBinaryLog(29),
+        GetLargePageAllocations(30);
         Commands(final int id) {
             m_id = id;
         }
@@ -1446,7 +1447,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
 
     @Override
     public void applyBinaryLog(ByteBuffer log, long txnId, long spHandle, long lastCommittedSpHandle, long uniqueId,
-                               long undoToken)
+                               long undoToken, boolean checksumsVerified)
     throws EEException
     {
         m_data.clear();
@@ -1456,6 +1457,7 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         m_data.putLong(lastCommittedSpHandle);
         m_data.putLong(uniqueId);
         m_data.putLong(undoToken);
+        m_data.put((byte) (checksumsVerified ? 1 : 0));
         m_data.put(log.array());
 
         try {
@@ -1491,6 +1493,30 @@ public class ExecutionEngineIPC extends ExecutionEngine {
         }
     }
 
+    @Override
+    public long[] getLargePageAllocations() {
+        m_data.clear();
+        m_data.putInt(Commands.GetLargePageAllocations.m_id);
+        try {
+            m_data.flip();
+            m_connection.write();
+
+            m_connection.readStatusByte();
+            ByteBuffer allocations = ByteBuffer.allocate(24);
+            while (allocations.hasRemaining()) {
+                int read = m_connection.m_socketChannel.read(allocations);
+                if (read <= 0) {
+                    throw new EOFException();
+                }
+            }
+            allocations.flip();
+            return new long[] { allocations.getLong(), allocations.getLong(), allocations.getLong() };
+        } catch (final Exception e) {
+            System.out.println("Exception: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public byte[] executeTask(TaskType taskType, ByteBuffer task) {
         m_data.clear();
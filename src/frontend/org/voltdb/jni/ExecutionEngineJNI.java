@@ -19,6 +19,7 @@ package org.voltdb.jni;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.List;
 
 import org.voltcore.logging.VoltLogger;
@@ -107,6 +108,14 @@ public class ExecutionEngineJNI extends ExecutionEngine {
     private final BBContainer exceptionBufferOrigin = org.voltcore.utils.DBBPool.allocateDirect(1024 * 1024 * 5);
     private ByteBuffer exceptionBuffer = exceptionBufferOrigin.b();
 
+    /*
+     * Write epochs of the tables by catalog relative index, bumped by the EE
+     * on every change. Only grows, the EE rebinds the slots to the tables
+     * whenever the catalog changes.
+     */
+    private BBContainer tableWriteEpochsC = null;
+    private ByteBuffer tableWriteEpochs = null;
+
     /**
      * initialize the native Engine object.
      */
@@ -214,6 +223,11 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         exceptionBufferOrigin.discard();
         psetBufferC.discard();
         psetBuffer = null;
+        if (tableWriteEpochsC != null) {
+            tableWriteEpochsC.discard();
+            tableWriteEpochsC = null;
+            tableWriteEpochs = null;
+        }
         LOG.trace("Released Execution Engine.");
     }
 
@@ -242,6 +256,33 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         checkErrorCode(errorCode);
     }
 
+    @Override
+    public void setTableWriteEpochCapacity(int tableCount) {
+        // relative indexes start at 1
+        final int capacity = (tableCount + 1) * 8;
+        if (tableWriteEpochs != null && tableWriteEpochs.capacity() >= capacity) {
+            return;
+        }
+        final BBContainer oldEpochsC = tableWriteEpochsC;
+        tableWriteEpochsC = DBBPool.allocateDirect(capacity);
+        tableWriteEpochs = tableWriteEpochsC.b();
+        tableWriteEpochs.order(ByteOrder.nativeOrder());
+        int errorCode = nativeSetTableWriteEpochBuffer(pointer, tableWriteEpochs, tableWriteEpochs.capacity());
+        checkErrorCode(errorCode);
+        if (oldEpochsC != null) {
+            oldEpochsC.discard();
+        }
+    }
+
+    @Override
+    public long getTableWriteEpoch(int tableId) {
+        final int offset = tableId * 8;
+        if (tableWriteEpochs == null || offset < 0 || offset + 8 > tableWriteEpochs.capacity()) {
+            return -1;
+        }
+        return tableWriteEpochs.getLong(offset);
+    }
+
     /**
      * @param undoToken Token identifying undo quantum for generated undo info
      */
@@ -604,10 +645,11 @@ public class ExecutionEngineJNI extends ExecutionEngine {
 
     @Override
     public void applyBinaryLog(ByteBuffer log, long txnId, long spHandle, long lastCommittedSpHandle, long uniqueId,
-                               long undoToken)
+                               long undoToken, boolean checksumsVerified)
     throws EEException
     {
-        final int errorCode = nativeApplyBinaryLog(pointer, txnId, spHandle, lastCommittedSpHandle, uniqueId, undoToken);
+        final int errorCode = nativeApplyBinaryLog(pointer, txnId, spHandle, lastCommittedSpHandle, uniqueId, undoToken,
+                                                   checksumsVerified);
         checkErrorCode(errorCode);
     }
 
@@ -616,6 +658,11 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         return nativeGetThreadLocalPoolAllocations();
     }
 
+    @Override
+    public long[] getLargePageAllocations() {
+        return nativeGetLargePageAllocations();
+    }
+
     /*
      * Instead of using the reusable output buffer to get results for the next batch,
      * use this buffer allocated by the EE. This is for one time use.
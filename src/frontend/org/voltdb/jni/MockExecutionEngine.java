@@ -222,7 +222,7 @@ public class MockExecutionEngine extends ExecutionEngine {
 
     @Override
     public void applyBinaryLog(ByteBuffer log, long txnId, long spHandle, long lastCommittedSpHandle, long uniqueId,
-                               long undoToken) throws EEException
+                               long undoToken, boolean checksumsVerified) throws EEException
     {
         throw new UnsupportedOperationException();
     }
@@ -232,6 +232,11 @@ public class MockExecutionEngine extends ExecutionEngine {
         return 0L;
     }
 
+    @Override
+    public long[] getLargePageAllocations() {
+        return new long[3];
+    }
+
     @Override
     public byte[] executeTask(TaskType taskType, ByteBuffer task) {
         throw new UnsupportedOperationException();
@@ -0,0 +1,201 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.join;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.voltdb.StatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.join.BalancePartitionsStatistics.StatsPoint;
+
+/**
+ * Time series of elastic rebalance progress, one row per sample interval
+ * for the most recent samples, together with what the scheduler decided at
+ * that point. Reported by @Statistics REBALANCE_HISTORY.
+ */
+public class BalancePartitionsHistory extends StatsSource {
+    static final long SAMPLE_INTERVAL_NANOS =
+        TimeUnit.MILLISECONDS.toNanos(Long.getLong("REBALANCE_HISTORY_INTERVAL_MS", 1000));
+    static final int MAX_SAMPLES = Integer.getInteger("REBALANCE_HISTORY_SAMPLES", 600);
+
+    static class Sample {
+        final long timestamp;
+        final double percentageMoved;
+        final long movedRows;
+        final double megabytesPerSecond;
+        final long estimatedRemaining;
+        final long rangeSize;
+        final double delay;
+        final double clientLatency;
+        final long latencyBudget;
+        final long pausedTime;
+        final long throttleCount;
+
+        Sample(long timestamp, double percentageMoved, long movedRows, double megabytesPerSecond,
+               long estimatedRemaining, long rangeSize, double delay, double clientLatency,
+               long latencyBudget, long pausedTime, long throttleCount)
+        {
+            this.timestamp = timestamp;
+            this.percentageMoved = percentageMoved;
+            this.movedRows = movedRows;
+            this.megabytesPerSecond = megabytesPerSecond;
+            this.estimatedRemaining = estimatedRemaining;
+            this.rangeSize = rangeSize;
+            this.delay = delay;
+            this.clientLatency = clientLatency;
+            this.latencyBudget = latencyBudget;
+            this.pausedTime = pausedTime;
+            this.throttleCount = throttleCount;
+        }
+    }
+
+    public static interface Constants
+    {
+        public final static String SAMPLE_TIME = "SAMPLE_TIME";
+        public final static String PERCENTAGE_MOVED = "PERCENTAGE_MOVED";
+        public final static String MOVED_ROWS = "MOVED_ROWS";
+        public final static String MEGABYTES_PER_SECOND = "MEGABYTES_PER_SECOND";
+        public final static String ESTIMATED_REMAINING = "ESTIMATED_REMAINING";
+        public final static String RANGE_SIZE = "RANGE_SIZE";
+        public final static String DELAY = "DELAY";
+        public final static String CLIENT_LATENCY_P99 = "CLIENT_LATENCY_P99";
+        public final static String LATENCY_BUDGET = "LATENCY_BUDGET";
+        public final static String PAUSED_TIME = "PAUSED_TIME";
+        public final static String THROTTLED_CALLS = "THROTTLED_CALLS";
+    }
+
+    private final ArrayDeque<Sample> m_samples = new ArrayDeque<Sample>();
+    private long m_lastSampleNanos = 0;
+    private long m_lastSampleBytes = 0;
+
+    public BalancePartitionsHistory()
+    {
+        super(false);
+    }
+
+    public synchronized void clear()
+    {
+        m_samples.clear();
+        m_lastSampleNanos = 0;
+        m_lastSampleBytes = 0;
+    }
+
+    /**
+     * Record a sample if a sample interval has passed since the last one.
+     * @param point      overall progress so far
+     * @param scheduler  scheduler that picks the next range
+     * @return true if a sample was recorded
+     */
+    public boolean sample(StatsPoint point, BalancePartitionsScheduler scheduler)
+    {
+        return sample(point, scheduler, System.nanoTime());
+    }
+
+    synchronized boolean sample(StatsPoint point, BalancePartitionsScheduler scheduler, long nowNanos)
+    {
+        if (m_lastSampleNanos != 0 && nowNanos - m_lastSampleNanos < SAMPLE_INTERVAL_NANOS) {
+            return false;
+        }
+
+        // Throughput since the previous sample rather than since the start
+        final long bytes = point.getMovedBytes();
+        double megabytesPerSecond = point.getMegabytesPerSecond();
+        if (m_lastSampleNanos != 0) {
+            final double seconds = (nowNanos - m_lastSampleNanos) / (double)TimeUnit.SECONDS.toNanos(1);
+            megabytesPerSecond = ((bytes - m_lastSampleBytes) / (1024.0 * 1024.0)) / seconds;
+        }
+        m_lastSampleNanos = nowNanos;
+        m_lastSampleBytes = bytes;
+
+        // Prefer the scheduler's estimate, it knows the current pacing
+        long estimatedRemaining =
+            scheduler.getEstimatedRemainingMillis(point.getTotalRanges() - point.getMovedRanges());
+        if (estimatedRemaining < 0) {
+            estimatedRemaining = (long)point.getEstimatedRemaining();
+        }
+
+        final double nanosPerMilli = TimeUnit.MILLISECONDS.toNanos(1);
+        final long p99 = scheduler.getLastClientLatencyNanos();
+        m_samples.addLast(new Sample(System.currentTimeMillis(),
+                                     point.getPercentageMoved(),
+                                     point.getMovedRows(),
+                                     megabytesPerSecond,
+                                     estimatedRemaining,
+                                     scheduler.nextRangeSize(),
+                                     scheduler.isPaused() ? 0.0 : scheduler.getDelayNanos() / nanosPerMilli,
+                                     p99 < 0 ? 0.0 : p99 / nanosPerMilli,
+                                     TimeUnit.NANOSECONDS.toMillis(scheduler.getLatencyBudgetNanos()),
+                                     TimeUnit.NANOSECONDS.toMillis(scheduler.getPausedNanos()),
+                                     scheduler.getThrottleCount()));
+        while (m_samples.size() > MAX_SAMPLES) {
+            m_samples.removeFirst();
+        }
+        return true;
+    }
+
+    synchronized int getSampleCount()
+    {
+        return m_samples.size();
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns)
+    {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo(Constants.SAMPLE_TIME, VoltType.BIGINT));
+        columns.add(new ColumnInfo(Constants.PERCENTAGE_MOVED, VoltType.FLOAT));
+        columns.add(new ColumnInfo(Constants.MOVED_ROWS, VoltType.BIGINT));
+        columns.add(new ColumnInfo(Constants.MEGABYTES_PER_SECOND, VoltType.FLOAT));
+        columns.add(new ColumnInfo(Constants.ESTIMATED_REMAINING, VoltType.BIGINT));
+        columns.add(new ColumnInfo(Constants.RANGE_SIZE, VoltType.BIGINT));
+        columns.add(new ColumnInfo(Constants.DELAY, VoltType.FLOAT));
+        columns.add(new ColumnInfo(Constants.CLIENT_LATENCY_P99, VoltType.FLOAT));
+        columns.add(new ColumnInfo(Constants.LATENCY_BUDGET, VoltType.BIGINT));
+        columns.add(new ColumnInfo(Constants.PAUSED_TIME, VoltType.BIGINT));
+        columns.add(new ColumnInfo(Constants.THROTTLED_CALLS, VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues)
+    {
+        final Sample sample = (Sample)rowKey;
+        rowValues[columnNameToIndex.get(Constants.SAMPLE_TIME)] = sample.timestamp;
+        rowValues[columnNameToIndex.get(Constants.PERCENTAGE_MOVED)] = sample.percentageMoved;
+        rowValues[columnNameToIndex.get(Constants.MOVED_ROWS)] = sample.movedRows;
+        rowValues[columnNameToIndex.get(Constants.MEGABYTES_PER_SECOND)] = sample.megabytesPerSecond;
+        rowValues[columnNameToIndex.get(Constants.ESTIMATED_REMAINING)] = sample.estimatedRemaining;
+        rowValues[columnNameToIndex.get(Constants.RANGE_SIZE)] = sample.rangeSize;
+        rowValues[columnNameToIndex.get(Constants.DELAY)] = sample.delay;
+        rowValues[columnNameToIndex.get(Constants.CLIENT_LATENCY_P99)] = sample.clientLatency;
+        rowValues[columnNameToIndex.get(Constants.LATENCY_BUDGET)] = sample.latencyBudget;
+        rowValues[columnNameToIndex.get(Constants.PAUSED_TIME)] = sample.pausedTime;
+        rowValues[columnNameToIndex.get(Constants.THROTTLED_CALLS)] = sample.throttleCount;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected synchronized Iterator<Object> getStatsRowKeyIterator(boolean interval)
+    {
+        // Iterate over a copy, samples keep arriving while the table is built
+        return new ArrayList<Object>(m_samples).iterator();
+    }
+}
@@ -0,0 +1,303 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.join;
+
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.voltcore.logging.VoltLogger;
+import org.voltdb.CatalogContext;
+import org.voltdb.ClientInterface;
+import org.voltdb.VoltDB;
+import org.voltdb.catalog.Systemsettings;
+import org.voltdb.dtxn.LatencyStats;
+
+import com.google_voltpatches.common.base.Supplier;
+
+/**
+ * Feedback controller that decides how big the next @BalancePartitions
+ * range should be and how long to wait before issuing it.
+ *
+ * After every call it is given the measured call and transfer times. The
+ * transfer time per unit of range predicts how big a range fits in the
+ * configured elastic duration, and the bytes moved give the pause needed to
+ * stay under the elastic throughput. On top of that the client p99 latency
+ * observed since the previous call is compared to the elastic latency
+ * budget: over budget the range size is halved and the pause doubled, well
+ * under budget the range grows back by a quarter per call and the pause
+ * relaxes. While any client interface applies transaction backpressure the
+ * rebalance is paused outright.
+ *
+ * The rebalance driver asks for {@link #nextRangeSize()} and
+ * {@link #nextDelayNanos()} before each call and reports the result through
+ * {@link BalancePartitionsStatistics#logBalanceEnds}.
+ */
+public class BalancePartitionsScheduler {
+    private static final VoltLogger log = new VoltLogger("JOIN");
+
+    /** Range size used until the first call has been measured */
+    static final long INITIAL_RANGE_SIZE = Long.getLong("ELASTIC_INITIAL_RANGE_SIZE", 1L << 20);
+    static final long MIN_RANGE_SIZE = Long.getLong("ELASTIC_MIN_RANGE_SIZE", 1L << 10);
+    static final long MAX_RANGE_SIZE = 1L << 32;
+    /** Longest pause the latency feedback will ask for */
+    static final long MAX_DELAY_NANOS = TimeUnit.SECONDS.toNanos(5);
+    /** How often to check again while paused on backpressure */
+    public static final long BACKPRESSURE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    /** Ranges may grow only while p99 stays below this fraction of the budget */
+    static final double LATENCY_HEADROOM = 0.8;
+    /** Weight of the newest measurement in the moving averages */
+    static final double SMOOTHING = 0.3;
+
+    private final Supplier<Long> m_clientLatencyP99Nanos;
+    private final Supplier<Boolean> m_backPressure;
+
+    private long m_targetDurationNanos = TimeUnit.MILLISECONDS.toNanos(50);
+    private long m_targetBytesPerSecond = 2L * 1024 * 1024;
+    private long m_latencyBudgetNanos = 0;
+
+    private long m_rangeSize = INITIAL_RANGE_SIZE;
+    private long m_paceDelayNanos = 0;
+    private long m_latencyDelayNanos = 0;
+    // Moving averages, negative until the first measurement
+    private double m_transferNanosPerRange = -1;
+    private double m_callNanosPerRange = -1;
+    private long m_lastClientLatencyNanos = -1;
+
+    private boolean m_paused = false;
+    private long m_pauseStartNanos = 0;
+    private long m_pausedNanos = 0;
+    private long m_throttleCount = 0;
+
+    /**
+     * Scheduler fed by the local client interface: p99 of the client
+     * latencies recorded between rebalance calls and its admission control
+     * backpressure.
+     */
+    public BalancePartitionsScheduler()
+    {
+        this(new Supplier<Long>() {
+                private AbstractHistogram m_previous = null;
+
+                @Override
+                public Long get()
+                {
+                    AbstractHistogram current = LatencyStats.snapshotHistogram();
+                    long p99 = -1;
+                    if (m_previous != null) {
+                        long micros = LatencyStats.getValueAtPercentileBetween(m_previous, current, 99.0);
+                        p99 = micros < 0 ? -1 : TimeUnit.MICROSECONDS.toNanos(micros);
+                    }
+                    m_previous = current;
+                    return p99;
+                }
+            },
+            new Supplier<Boolean>() {
+                @Override
+                public Boolean get()
+                {
+                    ClientInterface ci = VoltDB.instance().getClientInterface();
+                    return ci != null && ci.hasBackPressure();
+                }
+            });
+    }
+
+    /**
+     * @param clientLatencyP99Nanos  p99 client latency since it was last asked, negative if unknown
+     * @param backPressure           whether clients currently see backpressure
+     */
+    public BalancePartitionsScheduler(Supplier<Long> clientLatencyP99Nanos, Supplier<Boolean> backPressure)
+    {
+        m_clientLatencyP99Nanos = clientLatencyP99Nanos;
+        m_backPressure = backPressure;
+    }
+
+    /**
+     * Pick up the elastic duration, throughput and latency budget of the
+     * deployment.
+     */
+    public void updateConfig(CatalogContext context)
+    {
+        Systemsettings settings =
+            context.cluster.getDeployment().get("deployment").getSystemsettings().get("systemsettings");
+        if (settings != null) {
+            updateConfig(settings.getElasticduration(),
+                         settings.getElasticthroughput(),
+                         settings.getElasticlatency());
+        }
+    }
+
+    /**
+     * @param durationMillis     target time per call
+     * @param throughputMB       target megabytes moved per second
+     * @param latencyBudgetMillis  target client p99 while rebalancing, 0 for none
+     */
+    public synchronized void updateConfig(int durationMillis, int throughputMB, int latencyBudgetMillis)
+    {
+        m_targetDurationNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, durationMillis));
+        m_targetBytesPerSecond = Math.max(1, throughputMB) * 1024L * 1024L;
+        m_latencyBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, latencyBudgetMillis));
+    }
+
+    /**
+     * Forget what was learned about a previous rebalance.
+     */
+    public synchronized void reset()
+    {
+        m_rangeSize = INITIAL_RANGE_SIZE;
+        m_paceDelayNanos = 0;
+        m_latencyDelayNanos = 0;
+        m_transferNanosPerRange = -1;
+        m_callNanosPerRange = -1;
+        m_lastClientLatencyNanos = -1;
+        m_paused = false;
+        m_pausedNanos = 0;
+        m_throttleCount = 0;
+    }
+
+    /**
+     * Size of the hash range the next call should move.
+     */
+    public synchronized long nextRangeSize()
+    {
+        return m_rangeSize;
+    }
+
+    /**
+     * How long to wait before the next call. While clients see backpressure
+     * this is a short poll interval and {@link #isPaused()} is true; the
+     * driver is expected to ask again rather than issue the call.
+     */
+    public synchronized long nextDelayNanos()
+    {
+        final boolean backPressure = m_backPressure.get();
+        final long now = System.nanoTime();
+        if (backPressure && !m_paused) {
+            m_paused = true;
+            m_pauseStartNanos = now;
+            log.info("Pausing rebalance while clients are under backpressure");
+        } else if (!backPressure && m_paused) {
+            m_paused = false;
+            m_pausedNanos += now - m_pauseStartNanos;
+            log.info("Resuming rebalance after " +
+                     TimeUnit.NANOSECONDS.toMillis(now - m_pauseStartNanos) + " ms of backpressure");
+        }
+        if (m_paused) {
+            return BACKPRESSURE_POLL_NANOS;
+        }
+        return getDelayNanos();
+    }
+
+    /** Pause the pacing and latency feedback currently ask for, ignoring backpressure */
+    public synchronized long getDelayNanos()
+    {
+        return Math.max(m_paceDelayNanos, m_latencyDelayNanos);
+    }
+
+    public synchronized boolean isPaused()
+    {
+        return m_paused;
+    }
+
+    /**
+     * Adjust range size and pacing to the measurements of a finished call.
+     */
+    public synchronized void update(long rangeSizeMoved, long bytesTransferred,
+                                    long callTimeNanos, long transferTimeNanos)
+    {
+        if (rangeSizeMoved > 0) {
+            m_transferNanosPerRange = smooth(m_transferNanosPerRange,
+                                             transferTimeNanos / (double)rangeSizeMoved);
+            m_callNanosPerRange = smooth(m_callNanosPerRange,
+                                         callTimeNanos / (double)rangeSizeMoved);
+        }
+
+        // Largest range whose transfer fits in the target duration
+        long durationRangeSize = MAX_RANGE_SIZE;
+        if (m_transferNanosPerRange > 0) {
+            durationRangeSize = clampRange((long)(m_targetDurationNanos / m_transferNanosPerRange));
+        }
+
+        // Wait long enough that the bytes just moved average out to the target throughput
+        final long bytesNanos = TimeUnit.SECONDS.toNanos(bytesTransferred) / m_targetBytesPerSecond;
+        m_paceDelayNanos = Math.max(0, bytesNanos - callTimeNanos);
+
+        final long p99 = m_clientLatencyP99Nanos.get();
+        m_lastClientLatencyNanos = p99;
+        if (m_latencyBudgetNanos > 0 && p99 > m_latencyBudgetNanos) {
+            // Over budget, back off quickly
+            m_throttleCount++;
+            m_rangeSize = clampRange(Math.min(m_rangeSize / 2, durationRangeSize));
+            m_latencyDelayNanos = Math.min(MAX_DELAY_NANOS,
+                                           Math.max(m_latencyDelayNanos * 2, callTimeNanos));
+        } else if (m_latencyBudgetNanos == 0 || p99 < m_latencyBudgetNanos * LATENCY_HEADROOM) {
+            // Headroom left, creep back up towards what the duration allows
+            m_rangeSize = clampRange(Math.min(m_rangeSize + Math.max(1, m_rangeSize / 4), durationRangeSize));
+            m_latencyDelayNanos /= 2;
+        } else {
+            // Close to the budget, hold the size but respect the duration
+            m_rangeSize = clampRange(Math.min(m_rangeSize, durationRangeSize));
+        }
+    }
+
+    /**
+     * Estimated milliseconds to move the remaining range at the current
+     * size and pacing, or -1 before anything has been measured.
+     */
+    public synchronized long getEstimatedRemainingMillis(long remainingRangeSize)
+    {
+        if (m_callNanosPerRange < 0 || m_rangeSize <= 0) {
+            return -1;
+        }
+        final double calls = Math.ceil(remainingRangeSize / (double)m_rangeSize);
+        final double perCallNanos = m_callNanosPerRange * m_rangeSize + getDelayNanos();
+        return TimeUnit.NANOSECONDS.toMillis((long)(calls * perCallNanos));
+    }
+
+    public synchronized long getLatencyBudgetNanos()
+    {
+        return m_latencyBudgetNanos;
+    }
+
+    /** Client p99 seen after the last call, negative if none was recorded */
+    public synchronized long getLastClientLatencyNanos()
+    {
+        return m_lastClientLatencyNanos;
+    }
+
+    /** Nanoseconds spent paused on backpressure, including a pause in progress */
+    public synchronized long getPausedNanos()
+    {
+        return m_paused ? m_pausedNanos + System.nanoTime() - m_pauseStartNanos : m_pausedNanos;
+    }
+
+    /** Number of calls after which the range was cut for exceeding the latency budget */
+    public synchronized long getThrottleCount()
+    {
+        return m_throttleCount;
+    }
+
+    private static double smooth(double average, double sample)
+    {
+        return average < 0 ? sample : average + SMOOTHING * (sample - average);
+    }
+
+    private static long clampRange(long rangeSize)
+    {
+        return Math.max(MIN_RANGE_SIZE, Math.min(MAX_RANGE_SIZE, rangeSize));
+    }
+}
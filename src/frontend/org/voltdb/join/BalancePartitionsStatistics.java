@@ -60,14 +60,23 @@ public class BalancePartitionsStatistics extends StatsSource {
     private StatsPoint intervalStats;
     private StatsPoint overallStats;
 
+    private final BalancePartitionsScheduler scheduler;
+    private final BalancePartitionsHistory history = new BalancePartitionsHistory();
+
     public BalancePartitionsStatistics()
     {
         this(0L);
     }
 
     public BalancePartitionsStatistics(long totalRangeSize)
+    {
+        this(totalRangeSize, new BalancePartitionsScheduler());
+    }
+
+    public BalancePartitionsStatistics(long totalRangeSize, BalancePartitionsScheduler scheduler)
     {
         super(false);
+        this.scheduler = scheduler;
         initialize(totalRangeSize);
     }
 
@@ -84,6 +93,9 @@ public class BalancePartitionsStatistics extends StatsSource {
         this.statsPoint = new StatsPoint("Point", totalRangeSize);
 
         this.bytesTransferredInLastSec.clear();
+
+        this.scheduler.reset();
+        this.history.clear();
     }
 
     public void logBalanceStarts()
@@ -127,6 +139,10 @@ public class BalancePartitionsStatistics extends StatsSource {
 
         markStatsPoint();
 
+        // Size and pace the next call from what this one measured
+        scheduler.update(rangeSizeMoved, bytesTransferred, callTimeNanos, transferTimeNanos);
+        history.sample(overallStats, scheduler);
+
         // Close out the interval and log statistics every logIntervalSeconds seconds.
         if (now - lastReportTime > logIntervalNanos && now != lastReportTime) {
             lastReportTime = now;
@@ -139,6 +155,22 @@ public class BalancePartitionsStatistics extends StatsSource {
         return throughput;
     }
 
+    /**
+     * The scheduler that sizes and paces the ranges of this rebalance
+     */
+    public BalancePartitionsScheduler getScheduler()
+    {
+        return scheduler;
+    }
+
+    /**
+     * Progress samples over time, the source of @Statistics REBALANCE_HISTORY
+     */
+    public BalancePartitionsHistory getHistory()
+    {
+        return history;
+    }
+
     private void startInterval()
     {
         this.intervalStats = new StatsPoint("Interval", totalRangeSize);
@@ -352,6 +384,21 @@ public class BalancePartitionsStatistics extends StatsSource {
             return movedRows;
         }
 
+        long getTotalRanges()
+        {
+            return totalRanges;
+        }
+
+        long getMovedRanges()
+        {
+            return movedRanges;
+        }
+
+        long getMovedBytes()
+        {
+            return movedBytes;
+        }
+
         // Derive duration from start/end times.
         long getDurationMillis()
         {
@@ -112,6 +112,23 @@ public class SQLParser extends SQLPatternFactory
             SPF.optional(SPF.clause(SPF.token("parameter"), SPF.capture(SPF.integer())))
         ).compile("PAT_PARTITION_PROCEDURE");
 
+    /**
+     * COMPRESS TABLE tablename COLUMN columnname [DISABLE]
+     *
+     * NB supports only unquoted table and column names
+     *
+     * Capture groups:
+     *  (1) Table name
+     *  (2) Column name
+     *  (3) DISABLE or null
+     */
+    private static final Pattern PAT_COMPRESS_TABLE =
+        SPF.statement(
+            SPF.token("compress"), SPF.token("table"), SPF.capture(SPF.databaseObjectName()),
+            SPF.token("column"), SPF.capture(SPF.databaseObjectName()),
+            SPF.optional(SPF.capture(SPF.token("disable")))
+        ).compile("PAT_COMPRESS_TABLE");
+
     //TODO: Convert to pattern factory usage below this point.
 
     /*
@@ -307,6 +324,7 @@ public class SQLParser extends SQLPatternFactory
             "\\AREPLICATE|" +
             "\\AEXPORT|" +
             "\\AIMPORT|" +
+            "\\ACOMPRESS|" +
             "\\ADR" +
             ")" +                                  // end (group 1)
             "\\s" +                                // one required whitespace to terminate keyword
@@ -579,6 +597,16 @@ public class SQLParser extends SQLPatternFactory
         return PAT_PARTITION_ANY_PREAMBLE.matcher(statement);
     }
 
+    /**
+     * Match statement against pattern for compress table statement
+     * @param statement  statement to match against
+     * @return           pattern matcher object
+     */
+    public static Matcher matchCompressTable(String statement)
+    {
+        return PAT_COMPRESS_TABLE.matcher(statement);
+    }
+
     /**
      * Match statement against pattern for partition table statement
      * @param statement  statement to match against
@@ -17,6 +17,8 @@
 
 package org.voltdb.planner;
 
+import org.voltdb.compiler.DatabaseEstimates;
+
 /**
  * Abstract base class for the code that computes plan cost given
  * a set of statistics for a plan.
@@ -32,4 +34,16 @@ public abstract class AbstractCostModel {
      * @return The computed cost of the plan.
      */
     public abstract double getPlanCost(PlanStatistics stats);
+
+    /**
+     * Gets the table and index estimates the plan nodes should compute
+     * their statistics from. Cost models that know more about the data
+     * than the planner's defaults can substitute their own.
+     *
+     * @param defaults The estimates the planner was configured with.
+     * @return The estimates to cost plans with.
+     */
+    public DatabaseEstimates getEstimates(DatabaseEstimates defaults) {
+        return defaults;
+    }
 }
@@ -17,60 +17,113 @@
 
 package org.voltdb.planner;
 
-import java.util.HashMap;
-import java.util.Map.Entry;
-import java.util.TreeMap;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.json_voltpatches.JSONException;
 import org.voltdb.jni.ExecutionEngine;
 import org.voltdb.jni.Sha1Wrapper;
 
+/**
+ * The plan fragments known to this process, shared by every site and the ad hoc path.
+ *
+ * Lookups take no locks. Fragments are reference counted atomically, and an unreferenced
+ * fragment is only removed by swinging its count from 0 to EVICTED, so a thread that finds
+ * a fragment in the maps either references it before eviction or sees that it lost the
+ * race and loads it again. Eviction is a CLOCK sweep: each use sets a fragment's
+ * recentlyUsed bit, and the hand clears the bit and passes over it once before evicting it.
+ */
 public abstract class ActivePlanRepository {
 
+    /// The reference count of a fragment that has been evicted and must not be used.
+    private static final int EVICTED = -1;
+
     /// A plan fragment entry in the cache.
     private static class FragInfo {
         final Sha1Wrapper hash;
         final long fragId;
         final byte[] plan;
-        int refCount;
-        /// The ticker value current when this fragment was last (dis)used.
-        /// A new FragInfo or any other not in the LRU map because it is being referenced has value 0.
-        /// A non-zero value is either the fragment's current key in the LRU map OR its intended/future
-        /// key, if it has been lazily updated after the fragment was reused.
-        long lastUse;
+        /// Starts at 1 for the caller that loads the fragment.
+        final AtomicInteger refCount = new AtomicInteger(1);
+        /// The CLOCK reference bit, set on every use and cleared by the eviction hand.
+        volatile boolean recentlyUsed = true;
         /// The statement text for this fragment.  For ad hoc queries this may be null, since
         /// there is no single statement text---ad hoc queries that differ only by their constants
         /// reuse the same plan.
-        String stmtText;
+        volatile String stmtText;
 
         FragInfo(Sha1Wrapper key, byte[] plan, long nextId, String stmtText)
         {
             this.hash = key;
             this.plan = plan;
             this.fragId = nextId;
-            this.refCount = 0;
-            this.lastUse = 0;
             this.stmtText = stmtText;
         }
     }
 
-    private static HashMap<Sha1Wrapper, FragInfo> m_plansByHash = new HashMap<Sha1Wrapper, FragInfo>();
-    private static HashMap<Long, FragInfo> m_plansById = new HashMap<Long, FragInfo>();
-    private static TreeMap<Long, FragInfo> m_plansLRU = new TreeMap<Long, FragInfo>();
+    /**
+     * Counts of the times threads got in each other's way, since startup or the last clear().
+     * Uncontended lookups are deliberately not counted, so the hot path shares no counters.
+     */
+    public static class ContentionStats {
+        /// New fragments loaded into the repository.
+        public final long loads;
+        /// Loads discarded because another thread loaded the same plan first.
+        public final long loadRaces;
+        /// Reference count updates retried because another thread changed the count.
+        public final long refCountRetries;
+        /// Lookups that found a fragment just as it was evicted, and loaded it again.
+        public final long evictionRaces;
+        /// Fragments evicted.
+        public final long evictions;
+        /// Eviction sweeps left to the thread already sweeping.
+        public final long sweepsSkipped;
+
+        private ContentionStats() {
+            loads = m_loads.get();
+            loadRaces = m_loadRaces.get();
+            refCountRetries = m_refCountRetries.get();
+            evictionRaces = m_evictionRaces.get();
+            evictions = m_evictions.get();
+            sweepsSkipped = m_sweepsSkipped.get();
+        }
+
+        @Override
+        public String toString() {
+            return "loads " + loads + ", load races " + loadRaces +
+                    ", refcount retries " + refCountRetries + ", eviction races " + evictionRaces +
+                    ", evictions " + evictions + ", sweeps skipped " + sweepsSkipped;
+        }
+    }
+
+    private static final ConcurrentHashMap<Sha1Wrapper, FragInfo> m_plansByHash =
+            new ConcurrentHashMap<Sha1Wrapper, FragInfo>();
+    private static final ConcurrentHashMap<Long, FragInfo> m_plansById =
+            new ConcurrentHashMap<Long, FragInfo>();
     /// A ticker that provides temporary ids for all cached fragments, for communicating with the EE.
     private static final long INITIAL_FRAG_ID = 5000;
-    private static long m_nextFragId = INITIAL_FRAG_ID;
-    /// A ticker that allows the sequencing of all fragment uses, providing a key to the LRU map.
-    private static long m_nextFragUse = 1;
+    private static final AtomicLong m_nextFragId = new AtomicLong(INITIAL_FRAG_ID);
+
+    /// Held by the one thread sweeping for fragments to evict. Guards m_clockHand.
+    private static final ReentrantLock m_evictionLock = new ReentrantLock();
+    /// The CLOCK hand, a weakly consistent walk over m_plansById that restarts when it runs out.
+    private static Iterator<FragInfo> m_clockHand = null;
+
+    private static final AtomicLong m_loads = new AtomicLong();
+    private static final AtomicLong m_loadRaces = new AtomicLong();
+    private static final AtomicLong m_refCountRetries = new AtomicLong();
+    private static final AtomicLong m_evictionRaces = new AtomicLong();
+    private static final AtomicLong m_evictions = new AtomicLong();
+    private static final AtomicLong m_sweepsSkipped = new AtomicLong();
 
     /**
      * Get the site-local fragment id for a given plan identified by 20-byte sha-1 hash
      */
     public static long getFragmentIdForPlanHash(byte[] planHash) {
-        Sha1Wrapper key = new Sha1Wrapper(planHash);
-        FragInfo frag = null;
-        synchronized (FragInfo.class) {
-            frag = m_plansByHash.get(key);
-        }
+        FragInfo frag = m_plansByHash.get(new Sha1Wrapper(planHash));
         assert(frag != null);
         return frag.fragId;
     }
@@ -79,11 +132,7 @@ public abstract class ActivePlanRepository {
      * Get the statement text for the fragment identified by its hash
      */
     public static String getStmtTextForPlanHash(byte[] planHash) {
-        Sha1Wrapper key = new Sha1Wrapper(planHash);
-        FragInfo frag = null;
-        synchronized (FragInfo.class) {
-            frag = m_plansByHash.get(key);
-        }
+        FragInfo frag = m_plansByHash.get(new Sha1Wrapper(planHash));
         assert(frag != null);
         // SQL statement text is not stored in the repository for ad hoc statements
         // -- it may be inaccurate because we parameterize the statement on its constants.
@@ -99,87 +148,137 @@ public abstract class ActivePlanRepository {
      */
     public static long loadOrAddRefPlanFragment(byte[] planHash, byte[] plan, String stmtText) {
         Sha1Wrapper key = new Sha1Wrapper(planHash);
-        synchronized (FragInfo.class) {
+        while (true) {
             FragInfo frag = m_plansByHash.get(key);
             if (frag == null) {
-                frag = new FragInfo(key, plan, m_nextFragId++, stmtText);
-                m_plansByHash.put(frag.hash, frag);
-                m_plansById.put(frag.fragId, frag);
-                if (m_plansById.size() > ExecutionEngine.EE_PLAN_CACHE_SIZE) {
-                    evictLRUfragment();
+                FragInfo loaded = new FragInfo(key, encodeForEE(plan), m_nextFragId.getAndIncrement(), stmtText);
+                // Publish by id first, so that any thread that finds the fragment by hash
+                // can hand its id to the EE.
+                m_plansById.put(loaded.fragId, loaded);
+                frag = m_plansByHash.putIfAbsent(key, loaded);
+                if (frag == null) {
+                    m_loads.incrementAndGet();
+                    if (m_plansById.size() > ExecutionEngine.EE_PLAN_CACHE_SIZE) {
+                        evictUnusedFragments();
+                    }
+                    return loaded.fragId;
                 }
+                // Another thread loaded the same plan first. Use that one.
+                m_plansById.remove(loaded.fragId, loaded);
+                m_loadRaces.incrementAndGet();
             }
 
-            // Bit of a hack to work around an issue where a statement-less adhoc
-            // fragment could be identical to a statement-needing regular procedure.
-            // This doesn't really address the broader issue that fragment hashes
-            // are not 1-1 with SQL statements.
-            if (frag.stmtText == null) {
-                frag.stmtText = stmtText;
+            if (addRef(frag)) {
+                // Bit of a hack to work around an issue where a statement-less adhoc
+                // fragment could be identical to a statement-needing regular procedure.
+                // This doesn't really address the broader issue that fragment hashes
+                // are not 1-1 with SQL statements.
+                if (frag.stmtText == null) {
+                    frag.stmtText = stmtText;
+                }
+                return frag.fragId;
             }
 
-            // The fragment MAY be in the LRU map.
-            // An incremented refCount is a lazy way to keep it safe from eviction
-            // without having to update the map.
-            // This optimizes for popular fragments in a small or stable cache that may be reused
-            // many times before the eviction process needs to take any notice.
-            frag.refCount++;
-            return frag.fragId;
+            // The fragment was evicted after we found it. Make sure it is gone and load it again.
+            m_plansByHash.remove(key, frag);
+            m_evictionRaces.incrementAndGet();
+        }
+    }
+
+    /**
+     * Reference a fragment unless it has already been evicted.
+     */
+    private static boolean addRef(FragInfo frag) {
+        while (true) {
+            int count = frag.refCount.get();
+            if (count == EVICTED) {
+                return false;
+            }
+            if (frag.refCount.compareAndSet(count, count + 1)) {
+                frag.recentlyUsed = true;
+                return true;
+            }
+            m_refCountRetries.incrementAndGet();
         }
     }
 
-    private static void evictLRUfragment() {
-        /// Evict the least recently used fragment (if any are currently unused).
-        /// Along the way, update any obsolete entries that were left
-        /// by the laziness of the fragment state changes (fragment reuse).
-        /// In the rare case of a cache bloated beyond its usual limit,
-        /// keep evicting as needed and as entries are available until the bloat is gone.
+    /**
+     * Catalog plans are stored as JSON. Transcode them once, here, so that every
+     * EE load and every copy sent to other partitions uses the binary encoding.
+     */
+    private static byte[] encodeForEE(byte[] plan) {
+        if (BinaryPlanWriter.JSON_PLANS || BinaryPlanReader.isBinaryPlan(plan)) {
+            return plan;
+        }
+        try {
+            return BinaryPlanWriter.encode(plan);
+        }
+        catch (JSONException e) {
+            // Let the EE report the plan it can't parse.
+            return plan;
+        }
+    }
 
-        while ( ! m_plansLRU.isEmpty()) {
-            // Remove the earliest entry.
-            Entry<Long, FragInfo> lru = m_plansLRU.pollFirstEntry();
-            FragInfo frag = lru.getValue();
-            if (frag.refCount > 0) {
-                // The fragment is being re-used, it is no longer an eviction candidate.
-                // It is only in the map due to the laziness in loadOrAddRefPlanFragment.
-                // It will be re-considered (at a later key) once it is no longer referenced.
-                // Resetting its lastUse to 0, here, restores it to a state identical to that
-                // of a new fragment.
-                // It eventually causes decrefPlanFragmentById to put it back in the map
-                // at its then up-to-date key.
-                // This makes it safe to keep out of the LRU map for now.
-                // See the comment in decrefPlanFragmentById and the one in the next code block.
-                frag.lastUse = 0;
+    private static void evictUnusedFragments() {
+        /// Only one thread sweeps at a time. Any other thread that finds the cache too big
+        /// leaves the job to it rather than waiting, so the sweeping thread checks again
+        /// after it lets go, in case fragments were added after its last look.
+        while (m_plansById.size() > ExecutionEngine.EE_PLAN_CACHE_SIZE) {
+            if ( ! m_evictionLock.tryLock()) {
+                m_sweepsSkipped.incrementAndGet();
+                return;
+            }
+            try {
+                if ( ! sweep()) {
+                    return;
+                }
+            }
+            finally {
+                m_evictionLock.unlock();
             }
-            else if (lru.getKey() != frag.lastUse) {
-                // The fragment is not in use but has been re-used more recently than the key reflects.
-                // This is a result of the laziness in decrefPlanFragmentById.
-                // Correct the entry's key in the LRU map to reflect its last use.
-                // This may STILL be the least recently used entry.
-                // If so, it will be picked off in a later iteration of this loop;
-                // its key will now match its lastUse value.
-                m_plansLRU.put(frag.lastUse, frag);
+        }
+    }
+
+    /**
+     * Sweep the CLOCK hand over the fragments until the cache is back to its usual size.
+     * Referenced fragments are skipped, and recently used ones get their bit cleared
+     * and a second chance.
+     * @return false if every fragment is in use, so there is nothing to evict.
+     */
+    private static boolean sweep() {
+        // Other threads keep adding fragments while this one sweeps, so keep going until
+        // the cache is small enough, not just for a fixed number of steps.
+        // Two full turns of the hand without an eviction clear every bit and visit every
+        // fragment again, so every fragment is in use. Let the cache bloat a little and
+        // try again later after the next new fragment.
+        int stepsSinceEviction = 0;
+        while (m_plansById.size() > ExecutionEngine.EE_PLAN_CACHE_SIZE) {
+            if (stepsSinceEviction++ > 2 * m_plansById.size()) {
+                return false;
             }
-            else {
-                // Found and removed the actual up-to-date least recently used entry from the LRU map.
-                // Remove the entry from the other collections.
-                m_plansById.remove(frag.fragId);
-                m_plansByHash.remove(frag.hash);
-                // Normally, one eviction for each new fragment is enough to restore order.
-                // BUT, if a prior call ever failed to find an unused fragment in the cache,
-                // the cache may have grown beyond its normal size. In that rare case,
-                // one eviction is not enough to reduce the cache to the desired size,
-                // so take another bite at the apple.
-                // Otherwise, trading exactly one evicted fragment for each new fragment
-                // would never reduce the cache.
-                if (m_plansById.size() > ExecutionEngine.EE_PLAN_CACHE_SIZE) {
-                     continue;
+            if (m_clockHand == null || ! m_clockHand.hasNext()) {
+                m_clockHand = m_plansById.values().iterator();
+                if ( ! m_clockHand.hasNext()) {
+                    return false;
                 }
-                return;
+            }
+            FragInfo frag = m_clockHand.next();
+            if (frag.refCount.get() != 0) {
+                continue;
+            }
+            if (frag.recentlyUsed) {
+                frag.recentlyUsed = false;
+                continue;
+            }
+            // Loses to any thread that references the fragment first.
+            if (frag.refCount.compareAndSet(0, EVICTED)) {
+                m_plansById.remove(frag.fragId, frag);
+                m_plansByHash.remove(frag.hash, frag);
+                m_evictions.incrementAndGet();
+                stepsSinceEviction = 0;
             }
         }
-        // Strange. All FragInfo entries appear to be in use. There's nothing to evict.
-        // Let the cache bloat a little and try again later after the next new fragment.
+        return true;
     }
 
     /**
@@ -190,51 +289,33 @@ public abstract class ActivePlanRepository {
         // skip dummy/invalid fragment ids
         if (fragmentId <= 0) return;
 
-        FragInfo frag = null;
-        synchronized (FragInfo.class) {
-            frag = m_plansById.get(fragmentId);
-            // The assert that used to be here would fail in TestAdHocQueries when it
-            // re-initialized the RealVoltDB, clearing the m_plansById before
-            // all SQLStmts were finalized. Maybe that's just a "test bug" that would be
-            // better fixed with some kind of test-only cleanup hook?
-            // OR It's possible that this early return is covering for a minor bug.
-            // Maybe SQLStmt.finalize is calling this method when it shouldn't?
-            // Maybe that's because the SQLStmt site member should be null in more cases?
-            //assert(frag != null);
-            if (frag == null) {
-                return;
-            }
-            if (--frag.refCount == 0) {
-                // The disused fragment belongs in the LRU map at the end -- at the current "ticker".
-                // If its lastUse value is 0 like a new entry's, it is not currently in the map.
-                // Put into the map in its proper position.
-                // If it is already in the LRU map (at a "too early" entry), just set its lastUse value
-                // as a cheap way to notify evictLRUfragment that it is not ready for eviction but
-                // should instead be re-ordered further forward in the map.
-                // This re-ordering only needs to happen when the eviction process considers the entry.
-                // For a popular fragment in a small or stable cache, that may be after MANY
-                // re-uses like this.
-                // This prevents thrashing of the LRU map, repositioning recent entries.
-                boolean notInLRUmap = (frag.lastUse == 0); // check this BEFORE updating lastUse
-                frag.lastUse = ++m_nextFragUse;
-                if (notInLRUmap) {
-                    m_plansLRU.put(frag.lastUse, frag);
-                }
-            }
+        FragInfo frag = m_plansById.get(fragmentId);
+        // The assert that used to be here would fail in TestAdHocQueries when it
+        // re-initialized the RealVoltDB, clearing the m_plansById before
+        // all SQLStmts were finalized. Maybe that's just a "test bug" that would be
+        // better fixed with some kind of test-only cleanup hook?
+        // OR It's possible that this early return is covering for a minor bug.
+        // Maybe SQLStmt.finalize is calling this method when it shouldn't?
+        // Maybe that's because the SQLStmt site member should be null in more cases?
+        //assert(frag != null);
+        if (frag == null) {
+            return;
         }
+        // Set the bit before the count can reach 0, so a disused fragment always
+        // gets its second chance from the eviction hand.
+        frag.recentlyUsed = true;
+        int count = frag.refCount.decrementAndGet();
+        assert(count >= 0);
     }
 
     /**
-     * Get the full JSON plan associated with a given site-local fragment id.
+     * Get the full plan, usually binary encoded, associated with a given site-local fragment id.
      * Called by the EE
      */
     public static byte[] planForFragmentId(long fragmentId) {
         assert(fragmentId > 0);
 
-        FragInfo frag = null;
-        synchronized (FragInfo.class) {
-            frag = m_plansById.get(fragmentId);
-        }
+        FragInfo frag = m_plansById.get(fragmentId);
         assert(frag != null);
         return frag.plan;
     }
@@ -242,20 +323,34 @@ public abstract class ActivePlanRepository {
     @Deprecated
     public static void addFragmentForTest(long fragmentId, byte[] plan, String stmtText) {
         Sha1Wrapper key = new Sha1Wrapper(new byte[20]);
-        synchronized (FragInfo.class) {
-            FragInfo frag = new FragInfo(key, plan, fragmentId, stmtText);
-            m_plansById.put(frag.fragId, frag);
-            frag.refCount++;
-        }
+        FragInfo frag = new FragInfo(key, plan, fragmentId, stmtText);
+        m_plansById.put(frag.fragId, frag);
+    }
+
+    static boolean hasPlanForTest(byte[] planHash) {
+        return m_plansByHash.containsKey(new Sha1Wrapper(planHash));
+    }
+
+    public static ContentionStats getContentionStats() {
+        return new ContentionStats();
     }
 
     public static void clear() {
-        synchronized (FragInfo.class) {
+        m_evictionLock.lock();
+        try {
             m_plansById.clear();
             m_plansByHash.clear();
-            m_plansLRU.clear();
-            m_nextFragId = INITIAL_FRAG_ID;
-            m_nextFragUse = 1;
+            m_clockHand = null;
+            m_nextFragId.set(INITIAL_FRAG_ID);
+            m_loads.set(0);
+            m_loadRaces.set(0);
+            m_refCountRetries.set(0);
+            m_evictionRaces.set(0);
+            m_evictions.set(0);
+            m_sweepsSkipped.set(0);
+        }
+        finally {
+            m_evictionLock.unlock();
         }
     }
 }
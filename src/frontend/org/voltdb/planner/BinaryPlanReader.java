@@ -0,0 +1,171 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.planner;
+
+import org.json_voltpatches.JSONArray;
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.voltdb.common.Constants;
+
+/**
+ * Decodes plans written by {@link BinaryPlanWriter} back into JSON objects,
+ * for the frontend code (explain, debugging output) that inspects plans.
+ * Every method also accepts plans that are still JSON text.
+ */
+public class BinaryPlanReader {
+
+    private final byte[] m_plan;
+    private int m_pos;
+    private String[] m_keys;
+
+    private BinaryPlanReader(byte[] plan) {
+        m_plan = plan;
+        m_pos = 2;
+    }
+
+    public static boolean isBinaryPlan(byte[] plan) {
+        return plan != null && plan.length >= 2 && plan[0] == BinaryPlanWriter.MAGIC;
+    }
+
+    /**
+     * Decode a plan, binary or JSON, into a JSONObject.
+     */
+    public static JSONObject toJSONObject(byte[] plan) throws JSONException {
+        if (!isBinaryPlan(plan)) {
+            return new JSONObject(new String(plan, Constants.UTF8ENCODING));
+        }
+        Object root = new BinaryPlanReader(plan).decode();
+        if (!(root instanceof JSONObject)) {
+            throw new JSONException("Binary plan is not an object");
+        }
+        return (JSONObject) root;
+    }
+
+    /**
+     * The plan as JSON text, whichever encoding it is in.
+     * Intended for logging, so a corrupt plan yields a description rather than an exception.
+     */
+    public static String toJSONString(byte[] plan) {
+        if (!isBinaryPlan(plan)) {
+            return new String(plan, Constants.UTF8ENCODING);
+        }
+        try {
+            return new BinaryPlanReader(plan).decode().toString();
+        }
+        catch (JSONException e) {
+            return "Unreadable " + plan.length + " byte binary plan: " + e.getMessage();
+        }
+    }
+
+    private Object decode() throws JSONException {
+        if (m_plan[1] != BinaryPlanWriter.VERSION) {
+            throw new JSONException("Unsupported binary plan version " + m_plan[1]);
+        }
+        m_keys = new String[(int) readVarint()];
+        for (int i = 0; i < m_keys.length; i++) {
+            m_keys[i] = readString();
+        }
+        Object root = readValue(readByte());
+        if (m_pos != m_plan.length) {
+            throw new JSONException("Binary plan has " + (m_plan.length - m_pos) + " unexpected trailing bytes");
+        }
+        return root;
+    }
+
+    private Object readValue(byte tag) throws JSONException {
+        switch (tag) {
+        case BinaryPlanWriter.TAG_NULL:
+            return JSONObject.NULL;
+        case BinaryPlanWriter.TAG_FALSE:
+            return Boolean.FALSE;
+        case BinaryPlanWriter.TAG_TRUE:
+            return Boolean.TRUE;
+        case BinaryPlanWriter.TAG_INT: {
+            long zigzag = readVarint();
+            long value = (zigzag >>> 1) ^ -(zigzag & 1);
+            // JSONObject would have parsed the text as an Integer if it fits
+            if (value == (int) value) {
+                return Integer.valueOf((int) value);
+            }
+            return Long.valueOf(value);
+        }
+        case BinaryPlanWriter.TAG_DOUBLE: {
+            need(8);
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | (m_plan[m_pos++] & 0xff);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+        case BinaryPlanWriter.TAG_STRING:
+            return readString();
+        case BinaryPlanWriter.TAG_ARRAY: {
+            JSONArray array = new JSONArray();
+            byte elementTag;
+            while ((elementTag = readByte()) != BinaryPlanWriter.TAG_END) {
+                array.put(readValue(elementTag));
+            }
+            return array;
+        }
+        case BinaryPlanWriter.TAG_OBJECT: {
+            JSONObject object = new JSONObject();
+            long keyIndex;
+            while ((keyIndex = readVarint()) != 0) {
+                if (keyIndex > m_keys.length) {
+                    throw new JSONException("Binary plan refers to unknown key " + keyIndex);
+                }
+                object.put(m_keys[(int) keyIndex - 1], readValue(readByte()));
+            }
+            return object;
+        }
+        default:
+            throw new JSONException("Binary plan has unknown tag " + tag);
+        }
+    }
+
+    private String readString() throws JSONException {
+        int length = (int) readVarint();
+        need(length);
+        String s = new String(m_plan, m_pos, length, Constants.UTF8ENCODING);
+        m_pos += length;
+        return s;
+    }
+
+    private long readVarint() throws JSONException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = readByte();
+            result |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new JSONException("Binary plan has a malformed varint");
+    }
+
+    private byte readByte() throws JSONException {
+        need(1);
+        return m_plan[m_pos++];
+    }
+
+    private void need(int bytes) throws JSONException {
+        if (bytes < 0 || m_plan.length - m_pos < bytes) {
+            throw new JSONException("Binary plan is truncated");
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.planner;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.json_voltpatches.JSONArray;
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.json_voltpatches.JSONString;
+import org.json_voltpatches.JSONStringer;
+import org.json_voltpatches.JSONTokener;
+import org.json_voltpatches.JSONWriter;
+import org.voltdb.common.Constants;
+
+/**
+ * A JSONStringer that writes the compact binary plan encoding the EE loads
+ * without parsing text. Plan nodes and expressions serialize themselves
+ * through the JSONStringer calls they already make, so handing them one of
+ * these instead yields the same document in binary.
+ *
+ * The encoding is a zero byte (which can never start JSON text), a version
+ * byte, the distinct keys in order of first use, then the root value. Each
+ * value is a tag byte followed by:
+ * <ul>
+ * <li>INT: the zig-zag varint value</li>
+ * <li>DOUBLE: 8 bytes of big endian IEEE 754</li>
+ * <li>STRING: the varint byte length and the UTF-8 bytes</li>
+ * <li>ARRAY: the elements, then an END tag</li>
+ * <li>OBJECT: pairs of varint (key index + 1) and value, then a 0</li>
+ * </ul>
+ * Numbers are typed the way the EE's JSON parser would have read the text
+ * JSONStringer writes for them, so plans decode to identical DOMs either way.
+ * Keep in sync with PlannerDomValue.cpp.
+ */
+public class BinaryPlanWriter extends JSONStringer {
+
+    public static final byte MAGIC = 0;
+    public static final byte VERSION = 1;
+
+    static final byte TAG_NULL = 0;
+    static final byte TAG_FALSE = 1;
+    static final byte TAG_TRUE = 2;
+    static final byte TAG_INT = 3;
+    static final byte TAG_DOUBLE = 4;
+    static final byte TAG_STRING = 5;
+    static final byte TAG_ARRAY = 6;
+    static final byte TAG_OBJECT = 7;
+    static final byte TAG_END = 8;
+
+    /** Set -DJSON_PLANS=true to ship plans to the EE as JSON text, for debugging */
+    public static final boolean JSON_PLANS = Boolean.getBoolean("JSON_PLANS");
+
+    private static final int MAX_DEPTH = 256;
+
+    private final Map<String, Integer> m_keyIndexes = new HashMap<String, Integer>();
+    private byte[] m_keys = new byte[256];
+    private int m_keysLength = 0;
+    private byte[] m_body = new byte[1024];
+    private int m_bodyLength = 0;
+
+    // 'a' in an array, 'k' expecting a key, 'v' expecting a key's value
+    private final char[] m_scopes = new char[MAX_DEPTH];
+    private int m_depth = 0;
+    private boolean m_done = false;
+
+    public BinaryPlanWriter() {
+    }
+
+    /**
+     * Transcode a JSON plan to the binary encoding.
+     * Plans that are already binary are returned as they are.
+     */
+    public static byte[] encode(byte[] plan) throws JSONException {
+        if (BinaryPlanReader.isBinaryPlan(plan)) {
+            return plan;
+        }
+        BinaryPlanWriter writer = new BinaryPlanWriter();
+        writer.value(new JSONTokener(new String(plan, Constants.UTF8ENCODING)).nextValue());
+        return writer.toByteArray();
+    }
+
+    /**
+     * The encoded plan. Only valid once the outermost object or array is closed.
+     */
+    public byte[] toByteArray() {
+        if (!m_done) {
+            throw new IllegalStateException("Binary plan is incomplete");
+        }
+        int keyCountLength = varintLength(m_keyIndexes.size());
+        byte[] plan = new byte[2 + keyCountLength + m_keysLength + m_bodyLength];
+        plan[0] = MAGIC;
+        plan[1] = VERSION;
+        int pos = putVarint(plan, 2, m_keyIndexes.size());
+        System.arraycopy(m_keys, 0, plan, pos, m_keysLength);
+        System.arraycopy(m_body, 0, plan, pos + m_keysLength, m_bodyLength);
+        return plan;
+    }
+
+    /**
+     * The plan as JSON text, for debugging.
+     */
+    @Override
+    public String toString() {
+        return m_done ? BinaryPlanReader.toJSONString(toByteArray()) : null;
+    }
+
+    @Override
+    public JSONWriter object() throws JSONException {
+        beginValue();
+        push('k');
+        writeByte(TAG_OBJECT);
+        return this;
+    }
+
+    @Override
+    public JSONWriter endObject() throws JSONException {
+        if (m_depth == 0 || m_scopes[m_depth - 1] != 'k') {
+            throw new JSONException("Misplaced endObject.");
+        }
+        writeVarint(0);
+        pop();
+        return this;
+    }
+
+    @Override
+    public JSONWriter array() throws JSONException {
+        beginValue();
+        push('a');
+        writeByte(TAG_ARRAY);
+        return this;
+    }
+
+    @Override
+    public JSONWriter endArray() throws JSONException {
+        if (m_depth == 0 || m_scopes[m_depth - 1] != 'a') {
+            throw new JSONException("Misplaced endArray.");
+        }
+        writeByte(TAG_END);
+        pop();
+        return this;
+    }
+
+    @Override
+    public JSONWriter key(String s) throws JSONException {
+        if (s == null) {
+            throw new JSONException("Null key.");
+        }
+        if (m_depth == 0 || m_scopes[m_depth - 1] != 'k') {
+            throw new JSONException("Misplaced key.");
+        }
+        Integer index = m_keyIndexes.get(s);
+        if (index == null) {
+            index = m_keyIndexes.size();
+            m_keyIndexes.put(s, index);
+            byte[] utf8 = s.getBytes(Constants.UTF8ENCODING);
+            ensureKeys(varintLength(utf8.length) + utf8.length);
+            m_keysLength = putVarint(m_keys, m_keysLength, utf8.length);
+            System.arraycopy(utf8, 0, m_keys, m_keysLength, utf8.length);
+            m_keysLength += utf8.length;
+        }
+        writeVarint(index + 1);
+        m_scopes[m_depth - 1] = 'v';
+        return this;
+    }
+
+    @Override
+    public JSONWriter value(boolean b) throws JSONException {
+        beginValue();
+        writeByte(b ? TAG_TRUE : TAG_FALSE);
+        return this;
+    }
+
+    @Override
+    public JSONWriter value(double d) throws JSONException {
+        return value(Double.valueOf(d));
+    }
+
+    @Override
+    public JSONWriter value(long l) throws JSONException {
+        beginValue();
+        writeLong(l);
+        return this;
+    }
+
+    @Override
+    public JSONWriter value(Object o) throws JSONException {
+        if (o == null || JSONObject.NULL.equals(o)) {
+            beginValue();
+            writeByte(TAG_NULL);
+        }
+        else if (o instanceof Boolean) {
+            value(((Boolean) o).booleanValue());
+        }
+        else if (o instanceof Long || o instanceof Integer || o instanceof Short || o instanceof Byte) {
+            value(((Number) o).longValue());
+        }
+        else if (o instanceof Number) {
+            beginValue();
+            writeNumber((Number) o);
+        }
+        else if (o instanceof JSONObject) {
+            JSONObject jo = (JSONObject) o;
+            object();
+            Iterator<String> keys = jo.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                key(key);
+                value(jo.opt(key));
+            }
+            endObject();
+        }
+        else if (o instanceof JSONArray) {
+            JSONArray ja = (JSONArray) o;
+            array();
+            for (int i = 0; i < ja.length(); i++) {
+                value(ja.opt(i));
+            }
+            endArray();
+        }
+        else if (o instanceof JSONString) {
+            value(new JSONTokener(((JSONString) o).toJSONString()).nextValue());
+        }
+        else if (o instanceof Map) {
+            value(new JSONObject((Map<?, ?>) o));
+        }
+        else if (o instanceof Collection) {
+            value(new JSONArray((Collection<?>) o));
+        }
+        else if (o.getClass().isArray()) {
+            value(new JSONArray(o));
+        }
+        else {
+            beginValue();
+            byte[] utf8 = o.toString().getBytes(Constants.UTF8ENCODING);
+            writeByte(TAG_STRING);
+            writeVarint(utf8.length);
+            ensureBody(utf8.length);
+            System.arraycopy(utf8, 0, m_body, m_bodyLength, utf8.length);
+            m_bodyLength += utf8.length;
+        }
+        return this;
+    }
+
+    /**
+     * JSONStringer drops the fraction of integral numbers, so the EE sees
+     * them as integers. Do the same.
+     */
+    private void writeNumber(Number n) throws JSONException {
+        String text = JSONObject.numberToString(n);
+        if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+            try {
+                writeLong(Long.parseLong(text));
+                return;
+            }
+            catch (NumberFormatException tooBig) {
+                // fall through and send it as a double
+            }
+        }
+        long bits = Double.doubleToLongBits(n.doubleValue());
+        writeByte(TAG_DOUBLE);
+        ensureBody(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            m_body[m_bodyLength++] = (byte) (bits >>> shift);
+        }
+    }
+
+    private void writeLong(long l) {
+        writeByte(TAG_INT);
+        writeVarint((l << 1) ^ (l >> 63));
+    }
+
+    private void beginValue() throws JSONException {
+        if (m_done) {
+            throw new JSONException("Value out of sequence.");
+        }
+        if (m_depth == 0) {
+            return;
+        }
+        char scope = m_scopes[m_depth - 1];
+        if (scope == 'v') {
+            m_scopes[m_depth - 1] = 'k';
+        }
+        else if (scope != 'a') {
+            throw new JSONException("Value out of sequence.");
+        }
+    }
+
+    private void push(char scope) throws JSONException {
+        if (m_depth >= MAX_DEPTH) {
+            throw new JSONException("Nesting too deep.");
+        }
+        m_scopes[m_depth++] = scope;
+    }
+
+    private void pop() {
+        if (--m_depth == 0) {
+            m_done = true;
+        }
+    }
+
+    private void writeByte(byte b) {
+        ensureBody(1);
+        m_body[m_bodyLength++] = b;
+    }
+
+    private void writeVarint(long value) {
+        ensureBody(10);
+        m_bodyLength = putVarint(m_body, m_bodyLength, value);
+    }
+
+    private static int putVarint(byte[] buf, int pos, long value) {
+        while ((value & ~0x7fL) != 0) {
+            buf[pos++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static int varintLength(long value) {
+        int length = 1;
+        while ((value & ~0x7fL) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private void ensureBody(int bytes) {
+        if (m_bodyLength + bytes > m_body.length) {
+            m_body = Arrays.copyOf(m_body, Math.max(m_body.length * 2, m_bodyLength + bytes));
+        }
+    }
+
+    private void ensureKeys(int bytes) {
+        if (m_keysLength + bytes > m_keys.length) {
+            m_keys = Arrays.copyOf(m_keys, Math.max(m_keys.length * 2, m_keysLength + bytes));
+        }
+    }
+}
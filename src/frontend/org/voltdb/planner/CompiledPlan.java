@@ -204,7 +204,10 @@ public class CompiledPlan {
         }
 
         PlanNodeList planList = new PlanNodeList(planGraph);
-        return planList.toJSONString().getBytes(Constants.UTF8ENCODING);
+        if (BinaryPlanWriter.JSON_PLANS) {
+            return planList.toJSONString().getBytes(Constants.UTF8ENCODING);
+        }
+        return planList.toBinaryPlan();
     }
 
     // A reusable step extracted from boundParamIndexes so it can be applied to two different
@@ -22,9 +22,10 @@ import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.voltdb.VoltType;
-import org.voltdb.common.Constants;
 import org.voltdb.compiler.AdHocPlannedStatement;
 
 /**
@@ -70,6 +71,13 @@ public class CorePlan {
 
     private int m_questionMarkParameterCount = 0;
 
+    /**
+     * Estimated output row counts by plan node id, for explain,
+     * if the plan was costed with statistics from the database.
+     * (Note, not serialized either.)
+     */
+    private Map<Integer, Long> m_estimatedOutputTupleCounts = null;
+
     /**
      * Constructor from QueryPlanner output.
      *
@@ -135,14 +143,34 @@ public class CorePlan {
         this.catalogHash = catalogHash;
     }
 
+    /**
+     * Keep the plan's estimated output row counts for explain.
+     */
+    public void setEstimatedOutputTupleCounts(CompiledPlan plan) {
+        Map<Integer, Long> counts = new HashMap<Integer, Long>();
+        plan.rootPlanGraph.collectEstimatedOutputTupleCounts(counts);
+        if (plan.subPlanGraph != null) {
+            plan.subPlanGraph.collectEstimatedOutputTupleCounts(counts);
+        }
+        m_estimatedOutputTupleCounts = counts;
+    }
+
+    /**
+     * @return estimated output row counts by plan node id, or null if the
+     * plan was not costed with statistics from the database.
+     */
+    public Map<Integer, Long> getEstimatedOutputTupleCounts() {
+        return m_estimatedOutputTupleCounts;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("COMPILED PLAN {\n");
         sb.append("  ONE: ").append(aggregatorFragment == null ?
-                "null" : new String(aggregatorFragment, Constants.UTF8ENCODING)).append("\n");
+                "null" : BinaryPlanReader.toJSONString(aggregatorFragment)).append("\n");
         sb.append("  ALL: ").append(collectorFragment == null ?
-                "null" : new String(collectorFragment, Constants.UTF8ENCODING)).append("\n");
+                "null" : BinaryPlanReader.toJSONString(collectorFragment)).append("\n");
         sb.append("  RTD: ").append(isReplicatedTableDML ? "true" : "false").append("\n");
         sb.append("}");
         return sb.toString();
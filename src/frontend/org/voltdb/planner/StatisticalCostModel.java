@@ -0,0 +1,60 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.planner;
+
+import java.util.HashMap;
+
+import org.voltdb.compiler.DatabaseEstimates;
+
+/**
+ * A cost model for databases that have reported statistics about their
+ * data: plan nodes estimate row counts from the tables' actual sizes and
+ * their indexes' distinct key counts and histograms instead of fixed
+ * selectivity guesses, and the plan cost is the total of the rows read.
+ */
+public class StatisticalCostModel extends AbstractCostModel {
+
+    private final DatabaseEstimates m_estimates;
+
+    /**
+     * @param statistics A snapshot of estimates gathered from the database.
+     *        It is copied, so that planning can't disturb other users of it.
+     */
+    public StatisticalCostModel(DatabaseEstimates statistics) {
+        m_estimates = new DatabaseEstimates(statistics);
+    }
+
+    @Override
+    public double getPlanCost(PlanStatistics stats) {
+        // With realistic row counts, the tuples read are a fair measure
+        double cost = 0;
+        for (int i = 0; i < stats.getLevelCount(); i++) {
+            HashMap<StatsField, Long> level = stats.getStatisticsForLevel(i);
+            Long levelValue = level.get(StatsField.TUPLES_READ);
+            if (levelValue != null) {
+                cost += levelValue;
+            }
+        }
+        return cost;
+    }
+
+    @Override
+    public DatabaseEstimates getEstimates(DatabaseEstimates defaults) {
+        return m_estimates;
+    }
+}
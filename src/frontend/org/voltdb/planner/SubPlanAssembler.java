@@ -1381,7 +1381,17 @@ public abstract class SubPlanAssembler {
         for (AbstractExpression expr : path.indexExprs) {
             AbstractExpression expr2 = expr.getRight();
             assert(expr2 != null);
-            if (expr.getExpressionType() == ExpressionType.COMPARE_IN) {
+            if (expr.getExpressionType() == ExpressionType.COMPARE_IN &&
+                    path.lookupType == IndexLookupType.EQ) {
+                // When every key component is equality-matched, the index scan can probe
+                // the (sorted, deduped) list elements itself, one exact key at a time,
+                // so there is no need for an injected NLIJ or a materialized list.
+                // Each probe only returns entries matching the key, so the IN LIST
+                // condition has nothing left to check in the end expression.
+                scanNode.setInListKeyIndex(scanNode.getSearchKeyExpressions().size());
+                path.endExprs.remove(expr);
+            }
+            else if (expr.getExpressionType() == ExpressionType.COMPARE_IN) {
                 // Replace this method's result with an injected NLIJ.
                 resultNode = injectIndexedJoinWithMaterializedScan(expr2, scanNode);
                 // Extract a TVE from the LHS MaterializedScan for use by the IndexScan in its new role.
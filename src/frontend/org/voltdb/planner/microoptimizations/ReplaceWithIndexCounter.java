@@ -107,6 +107,12 @@ public class ReplaceWithIndexCounter extends MicroOptimization {
             return plan;
         }
 
+        // A count of the matches for each element of an indexed IN LIST would need
+        // one index count per element.
+        if (isp.hasInListSearchKey()) {
+            return plan;
+        }
+
         // An index count or table count can replace an index scan only if it has no (post-)predicates
         // except those (post-)predicates are artifact predicates we added for reverse scan purpose only
         if (isp.getPredicate() != null && !isp.isPredicatesOptimizableForAggregate()) {
@@ -182,6 +182,12 @@ public class ReplaceWithIndexLimit extends MicroOptimization {
             return plan;
         }
 
+        // An indexed IN LIST probes several keys, so there is no single end of the
+        // index to take the MIN or MAX from.
+        if (ispn.hasInListSearchKey()) {
+            return plan;
+        }
+
         // 1. Handle ALL equality filters case.
         // In the IndexScanPlanNode:
         //      -- EQFilterExprs were put in searchkeyExpressions and endExpressions
@@ -866,7 +866,11 @@ public abstract class AbstractPlanNode implements JSONString, Comparable<Abstrac
                 sb.append(indent);
             }
             String nodePlan = explainPlanForNode(indent);
-            sb.append(nodePlan + "\n");
+            sb.append(nodePlan);
+            if (m_explainedOutputTupleCount >= 0) {
+                sb.append(" (estimated " + m_explainedOutputTupleCount + " rows)");
+            }
+            sb.append("\n");
         }
 
         // Agg < Proj < Limit < Scan
@@ -915,6 +919,41 @@ public abstract class AbstractPlanNode implements JSONString, Comparable<Abstrac
         m_skipInitalIndentationForExplain = skip;
     }
 
+    // Estimated output row count shown by explain, or -1 to show none
+    private long m_explainedOutputTupleCount = -1;
+
+    /**
+     * Collect the estimated output row counts of this node and of all the
+     * nodes (inline or not) below it, by plan node id.
+     */
+    public void collectEstimatedOutputTupleCounts(Map<Integer, Long> counts) {
+        if (m_estimatedOutputTupleCount > 0) {
+            counts.put(m_id, m_estimatedOutputTupleCount);
+        }
+        for (AbstractPlanNode inlineNode : m_inlineNodes.values()) {
+            inlineNode.collectEstimatedOutputTupleCounts(counts);
+        }
+        for (AbstractPlanNode child : m_children) {
+            child.collectEstimatedOutputTupleCounts(counts);
+        }
+    }
+
+    /**
+     * Have explain show estimated output row counts, as collected by
+     * {@link #collectEstimatedOutputTupleCounts(Map)} from the plan this one
+     * was loaded from, for this node and the nodes below it.
+     */
+    public void explainEstimatedOutputTupleCounts(Map<Integer, Long> counts) {
+        Long count = counts.get(m_id);
+        m_explainedOutputTupleCount = (count == null) ? -1 : count;
+        for (AbstractPlanNode inlineNode : m_inlineNodes.values()) {
+            inlineNode.explainEstimatedOutputTupleCounts(counts);
+        }
+        for (AbstractPlanNode child : m_children) {
+            child.explainEstimatedOutputTupleCounts(counts);
+        }
+    }
+
     protected abstract String explainPlanForNode(String indent);
 
     public ArrayList<AbstractScanPlanNode> getScanNodeList () {
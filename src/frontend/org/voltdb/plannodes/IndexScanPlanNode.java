@@ -31,6 +31,7 @@ import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONObject;
 import org.json_voltpatches.JSONString;
 import org.json_voltpatches.JSONStringer;
+import org.voltdb.VoltType;
 import org.voltdb.catalog.Cluster;
 import org.voltdb.catalog.Column;
 import org.voltdb.catalog.ColumnRef;
@@ -40,6 +41,7 @@ import org.voltdb.compiler.DatabaseEstimates;
 import org.voltdb.compiler.ScalarValueHints;
 import org.voltdb.expressions.AbstractExpression;
 import org.voltdb.expressions.ComparisonExpression;
+import org.voltdb.expressions.ConstantValueExpression;
 import org.voltdb.expressions.ExpressionUtil;
 import org.voltdb.expressions.OperatorExpression;
 import org.voltdb.expressions.ParameterValueExpression;
@@ -51,6 +53,7 @@ import org.voltdb.types.IndexLookupType;
 import org.voltdb.types.IndexType;
 import org.voltdb.types.PlanNodeType;
 import org.voltdb.types.SortDirectionType;
+import org.voltdb.types.TimestampType;
 import org.voltdb.utils.CatalogUtil;
 
 public class IndexScanPlanNode extends AbstractScanPlanNode {
@@ -64,7 +67,8 @@ public class IndexScanPlanNode extends AbstractScanPlanNode {
         KEY_ITERATE,
         LOOKUP_TYPE,
         PURPOSE,
-        SORT_DIRECTION;
+        SORT_DIRECTION,
+        IN_LIST_KEY_INDEX;
     }
 
     /**
@@ -100,6 +104,10 @@ public class IndexScanPlanNode extends AbstractScanPlanNode {
     // The sorting direction
     protected SortDirectionType m_sortDirection = SortDirectionType.INVALID;
 
+    // The position of the search key, if any, that evaluates to an IN LIST of values
+    // to be probed in turn as exact keys, or -1 for an ordinary single-key lookup.
+    private int m_inListKeyIndex = -1;
+
     // A reference to the Catalog index object which defined the index which
     // this index scan is going to use
     protected Index m_catalogIndex = null;
@@ -115,6 +123,9 @@ public class IndexScanPlanNode extends AbstractScanPlanNode {
     // Post-filters that got eliminated by exactly matched partial index filters
     private List<AbstractExpression> m_eliminatedPostFilterExpressions = new ArrayList<AbstractExpression>();
 
+    // Whether the cost estimates came from the index's statistics
+    private boolean m_estimatedFromStatistics = false;
+
     public IndexScanPlanNode() {
         super();
     }
@@ -336,6 +347,25 @@ public class IndexScanPlanNode extends AbstractScanPlanNode {
         m_sortDirection = sortDirection;
     }
 
+    /**
+     * @param keyIndex the position of the search key that supplies an IN LIST of
+     *            values to probe, each as a complete EQ key
+     */
+    public void setInListKeyIndex(int keyIndex) {
+        m_inListKeyIndex = keyIndex;
+    }
+
+    /**
+     * @return the position of the IN LIST search key or -1 if there is none
+     */
+    public int getInListKeyIndex() {
+        return m_inListKeyIndex;
+    }
+
+    public boolean hasInListSearchKey() {
+        return m_inListKeyIndex >= 0;
+    }
+
     /**
      * @return the target_index_name
      */
@@ -477,6 +507,16 @@ public class IndexScanPlanNode extends AbstractScanPlanNode {
 
         DatabaseEstimates.TableEstimates tableEstimates = estimates.getEstimatesForTable(m_targetTableName);
 
+        // With key statistics from the database, estimate from those instead.
+        DatabaseEstimates.IndexEstimates indexEstimates =
+                tableEstimates.getIndexEstimates(m_targetIndexName);
+        m_estimatedFromStatistics = (indexEstimates != null);
+        if (indexEstimates != null) {
+            computeCostEstimatesFromStatistics(indexEstimates);
+            applyInlineLimitToEstimates();
+            return;
+        }
+
         // get the width of the index and number of columns used
         // need doubles for math
         double colCount = CatalogUtil.getCatalogIndexSize(m_catalogIndex);
@@ -584,6 +624,10 @@ public class IndexScanPlanNode extends AbstractScanPlanNode {
             }
         }
 
+        applyInlineLimitToEstimates();
+    }
+
+    private void applyInlineLimitToEstimates() {
         LimitPlanNode limit = (LimitPlanNode)m_inlineNodes.get(PlanNodeType.LIMIT);
         if (limit != null) {
             int limitInt = limit.getLimit();
@@ -599,7 +643,155 @@ public class IndexScanPlanNode extends AbstractScanPlanNode {
                 m_estimatedProcessedTupleCount = limitInt;
             }
         }
+    }
+
+    /**
+     * @return true if the last cost estimates of this scan came from the
+     * statistics of its index rather than from heuristics.
+     */
+    public boolean isEstimatedFromStatistics() {
+        return m_estimatedFromStatistics;
+    }
+
+    // Fraction of the entries assumed to match a range filter that can't be
+    // looked up in a histogram.
+    private static final double DEFAULT_RANGE_SELECTIVITY = 1.0 / 3.0;
+
+    /**
+     * Estimate the rows the scan reads and returns from the statistics of
+     * the index: its per-partition entry count, the selectivity of the
+     * equality-filtered key prefix from its distinct key counts, and that of
+     * a range filter on the leading column from its histogram.
+     * The statistics already reflect any partial index predicate.
+     */
+    private void computeCostEstimatesFromStatistics(DatabaseEstimates.IndexEstimates indexEstimates) {
+        int keyCount = CatalogUtil.getCatalogIndexSize(m_catalogIndex);
+        int searchKeyCount = m_searchkeyExpressions.size();
+        int equalityKeyCount = searchKeyCount;
+        boolean ranged = false;
+        if (m_lookupType != IndexLookupType.EQ) {
+            // Non-unique tree indexes look up equality filters as ranges
+            // that start at the key and end when an end expression of equal
+            // comparisons fails, so count those to find the equality prefix.
+            int equalEndCount = 0;
+            if (m_endExpression != null) {
+                for (AbstractExpression end : ExpressionUtil.uncombine(m_endExpression)) {
+                    if (end.getExpressionType() == ExpressionType.COMPARE_EQUAL) {
+                        ++equalEndCount;
+                    }
+                    else {
+                        ranged = true;
+                    }
+                }
+            }
+            equalityKeyCount = Math.min(equalEndCount, keyCount);
+            if (searchKeyCount > equalEndCount) {
+                // the last search key is the start of a range
+                ranged = true;
+            }
+        }
+        else if (m_endExpression != null) {
+            ranged = true;
+        }
+
+        double selectivity = 1.0;
+        if (equalityKeyCount > 0) {
+            selectivity = indexEstimates.equalitySelectivity(equalityKeyCount, keyCount);
+        }
+        if (ranged) {
+            double rangeSelectivity = -1;
+            if (equalityKeyCount == 0) {
+                rangeSelectivity = leadingKeyRangeSelectivity(indexEstimates);
+            }
+            selectivity *= (rangeSelectivity < 0) ? DEFAULT_RANGE_SELECTIVITY : rangeSelectivity;
+        }
 
+        long matching = Math.max(1, Math.round(indexEstimates.entryCount * selectivity));
+        if (m_catalogIndex.getUnique() && equalityKeyCount == keyCount) {
+            matching = 1;
+        }
+        m_estimatedOutputTupleCount = matching;
+        // Add the cost of descending the index to the first match, so that a
+        // scan never looks cheaper than the rows it returns.
+        m_estimatedProcessedTupleCount = matching +
+                (long) Math.ceil(Math.log(indexEstimates.entryCount + 1) / Math.log(2));
+    }
+
+    /**
+     * Look up the bounds of a range scan on the leading key column in the
+     * index's histogram, or return -1 if the bounds or the histogram are
+     * unknown.
+     */
+    private double leadingKeyRangeSelectivity(DatabaseEstimates.IndexEstimates indexEstimates) {
+        Double lower = null;
+        Double upper = null;
+        if ( ! m_searchkeyExpressions.isEmpty() && m_lookupType != IndexLookupType.EQ) {
+            Double start = numericValueOf(m_searchkeyExpressions.get(0));
+            if (start == null) {
+                return -1;
+            }
+            if (m_lookupType == IndexLookupType.GT || m_lookupType == IndexLookupType.GTE) {
+                lower = start;
+            }
+            else {
+                // reverse scans start from an upper bound
+                upper = start;
+            }
+        }
+        if (m_endExpression != null) {
+            for (AbstractExpression end : ExpressionUtil.uncombine(m_endExpression)) {
+                Double bound = numericValueOf(end.getRight());
+                if (bound == null) {
+                    return -1;
+                }
+                switch (end.getExpressionType()) {
+                case COMPARE_LESSTHAN:
+                case COMPARE_LESSTHANOREQUALTO:
+                    upper = bound;
+                    break;
+                case COMPARE_GREATERTHAN:
+                case COMPARE_GREATERTHANOREQUALTO:
+                    lower = bound;
+                    break;
+                default:
+                    return -1;
+                }
+            }
+        }
+        return indexEstimates.rangeSelectivity(lower, upper);
+    }
+
+    /**
+     * @return the numeric value of a constant, or of a parameter extracted
+     * from an ad hoc literal, in the units of the EE's histograms,
+     * or null if it is not known at planning time.
+     */
+    private static Double numericValueOf(AbstractExpression expr) {
+        if (expr instanceof ParameterValueExpression) {
+            expr = ((ParameterValueExpression) expr).getOriginalValue();
+        }
+        if ( ! (expr instanceof ConstantValueExpression)) {
+            return null;
+        }
+        ConstantValueExpression constant = (ConstantValueExpression) expr;
+        String value = constant.getValue();
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value);
+        }
+        catch (NumberFormatException notNumeric) {
+            if (constant.getValueType() == VoltType.TIMESTAMP) {
+                try {
+                    return (double) new TimestampType(value).getTime();
+                }
+                catch (IllegalArgumentException notTimestamp) {
+                    // treat it as unknown
+                }
+            }
+            return null;
+        }
     }
 
     @Override
@@ -611,6 +803,9 @@ public class IndexScanPlanNode extends AbstractScanPlanNode {
             stringer.key(Members.PURPOSE.name()).value(m_purpose);
         }
         stringer.key(Members.TARGET_INDEX_NAME.name()).value(m_targetIndexName);
+        if (m_inListKeyIndex >= 0) {
+            stringer.key(Members.IN_LIST_KEY_INDEX.name()).value(m_inListKeyIndex);
+        }
         if (m_searchkeyExpressions.size() > 0) {
             stringer.key(Members.SEARCHKEY_EXPRESSIONS.name()).array();
             for (AbstractExpression ae : m_searchkeyExpressions) {
@@ -641,6 +836,8 @@ public class IndexScanPlanNode extends AbstractScanPlanNode {
         m_purpose = jobj.has(Members.PURPOSE.name()) ?
                 jobj.getInt(Members.PURPOSE.name()) : FOR_SCANNING_PERFORMANCE_OR_ORDERING;
         m_targetIndexName = jobj.getString(Members.TARGET_INDEX_NAME.name());
+        m_inListKeyIndex = jobj.has(Members.IN_LIST_KEY_INDEX.name()) ?
+                jobj.getInt(Members.IN_LIST_KEY_INDEX.name()) : -1;
         m_catalogIndex = db.getTables().get(super.m_targetTableName).getIndexes().get(m_targetIndexName);
         //load end_expression
         m_endExpression = AbstractExpression.fromJSONChild(jobj, Members.END_EXPRESSION.name(), m_tableScan);
@@ -784,13 +981,15 @@ public class IndexScanPlanNode extends AbstractScanPlanNode {
         String result = "(";
         int prefixSize = nCovered - 1;
         for (int ii = 0; ii < prefixSize; ++ii) {
-            result += conjunction + asIndexed[ii] + " = " +
+            String symbol = (ii == m_inListKeyIndex) ? " IN " : " = ";
+            result += conjunction + asIndexed[ii] + symbol +
                     m_searchkeyExpressions.get(ii).explain(m_targetTableName);
             conjunction = ") AND (";
         }
         // last element
+        String symbol = (prefixSize == m_inListKeyIndex) ? "IN" : m_lookupType.getSymbol();
         result += conjunction +
-                asIndexed[prefixSize] + " " + m_lookupType.getSymbol() + " " +
+                asIndexed[prefixSize] + " " + symbol + " " +
                 m_searchkeyExpressions.get(prefixSize).explain(m_targetTableName) + ")";
         return result;
     }
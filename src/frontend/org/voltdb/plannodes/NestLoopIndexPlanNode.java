@@ -214,6 +214,16 @@ public class NestLoopIndexPlanNode extends AbstractJoinPlanNode {
                 (IndexScanPlanNode) getInlinePlanNode(PlanNodeType.INDEXSCAN);
         assert(indexScan != null);
 
+        if (indexScan.isEstimatedFromStatistics()) {
+            // The index scan's estimates are realistic per outer tuple,
+            // so they can be multiplied out.
+            m_estimatedOutputTupleCount =
+                    indexScan.getEstimatedOutputTupleCount() * childOutputTupleCountEstimate;
+            m_estimatedProcessedTupleCount =
+                    (indexScan.getEstimatedProcessedTupleCount() + 1) * childOutputTupleCountEstimate;
+            return;
+        }
+
         m_estimatedOutputTupleCount = indexScan.getEstimatedOutputTupleCount() + childOutputTupleCountEstimate;
         m_estimatedProcessedTupleCount = indexScan.getEstimatedProcessedTupleCount() + childOutputTupleCountEstimate;
     }
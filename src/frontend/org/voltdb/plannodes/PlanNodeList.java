@@ -25,6 +25,8 @@ import java.util.Map;
 
 import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONStringer;
+import org.voltdb.common.Constants;
+import org.voltdb.planner.BinaryPlanWriter;
 
 /**
  *
@@ -132,16 +134,7 @@ public class PlanNodeList extends PlanNodeTree implements Comparable<PlanNodeLis
     public String toJSONString() {
         JSONStringer stringer = new JSONStringer();
         try {
-            stringer.object();
-            super.toJSONString(stringer);
-
-            stringer.key(Members.EXECUTE_LIST.name()).array();
-            for (AbstractPlanNode node : m_list) {
-                stringer.value(node.getPlanNodeId().intValue());
-            }
-            stringer.endArray(); //end execution list
-
-            stringer.endObject(); //end PlanNodeList
+            writePlan(stringer);
         } catch (JSONException e) {
             // HACK ugly ugly to make the JSON handling
             // in QueryPlanner generate a JSONException for a plan we know
@@ -154,6 +147,34 @@ public class PlanNodeList extends PlanNodeTree implements Comparable<PlanNodeLis
         return stringer.toString();
     }
 
+    /**
+     * The plan in the binary encoding the EE loads fastest.
+     * See {@link BinaryPlanWriter}.
+     */
+    public byte[] toBinaryPlan() {
+        BinaryPlanWriter writer = new BinaryPlanWriter();
+        try {
+            writePlan(writer);
+        } catch (JSONException e) {
+            // Keep failing the way toJSONString() does.
+            return toJSONString().getBytes(Constants.UTF8ENCODING);
+        }
+        return writer.toByteArray();
+    }
+
+    private void writePlan(JSONStringer stringer) throws JSONException {
+        stringer.object();
+        super.toJSONString(stringer);
+
+        stringer.key(Members.EXECUTE_LIST.name()).array();
+        for (AbstractPlanNode node : m_list) {
+            stringer.value(node.getPlanNodeId().intValue());
+        }
+        stringer.endArray(); //end execution list
+
+        stringer.endObject(); //end PlanNodeList
+    }
+
     public String toDOTString(String name) {
         StringBuilder sb = new StringBuilder();
         sb.append("digraph ").append(name).append(" {\n");
@@ -19,12 +19,15 @@ package org.voltdb.rejoin;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -64,6 +67,13 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
     // shortened when in test mode
     public final static long DEFAULT_WRITE_TIMEOUT_MS = m_rejoinDeathTestMode ? 10000 : Long.getLong("REJOIN_WRITE_TIMEOUT_MS", 60000);
     final static long WATCHDOG_PERIOS_S = 5;
+    // Compressed bytes that may be sent but not yet acked before the target stops handing
+    // snapshot buffers back to the site, which stops the site from serializing more
+    public final static long DEFAULT_WINDOW_BYTES = Long.getLong("REJOIN_WINDOW_BYTES", 32 * 1024 * 1024);
+
+    // all targets currently streaming from this host, for @Statistics REJOIN
+    private static final ConcurrentSkipListMap<Long, StreamSnapshotDataTarget> m_activeTargets =
+            new ConcurrentSkipListMap<Long, StreamSnapshotDataTarget>();
 
     // schemas for all the tables on this partition
     private final Map<Integer, byte[]> m_schemas = new HashMap<Integer, byte[]>();
@@ -84,6 +94,19 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
     // map of sent, but un-acked buffers, packaged up a bit
     private final TreeMap<Integer, SendWork> m_outstandingWork = new TreeMap<Integer, SendWork>();
 
+    // credit window, all guarded by this
+    private final long m_windowBytes;
+    // compressed bytes sent but not acked yet
+    private long m_unackedBytes = 0;
+    // blocks written but not sent yet, i.e. waiting for compression or the sender
+    private int m_queuedBlocks = 0;
+    // sent blocks still holding their snapshot buffer because the window is full
+    private final ArrayDeque<SendWork> m_heldWork = new ArrayDeque<SendWork>();
+    private long m_windowFullSinceNanos = 0;
+    private long m_windowFullNanos = 0;
+    // send rate measured by the watchdog
+    private volatile long m_bytesPerSecond = 0;
+
     int m_blockIndex = 0;
     private final AtomicReference<Runnable> m_onCloseHandler = new AtomicReference<Runnable>(null);
 
@@ -92,24 +115,27 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
     public StreamSnapshotDataTarget(long HSId, byte[] hashinatorConfig, Map<Integer, byte[]> schemas,
                                     SnapshotSender sender, StreamSnapshotAckReceiver ackReceiver)
     {
-        this(HSId, hashinatorConfig, schemas, DEFAULT_WRITE_TIMEOUT_MS, sender, ackReceiver);
+        this(HSId, hashinatorConfig, schemas, DEFAULT_WRITE_TIMEOUT_MS, DEFAULT_WINDOW_BYTES, sender, ackReceiver);
     }
 
     public StreamSnapshotDataTarget(long HSId, byte[] hashinatorConfig, Map<Integer, byte[]> schemas,
-                                    long writeTimeout, SnapshotSender sender, StreamSnapshotAckReceiver ackReceiver)
+                                    long writeTimeout, long windowBytes,
+                                    SnapshotSender sender, StreamSnapshotAckReceiver ackReceiver)
     {
         super();
         m_targetId = m_totalSnapshotTargetCount.getAndIncrement();
         m_schemas.putAll(schemas);
         m_destHSId = HSId;
+        m_windowBytes = windowBytes;
         m_sender = sender;
         m_sender.registerDataTarget(m_targetId);
         m_ackReceiver = ackReceiver;
         m_ackReceiver.setCallback(m_targetId, this);
 
         rejoinLog.debug(String.format("Initializing snapshot stream processor " +
-                "for source site id: %s, and with processorid: %d",
-                CoreUtils.hsIdToString(HSId), m_targetId));
+                "for source site id: %s, and with processorid: %d, window %d bytes",
+                CoreUtils.hsIdToString(HSId), m_targetId, m_windowBytes));
+        m_activeTargets.put(m_targetId, this);
 
         // start a periodic task to look for timed out connections
         VoltDB.instance().scheduleWork(new Watchdog(0, writeTimeout), WATCHDOG_PERIOS_S, -1, TimeUnit.SECONDS);
@@ -123,9 +149,14 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
     /**
      * Packages up a pending write into a piece of work that can be tracked
      * and can be scheduled.
+     *
+     * The message is compressed on the compression service as soon as the
+     * work is queued, so blocks are compressed in parallel while the sender
+     * thread sends them in order.
      */
     public static class SendWork {
         BBContainer m_message;
+        final StreamSnapshotDataTarget m_target;
         final long m_targetId;
         final long m_destHSId;
         final long m_ts;
@@ -135,23 +166,32 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         // A listenable future used to notify a listener when this buffer is discarded
         final SettableFuture<Boolean> m_future;
 
+        // The compressed message, null until the work is queued for sending
+        ListenableFuture<byte[]> m_compressed;
+        // Compressed bytes sent, counted against the window until acked
+        int m_sentBytes = 0;
+        // Set when the work is cancelled or acked, nothing more to send
+        private boolean m_discarded = false;
+
         /**
          * Creates an empty send work to terminate the sender thread
          */
         SendWork() {
             m_isEmpty = true;
+            m_target = null;
             m_targetId = -1;
             m_destHSId = -1;
             m_ts = -1;
             m_future = null;
         }
 
-        SendWork (long targetId, long destHSId,
+        SendWork (StreamSnapshotDataTarget target,
                   BBContainer message,
                   SettableFuture<Boolean> future) {
             m_isEmpty = false;
-            m_targetId = targetId;
-            m_destHSId = destHSId;
+            m_target = target;
+            m_targetId = target.m_targetId;
+            m_destHSId = target.m_destHSId;
             m_message = message;
             m_ts = System.currentTimeMillis();
             m_future = future;
@@ -162,6 +202,15 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
          * BBContainters held.
          */
         public synchronized void discard() {
+            m_discarded = true;
+            releaseBuffer();
+        }
+
+        /**
+         * Give the buffer back once it is compressed, the work itself is
+         * still outstanding until acked.
+         */
+        synchronized void releaseBuffer() {
             // discard the buffers and null them out
             if (m_message != null) {
                 m_message.discard();
@@ -170,48 +219,57 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         }
 
         /**
-         * Compress the data in the BBContainer provided, then package it up in
-         * a RejoinDataMessage instance, and finally hand it off to the messaging
-         * subsystem.
+         * Start compressing the message on the compression service.
          */
-        protected int send(Mailbox mb, MessageFactory msgFactory, BBContainer message) throws IOException {
-            final ByteBuffer messageBuffer = message.b();
-            if (messageBuffer.isDirect()) {
-                byte[] data = CompressionService.compressBuffer(messageBuffer);
-                mb.send(m_destHSId, msgFactory.makeDataMessage(m_targetId, data));
-
-                if (rejoinLog.isTraceEnabled()) {
-                    rejoinLog.trace("Sending direct buffer");
-                }
-
-                return data.length;
-            } else {
-                byte compressedBytes[] =
-                    CompressionService.compressBytes(
-                            messageBuffer.array(), messageBuffer.position(),
-                            messageBuffer.remaining());
-
-                mb.send(m_destHSId, msgFactory.makeDataMessage(m_targetId, compressedBytes));
-
-                if (rejoinLog.isTraceEnabled()) {
-                    rejoinLog.trace("Sending heap buffer");
+        void compress() {
+            m_compressed = CompressionService.submitCompressionTask(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    return compressMessage();
                 }
-
-                return compressedBytes.length;
-            }
+            });
         }
 
-        public synchronized int doWork(Mailbox mb, MessageFactory msgFactory) throws Exception {
+        private synchronized byte[] compressMessage() throws IOException {
             // this work has already been discarded
             if (m_message == null) {
-                return 0;
+                return null;
+            }
+
+            final ByteBuffer messageBuffer = m_message.b();
+            if (messageBuffer.isDirect()) {
+                return CompressionService.compressBuffer(messageBuffer);
+            } else {
+                return CompressionService.compressBytes(messageBuffer.array(), messageBuffer.position(),
+                                                        messageBuffer.remaining());
             }
+        }
 
+        /**
+         * Wait for the compressed data, then package it up in a
+         * RejoinDataMessage instance, and finally hand it off to the
+         * messaging subsystem.
+         */
+        public int doWork(Mailbox mb, MessageFactory msgFactory) throws Exception {
             try {
-                return send(mb, msgFactory, m_message);
+                final byte[] data = m_compressed.get();
+                synchronized (this) {
+                    // this work has already been discarded
+                    if (data == null || m_discarded) {
+                        return 0;
+                    }
+                }
+
+                // Count the block against the window before the ack can possibly arrive
+                m_target.reserveWindow(this, data.length);
+                mb.send(m_destHSId, msgFactory.makeDataMessage(m_targetId, data));
+
+                if (rejoinLog.isTraceEnabled()) {
+                    rejoinLog.trace("Sending block of " + data.length + " bytes");
+                }
+
+                return data.length;
             } finally {
-                // Buffers are only discarded after they are acked. Discarding them here would cause the sender to
-                // generate too much work for the receiver.
                 m_future.set(true);
             }
         }
@@ -246,6 +304,7 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
             long bytesWritten = 0;
             try {
                 bytesWritten = m_sender.m_bytesSent.get(m_targetId).get();
+                m_bytesPerSecond = (bytesWritten - m_bytesWrittenSinceConstruction) / WATCHDOG_PERIOS_S;
                 rejoinLog.info(String.format("While sending rejoin data to site %s, %d bytes have been sent in the past %s seconds.",
                         CoreUtils.hsIdToString(m_destHSId), bytesWritten - m_bytesWrittenSinceConstruction, WATCHDOG_PERIOS_S));
 
@@ -299,6 +358,46 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         }
         m_outstandingWork.clear();
         m_outstandingWorkCount.set(0);
+        m_heldWork.clear();
+        m_unackedBytes = 0;
+        m_queuedBlocks = 0;
+        windowOpened();
+    }
+
+    /**
+     * Called by the sender thread right before a block goes out. The block's
+     * snapshot buffer goes back to the site if the window has room, otherwise
+     * it is held until acks make room, which throttles the site.
+     */
+    synchronized void reserveWindow(SendWork work, int bytes) {
+        work.m_sentBytes = bytes;
+        m_unackedBytes += bytes;
+        m_queuedBlocks--;
+
+        if (m_heldWork.isEmpty() && m_unackedBytes <= m_windowBytes) {
+            work.releaseBuffer();
+        } else {
+            if (m_heldWork.isEmpty()) {
+                m_windowFullSinceNanos = System.nanoTime();
+            }
+            m_heldWork.add(work);
+        }
+    }
+
+    private void releaseHeldWork() {
+        while (!m_heldWork.isEmpty() && m_unackedBytes <= m_windowBytes) {
+            m_heldWork.poll().releaseBuffer();
+        }
+        if (m_heldWork.isEmpty()) {
+            windowOpened();
+        }
+    }
+
+    private void windowOpened() {
+        if (m_windowFullSinceNanos != 0) {
+            m_windowFullNanos += System.nanoTime() - m_windowFullSinceNanos;
+            m_windowFullSinceNanos = 0;
+        }
     }
 
     /**
@@ -311,13 +410,17 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
 
         m_outstandingWorkCount.decrementAndGet();
         SendWork work = m_outstandingWork.remove(blockIndex);
+        m_unackedBytes -= work.m_sentBytes;
 
         // releases the BBContainers and cleans up
         work.discard();
+        releaseHeldWork();
     }
 
     /**
-     * Thread that runs send work (sending snapshot blocks). One per node
+     * Thread that runs send work (sending snapshot blocks). One per node.
+     * Blocks are compressed on the compression service before they reach
+     * this thread, which only keeps them in order.
      */
     public static class SnapshotSender implements Runnable {
         private final Mailbox m_mb;
@@ -354,6 +457,9 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
 
         public void offer(SendWork work)
         {
+            if (!work.m_isEmpty) {
+                work.compress();
+            }
             m_workQueue.offer(work);
         }
 
@@ -391,7 +497,6 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
                     rejoinLog.error("Error sending a recovery stream message", e);
                 }
             }
-            CompressionService.releaseThreadLocal();
             rejoinLog.trace("Stream sender thread exiting");
         }
     }
@@ -488,9 +593,10 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
      */
     synchronized ListenableFuture<Boolean> send(int blockIndex, BBContainer chunk) {
         SettableFuture<Boolean> sendFuture = SettableFuture.create();
-        SendWork sendWork = new SendWork(m_targetId, m_destHSId, chunk, sendFuture);
+        SendWork sendWork = new SendWork(this, chunk, sendFuture);
         m_outstandingWork.put(blockIndex, sendWork);
         m_outstandingWorkCount.incrementAndGet();
+        m_queuedBlocks++;
         m_sender.offer(sendWork);
         return sendFuture;
     }
@@ -529,6 +635,7 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
 
                 assert(m_outstandingWork.size() == 0);
             }
+            m_activeTargets.remove(m_targetId);
 
             rejoinLog.trace("Closed stream snapshot target");
         }
@@ -585,6 +692,57 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         return m_sender.m_worksSent.get(m_targetId).get();
     }
 
+    public long getDestHSId()
+    {
+        return m_destHSId;
+    }
+
+    public long getBytesPerSecond()
+    {
+        return m_bytesPerSecond;
+    }
+
+    public long getWindowBytes()
+    {
+        return m_windowBytes;
+    }
+
+    /** Compressed bytes sent but not acked */
+    public synchronized long getUnackedBytes()
+    {
+        return m_unackedBytes;
+    }
+
+    /** Blocks waiting for compression or for the sender thread */
+    public synchronized int getQueuedBlocks()
+    {
+        return m_queuedBlocks;
+    }
+
+    /** Sent blocks holding on to a snapshot buffer because the window is full */
+    public synchronized int getHeldBlocks()
+    {
+        return m_heldWork.size();
+    }
+
+    /** Total time the window has been full */
+    public synchronized long getWindowFullMillis()
+    {
+        long nanos = m_windowFullNanos;
+        if (m_windowFullSinceNanos != 0) {
+            nanos += System.nanoTime() - m_windowFullSinceNanos;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * @return the targets currently streaming from this host, by target ID
+     */
+    public static Collection<StreamSnapshotDataTarget> getActiveTargets()
+    {
+        return m_activeTargets.values();
+    }
+
     @Override
     public void setOnCloseHandler(Runnable onClose) {
         m_onCloseHandler.set(onClose);
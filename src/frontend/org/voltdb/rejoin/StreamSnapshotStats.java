@@ -0,0 +1,76 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.rejoin;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.StatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Progress of the stream snapshots this host is sending to rejoining or
+ * joining sites, one row per data target. Shows whether the pipeline is
+ * waiting on compression and the sender (QUEUED_BLOCKS) or on the receiving
+ * site (UNACKED_BYTES up against WINDOW_BYTES, WINDOW_FULL_MS).
+ */
+public class StreamSnapshotStats extends StatsSource {
+
+    public StreamSnapshotStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("TARGET_ID", VoltType.BIGINT));
+        columns.add(new ColumnInfo("DESTINATION", VoltType.STRING));
+        columns.add(new ColumnInfo("BLOCKS_SENT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES_SENT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES_PER_SECOND", VoltType.BIGINT));
+        columns.add(new ColumnInfo("QUEUED_BLOCKS", VoltType.INTEGER));
+        columns.add(new ColumnInfo("UNACKED_BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("WINDOW_BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("HELD_BLOCKS", VoltType.INTEGER));
+        columns.add(new ColumnInfo("WINDOW_FULL_MS", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        StreamSnapshotDataTarget target = (StreamSnapshotDataTarget) rowKey;
+        rowValues[columnNameToIndex.get("TARGET_ID")] = target.m_targetId;
+        rowValues[columnNameToIndex.get("DESTINATION")] = CoreUtils.hsIdToString(target.getDestHSId());
+        rowValues[columnNameToIndex.get("BLOCKS_SENT")] = target.getWorksWritten();
+        rowValues[columnNameToIndex.get("BYTES_SENT")] = target.getBytesWritten();
+        rowValues[columnNameToIndex.get("BYTES_PER_SECOND")] = target.getBytesPerSecond();
+        rowValues[columnNameToIndex.get("QUEUED_BLOCKS")] = target.getQueuedBlocks();
+        rowValues[columnNameToIndex.get("UNACKED_BYTES")] = target.getUnackedBytes();
+        rowValues[columnNameToIndex.get("WINDOW_BYTES")] = target.getWindowBytes();
+        rowValues[columnNameToIndex.get("HELD_BLOCKS")] = target.getHeldBlocks();
+        rowValues[columnNameToIndex.get("WINDOW_FULL_MS")] = target.getWindowFullMillis();
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        // Copy, targets come and go while the table is built
+        return new ArrayList<Object>(StreamSnapshotDataTarget.getActiveTargets()).iterator();
+    }
+}
@@ -565,6 +565,7 @@ public class SystemInformation extends VoltSystemProcedure
         Systemsettings sysSettings = deploy.getSystemsettings().get("systemsettings");
         results.addRow("elasticduration", Integer.toString(sysSettings.getElasticduration()));
         results.addRow("elasticthroughput", Integer.toString(sysSettings.getElasticthroughput()));
+        results.addRow("elasticlatency", Integer.toString(sysSettings.getElasticlatency()));
         results.addRow("snapshotpriority", Integer.toString(sysSettings.getSnapshotpriority()));
         results.addRow("temptablesmaxsize", Integer.toString(sysSettings.getTemptablemaxsize()));
         results.addRow("querytimeout", Integer.toString(sysSettings.getQuerytimeout()));
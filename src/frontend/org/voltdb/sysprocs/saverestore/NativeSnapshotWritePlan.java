@@ -24,8 +24,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.json_voltpatches.JSONArray;
+import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONObject;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.InstanceId;
@@ -37,6 +40,7 @@ import org.voltdb.SnapshotFormat;
 import org.voltdb.SnapshotSiteProcessor;
 import org.voltdb.SnapshotTableTask;
 import org.voltdb.SystemProcedureExecutionContext;
+import org.voltdb.TableStreamType;
 import org.voltdb.TheHashinator;
 import org.voltdb.TheHashinator.HashinatorType;
 import org.voltdb.VoltDB;
@@ -45,6 +49,7 @@ import org.voltdb.catalog.Table;
 import org.voltdb.dtxn.SiteTracker;
 import org.voltdb.sysprocs.SnapshotRegistry;
 import org.voltdb.utils.CatalogUtil;
+import org.voltdb.utils.VoltFile;
 
 import com.google_voltpatches.common.collect.Maps;
 
@@ -55,9 +60,22 @@ import com.google_voltpatches.common.collect.Maps;
  * responsibility for writing them is spread round-robin across the sites on a
  * node.  Partitioned tables are written to the same target per table by every
  * site on a node.
+ *
+ * An incremental snapshot starts with a base, a full snapshot after which the
+ * sites track changes to the partitioned tables with a primary key. Each delta
+ * names the previous incremental snapshot as its parent and writes only the
+ * rows of the blocks written to since, plus one more file per table with the
+ * rows deleted since. Other tables are always written in full.
  */
 public class NativeSnapshotWritePlan extends SnapshotWritePlan
 {
+    /**
+     * Nonce of the last incremental snapshot started on each host, the only parent
+     * a delta can have. Changes are handed to a delta as soon as it starts, so a
+     * failed snapshot still ends the chain and the next one has to be a base.
+     */
+    private static final Map<Integer, String> m_incrementalChainTips = new ConcurrentHashMap<Integer, String>();
+
     @Override
     public Callable<Boolean> createSetup(String file_path,
                                             String file_nonce,
@@ -116,17 +134,71 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                     SnapshotFormat.NATIVE,
                     tableArray);
 
+        final boolean incremental = jsData != null && jsData.optBoolean(SnapshotUtil.JSON_INCREMENTAL, false);
+        final String parentNonce = incremental ? jsData.optString(SnapshotUtil.JSON_PARENT_NONCE, null) : null;
+        if (incremental) {
+            final String chainTip = m_incrementalChainTips.get(context.getHostId());
+            if (parentNonce != null && !parentNonce.equals(chainTip)) {
+                final String err = "Parent snapshot " + parentNonce + " is not the last incremental snapshot " +
+                        "taken on this host" + (chainTip == null ? "" : " (" + chainTip + ")") +
+                        ", a new base snapshot is required";
+                SNAP_LOG.error(err);
+                for (final Table table : tableArray) {
+                    result.addRow(context.getHostId(),
+                            CoreUtils.getHostnameOrAddress(),
+                            table.getTypeName(),
+                            "FAILURE",
+                            err);
+                }
+                SnapshotRegistry.discardSnapshot(m_snapshotRecord);
+                return new Callable<Boolean>() {
+                    @Override
+                    public Boolean call()
+                    {
+                        return true;
+                    }
+                };
+            }
+            m_incrementalChainTips.put(context.getHostId(), file_nonce);
+        }
+
         final ArrayList<SnapshotTableTask> partitionedSnapshotTasks =
             new ArrayList<SnapshotTableTask>();
         final ArrayList<SnapshotTableTask> replicatedSnapshotTasks =
             new ArrayList<SnapshotTableTask>();
+        final List<String> trackedTables = new ArrayList<String>();
         for (final Table table : tableArray) {
-            final SnapshotTableTask task =
-                    new SnapshotTableTask(
-                            table,
-                            new SnapshotDataFilter[0],
-                            null,
-                            false);
+            final SnapshotTableTask task;
+            if (incremental && isTrackable(table)) {
+                final TableStreamType streamType =
+                        parentNonce == null ? TableStreamType.SNAPSHOT_BASE : TableStreamType.SNAPSHOT_DELTA;
+                task = new SnapshotTableTask(
+                        table,
+                        new SnapshotDataFilter[0],
+                        null,
+                        false,
+                        streamType,
+                        false);
+                if (parentNonce != null) {
+                    final SnapshotTableTask tombstonesTask =
+                            new SnapshotTableTask(
+                                    table,
+                                    new SnapshotDataFilter[0],
+                                    null,
+                                    false,
+                                    streamType,
+                                    true);
+                    SNAP_LOG.debug("ADDING TASK: " + tombstonesTask);
+                    partitionedSnapshotTasks.add(tombstonesTask);
+                }
+                trackedTables.add(table.getTypeName());
+            } else {
+                task = new SnapshotTableTask(
+                        table,
+                        new SnapshotDataFilter[0],
+                        null,
+                        false);
+            }
 
             SNAP_LOG.debug("ADDING TASK: " + task);
 
@@ -152,12 +224,33 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
         placePartitionedTasks(partitionedSnapshotTasks, tracker.getSitesForHost(context.getHostId()));
         placeReplicatedTasks(replicatedSnapshotTasks, tracker.getSitesForHost(context.getHostId()));
 
+        JSONObject incrementalInfo = null;
+        if (incremental) {
+            try {
+                incrementalInfo = new JSONObject();
+                incrementalInfo.putOpt(SnapshotUtil.JSON_PARENT_NONCE, parentNonce);
+                incrementalInfo.put(SnapshotUtil.JSON_TRACKED_TABLES, new JSONArray(trackedTables));
+            } catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         // All IO work will be deferred and be run on the dedicated snapshot IO thread
         return createDeferredSetup(file_path, file_nonce, txnId, partitionTransactionIds,
                 remoteDCLastIds, context,
                 exportSequenceNumbers, drTupleStreamInfo, tracker, hashinatorData, timestamp,
                 newPartitionCount, tableArray, m_snapshotRecord, partitionedSnapshotTasks,
-                replicatedSnapshotTasks);
+                replicatedSnapshotTasks, incrementalInfo);
+    }
+
+    /**
+     * Deltas apply rows by primary key, and replicated tables are written
+     * by a single site per host, so only partitioned tables with a primary
+     * key can be tracked.
+     */
+    private static boolean isTrackable(Table table)
+    {
+        return !table.getIsreplicated() && !CatalogUtil.getPrimaryKeyColumns(table).isEmpty();
     }
 
     private Callable<Boolean> createDeferredSetup(final String file_path,
@@ -175,10 +268,12 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                                                   final Table[] tables,
                                                   final SnapshotRegistry.Snapshot snapshotRecord,
                                                   final ArrayList<SnapshotTableTask> partitionedSnapshotTasks,
-                                                  final ArrayList<SnapshotTableTask> replicatedSnapshotTasks)
+                                                  final ArrayList<SnapshotTableTask> replicatedSnapshotTasks,
+                                                  final JSONObject incrementalInfo)
     {
         return new Callable<Boolean>() {
-            private final HashMap<Integer, SnapshotDataTarget> m_createdTargets = Maps.newHashMap();
+            // Keyed by table and whether the target gets the deleted rows
+            private final HashMap<Pair<Integer, Boolean>, SnapshotDataTarget> m_createdTargets = Maps.newHashMap();
 
             @Override
             public Boolean call() throws Exception
@@ -190,7 +285,8 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                         drTupleStreamInfo,
                         hashinatorData,
                         timestamp,
-                        newPartitionCount);
+                        newPartitionCount,
+                        incrementalInfo);
 
                 for (SnapshotTableTask task : replicatedSnapshotTasks) {
                     SnapshotDataTarget target = getSnapshotDataTarget(numTables, task);
@@ -217,13 +313,21 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
             private SnapshotDataTarget getSnapshotDataTarget(AtomicInteger numTables, SnapshotTableTask task)
                     throws IOException
             {
-                SnapshotDataTarget target = m_createdTargets.get(task.m_table.getRelativeIndex());
+                final Pair<Integer, Boolean> key = Pair.of(task.m_table.getRelativeIndex(), task.m_deletedRows);
+                SnapshotDataTarget target = m_createdTargets.get(key);
                 if (target == null) {
-                    target = createDataTargetForTable(file_path, file_nonce, task.m_table, txnId,
-                            context.getHostId(), context.getCluster().getTypeName(),
-                            context.getDatabase().getTypeName(), context.getNumberOfPartitions(),
-                            tracker, timestamp, numTables, snapshotRecord);
-                    m_createdTargets.put(task.m_table.getRelativeIndex(), target);
+                    if (task.m_deletedRows) {
+                        target = createDataTargetForTombstones(file_path, file_nonce, task.m_table, txnId,
+                                context.getHostId(), context.getCluster().getTypeName(),
+                                context.getDatabase().getTypeName(), context.getNumberOfPartitions(),
+                                tracker, timestamp);
+                    } else {
+                        target = createDataTargetForTable(file_path, file_nonce, task.m_table, txnId,
+                                context.getHostId(), context.getCluster().getTypeName(),
+                                context.getDatabase().getTypeName(), context.getNumberOfPartitions(),
+                                tracker, timestamp, numTables, snapshotRecord);
+                    }
+                    m_createdTargets.put(key, target);
                 }
                 return target;
             }
@@ -272,6 +376,43 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
         return sdt;
     }
 
+    /**
+     * The rows of a table deleted since the previous incremental snapshot go to
+     * their own file, with the table's schema and the table name plus
+     * {@link SnapshotUtil#TOMBSTONES_SUFFIX} in the header. Not tracked in the
+     * snapshot registry, which only knows about tables.
+     */
+    private SnapshotDataTarget createDataTargetForTombstones(String file_path,
+                                                             String file_nonce,
+                                                             Table table,
+                                                             long txnId,
+                                                             int hostId,
+                                                             String clusterName,
+                                                             String databaseName,
+                                                             int partitionCount,
+                                                             SiteTracker tracker,
+                                                             long timestamp)
+            throws IOException
+    {
+        File saveFilePath = new VoltFile(file_path,
+                SnapshotUtil.constructFilenameForTombstones(table, file_nonce, hostId));
+
+        SnapshotDataTarget sdt = new DefaultSnapshotDataTarget(saveFilePath,
+                hostId,
+                clusterName,
+                databaseName,
+                table.getTypeName() + SnapshotUtil.TOMBSTONES_SUFFIX,
+                partitionCount,
+                false,
+                tracker.getPartitionsForHost(hostId),
+                CatalogUtil.getVoltTable(table),
+                txnId,
+                timestamp);
+
+        m_targets.add(sdt);
+        return sdt;
+    }
+
     static void createFileBasedCompletionTasks(
             String file_path, String file_nonce,
             long txnId, Map<Integer, Long> partitionTransactionIds,
@@ -280,7 +421,8 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
             Map<String, Map<Integer, Pair<Long, Long>>> exportSequenceNumbers,
             Map<Integer, Pair<Long, Long>> drTupleStreamInfo,
             HashinatorSnapshotData hashinatorData,
-            long timestamp, int newPartitionCount) throws IOException
+            long timestamp, int newPartitionCount,
+            JSONObject incrementalInfo) throws IOException
     {
         final List<Table> tables = SnapshotUtil.getTablesToSave(context.getDatabase());
         InstanceId instId = VoltDB.instance().getHostMessenger().getInstanceId();
@@ -299,7 +441,8 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                 instId,
                 timestamp,
                 clusterCreateTime,
-                newPartitionCount);
+                newPartitionCount,
+                incrementalInfo);
         if (completionTask != null) {
             SnapshotSiteProcessor.m_tasksOnSnapshotCompletion.offer(completionTask);
         }
@@ -36,6 +36,8 @@ public class SnapshotPredicates {
     public final int m_tableId;
     private final List<Pair<AbstractExpression, Boolean>> m_predicates =
             new ArrayList<Pair<AbstractExpression, Boolean>>();
+    // Whether each target wants the rows deleted since the previous incremental snapshot
+    private final List<Boolean> m_deletedRows = new ArrayList<Boolean>();
 
     public SnapshotPredicates(int tableId)
     {
@@ -43,8 +45,14 @@ public class SnapshotPredicates {
     }
 
     public void addPredicate(AbstractExpression predicate, boolean deleteTuples)
+    {
+        addPredicate(predicate, deleteTuples, false);
+    }
+
+    public void addPredicate(AbstractExpression predicate, boolean deleteTuples, boolean deletedRows)
     {
         m_predicates.add(Pair.of(predicate, deleteTuples));
+        m_deletedRows.add(deletedRows);
     }
 
     public byte[] toBytes()
@@ -58,6 +66,9 @@ public class SnapshotPredicates {
                 JSONStringer stringer = new JSONStringer();
                 stringer.object();
                 stringer.key("triggersDelete").value(p.getSecond());
+                if (m_deletedRows.get(i)) {
+                    stringer.key("deletedRows").value(true);
+                }
                 // If the predicate is null, EE will serialize all rows to the corresponding data
                 // target. It's the same as passing an always-true expression,
                 // but without the overhead of the evaluating the expression. This avoids the
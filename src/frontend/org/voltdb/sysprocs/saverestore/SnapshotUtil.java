@@ -96,6 +96,18 @@ public class SnapshotUtil {
     public static final String JSON_DUPLICATES_PATH = "duplicatesPath";
     public static final String JSON_HASHINATOR = "hashinator";
 
+    // Incremental snapshots
+    public static final String JSON_INCREMENTAL = "incremental";
+    public static final String JSON_PARENT_NONCE = "parentNonce";
+    public static final String JSON_TRACKED_TABLES = "trackedTables";
+    public static final String JSON_DELTA = "delta";
+
+    /**
+     * Appended to the table name in the header of the files holding the rows
+     * deleted since the previous incremental snapshot.
+     */
+    public final static String TOMBSTONES_SUFFIX = "-TOMBSTONES";
+
     public static final ColumnInfo nodeResultsColumns[] =
     new ColumnInfo[] {
         new ColumnInfo(VoltSystemProcedure.CNAME_HOST_ID, VoltSystemProcedure.CTYPE_ID),
@@ -132,6 +144,7 @@ public class SnapshotUtil {
      * @param tables   List of tables present in this snapshot
      * @param hostId   Host ID where this is happening
      * @param exportSequenceNumbers  ???
+     * @param incremental  parent nonce and tracked tables of an incremental snapshot, or null
      * @throws IOException
      */
     public static Runnable writeSnapshotDigest(
@@ -148,7 +161,8 @@ public class SnapshotUtil {
         InstanceId instanceId,
         long timestamp,
         long clusterCreateTime,
-        int newPartitionCount)
+        int newPartitionCount,
+        JSONObject incremental)
     throws IOException
     {
         final File f = new VoltFile(path, constructDigestFilenameForNonce(nonce, hostId));
@@ -229,6 +243,9 @@ public class SnapshotUtil {
                     stringer.endObject();
                 }
                 stringer.endObject();
+                if (incremental != null) {
+                    stringer.key(JSON_INCREMENTAL).value(incremental);
+                }
                 stringer.endObject();
             } catch (JSONException e) {
                 throw new IOException(e);
@@ -1196,6 +1213,22 @@ public class SnapshotUtil {
         return filename_builder.toString();
     }
 
+    /**
+     * Generates the filename for the rows of a partitioned table deleted since
+     * the previous incremental snapshot.
+     */
+    public static final String constructFilenameForTombstones(Table table,
+                                                              String fileNonce,
+                                                              int hostId)
+    {
+        return fileNonce + "-" + table.getTypeName() + TOMBSTONES_SUFFIX + "-host_" + hostId + ".vpt";
+    }
+
+    public static final boolean isTombstonesTableName(String tableName)
+    {
+        return tableName.endsWith(TOMBSTONES_SUFFIX);
+    }
+
     public static final File constructFileForTable(Table table,
             String filePath,
             String fileNonce,
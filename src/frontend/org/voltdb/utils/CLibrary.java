@@ -18,6 +18,7 @@ package org.voltdb.utils;
 
 import org.voltcore.logging.VoltLogger;
 import com.sun.jna.Native;
+import com.sun.jna.Pointer;
 import sun.misc.SharedSecrets;
 
 import java.io.FileDescriptor;
@@ -69,4 +70,15 @@ public class CLibrary {
 
     public static native final int getpid();
 
+    /*
+     * Unbuffered file writes, used by snapshots to keep their data out of the page cache.
+     * O_DIRECT needs the buffer address, file offset and length aligned to the block size.
+     */
+    public static final int O_WRONLY = 1;
+    public static final int O_DIRECT_LINUX = 040000;
+
+    public static native final int open(String path, int flags, int mode);
+    public static native final long pwrite(int fd, Pointer buf, long count, long offset);
+    public static native final int close(int fd);
+
 }
@@ -378,6 +378,13 @@ public abstract class CatalogSchemaTools {
             sb.append("DR TABLE " + catalog_tbl.getTypeName() + ";\n");
         }
 
+        for (Column catalog_col : CatalogUtil.getSortedCatalogItems(catalog_tbl.getColumns(), "index")) {
+            if (catalog_col.getCompressed()) {
+                sb.append("COMPRESS TABLE " + catalog_tbl.getTypeName() +
+                        " COLUMN " + catalog_col.getTypeName() + ";\n");
+            }
+        }
+
         sb.append("\n");
         // Canonical DDL generation for this table is done, now just hand the CREATE TABLE
         // statement to whoever might be interested (DDLCompiler, I'm looking in your direction)
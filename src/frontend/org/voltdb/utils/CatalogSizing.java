@@ -276,6 +276,13 @@ public abstract class CatalogSizing {
             isize.widthMin += 48;
             isize.widthMax += 48;
         }
+        else if (index.getType() == IndexType.BTREE.getValue()) {
+            // B+tree leaves hold the key and an 8 byte tuple pointer per row.
+            // Nodes run between half and completely full, and inner nodes
+            // add a few percent on top of that.
+            isize.widthMax = isize.widthMax * 2 + 24;
+            isize.widthMin += 8;
+        }
         else {
             // Tree indexes have a 40 byte overhead per row.
             isize.widthMin += 40;
@@ -84,6 +84,8 @@ import org.voltdb.catalog.Deployment;
 import org.voltdb.catalog.Group;
 import org.voltdb.catalog.GroupRef;
 import org.voltdb.catalog.Index;
+import org.voltdb.catalog.MaterializedViewInfo;
+import org.voltdb.catalog.MaterializedViewJoin;
 import org.voltdb.catalog.PlanFragment;
 import org.voltdb.catalog.SnapshotSchedule;
 import org.voltdb.catalog.Statement;
@@ -447,6 +449,31 @@ public abstract class CatalogUtil {
         return false;
     }
 
+    /**
+     * Return true if a table is the source table of a materialized view with joins
+     * or one of the tables such a view joins.
+     */
+    public static boolean isTableInMaterializedViewJoin(org.voltdb.catalog.Database database,
+                                                        org.voltdb.catalog.Table table)
+    {
+        for (Table t : database.getTables()) {
+            for (MaterializedViewInfo mvi : t.getViews()) {
+                if (mvi.getJoins().isEmpty()) {
+                    continue;
+                }
+                if (t.getRelativeIndex() == table.getRelativeIndex()) {
+                    return true;
+                }
+                for (MaterializedViewJoin join : mvi.getJoins()) {
+                    if (join.getTable().getRelativeIndex() == table.getRelativeIndex()) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Check if a catalog compiled with the given version of VoltDB is
      * compatible with the current version of VoltDB.
@@ -973,6 +1000,7 @@ public abstract class CatalogUtil {
         syssettings.setSnapshotpriority(deployment.getSystemsettings().getSnapshot().getPriority());
         syssettings.setElasticduration(deployment.getSystemsettings().getElastic().getDuration());
         syssettings.setElasticthroughput(deployment.getSystemsettings().getElastic().getThroughput());
+        syssettings.setElasticlatency(deployment.getSystemsettings().getElastic().getLatency());
         syssettings.setQuerytimeout(deployment.getSystemsettings().getQuery().getTimeout());
     }
 
@@ -0,0 +1,82 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks how long the fsyncs that transactions wait on take, so background
+ * writers such as snapshots can back off while they are slowing down.
+ *
+ * The command log and export report each of their syncs. A fast and a slow
+ * moving average are kept, latency is rising while the fast one is well
+ * above the slow one.
+ */
+public final class FsyncLatencyTracker {
+    // Latency below this is never considered a problem
+    static final long MIN_RISING_NANOS =
+        TimeUnit.MICROSECONDS.toNanos(Integer.getInteger("FSYNC_LATENCY_MIN_RISING_MICROS", 2000));
+    static final double RISING_RATIO = 1.5;
+    // Without a recent sample there is nothing to back off for
+    static final long STALE_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private static final double FAST_WEIGHT = 0.3;
+    private static final double SLOW_WEIGHT = 0.02;
+
+    private static double m_fastNanos = 0;
+    private static double m_slowNanos = 0;
+    private static long m_lastSampleNanos = 0;
+    private static boolean m_hasSamples = false;
+
+    private FsyncLatencyTracker() {}
+
+    public static void record(long latencyNanos) {
+        record(latencyNanos, System.nanoTime());
+    }
+
+    static synchronized void record(long latencyNanos, long nowNanos) {
+        if (!m_hasSamples) {
+            m_fastNanos = latencyNanos;
+            m_slowNanos = latencyNanos;
+            m_hasSamples = true;
+        } else {
+            m_fastNanos += FAST_WEIGHT * (latencyNanos - m_fastNanos);
+            m_slowNanos += SLOW_WEIGHT * (latencyNanos - m_slowNanos);
+        }
+        m_lastSampleNanos = nowNanos;
+    }
+
+    public static boolean isRising() {
+        return isRising(System.nanoTime());
+    }
+
+    static synchronized boolean isRising(long nowNanos) {
+        if (!m_hasSamples || nowNanos - m_lastSampleNanos > STALE_NANOS) {
+            return false;
+        }
+        return m_fastNanos > MIN_RISING_NANOS && m_fastNanos > m_slowNanos * RISING_RATIO;
+    }
+
+    // For tests
+    public static synchronized void reset() {
+        m_fastNanos = 0;
+        m_slowNanos = 0;
+        m_lastSampleNanos = 0;
+        m_hasSamples = false;
+    }
+}
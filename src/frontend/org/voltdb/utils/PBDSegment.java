@@ -163,7 +163,9 @@ class PBDSegment {
     void sync() throws IOException {
         if (m_closed) throw new IOException("closed");
         if (!m_syncedSinceLastEdit) {
+            final long start = System.nanoTime();
             m_buf.b().force();
+            FsyncLatencyTracker.record(System.nanoTime() - start);
         }
         m_syncedSinceLastEdit = true;
     }
@@ -0,0 +1,67 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+
+#include "common/HyperLogLog.h"
+
+using namespace voltdb;
+
+class HyperLogLogTest : public Test {
+public:
+    // Within a few standard errors (about 3.25% for 1024 registers)
+    static bool isClose(int64_t expected, int64_t estimate) {
+        double error = static_cast<double>(estimate - expected) / static_cast<double>(expected);
+        return error < 0.10 && error > -0.10;
+    }
+};
+
+TEST_F(HyperLogLogTest, Empty) {
+    HyperLogLog sketch;
+    EXPECT_EQ(0, sketch.estimate());
+}
+
+TEST_F(HyperLogLogTest, SmallCardinalities) {
+    HyperLogLog sketch;
+    for (uint64_t ii = 0; ii < 100; ++ii) {
+        sketch.add(HyperLogLog::mix(ii));
+        // Duplicates don't count.
+        sketch.add(HyperLogLog::mix(ii));
+    }
+    EXPECT_TRUE(isClose(100, sketch.estimate()));
+}
+
+TEST_F(HyperLogLogTest, LargeCardinalities) {
+    const int64_t counts[] = { 5000, 100000, 1000000 };
+    for (int cc = 0; cc < 3; ++cc) {
+        HyperLogLog sketch;
+        for (int64_t ii = 0; ii < counts[cc]; ++ii) {
+            sketch.add(HyperLogLog::mix(static_cast<uint64_t>(ii)));
+        }
+        EXPECT_TRUE(isClose(counts[cc], sketch.estimate()));
+    }
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
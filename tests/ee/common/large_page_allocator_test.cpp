@@ -0,0 +1,191 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+
+#include "common/LargePageAllocator.h"
+#include "logging/LogManager.h"
+#include "logging/StdoutLogProxy.h"
+#include "structures/ContiguousAllocator.h"
+
+#include <cstring>
+#include <vector>
+#include <stdint.h>
+
+using namespace std;
+using namespace voltdb;
+
+class LargePageAllocatorTest : public Test {
+public:
+    // The allocator warns once when no huge pages are reserved
+    LargePageAllocatorTest()
+        : m_logManager(new StdoutLogProxy()), m_policy(LargePageAllocator::policy()) {}
+
+    ~LargePageAllocatorTest() {
+        LargePageAllocator::setPolicy(m_policy);
+    }
+
+    static int64_t mappedBytes() {
+        return LargePageAllocator::getHugePageBytes() +
+            LargePageAllocator::getTransparentHugePageBytes();
+    }
+
+    LogManager m_logManager;
+    LargePageAllocator::Policy m_policy;
+};
+
+TEST_F(LargePageAllocatorTest, SmallAllocationsUseTheHeap) {
+    LargePageAllocator::setPolicy(LargePageAllocator::POLICY_TRANSPARENT);
+    const int64_t before = mappedBytes();
+    const size_t bytes = 128 * 1024;
+    EXPECT_FALSE(LargePageAllocator::usesLargePages(bytes));
+    EXPECT_EQ(bytes, LargePageAllocator::allocationSize(bytes));
+    char *memory = static_cast<char*>(LargePageAllocator::allocate(bytes));
+    ::memset(memory, 1, bytes);
+    EXPECT_EQ(before, mappedBytes());
+    LargePageAllocator::deallocate(memory, bytes);
+    EXPECT_EQ(before, mappedBytes());
+}
+
+TEST_F(LargePageAllocatorTest, TransparentHugePages) {
+    LargePageAllocator::setPolicy(LargePageAllocator::POLICY_TRANSPARENT);
+    const int64_t before = LargePageAllocator::getTransparentHugePageBytes();
+    const int64_t numaBefore = LargePageAllocator::getNumaLocalBytes();
+
+    // A tuple block is exactly one huge page, index buffers may be a bit less.
+    const size_t sizes[] = { LargePageAllocator::HUGE_PAGE_SIZE,
+                             LargePageAllocator::HUGE_PAGE_SIZE - 4096,
+                             LargePageAllocator::HUGE_PAGE_SIZE + 1 };
+    for (int ii = 0; ii < 3; ++ii) {
+        const size_t bytes = sizes[ii];
+        const size_t mapped = LargePageAllocator::allocationSize(bytes);
+        EXPECT_TRUE(LargePageAllocator::usesLargePages(bytes));
+        EXPECT_EQ(0, mapped % LargePageAllocator::HUGE_PAGE_SIZE);
+        EXPECT_TRUE(mapped >= bytes);
+
+        char *memory = static_cast<char*>(LargePageAllocator::allocate(bytes));
+        EXPECT_EQ(0, reinterpret_cast<uintptr_t>(memory) % LargePageAllocator::HUGE_PAGE_SIZE);
+        ::memset(memory, 0x5a, bytes);
+        EXPECT_EQ(before + static_cast<int64_t>(mapped),
+                  LargePageAllocator::getTransparentHugePageBytes());
+        // Binding depends on the kernel, but never covers more than was mapped
+        EXPECT_TRUE(LargePageAllocator::getNumaLocalBytes() - numaBefore <=
+                    static_cast<int64_t>(mapped));
+
+        LargePageAllocator::deallocate(memory, bytes);
+        EXPECT_EQ(before, LargePageAllocator::getTransparentHugePageBytes());
+        EXPECT_EQ(numaBefore, LargePageAllocator::getNumaLocalBytes());
+    }
+}
+
+TEST_F(LargePageAllocatorTest, ReservedHugePagesFallBack) {
+    // Whether or not this host has huge pages reserved, the allocation
+    // has to succeed and be accounted as one kind or the other.
+    LargePageAllocator::setPolicy(LargePageAllocator::POLICY_HUGETLB);
+    const int64_t before = mappedBytes();
+    std::vector<char*> blocks;
+    for (int ii = 0; ii < 4; ++ii) {
+        char *memory = static_cast<char*>(LargePageAllocator::allocate(LargePageAllocator::HUGE_PAGE_SIZE));
+        ::memset(memory, ii, LargePageAllocator::HUGE_PAGE_SIZE);
+        blocks.push_back(memory);
+    }
+    EXPECT_EQ(before + static_cast<int64_t>(4 * LargePageAllocator::HUGE_PAGE_SIZE), mappedBytes());
+    for (int ii = 0; ii < 4; ++ii) {
+        EXPECT_EQ(ii, blocks[ii][LargePageAllocator::HUGE_PAGE_SIZE - 1]);
+        LargePageAllocator::deallocate(blocks[ii], LargePageAllocator::HUGE_PAGE_SIZE);
+    }
+    EXPECT_EQ(before, mappedBytes());
+}
+
+TEST_F(LargePageAllocatorTest, PolicyOff) {
+    LargePageAllocator::setPolicy(LargePageAllocator::POLICY_OFF);
+    const int64_t before = mappedBytes();
+    char *memory = static_cast<char*>(LargePageAllocator::allocate(LargePageAllocator::HUGE_PAGE_SIZE));
+    ::memset(memory, 1, LargePageAllocator::HUGE_PAGE_SIZE);
+    EXPECT_EQ(before, mappedBytes());
+
+    // Changing the policy doesn't change how memory is given back.
+    LargePageAllocator::setPolicy(LargePageAllocator::POLICY_TRANSPARENT);
+    LargePageAllocator::deallocate(memory, LargePageAllocator::HUGE_PAGE_SIZE);
+    EXPECT_EQ(before, mappedBytes());
+}
+
+TEST_F(LargePageAllocatorTest, ContiguousAllocatorGrowsIntoHugePages) {
+    LargePageAllocator::setPolicy(LargePageAllocator::POLICY_TRANSPARENT);
+    const int32_t allocSize = 48;
+    const int32_t chunkSize = 1000;
+    const int64_t before = mappedBytes();
+    ContiguousAllocator allocator(allocSize, chunkSize, true);
+
+    // Small buffers until a huge page worth has been allocated and filled
+    std::vector<void*> allocs;
+    while (allocator.bytesAllocated() < LargePageAllocator::HUGE_PAGE_SIZE ||
+           allocs.size() * allocSize < allocator.bytesAllocated()) {
+        allocs.push_back(allocator.alloc());
+        EXPECT_EQ(0, allocator.bytesAllocated() % (allocSize * chunkSize));
+    }
+    EXPECT_EQ(before, mappedBytes());
+    const size_t smallBytes = allocator.bytesAllocated();
+
+    // then buffers filling a huge page each
+    allocs.push_back(allocator.alloc());
+    const size_t hugeBytes = allocator.bytesAllocated() - smallBytes;
+    EXPECT_TRUE(hugeBytes > static_cast<size_t>(allocSize * chunkSize));
+    EXPECT_TRUE(hugeBytes <= LargePageAllocator::HUGE_PAGE_SIZE);
+    EXPECT_EQ(before + static_cast<int64_t>(LargePageAllocator::HUGE_PAGE_SIZE), mappedBytes());
+    while (allocator.bytesAllocated() < smallBytes + 2 * hugeBytes) {
+        allocs.push_back(allocator.alloc());
+    }
+    EXPECT_EQ(before + static_cast<int64_t>(2 * LargePageAllocator::HUGE_PAGE_SIZE), mappedBytes());
+
+    // Allocations stay contiguous within a buffer and last() tracks trim().
+    for (size_t ii = 0; ii < allocs.size(); ++ii) {
+        ::memset(allocs[ii], static_cast<int>(ii), allocSize);
+    }
+    while (!allocs.empty()) {
+        EXPECT_EQ(allocs.back(), allocator.last());
+        EXPECT_EQ(static_cast<char>(allocs.size() - 1), *static_cast<char*>(allocator.last()));
+        allocator.trim();
+        allocs.pop_back();
+        EXPECT_EQ(static_cast<int64_t>(allocs.size()), allocator.count());
+    }
+    EXPECT_EQ(0, allocator.bytesAllocated());
+    EXPECT_EQ(before, mappedBytes());
+}
+
+TEST_F(LargePageAllocatorTest, ContiguousAllocatorDefaultBuffers) {
+    // Without large buffers the buffer size never changes.
+    const int32_t allocSize = 48;
+    const int32_t chunkSize = 1000;
+    ContiguousAllocator allocator(allocSize, chunkSize);
+    for (int ii = 0; ii < 100 * chunkSize + 1; ++ii) {
+        allocator.alloc();
+    }
+    EXPECT_EQ(static_cast<size_t>(101 * allocSize * chunkSize), allocator.bytesAllocated());
+    allocator.trim();
+    EXPECT_EQ(static_cast<size_t>(100 * allocSize * chunkSize), allocator.bytesAllocated());
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
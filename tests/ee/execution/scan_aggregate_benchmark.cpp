@@ -0,0 +1,472 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+/*
+ * Sequential scans with inline projections and aggregates, run through the
+ * engine the way the frontend runs a plan fragment, once row at a time and once
+ * in batches (SeqScanExecutor::setBatchExecution). Both must produce the same
+ * result bytes, or the same error, and the time per scanned row of each is
+ * printed.
+ *
+ * The plans are those the planner produces for the queries in the comments,
+ * on this table:
+ *
+ * CREATE TABLE T (ID BIGINT NOT NULL, A INTEGER, B BIGINT, C FLOAT, D VARCHAR(15));
+ */
+
+#include <cmath>
+#include <cstdio>
+#include <iomanip>
+#include <iostream>
+#include <limits>
+#include <map>
+#include <sstream>
+#include <string>
+#include <vector>
+#include <stdint.h>
+#include <sys/time.h>
+#include <arpa/inet.h>
+
+#include "harness.h"
+#include "common/common.h"
+#include "common/executorcontext.hpp"
+#include "common/NValue.hpp"
+#include "common/serializeio.h"
+#include "common/tabletuple.h"
+#include "common/Topend.h"
+#include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "execution/VoltDBEngine.h"
+#include "executors/seqscanexecutor.h"
+#include "storage/persistenttable.h"
+
+using namespace std;
+using namespace voltdb;
+
+namespace {
+
+int64_t nowMicros()
+{
+    timeval tv;
+    gettimeofday(&tv, NULL);
+    return static_cast<int64_t>(tv.tv_sec) * 1000000 + tv.tv_usec;
+}
+
+// SELECT COUNT(*) FROM T WHERE A > ?
+const char *COUNT_WHERE =
+    "{\"PLAN_NODES\":[{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},{\"ID\":2,\"PLAN_NODE_TYPE"
+    "\":\"SEQSCAN\",\"INLINE_NODES\":[{\"ID\":0,\"PLAN_NODE_TYPE\":\"AGGREGATE\",\"OUTPUT_SCHEMA\":[{\"COLUMN"
+    "_NAME\":\"C1\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":0}}],\"AGGREGATE_COLUMNS\":["
+    "{\"AGGREGATE_TYPE\":\"AGGREGATE_COUNT_STAR\",\"AGGREGATE_DISTINCT\":0,\"AGGREGATE_OUTPUT_COLUMN\":"
+    "0}]},{\"ID\":0,\"PLAN_NODE_TYPE\":\"PROJECTION\",\"OUTPUT_SCHEMA\":[{\"COLUMN_NAME\":\"A\",\"EXPRESSION"
+    "\":{\"TYPE\":32,\"VALUE_TYPE\":5,\"COLUMN_IDX\":1}}]}],\"OUTPUT_SCHEMA\":[{\"COLUMN_NAME\":\"C1\",\"EXPR"
+    "ESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":0}}],\"PREDICATE\":{\"TYPE\":13,\"VALUE_TYPE\":6,"
+    "\"LEFT\":{\"TYPE\":32,\"VALUE_TYPE\":5,\"COLUMN_IDX\":1},\"RIGHT\":{\"TYPE\":31,\"VALUE_TYPE\":5,\"PARAM_"
+    "IDX\":0}},\"TARGET_TABLE_NAME\":\"T\",\"TARGET_TABLE_ALIAS\":\"T\"}],\"EXECUTE_LIST\":[2,1]}";
+
+// SELECT COUNT(*), SUM(B), MIN(C), MAX(A), COUNT(C) FROM T WHERE A >= ? AND A < ?
+const char *AGGS_RANGE =
+    "{\"PLAN_NODES\":[{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},{\"ID\":2,\"PLAN_NODE_TYPE"
+    "\":\"SEQSCAN\",\"INLINE_NODES\":[{\"ID\":0,\"PLAN_NODE_TYPE\":\"AGGREGATE\",\"OUTPUT_SCHEMA\":[{\"COLUMN"
+    "_NAME\":\"C1\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":0}},{\"COLUMN_NAME\":\"C2\",\"E"
+    "XPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":1}},{\"COLUMN_NAME\":\"C3\",\"EXPRESSION\":{\"T"
+    "YPE\":32,\"VALUE_TYPE\":8,\"COLUMN_IDX\":2}},{\"COLUMN_NAME\":\"C4\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE"
+    "_TYPE\":5,\"COLUMN_IDX\":3}},{\"COLUMN_NAME\":\"C5\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLU"
+    "MN_IDX\":4}}],\"AGGREGATE_COLUMNS\":[{\"AGGREGATE_TYPE\":\"AGGREGATE_COUNT_STAR\",\"AGGREGATE_DIST"
+    "INCT\":0,\"AGGREGATE_OUTPUT_COLUMN\":0},{\"AGGREGATE_TYPE\":\"AGGREGATE_SUM\",\"AGGREGATE_DISTINCT"
+    "\":0,\"AGGREGATE_OUTPUT_COLUMN\":1,\"AGGREGATE_EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_I"
+    "DX\":1}},{\"AGGREGATE_TYPE\":\"AGGREGATE_MIN\",\"AGGREGATE_DISTINCT\":0,\"AGGREGATE_OUTPUT_COLUMN\""
+    ":2,\"AGGREGATE_EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":8,\"COLUMN_IDX\":2}},{\"AGGREGATE_TYPE\":\"AG"
+    "GREGATE_MAX\",\"AGGREGATE_DISTINCT\":0,\"AGGREGATE_OUTPUT_COLUMN\":3,\"AGGREGATE_EXPRESSION\":{\"T"
+    "YPE\":32,\"VALUE_TYPE\":5,\"COLUMN_IDX\":0}},{\"AGGREGATE_TYPE\":\"AGGREGATE_COUNT\",\"AGGREGATE_DIS"
+    "TINCT\":0,\"AGGREGATE_OUTPUT_COLUMN\":4,\"AGGREGATE_EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":8,\"COL"
+    "UMN_IDX\":2}}]},{\"ID\":0,\"PLAN_NODE_TYPE\":\"PROJECTION\",\"OUTPUT_SCHEMA\":[{\"COLUMN_NAME\":\"A\",\""
+    "EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":5,\"COLUMN_IDX\":1}},{\"COLUMN_NAME\":\"B\",\"EXPRESSION\":{\"T"
+    "YPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":2}},{\"COLUMN_NAME\":\"C\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_"
+    "TYPE\":8,\"COLUMN_IDX\":3}}]}],\"OUTPUT_SCHEMA\":[{\"COLUMN_NAME\":\"C1\",\"EXPRESSION\":{\"TYPE\":32,\""
+    "VALUE_TYPE\":6,\"COLUMN_IDX\":0}},{\"COLUMN_NAME\":\"C2\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,"
+    "\"COLUMN_IDX\":1}},{\"COLUMN_NAME\":\"C3\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":8,\"COLUMN_IDX\":2"
+    "}},{\"COLUMN_NAME\":\"C4\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":5,\"COLUMN_IDX\":3}},{\"COLUMN_NA"
+    "ME\":\"C5\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":4}}],\"PREDICATE\":{\"TYPE\":20,\""
+    "VALUE_TYPE\":6,\"LEFT\":{\"TYPE\":15,\"VALUE_TYPE\":6,\"LEFT\":{\"TYPE\":32,\"VALUE_TYPE\":5,\"COLUMN_ID"
+    "X\":1},\"RIGHT\":{\"TYPE\":31,\"VALUE_TYPE\":5,\"PARAM_IDX\":0}},\"RIGHT\":{\"TYPE\":12,\"VALUE_TYPE\":6,"
+    "\"LEFT\":{\"TYPE\":32,\"VALUE_TYPE\":5,\"COLUMN_IDX\":1},\"RIGHT\":{\"TYPE\":31,\"VALUE_TYPE\":5,\"PARAM_"
+    "IDX\":1}}},\"TARGET_TABLE_NAME\":\"T\",\"TARGET_TABLE_ALIAS\":\"T\"}],\"EXECUTE_LIST\":[2,1]}";
+
+// SELECT SUM(B), MAX(C) FROM T
+const char *AGGS_ALL =
+    "{\"PLAN_NODES\":[{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},{\"ID\":2,\"PLAN_NODE_TYPE"
+    "\":\"SEQSCAN\",\"INLINE_NODES\":[{\"ID\":0,\"PLAN_NODE_TYPE\":\"AGGREGATE\",\"OUTPUT_SCHEMA\":[{\"COLUMN"
+    "_NAME\":\"C1\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":0}},{\"COLUMN_NAME\":\"C2\",\"E"
+    "XPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":8,\"COLUMN_IDX\":1}}],\"AGGREGATE_COLUMNS\":[{\"AGGREGATE_TY"
+    "PE\":\"AGGREGATE_SUM\",\"AGGREGATE_DISTINCT\":0,\"AGGREGATE_OUTPUT_COLUMN\":0,\"AGGREGATE_EXPRESSI"
+    "ON\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":0}},{\"AGGREGATE_TYPE\":\"AGGREGATE_MAX\",\"AGGREGAT"
+    "E_DISTINCT\":0,\"AGGREGATE_OUTPUT_COLUMN\":1,\"AGGREGATE_EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":8"
+    ",\"COLUMN_IDX\":1}}]},{\"ID\":0,\"PLAN_NODE_TYPE\":\"PROJECTION\",\"OUTPUT_SCHEMA\":[{\"COLUMN_NAME\":"
+    "\"B\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":2}},{\"COLUMN_NAME\":\"C\",\"EXPRESSION"
+    "\":{\"TYPE\":32,\"VALUE_TYPE\":8,\"COLUMN_IDX\":3}}]}],\"OUTPUT_SCHEMA\":[{\"COLUMN_NAME\":\"C1\",\"EXPR"
+    "ESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":0}},{\"COLUMN_NAME\":\"C2\",\"EXPRESSION\":{\"TYPE"
+    "\":32,\"VALUE_TYPE\":8,\"COLUMN_IDX\":1}}],\"TARGET_TABLE_NAME\":\"T\",\"TARGET_TABLE_ALIAS\":\"T\"}],\""
+    "EXECUTE_LIST\":[2,1]}";
+
+// SELECT ID, B FROM T WHERE A < ? AND C > ?
+const char *PROJECT_WHERE =
+    "{\"PLAN_NODES\":[{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},{\"ID\":2,\"PLAN_NODE_TYPE"
+    "\":\"SEQSCAN\",\"INLINE_NODES\":[{\"ID\":0,\"PLAN_NODE_TYPE\":\"PROJECTION\",\"OUTPUT_SCHEMA\":[{\"COLUM"
+    "N_NAME\":\"ID\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":0}},{\"COLUMN_NAME\":\"B\",\"E"
+    "XPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":2}}]}],\"PREDICATE\":{\"TYPE\":20,\"VALUE_TYP"
+    "E\":6,\"LEFT\":{\"TYPE\":12,\"VALUE_TYPE\":6,\"LEFT\":{\"TYPE\":32,\"VALUE_TYPE\":5,\"COLUMN_IDX\":1},\"RI"
+    "GHT\":{\"TYPE\":31,\"VALUE_TYPE\":5,\"PARAM_IDX\":0}},\"RIGHT\":{\"TYPE\":13,\"VALUE_TYPE\":6,\"LEFT\":{\""
+    "TYPE\":32,\"VALUE_TYPE\":8,\"COLUMN_IDX\":3},\"RIGHT\":{\"TYPE\":31,\"VALUE_TYPE\":8,\"PARAM_IDX\":1}}}"
+    ",\"TARGET_TABLE_NAME\":\"T\",\"TARGET_TABLE_ALIAS\":\"T\"}],\"EXECUTE_LIST\":[2,1]}";
+
+// SELECT A, COUNT(*), SUM(B) FROM T WHERE C > ? GROUP BY A
+const char *GROUP_BY =
+    "{\"PLAN_NODES\":[{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},{\"ID\":2,\"PLAN_NODE_TYPE"
+    "\":\"SEQSCAN\",\"INLINE_NODES\":[{\"ID\":0,\"PLAN_NODE_TYPE\":\"HASHAGGREGATE\",\"OUTPUT_SCHEMA\":[{\"CO"
+    "LUMN_NAME\":\"A\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":5,\"COLUMN_IDX\":0}},{\"COLUMN_NAME\":\"C2\""
+    ",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":1}},{\"COLUMN_NAME\":\"C3\",\"EXPRESSION\":"
+    "{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":2}}],\"AGGREGATE_COLUMNS\":[{\"AGGREGATE_TYPE\":\"AGGREG"
+    "ATE_COUNT_STAR\",\"AGGREGATE_DISTINCT\":0,\"AGGREGATE_OUTPUT_COLUMN\":1},{\"AGGREGATE_TYPE\":\"AGG"
+    "REGATE_SUM\",\"AGGREGATE_DISTINCT\":0,\"AGGREGATE_OUTPUT_COLUMN\":2,\"AGGREGATE_EXPRESSION\":{\"TY"
+    "PE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":1}}],\"GROUPBY_EXPRESSIONS\":[{\"TYPE\":32,\"VALUE_TYPE\":5,\""
+    "COLUMN_IDX\":0}]},{\"ID\":0,\"PLAN_NODE_TYPE\":\"PROJECTION\",\"OUTPUT_SCHEMA\":[{\"COLUMN_NAME\":\"A\""
+    ",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":5,\"COLUMN_IDX\":1}},{\"COLUMN_NAME\":\"B\",\"EXPRESSION\":{"
+    "\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":2}},{\"COLUMN_NAME\":\"C\",\"EXPRESSION\":{\"TYPE\":32,\"VALU"
+    "E_TYPE\":8,\"COLUMN_IDX\":3}}]}],\"OUTPUT_SCHEMA\":[{\"COLUMN_NAME\":\"A\",\"EXPRESSION\":{\"TYPE\":32,"
+    "\"VALUE_TYPE\":5,\"COLUMN_IDX\":0}},{\"COLUMN_NAME\":\"C2\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6"
+    ",\"COLUMN_IDX\":1}},{\"COLUMN_NAME\":\"C3\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":"
+    "2}}],\"PREDICATE\":{\"TYPE\":13,\"VALUE_TYPE\":6,\"LEFT\":{\"TYPE\":32,\"VALUE_TYPE\":8,\"COLUMN_IDX\":3"
+    "},\"RIGHT\":{\"TYPE\":31,\"VALUE_TYPE\":8,\"PARAM_IDX\":0}},\"TARGET_TABLE_NAME\":\"T\",\"TARGET_TABLE_"
+    "ALIAS\":\"T\"}],\"EXECUTE_LIST\":[2,1]}";
+
+// SELECT SUM(A * B) FROM T WHERE B > ?
+const char *SUM_EXPRESSION =
+    "{\"PLAN_NODES\":[{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},{\"ID\":2,\"PLAN_NODE_TYPE"
+    "\":\"SEQSCAN\",\"INLINE_NODES\":[{\"ID\":0,\"PLAN_NODE_TYPE\":\"AGGREGATE\",\"OUTPUT_SCHEMA\":[{\"COLUMN"
+    "_NAME\":\"C1\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":0}}],\"AGGREGATE_COLUMNS\":["
+    "{\"AGGREGATE_TYPE\":\"AGGREGATE_SUM\",\"AGGREGATE_DISTINCT\":0,\"AGGREGATE_OUTPUT_COLUMN\":0,\"AGGR"
+    "EGATE_EXPRESSION\":{\"TYPE\":3,\"VALUE_TYPE\":6,\"LEFT\":{\"TYPE\":32,\"VALUE_TYPE\":5,\"COLUMN_IDX\":0"
+    "},\"RIGHT\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":1}}}]},{\"ID\":0,\"PLAN_NODE_TYPE\":\"PROJECTI"
+    "ON\",\"OUTPUT_SCHEMA\":[{\"COLUMN_NAME\":\"A\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":5,\"COLUMN_IDX"
+    "\":1}},{\"COLUMN_NAME\":\"B\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":2}}]}],\"OUTPU"
+    "T_SCHEMA\":[{\"COLUMN_NAME\":\"C1\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":0}}],\"P"
+    "REDICATE\":{\"TYPE\":13,\"VALUE_TYPE\":6,\"LEFT\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":2},\"RIGH"
+    "T\":{\"TYPE\":31,\"VALUE_TYPE\":6,\"PARAM_IDX\":0}},\"TARGET_TABLE_NAME\":\"T\",\"TARGET_TABLE_ALIAS\":"
+    "\"T\"}],\"EXECUTE_LIST\":[2,1]}";
+
+// SELECT COUNT(*) FROM T WHERE D LIKE ?
+const char *COUNT_LIKE =
+    "{\"PLAN_NODES\":[{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},{\"ID\":2,\"PLAN_NODE_TYPE"
+    "\":\"SEQSCAN\",\"INLINE_NODES\":[{\"ID\":0,\"PLAN_NODE_TYPE\":\"AGGREGATE\",\"OUTPUT_SCHEMA\":[{\"COLUMN"
+    "_NAME\":\"C1\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":0}}],\"AGGREGATE_COLUMNS\":["
+    "{\"AGGREGATE_TYPE\":\"AGGREGATE_COUNT_STAR\",\"AGGREGATE_DISTINCT\":0,\"AGGREGATE_OUTPUT_COLUMN\":"
+    "0}]},{\"ID\":0,\"PLAN_NODE_TYPE\":\"PROJECTION\",\"OUTPUT_SCHEMA\":[{\"COLUMN_NAME\":\"D\",\"EXPRESSION"
+    "\":{\"TYPE\":32,\"VALUE_TYPE\":9,\"VALUE_SIZE\":15,\"COLUMN_IDX\":4}}]}],\"OUTPUT_SCHEMA\":[{\"COLUMN_"
+    "NAME\":\"C1\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":0}}],\"PREDICATE\":{\"TYPE\":16"
+    ",\"VALUE_TYPE\":6,\"LEFT\":{\"TYPE\":32,\"VALUE_TYPE\":9,\"VALUE_SIZE\":15,\"COLUMN_IDX\":4},\"RIGHT\":{"
+    "\"TYPE\":31,\"VALUE_TYPE\":9,\"VALUE_SIZE\":0,\"PARAM_IDX\":0}},\"TARGET_TABLE_NAME\":\"T\",\"TARGET_TA"
+    "BLE_ALIAS\":\"T\"}],\"EXECUTE_LIST\":[2,1]}";
+
+// SELECT COUNT(*), SUM(B) FROM T WHERE ID >= ?
+const char *SUM_FROM_ID =
+    "{\"PLAN_NODES\":[{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},{\"ID\":2,\"PLAN_NODE_TYPE"
+    "\":\"SEQSCAN\",\"INLINE_NODES\":[{\"ID\":0,\"PLAN_NODE_TYPE\":\"AGGREGATE\",\"OUTPUT_SCHEMA\":[{\"COLUMN"
+    "_NAME\":\"C1\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":0}},{\"COLUMN_NAME\":\"C2\",\"E"
+    "XPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":1}}],\"AGGREGATE_COLUMNS\":[{\"AGGREGATE_TY"
+    "PE\":\"AGGREGATE_COUNT_STAR\",\"AGGREGATE_DISTINCT\":0,\"AGGREGATE_OUTPUT_COLUMN\":0},{\"AGGREGATE"
+    "_TYPE\":\"AGGREGATE_SUM\",\"AGGREGATE_DISTINCT\":0,\"AGGREGATE_OUTPUT_COLUMN\":1,\"AGGREGATE_EXPRE"
+    "SSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":1}}]},{\"ID\":0,\"PLAN_NODE_TYPE\":\"PROJECTION\","
+    "\"OUTPUT_SCHEMA\":[{\"COLUMN_NAME\":\"ID\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":0"
+    "}},{\"COLUMN_NAME\":\"B\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":2}}]}],\"OUTPUT_S"
+    "CHEMA\":[{\"COLUMN_NAME\":\"C1\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":0}},{\"COLU"
+    "MN_NAME\":\"C2\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":1}}],\"PREDICATE\":{\"TYPE\""
+    ":15,\"VALUE_TYPE\":6,\"LEFT\":{\"TYPE\":32,\"VALUE_TYPE\":6,\"COLUMN_IDX\":0},\"RIGHT\":{\"TYPE\":31,\"VA"
+    "LUE_TYPE\":6,\"PARAM_IDX\":0}},\"TARGET_TABLE_NAME\":\"T\",\"TARGET_TABLE_ALIAS\":\"T\"}],\"EXECUTE_LI"
+    "ST\":[2,1]}";
+
+/** Hands the engine the plans above by fragment id */
+class PlanTopend : public DummyTopend {
+public:
+    std::string planForFragmentId(int64_t fragmentId) {
+        return m_plans[fragmentId];
+    }
+
+    std::map<int64_t, std::string> m_plans;
+};
+
+const int ROWS = 200000;
+const int RESULT_BUFFER_SIZE = 10 * 1024 * 1024;
+const int EXCEPTION_BUFFER_SIZE = 4096;
+
+}
+
+class ScanAggregateBenchmark : public Test {
+public:
+    ScanAggregateBenchmark()
+        : m_undoToken(0), m_table(NULL), m_fragments(0)
+    {
+        m_engine = new VoltDBEngine(&m_topend);
+        m_resultBuffer = new char[RESULT_BUFFER_SIZE];
+        m_exceptionBuffer = new char[EXCEPTION_BUFFER_SIZE];
+        m_engine->setBuffers(NULL, 0,
+                             m_resultBuffer, RESULT_BUFFER_SIZE,
+                             m_exceptionBuffer, EXCEPTION_BUFFER_SIZE);
+        m_engine->resetReusedResultOutputBuffer();
+        m_engine->initialize(0, 0, 0, 0, "", DEFAULT_TEMP_TABLE_MEMORY, false);
+        int partitionCount = 1;
+        m_engine->updateHashinator(HASHINATOR_LEGACY, (char*)&partitionCount, NULL, 0);
+
+        std::string catalog =
+          "add / clusters cluster\n"
+          "add /clusters#cluster databases database\n"
+          "add /clusters#cluster/databases#database programs program\n"
+          "add /clusters#cluster/databases#database tables T\n"
+          "set /clusters#cluster/databases#database/tables#T type 0\n"
+          "set /clusters#cluster/databases#database/tables#T isreplicated true\n"
+          "set /clusters#cluster/databases#database/tables#T estimatedtuplecount 0\n"
+          "set /clusters#cluster/databases#database/tables#T tuplelimit 2147483647\n"
+          + columnCmds("ID", 0, VALUE_TYPE_BIGINT, 0, false)
+          + columnCmds("A", 1, VALUE_TYPE_INTEGER, 0, true)
+          + columnCmds("B", 2, VALUE_TYPE_BIGINT, 0, true)
+          + columnCmds("C", 3, VALUE_TYPE_DOUBLE, 0, true)
+          + columnCmds("D", 4, VALUE_TYPE_VARCHAR, 15, true);
+        bool loadResult = m_engine->loadCatalog(0, catalog);
+        ASSERT_TRUE(loadResult);
+        m_table = dynamic_cast<PersistentTable*>(m_engine->getTable("T"));
+        ASSERT_TRUE(m_table != NULL);
+
+        nextUndoQuantum();
+        const char *words[] = { "apple", "apricot", "banana", "blueberry", "cherry" };
+        // The same rows every run
+        uint32_t random = 12345;
+        for (int i = 0; i < ROWS; ++i) {
+            random = random * 1103515245 + 12345;
+            const int r = static_cast<int>(random >> 8);
+            NValue c;
+            if (r % 31 == 0) {
+                c = NValue::getNullValue(VALUE_TYPE_DOUBLE);
+            }
+            else if (r % 997 == 1) {
+                c = ValueFactory::getDoubleValue(std::numeric_limits<double>::quiet_NaN());
+            }
+            else if (r % 997 == 2) {
+                c = ValueFactory::getDoubleValue(-0.0);
+            }
+            else if (r % 997 == 3) {
+                c = ValueFactory::getDoubleValue(0.0);
+            }
+            else {
+                c = ValueFactory::getDoubleValue((r % 20000 - 10000) / 100.0);
+            }
+            char d[16];
+            snprintf(d, sizeof(d), "%s%d", words[r % 5], r % 1000);
+            insertRow(i, ValueFactory::getIntegerValue(i * 7919 % 1000),
+                      ValueFactory::getBigIntValue(r % 2000001 - 1000000), c,
+                      ValueFactory::getStringValue(d));
+        }
+    }
+
+    ~ScanAggregateBenchmark()
+    {
+        delete m_engine;
+        delete[] m_resultBuffer;
+        delete[] m_exceptionBuffer;
+    }
+
+protected:
+    static std::string columnCmds(const char *name, int index, ValueType type, int size, bool nullable)
+    {
+        const std::string column = std::string("/clusters#cluster/databases#database/tables#T/columns#") + name;
+        std::ostringstream cmds;
+        cmds << "add /clusters#cluster/databases#database/tables#T columns " << name << "\n"
+             << "set " << column << " index " << index << "\n"
+             << "set " << column << " type " << type << "\n"
+             << "set " << column << " size " << size << "\n"
+             << "set " << column << " nullable " << (nullable ? "true" : "false") << "\n"
+             << "set " << column << " name \"" << name << "\"\n";
+        return cmds.str();
+    }
+
+    void nextUndoQuantum()
+    {
+        m_engine->setUndoToken(++m_undoToken);
+        ExecutorContext::getExecutorContext()->setupForPlanFragments(m_engine->getCurrentUndoQuantum(), 0, 0, 0, 0);
+    }
+
+    void insertRow(int64_t id, NValue a, NValue b, NValue c, NValue d)
+    {
+        TableTuple &tuple = m_table->tempTuple();
+        tuple.setNValue(0, ValueFactory::getBigIntValue(id));
+        tuple.setNValue(1, a);
+        tuple.setNValue(2, b);
+        tuple.setNValue(3, c);
+        tuple.setNValue(4, d);
+        m_table->insertTuple(tuple);
+        d.free();
+    }
+
+    /** Register a plan and return its fragment id */
+    int64_t addPlan(const char *plan)
+    {
+        m_topend.m_plans[++m_fragments] = plan;
+        return m_fragments;
+    }
+
+    /**
+     * Run the fragment with the given parameters, returning the result bytes
+     * or, if it failed, the serialized error prefixed with "error".
+     */
+    std::string execute(int64_t fragmentId, const std::vector<NValue> &params)
+    {
+        char paramBuffer[1024];
+        ReferenceSerializeOutput out(paramBuffer, sizeof(paramBuffer));
+        out.writeShort(static_cast<int16_t>(params.size()));
+        for (size_t i = 0; i < params.size(); ++i) {
+            out.writeByte(static_cast<int8_t>(ValuePeeker::peekValueType(params[i])));
+            params[i].serializeTo(out);
+        }
+        ReferenceSerializeInputBE in(paramBuffer, out.size());
+
+        m_engine->resetReusedResultOutputBuffer();
+        const int64_t txnId = m_undoToken;
+        const int failures = m_engine->executePlanFragments(1, &fragmentId, NULL, in,
+                                                            txnId, txnId, txnId - 1, txnId,
+                                                            m_undoToken);
+        m_engine->releaseUndoToken(m_undoToken);
+        nextUndoQuantum();
+        if (failures > 0) {
+            const int32_t length = ntohl(*reinterpret_cast<int32_t*>(m_exceptionBuffer));
+            return "error" + std::string(m_exceptionBuffer, sizeof(int32_t) + length);
+        }
+        return std::string(m_engine->getReusedResultBuffer(), m_engine->getResultsSize());
+    }
+
+    /**
+     * Run the fragment row at a time and in batches, check that they agree
+     * and print how long each took per row of the table.
+     */
+    void compare(const char *query, int64_t fragmentId, const std::vector<NValue> &params)
+    {
+        const int passes = 5;
+        std::string expected;
+        int64_t micros[2];
+        int mismatches = 0;
+        // The first execution sizes the hash table of a GROUP BY, so later
+        // ones may return the groups in another order.
+        SeqScanExecutor::setBatchExecution(false);
+        execute(fragmentId, params);
+        for (int batches = 0; batches < 2; ++batches) {
+            SeqScanExecutor::setBatchExecution(batches == 1);
+            // Once to warm up
+            const std::string result = execute(fragmentId, params);
+            if (batches == 0) {
+                expected = result;
+            }
+            else if (result != expected) {
+                ++mismatches;
+            }
+            const int64_t start = nowMicros();
+            for (int pass = 0; pass < passes; ++pass) {
+                if (execute(fragmentId, params) != expected) {
+                    ++mismatches;
+                }
+            }
+            micros[batches] = nowMicros() - start;
+        }
+        SeqScanExecutor::setBatchExecution(true);
+
+        const int64_t rows = static_cast<int64_t>(m_table->activeTupleCount()) * passes;
+        cout << endl << left << setw(80) << query
+             << (expected.compare(0, 5, "error") == 0 ? " (error)" : "")
+             << " rows " << (micros[0] * 1000 / rows) << " ns/row, batches "
+             << (micros[1] * 1000 / rows) << " ns/row"
+             << (mismatches > 0 ? " DIFFERENT RESULTS" : "");
+        EXPECT_EQ(0, mismatches);
+    }
+
+    static std::vector<NValue> params(NValue first)
+    {
+        return std::vector<NValue>(1, first);
+    }
+
+    static std::vector<NValue> params(NValue first, NValue second)
+    {
+        std::vector<NValue> result(1, first);
+        result.push_back(second);
+        return result;
+    }
+
+    PlanTopend m_topend;
+    VoltDBEngine *m_engine;
+    char *m_resultBuffer;
+    char *m_exceptionBuffer;
+    int64_t m_undoToken;
+    PersistentTable *m_table;
+    int64_t m_fragments;
+};
+
+TEST_F(ScanAggregateBenchmark, Queries) {
+    compare("SELECT COUNT(*) FROM T WHERE A > ?",
+            addPlan(COUNT_WHERE), params(ValueFactory::getIntegerValue(100)));
+    compare("SELECT COUNT(*), SUM(B), MIN(C), MAX(A), COUNT(C) FROM T WHERE A >= ? AND A < ?",
+            addPlan(AGGS_RANGE), params(ValueFactory::getIntegerValue(250), ValueFactory::getIntegerValue(750)));
+    compare("SELECT SUM(B), MAX(C) FROM T",
+            addPlan(AGGS_ALL), std::vector<NValue>());
+    compare("SELECT ID, B FROM T WHERE A < ? AND C > ?",
+            addPlan(PROJECT_WHERE), params(ValueFactory::getIntegerValue(500), ValueFactory::getDoubleValue(0.0)));
+    compare("SELECT A, COUNT(*), SUM(B) FROM T WHERE C > ? GROUP BY A",
+            addPlan(GROUP_BY), params(ValueFactory::getDoubleValue(-50.0)));
+    compare("SELECT SUM(A * B) FROM T WHERE B > ?",
+            addPlan(SUM_EXPRESSION), params(ValueFactory::getBigIntValue(0)));
+    NValue prefix = ValueFactory::getStringValue("b%");
+    compare("SELECT COUNT(*) FROM T WHERE D LIKE ?",
+            addPlan(COUNT_LIKE), params(prefix));
+    prefix.free();
+    compare("SELECT COUNT(*), SUM(B) FROM T WHERE ID >= ?",
+            addPlan(SUM_FROM_ID), params(ValueFactory::getBigIntValue(ROWS / 2)));
+    cout << endl;
+}
+
+/*
+ * A sum that overflows part way through a batch must fail the same way as it
+ * does row at a time.
+ */
+TEST_F(ScanAggregateBenchmark, Overflow) {
+    for (int i = 0; i < 3001; ++i) {
+        const int64_t b = (i == 1500 ? std::numeric_limits<int64_t>::max() - 2000 : 1);
+        insertRow(ROWS + i, ValueFactory::getIntegerValue(1), ValueFactory::getBigIntValue(b),
+                  ValueFactory::getDoubleValue(1.0), ValueFactory::getStringValue("overflow"));
+    }
+    const int64_t fragmentId = addPlan(SUM_FROM_ID);
+    compare("SELECT COUNT(*), SUM(B) FROM T WHERE ID >= ? (overflows)",
+            fragmentId, params(ValueFactory::getBigIntValue(ROWS)));
+    // Short of overflowing, the batches must add up to the same sum.
+    compare("SELECT COUNT(*), SUM(B) FROM T WHERE ID >= ? (just short)",
+            fragmentId, params(ValueFactory::getBigIntValue(ROWS + 1001)));
+    cout << endl;
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
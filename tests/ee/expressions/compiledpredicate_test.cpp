@@ -0,0 +1,507 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <algorithm>
+#include <string>
+#include <vector>
+#include <iostream>
+#include <iomanip>
+#include <limits>
+#include <cmath>
+#include <stdint.h>
+#include <sys/time.h>
+
+#include "harness.h"
+#include "common/TupleSchema.h"
+#include "common/tabletuple.h"
+#include "common/types.h"
+#include "common/NValue.hpp"
+#include "common/ValueFactory.hpp"
+#include "common/SerializableEEException.h"
+#include "common/ThreadLocalPool.h"
+#include "expressions/abstractexpression.h"
+#include "expressions/expressions.h"
+#include "expressions/expressionutil.h"
+#include "expressions/compiledpredicate.h"
+
+using namespace std;
+using namespace voltdb;
+
+namespace {
+
+enum Columns { TINY, SMALL, INT, BIG, TS, DBL, STR, COLUMN_COUNT };
+
+int64_t nowMicros()
+{
+    timeval tv;
+    gettimeofday(&tv, NULL);
+    return static_cast<int64_t>(tv.tv_sec) * 1000000 + tv.tv_usec;
+}
+
+/** What a predicate did with a row: "true", "false", or the message of the exception it raised */
+string outcome(bool result)
+{
+    return result ? "true" : "false";
+}
+
+}
+
+class CompiledPredicateTest : public Test {
+public:
+    CompiledPredicateTest() : m_seed(42)
+    {
+        vector<ValueType> types;
+        types.push_back(VALUE_TYPE_TINYINT);
+        types.push_back(VALUE_TYPE_SMALLINT);
+        types.push_back(VALUE_TYPE_INTEGER);
+        types.push_back(VALUE_TYPE_BIGINT);
+        types.push_back(VALUE_TYPE_TIMESTAMP);
+        types.push_back(VALUE_TYPE_DOUBLE);
+        types.push_back(VALUE_TYPE_VARCHAR);
+        vector<int32_t> sizes;
+        vector<bool> allowNull;
+        for (int i = 0; i < COLUMN_COUNT; ++i) {
+            // Short enough to be inlined, so the rows need no pool
+            sizes.push_back(types[i] == VALUE_TYPE_VARCHAR ? 16 : NValue::getTupleStorageSize(types[i]));
+            allowNull.push_back(true);
+        }
+        m_schema = TupleSchema::createTupleSchemaForTest(types, sizes, allowNull);
+        m_params.resize(3);
+    }
+
+    ~CompiledPredicateTest()
+    {
+        for (size_t i = 0; i < m_rows.size(); ++i) {
+            delete [] m_rows[i];
+        }
+        clearParams();
+        TupleSchema::freeTupleSchema(m_schema);
+    }
+
+    int64_t random(int64_t range)
+    {
+        m_seed = m_seed * 6364136223846793005LL + 1442695040888963407LL;
+        return static_cast<int64_t>((static_cast<uint64_t>(m_seed) >> 33) % range);
+    }
+
+    /** Mostly small numbers, so that comparisons are often equal, with NULLs and extremes */
+    NValue randomValue(int column)
+    {
+        const int64_t pick = random(20);
+        if (pick == 0) {
+            return NValue::getNullValue(m_schema->columnType(column));
+        }
+        switch (column) {
+        case TINY:
+            return ValueFactory::getTinyIntValue(static_cast<int8_t>(pick == 1 ? 127 : random(11) - 5));
+        case SMALL:
+            return ValueFactory::getSmallIntValue(static_cast<int16_t>(pick == 1 ? -32767 : random(11) - 5));
+        case INT:
+            return ValueFactory::getIntegerValue(static_cast<int32_t>(pick == 1 ? 2147483647 : random(11) - 5));
+        case BIG:
+            return ValueFactory::getBigIntValue(pick == 1 ? INT64_MAX : pick == 2 ? INT64_MIN + 1 : random(11) - 5);
+        case TS:
+            return ValueFactory::getTimestampValue(random(11) - 5);
+        case DBL:
+            if (pick == 1) {
+                return ValueFactory::getDoubleValue(std::numeric_limits<double>::quiet_NaN());
+            }
+            if (pick == 2) {
+                return ValueFactory::getDoubleValue(1e308);
+            }
+            return ValueFactory::getDoubleValue(static_cast<double>(random(21) - 10) / 2);
+        default: {
+            static const char* strings[] = { "", "a", "ab", "abc", "abd", "b", "abcdef", "x%y" };
+            return ValueFactory::getStringValue(strings[random(8)]);
+        }
+        }
+    }
+
+    void addRows(int count)
+    {
+        for (int i = 0; i < count; ++i) {
+            char *storage = new char[m_schema->tupleLength() + TUPLE_HEADER_SIZE];
+            TableTuple tuple(storage, m_schema);
+            for (int column = 0; column < COLUMN_COUNT; ++column) {
+                NValue value = randomValue(column);
+                tuple.setNValue(column, value);
+                value.free();
+            }
+            m_rows.push_back(storage);
+        }
+    }
+
+    AbstractExpression* column(int index)
+    {
+        return new TupleValueExpression(0, index);
+    }
+
+    AbstractExpression* param(int index)
+    {
+        return new ParameterValueExpression(index, &m_params[index]);
+    }
+
+    AbstractExpression* compare(ExpressionType type, AbstractExpression *left, AbstractExpression *right)
+    {
+        return ExpressionUtil::comparisonFactory(type, left, right);
+    }
+
+    AbstractExpression* conjunction(AbstractExpression *left, AbstractExpression *right)
+    {
+        return ExpressionUtil::conjunctionFactory(EXPRESSION_TYPE_CONJUNCTION_AND, left, right);
+    }
+
+    void clearParams()
+    {
+        for (size_t i = 0; i < m_params.size(); ++i) {
+            m_params[i].free();
+            m_params[i] = NValue();
+        }
+    }
+
+    /**
+     * Check that the compiled predicate agrees with the expression tree on
+     * every row, results and exceptions both. Returns false if it didn't bind.
+     */
+    bool crossCheck(const AbstractExpression *predicate, CompiledPredicate *compiled)
+    {
+        if (!compiled->bind()) {
+            return false;
+        }
+        TableTuple tuple(m_schema);
+        vector<string> outcomes;
+        for (size_t i = 0; i < m_rows.size(); ++i) {
+            tuple.move(m_rows[i]);
+            string expected;
+            string actual;
+            try {
+                expected = outcome(predicate->eval(&tuple, NULL).isTrue());
+            }
+            catch (const SerializableEEException &e) {
+                expected = e.message();
+            }
+            try {
+                actual = outcome(compiled->eval(tuple));
+            }
+            catch (const SerializableEEException &e) {
+                actual = e.message();
+            }
+            if (expected != actual) {
+                cout << "row " << i << ": " << tuple.debugNoHeader() << endl
+                     << predicate->debug(true) << "expected " << expected << ", got " << actual << endl;
+            }
+            EXPECT_EQ(expected, actual);
+            outcomes.push_back(expected);
+        }
+
+        // The same in batches, with the tree deciding the rows that filter leaves undecided
+        char *rows[CompiledPredicate::MAX_BATCH];
+        bool undecided[CompiledPredicate::MAX_BATCH];
+        for (size_t first = 0; first < m_rows.size(); first += CompiledPredicate::MAX_BATCH) {
+            const int count = static_cast<int>(std::min(m_rows.size() - first,
+                                                        static_cast<size_t>(CompiledPredicate::MAX_BATCH)));
+            std::copy(m_rows.begin() + first, m_rows.begin() + first + count, rows);
+            const int kept = compiled->filter(rows, count, undecided);
+            int k = 0;
+            for (int i = 0; i < count; ++i) {
+                string actual = "false";
+                if (k < kept && rows[k] == m_rows[first + i]) {
+                    actual = "true";
+                    if (undecided[k]) {
+                        tuple.move(rows[k]);
+                        try {
+                            actual = outcome(predicate->eval(&tuple, NULL).isTrue());
+                        }
+                        catch (const SerializableEEException &e) {
+                            actual = e.message();
+                        }
+                    }
+                    ++k;
+                }
+                EXPECT_EQ(outcomes[first + i], actual);
+            }
+            EXPECT_EQ(kept, k);
+        }
+        return true;
+    }
+
+    ThreadLocalPool m_pool;
+    TupleSchema *m_schema;
+    vector<char*> m_rows;
+    vector<NValue> m_params;
+    int64_t m_seed;
+};
+
+TEST_F(CompiledPredicateTest, UnsupportedShapesDoNotCompile) {
+    AbstractExpression *orExpr = ExpressionUtil::conjunctionFactory(
+        EXPRESSION_TYPE_CONJUNCTION_OR,
+        compare(EXPRESSION_TYPE_COMPARE_EQUAL, column(INT), param(0)),
+        compare(EXPRESSION_TYPE_COMPARE_EQUAL, column(BIG), param(1)));
+    EXPECT_TRUE(CompiledPredicate::compile(orExpr, m_schema) == NULL);
+    delete orExpr;
+
+    // One unsupported conjunct is enough
+    AbstractExpression *mixed = conjunction(
+        compare(EXPRESSION_TYPE_COMPARE_EQUAL, column(INT), param(0)),
+        compare(EXPRESSION_TYPE_COMPARE_LESSTHAN, column(STR), param(1)));
+    EXPECT_TRUE(CompiledPredicate::compile(mixed, m_schema) == NULL);
+    delete mixed;
+
+    // The pattern has to be on the right and the column on the left
+    AbstractExpression *like = compare(EXPRESSION_TYPE_COMPARE_LIKE, param(0), column(STR));
+    EXPECT_TRUE(CompiledPredicate::compile(like, m_schema) == NULL);
+    delete like;
+
+    AbstractExpression *joined = compare(EXPRESSION_TYPE_COMPARE_EQUAL,
+                                         column(INT), new TupleValueExpression(1, INT));
+    EXPECT_TRUE(CompiledPredicate::compile(joined, m_schema) == NULL);
+    delete joined;
+}
+
+TEST_F(CompiledPredicateTest, UnsupportedParametersFallBack) {
+    AbstractExpression *predicate = compare(EXPRESSION_TYPE_COMPARE_GREATERTHAN, column(BIG), param(0));
+    CompiledPredicate *compiled = CompiledPredicate::compile(predicate, m_schema);
+    ASSERT_TRUE(compiled != NULL);
+
+    m_params[0] = ValueFactory::getBigIntValue(3);
+    EXPECT_TRUE(compiled->bind());
+    m_params[0] = ValueFactory::getDecimalValueFromString("3.5");
+    EXPECT_FALSE(compiled->bind());
+    m_params[0] = ValueFactory::getStringValue("3");
+    EXPECT_FALSE(compiled->bind());
+    delete compiled;
+    delete predicate;
+
+    predicate = compare(EXPRESSION_TYPE_COMPARE_LIKE, column(STR), param(0));
+    compiled = CompiledPredicate::compile(predicate, m_schema);
+    ASSERT_TRUE(compiled != NULL);
+    clearParams();
+    m_params[0] = ValueFactory::getStringValue("ab%");
+    EXPECT_TRUE(compiled->bind());
+    clearParams();
+    m_params[0] = ValueFactory::getStringValue("a_c");
+    EXPECT_FALSE(compiled->bind());
+    clearParams();
+    m_params[0] = ValueFactory::getStringValue("%bc");
+    EXPECT_FALSE(compiled->bind());
+    delete compiled;
+    delete predicate;
+}
+
+TEST_F(CompiledPredicateTest, MatchesExpressionTree) {
+    addRows(2000);
+
+    const ExpressionType comparisons[] = {
+        EXPRESSION_TYPE_COMPARE_EQUAL, EXPRESSION_TYPE_COMPARE_NOTEQUAL,
+        EXPRESSION_TYPE_COMPARE_LESSTHAN, EXPRESSION_TYPE_COMPARE_GREATERTHAN,
+        EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO, EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO
+    };
+    const int numericColumns[] = { TINY, SMALL, INT, BIG, TS, DBL };
+
+    vector<AbstractExpression*> predicates;
+    for (int c = 0; c < 6; ++c) {
+        for (int n = 0; n < 6; ++n) {
+            // Column against parameter, either way round, and against a constant
+            predicates.push_back(compare(comparisons[c], column(numericColumns[n]), param(0)));
+            predicates.push_back(compare(comparisons[c], param(0), column(numericColumns[n])));
+            predicates.push_back(compare(comparisons[c], column(numericColumns[n]),
+                                         new ConstantValueExpression(ValueFactory::getBigIntValue(2))));
+            // Column against column
+            predicates.push_back(compare(comparisons[c], column(numericColumns[n]),
+                                         column(numericColumns[(n + 1) % 6])));
+        }
+        // Arithmetic, including the overflows and divisions by zero the tree raises errors for
+        predicates.push_back(compare(comparisons[c],
+            new OperatorExpression<OpPlus>(EXPRESSION_TYPE_OPERATOR_PLUS, column(BIG), param(0)),
+            param(1)));
+        predicates.push_back(compare(comparisons[c],
+            new OperatorExpression<OpMinus>(EXPRESSION_TYPE_OPERATOR_MINUS, column(INT), column(BIG)),
+            param(1)));
+        predicates.push_back(compare(comparisons[c],
+            new OperatorExpression<OpMultiply>(EXPRESSION_TYPE_OPERATOR_MULTIPLY, column(BIG), param(0)),
+            column(SMALL)));
+        predicates.push_back(compare(comparisons[c],
+            new OperatorExpression<OpDivide>(EXPRESSION_TYPE_OPERATOR_DIVIDE, param(1), column(TINY)),
+            param(0)));
+        predicates.push_back(compare(comparisons[c],
+            new OperatorExpression<OpMultiply>(EXPRESSION_TYPE_OPERATOR_MULTIPLY, column(DBL), param(0)),
+            new OperatorExpression<OpDivide>(EXPRESSION_TYPE_OPERATOR_DIVIDE, column(INT), param(1))));
+    }
+    // Conjunctions, where FALSE stops evaluation and NULL doesn't
+    predicates.push_back(conjunction(
+        compare(EXPRESSION_TYPE_COMPARE_GREATERTHAN, column(INT), param(0)),
+        conjunction(compare(EXPRESSION_TYPE_COMPARE_LESSTHAN, column(DBL), param(1)),
+                    compare(EXPRESSION_TYPE_COMPARE_NOTEQUAL, column(TINY), param(0)))));
+    predicates.push_back(conjunction(
+        conjunction(compare(EXPRESSION_TYPE_COMPARE_EQUAL, column(SMALL), param(1)),
+                    compare(EXPRESSION_TYPE_COMPARE_GREATERTHAN,
+                            new OperatorExpression<OpPlus>(EXPRESSION_TYPE_OPERATOR_PLUS, column(BIG), column(BIG)),
+                            param(0))),
+        compare(EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO, column(TS), param(1))));
+    predicates.push_back(conjunction(
+        compare(EXPRESSION_TYPE_COMPARE_LIKE, column(STR), param(2)),
+        compare(EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO, column(BIG), param(0))));
+
+    // NULLs typed and untyped, extremes, NaN, and both kinds of arithmetic
+    vector<NValue> values;
+    values.push_back(ValueFactory::getBigIntValue(0));
+    values.push_back(ValueFactory::getBigIntValue(2));
+    values.push_back(ValueFactory::getIntegerValue(-3));
+    values.push_back(ValueFactory::getTinyIntValue(1));
+    values.push_back(ValueFactory::getBigIntValue(INT64_MAX));
+    values.push_back(ValueFactory::getBigIntValue(INT64_MIN + 1));
+    values.push_back(ValueFactory::getTimestampValue(4));
+    values.push_back(ValueFactory::getDoubleValue(1.5));
+    values.push_back(ValueFactory::getDoubleValue(-0.0));
+    values.push_back(ValueFactory::getDoubleValue(std::numeric_limits<double>::quiet_NaN()));
+    values.push_back(ValueFactory::getDoubleValue(1e308));
+    values.push_back(NValue::getNullValue(VALUE_TYPE_BIGINT));
+    values.push_back(NValue::getNullValue(VALUE_TYPE_DOUBLE));
+    values.push_back(ValueFactory::getNullValue());
+    const char* patterns[] = { "ab%", "abc", "%", "", "a%", "x%y", "a_" };
+
+    int checked = 0;
+    int fellBack = 0;
+    for (size_t p = 0; p < predicates.size(); ++p) {
+        CompiledPredicate *compiled = CompiledPredicate::compile(predicates[p], m_schema);
+        ASSERT_TRUE(compiled != NULL);
+        for (size_t v0 = 0; v0 < values.size(); ++v0) {
+            for (size_t v1 = 0; v1 < values.size(); v1 += 3) {
+                m_params[0] = values[v0];
+                m_params[1] = values[(v0 + v1) % values.size()];
+                m_params[2] = ValueFactory::getStringValue(patterns[(v0 + v1) % 7]);
+                if (crossCheck(predicates[p], compiled)) {
+                    ++checked;
+                }
+                else {
+                    ++fellBack;
+                }
+                m_params[2].free();
+            }
+        }
+        delete compiled;
+        delete predicates[p];
+    }
+    m_params[0] = NValue();
+    m_params[1] = NValue();
+    m_params[2] = NValue();
+    // Only arithmetic on an untyped NULL and patterns with other wildcards fall back
+    EXPECT_TRUE(checked > 10 * fellBack);
+}
+
+TEST_F(CompiledPredicateTest, Benchmark) {
+    const int rows = 200000;
+    const int passes = 10;
+    addRows(rows);
+
+    struct Case {
+        const char *name;
+        AbstractExpression *predicate;
+    } cases[] = {
+        { "int > ? and double < ?",
+          conjunction(compare(EXPRESSION_TYPE_COMPARE_GREATERTHAN, column(INT), param(0)),
+                      compare(EXPRESSION_TYPE_COMPARE_LESSTHAN, column(DBL), param(1))) },
+        { "bigint = ? and ts >= ? and tinyint <> ?",
+          conjunction(compare(EXPRESSION_TYPE_COMPARE_EQUAL, column(BIG), param(0)),
+                      conjunction(compare(EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO, column(TS), param(0)),
+                                  compare(EXPRESSION_TYPE_COMPARE_NOTEQUAL, column(TINY), param(0)))) },
+        // Not bigint, whose extreme values would overflow
+        { "int * ? + smallint > ?",
+          compare(EXPRESSION_TYPE_COMPARE_GREATERTHAN,
+                  new OperatorExpression<OpPlus>(EXPRESSION_TYPE_OPERATOR_PLUS,
+                      new OperatorExpression<OpMultiply>(EXPRESSION_TYPE_OPERATOR_MULTIPLY, column(INT), param(0)),
+                      column(SMALL)),
+                  param(1)) },
+        { "varchar like 'ab%'",
+          compare(EXPRESSION_TYPE_COMPARE_LIKE, column(STR), param(2)) }
+    };
+
+    m_params[0] = ValueFactory::getBigIntValue(1);
+    m_params[1] = ValueFactory::getDoubleValue(2.5);
+    m_params[2] = ValueFactory::getStringValue("ab%");
+
+    TableTuple tuple(m_schema);
+    for (size_t c = 0; c < sizeof(cases) / sizeof(cases[0]); ++c) {
+        CompiledPredicate *compiled = CompiledPredicate::compile(cases[c].predicate, m_schema);
+        ASSERT_TRUE(compiled != NULL);
+
+        int64_t genericMatches = 0;
+        int64_t start = nowMicros();
+        for (int pass = 0; pass < passes; ++pass) {
+            for (int i = 0; i < rows; ++i) {
+                tuple.move(m_rows[i]);
+                if (cases[c].predicate->eval(&tuple, NULL).isTrue()) {
+                    ++genericMatches;
+                }
+            }
+        }
+        const int64_t genericMicros = nowMicros() - start;
+
+        int64_t compiledMatches = 0;
+        start = nowMicros();
+        for (int pass = 0; pass < passes; ++pass) {
+            ASSERT_TRUE(compiled->bind());
+            for (int i = 0; i < rows; ++i) {
+                tuple.move(m_rows[i]);
+                if (compiled->eval(tuple)) {
+                    ++compiledMatches;
+                }
+            }
+        }
+        const int64_t compiledMicros = nowMicros() - start;
+        EXPECT_EQ(genericMatches, compiledMatches);
+
+        int64_t batchMatches = 0;
+        char *batch[CompiledPredicate::MAX_BATCH];
+        bool undecided[CompiledPredicate::MAX_BATCH];
+        start = nowMicros();
+        for (int pass = 0; pass < passes; ++pass) {
+            ASSERT_TRUE(compiled->bind());
+            for (int first = 0; first < rows; first += CompiledPredicate::MAX_BATCH) {
+                const int count = std::min(rows - first, CompiledPredicate::MAX_BATCH);
+                std::copy(m_rows.begin() + first, m_rows.begin() + first + count, batch);
+                const int kept = compiled->filter(batch, count, undecided);
+                for (int k = 0; k < kept; ++k) {
+                    tuple.move(batch[k]);
+                    if (!undecided[k] || cases[c].predicate->eval(&tuple, NULL).isTrue()) {
+                        ++batchMatches;
+                    }
+                }
+            }
+        }
+        const int64_t batchMicros = nowMicros() - start;
+        EXPECT_EQ(genericMatches, batchMatches);
+
+        cout << endl << left << setw(40) << cases[c].name << " expression tree "
+             << (genericMicros * 1000 / (rows * passes)) << " ns/row, compiled "
+             << (compiledMicros * 1000 / (rows * passes)) << " ns/row, batches "
+             << (batchMicros * 1000 / (rows * passes)) << " ns/row";
+        delete compiled;
+        delete cases[c].predicate;
+    }
+    cout << endl;
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
@@ -0,0 +1,238 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+#include "common/common.h"
+#include "common/NValue.hpp"
+#include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "common/tabletuple.h"
+#include "indexes/tableindex.h"
+#include "indexes/indexkey.h"
+#include "indexes/tableindexfactory.h"
+#include <ctime>
+#include <cstring>
+
+using namespace std;
+using namespace voltdb;
+
+#define TUPLE_WIDTH 25
+
+class CompactingBTreeIndexTest : public Test {
+public:
+    CompactingBTreeIndexTest() : m_schema(NULL), m_data(NULL), m_count(0) {
+        for (int i = 0; i < 3; i++) {
+            m_columnTypes.push_back(VALUE_TYPE_BIGINT);
+            m_columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+            m_columnAllowNull.push_back(false);
+        }
+        m_schema = TupleSchema::createTupleSchemaForTest(m_columnTypes,
+                                                         m_columnLengths,
+                                                         m_columnAllowNull);
+    }
+
+    ~CompactingBTreeIndexTest() {
+        delete[] m_data;
+        TupleSchema::freeTupleSchema(m_schema);
+    }
+
+    // column 0 holds a random value with roughly `distinct` different
+    // values, column 1 the row number
+    void initTuples(long count, long distinct) {
+        delete[] m_data;
+        m_count = count;
+        m_data = new char[TUPLE_WIDTH * count];
+        memset(m_data, 0, TUPLE_WIDTH * count);
+        for (long ii = 0; ii < count; ii++) {
+            TableTuple tempTuple(m_data + (TUPLE_WIDTH * ii), m_schema);
+            tempTuple.setNValue(0, ValueFactory::getBigIntValue(rand() % distinct));
+            tempTuple.setNValue(1, ValueFactory::getBigIntValue(ii));
+            tempTuple.setNValue(2, ValueFactory::getBigIntValue(rand()));
+        }
+    }
+
+    TableIndex *createIndex(TableIndexType type, bool unique, bool countable) {
+        vector<int> columnIndices;
+        columnIndices.push_back(0);
+        if (unique) {
+            columnIndices.push_back(1);
+        }
+        TableIndexScheme scheme("test_index", type,
+                                columnIndices, TableIndex::simplyIndexColumns(),
+                                unique, countable, m_schema);
+        return TableIndexFactory::getInstance(scheme);
+    }
+
+    std::clock_t insertTuples(TableIndex *index) {
+        TableTuple tempTuple(m_data, m_schema);
+        std::clock_t start = std::clock();
+        for (long ii = 0; ii < m_count; ii++) {
+            tempTuple.move(m_data + (TUPLE_WIDTH * ii));
+            EXPECT_TRUE(index->addEntry(&tempTuple));
+        }
+        return std::clock() - start;
+    }
+
+    std::clock_t deleteTuples(TableIndex *index, long num) {
+        TableTuple tempTuple(m_data, m_schema);
+        long gap = m_count / num;
+        std::clock_t start = std::clock();
+        for (long ii = 0; ii < num; ii++) {
+            tempTuple.move(m_data + (TUPLE_WIDTH * gap * ii));
+            EXPECT_TRUE(index->deleteEntry(&tempTuple));
+        }
+        return std::clock() - start;
+    }
+
+    // point lookups on the leading column, counting every matching tuple
+    std::clock_t lookupKeys(TableIndex *index, long distinct, int64_t *matched) {
+        TableTuple searchKey(index->getKeySchema());
+        char keyData[32];
+        memset(keyData, 0, sizeof(keyData));
+        searchKey.move(keyData);
+        IndexCursor cursor(index->getTupleSchema());
+        *matched = 0;
+        std::clock_t start = std::clock();
+        for (long ii = 0; ii < distinct; ii++) {
+            searchKey.setNValue(0, ValueFactory::getBigIntValue(ii));
+            index->moveToKeyOrGreater(&searchKey, cursor);
+            TableTuple tuple;
+            while ( ! (tuple = index->nextValue(cursor)).isNullTuple()) {
+                if (ValueFactory::getBigIntValue(ii).compare(tuple.getNValue(0)) != 0) {
+                    break;
+                }
+                (*matched)++;
+            }
+        }
+        return std::clock() - start;
+    }
+
+    // full ordered scans in both directions, checking the order
+    std::clock_t scanAll(TableIndex *index, int64_t *scanned) {
+        IndexCursor cursor(index->getTupleSchema());
+        *scanned = 0;
+        std::clock_t start = std::clock();
+        for (int pass = 0; pass < 2; pass++) {
+            bool forward = (pass == 0);
+            index->moveToEnd(forward, cursor);
+            int64_t last = forward ? INT64_MIN : INT64_MAX;
+            TableTuple tuple;
+            while ( ! (tuple = index->nextValue(cursor)).isNullTuple()) {
+                int64_t value = ValuePeeker::peekBigInt(tuple.getNValue(0));
+                EXPECT_TRUE(forward ? value >= last : value <= last);
+                last = value;
+                (*scanned)++;
+            }
+        }
+        return std::clock() - start;
+    }
+
+    vector<ValueType> m_columnTypes;
+    vector<int32_t> m_columnLengths;
+    vector<bool> m_columnAllowNull;
+    TupleSchema *m_schema;
+    char *m_data;
+    long m_count;
+};
+
+TEST_F(CompactingBTreeIndexTest, FactorySelectsBTree) {
+    TableIndex *index = createIndex(BTREE_INDEX, true, false);
+    EXPECT_EQ(std::string("CompactingBTreeUniqueIndex"), index->getTypeName());
+    delete index;
+    index = createIndex(BTREE_INDEX, false, true);
+    EXPECT_EQ(std::string("CompactingBTreeMultiMapIndex"), index->getTypeName());
+    delete index;
+}
+
+TEST_F(CompactingBTreeIndexTest, CountersMatchTree) {
+    srand(2);
+    initTuples(1L << 12, 300);
+    TableIndex *tree = createIndex(BALANCED_TREE_INDEX, false, true);
+    TableIndex *btree = createIndex(BTREE_INDEX, false, true);
+    insertTuples(tree);
+    insertTuples(btree);
+    deleteTuples(tree, 100);
+    deleteTuples(btree, 100);
+    EXPECT_EQ(tree->getSize(), btree->getSize());
+
+    TableTuple searchKey(tree->getKeySchema());
+    char keyData[32];
+    memset(keyData, 0, sizeof(keyData));
+    searchKey.move(keyData);
+    IndexCursor treeCursor(tree->getTupleSchema());
+    IndexCursor btreeCursor(btree->getTupleSchema());
+    for (int64_t ii = -1; ii <= 300; ii++) {
+        searchKey.setNValue(0, ValueFactory::getBigIntValue(ii));
+        EXPECT_EQ(tree->hasKey(&searchKey), btree->hasKey(&searchKey));
+        for (int upper = 0; upper < 2; upper++) {
+            EXPECT_EQ(tree->getCounterGET(&searchKey, upper == 1, treeCursor),
+                      btree->getCounterGET(&searchKey, upper == 1, btreeCursor));
+            EXPECT_EQ(tree->getCounterLET(&searchKey, upper == 1, treeCursor),
+                      btree->getCounterLET(&searchKey, upper == 1, btreeCursor));
+        }
+    }
+    delete tree;
+    delete btree;
+}
+
+// Compare the red-black tree index with the B+tree index on inserts,
+// point lookups, ordered scans and deletes.
+TEST_F(CompactingBTreeIndexTest, PerformanceDifference) {
+    std::cout << std::endl;
+    for (int places = 16; places >= 10; places -= 3) {
+        for (int unique = 0; unique < 2; unique++) {
+            long count = 1L << places;
+            long distinct = unique ? count : count / 8;
+            srand(places);
+            initTuples(count, distinct);
+            TableIndexType types[2] = { BALANCED_TREE_INDEX, BTREE_INDEX };
+            int64_t matched[2];
+            int64_t scanned[2];
+            for (int tt = 0; tt < 2; tt++) {
+                TableIndex *index = createIndex(types[tt], unique == 1, false);
+                std::string name = index->getTypeName();
+                std::clock_t c = insertTuples(index);
+                std::cout << "insert 2**" << places << " " << name << " : " << c << std::endl;
+                c = lookupKeys(index, distinct, &matched[tt]);
+                std::cout << "lookup 2**" << places << " " << name << " : " << c << std::endl;
+                c = scanAll(index, &scanned[tt]);
+                std::cout << "scan   2**" << places << " " << name << " : " << c << std::endl;
+                c = deleteTuples(index, count / 2);
+                std::cout << "delete 2**" << places << " " << name << " : " << c << std::endl;
+                std::cout << "memory 2**" << places << " " << name << " : "
+                          << index->getMemoryEstimate() << std::endl;
+                EXPECT_EQ(count - count / 2, static_cast<long>(index->getSize()));
+                delete index;
+            }
+            EXPECT_EQ(matched[0], matched[1]);
+            EXPECT_EQ(count, matched[1]);
+            EXPECT_EQ(scanned[0], scanned[1]);
+            EXPECT_EQ(count * 2, scanned[1]);
+        }
+    }
+}
+
+int main()
+{
+    return TestSuite::globalInstance()->runAll();
+}
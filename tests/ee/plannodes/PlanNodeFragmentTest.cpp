@@ -24,12 +24,15 @@
 #include "plannodes/plannodefragment.h"
 
 #include "harness.h"
+#include "common/PlannerDomValue.h"
 #include "plannodes/abstractplannode.h"
 #include "plannodes/deletenode.h"
 #include "plannodes/indexscannode.h"
 #include "plannodes/sendnode.h"
 #include "plannodes/seqscannode.h"
 
+#include "boost/scoped_ptr.hpp"
+
 #include <sstream>
 
 using namespace voltdb;
@@ -88,6 +91,64 @@ TEST_F(PlanNodeFragmentTest, HasDeleteInline)
     EXPECT_TRUE(dut.hasDelete());
 }
 
+// The coordinator fragment of select sum(bytes) from TB1. Scan nodes are left
+// out because they look up their target table in a running engine.
+static const char *AGGREGATE_PLAN =
+    "{\"PLAN_NODES\":[{\"ID\":1,\"PLAN_NODE_TYPE\":\"SEND\",\"CHILDREN_IDS\":[2]},{\"ID\":2,\"PLAN_NO"
+    "DE_TYPE\":\"AGGREGATE\",\"CHILDREN_IDS\":[3],\"OUTPUT_SCHEMA\":[{\"COLUMN_NAME\":\"C1\",\"EXPRES"
+    "SION\":{\"TYPE\":32,\"VALUE_TYPE\":8,\"COLUMN_IDX\":0}}],\"AGGREGATE_COLUMNS\":[{\"AGGREGATE_TYP"
+    "E\":\"AGGREGATE_SUM\",\"AGGREGATE_DISTINCT\":0,\"AGGREGATE_OUTPUT_COLUMN\":0,\"AGGREGATE_EXPRESS"
+    "ION\":{\"TYPE\":32,\"VALUE_TYPE\":8,\"COLUMN_IDX\":0}}]},{\"ID\":3,\"PLAN_NODE_TYPE\":\"RECEIVE\""
+    ",\"OUTPUT_SCHEMA\":[{\"COLUMN_NAME\":\"C1\",\"EXPRESSION\":{\"TYPE\":32,\"VALUE_TYPE\":8,\"COLUM"
+    "N_IDX\":0}}]}],\"EXECUTE_LIST\":[3,2,1]}";
+
+TEST_F(PlanNodeFragmentTest, BinaryPlanValues)
+{
+    PlannerDomRoot json("{\"A\":-5,\"B\":1.5,\"C\":\"x\\\"y\",\"D\":[true,false,null],"
+                        "\"E\":{\"A\":12345678901,\"F\":[]}}");
+    string binary = json.toBinaryPlan();
+    EXPECT_TRUE(PlannerDomRoot::isBinaryPlan(binary.data(), binary.size()));
+
+    PlannerDomRoot decoded(binary.data(), binary.size());
+    PlannerDomValue root = decoded.rootObject();
+    EXPECT_EQ(-5, root.valueForKey("A").asInt());
+    EXPECT_EQ(1.5, root.valueForKey("B").asDouble());
+    EXPECT_EQ("x\"y", root.valueForKey("C").asStr());
+    PlannerDomValue flags = root.valueForKey("D");
+    EXPECT_EQ(3, flags.arrayLen());
+    EXPECT_TRUE(flags.valueAtIndex(0).asBool());
+    EXPECT_FALSE(flags.valueAtIndex(1).asBool());
+    PlannerDomValue nested = root.valueForKey("E");
+    EXPECT_EQ(12345678901LL, nested.valueForKey("A").asInt64());
+    EXPECT_EQ(0, nested.valueForKey("F").arrayLen());
+    EXPECT_FALSE(nested.hasKey("B"));
+
+    // Re-encoding the decoded document reproduces the same bytes.
+    EXPECT_EQ(binary, decoded.toBinaryPlan());
+
+    // Truncation is reported rather than read past.
+    bool threw = false;
+    try {
+        PlannerDomRoot truncated(binary.data(), binary.size() - 1);
+    }
+    catch (SerializableEEException &e) {
+        threw = true;
+    }
+    EXPECT_TRUE(threw);
+}
+
+TEST_F(PlanNodeFragmentTest, BinaryPlanLoads)
+{
+    string jsonPlan(AGGREGATE_PLAN);
+    string binaryPlan = PlannerDomRoot(AGGREGATE_PLAN).toBinaryPlan();
+    EXPECT_TRUE(binaryPlan.size() < jsonPlan.size());
+
+    boost::scoped_ptr<PlanNodeFragment> fromJson(PlanNodeFragment::createFromCatalog(jsonPlan));
+    boost::scoped_ptr<PlanNodeFragment> fromBinary(PlanNodeFragment::createFromCatalog(binaryPlan));
+    EXPECT_EQ(fromJson->getExecuteList().size(), fromBinary->getExecuteList().size());
+    EXPECT_EQ(fromJson->debug(), fromBinary->debug());
+}
+
 int main()
 {
     return TestSuite::globalInstance()->runAll();
@@ -0,0 +1,400 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <vector>
+#include <string>
+#include <sstream>
+#include <iostream>
+#include <cstring>
+#include <stdint.h>
+#include <sys/time.h>
+#include <boost/foreach.hpp>
+
+#include "harness.h"
+#include "common/TupleSchema.h"
+#include "common/types.h"
+#include "common/NValue.hpp"
+#include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "common/StringCompressor.h"
+#include "common/StringRef.h"
+#include "common/serializeio.h"
+#include "common/executorcontext.hpp"
+#include "execution/VoltDBEngine.h"
+#include "storage/persistenttable.h"
+#include "storage/tablefactory.h"
+#include "storage/tableiterator.h"
+#include "storage/DRTupleStream.h"
+#include "indexes/tableindex.h"
+
+using namespace std;
+using namespace voltdb;
+
+namespace {
+
+/** A session document in the style of the json-sessions example */
+string makeDocument(int i)
+{
+    ostringstream doc;
+    doc << "{\"username\":\"user" << i << "\","
+        << "\"props\":{\"last_login\":" << (1400000000 + i * 37) << ","
+        << "\"site\":\"www.example.com/landing/page" << (i % 17) << "\","
+        << "\"client\":{\"browser\":\"" << ((i % 3) ? "firefox" : "chrome") << "\","
+        << "\"os\":\"" << ((i % 2) ? "linux" : "windows") << "\","
+        << "\"resolution\":\"" << (1024 + (i % 5) * 128) << "x768\"},"
+        << "\"roles\":[\"reader\",\"" << ((i % 7) ? "writer" : "admin") << "\"],"
+        << "\"preferences\":{\"theme\":\"dark\",\"language\":\"en_US\","
+        << "\"notifications\":" << ((i % 4) ? "true" : "false") << "}}}";
+    return doc.str();
+}
+
+int64_t nowMicros()
+{
+    timeval tv;
+    gettimeofday(&tv, NULL);
+    return static_cast<int64_t>(tv.tv_sec) * 1000000 + tv.tv_usec;
+}
+
+}
+
+class CompressedStringTest : public Test {
+public:
+    CompressedStringTest() : m_table(NULL) {
+        m_engine = new VoltDBEngine();
+        int partitionCount = 1;
+        m_engine->initialize(1,1, 0, 0, "", false, DEFAULT_TEMP_TABLE_MEMORY);
+        m_engine->updateHashinator( HASHINATOR_LEGACY, (char*)&partitionCount, NULL, 0);
+
+        m_columnNames.push_back("ID");
+        m_columnNames.push_back("DOC");
+
+        m_tableSchemaTypes.push_back(VALUE_TYPE_INTEGER);
+        m_tableSchemaTypes.push_back(VALUE_TYPE_VARCHAR);
+
+        m_tableSchemaColumnSizes.push_back(NValue::getTupleStorageSize(VALUE_TYPE_INTEGER));
+        m_tableSchemaColumnSizes.push_back(2048);
+
+        m_tableSchemaAllowNull.push_back(false);
+        m_tableSchemaAllowNull.push_back(true);
+
+        m_engine->setUndoToken(INT64_MIN + 1);
+    }
+
+    ~CompressedStringTest() {
+        delete m_table;
+        delete m_engine;
+    }
+
+    PersistentTable* createTable(bool compressed) {
+        TupleSchema *schema = TupleSchema::createTupleSchemaForTest(m_tableSchemaTypes,
+                                                                    m_tableSchemaColumnSizes,
+                                                                    m_tableSchemaAllowNull);
+        PersistentTable *table = dynamic_cast<PersistentTable*>(
+            TableFactory::getPersistentTable(0, "SESSIONS", schema, m_columnNames,
+                                             signature, &drStream, false, 0));
+        if (compressed) {
+            vector<int> columns(1, 1);
+            table->setCompressedColumns(columns);
+        }
+        return table;
+    }
+
+    void initTable() {
+        m_table = createTable(true);
+    }
+
+    void nextUndoToken() {
+        m_engine->setUndoToken(++m_undoToken);
+        // this next line is a testing hack until engine data is
+        // de-duplicated with executorcontext data
+        m_engine->updateExecutorContextUndoQuantumForTest();
+    }
+
+    void insertDocuments(PersistentTable *table, int count) {
+        TableTuple tuple = table->tempTuple();
+        for (int i = 0; i < count; ++i) {
+            string doc = makeDocument(i);
+            tuple.setNValue(0, ValueFactory::getIntegerValue(i));
+            NValue value = ValueFactory::getStringValue(doc);
+            tuple.setNValue(1, value);
+            table->insertTuple(tuple);
+            value.free();
+        }
+    }
+
+    /** Check every row still holds the document it was inserted with */
+    void verifyDocuments(PersistentTable *table, int count) {
+        TableTuple tuple(table->schema());
+        TableIterator &iter = table->iterator();
+        int found = 0;
+        while (iter.next(tuple)) {
+            int id = ValuePeeker::peekInteger(tuple.getNValue(0));
+            string doc = ValuePeeker::peekStringCopy_withoutNull(tuple.getNValue(1));
+            ASSERT_EQ(makeDocument(id), doc);
+            ++found;
+        }
+        ASSERT_EQ(count, found);
+    }
+
+    TableTuple findTuple(PersistentTable *table, int id) {
+        TableTuple tuple(table->schema());
+        TableIterator &iter = table->iterator();
+        while (iter.next(tuple)) {
+            if (ValuePeeker::peekInteger(tuple.getNValue(0)) == id) {
+                return tuple;
+            }
+        }
+        return TableTuple(table->schema());
+    }
+
+    VoltDBEngine *m_engine;
+    PersistentTable *m_table;
+    MockDRTupleStream drStream;
+    vector<string> m_columnNames;
+    vector<ValueType> m_tableSchemaTypes;
+    vector<int32_t> m_tableSchemaColumnSizes;
+    vector<bool> m_tableSchemaAllowNull;
+    char signature[20];
+    static int64_t m_undoToken;
+};
+
+int64_t CompressedStringTest::m_undoToken = INT64_MIN + 1;
+
+TEST_F(CompressedStringTest, BlockRoundTrip) {
+    string input;
+    for (int i = 0; i < 20; ++i) {
+        input += makeDocument(i);
+    }
+    const int32_t length = static_cast<int32_t>(input.size());
+
+    // Without a dictionary the repeated keys alone should compress well.
+    vector<char> block(StringCompressor::compressBound(length));
+    int32_t compressedLength =
+        StringCompressor::compressBlock(NULL, 0, NULL, input.data(), length, &block[0]);
+    ASSERT_TRUE(compressedLength < length / 2);
+    vector<char> output(length);
+    ASSERT_EQ(length, StringCompressor::decompressBlock(NULL, 0, &block[0], compressedLength,
+                                                        &output[0], length));
+    ASSERT_EQ(0, ::memcmp(input.data(), &output[0], length));
+
+    // A single document barely repeats itself, but shares most of its
+    // text with the dictionary trained on its siblings.
+    vector<string> samples;
+    for (int i = 100; i < 200; ++i) {
+        samples.push_back(makeDocument(i));
+    }
+    string dictionary = StringCompressor::trainDictionary(samples,
+                                                          StringCompressor::MAX_DICTIONARY_LENGTH);
+    ASSERT_FALSE(dictionary.empty());
+    ASSERT_TRUE(dictionary.size() <= StringCompressor::MAX_DICTIONARY_LENGTH);
+    const int32_t dictionaryLength = static_cast<int32_t>(dictionary.size());
+    vector<uint16_t> table(StringCompressor::HASH_SIZE);
+    StringCompressor::buildDictionaryTable(dictionary.data(), dictionaryLength, &table[0]);
+
+    string doc = makeDocument(7);
+    const int32_t docLength = static_cast<int32_t>(doc.size());
+    vector<char> plainBlock(StringCompressor::compressBound(docLength));
+    int32_t plainLength = StringCompressor::compressBlock(NULL, 0, NULL, doc.data(), docLength,
+                                                          &plainBlock[0]);
+    vector<char> dictBlock(StringCompressor::compressBound(docLength));
+    int32_t dictLength = StringCompressor::compressBlock(dictionary.data(), dictionaryLength,
+                                                         &table[0], doc.data(), docLength,
+                                                         &dictBlock[0]);
+    ASSERT_TRUE(dictLength < plainLength);
+    vector<char> docOutput(docLength);
+    ASSERT_EQ(docLength, StringCompressor::decompressBlock(dictionary.data(), dictionaryLength,
+                                                           &dictBlock[0], dictLength,
+                                                           &docOutput[0], docLength));
+    ASSERT_EQ(0, ::memcmp(doc.data(), &docOutput[0], docLength));
+
+    // Truncated input must be reported rather than read past.
+    ASSERT_EQ(-1, StringCompressor::decompressBlock(dictionary.data(), dictionaryLength,
+                                                    &dictBlock[0], dictLength / 2,
+                                                    &docOutput[0], docLength));
+}
+
+TEST_F(CompressedStringTest, InsertAndRead) {
+    initTable();
+    nextUndoToken();
+    insertDocuments(m_table, 500);
+    m_engine->releaseUndoToken(m_undoToken);
+
+    verifyDocuments(m_table, 500);
+
+    // The stats counters describe the values now resident in the table.
+    ASSERT_TRUE(m_table->compressedStringMemorySize() > 0);
+    ASSERT_TRUE(m_table->uncompressedStringMemorySize() > 2 * m_table->compressedStringMemorySize());
+
+    // The table's string memory shrinks by about what the compressor saved.
+    PersistentTable *plain = createTable(false);
+    nextUndoToken();
+    insertDocuments(plain, 500);
+    m_engine->releaseUndoToken(m_undoToken);
+    ASSERT_TRUE(m_table->nonInlinedMemorySize() < plain->nonInlinedMemorySize() / 2);
+
+    // Serialized tuples carry the original values, not the compressed ones.
+    CopySerializeOutput compressedOut;
+    CopySerializeOutput plainOut;
+    TableTuple tuple(m_table->schema());
+    TableTuple plainTuple(plain->schema());
+    TableIterator &iter = m_table->iterator();
+    TableIterator &plainIter = plain->iterator();
+    while (iter.next(tuple)) {
+        ASSERT_TRUE(plainIter.next(plainTuple));
+        tuple.serializeTo(compressedOut);
+        plainTuple.serializeTo(plainOut);
+    }
+    ASSERT_EQ(plainOut.size(), compressedOut.size());
+    ASSERT_EQ(0, ::memcmp(plainOut.data(), compressedOut.data(), plainOut.size()));
+    delete plain;
+}
+
+TEST_F(CompressedStringTest, ShortAndNullValuesStayUncompressed) {
+    initTable();
+    nextUndoToken();
+    TableTuple tuple = m_table->tempTuple();
+    tuple.setNValue(0, ValueFactory::getIntegerValue(1));
+    NValue shortValue = ValueFactory::getStringValue("short");
+    tuple.setNValue(1, shortValue);
+    m_table->insertTuple(tuple);
+    shortValue.free();
+    tuple.setNValue(0, ValueFactory::getIntegerValue(2));
+    tuple.setNValue(1, ValueFactory::getNullStringValue());
+    m_table->insertTuple(tuple);
+    m_engine->releaseUndoToken(m_undoToken);
+
+    ASSERT_EQ(0, m_table->compressedStringMemorySize());
+    TableTuple found = findTuple(m_table, 1);
+    ASSERT_EQ(string("short"), ValuePeeker::peekStringCopy_withoutNull(found.getNValue(1)));
+    found = findTuple(m_table, 2);
+    ASSERT_TRUE(found.getNValue(1).isNull());
+    ASSERT_TRUE(found.isNull(1));
+}
+
+TEST_F(CompressedStringTest, UpdateAndUndo) {
+    initTable();
+    nextUndoToken();
+    insertDocuments(m_table, 200);
+    m_engine->releaseUndoToken(m_undoToken);
+    int64_t origMemory = m_table->nonInlinedMemorySize();
+    int64_t origUncompressed = m_table->uncompressedStringMemorySize();
+
+    string updated = makeDocument(100000);
+    nextUndoToken();
+    TableTuple target = findTuple(m_table, 10);
+    TableTuple tempTuple = m_table->tempTuple();
+    tempTuple.copy(target);
+    NValue newValue = ValueFactory::getStringValue(updated);
+    tempTuple.setNValue(1, newValue);
+    m_table->updateTuple(target, tempTuple);
+    newValue.free();
+
+    ASSERT_EQ(updated, ValuePeeker::peekStringCopy_withoutNull(findTuple(m_table, 10).getNValue(1)));
+    m_engine->undoUndoToken(m_undoToken);
+
+    verifyDocuments(m_table, 200);
+    ASSERT_EQ(origMemory, m_table->nonInlinedMemorySize());
+    ASSERT_EQ(origUncompressed, m_table->uncompressedStringMemorySize());
+
+    // Updating another column leaves the document compressed in place.
+    nextUndoToken();
+    target = findTuple(m_table, 20);
+    tempTuple.copy(target);
+    tempTuple.setNValue(0, ValueFactory::getIntegerValue(20));
+    m_table->updateTuple(target, tempTuple);
+    m_engine->releaseUndoToken(m_undoToken);
+    verifyDocuments(m_table, 200);
+    ASSERT_EQ(origUncompressed, m_table->uncompressedStringMemorySize());
+}
+
+TEST_F(CompressedStringTest, DeleteAndUndo) {
+    initTable();
+    nextUndoToken();
+    insertDocuments(m_table, 200);
+    m_engine->releaseUndoToken(m_undoToken);
+    int64_t origCompressed = m_table->compressedStringMemorySize();
+
+    // Rows inserted after the dictionary was trained are compressed.
+    nextUndoToken();
+    TableTuple target = findTuple(m_table, 150);
+    m_table->deleteTuple(target, true);
+    m_engine->undoUndoToken(m_undoToken);
+    verifyDocuments(m_table, 200);
+    ASSERT_EQ(origCompressed, m_table->compressedStringMemorySize());
+
+    nextUndoToken();
+    target = findTuple(m_table, 150);
+    m_table->deleteTuple(target, true);
+    m_engine->releaseUndoToken(m_undoToken);
+    ASSERT_TRUE(m_table->compressedStringMemorySize() < origCompressed);
+
+    nextUndoToken();
+    m_table->deleteAllTuples(true);
+    m_engine->releaseUndoToken(m_undoToken);
+    ASSERT_EQ(0, m_table->compressedStringMemorySize());
+    ASSERT_EQ(0, m_table->uncompressedStringMemorySize());
+}
+
+/**
+ * Not a correctness test: reports how much string memory compression
+ * saves on session documents and what it costs to read them back.
+ */
+TEST_F(CompressedStringTest, Benchmark) {
+    const int rows = 20000;
+    const int passes = 5;
+    initTable();
+    PersistentTable *plain = createTable(false);
+    nextUndoToken();
+    insertDocuments(m_table, rows);
+    insertDocuments(plain, rows);
+    m_engine->releaseUndoToken(m_undoToken);
+
+    int64_t elapsed[2];
+    PersistentTable *tables[2] = { plain, m_table };
+    for (int t = 0; t < 2; ++t) {
+        TableTuple tuple(tables[t]->schema());
+        int64_t totalLength = 0;
+        int64_t start = nowMicros();
+        for (int pass = 0; pass < passes; ++pass) {
+            TableIterator &iter = tables[t]->iterator();
+            while (iter.next(tuple)) {
+                totalLength += ValuePeeker::peekObjectLength_withoutNull(tuple.getNValue(1));
+            }
+            ExecutorContext::getTempStringPool()->purge();
+        }
+        elapsed[t] = nowMicros() - start;
+        ASSERT_TRUE(totalLength > 0);
+    }
+
+    cout << endl
+         << "string memory: plain " << plain->nonInlinedMemorySize() / 1024 << "KB, "
+         << "compressed " << m_table->nonInlinedMemorySize() / 1024 << "KB" << endl
+         << "read " << rows * passes << " values: plain " << elapsed[0] << "us, "
+         << "compressed " << elapsed[1] << "us" << endl;
+    ASSERT_TRUE(m_table->nonInlinedMemorySize() < plain->nonInlinedMemorySize());
+    delete plain;
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
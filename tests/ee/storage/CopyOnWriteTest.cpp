@@ -1020,6 +1020,53 @@ public:
         }
     }
 
+    /**
+     * Stream an incremental snapshot with the table rows going to the first
+     * stream and the deleted rows to the second one.
+     */
+    void streamIncremental(TableStreamType streamType, T_ValueSet &rows, T_ValueSet &deletedRows) {
+        std::vector<std::string> strings;
+        strings.push_back("{\"triggersDelete\":false}");
+        strings.push_back("{\"triggersDelete\":false,\"deletedRows\":true}");
+        char buffer[1024];
+        ReferenceSerializeOutput output(buffer, sizeof(buffer));
+        output.writeInt(static_cast<int32_t>(strings.size()));
+        for (std::vector<std::string>::iterator i = strings.begin(); i != strings.end(); i++) {
+            output.writeTextString(*i);
+        }
+        ReferenceSerializeInputBE input(buffer, output.position());
+        bool activated = m_table->activateStream(m_serializer, streamType, 0, m_tableId, input);
+        ASSERT_TRUE(activated);
+
+        boost::scoped_ptr<char> buffers[2];
+        buffers[0].reset(new char[BUFFER_SIZE]);
+        buffers[1].reset(new char[BUFFER_SIZE]);
+        T_ValueSet *sets[2] = { &rows, &deletedRows };
+        int64_t remaining = 1;
+        while (remaining > 0) {
+            TupleOutputStreamProcessor outputStreams;
+            outputStreams.add((void*)buffers[0].get(), BUFFER_SIZE);
+            outputStreams.add((void*)buffers[1].get(), BUFFER_SIZE);
+            std::vector<int> retPositions;
+            remaining = m_table->streamMore(outputStreams, streamType, retPositions);
+            ASSERT_TRUE(remaining >= 0);
+            for (size_t istream = 0; istream < 2; istream++) {
+                const char *streamBuffer = buffers[istream].get();
+                const size_t serialized = outputStreams.at(istream).position();
+                for (size_t ii = sizeof(int32_t)*3; // skip partition id, row count, and first tuple length
+                     ii + sizeof(int64_t) <= serialized;
+                     ii += m_tupleWidth + sizeof(int32_t)) {
+                    int32_t values[2];
+                    values[0] = ntohl(*reinterpret_cast<const int32_t*>(&streamBuffer[ii]));
+                    values[1] = ntohl(*reinterpret_cast<const int32_t*>(&streamBuffer[ii + 4]));
+                    void *valuesVoid = reinterpret_cast<void*>(values);
+                    const int64_t *values64 = reinterpret_cast<const int64_t*>(valuesVoid);
+                    ASSERT_TRUE(sets[istream]->insert(*values64).second);
+                }
+            }
+        }
+    }
+
     boost::shared_ptr<ReferenceSerializeInputBE> getHashRangePredicateInput(const T_HashRange &testRange) {
         // Set up the hash range predicate.
         ReferenceSerializeOutput hashRangeOutput(m_hashRangeBuffer, 1024 * 256);
@@ -1561,6 +1608,71 @@ TEST_F(CopyOnWriteTest, BufferBoundaryCondition) {
     ASSERT_EQ(origPendingCount, curPendingCount);
 }
 
+/**
+ * An incremental snapshot only writes the blocks changed since the previous
+ * one, followed by the rows deleted since.
+ */
+TEST_F(CopyOnWriteTest, IncrementalSnapshot) {
+    initTable(1, 0);
+    addRandomUniqueTuples(m_table, TUPLE_COUNT);
+
+    // A delta needs a base.
+    T_ValueSet rows;
+    T_ValueSet deletedRows;
+    char config[4];
+    ::memset(config, 0, 4);
+    ReferenceSerializeInputBE input(config, 4);
+    ASSERT_FALSE(m_table->activateStream(m_serializer, TABLE_STREAM_SNAPSHOT_DELTA, 0, m_tableId, input));
+
+    T_ValueSet originalTuples;
+    getTableValueSet(originalTuples);
+    streamIncremental(TABLE_STREAM_SNAPSHOT_BASE, rows, deletedRows);
+    ASSERT_TRUE(rows == originalTuples);
+    ASSERT_EQ(0, deletedRows.size());
+
+    // Nothing changed, nothing to write.
+    rows.clear();
+    streamIncremental(TABLE_STREAM_SNAPSHOT_DELTA, rows, deletedRows);
+    ASSERT_EQ(0, rows.size());
+    ASSERT_EQ(0, deletedRows.size());
+
+    T_ValueSet inserted;
+    T_ValueSet deleted;
+    for (size_t i = 0; i < NUM_MUTATIONS; i++) {
+        doRandomDelete(m_table, &deleted);
+        doRandomInsert(m_table, &inserted);
+    }
+    // Deletes are only final when released.
+    m_engine->releaseUndoToken(m_undoToken);
+    m_engine->setUndoToken(++m_undoToken);
+    ExecutorContext::getExecutorContext()->setupForPlanFragments(m_engine->getCurrentUndoQuantum(),
+                                                                 0, 0, 0, 0);
+
+    T_ValueSet currentTuples;
+    getTableValueSet(currentTuples);
+    streamIncremental(TABLE_STREAM_SNAPSHOT_DELTA, rows, deletedRows);
+    ASSERT_TRUE(deletedRows == deleted);
+    for (T_ValueSet::iterator i = rows.begin(); i != rows.end(); i++) {
+        ASSERT_TRUE(currentTuples.find(*i) != currentTuples.end());
+    }
+    for (T_ValueSet::iterator i = inserted.begin(); i != inserted.end(); i++) {
+        if (deleted.find(*i) == deleted.end()) {
+            ASSERT_TRUE(rows.find(*i) != rows.end());
+        }
+    }
+
+    // A plain snapshot leaves change tracking alone.
+    T_ValueSet COWTuples;
+    int totalInserted = 0;
+    streamSnapshot(0, 0, COWTuples, totalInserted);
+    ASSERT_TRUE(COWTuples == currentTuples);
+    rows.clear();
+    deletedRows.clear();
+    streamIncremental(TABLE_STREAM_SNAPSHOT_DELTA, rows, deletedRows);
+    ASSERT_EQ(0, rows.size());
+    ASSERT_EQ(0, deletedRows.size());
+}
+
 /**
  * Dummy TableStreamer for intercepting and tracking tuple notifications.
  */
@@ -33,6 +33,8 @@
 #include "storage/tableutil.h"
 #include "storage/DRTupleStream.h"
 #include "indexes/tableindex.h"
+#include "indexes/tableindexfactory.h"
+#include "boost/scoped_array.hpp"
 #include <vector>
 #include <string>
 #include <stdint.h>
@@ -204,6 +206,37 @@ TEST_F(PersistentTableLogTest, InsertDeleteThenUndoOneTest) {
     ASSERT_FALSE(m_table->lookupTupleForUndo(tuple).isNullTuple());
 }
 
+TEST_F(PersistentTableLogTest, WriteEpochTest) {
+    initTable();
+    int64_t epochs[2] = { 0, 0 };
+    m_table->setWriteEpoch(&epochs[1]);
+
+    tableutil::addRandomTuples(m_table, 10);
+    int64_t afterInsert = epochs[1];
+    ASSERT_TRUE(afterInsert >= 10);
+
+    voltdb::TableTuple tuple(m_tableSchema);
+    tableutil::getRandomTuple(m_table, tuple);
+
+    m_engine->setUndoToken(INT64_MIN + 2);
+    m_engine->updateExecutorContextUndoQuantumForTest();
+    m_table->deleteTuple(tuple, true);
+    ASSERT_TRUE(epochs[1] > afterInsert);
+
+    // Rolling back the delete is a write as far as readers are concerned.
+    int64_t afterDelete = epochs[1];
+    m_engine->undoUndoToken(INT64_MIN + 2);
+    ASSERT_TRUE(epochs[1] > afterDelete);
+    ASSERT_EQ(0, epochs[0]);
+
+    // Unbinding falls back to a counter private to the table.
+    m_table->setWriteEpoch(NULL);
+    afterDelete = epochs[1];
+    tableutil::addRandomTuples(m_table, 1);
+    ASSERT_EQ(afterDelete, epochs[1]);
+    ASSERT_TRUE(m_table->writeEpoch() > 0);
+}
+
 TEST_F(PersistentTableLogTest, LoadTableThenUndoTest) {
     initTable();
     tableutil::addRandomTuples(m_table, 1000);
@@ -236,9 +269,15 @@ TEST_F(PersistentTableLogTest, LoadTableThenUndoTest) {
     tableutil::getRandomTuple(m_table, tuple);
     ASSERT_FALSE( m_table->lookupTupleForUndo(tuple).isNullTuple());
 
+    // The undo frees the table's blocks, so look for a copy of the tuple afterwards.
+    voltdb::TableTuple tupleBackup(m_tableSchema);
+    tupleBackup.move(new char[tupleBackup.tupleLength()]);
+    tupleBackup.copyForPersistentInsert(tuple);
+    StackCleaner cleaner(tupleBackup);
+
     m_engine->undoUndoToken(INT64_MIN + 3);
 
-    ASSERT_TRUE(m_table->lookupTupleForUndo(tuple).isNullTuple());
+    ASSERT_TRUE(m_table->lookupTupleForUndo(tupleBackup).isNullTuple());
     ASSERT_TRUE(m_table->activeTupleCount() == (int64_t)0);
 }
 
@@ -280,6 +319,82 @@ TEST_F(PersistentTableLogTest, LoadTableThenReleaseTest) {
     ASSERT_TRUE(m_table->activeTupleCount() == (int64_t)1000);
 }
 
+TEST_F(PersistentTableLogTest, LoadTableWithDuplicatesTest) {
+    // Build the rows to load in a table without any indexes, with every
+    // row in there twice.
+    initTable(false);
+    tableutil::addRandomTuples(m_table, 300);
+    std::vector<TableTuple> originals;
+    TableIterator iter = m_table->iterator();
+    TableTuple tuple(m_tableSchema);
+    while (iter.next(tuple)) {
+        originals.push_back(tuple);
+    }
+    for (int i = 0; i < originals.size(); i++) {
+        m_table->insertTuple(originals[i]);
+    }
+    ASSERT_EQ(600, m_table->activeTupleCount());
+
+    CopySerializeOutput serialize_out;
+    m_table->serializeTo(serialize_out);
+
+    m_engine->setUndoToken(INT64_MIN + 2);
+    m_engine->updateExecutorContextUndoQuantumForTest();
+    m_table->deleteAllTuples(true);
+    m_engine->releaseUndoToken(INT64_MIN + 2);
+    delete m_table;
+
+    // The primary key has out-of-line columns, so it is built a row at a
+    // time; the two B+tree indexes are built from the sorted batch.
+    initTable();
+    std::vector<int> uniqueColumns;
+    uniqueColumns.push_back(0);
+    uniqueColumns.push_back(3);
+    TableIndexScheme uniqueScheme("uniqueBTreeIndex", BTREE_INDEX, uniqueColumns,
+                                  TableIndex::simplyIndexColumns(), true, false, m_tableSchema);
+    m_table->addIndex(TableIndexFactory::getInstance(uniqueScheme));
+    std::vector<int> multiColumns;
+    multiColumns.push_back(2);
+    TableIndexScheme multiScheme("multiBTreeIndex", BTREE_INDEX, multiColumns,
+                                 TableIndex::simplyIndexColumns(), false, true, m_tableSchema);
+    m_table->addIndex(TableIndexFactory::getInstance(multiScheme));
+
+    m_engine->setUndoToken(INT64_MIN + 3);
+    m_engine->updateExecutorContextUndoQuantumForTest();
+
+    ReferenceSerializeInputBE serialize_in(serialize_out.data() + sizeof(int32_t), serialize_out.size() - sizeof(int32_t));
+    size_t violationsSize = 8 * 1024 * 1024;
+    boost::scoped_array<char> violations(new char[violationsSize]);
+    ReferenceSerializeOutput violationsOut(violations.get(), violationsSize);
+    m_table->loadTuplesFrom(serialize_in, NULL, &violationsOut);
+
+    // The first copy of each row is kept and the second one is reported.
+    ASSERT_EQ(300, m_table->activeTupleCount());
+    for (int i = 0; i < m_table->allIndexes().size(); i++) {
+        EXPECT_EQ(300, m_table->allIndexes()[i]->getSize());
+    }
+    ReferenceSerializeInputBE violationsIn(violations.get(), violationsOut.size());
+    ASSERT_TRUE(violationsIn.readInt() > 0);
+    int32_t headerSize = violationsIn.readInt();
+    violationsIn.getRawPointer(headerSize);
+    ASSERT_EQ(300, violationsIn.readInt());
+
+    TableTuple loaded(m_tableSchema);
+    iter = m_table->iterator();
+    while (iter.next(loaded)) {
+        ASSERT_FALSE(m_table->lookupTupleForUndo(loaded).isNullTuple());
+        ASSERT_TRUE(m_table->index("uniqueBTreeIndex")->exists(&loaded));
+        ASSERT_TRUE(m_table->index("multiBTreeIndex")->exists(&loaded));
+    }
+
+    m_engine->undoUndoToken(INT64_MIN + 3);
+
+    ASSERT_EQ(0, m_table->activeTupleCount());
+    for (int i = 0; i < m_table->allIndexes().size(); i++) {
+        EXPECT_EQ(0, m_table->allIndexes()[i]->getSize());
+    }
+}
+
 TEST_F(PersistentTableLogTest, InsertUpdateThenUndoOneTest) {
     initTable();
     tableutil::addRandomTuples(m_table, 1);
@@ -0,0 +1,288 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include <map>
+#include <vector>
+#include <algorithm>
+#include <cstdlib>
+#include <cstdio>
+#include "harness.h"
+#include "structures/CompactingBTree.h"
+#include "common/FixUnusedAssertHack.h"
+
+using namespace voltdb;
+using namespace std;
+
+class IntComparator {
+public:
+    inline int operator()(const int &lhs, const int &rhs) const {
+        if (lhs > rhs) return 1;
+        else if (lhs < rhs) return -1;
+        else return 0;
+    }
+};
+
+struct IntPrefix {
+    IntPrefix() {}
+    inline bool enabled() const { return true; }
+    inline uint64_t operator()(const int &key) const {
+        return static_cast<uint64_t>(static_cast<int64_t>(key)) ^ (static_cast<uint64_t>(1) << 63);
+    }
+};
+
+typedef CompactingBTree<NormalKeyValuePair<int, int>, IntComparator> IntTree;
+typedef CompactingBTree<NormalKeyValuePair<int, int>, IntComparator, true, IntPrefix> RankedIntTree;
+
+class CompactingBTreeTest : public Test {
+public:
+    CompactingBTreeTest() {
+    }
+
+    ~CompactingBTreeTest() {
+    }
+
+    template <typename Tree>
+    void checkAgainst(const Tree &tree, const std::multimap<int, int> &stl) {
+        ASSERT_TRUE(tree.verify());
+        ASSERT_EQ(static_cast<int64_t>(stl.size()), tree.size());
+        typename Tree::iterator iter = tree.begin();
+        for (std::multimap<int, int>::const_iterator stli = stl.begin(); stli != stl.end(); ++stli) {
+            ASSERT_FALSE(iter.isEnd());
+            ASSERT_EQ(stli->first, iter.key());
+            iter.moveNext();
+        }
+        ASSERT_TRUE(iter.isEnd());
+    }
+};
+
+TEST_F(CompactingBTreeTest, UniqueInsertFindErase) {
+    IntTree tree(true, IntComparator());
+    std::multimap<int, int> stl;
+    const int count = IntTree::leafFanout() * IntTree::innerFanout() * 3;
+
+    ASSERT_TRUE(tree.verify());
+    ASSERT_TRUE(tree.find(1).isEnd());
+    ASSERT_FALSE(tree.erase(1));
+
+    srand(0);
+    for (int i = 0; i < count; i++) {
+        int val = rand() % (count * 2);
+        bool inserted = tree.insert(val, i);
+        ASSERT_EQ(stl.find(val) == stl.end(), inserted);
+        if (inserted) {
+            stl.insert(std::pair<int, int>(val, i));
+        }
+    }
+    checkAgainst(tree, stl);
+    // enough entries to need more than one inner level
+    ASSERT_TRUE(tree.height() > 2);
+
+    for (int i = 0; i < count * 2; i++) {
+        IntTree::iterator iter = tree.find(i);
+        std::multimap<int, int>::iterator stli = stl.find(i);
+        if (stli == stl.end()) {
+            ASSERT_TRUE(iter.isEnd());
+        }
+        else {
+            ASSERT_FALSE(iter.isEnd());
+            ASSERT_EQ(stli->second, iter.value());
+        }
+    }
+
+    // delete in random order until empty, checking the structure as it
+    // shrinks through merges, borrows and root collapses
+    std::vector<int> keys;
+    for (std::multimap<int, int>::iterator stli = stl.begin(); stli != stl.end(); ++stli) {
+        keys.push_back(stli->first);
+    }
+    std::random_shuffle(keys.begin(), keys.end());
+    size_t bytesAtPeak = tree.bytesAllocated();
+    for (size_t i = 0; i < keys.size(); i++) {
+        ASSERT_TRUE(tree.erase(keys[i]));
+        ASSERT_FALSE(tree.erase(keys[i]));
+        stl.erase(keys[i]);
+        if (i % 97 == 0) {
+            checkAgainst(tree, stl);
+        }
+    }
+    checkAgainst(tree, stl);
+    ASSERT_TRUE(tree.begin().isEnd());
+    ASSERT_TRUE(tree.bytesAllocated() < bytesAtPeak);
+}
+
+TEST_F(CompactingBTreeTest, NonUniqueBounds) {
+    IntTree tree(false, IntComparator());
+    std::multimap<int, int> stl;
+    const int count = IntTree::leafFanout() * 40;
+
+    // long runs of duplicates so equal keys span several leaves
+    srand(1);
+    for (int i = 0; i < count; i++) {
+        int val = rand() % 20;
+        ASSERT_TRUE(tree.insert(val, i));
+        stl.insert(std::pair<int, int>(val, i));
+    }
+    checkAgainst(tree, stl);
+
+    for (int key = -1; key <= 21; key++) {
+        std::pair<IntTree::iterator, IntTree::iterator> range = tree.equalRange(key);
+        int found = 0;
+        for (IntTree::iterator iter = range.first; !iter.equals(range.second); iter.moveNext()) {
+            ASSERT_EQ(key, iter.key());
+            found++;
+        }
+        ASSERT_EQ(static_cast<int>(stl.count(key)), found);
+
+        IntTree::iterator lower = tree.lowerBound(key);
+        std::multimap<int, int>::iterator stlLower = stl.lower_bound(key);
+        ASSERT_EQ(stlLower == stl.end(), lower.isEnd());
+        if (!lower.isEnd()) {
+            ASSERT_EQ(stlLower->first, lower.key());
+        }
+        IntTree::iterator upper = tree.upperBound(key);
+        std::multimap<int, int>::iterator stlUpper = stl.upper_bound(key);
+        ASSERT_EQ(stlUpper == stl.end(), upper.isEnd());
+        if (!upper.isEnd()) {
+            ASSERT_EQ(stlUpper->first, upper.key());
+        }
+    }
+
+    // walk backwards
+    int backward = 0;
+    int last = 20;
+    for (IntTree::iterator iter = tree.rbegin(); !iter.isEnd(); iter.movePrev()) {
+        ASSERT_TRUE(iter.key() <= last);
+        last = iter.key();
+        backward++;
+    }
+    ASSERT_EQ(count, backward);
+
+    // erase one key entirely through iterators
+    while (!tree.find(7).isEnd()) {
+        IntTree::iterator iter = tree.find(7);
+        ASSERT_TRUE(tree.erase(iter));
+    }
+    stl.erase(7);
+    checkAgainst(tree, stl);
+}
+
+TEST_F(CompactingBTreeTest, RankWithPrefix) {
+    RankedIntTree tree(true, IntComparator(), IntPrefix());
+    const int count = RankedIntTree::leafFanout() * RankedIntTree::innerFanout() * 2;
+
+    // insert even numbers, including negatives to exercise the prefix bias
+    std::vector<int> keys;
+    for (int i = 0; i < count; i++) {
+        keys.push_back((i - count / 2) * 2);
+    }
+    std::random_shuffle(keys.begin(), keys.end());
+    for (int i = 0; i < count; i++) {
+        ASSERT_TRUE(tree.insert(keys[i], keys[i]));
+    }
+    ASSERT_TRUE(tree.verify());
+
+    for (int i = 0; i < count; i++) {
+        int key = (i - count / 2) * 2;
+        ASSERT_EQ(i + 1, tree.rankAsc(key));
+        ASSERT_EQ(i + 1, tree.rankUpper(key));
+        RankedIntTree::iterator iter = tree.findRank(i + 1);
+        ASSERT_FALSE(iter.isEnd());
+        ASSERT_EQ(key, iter.key());
+    }
+    ASSERT_EQ(-1, tree.rankAsc(1));
+    ASSERT_TRUE(tree.findRank(0).isEnd());
+    ASSERT_TRUE(tree.findRank(count + 1).isEnd());
+
+    // drop every other entry and check the ranks again
+    for (int i = 0; i < count; i += 2) {
+        ASSERT_TRUE(tree.erase((i - count / 2) * 2));
+    }
+    ASSERT_TRUE(tree.verify());
+    int64_t rank = 1;
+    for (int i = 1; i < count; i += 2) {
+        int key = (i - count / 2) * 2;
+        ASSERT_EQ(rank, tree.rankAsc(key));
+        ASSERT_EQ(key, tree.findRank(rank).key());
+        rank++;
+    }
+}
+
+TEST_F(CompactingBTreeTest, BulkLoad) {
+    // sizes around the leaf and inner node boundaries, up to a few levels
+    const int fanout = RankedIntTree::leafFanout();
+    const int sizes[] = { 0, 1, fanout - 1, fanout, fanout + 1, fanout * 2 + 3,
+                          fanout * RankedIntTree::innerFanout() + 1,
+                          fanout * RankedIntTree::innerFanout() * 5 };
+    for (int s = 0; s < sizeof(sizes) / sizeof(sizes[0]); s++) {
+        const int count = sizes[s];
+        std::vector<std::pair<int, int> > sorted;
+        std::multimap<int, int> stl;
+        for (int i = 0; i < count; i++) {
+            sorted.push_back(std::pair<int, int>(i * 3, i));
+            stl.insert(std::pair<int, int>(i * 3, i));
+        }
+        RankedIntTree tree(true, IntComparator(), IntPrefix());
+        tree.bulkLoad(sorted.begin(), sorted.end());
+        checkAgainst(tree, stl);
+        for (int i = 0; i < count; i++) {
+            ASSERT_EQ(i + 1, tree.rankAsc(i * 3));
+            ASSERT_EQ(i, tree.find(i * 3).value());
+            ASSERT_TRUE(tree.find(i * 3 + 1).isEnd());
+        }
+
+        // the tree keeps working normally after a bulk load
+        for (int i = 0; i < count; i++) {
+            ASSERT_TRUE(tree.insert(i * 3 + 1, i));
+            stl.insert(std::pair<int, int>(i * 3 + 1, i));
+        }
+        checkAgainst(tree, stl);
+        for (int i = 0; i < count; i += 2) {
+            ASSERT_TRUE(tree.erase(i * 3));
+            stl.erase(i * 3);
+        }
+        checkAgainst(tree, stl);
+    }
+
+    // non-unique trees take runs of equal keys
+    IntTree tree(false, IntComparator());
+    std::vector<std::pair<int, int> > sorted;
+    std::multimap<int, int> stl;
+    for (int i = 0; i < fanout * 50; i++) {
+        sorted.push_back(std::pair<int, int>(i / 7, i));
+        stl.insert(std::pair<int, int>(i / 7, i));
+    }
+    tree.bulkLoad(sorted.begin(), sorted.end());
+    checkAgainst(tree, stl);
+    for (int key = 0; key < fanout * 50 / 7; key++) {
+        std::pair<IntTree::iterator, IntTree::iterator> range = tree.equalRange(key);
+        int found = 0;
+        for (IntTree::iterator iter = range.first; !iter.equals(range.second); iter.moveNext()) {
+            found++;
+        }
+        ASSERT_EQ(static_cast<int>(stl.count(key)), found);
+    }
+}
+
+int main() {
+    return TestSuite::globalInstance()->runAll();
+}
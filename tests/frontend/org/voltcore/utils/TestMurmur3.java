@@ -61,6 +61,30 @@ public class TestMurmur3 extends TestCase {
         }
     }
 
+    @Test
+    public void testArrayAndLongVersionsMatchBuffer() throws Exception {
+        final long seed = ByteBuffer.wrap(SecureRandom.getSeed(8)).getInt();
+        Random r = new Random(seed);
+        System.out.println("Seed is " + seed);
+
+        ByteBuffer longBuf = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        for (int ii = 0; ii < iterations; ii++) {
+            final long nextValue = r.nextLong();
+            longBuf.clear();
+            longBuf.putLong(nextValue);
+            assertEquals(MurmurHash3.hash3_x64_128(longBuf, 0, 8, 0), MurmurHash3.hash3_x64_128(nextValue));
+        }
+
+        for (int ii = 0; ii < iterations / 10; ii++) {
+            byte bytes[] = new byte[r.nextInt(maxLength + 1)];
+            r.nextBytes(bytes);
+            final int offset = bytes.length == 0 ? 0 : r.nextInt(bytes.length);
+            final int length = bytes.length - offset;
+            assertEquals(MurmurHash3.hash3_x64_128(ByteBuffer.wrap(bytes), offset, length, 0),
+                         MurmurHash3.hash3_x64_128(bytes, offset, length, 0));
+        }
+    }
+
     @Test
     public void testMatchesNativeBytes() throws Exception {
         final long seed = ByteBuffer.wrap(SecureRandom.getSeed(8)).getInt();
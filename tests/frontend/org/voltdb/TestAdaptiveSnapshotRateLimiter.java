@@ -0,0 +1,122 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.voltdb.utils.FsyncLatencyTracker;
+
+public class TestAdaptiveSnapshotRateLimiter {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final double MB = AdaptiveSnapshotRateLimiter.MEGABYTE;
+
+    private long m_now;
+
+    @Before
+    public void setUp() {
+        FsyncLatencyTracker.reset();
+        m_now = System.nanoTime();
+    }
+
+    private void settle() {
+        for (int i = 0; i < 200; i++) {
+            FsyncLatencyTracker.record(MILLIS / 2);
+        }
+    }
+
+    private void spike() {
+        for (int i = 0; i < 5; i++) {
+            FsyncLatencyTracker.record(50 * MILLIS);
+        }
+    }
+
+    // Let one adjustment interval pass
+    private void interval(AdaptiveSnapshotRateLimiter limiter) {
+        m_now += AdaptiveSnapshotRateLimiter.ADJUST_INTERVAL_NANOS;
+        limiter.adjust(m_now - 1);
+        limiter.adjust(m_now);
+    }
+
+    @Test
+    public void testUnlimitedUntilLatencyRises() {
+        AdaptiveSnapshotRateLimiter limiter = new AdaptiveSnapshotRateLimiter(Integer.MAX_VALUE, m_now);
+        settle();
+        interval(limiter);
+        assertFalse(limiter.isLimiting());
+
+        spike();
+        interval(limiter);
+        assertTrue(limiter.isLimiting());
+        assertEquals(AdaptiveSnapshotRateLimiter.FLOOR, limiter.getRate(), 1.0);
+
+        // Recovers once latency settles and stops limiting past the ceiling
+        settle();
+        for (int i = 0; i < 200 && limiter.isLimiting(); i++) {
+            interval(limiter);
+        }
+        assertFalse(limiter.isLimiting());
+    }
+
+    @Test
+    public void testBackoffStaysUnderCeiling() {
+        AdaptiveSnapshotRateLimiter limiter = new AdaptiveSnapshotRateLimiter(200, m_now);
+        assertTrue(limiter.isLimiting());
+        assertEquals(200 * MB, limiter.getRate(), 1.0);
+
+        settle();
+        spike();
+        interval(limiter);
+        assertEquals(100 * MB, limiter.getRate(), 1.0);
+        interval(limiter);
+        assertEquals(50 * MB, limiter.getRate(), 1.0);
+
+        settle();
+        for (int i = 0; i < 200; i++) {
+            interval(limiter);
+        }
+        assertTrue(limiter.isLimiting());
+        assertEquals(200 * MB, limiter.getRate(), 1.0);
+    }
+
+    @Test
+    public void testExplicitRateIsHeld() {
+        AdaptiveSnapshotRateLimiter limiter = new AdaptiveSnapshotRateLimiter(200, m_now);
+        limiter.setCeiling(1024 * 10);
+        settle();
+        spike();
+        interval(limiter);
+        assertEquals(1024 * 10 * MB, limiter.getRate(), 1.0);
+
+        limiter.setCeiling(null);
+        assertEquals(200 * MB, limiter.getRate(), 1.0);
+        interval(limiter);
+        assertEquals(100 * MB, limiter.getRate(), 1.0);
+    }
+}
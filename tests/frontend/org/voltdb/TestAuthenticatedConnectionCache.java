@@ -105,4 +105,64 @@ public class TestAuthenticatedConnectionCache extends TestCase {
         }
     }
 
+    public void testSessionTTL() throws Exception {
+        try {
+            String simpleSchema
+                    = "CREATE TABLE foo (\n"
+                    + "    bar BIGINT NOT NULL,\n"
+                    + "    PRIMARY KEY (bar)\n"
+                    + ");";
+
+            VoltProjectBuilder builder = new VoltProjectBuilder();
+            builder.addLiteralSchema(simpleSchema);
+            builder.setHTTPDPort(8095);
+            boolean success = builder.compile(Configuration.getPathToCatalogForTest("json.jar"));
+            assertTrue(success);
+
+            VoltDB.Configuration config = new VoltDB.Configuration();
+            config.m_pathToCatalog = config.setPathToCatalogForTest("json.jar");
+            config.m_pathToDeployment = builder.getPathToDeployment();
+            server = new ServerThread(config);
+            server.start();
+            server.waitForInitialization();
+
+            AuthenticatedConnectionCache ccache = new AuthenticatedConnectionCache(2, "localhost", server.m_config.m_port,
+                    "localhost", server.m_config.m_adminPort, 500);
+
+            // a released session is reused within the TTL
+            client = ccache.getClient("user", "password", null, false);
+            ccache.releaseClient(client, false);
+            assertSame(client, ccache.getClient("user", "password", null, false));
+            ccache.releaseClient(client, false);
+
+            // a session in use outlives the TTL
+            Client inUse = ccache.getClient("admin", "password", null, false);
+            Thread.sleep(1000);
+            client = ccache.getClient("other", "password", null, false);
+            assertEquals(2, ccache.getSize());
+            assertSame(inUse, ccache.getClient("admin", "password", null, false));
+            ccache.releaseClient(inUse, false);
+            ccache.releaseClient(inUse, false);
+
+            // beyond the target size the least recently used idle session goes first
+            ccache.releaseClient(client, false);
+            ccache.getClient("admin", "password", null, false);
+            ccache.getClient("third", "password", null, false);
+            assertEquals(2, ccache.getSize());
+            assertSame(inUse, ccache.getClient("admin", "password", null, false));
+            Client other = ccache.getClient("other", "password", null, false);
+            assertNotSame(client, other);
+            client = other;
+        } finally {
+            if (server != null) {
+                server.shutdown();
+                server.join();
+            }
+            server = null;
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
 }
@@ -0,0 +1,197 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.voltcore.utils.DBBPool;
+import org.voltdb.PartitionDRGateway.DRRecordType;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.iv2.UniqueIdGenerator;
+
+public class TestDRApplyPipeline extends TestCase {
+
+    private DRApplyPipeline m_pipeline;
+
+    @Override
+    public void setUp() {
+        EELibraryLoader.loadExecutionEngineLibrary(true);
+        m_pipeline = new DRApplyPipeline(2);
+    }
+
+    @Override
+    public void tearDown() throws InterruptedException {
+        m_pipeline.shutdown();
+    }
+
+    // A record as DRTupleStream writes it: version, type, fields, CRC32C
+    private static void record(ByteArrayOutputStream out, DRRecordType type, byte[] fields) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(2 + fields.length + 4).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put((byte) 0);
+        buf.put((byte) type.ordinal());
+        buf.put(fields);
+        buf.putInt(DBBPool.getBufferCRC32C(buf, 0, buf.position()));
+        byte[] bytes = new byte[buf.position()];
+        buf.flip();
+        buf.get(bytes);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static byte[] longs(long... values) {
+        ByteBuffer buf = ByteBuffer.allocate(values.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        for (long value : values) {
+            buf.putLong(value);
+        }
+        return buf.array();
+    }
+
+    private static byte[] insert(long tableHandle, int rowLength) {
+        ByteBuffer buf = ByteBuffer.allocate(12 + rowLength).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putLong(tableHandle);
+        buf.putInt(rowLength);
+        return buf.array();
+    }
+
+    // Transactions firstSeq to lastSeq, each inserting one row
+    private static byte[] log(long firstSeq, long lastSeq, long uniqueId) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long seq = firstSeq; seq <= lastSeq; seq++) {
+            record(out, DRRecordType.BEGIN_TXN, longs(uniqueId, seq));
+            record(out, DRRecordType.INSERT, insert(42, 16));
+            record(out, DRRecordType.END_TXN, longs(seq));
+        }
+        return out.toByteArray();
+    }
+
+    private DRApplyPipeline.Batch awaitBatch(int partitionId) throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            DRApplyPipeline.Batch batch = m_pipeline.nextBatch(partitionId);
+            if (batch != null) {
+                return batch;
+            }
+            Thread.sleep(5);
+        }
+        fail("No batch for partition " + partitionId);
+        return null;
+    }
+
+    public void testDecode() throws Exception {
+        DRApplyPipeline.DecodedLog decoded = DRApplyPipeline.decode(log(10, 14, 99));
+        assertEquals(5, decoded.m_txnCount);
+        assertEquals(10, decoded.m_firstSequenceNumber);
+        assertEquals(14, decoded.m_lastSequenceNumber);
+        assertEquals(99, decoded.m_lastUniqueId);
+    }
+
+    public void testCorruptLogs() throws Exception {
+        byte[] log = log(0, 3, 1);
+        byte[] flipped = Arrays.copyOf(log, log.length);
+        flipped[40] ^= 1;
+        byte[] truncated = Arrays.copyOf(log, log.length - 3);
+        ByteArrayOutputStream gap = new ByteArrayOutputStream();
+        gap.write(log(0, 1, 1));
+        gap.write(log(3, 3, 1));
+        for (byte[] bad : new byte[][] { flipped, truncated, gap.toByteArray() }) {
+            try {
+                DRApplyPipeline.decode(bad);
+                fail("Corrupt log was accepted");
+            } catch (IOException expected) {}
+        }
+
+        // A corrupt log is reported once, after the good ones before it
+        m_pipeline.offer(0, log(0, 3, 1));
+        m_pipeline.offer(0, flipped);
+        m_pipeline.offer(0, log(4, 5, 1));
+        assertEquals(4, awaitBatch(0).txnCount);
+        try {
+            awaitBatch(0);
+            fail("Corrupt log was not reported");
+        } catch (IOException expected) {}
+        assertEquals(2, awaitBatch(0).txnCount);
+        assertEquals(0, m_pipeline.getQueuedLogs(0));
+    }
+
+    public void testBatching() throws Exception {
+        // Contiguous logs are joined in order, a gap starts a new batch
+        m_pipeline.offer(1, log(0, 9, 1));
+        m_pipeline.offer(1, log(10, 19, 2));
+        m_pipeline.offer(1, log(20, 29, 3));
+        m_pipeline.offer(1, log(40, 49, 4));
+        m_pipeline.offer(2, log(0, 0, 5));
+        Thread.sleep(200);
+
+        DRApplyPipeline.Batch batch = awaitBatch(1);
+        assertEquals(3, batch.logCount);
+        assertEquals(30, batch.txnCount);
+        assertEquals(0, batch.firstSequenceNumber);
+        assertEquals(29, batch.lastSequenceNumber);
+        assertEquals(3, batch.lastUniqueId);
+        // the joined log is still a valid log
+        DRApplyPipeline.DecodedLog decoded = DRApplyPipeline.decode(batch.log);
+        assertEquals(30, decoded.m_txnCount);
+
+        batch = awaitBatch(1);
+        assertEquals(1, batch.logCount);
+        assertEquals(40, batch.firstSequenceNumber);
+        assertNull(m_pipeline.nextBatch(1));
+
+        // partitions are independent
+        assertEquals(1, awaitBatch(2).txnCount);
+        assertNull(m_pipeline.nextBatch(3));
+    }
+
+    public void testStats() throws Exception {
+        long uniqueId = UniqueIdGenerator.makeIdFromComponents(System.currentTimeMillis() - 5000, 0, 0);
+        m_pipeline.offer(0, log(0, 9, uniqueId));
+        m_pipeline.applied(awaitBatch(0));
+        m_pipeline.offer(0, log(10, 19, uniqueId));
+
+        ColumnInfo[] schema = m_pipeline.getColumnSchema().toArray(new ColumnInfo[0]);
+        VoltTable stats = new VoltTable(schema);
+        Object[][] rows = m_pipeline.getStatsRows(false, System.currentTimeMillis());
+        assertEquals(1, rows.length);
+        stats.addRow(rows[0]);
+        stats.advanceRow();
+        assertEquals(0, stats.getLong("PARTITION_ID"));
+        assertEquals(1, stats.getLong("QUEUED_BUFFERS"));
+        assertEquals(10, stats.getLong("TRANSACTIONS_APPLIED"));
+        assertEquals(1, stats.getLong("APPLY_CALLS"));
+        assertTrue(stats.getLong("REPLICATION_LAG") >= 4);
+
+        // caught up once nothing is waiting
+        m_pipeline.applied(awaitBatch(0));
+        rows = m_pipeline.getStatsRows(true, System.currentTimeMillis());
+        stats = new VoltTable(schema);
+        stats.addRow(rows[0]);
+        stats.advanceRow();
+        assertEquals(20, stats.getLong("TRANSACTIONS_APPLIED"));
+        assertEquals(0, stats.getLong("REPLICATION_LAG"));
+    }
+}
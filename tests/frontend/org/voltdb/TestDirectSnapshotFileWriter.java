@@ -0,0 +1,118 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeNotNull;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltdb.dtxn.LatencyStats;
+
+public class TestDirectSnapshotFileWriter {
+    private File m_file;
+
+    @Before
+    public void setUp() throws Exception {
+        m_file = File.createTempFile("TestDirectSnapshotFileWriter", ".vpt");
+    }
+
+    @After
+    public void tearDown() {
+        m_file.delete();
+    }
+
+    private void checkWrite(int headerLength, int... chunkLengths) throws Exception {
+        Random r = new Random(headerLength);
+        byte header[] = new byte[headerLength];
+        r.nextBytes(header);
+        RandomAccessFile raf = new RandomAccessFile(m_file, "rw");
+        try {
+            raf.setLength(0);
+            raf.write(header);
+
+            AbstractHistogram latency = LatencyStats.constructHistogram(false);
+            DirectSnapshotFileWriter writer =
+                    DirectSnapshotFileWriter.open(m_file, ByteBuffer.wrap(header), latency);
+            // Not every file system can do direct I/O
+            assumeNotNull(writer);
+
+            ByteBuffer expected = ByteBuffer.allocate(headerLength + sum(chunkLengths));
+            expected.put(header);
+            for (int length : chunkLengths) {
+                byte chunk[] = new byte[length];
+                r.nextBytes(chunk);
+                expected.put(chunk);
+                ByteBuffer direct = ByteBuffer.allocateDirect(length);
+                direct.put(chunk).flip();
+                writer.write(direct);
+                assertEquals(0, direct.remaining());
+            }
+            long length = writer.finish();
+            assertEquals(expected.capacity(), length);
+            assertEquals(0, DirectSnapshotFileWriter.alignUp(raf.length()) - raf.length());
+            raf.setLength(length);
+
+            byte actual[] = new byte[(int)length];
+            raf.seek(0);
+            raf.readFully(actual);
+            assertArrayEquals(expected.array(), actual);
+            assertEquals(1 + (length - 1) / DirectSnapshotFileWriter.BUFFER_BYTES, latency.getHistogramData().getTotalCount());
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static int sum(int[] values) {
+        int sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Test
+    public void testSmallFile() throws Exception {
+        checkWrite(123, 10, 1000, 4096);
+    }
+
+    @Test
+    public void testChunksSpanBuffers() throws Exception {
+        final int buffer = DirectSnapshotFileWriter.BUFFER_BYTES;
+        checkWrite(517, buffer - 517, buffer + 1, 3, buffer / 2);
+    }
+
+    @Test
+    public void testEndsOnBlockBoundary() throws Exception {
+        checkWrite(DirectSnapshotFileWriter.ALIGNMENT, DirectSnapshotFileWriter.ALIGNMENT * 3);
+    }
+}
@@ -1263,6 +1263,75 @@ public class TestJSONInterface extends TestCase {
         }
     }
 
+    public void testBatchProcs() throws Exception {
+        try {
+            String simpleSchema
+                    = "CREATE TABLE foo (\n"
+                    + "    bar BIGINT NOT NULL,\n"
+                    + "    baz VARCHAR(32),\n"
+                    + "    PRIMARY KEY (bar)\n"
+                    + ");";
+
+            VoltProjectBuilder builder = new VoltProjectBuilder();
+            builder.addLiteralSchema(simpleSchema);
+            builder.addPartitionInfo("foo", "bar");
+            builder.addStmtProcedure("CountFoo", "select count(*) from foo;");
+            builder.setHTTPDPort(8095);
+            boolean success = builder.compile(Configuration.getPathToCatalogForTest("json.jar"));
+            assertTrue(success);
+
+            VoltDB.Configuration config = new VoltDB.Configuration();
+            config.m_pathToCatalog = config.setPathToCatalogForTest("json.jar");
+            config.m_pathToDeployment = builder.getPathToDeployment();
+            server = new ServerThread(config);
+            server.start();
+            server.waitForInitialization();
+
+            // Several invocations in one POST, answered in order
+            JSONArray batch = new JSONArray();
+            for (int i = 0; i < 5; i++) {
+                JSONObject invocation = new JSONObject();
+                invocation.put("Procedure", "FOO.insert");
+                invocation.put("Parameters", new JSONArray().put(i).put("row \"" + i + "\""));
+                batch.put(invocation);
+            }
+            // duplicate key fails without failing the rest
+            batch.put(new JSONObject().put("Procedure", "FOO.insert").put("Parameters", new JSONArray().put(0).put("dup")));
+            batch.put(new JSONObject().put("Procedure", "CountFoo"));
+
+            Map<String, String> params = new HashMap<String, String>();
+            params.put("Batch", batch.toString());
+            String responses = callProcOverJSONRaw(getHTTPVarString(params), 200);
+            JSONArray results = new JSONArray(responses);
+            assertEquals(batch.length(), results.length());
+            for (int i = 0; i < 5; i++) {
+                Response r = responseFromJSON(results.getJSONObject(i).toString());
+                assertEquals(ClientResponse.SUCCESS, r.status);
+                assertEquals(1, r.results[0].asScalarLong());
+            }
+            assertEquals(ClientResponse.GRACEFUL_FAILURE, responseFromJSON(results.getJSONObject(5).toString()).status);
+            Response count = responseFromJSON(results.getJSONObject(6).toString());
+            assertEquals(ClientResponse.SUCCESS, count.status);
+            assertEquals(5, count.results[0].asScalarLong());
+
+            // A single Procedure is still answered with an object
+            String response = callProcOverJSON("CountFoo", ParameterSet.emptyParameterSet(), null, null, false);
+            assertEquals(5, responseFromJSON(response).results[0].asScalarLong());
+
+            // Malformed batches are rejected before anything runs, like garbage procs
+            params.put("Batch", "[{\"Parameters\":[1]}]");
+            callProcOverJSONRaw(getHTTPVarString(params), 404);
+            params.put("Batch", "[]");
+            callProcOverJSONRaw(getHTTPVarString(params), 404);
+        } finally {
+            if (server != null) {
+                server.shutdown();
+                server.join();
+            }
+            server = null;
+        }
+    }
+
     public void testDeployment() throws Exception {
         try {
             String simpleSchema
@@ -0,0 +1,100 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+
+import junit.framework.TestCase;
+
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.types.TimestampType;
+
+public class TestJSONResponseWriter extends TestCase {
+
+    private static VoltTable allTypes() {
+        VoltTable table = new VoltTable(
+                new ColumnInfo("tiny", VoltType.TINYINT),
+                new ColumnInfo("small", VoltType.SMALLINT),
+                new ColumnInfo("int", VoltType.INTEGER),
+                new ColumnInfo("big", VoltType.BIGINT),
+                new ColumnInfo("flt", VoltType.FLOAT),
+                new ColumnInfo("ts", VoltType.TIMESTAMP),
+                new ColumnInfo("str", VoltType.STRING),
+                new ColumnInfo("bin", VoltType.VARBINARY),
+                new ColumnInfo("dec", VoltType.DECIMAL));
+        table.addRow(1, 2, 3, 4L, 5.0, new TimestampType(6L), "plain", new byte[] { 0, 1, (byte) 0xAB },
+                new BigDecimal("7.500000000000"));
+        table.addRow(-128 + 1, -32767, Integer.MIN_VALUE + 1, Long.MIN_VALUE + 1, -0.125, new TimestampType(-1L),
+                "quote\" back\\ slash/ </script> \b\t\n\f\r \u0001 \u001f",
+                new byte[0], new BigDecimal("-1.000000000001"));
+        table.addRow(127, 32767, Integer.MAX_VALUE, Long.MAX_VALUE, 1e300, new TimestampType(Long.MAX_VALUE),
+                "\u00e9\u0080\u009f \u2000\u2028\u20ff\u2100 \u65e5\u672c \ud83d\ude00", new byte[] { (byte) 0xFF }, BigDecimal.ZERO);
+        table.addRow(null, null, null, null, null, null, null, null, null);
+        table.setStatusCode((byte) 3);
+        return table;
+    }
+
+    private static String write(ClientResponseImpl response, String jsonp) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JSONResponseWriter writer = new JSONResponseWriter(out);
+        if (jsonp != null) {
+            writer.writeJSONPStart(jsonp);
+        }
+        writer.writeResponse(response);
+        if (jsonp != null) {
+            writer.writeJSONPEnd();
+        }
+        writer.flush();
+        return out.toString("UTF-8");
+    }
+
+    public void testMatchesToJSONString() throws Exception {
+        ClientResponseImpl response = new ClientResponseImpl(ClientResponse.SUCCESS, (byte) 7, "app \"status\"",
+                new VoltTable[] { allTypes(), new VoltTable(new ColumnInfo("empty", VoltType.BIGINT)) }, null);
+        assertEquals(response.toJSONString(), write(response, null));
+        assertEquals(String.format("%s( %s )", "cb", response.toJSONString()), write(response, "cb"));
+    }
+
+    public void testFailureResponse() throws Exception {
+        ClientResponseImpl response = new ClientResponseImpl(ClientResponse.UNEXPECTED_FAILURE,
+                new VoltTable[0], "no\u2028such procedure");
+        assertEquals(response.toJSONString(), write(response, null));
+    }
+
+    public void testLargeResult() throws Exception {
+        // Many times the writer's buffer
+        VoltTable table = new VoltTable(new ColumnInfo("id", VoltType.BIGINT), new ColumnInfo("str", VoltType.STRING));
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        for (int i = 0; i < 1000; i++) {
+            table.addRow(i * 1000003L, i % 10 == 0 ? sb.toString() : "r" + i);
+        }
+        ClientResponseImpl response = new ClientResponseImpl(ClientResponse.SUCCESS, new VoltTable[] { table }, null);
+        assertEquals(response.toJSONString(), write(response, null));
+    }
+}
@@ -0,0 +1,133 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestProcedureResultCache {
+    private static final int TABLE_A = 1;
+    private static final int TABLE_B = 3;
+
+    private SiteProcedureConnection m_site;
+    private ProcedureResultCache m_cache;
+
+    @Before
+    public void setUp() {
+        m_site = mock(SiteProcedureConnection.class);
+        setEpochs(0, 0);
+        m_cache = new ProcedureResultCache(m_site, new int[] { TABLE_A, TABLE_B }, 1024 * 1024);
+    }
+
+    private void setEpochs(long a, long b) {
+        doReturn(a).when(m_site).getTableWriteEpoch(TABLE_A);
+        doReturn(b).when(m_site).getTableWriteEpoch(TABLE_B);
+    }
+
+    private static VoltTable result(long value, int rows) {
+        VoltTable t = new VoltTable(new VoltTable.ColumnInfo("V", VoltType.BIGINT));
+        for (int i = 0; i < rows; i++) {
+            t.addRow(value);
+        }
+        return t;
+    }
+
+    private ProcedureResultCache.Key key(Object... params) {
+        return m_cache.makeKey(params);
+    }
+
+    private void put(ProcedureResultCache.Key key, VoltTable... results) {
+        m_cache.put(key, m_cache.getWriteEpochs(), results, (byte) 7, "status");
+    }
+
+    private ProcedureResultCache.Entry get(ProcedureResultCache.Key key) {
+        return m_cache.get(key, m_cache.getWriteEpochs());
+    }
+
+    @Test
+    public void testHitUntilReadTableIsWritten() {
+        put(key(1L, "a"), result(10, 1));
+
+        ProcedureResultCache.Entry entry = get(key(1L, "a"));
+        assertNotNull(entry);
+        assertEquals((byte) 7, entry.m_appStatusCode);
+        assertEquals("status", entry.m_appStatusString);
+        // Each hit gets its own tables over the same results
+        for (int i = 0; i < 2; i++) {
+            VoltTable[] results = entry.getResults();
+            assertEquals(1, results.length);
+            assertEquals(10, results[0].asScalarLong());
+        }
+
+        assertNull(get(key(2L, "a")));
+        assertNull(get(key(1L, "b")));
+
+        setEpochs(0, 1);
+        assertNull(get(key(1L, "a")));
+        // The stale entry is gone even if the epoch comes back around
+        setEpochs(0, 0);
+        assertNull(get(key(1L, "a")));
+        assertEquals(0, m_cache.size());
+        assertEquals(0, m_cache.getBytes());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        put(key(1L), result(1, 1000));
+        final long entryBytes = m_cache.getBytes();
+        m_cache = new ProcedureResultCache(m_site, new int[] { TABLE_A, TABLE_B }, entryBytes * 3);
+
+        put(key(1L), result(1, 1000));
+        put(key(2L), result(2, 1000));
+        put(key(3L), result(3, 1000));
+        assertEquals(3, m_cache.size());
+
+        // Using 1 leaves 2 as the least recently used
+        assertNotNull(get(key(1L)));
+        put(key(4L), result(4, 1000));
+        assertEquals(3, m_cache.size());
+        assertNull(get(key(2L)));
+        assertNotNull(get(key(1L)));
+        assertNotNull(get(key(3L)));
+        assertNotNull(get(key(4L)));
+
+        // Results bigger than the whole cache are never kept
+        put(key(5L), result(5, 4000));
+        assertNull(get(key(5L)));
+        assertEquals(3, m_cache.size());
+        assertEquals(entryBytes * 3, m_cache.getBytes());
+    }
+
+    @Test
+    public void testUntrackedBackend() {
+        setEpochs(-1, 0);
+        assertNull(m_cache.getWriteEpochs());
+    }
+}
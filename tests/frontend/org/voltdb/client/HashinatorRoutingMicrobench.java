@@ -0,0 +1,144 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.util.Random;
+
+import org.voltdb.ElasticHashinator;
+import org.voltdb.VoltType;
+import org.voltdb.client.HashinatorLite.HashinatorLiteType;
+
+/**
+ * Rows per second routed by HashinatorLite one key at a time versus the
+ * batch calls, for each partition key type.
+ *
+ * Usage: HashinatorRoutingMicrobench [partitions] [batch size] [seconds per run]
+ */
+public class HashinatorRoutingMicrobench {
+
+    static abstract class Runner {
+        final String name;
+        Runner(String name) {
+            this.name = name;
+        }
+        /** Route one batch, returning something derived from the result so it is not optimized away */
+        public abstract int run();
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int partitionCount = args.length > 0 ? Integer.parseInt(args[0]) : 24;
+        final int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        final long runMillis = (args.length > 2 ? Long.parseLong(args[2]) : 5) * 1000;
+
+        final HashinatorLite hashinator = new HashinatorLite(HashinatorLiteType.ELASTIC,
+                ElasticHashinator.getConfigureBytes(partitionCount, ElasticHashinator.DEFAULT_TOTAL_TOKENS), false);
+
+        final Random r = new Random(0);
+        final long[] longs = new long[batchSize];
+        final byte[][] bytes = new byte[batchSize][];
+        final String[] strings = new String[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            longs[i] = r.nextLong();
+            bytes[i] = new byte[16];
+            r.nextBytes(bytes[i]);
+            strings[i] = "customer-" + Long.toHexString(r.nextLong());
+        }
+        final int[] partitions = new int[batchSize];
+
+        final Runner[] runners = new Runner[] {
+            new Runner("BIGINT single") {
+                @Override
+                public int run() {
+                    int sum = 0;
+                    for (int i = 0; i < batchSize; i++) {
+                        sum += hashinator.getHashedPartitionForParameter(VoltType.BIGINT.getValue(), longs[i]);
+                    }
+                    return sum;
+                }
+            },
+            new Runner("BIGINT batch") {
+                @Override
+                public int run() {
+                    hashinator.hashinateLongs(longs, batchSize, partitions);
+                    return partitions[batchSize - 1];
+                }
+            },
+            new Runner("VARBINARY single") {
+                @Override
+                public int run() {
+                    int sum = 0;
+                    for (int i = 0; i < batchSize; i++) {
+                        sum += hashinator.getHashedPartitionForParameter(VoltType.VARBINARY.getValue(), bytes[i]);
+                    }
+                    return sum;
+                }
+            },
+            new Runner("VARBINARY batch") {
+                @Override
+                public int run() {
+                    hashinator.hashinateBytes(bytes, batchSize, partitions);
+                    return partitions[batchSize - 1];
+                }
+            },
+            new Runner("VARCHAR single") {
+                @Override
+                public int run() {
+                    int sum = 0;
+                    for (int i = 0; i < batchSize; i++) {
+                        sum += hashinator.getHashedPartitionForParameter(VoltType.STRING.getValue(), strings[i]);
+                    }
+                    return sum;
+                }
+            },
+            new Runner("VARCHAR batch") {
+                @Override
+                public int run() {
+                    hashinator.hashinateStrings(strings, batchSize, partitions);
+                    return partitions[batchSize - 1];
+                }
+            }
+        };
+
+        System.out.printf("%d partitions, %d keys per batch%n", partitionCount, batchSize);
+        int sink = 0;
+        for (Runner runner : runners) {
+            // Warm up so the JIT has compiled the routing path before timing it
+            long end = System.currentTimeMillis() + runMillis / 5;
+            while (System.currentTimeMillis() < end) {
+                sink += runner.run();
+            }
+
+            long rows = 0;
+            final long start = System.nanoTime();
+            end = System.currentTimeMillis() + runMillis;
+            while (System.currentTimeMillis() < end) {
+                sink += runner.run();
+                rows += batchSize;
+            }
+            final double seconds = (System.nanoTime() - start) / 1000000000.0;
+            System.out.printf("%-18s %,15.0f rows/s%n", runner.name, rows / seconds);
+        }
+        System.out.println("(" + sink + ")");
+    }
+}
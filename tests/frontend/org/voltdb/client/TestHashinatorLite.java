@@ -25,6 +25,7 @@ package org.voltdb.client;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.Random;
 
 import junit.framework.TestCase;
@@ -456,4 +457,73 @@ public class TestHashinatorLite extends TestCase {
         assertTrue(hash1 < partitionCount);
         assertTrue(hash1 >= 0);
     }
+
+    @Test
+    public void testBatchRouting() throws Exception {
+        for (int partitionCount : new int[] { 1, 2, 7, 64 }) {
+            byte[] configBytes = LegacyHashinator.getConfigureBytes(partitionCount);
+            testBatchRouting(new HashinatorLite(partitionCount),
+                             TheHashinator.getHashinator(HashinatorType.LEGACY.hashinatorClass, configBytes, false));
+
+            configBytes = ElasticHashinator.getConfigureBytes(partitionCount, ElasticHashinator.DEFAULT_TOTAL_TOKENS);
+            testBatchRouting(new HashinatorLite(HashinatorLiteType.ELASTIC, configBytes, false),
+                             TheHashinator.getHashinator(HashinatorType.ELASTIC.hashinatorClass, configBytes, false));
+        }
+    }
+
+    private void testBatchRouting(HashinatorLite h1, TheHashinator h2) throws Exception {
+        final int count = 1000;
+        long[] longs = new long[count + 10];
+        byte[][] bytes = new byte[count + 10][];
+        String[] strings = new String[count + 10];
+        for (int i = 0; i < count; i++) {
+            longs[i] = r.nextLong();
+            bytes[i] = new byte[r.nextInt(40)];
+            r.nextBytes(bytes[i]);
+            StringBuilder sb = new StringBuilder();
+            for (int j = r.nextInt(40); j > 0; j--) {
+                sb.append((char)r.nextInt(Character.MAX_VALUE + 1));
+            }
+            strings[i] = sb.toString();
+        }
+        longs[0] = VoltType.NULL_BIGINT;
+        longs[1] = Long.MAX_VALUE;
+        bytes[0] = null;
+        bytes[1] = new byte[0];
+        strings[0] = null;
+        strings[1] = "";
+        strings[2] = "\uD83D\uDE00 \u00e9t\u00e9";
+        strings[3] = "unpaired \uD83D surrogate";
+        strings[4] = new String(new char[1000]).replace('\0', '\u4e2d');
+
+        int[] partitions1 = new int[count + 10];
+        int[] partitions2 = new int[count + 10];
+        Arrays.fill(partitions1, -1);
+
+        // Only count entries are written, and both sides agree with routing one at a time
+        h1.hashinateLongs(longs, count, partitions1);
+        h2.hashinateLongs(longs, count, partitions2);
+        for (int i = 0; i < count; i++) {
+            int expected = h1.getHashedPartitionForParameter(VoltType.BIGINT.getValue(), longs[i]);
+            assertEquals(expected, partitions1[i]);
+            assertEquals(expected, partitions2[i]);
+        }
+        assertEquals(-1, partitions1[count]);
+
+        h1.hashinateBytes(bytes, count, partitions1);
+        h2.hashinateBytes(bytes, count, partitions2);
+        for (int i = 0; i < count; i++) {
+            int expected = h1.getHashedPartitionForParameter(VoltType.VARBINARY.getValue(), bytes[i]);
+            assertEquals(expected, partitions1[i]);
+            assertEquals(expected, partitions2[i]);
+        }
+
+        h1.hashinateStrings(strings, count, partitions1);
+        h2.hashinateStrings(strings, count, partitions2);
+        for (int i = 0; i < count; i++) {
+            int expected = h1.getHashedPartitionForParameter(VoltType.STRING.getValue(), strings[i]);
+            assertEquals(expected, partitions1[i]);
+            assertEquals(expected, partitions2[i]);
+        }
+    }
 }
@@ -2274,7 +2274,50 @@ public class TestVoltCompiler extends TestCase {
                 "create table t2(id integer not null, num integer, wage integer);\n" +
                 "create view my_view1 (id, num, total) " +
                 "as select t1.id, t2.num, count(*) from t1 join t2 on t1.id = t2.id group by t1.id, t2.num; \n";
-        checkDDLErrorMessage(ddl, "Materialized view \"MY_VIEW1\" has 2 sources. Only one source table is allowed.");
+        checkDDLErrorMessage(ddl, "Materialized view \"MY_VIEW1\" joins table T2 other than on all of the columns " +
+                "of one of its UNIQUE or PRIMARY KEY indexes.");
+
+        // A partitioned table joined with replicated tables on their keys is maintained from both sides.
+        String joinTables = "create table t1(id integer not null, num integer, wage integer, primary key (id));\n" +
+                "partition table t1 on column id;\n" +
+                "create table t2(id integer not null, num integer, wage integer, primary key (id));\n" +
+                "create table t3(id integer not null, num integer, wage integer, primary key (id));\n";
+        ddl = joinTables +
+                "create index t1_num on t1 (num, wage);\n" +
+                "create index t1_wage on t1 (wage);\n" +
+                "create view my_view1 (num, total, sumwage, maxwage) " +
+                "as select t2.num, count(*), sum(t1.wage), max(t3.wage) from t1, t2, t3 " +
+                "where t1.num = t2.id and t1.wage = t3.id and t1.id > 0 group by t2.num; \n";
+        checkDDLErrorMessage(ddl, null);
+
+        ddl = joinTables +
+                "create view my_view1 (num, total) " +
+                "as select t2.num, count(*) from t1 join t2 on t1.num = t2.id group by t2.num; \n";
+        checkDDLErrorMessage(ddl, "Materialized view \"MY_VIEW1\" requires an index on T1 whose leading columns are NUM");
+
+        ddl = joinTables +
+                "create index t1_num on t1 (num);\n" +
+                "create view my_view1 (num, total) " +
+                "as select t2.num, count(*) from t1 left join t2 on t1.num = t2.id group by t2.num; \n";
+        checkDDLErrorMessage(ddl, "Materialized view \"MY_VIEW1\" with an OUTER JOIN is not supported.");
+
+        ddl = joinTables +
+                "create view my_view1 (num, total) " +
+                "as select a.num, count(*) from t2 a join t2 b on a.num = b.id group by a.num; \n";
+        checkDDLErrorMessage(ddl, "Materialized view \"MY_VIEW1\" joins the table T2 with itself, which is not supported.");
+
+        ddl = joinTables +
+                "partition table t2 on column id;\n" +
+                "create view my_view1 (num, total) " +
+                "as select t2.num, count(*) from t1 join t2 on t1.id = t2.id group by t2.num; \n";
+        checkDDLErrorMessage(ddl, "Materialized view \"MY_VIEW1\" joins the partitioned tables T1 and T2.");
+
+        ddl = joinTables +
+                "create table t4(id bigint not null, num integer, primary key (id));\n" +
+                "create index t1_num on t1 (num);\n" +
+                "create view my_view1 (num, total) " +
+                "as select t4.num, count(*) from t1 join t4 on t1.num = t4.id group by t4.num; \n";
+        checkDDLErrorMessage(ddl, "Materialized view \"MY_VIEW1\" joins T1.NUM with T4.ID, which has a different type or size.");
 
         ddl = "create table t1(id integer not null, num integer, wage integer);\n" +
                 "create table t2(id integer not null, num integer, wage integer);\n" +
@@ -3809,6 +3852,75 @@ public class TestVoltCompiler extends TestCase {
                 );
     }
 
+    public void testGoodCompressTable() throws Exception {
+        Database db;
+
+        String schema = "create table sessions (id integer not null, doc varchar(2048), " +
+                        "blob varbinary(256), name varchar(64));";
+
+        db = goodDDLAgainstSimpleSchema(
+                schema,
+                "compress table sessions column doc;",
+                "COMPRESS TABLE SESSIONS COLUMN BLOB;"
+                );
+        Table table = db.getTables().getIgnoreCase("sessions");
+        assertTrue(table.getColumns().getIgnoreCase("doc").getCompressed());
+        assertTrue(table.getColumns().getIgnoreCase("blob").getCompressed());
+        assertFalse(table.getColumns().getIgnoreCase("name").getCompressed());
+        assertFalse(table.getColumns().getIgnoreCase("id").getCompressed());
+
+        // COMPRESS statement is order sensitive
+        db = goodDDLAgainstSimpleSchema(
+                schema,
+                "compress table sessions column doc;",
+                "compress table sessions column doc disable;"
+                );
+        assertFalse(db.getTables().getIgnoreCase("sessions").getColumns().getIgnoreCase("doc").getCompressed());
+
+        // Dropping a compressed column forgets its compression
+        db = goodDDLAgainstSimpleSchema(
+                schema,
+                "compress table sessions column doc;",
+                "alter table sessions drop column doc;",
+                "alter table sessions add column doc varchar(2048);"
+                );
+        assertFalse(db.getTables().getIgnoreCase("sessions").getColumns().getIgnoreCase("doc").getCompressed());
+    }
+
+    public void testBadCompressTable() throws Exception {
+        String schema = "create table sessions (id integer not null, doc varchar(2048), " +
+                        "name varchar(15), code varbinary(32));";
+
+        badDDLAgainstSimpleSchema(".+COMPRESS statement: table non_existant was not present in the catalog.*",
+                "compress table non_existant column doc;"
+                );
+
+        badDDLAgainstSimpleSchema(".+column NOPE was not present in table SESSIONS.*",
+                schema,
+                "compress table sessions column nope;"
+                );
+
+        badDDLAgainstSimpleSchema(".+only VARCHAR and VARBINARY columns can be compressed.*",
+                schema,
+                "compress table sessions column id;"
+                );
+
+        badDDLAgainstSimpleSchema(".+SESSIONS.NAME is stored inline.*",
+                schema,
+                "compress table sessions column name;"
+                );
+
+        badDDLAgainstSimpleSchema(".+SESSIONS.CODE is stored inline.*",
+                schema,
+                "compress table sessions column code;"
+                );
+
+        badDDLAgainstSimpleSchema(".+Invalid COMPRESS TABLE statement.*",
+                schema,
+                "compress table sessions doc;"
+                );
+    }
+
     public void testCompileFromDDL() throws IOException {
         final String simpleSchema1 =
             "create table table1r_el  (pkey integer, column2_integer integer, PRIMARY KEY(pkey));\n" +
@@ -24,10 +24,12 @@
 package org.voltdb.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.DriverManager;
@@ -414,6 +416,120 @@ public class TestJDBCQueries {
         }
     }
 
+    @Test
+    public void testPreparedInsertBatch() throws Exception
+    {
+        Connection grouped = DriverManager.getConnection(
+                "jdbc:voltdb://localhost:21212?" + JDBC4Connection.BATCH_GROUP_INSERTS + "=true");
+        try {
+            for (Connection c : new Connection[] {conn, grouped}) {
+                PreparedStatement ins = c.prepareStatement("insert into votes values (?, ?, ?)");
+                for (int i = 0; i < 1000; i++) {
+                    ins.setLong(1, i);
+                    ins.setString(2, "MA");
+                    ins.setInt(3, i % 6);
+                    ins.addBatch();
+                }
+                int[] resultCodes = ins.executeBatch();
+                assertEquals(1000, resultCodes.length);
+                for (int resultCode : resultCodes) {
+                    assertEquals(1, resultCode);
+                }
+                assertEquals(1000, ins.getUpdateCount());
+
+                // A failed row fails only its own statement
+                for (int i = 0; i < 10; i++) {
+                    ins.setLong(1, 1000 + i);
+                    ins.setString(2, i == 5 ? null : "MA");
+                    ins.setInt(3, 1);
+                    ins.addBatch();
+                }
+                try {
+                    ins.executeBatch();
+                    fail();
+                }
+                catch (BatchUpdateException e) {
+                    resultCodes = e.getUpdateCounts();
+                    assertEquals(10, resultCodes.length);
+                    for (int i = 0; i < 10; i++) {
+                        assertEquals(i == 5 ? Statement.EXECUTE_FAILED : 1, resultCodes[i]);
+                    }
+                }
+                // The batch was reset
+                assertEquals(0, ins.executeBatch().length);
+
+                ResultSet rs = c.createStatement().executeQuery("select count(*) from votes");
+                assertTrue(rs.next());
+                assertEquals(1009, rs.getLong(1));
+                c.createStatement().execute("delete from votes");
+            }
+        }
+        finally {
+            grouped.close();
+        }
+    }
+
+    @Test
+    public void testFetchSizeCursor() throws Exception
+    {
+        PreparedStatement ins = conn.prepareStatement("insert into votes values (?, ?, ?)");
+        for (int i = 0; i < 100; i++) {
+            ins.setLong(1, i);
+            ins.setString(2, "MA");
+            ins.setInt(3, i % 6);
+            ins.addBatch();
+        }
+        ins.executeBatch();
+
+        try {
+            Statement sel = conn.createStatement();
+            sel.setFetchSize(7);
+            ResultSet rs = sel.executeQuery("select phone_number from votes order by phone_number");
+            assertEquals(ResultSet.TYPE_FORWARD_ONLY, rs.getType());
+            int count = 0;
+            while (rs.next()) {
+                assertEquals(count, rs.getLong(1));
+                count++;
+                assertEquals(count, rs.getRow());
+            }
+            assertEquals(100, count);
+            assertFalse(rs.next());
+            rs.close();
+
+            // Prepared, limited by max rows and closed before its last row
+            PreparedStatement psel = conn.prepareStatement(
+                    "select phone_number from votes where contestant_number = ? order by phone_number");
+            psel.setFetchSize(3);
+            psel.setMaxRows(10);
+            psel.setInt(1, 2);
+            rs = psel.executeQuery();
+            count = 0;
+            while (rs.next()) {
+                assertEquals(count * 6 + 2, rs.getLong(1));
+                count++;
+            }
+            assertEquals(10, count);
+            rs.close();
+
+            psel.setMaxRows(0);
+            psel.setInt(1, 2);
+            rs = psel.executeQuery();
+            assertTrue(rs.next());
+            try {
+                rs.previous();
+                fail();
+            }
+            catch (SQLException e) {
+                // forward only
+            }
+            rs.close();
+            assertTrue(rs.isClosed());
+        }
+        finally {
+            conn.createStatement().execute("delete from votes");
+        }
+    }
+
     @Test
     public void testParameterizedQueries() throws Exception
     {
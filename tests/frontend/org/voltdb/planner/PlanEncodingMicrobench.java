@@ -0,0 +1,201 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.planner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voltdb.LegacyHashinator;
+import org.voltdb.ParameterSet;
+import org.voltdb.TheHashinator.HashinatorConfig;
+import org.voltdb.TheHashinator.HashinatorType;
+import org.voltdb.VoltDB;
+import org.voltdb.benchmark.tpcc.TPCCProjectBuilder;
+import org.voltdb.catalog.Catalog;
+import org.voltdb.catalog.Cluster;
+import org.voltdb.catalog.PlanFragment;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Statement;
+import org.voltdb.jni.ExecutionEngine;
+import org.voltdb.jni.ExecutionEngineJNI;
+import org.voltdb.utils.BuildDirectoryUtils;
+import org.voltdb.utils.CatalogUtil;
+import org.voltdb.utils.Encoder;
+import org.voltdb.utils.MiscUtils;
+
+/**
+ * Plan bytes and EE plan load time for JSON versus binary encoded plans,
+ * over the TPC-C statements plus a few multi-partition queries.
+ *
+ * Every fragment's plan crosses JNI each time the EE loads it. The
+ * per-partition fragment of a multi-partition ad hoc statement also goes
+ * over the network to every partition. Load time is measured by running
+ * each read-only fragment on empty tables under a fresh fragment id, so
+ * the EE must fetch and load the plan, less the time to run it again
+ * once cached.
+ *
+ * Usage: PlanEncodingMicrobench [rounds]
+ */
+public class PlanEncodingMicrobench {
+
+    static final String[][] MP_QUERIES = new String[][] {
+        { "CreditBalances", "SELECT C_W_ID, COUNT(*), SUM(C_BALANCE) FROM CUSTOMER WHERE C_CREDIT = ? " +
+                            "GROUP BY C_W_ID ORDER BY 2 DESC LIMIT 10;" },
+        { "LargeOrderLines", "SELECT O.O_ID, O.O_C_ID, OL.OL_AMOUNT FROM ORDERS O, ORDER_LINE OL " +
+                             "WHERE O.O_W_ID = OL.OL_W_ID AND O.O_D_ID = OL.OL_D_ID AND O.O_ID = OL.OL_O_ID " +
+                             "AND OL.OL_AMOUNT > ? ORDER BY OL.OL_AMOUNT DESC LIMIT 100;" },
+        { "StockLevels", "SELECT S_W_ID, MIN(S_QUANTITY), MAX(S_QUANTITY), AVG(S_QUANTITY) FROM STOCK " +
+                         "WHERE S_QUANTITY < ? GROUP BY S_W_ID;" },
+    };
+
+    static class Fragment {
+        final String sql;
+        final int paramCount;
+        final byte[] json;
+        final byte[] binary;
+        Fragment(String sql, int paramCount, byte[] json) throws Exception {
+            this.sql = sql;
+            this.paramCount = paramCount;
+            this.json = json;
+            this.binary = BinaryPlanWriter.encode(json);
+        }
+    }
+
+    static long s_nextFragId = 1000000;
+    static long s_nextTxnId = 1;
+
+    public static void main(String[] args) throws Exception {
+        final int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+        VoltDB.instance().readBuildInfo("Test");
+        String catalogJar = BuildDirectoryUtils.getBuildDirectoryPath() + File.separator + "planencoding.jar";
+        TPCCProjectBuilder pb = new TPCCProjectBuilder();
+        pb.addDefaultSchema();
+        pb.addDefaultPartitioning();
+        pb.addDefaultProcedures();
+        for (String[] query : MP_QUERIES) {
+            pb.addStmtProcedure(query[0], query[1]);
+        }
+        if (!pb.compile(catalogJar, 2, 0)) {
+            throw new RuntimeException("Failed to compile " + catalogJar);
+        }
+        byte[] bytes = MiscUtils.fileToBytes(new File(catalogJar));
+        Catalog catalog = new Catalog();
+        catalog.execute(CatalogUtil.getSerializedCatalogStringFromJar(
+                CatalogUtil.loadAndUpgradeCatalogFromJar(bytes).getFirst()));
+        Cluster cluster = catalog.getClusters().get("cluster");
+
+        List<Fragment> loadable = new ArrayList<Fragment>();
+        long jsonBytes = 0, binaryBytes = 0, fragments = 0;
+        long mpJsonBytes = 0, mpBinaryBytes = 0, mpFragments = 0;
+        for (Procedure proc : cluster.getDatabases().get("database").getProcedures()) {
+            for (Statement stmt : proc.getStatements()) {
+                boolean multiPartition = stmt.getFragments().size() > 1;
+                for (PlanFragment frag : stmt.getFragments()) {
+                    Fragment f = new Fragment(stmt.getSqltext(), stmt.getParameters().size(),
+                            Encoder.decodeBase64AndDecompressToBytes(frag.getPlannodetree()));
+                    fragments++;
+                    jsonBytes += f.json.length;
+                    binaryBytes += f.binary.length;
+                    // The fragment without dependencies is the one sent to every partition.
+                    if (multiPartition && !frag.getHasdependencies()) {
+                        mpFragments++;
+                        mpJsonBytes += f.json.length;
+                        mpBinaryBytes += f.binary.length;
+                    }
+                    if (stmt.getReadonly() && !frag.getHasdependencies()) {
+                        loadable.add(f);
+                    }
+                }
+            }
+        }
+        System.out.printf("%d fragments: %,d JSON bytes, %,d binary bytes (%.1f%%)%n",
+                fragments, jsonBytes, binaryBytes, 100.0 * binaryBytes / jsonBytes);
+        System.out.printf("%d multi-partition fragments: %,d JSON bytes, %,d binary bytes (%.1f%%) per partition sent to%n",
+                mpFragments, mpJsonBytes, mpBinaryBytes, 100.0 * mpBinaryBytes / mpJsonBytes);
+
+        ExecutionEngine ee = new ExecutionEngineJNI(cluster.getRelativeIndex(), 1, 0, 0, "", 100,
+                new HashinatorConfig(HashinatorType.LEGACY, LegacyHashinator.getConfigureBytes(2), 0, 0), false);
+        ee.loadCatalog(0, catalog.serialize());
+
+        // Drop fragments that can't run with null parameters.
+        List<Fragment> runnable = new ArrayList<Fragment>();
+        for (Fragment f : loadable) {
+            try {
+                load(ee, f, f.json);
+                runnable.add(f);
+            }
+            catch (Exception e) {
+                // skip it
+            }
+        }
+
+        long jsonNanos = 0, binaryNanos = 0, cachedNanos = 0;
+        long[] loadedIds = new long[runnable.size()];
+        for (int round = 0; round < rounds; round++) {
+            ActivePlanRepository.clear();
+            long start = System.nanoTime();
+            for (Fragment f : runnable) {
+                load(ee, f, f.json);
+            }
+            long afterJson = System.nanoTime();
+            for (int i = 0; i < runnable.size(); i++) {
+                loadedIds[i] = load(ee, runnable.get(i), runnable.get(i).binary);
+            }
+            long afterBinary = System.nanoTime();
+            for (int i = 0; i < runnable.size(); i++) {
+                run(ee, runnable.get(i), loadedIds[i]);
+            }
+            long afterCached = System.nanoTime();
+            // The first round warms up the JIT and the EE.
+            if (round > 0) {
+                jsonNanos += afterJson - start;
+                binaryNanos += afterBinary - afterJson;
+                cachedNanos += afterCached - afterBinary;
+            }
+        }
+        long loads = (long) runnable.size() * Math.max(1, rounds - 1);
+        double cachedMicros = cachedNanos / 1000.0 / loads;
+        System.out.printf("%d read-only fragments loaded %d times each%n", runnable.size(), Math.max(1, rounds - 1));
+        System.out.printf("JSON plan load   %8.1f us per fragment%n", jsonNanos / 1000.0 / loads - cachedMicros);
+        System.out.printf("binary plan load %8.1f us per fragment%n", binaryNanos / 1000.0 / loads - cachedMicros);
+        ee.release();
+    }
+
+    /** Run the fragment under a new id, forcing the EE to fetch and load its plan */
+    static long load(ExecutionEngine ee, Fragment f, byte[] plan) {
+        long fragId = s_nextFragId++;
+        ActivePlanRepository.addFragmentForTest(fragId, plan, f.sql);
+        run(ee, f, fragId);
+        return fragId;
+    }
+
+    static void run(ExecutionEngine ee, Fragment f, long fragId) {
+        long txnId = s_nextTxnId++;
+        ee.executePlanFragments(1, new long[] { fragId }, null,
+                new Object[] { ParameterSet.fromArrayNoCopy(new Object[f.paramCount]) },
+                new String[] { f.sql }, txnId, txnId, txnId - 1, txnId, Long.MAX_VALUE);
+    }
+}
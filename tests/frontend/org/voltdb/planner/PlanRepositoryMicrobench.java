@@ -0,0 +1,169 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.planner;
+
+import java.util.concurrent.CyclicBarrier;
+
+import org.voltdb.jni.ExecutionEngine;
+
+/**
+ * Operations per second through ActivePlanRepository from several threads at once,
+ * the way sites and the ad hoc path share it.
+ *
+ * lookup:        getFragmentIdForPlanHash of catalog fragments, as FragmentTask does
+ * addref/decref: loadOrAddRefPlanFragment and decrefPlanFragmentById of a working set
+ *                that fits in the cache, as ad hoc MP fragments do
+ * churn:         the same over a working set twice the size of the cache, so that
+ *                threads are loading and evicting fragments all the time
+ *
+ * Usage: PlanRepositoryMicrobench [max threads] [seconds per run]
+ */
+public class PlanRepositoryMicrobench {
+
+    static final int HOT_PLANS = 200;
+    static final int CHURN_PLANS = 2 * ExecutionEngine.EE_PLAN_CACHE_SIZE;
+
+    static final byte[][] s_hashes = new byte[CHURN_PLANS][];
+    static final byte[][] s_plans = new byte[CHURN_PLANS][];
+    static {
+        for (int i = 0; i < CHURN_PLANS; i++) {
+            s_hashes[i] = TestActivePlanRepository.hashFor(i);
+            s_plans[i] = TestActivePlanRepository.planFor(i);
+        }
+    }
+
+    static abstract class Workload {
+        final String name;
+        final int plans;
+        Workload(String name, int plans) {
+            this.name = name;
+            this.plans = plans;
+        }
+        /** One operation on the given plan, returning something so it is not optimized away */
+        abstract long run(int plan);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        final long runMillis = (args.length > 1 ? Long.parseLong(args[1]) : 5) * 1000;
+
+        final Workload[] workloads = new Workload[] {
+            new Workload("lookup", HOT_PLANS) {
+                @Override
+                long run(int plan) {
+                    return ActivePlanRepository.getFragmentIdForPlanHash(s_hashes[plan]);
+                }
+            },
+            new Workload("addref/decref", HOT_PLANS) {
+                @Override
+                long run(int plan) {
+                    long id = ActivePlanRepository.loadOrAddRefPlanFragment(s_hashes[plan], s_plans[plan], null);
+                    ActivePlanRepository.decrefPlanFragmentById(id);
+                    return id;
+                }
+            },
+            new Workload("churn", CHURN_PLANS) {
+                @Override
+                long run(int plan) {
+                    long id = ActivePlanRepository.loadOrAddRefPlanFragment(s_hashes[plan], s_plans[plan], null);
+                    ActivePlanRepository.decrefPlanFragmentById(id);
+                    return id;
+                }
+            }
+        };
+
+        long sink = 0;
+        for (Workload workload : workloads) {
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                ActivePlanRepository.clear();
+                // Catalog fragments stay referenced by their SQLStmts.
+                for (int i = 0; i < HOT_PLANS; i++) {
+                    ActivePlanRepository.loadOrAddRefPlanFragment(s_hashes[i], s_plans[i], "stmt " + i);
+                }
+                sink += run(workload, threads, runMillis / 5, null);
+                long[] ops = new long[threads];
+                final long start = System.nanoTime();
+                sink += run(workload, threads, runMillis, ops);
+                final double seconds = (System.nanoTime() - start) / 1000000000.0;
+                long total = 0;
+                for (long count : ops) {
+                    total += count;
+                }
+                System.out.printf("%-14s %2d threads %,15.0f ops/s   %s%n", workload.name, threads,
+                        total / seconds, ActivePlanRepository.getContentionStats());
+            }
+        }
+        System.out.println("(" + sink + ")");
+    }
+
+    /**
+     * Run the workload on the given number of threads for the given time.
+     * The first run is a warm up so the JIT has compiled the repository before timing it.
+     */
+    static long run(final Workload workload, int threads, final long millis, final long[] ops)
+            throws Exception {
+        final CyclicBarrier barrier = new CyclicBarrier(threads);
+        final long[] sinks = new long[threads];
+        Thread[] runners = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            runners[t] = new Thread() {
+                @Override
+                public void run() {
+                    // xorshift, so the threads don't share a Random
+                    int x = thread * 7919 + 1;
+                    long count = 0;
+                    long sink = 0;
+                    try {
+                        barrier.await();
+                    }
+                    catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                    final long end = System.currentTimeMillis() + millis;
+                    while (System.currentTimeMillis() < end) {
+                        for (int i = 0; i < 1000; i++) {
+                            x ^= x << 13;
+                            x ^= x >>> 17;
+                            x ^= x << 5;
+                            sink += workload.run((x & Integer.MAX_VALUE) % workload.plans);
+                        }
+                        count += 1000;
+                    }
+                    if (ops != null) {
+                        ops[thread] = count;
+                    }
+                    sinks[thread] = sink;
+                }
+            };
+            runners[t].start();
+        }
+        long sink = 0;
+        for (int t = 0; t < threads; t++) {
+            runners[t].join();
+            sink += sinks[t];
+        }
+        return sink;
+    }
+}
@@ -63,6 +63,9 @@ public class PlannerTestAideDeCamp {
 
     private CompiledPlan m_currentPlan = null;
 
+    // Statistics to cost plans with, if any
+    private DatabaseEstimates m_statistics = null;
+
     /**
      * Loads the schema at ddlurl and setups a voltcompiler / hsql instance.
      * @param ddlurl URL to the schema/ddl file.
@@ -86,6 +89,14 @@ public class PlannerTestAideDeCamp {
         return db;
     }
 
+    /**
+     * Cost subsequent plans with the given statistics, or with the
+     * default estimates if null.
+     */
+    public void setStatistics(DatabaseEstimates statistics) {
+        m_statistics = statistics;
+    }
+
     /**
      * Compile a statement and return the head of the plan.
      * @param sql
@@ -132,7 +143,8 @@ public class PlannerTestAideDeCamp {
         String name = catalogStmt.getParent().getTypeName() + "-" + catalogStmt.getTypeName();
 
         DatabaseEstimates estimates = new DatabaseEstimates();
-        TrivialCostModel costModel = new TrivialCostModel();
+        AbstractCostModel costModel = (m_statistics == null) ?
+                new TrivialCostModel() : new StatisticalCostModel(m_statistics);
         StatementPartitioning partitioning;
         if (inferPartitioning) {
             partitioning = StatementPartitioning.inferPartitioning();
@@ -30,6 +30,7 @@ import junit.framework.TestCase;
 
 import org.apache.commons.lang3.StringUtils;
 import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
 import org.voltdb.compiler.DeterminismMode;
 import org.voltdb.plannodes.AbstractPlanNode;
 
@@ -215,6 +216,10 @@ public class PlannerTestCase extends TestCase {
         return m_aide.getDatabase();
     }
 
+    protected void setStatistics(DatabaseEstimates statistics) {
+        m_aide.setStatistics(statistics);
+    }
+
     protected void printExplainPlan(List<AbstractPlanNode> planNodes) {
         for (AbstractPlanNode apn: planNodes) {
             System.out.println(apn.toExplainPlanString());
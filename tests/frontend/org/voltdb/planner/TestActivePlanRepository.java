@@ -0,0 +1,170 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.planner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+import org.voltdb.jni.ExecutionEngine;
+
+public class TestActivePlanRepository extends TestCase {
+
+    private static final int CACHE_SIZE = ExecutionEngine.EE_PLAN_CACHE_SIZE;
+
+    @Override
+    protected void setUp() throws Exception {
+        ActivePlanRepository.clear();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ActivePlanRepository.clear();
+    }
+
+    static byte[] hashFor(int plan) {
+        byte[] hash = new byte[20];
+        for (int i = 0; i < 4; i++) {
+            hash[i] = (byte) (plan >>> (8 * i));
+        }
+        return hash;
+    }
+
+    /// Already binary, so the repository stores it as it is.
+    static byte[] planFor(int plan) {
+        return new byte[] { BinaryPlanWriter.MAGIC, BinaryPlanWriter.VERSION,
+                            (byte) plan, (byte) (plan >>> 8), (byte) (plan >>> 16) };
+    }
+
+    static long load(int plan) {
+        return ActivePlanRepository.loadOrAddRefPlanFragment(hashFor(plan), planFor(plan), "stmt " + plan);
+    }
+
+    public void testLoadAndAddRef() {
+        long first = load(1);
+        long second = load(2);
+        assertTrue(first != second);
+        assertEquals(first, load(1));
+        assertEquals(first, ActivePlanRepository.getFragmentIdForPlanHash(hashFor(1)));
+        assertEquals("stmt 2", ActivePlanRepository.getStmtTextForPlanHash(hashFor(2)));
+        assertTrue(Arrays.equals(planFor(2), ActivePlanRepository.planForFragmentId(second)));
+        assertEquals(2, ActivePlanRepository.getContentionStats().loads);
+
+        // Ad hoc fragments have no text until a procedure supplies one.
+        long adHoc = ActivePlanRepository.loadOrAddRefPlanFragment(hashFor(3), planFor(3), null);
+        assertEquals(adHoc, load(3));
+        assertEquals("stmt 3", ActivePlanRepository.getStmtTextForPlanHash(hashFor(3)));
+    }
+
+    public void testReferencedFragmentsAreNotEvicted() {
+        long[] ids = new long[CACHE_SIZE + 10];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = load(i);
+        }
+        // Everything is in use, so the cache had to grow.
+        assertEquals(0, ActivePlanRepository.getContentionStats().evictions);
+        for (int i = 0; i < ids.length; i++) {
+            assertTrue(Arrays.equals(planFor(i), ActivePlanRepository.planForFragmentId(ids[i])));
+        }
+
+        // Release all but the first fragment, then add one more.
+        for (int i = 1; i < ids.length; i++) {
+            ActivePlanRepository.decrefPlanFragmentById(ids[i]);
+        }
+        load(ids.length);
+        assertEquals(11, ActivePlanRepository.getContentionStats().evictions);
+        assertEquals(ids[0], ActivePlanRepository.getFragmentIdForPlanHash(hashFor(0)));
+    }
+
+    public void testRecentlyUsedFragmentsGetASecondChance() {
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            ActivePlanRepository.decrefPlanFragmentById(load(i));
+        }
+        // The first new fragment makes the hand sweep every reference bit clear and evict one fragment.
+        ActivePlanRepository.decrefPlanFragmentById(load(CACHE_SIZE));
+        assertEquals(1, ActivePlanRepository.getContentionStats().evictions);
+
+        // Use the first half again. The hand would have to pass each of them twice to evict them,
+        // evicting every fragment of the second half on the way.
+        List<Integer> used = new ArrayList<Integer>();
+        for (int i = 0; i < CACHE_SIZE / 2; i++) {
+            if (ActivePlanRepository.hasPlanForTest(hashFor(i))) {
+                ActivePlanRepository.decrefPlanFragmentById(load(i));
+                used.add(i);
+            }
+        }
+        int added = CACHE_SIZE * 2 / 5;
+        for (int i = 1; i <= added; i++) {
+            ActivePlanRepository.decrefPlanFragmentById(load(CACHE_SIZE + i));
+        }
+        assertEquals(1 + added, ActivePlanRepository.getContentionStats().evictions);
+        for (int i : used) {
+            assertTrue(ActivePlanRepository.hasPlanForTest(hashFor(i)));
+        }
+    }
+
+    public void testConcurrentUse() throws Exception {
+        // A working set twice the size of the cache keeps every thread loading and evicting.
+        final int plans = 2 * CACHE_SIZE;
+        final int iterations = 20000;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final Random random = new Random(t);
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < iterations; i++) {
+                            int plan = random.nextInt(plans);
+                            long id = load(plan);
+                            // The fragment can't go anywhere while it is referenced.
+                            assertTrue(Arrays.equals(planFor(plan), ActivePlanRepository.planForFragmentId(id)));
+                            ActivePlanRepository.decrefPlanFragmentById(id);
+                        }
+                    }
+                    catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        ActivePlanRepository.ContentionStats stats = ActivePlanRepository.getContentionStats();
+        assertTrue(stats.evictions > 0);
+        assertTrue(stats.loads - stats.evictions <= CACHE_SIZE + 8);
+    }
+}
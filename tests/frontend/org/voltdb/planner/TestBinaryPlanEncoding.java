@@ -0,0 +1,156 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2015 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.planner;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.json_voltpatches.JSONArray;
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.voltdb.common.Constants;
+import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.PlanNodeList;
+
+public class TestBinaryPlanEncoding extends PlannerTestCase {
+    @Override
+    protected void setUp() throws Exception {
+        setupSchema(TestBinaryPlanEncoding.class.getResource("testplans-groupby-ddl.sql"),
+                "testbinaryplanencoding", false);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    public void testPlansDecodeToTheirJSON() throws Exception {
+        String[] queries = {
+            "SELECT SUM(A1), B1 FROM P1 WHERE C1 > 1.5 AND D1 < -7 GROUP BY B1 ORDER BY 1 LIMIT 10",
+            "SELECT P1.A1, R1.B1 FROM P1, R1 WHERE P1.PKEY = R1.PKEY AND R1.C1 = 5",
+            "SELECT COUNT(*) FROM P1 WHERE A1 IN (1, 2, 3)",
+            "UPDATE R1 SET A1 = A1 + 1 WHERE PKEY = ?",
+            "DELETE FROM P1 WHERE B1 IS NULL",
+        };
+        for (String sql : queries) {
+            List<AbstractPlanNode> fragments = compileToFragments(sql);
+            for (AbstractPlanNode fragment : fragments) {
+                PlanNodeList planList = new PlanNodeList(fragment);
+                String json = planList.toJSONString();
+                byte[] binary = planList.toBinaryPlan();
+
+                assertTrue(BinaryPlanReader.isBinaryPlan(binary));
+                assertFalse(BinaryPlanReader.isBinaryPlan(json.getBytes(Constants.UTF8ENCODING)));
+                assertTrue(sql, binary.length < json.length());
+                assertEquivalent(sql, new JSONObject(json), BinaryPlanReader.toJSONObject(binary));
+
+                // Transcoding the JSON gives an equivalent plan, and leaves binary plans alone.
+                byte[] transcoded = BinaryPlanWriter.encode(json.getBytes(Constants.UTF8ENCODING));
+                assertEquivalent(sql, new JSONObject(json), BinaryPlanReader.toJSONObject(transcoded));
+                assertSame(binary, BinaryPlanWriter.encode(binary));
+            }
+        }
+    }
+
+    public void testValueTypes() throws Exception {
+        BinaryPlanWriter writer = new BinaryPlanWriter();
+        writer.object();
+        writer.key("INT").value(-5);
+        writer.key("LONG").value(1L << 40);
+        writer.key("DOUBLE").value(1.5);
+        writer.key("INTEGRAL_DOUBLE").value(3.0);
+        writer.key("STRING").value("caf\u00e9 \"quoted\"");
+        writer.key("NULL").value(null);
+        writer.key("ARRAY").array().value(true).value(false).endArray();
+        writer.key("OBJECT").object().key("INT").value(0).endObject();
+        writer.endObject();
+
+        JSONObject decoded = BinaryPlanReader.toJSONObject(writer.toByteArray());
+        assertEquals(-5, decoded.get("INT"));
+        assertEquals(1L << 40, decoded.get("LONG"));
+        assertEquals(1.5, decoded.get("DOUBLE"));
+        // JSONStringer writes 3.0 as 3, and so the EE reads an integer.
+        assertEquals(3, decoded.get("INTEGRAL_DOUBLE"));
+        assertEquals("caf\u00e9 \"quoted\"", decoded.get("STRING"));
+        assertTrue(decoded.isNull("NULL"));
+        assertEquals(2, decoded.getJSONArray("ARRAY").length());
+        assertEquals(0, decoded.getJSONObject("OBJECT").get("INT"));
+
+        byte[] truncated = writer.toByteArray();
+        truncated = Arrays.copyOf(truncated, truncated.length - 1);
+        try {
+            BinaryPlanReader.toJSONObject(truncated);
+            fail();
+        }
+        catch (JSONException expected) {}
+    }
+
+    public void testMisuseIsRejected() throws Exception {
+        BinaryPlanWriter writer = new BinaryPlanWriter();
+        writer.object();
+        try {
+            writer.value(1);
+            fail();
+        }
+        catch (JSONException expected) {}
+        try {
+            writer.endArray();
+            fail();
+        }
+        catch (JSONException expected) {}
+        try {
+            writer.toByteArray();
+            fail();
+        }
+        catch (IllegalStateException expected) {}
+    }
+
+    private static void assertEquivalent(String context, Object expected, Object actual) throws JSONException {
+        if (expected instanceof JSONObject) {
+            assertTrue(context, actual instanceof JSONObject);
+            JSONObject expectedObject = (JSONObject) expected;
+            JSONObject actualObject = (JSONObject) actual;
+            assertEquals(context, expectedObject.length(), actualObject.length());
+            Iterator<String> keys = expectedObject.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                assertTrue(context + ": " + key, actualObject.has(key));
+                assertEquivalent(context + ": " + key, expectedObject.get(key), actualObject.get(key));
+            }
+        }
+        else if (expected instanceof JSONArray) {
+            assertTrue(context, actual instanceof JSONArray);
+            JSONArray expectedArray = (JSONArray) expected;
+            JSONArray actualArray = (JSONArray) actual;
+            assertEquals(context, expectedArray.length(), actualArray.length());
+            for (int i = 0; i < expectedArray.length(); i++) {
+                assertEquivalent(context + "[" + i + "]", expectedArray.get(i), actualArray.get(i));
+            }
+        }
+        else {
+            assertEquals(context, expected, actual);
+        }
+    }
+}
@@ -23,10 +23,15 @@
 
 package org.voltdb.planner;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.hsqldb_voltpatches.HSQLInterface;
 import org.json_voltpatches.JSONException;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.DatabaseEstimates.IndexEstimates;
+import org.voltdb.compiler.DatabaseEstimates.TableEstimates;
 import org.voltdb.expressions.AbstractExpression;
 import org.voltdb.expressions.ExpressionUtil;
 import org.voltdb.expressions.TupleValueExpression;
@@ -113,6 +118,35 @@ public class TestIndexSelection extends PlannerTestCase {
         assertTrue(pn.toJSONString().contains("\"TARGET_INDEX_NAME\":\"DELETED_SINCE_IDX\""));
     }
 
+    // An IN LIST that completes an equality match on all of an index's key components
+    // is probed directly by the index scan. An IN LIST that is followed by a range
+    // still needs the NestLoopIndex join with a MaterializedScan of the list elements.
+    public void testInListIndexScan()
+    {
+        AbstractPlanNode pn = compile("select id from a where id in (?, 5, 3, ?);");
+        // System.out.println("DEBUG: " + pn.toExplainPlanString());
+        assertFalse(pn.hasAnyNodeOfType(PlanNodeType.NESTLOOPINDEX));
+        assertFalse(pn.hasAnyNodeOfType(PlanNodeType.MATERIALIZEDSCAN));
+        pn = pn.getChild(0);
+        assertTrue(pn instanceof IndexScanPlanNode);
+        IndexScanPlanNode ispn = (IndexScanPlanNode)pn;
+        assertEquals(IndexLookupType.EQ, ispn.getLookupType());
+        assertEquals(0, ispn.getInListKeyIndex());
+        assertNull(ispn.getEndExpression());
+        assertTrue(ispn.toExplainPlanString().contains("(ID IN "));
+
+        pn = compile("select a from t where a = ? and b in ? and c = ? and d = ?;");
+        pn = pn.getChild(0);
+        assertTrue(pn instanceof IndexScanPlanNode);
+        ispn = (IndexScanPlanNode)pn;
+        assertTrue(ispn.toJSONString().contains("\"TARGET_INDEX_NAME\":\"IDX_1_HASH\""));
+        assertEquals(1, ispn.getInListKeyIndex());
+
+        pn = compile("select id from a where deleted in (?, 1) and updated_date > ?;");
+        assertTrue(pn.hasAnyNodeOfType(PlanNodeType.NESTLOOPINDEX));
+        assertTrue(pn.hasAnyNodeOfType(PlanNodeType.MATERIALIZEDSCAN));
+    }
+
     public void testFixedPlanWithExpressionIndexAndAlias()
     {
         AbstractPlanNode pn;
@@ -579,6 +613,60 @@ public class TestIndexSelection extends PlannerTestCase {
         }
     }
 
+    // Statistics for table T with a million rows per partition: its leading
+    // column E has a thousand distinct values evenly spread over 0..1000,
+    // and A is nearly unique.
+    private static DatabaseEstimates statisticsForT()
+    {
+        double[] histogramForE = new double[17];
+        for (int i = 0; i < histogramForE.length; ++i) {
+            histogramForE[i] = i * 62.5;
+        }
+        DatabaseEstimates statistics = new DatabaseEstimates();
+        TableEstimates table = statistics.getEstimatesForTable("T");
+        table.maxTuples = 1000000;
+        table.minTuples = 1000000;
+        table.indexEstimates.put("IDX_1_HASH", new IndexEstimates(1000000, 1000000, 500000, null));
+        table.indexEstimates.put("IDX_2_TREE", new IndexEstimates(1000000, 1000000, 1000, histogramForE));
+        table.indexEstimates.put("COVER2_TREE", new IndexEstimates(1000000, 1000000, 500000, null));
+        table.indexEstimates.put("COVER3_TREE", new IndexEstimates(1000000, 1000000, 500000, null));
+        return statistics;
+    }
+
+    // Without statistics the index filtering on more columns wins, but
+    // statistics show that the leading column A of another index is far
+    // more selective on its own.
+    public void testIndexSelectionWithStatistics()
+    {
+        String sql = "select * from t where e = 1 and a = 2;";
+        AbstractPlanNode pn = compile(sql).getChild(0);
+        assertTrue(pn instanceof IndexScanPlanNode);
+        assertEquals("IDX_2_TREE", ((IndexScanPlanNode) pn).getTargetIndexName());
+
+        setStatistics(statisticsForT());
+        pn = compile(sql).getChild(0);
+        assertTrue(pn instanceof IndexScanPlanNode);
+        String indexName = ((IndexScanPlanNode) pn).getTargetIndexName();
+        assertTrue(indexName, indexName.startsWith("COVER"));
+        assertEquals(2, pn.getEstimatedOutputTupleCount());
+
+        // A range on the leading column is estimated from its histogram.
+        pn = compile("select * from t where e > 990;").getChild(0);
+        assertTrue(pn instanceof IndexScanPlanNode);
+        assertEquals("IDX_2_TREE", ((IndexScanPlanNode) pn).getTargetIndexName());
+        assertEquals(10000, pn.getEstimatedOutputTupleCount());
+
+        pn = compile("select * from t where e >= 500 and e < 750;").getChild(0);
+        assertEquals(250000, pn.getEstimatedOutputTupleCount());
+
+        // The estimates can be shown by explain.
+        Map<Integer, Long> counts = new HashMap<Integer, Long>();
+        pn.collectEstimatedOutputTupleCounts(counts);
+        pn.explainEstimatedOutputTupleCounts(counts);
+        assertTrue(pn.toExplainPlanString().contains("(estimated 250000 rows)"));
+        setStatistics(null);
+    }
+
     private void checkIndexPredicateDoesNotHave(AbstractPlanNode pn, String[] columns)
     {
         assertEquals(1, pn.getChildCount());
@@ -76,6 +76,50 @@ public class TestExplainCommandSuite extends RegressionSuite {
         }
 }
 
+    // Once a table is large enough, its index statistics are reported and
+    // used to cost ad hoc plans, whose explanation shows estimated row counts.
+    public void testExplainWithStatistics() throws Exception {
+        Client client = getClient();
+        for (int i = 0; i < 2000; i++) {
+            client.callProcedure("T1.insert", i, i, "x");
+        }
+
+        VoltTable vt = null;
+        boolean reported = false;
+        for (int attempt = 0; attempt < 60 && ! reported; attempt++) {
+            Thread.sleep(500);
+            vt = client.callProcedure("@Statistics", "INDEX", 0).getResults()[0];
+            while (vt.advanceRow()) {
+                String histogram = vt.getString("KEY_HISTOGRAM");
+                if (vt.getString("TABLE_NAME").equals("T1") && vt.getLong("ENTRY_COUNT") == 2000 &&
+                        histogram != null && ! histogram.isEmpty()) {
+                    reported = true;
+                    // every key of a unique index is distinct
+                    assertEquals(2000, vt.getLong("DISTINCT_KEYS"));
+                    long leading = vt.getLong("LEADING_DISTINCT_KEYS");
+                    assertTrue(String.valueOf(leading), leading > 1800 && leading <= 2000);
+                    String[] boundaries = histogram.split(",");
+                    assertEquals(17, boundaries.length);
+                    assertEquals(0.0, Double.parseDouble(boundaries[0]));
+                }
+            }
+        }
+        assertTrue(reported);
+
+        // Plans are cached by their text, so vary it until the planner sees the statistics.
+        String plan = "";
+        for (int attempt = 0; attempt < 60 && ! plan.contains("(estimated "); attempt++) {
+            Thread.sleep(500);
+            vt = client.callProcedure("@Explain",
+                    "SELECT * FROM T1 T" + attempt + " WHERE PKEY > 1500").getResults()[0];
+            vt.advanceRow();
+            plan = vt.getString(0);
+        }
+        System.out.println(plan);
+        assertTrue(plan.contains("INDEX SCAN"));
+        assertTrue(plan.contains("(estimated "));
+    }
+
     public void testExplainProc() throws IOException, ProcCallException {
         Client client = getClient();
         VoltTable vt = null;
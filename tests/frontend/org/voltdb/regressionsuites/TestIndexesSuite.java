@@ -439,6 +439,21 @@ public class TestIndexesSuite extends RegressionSuite {
             results = client.callProcedure("@AdHoc", query).getResults();
             compareTable(results[0], new Object [][] {line3,line6,line7,line8});
 
+            // IN LISTs that complete an equality match on every index key component
+            // are probed by the index scan in key order.
+            query = String.format("select * from %s T where T.ID IN (8, 1, 6, 99, 3, 8) ORDER BY T.ID", table);
+            results = client.callProcedure("@AdHoc", query).getResults();
+            compareTable(results[0], new Object [][] {line1,line3,line6,line8});
+
+            query = String.format("select * from %s T where T.ID IN (8, 1, 6, 99, 3, 8) " +
+                    "ORDER BY T.ID DESC LIMIT 2 OFFSET 1", table);
+            results = client.callProcedure("@AdHoc", query).getResults();
+            compareTable(results[0], new Object [][] {line6,line3});
+
+            query = String.format("select * from %s T where T.NUM IN (300, 10, 200) AND T.NUM2 = 6", table);
+            results = client.callProcedure("@AdHoc", query).getResults();
+            compareTable(results[0], new Object [][] {line6});
+
             query = String.format("select * from %s T where T.NUM IN (10, 200, 300, -1, 200) ORDER BY T.ID", table);
             results = client.callProcedure("@AdHoc", query).getResults();
             compareTable(results[0], new Object [][] {line3,line6,line7,line8});
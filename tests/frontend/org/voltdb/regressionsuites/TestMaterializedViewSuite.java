@@ -91,7 +91,7 @@ public class TestMaterializedViewSuite extends RegressionSuite {
         }
     }
 
-    public void testSinglePartition() throws IOException, ProcCallException
+    public void testSinglePartition() throws IOException, ProcCallException, InterruptedException
     {
         subtestInsertSinglePartition();
         subtestDeleteSinglePartition();
@@ -102,6 +102,7 @@ public class TestMaterializedViewSuite extends RegressionSuite {
         subtestIndexMinMaxSinglePartition();
         subtestIndexMinMaxSinglePartitionWithPredicate();
         subtestNullMinMaxSinglePartition();
+        subtestKeptMinMaxSinglePartition();
     }
 
 
@@ -690,6 +691,88 @@ public class TestMaterializedViewSuite extends RegressionSuite {
     }
 
 
+    /**
+     * MATPEOPLE2 has no index on PEOPLE to find a group's MIN and MAX with,
+     * so it keeps the values of those columns. Delete the rows holding the
+     * extremes one after the other, with rolled back inserts in between.
+     */
+    private void subtestKeptMinMaxSinglePartition() throws IOException, ProcCallException, InterruptedException
+    {
+        Client client = getClient();
+        truncateBeforeTest(client);
+        VoltTable[] results = null;
+        VoltTable t;
+
+        final int rows = 200;
+        for (int id = 1; id <= rows; id++) {
+            results = client.callProcedure("AddPerson", 1, (long) id, 31L, 10.0 * id, id, NORMALLY).getResults();
+            assertEquals(1L, results[0].asScalarLong());
+        }
+
+        if ( ! isHSQL()) {
+            // The memory for the kept values shows up for the view with MIN and MAX only.
+            assertTrue(waitForViewMinMaxMemory(client, "MATPEOPLE2", true) > 0);
+            assertEquals(0, waitForViewMinMaxMemory(client, "MATPEOPLE", false));
+        }
+
+        for (int id = rows; id > rows / 2; id--) {
+            if ( ! isHSQL()) {
+                // A new MAX and MIN that are rolled back must not be left behind.
+                try {
+                    client.callProcedure("AddPerson", 1, 1000L + id, 31L, 0.0, 1000 + id, SABOTAGE);
+                    fail("intentional ProcCallException failed");
+                } catch (ProcCallException pce) {
+                    // Expected the throw.
+                }
+            }
+            // Delete the rows with the MAX and then the MIN of the group.
+            client.callProcedure("DeletePerson", 1, (long) id, NORMALLY);
+            client.callProcedure("DeletePerson", 1, (long) (rows + 1 - id), NORMALLY);
+
+            results = client.callProcedure("@AdHoc", "SELECT * FROM MATPEOPLE2").getResults();
+            t = results[0];
+            if (id == rows / 2 + 1) {
+                assertEquals(0, t.getRowCount());
+                break;
+            }
+            assertEquals(1, t.getRowCount());
+            t.advanceRow();
+            assertEquals(2 * id - rows - 2, t.getLong(2));
+            assertEquals(10 * (rows + 2 - id), (int)(t.getDouble(3)));
+            assertEquals(id - 1, t.getLong(4));
+        }
+
+        if ( ! isHSQL()) {
+            // All of it goes with the group.
+            assertEquals(0, waitForViewMinMaxMemory(client, "MATPEOPLE2", false));
+        }
+    }
+
+    /**
+     * The VIEW_MINMAX_MEMORY of a table across the cluster, waiting for the
+     * table statistics, which the sites refresh periodically, to be non-zero
+     * or zero as expected.
+     */
+    private static long waitForViewMinMaxMemory(Client client, String tableName, boolean nonZero)
+            throws IOException, ProcCallException, InterruptedException
+    {
+        long memory = 0;
+        for (int attempt = 0; attempt < 100; attempt++) {
+            VoltTable stats = client.callProcedure("@Statistics", "TABLE", 0).getResults()[0];
+            memory = 0;
+            while (stats.advanceRow()) {
+                if (tableName.equals(stats.getString("TABLE_NAME"))) {
+                    memory += stats.getLong("VIEW_MINMAX_MEMORY");
+                }
+            }
+            if ((memory > 0) == nonZero) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        return memory;
+    }
+
     public void testMPAndRegressions() throws IOException, ProcCallException
     {
         subtestMultiPartitionSimple();
@@ -698,6 +781,73 @@ public class TestMaterializedViewSuite extends RegressionSuite {
         subtestENG798();
         subtestIndexed();
         subtestMinMaxMultiPartition();
+        subtestJoinedViewMultiPartition();
+    }
+
+    private void subtestJoinedViewMultiPartition() throws IOException, ProcCallException
+    {
+        Client client = getClient();
+        truncateBeforeTest(client);
+
+        for (int productId = 1; productId <= 6; productId++) {
+            client.callProcedure("PRODUCTS.insert", productId, productId % 3, 10.0 * productId);
+        }
+        // Some of the lines are for products 7 and 8, which join nothing yet.
+        for (int orderId = 1; orderId <= 20; orderId++) {
+            for (int line = 1; line <= 3; line++) {
+                client.callProcedure("ORDERLINE.insert", orderId, line, (orderId + line) % 8 + 1, orderId * line);
+            }
+        }
+        assertJoinedViewMatchesJoin(client, "after loading both tables");
+
+        client.callProcedure("PRODUCTS.insert", 7, 0, 5.0);
+        assertJoinedViewMatchesJoin(client, "after inserting a product with lines");
+
+        client.callProcedure("@AdHoc", "DELETE FROM PRODUCTS WHERE PRODUCT_ID = 1");
+        assertJoinedViewMatchesJoin(client, "after deleting a product");
+
+        client.callProcedure("@AdHoc", "UPDATE PRODUCTS SET PRICE = 1.0 WHERE PRODUCT_ID = 2");
+        assertJoinedViewMatchesJoin(client, "after updating the price of a product");
+
+        client.callProcedure("@AdHoc", "UPDATE PRODUCTS SET CATEGORY = 4 WHERE PRODUCT_ID = 3");
+        assertJoinedViewMatchesJoin(client, "after moving a product to a new category");
+
+        client.callProcedure("@AdHoc", "DELETE FROM ORDERLINE WHERE LINE = 2");
+        assertJoinedViewMatchesJoin(client, "after deleting lines");
+
+        client.callProcedure("@AdHoc", "UPDATE ORDERLINE SET PRODUCT_ID = 8 WHERE PRODUCT_ID = 7");
+        assertJoinedViewMatchesJoin(client, "after moving lines to a missing product");
+
+        client.callProcedure("@AdHoc", "DELETE FROM PRODUCTS");
+        assertJoinedViewMatchesJoin(client, "after deleting all the products");
+        VoltTable t = client.callProcedure("@AdHoc", "SELECT COUNT(*) FROM CATEGORY_SALES").getResults()[0];
+        assertEquals(0, t.asScalarLong());
+    }
+
+    /**
+     * Check the join view's groups, combined across partitions, against the
+     * same aggregation of the join it summarizes.
+     */
+    private void assertJoinedViewMatchesJoin(Client client, String when) throws IOException, ProcCallException
+    {
+        VoltTable expected = client.callProcedure("@AdHoc",
+                "SELECT PRODUCTS.CATEGORY, COUNT(*), SUM(ORDERLINE.QUANTITY), " +
+                "MIN(PRODUCTS.PRICE), MAX(ORDERLINE.QUANTITY) " +
+                "FROM ORDERLINE, PRODUCTS WHERE ORDERLINE.PRODUCT_ID = PRODUCTS.PRODUCT_ID " +
+                "GROUP BY PRODUCTS.CATEGORY ORDER BY 1").getResults()[0];
+        VoltTable actual = client.callProcedure("@AdHoc",
+                "SELECT CATEGORY, SUM(NUM), SUM(QUANTITY), MIN(MIN_PRICE), MAX(MAX_QUANTITY) " +
+                "FROM CATEGORY_SALES GROUP BY CATEGORY ORDER BY 1").getResults()[0];
+        assertEquals(when, expected.getRowCount(), actual.getRowCount());
+        while (expected.advanceRow()) {
+            assertTrue(actual.advanceRow());
+            String prefix = when + ", category " + expected.getLong(0) + ": ";
+            assertEquals(prefix, expected.getLong(0), actual.getLong(0));
+            assertEquals(prefix + "count", expected.getLong(1), actual.getLong(1));
+            assertEquals(prefix + "sum", expected.getLong(2), actual.getLong(2));
+            assertEquals(prefix + "min", expected.getDouble(3), actual.getDouble(3), 0.001);
+            assertEquals(prefix + "max", expected.getLong(4), actual.getLong(4));
+        }
     }
 
     private void subtestMultiPartitionSimple() throws IOException, ProcCallException
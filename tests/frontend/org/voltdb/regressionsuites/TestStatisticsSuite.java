@@ -30,6 +30,8 @@ import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import junit.framework.Test;
 
@@ -46,10 +48,13 @@ import org.voltdb.client.Client;
 import org.voltdb.client.ProcCallException;
 import org.voltdb.compiler.VoltProjectBuilder;
 import org.voltdb.iv2.MpInitiator;
+import org.voltdb.join.BalancePartitionsScheduler;
 import org.voltdb.join.BalancePartitionsStatistics;
 import org.voltdb.utils.MiscUtils;
 import org.voltdb_testprocs.regressionsuites.malicious.GoSleep;
 
+import com.google_voltpatches.common.base.Supplier;
+
 public class TestStatisticsSuite extends SaveRestoreBase {
     private final static int SITES = 2;
     private final static int HOSTS = 3;
@@ -336,7 +341,7 @@ public class TestStatisticsSuite extends SaveRestoreBase {
         System.out.println("\n\nTESTING TABLE STATS\n\n\n");
         Client client  = getFullyConnectedClient();
 
-        ColumnInfo[] expectedSchema = new ColumnInfo[13];
+        ColumnInfo[] expectedSchema = new ColumnInfo[16];
         expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -350,6 +355,9 @@ public class TestStatisticsSuite extends SaveRestoreBase {
         expectedSchema[10] = new ColumnInfo("STRING_DATA_MEMORY", VoltType.INTEGER);
         expectedSchema[11] = new ColumnInfo("TUPLE_LIMIT", VoltType.INTEGER);
         expectedSchema[12] = new ColumnInfo("PERCENT_FULL", VoltType.INTEGER);
+        expectedSchema[13] = new ColumnInfo("STRING_COMPRESSED_MEMORY", VoltType.INTEGER);
+        expectedSchema[14] = new ColumnInfo("STRING_UNCOMPRESSED_MEMORY", VoltType.INTEGER);
+        expectedSchema[15] = new ColumnInfo("VIEW_MINMAX_MEMORY", VoltType.INTEGER);
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
         VoltTable[] results = null;
@@ -387,7 +395,7 @@ public class TestStatisticsSuite extends SaveRestoreBase {
         System.out.println("\n\nTESTING INDEX STATS\n\n\n");
         Client client  = getFullyConnectedClient();
 
-        ColumnInfo[] expectedSchema = new ColumnInfo[12];
+        ColumnInfo[] expectedSchema = new ColumnInfo[17];
         expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -400,6 +408,11 @@ public class TestStatisticsSuite extends SaveRestoreBase {
         expectedSchema[9] = new ColumnInfo("IS_COUNTABLE", VoltType.TINYINT);
         expectedSchema[10] = new ColumnInfo("ENTRY_COUNT", VoltType.BIGINT);
         expectedSchema[11] = new ColumnInfo("MEMORY_ESTIMATE", VoltType.INTEGER);
+        expectedSchema[12] = new ColumnInfo("BULK_BUILD_ENTRIES", VoltType.BIGINT);
+        expectedSchema[13] = new ColumnInfo("BULK_BUILD_MILLIS", VoltType.BIGINT);
+        expectedSchema[14] = new ColumnInfo("DISTINCT_KEYS", VoltType.BIGINT);
+        expectedSchema[15] = new ColumnInfo("LEADING_DISTINCT_KEYS", VoltType.BIGINT);
+        expectedSchema[16] = new ColumnInfo("KEY_HISTOGRAM", VoltType.STRING);
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
         VoltTable[] results = null;
@@ -429,7 +442,7 @@ public class TestStatisticsSuite extends SaveRestoreBase {
         System.out.println("\n\nTESTING MEMORY STATS\n\n\n");
         Client client  = getFullyConnectedClient();
 
-        ColumnInfo[] expectedSchema = new ColumnInfo[14];
+        ColumnInfo[] expectedSchema = new ColumnInfo[19];
         expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -444,6 +457,11 @@ public class TestStatisticsSuite extends SaveRestoreBase {
         expectedSchema[11] = new ColumnInfo("POOLEDMEMORY", VoltType.BIGINT);
         expectedSchema[12] = new ColumnInfo("PHYSICALMEMORY", VoltType.BIGINT);
         expectedSchema[13] = new ColumnInfo("JAVAMAXHEAP", VoltType.INTEGER);
+        expectedSchema[14] = new ColumnInfo("STRINGCOMPRESSED", VoltType.INTEGER);
+        expectedSchema[15] = new ColumnInfo("STRINGUNCOMPRESSED", VoltType.INTEGER);
+        expectedSchema[16] = new ColumnInfo("HUGEPAGEMEMORY", VoltType.BIGINT);
+        expectedSchema[17] = new ColumnInfo("THPMEMORY", VoltType.BIGINT);
+        expectedSchema[18] = new ColumnInfo("NUMALOCALMEMORY", VoltType.BIGINT);
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
         VoltTable[] results = null;
@@ -493,11 +511,68 @@ public class TestStatisticsSuite extends SaveRestoreBase {
         validateRowSeenAtAllHosts(results[0], "HOSTNAME", results[0].getString("HOSTNAME"), true);
     }
 
+    public void testRejoinStatistics() throws Exception {
+        System.out.println("\n\nTESTING REJOIN STATS\n\n\n");
+        Client client  = getFullyConnectedClient();
+
+        ColumnInfo[] expectedSchema = new ColumnInfo[13];
+        expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
+        expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
+        expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
+        expectedSchema[3] = new ColumnInfo("TARGET_ID", VoltType.BIGINT);
+        expectedSchema[4] = new ColumnInfo("DESTINATION", VoltType.STRING);
+        expectedSchema[5] = new ColumnInfo("BLOCKS_SENT", VoltType.BIGINT);
+        expectedSchema[6] = new ColumnInfo("BYTES_SENT", VoltType.BIGINT);
+        expectedSchema[7] = new ColumnInfo("BYTES_PER_SECOND", VoltType.BIGINT);
+        expectedSchema[8] = new ColumnInfo("QUEUED_BLOCKS", VoltType.INTEGER);
+        expectedSchema[9] = new ColumnInfo("UNACKED_BYTES", VoltType.BIGINT);
+        expectedSchema[10] = new ColumnInfo("WINDOW_BYTES", VoltType.BIGINT);
+        expectedSchema[11] = new ColumnInfo("HELD_BLOCKS", VoltType.INTEGER);
+        expectedSchema[12] = new ColumnInfo("WINDOW_FULL_MS", VoltType.BIGINT);
+        VoltTable expectedTable = new VoltTable(expectedSchema);
+
+        // Nothing is rejoining, so no streams
+        VoltTable[] results = client.callProcedure("@Statistics", "rejoin", 0).getResults();
+        System.out.println("Node rejoin statistics table: " + results[0].toString());
+        assertEquals(1, results.length);
+        validateSchema(results[0], expectedTable);
+        assertEquals(0, results[0].getRowCount());
+    }
+
+    public void testRebalanceHistoryStatistics() throws Exception {
+        System.out.println("\n\nTESTING REBALANCE HISTORY STATS\n\n\n");
+        Client client  = getFullyConnectedClient();
+
+        ColumnInfo[] expectedSchema = new ColumnInfo[14];
+        expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
+        expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
+        expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
+        expectedSchema[3] = new ColumnInfo("SAMPLE_TIME", VoltType.BIGINT);
+        expectedSchema[4] = new ColumnInfo("PERCENTAGE_MOVED", VoltType.FLOAT);
+        expectedSchema[5] = new ColumnInfo("MOVED_ROWS", VoltType.BIGINT);
+        expectedSchema[6] = new ColumnInfo("MEGABYTES_PER_SECOND", VoltType.FLOAT);
+        expectedSchema[7] = new ColumnInfo("ESTIMATED_REMAINING", VoltType.BIGINT);
+        expectedSchema[8] = new ColumnInfo("RANGE_SIZE", VoltType.BIGINT);
+        expectedSchema[9] = new ColumnInfo("DELAY", VoltType.FLOAT);
+        expectedSchema[10] = new ColumnInfo("CLIENT_LATENCY_P99", VoltType.FLOAT);
+        expectedSchema[11] = new ColumnInfo("LATENCY_BUDGET", VoltType.BIGINT);
+        expectedSchema[12] = new ColumnInfo("PAUSED_TIME", VoltType.BIGINT);
+        expectedSchema[13] = new ColumnInfo("THROTTLED_CALLS", VoltType.BIGINT);
+        VoltTable expectedTable = new VoltTable(expectedSchema);
+
+        // Nothing is rebalancing, so no samples
+        VoltTable[] results = client.callProcedure("@Statistics", "rebalance_history", 0).getResults();
+        System.out.println("Rebalance history statistics table: " + results[0].toString());
+        assertEquals(1, results.length);
+        validateSchema(results[0], expectedTable);
+        assertEquals(0, results[0].getRowCount());
+    }
+
     public void testProcedureStatistics() throws Exception {
         System.out.println("\n\nTESTING PROCEDURE STATS\n\n\n");
         Client client  = getFullyConnectedClient();
 
-        ColumnInfo[] expectedSchema = new ColumnInfo[19];
+        ColumnInfo[] expectedSchema = new ColumnInfo[21];
         expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -517,6 +592,8 @@ public class TestStatisticsSuite extends SaveRestoreBase {
         expectedSchema[16] = new ColumnInfo("AVG_PARAMETER_SET_SIZE", VoltType.INTEGER);
         expectedSchema[17] = new ColumnInfo("ABORTS", VoltType.BIGINT);
         expectedSchema[18] = new ColumnInfo("FAILURES", VoltType.BIGINT);
+        expectedSchema[19] = new ColumnInfo("CACHE_HITS", VoltType.BIGINT);
+        expectedSchema[20] = new ColumnInfo("CACHE_MISSES", VoltType.BIGINT);
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
         VoltTable[] results = null;
@@ -1159,6 +1236,87 @@ public class TestStatisticsSuite extends SaveRestoreBase {
         checker.check(bps.getOverallStats());
     }
 
+    public void testRebalanceScheduler() throws Exception {
+        System.out.println("testRebalanceScheduler");
+        final AtomicLong p99 = new AtomicLong(-1);
+        final AtomicBoolean backPressure = new AtomicBoolean(false);
+        BalancePartitionsScheduler scheduler = new BalancePartitionsScheduler(
+                new Supplier<Long>() {
+                    @Override
+                    public Long get() {
+                        return p99.get();
+                    }
+                },
+                new Supplier<Boolean>() {
+                    @Override
+                    public Boolean get() {
+                        return backPressure.get();
+                    }
+                });
+        // 50 ms per call, 2 MB/s, 20 ms client p99 budget
+        scheduler.updateConfig(50, 2, 20);
+        final long initialRange = scheduler.nextRangeSize();
+        final long callNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+        // Plenty of headroom, the range grows and the pause keeps to the throughput
+        p99.set(TimeUnit.MILLISECONDS.toNanos(5));
+        scheduler.update(initialRange, 1024 * 1024, callNanos, callNanos);
+        final long grownRange = scheduler.nextRangeSize();
+        assertTrue(grownRange > initialRange);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500) - callNanos, scheduler.nextDelayNanos());
+        assertEquals(0, scheduler.getThrottleCount());
+
+        // Transfer time is proportional to the range, growth stops at what
+        // fits in the target duration
+        final double nanosPerRange = callNanos / (double)initialRange;
+        for (int i = 0; i < 20; i++) {
+            final long range = scheduler.nextRangeSize();
+            scheduler.update(range, 0, callNanos, (long)(range * nanosPerRange));
+        }
+        final long cappedRange = scheduler.nextRangeSize();
+        assertEquals(initialRange * 5, cappedRange, initialRange * 5 / 100);
+        assertEquals(0, scheduler.nextDelayNanos());
+
+        // Over budget, back off
+        p99.set(TimeUnit.MILLISECONDS.toNanos(30));
+        scheduler.update(cappedRange, 0, callNanos, (long)(cappedRange * nanosPerRange));
+        assertEquals(cappedRange / 2, scheduler.nextRangeSize());
+        assertEquals(callNanos, scheduler.nextDelayNanos());
+        scheduler.update(cappedRange / 2, 0, callNanos, (long)(cappedRange / 2 * nanosPerRange));
+        assertEquals(cappedRange / 4, scheduler.nextRangeSize());
+        assertEquals(2 * callNanos, scheduler.nextDelayNanos());
+        assertEquals(2, scheduler.getThrottleCount());
+
+        // Near the budget, hold
+        p99.set(TimeUnit.MILLISECONDS.toNanos(18));
+        scheduler.update(cappedRange / 4, 0, callNanos, (long)(cappedRange / 4 * nanosPerRange));
+        assertEquals(cappedRange / 4, scheduler.nextRangeSize());
+        assertEquals(2 * callNanos, scheduler.nextDelayNanos());
+
+        // Backpressure pauses until it clears
+        backPressure.set(true);
+        assertEquals(BalancePartitionsScheduler.BACKPRESSURE_POLL_NANOS, scheduler.nextDelayNanos());
+        assertTrue(scheduler.isPaused());
+        Thread.sleep(10);
+        backPressure.set(false);
+        scheduler.nextDelayNanos();
+        assertFalse(scheduler.isPaused());
+        assertTrue(scheduler.getPausedNanos() >= TimeUnit.MILLISECONDS.toNanos(10));
+
+        // Time series samples at most once per interval
+        BalancePartitionsStatistics bps = new BalancePartitionsStatistics(initialRange * 100, scheduler);
+        assertEquals(initialRange, scheduler.nextRangeSize());
+        bps.logBalanceStarts();
+        bps.logBalanceEnds(initialRange, 1024 * 1024, callNanos, callNanos, 1000);
+        bps.logBalanceStarts();
+        bps.logBalanceEnds(initialRange, 1024 * 1024, callNanos, callNanos, 1000);
+        Object[][] rows = bps.getHistory().getStatsRows(false, System.currentTimeMillis());
+        assertEquals(1, rows.length);
+        // PERCENTAGE_MOVED and ESTIMATED_REMAINING
+        assertEquals(1.0, (Double)rows[0][4], 0.001);
+        assertTrue((Long)rows[0][7] > 0);
+    }
+
     //
     // Build a list of the tests to be run. Use the regression suite
     // helpers to allow multiple backends.
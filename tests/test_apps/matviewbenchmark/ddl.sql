@@ -22,9 +22,25 @@ CREATE TABLE idsWithMinMatView
   PRIMARY KEY (id)
 );
 
+CREATE TABLE idsWithJoinMatView
+(
+  id bigint NOT NULL,
+  group_id bigint,
+  value bigint,
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE groups
+(
+  group_id bigint NOT NULL,
+  category bigint,
+  PRIMARY KEY (group_id)
+);
+
 PARTITION TABLE ids ON COLUMN id;
 PARTITION TABLE idsWithMatView ON COLUMN id;
 PARTITION TABLE idsWithMinMatView ON COLUMN id;
+PARTITION TABLE idsWithJoinMatView ON COLUMN id;
 
 CREATE PROCEDURE ids_insert AS
   INSERT INTO ids VALUES (?,?,?);
@@ -34,7 +50,12 @@ CREATE PROCEDURE idsWithMinMatView_insert AS
   INSERT INTO idsWithMinMatView VALUES (?,?,?);
 PARTITION PROCEDURE ids_insert ON TABLE ids COLUMN id;
 PARTITION PROCEDURE idsWithMatView_insert ON TABLE idsWithMatView COLUMN id;
+CREATE PROCEDURE idsWithJoinMatView_insert AS
+  INSERT INTO idsWithJoinMatView VALUES (?,?,?);
 PARTITION PROCEDURE idsWithMinMatView_insert ON TABLE idsWithMinMatView COLUMN id;
+PARTITION PROCEDURE idsWithJoinMatView_insert ON TABLE idsWithJoinMatView COLUMN id;
+CREATE PROCEDURE groups_insert AS
+  INSERT INTO groups VALUES (?,?);
 
 CREATE PROCEDURE ids_group_id_update AS
   UPDATE ids SET group_id = ? WHERE id = ?;
@@ -50,6 +71,9 @@ CREATE PROCEDURE idsWithMatView_value_update AS
 PARTITION PROCEDURE ids_value_update ON TABLE ids COLUMN id;
 PARTITION PROCEDURE idsWithMatView_value_update ON TABLE idsWithMatView COLUMN id;
 
+CREATE PROCEDURE groups_category_update AS
+  UPDATE groups SET category = ? WHERE group_id = ?;
+
 CREATE PROCEDURE ids_delete AS
   DELETE FROM ids WHERE (id = ?);
 CREATE PROCEDURE idsWithMatView_delete AS
@@ -58,7 +82,21 @@ CREATE PROCEDURE idsWithMinMatView_delete AS
   DELETE FROM idsWithMinMatView WHERE (id = ?);
 PARTITION PROCEDURE ids_delete ON TABLE ids COLUMN id;
 PARTITION PROCEDURE idsWithMatView_delete ON TABLE idsWithMatView COLUMN id;
+CREATE PROCEDURE idsWithJoinMatView_delete AS
+  DELETE FROM idsWithJoinMatView WHERE (id = ?);
 PARTITION PROCEDURE idsWithMinMatView_delete ON TABLE idsWithMinMatView COLUMN id;
+PARTITION PROCEDURE idsWithJoinMatView_delete ON TABLE idsWithJoinMatView COLUMN id;
+CREATE PROCEDURE groups_delete AS
+  DELETE FROM groups;
+
+-- Reading the join view, against computing the same result from the tables.
+CREATE PROCEDURE id_join_select AS
+  SELECT category, SUM(total_id), SUM(sum_value) FROM id_join GROUP BY category;
+CREATE PROCEDURE ids_join_aggregate AS
+  SELECT groups.category, COUNT(*), SUM(idsWithJoinMatView.value)
+  FROM idsWithJoinMatView, groups
+  WHERE idsWithJoinMatView.group_id = groups.group_id
+  GROUP BY groups.category;
 
 CREATE VIEW id_count (
 	group_id,
@@ -82,3 +120,16 @@ CREATE VIEW id_min (
 	MIN(id) 
 FROM idsWithMinMatView GROUP BY group_id;
 CREATE INDEX idWithMinMatView_idx ON idsWithMinMatView (group_id);
+
+CREATE INDEX idWithJoinMatView_idx ON idsWithJoinMatView (group_id);
+CREATE VIEW id_join (
+	category,
+	total_id,
+	sum_value
+) AS SELECT
+	groups.category,
+	COUNT(*),
+	SUM(idsWithJoinMatView.value)
+FROM idsWithJoinMatView, groups
+WHERE idsWithJoinMatView.group_id = groups.group_id
+GROUP BY groups.category;
@@ -87,6 +87,12 @@ public class MaterializedViewBenchmark {
         @Option(desc = "Number of groupings for materialized view (0 for 1:1 group to id ratio).")
         int group = 5000;
 
+        @Option(desc = "Number of categories the groups are joined to for the join materialized view.")
+        int category = 100;
+
+        @Option(desc = "Number of times to read the join materialized view and to compute it from its tables.")
+        int refresh = 1000;
+
         @Option(desc = "Maximum TPS rate for benchmark.")
         int ratelimit = Integer.MAX_VALUE;
 
@@ -103,6 +109,10 @@ public class MaterializedViewBenchmark {
                 exitWithMessageAndUsage("warmup must be 0 or a positive integer");
             if (group < 0)
                 exitWithMessageAndUsage("group must be 0 or a positive integer");
+            if (category <= 0)
+                exitWithMessageAndUsage("category must be > 0");
+            if (refresh < 0)
+                exitWithMessageAndUsage("refresh must be 0 or a positive integer");
         }
     }
 
@@ -356,7 +366,7 @@ public class MaterializedViewBenchmark {
                                          execTimeInMicroSec, "Update Sum Diff", stats, fw);
             updateValueThroughput = ret.throughput;
             updateValueExecute = ret.execute;
-        } else {
+        } else if (procArray[procArray.length-1].equals("delete")) {
             DiffRetVals ret = diffWriter(deleteThroughput, (double)stats.getTxnThroughput(), deleteExecute,
                                          execTimeInMicroSec, "Delete Diff", stats, fw);
             deleteThroughput = ret.throughput;
@@ -385,6 +395,11 @@ public class MaterializedViewBenchmark {
                 csvStr = "wo";
                 procStr = "ids";
                 break;
+            case "joinMatView":
+                systemStr = "w/ join";
+                csvStr = "w join";
+                procStr = "idsWithJoinMatView";
+                break;
             default:
                 systemStr = "w/ min";
                 csvStr = "w min";
@@ -434,7 +449,10 @@ public class MaterializedViewBenchmark {
         }
         System.out.print(HORIZONTAL_RULE);
 
-        if (!matView.equals("minMatView")) {
+        if (matView.equals("joinMatView")) {
+            runJoinedTableUpdates(fw);
+            runRefreshVersusMaintain(fw);
+        } else if (!matView.equals("minMatView")) {
             // grp is initialized to 2 for updating the grouping column to (grouping column = grouping column + 1)
             grp = 2;
 
@@ -523,6 +541,94 @@ public class MaterializedViewBenchmark {
         }
     }
 
+    /**
+     * Load the replicated table the join materialized view joins each id with,
+     * with a row for each group an id may be in.
+     * @throws Exception if anything unexpected happens.
+     */
+    public void loadGroups() throws Exception {
+        int groups = (config.group > 0) ? config.group : config.txn;
+        int first = (config.group > 0) ? 1 : 0;
+        for (int grp = first; grp < first + groups; grp++) {
+            client.callProcedure(new NullCallback(),
+                                 "groups_insert",
+                                 grp,
+                                 grp % config.category);
+        }
+        client.drain();
+    }
+
+    /**
+     * Update the category of each group, which the join materialized view
+     * maintains by finding each group's ids through the index on group_id.
+     * @param fw File writer object to write stats to.
+     * @throws Exception if anything unexpected happens.
+     */
+    public void runJoinedTableUpdates(FileWriter fw) throws Exception {
+        int groups = (config.group > 0) ? config.group : config.txn;
+        int first = (config.group > 0) ? 1 : 0;
+
+        fullStatsContext.fetchAndResetBaseline();
+        periodicStatsContext.fetchAndResetBaseline();
+
+        benchmarkStartTS = System.currentTimeMillis();
+        schedulePeriodicStats();
+
+        System.out.println("\n\nUpdating joined table of join materialized view...\n");
+
+        for (int grp = first; grp < first + groups; grp++) {
+            client.callProcedure(new NullCallback(),
+                                 "groups_category_update",
+                                 (grp + 1) % config.category,
+                                 grp);
+        }
+        timer.cancel();
+        client.drain();
+
+        if ((config.statsfile == null) || (config.statsfile.length() == 0)) {
+            printResults("groups_category_update");
+        } else {
+            printResults("groups_category_update", fw, "Update Joined w join MV");
+        }
+        System.out.print(HORIZONTAL_RULE);
+    }
+
+    /**
+     * Read the join materialized view, which was maintained as its tables
+     * changed, and then compute the same result from the tables, as refreshing
+     * the view on each read would.
+     * @param fw File writer object to write stats to.
+     * @throws Exception if anything unexpected happens.
+     */
+    public void runRefreshVersusMaintain(FileWriter fw) throws Exception {
+        String[][] reads = {
+            { "id_join_select", "maintained", "Read w join MV" },
+            { "ids_join_aggregate", "refreshed", "Read wo join MV" }
+        };
+        for (String[] read : reads) {
+            fullStatsContext.fetchAndResetBaseline();
+            periodicStatsContext.fetchAndResetBaseline();
+
+            benchmarkStartTS = System.currentTimeMillis();
+            schedulePeriodicStats();
+
+            System.out.println("\n\nReading join materialized view " + read[1] + "...\n");
+
+            for (int i=0; i<config.refresh; i++){
+                client.callProcedure(new NullCallback(), read[0]);
+            }
+            timer.cancel();
+            client.drain();
+
+            if ((config.statsfile == null) || (config.statsfile.length() == 0)) {
+                printResults(read[0]);
+            } else {
+                printResults(read[0], fw, read[2]);
+            }
+            System.out.print(HORIZONTAL_RULE);
+        }
+    }
+
     /**
      * Core benchmark code.
      * Connect. Initialize. Run the loop. Cleanup. Print Results.
@@ -592,6 +698,13 @@ public class MaterializedViewBenchmark {
         // reset class variables so that diff is not written to the csv file
         insertThroughput = insertExecute = deleteThroughput = deleteExecute = 0;
         runHalf("minMatView", fw);
+        System.out.print(HORIZONTAL_RULE);
+
+        // reset class variables so that diff is not written to the csv file
+        insertThroughput = insertExecute = deleteThroughput = deleteExecute = 0;
+        loadGroups();
+        runHalf("joinMatView", fw);
+        client.callProcedure("groups_delete");
         benchmarkActive = false;
 
         if ((config.statsfile != null) && (config.statsfile.length() != 0)) {
@@ -39,6 +39,8 @@ public class TruncateMatViewDataMP extends VoltProcedure {
     public final SQLStmt truncatebase4 = new SQLStmt("DELETE FROM ENG798;");
     public final SQLStmt truncatebase5 = new SQLStmt("DELETE FROM CONTEST;");
     public final SQLStmt truncatebase6 = new SQLStmt("DELETE FROM DEPT_PEOPLE;");
+    public final SQLStmt truncatebase7 = new SQLStmt("DELETE FROM ORDERLINE;");
+    public final SQLStmt truncatebase8 = new SQLStmt("DELETE FROM PRODUCTS;");
 
     public final SQLStmt validatebase1 = new SQLStmt("SELECT COUNT(*) FROM PEOPLE;");
     public final SQLStmt validatebase2 = new SQLStmt("SELECT COUNT(*) FROM THINGS;");
@@ -46,6 +48,8 @@ public class TruncateMatViewDataMP extends VoltProcedure {
     public final SQLStmt validatebase4 = new SQLStmt("SELECT COUNT(*) FROM ENG798;");
     public final SQLStmt validatebase5 = new SQLStmt("SELECT COUNT(*) FROM CONTEST;");
     public final SQLStmt validatebase6 = new SQLStmt("SELECT COUNT(*) FROM DEPT_PEOPLE;");
+    public final SQLStmt validatebase7 = new SQLStmt("SELECT COUNT(*) FROM ORDERLINE;");
+    public final SQLStmt validatebase8 = new SQLStmt("SELECT COUNT(*) FROM PRODUCTS;");
 
     public final SQLStmt validateview1 = new SQLStmt("SELECT COUNT(*) FROM MATPEOPLE;");
     public final SQLStmt validateview2 = new SQLStmt("SELECT COUNT(*) FROM MATTHINGS;");
@@ -58,6 +62,7 @@ public class TruncateMatViewDataMP extends VoltProcedure {
     public final SQLStmt validateview9 = new SQLStmt("SELECT COUNT(*) FROM MATPEOPLE3;");
     public final SQLStmt validateview10 = new SQLStmt("SELECT COUNT(*) FROM DEPT_AGE_MATVIEW;");
     public final SQLStmt validateview11 = new SQLStmt("SELECT COUNT(*) FROM DEPT_AGE_FILTER_MATVIEW;");
+    public final SQLStmt validateview12 = new SQLStmt("SELECT COUNT(*) FROM CATEGORY_SALES;");
 
 
     public VoltTable[] run() {
@@ -68,6 +73,8 @@ public class TruncateMatViewDataMP extends VoltProcedure {
         voltQueueSQL(truncatebase4); // ("DELETE FROM ENG798;");
         voltQueueSQL(truncatebase5); // ("DELETE FROM CONTEST;");
         voltQueueSQL(truncatebase6); // ("DELETE FROM DEPT_PEOPLE;");
+        voltQueueSQL(truncatebase7); // ("DELETE FROM ORDERLINE;");
+        voltQueueSQL(truncatebase8); // ("DELETE FROM PRODUCTS;");
         result = voltExecuteSQL();
         /*
         for (VoltTable deleted : result) {
@@ -80,6 +87,8 @@ public class TruncateMatViewDataMP extends VoltProcedure {
         voltQueueSQL(validatebase4); // ("SELECT COUNT(*) FROM ENG798;");
         voltQueueSQL(validatebase5); // ("SELECT COUNT(*) FROM contest;");
         voltQueueSQL(validatebase6); // ("SELECT COUNT(*) FROM DEPT_PEOPLE;");
+        voltQueueSQL(validatebase7); // ("SELECT COUNT(*) FROM ORDERLINE;");
+        voltQueueSQL(validatebase8); // ("SELECT COUNT(*) FROM PRODUCTS;");
         voltQueueSQL(validateview1); // ("SELECT COUNT(*) FROM MATPEOPLE;");
         voltQueueSQL(validateview2); // ("SELECT COUNT(*) FROM MATTHINGS;");
         voltQueueSQL(validateview3); // ("SELECT COUNT(*) FROM V_OVERFLOWTEST;");
@@ -91,6 +100,7 @@ public class TruncateMatViewDataMP extends VoltProcedure {
         voltQueueSQL(validateview9); // ("SELECT COUNT(*) FROM MATPEOPLE3;");
         voltQueueSQL(validateview10); // ("SELECT COUNT(*) FROM DEPT_AGE_MATVIEW;");
         voltQueueSQL(validateview11); // ("SELECT COUNT(*) FROM DEPT_AGE_FILTER_MATVIEW;");
+        voltQueueSQL(validateview12); // ("SELECT COUNT(*) FROM CATEGORY_SALES;");
         result = voltExecuteSQL(true);
         /*
         for (VoltTable deleted : result) {
@@ -100,3 +100,15 @@ CREATE VIEW DEPT_AGE_FILTER_MATVIEW(DEPT, AGE, CNT, MAX_CHILDREN)
     FROM DEPT_PEOPLE
     WHERE SALARY >= 1000
     GROUP BY DEPT, AGE;
+
+CREATE TABLE PRODUCTS (PRODUCT_ID INTEGER NOT NULL, CATEGORY INTEGER NOT NULL, PRICE FLOAT, PRIMARY KEY (PRODUCT_ID));
+CREATE TABLE ORDERLINE (ORDER_ID INTEGER NOT NULL, LINE INTEGER NOT NULL, PRODUCT_ID INTEGER NOT NULL, QUANTITY INTEGER,
+    PRIMARY KEY (ORDER_ID, LINE));
+PARTITION TABLE ORDERLINE ON COLUMN ORDER_ID;
+CREATE INDEX ORDERLINE_PRODUCT ON ORDERLINE (PRODUCT_ID);
+-- maintained by joining changed rows of either table through the indexes on PRODUCT_ID
+CREATE VIEW CATEGORY_SALES (CATEGORY, NUM, QUANTITY, MIN_PRICE, MAX_QUANTITY)
+    AS SELECT PRODUCTS.CATEGORY, COUNT(*), SUM(ORDERLINE.QUANTITY), MIN(PRODUCTS.PRICE), MAX(ORDERLINE.QUANTITY)
+    FROM ORDERLINE, PRODUCTS
+    WHERE ORDERLINE.PRODUCT_ID = PRODUCTS.PRODUCT_ID
+    GROUP BY PRODUCTS.CATEGORY;
@@ -18,7 +18,6 @@
 package org.apache.cassandra_voltpatches;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 import com.google_voltpatches.common.primitives.UnsignedBytes;
 
@@ -42,6 +41,9 @@ import com.google_voltpatches.common.primitives.UnsignedBytes;
  */
 public class MurmurHash3
 {
+    private final static long C1 = 0x87c37b91114253d5L;
+    private final static long C2 = 0x4cf5ad432745937fL;
+
     protected static long getblock(ByteBuffer key, int offset, int index)
     {
         int i_8 = index << 3;
@@ -72,11 +74,112 @@ public class MurmurHash3
         return hash3_x64_128(value, 0);
     }
 
+    /**
+     * Same as hashing the 8 little endian bytes of the value, without
+     * putting them in a buffer first. That leaves a single tail block.
+     */
     public static int hash3_x64_128(long value, long seed) {
-        ByteBuffer buf = ByteBuffer.allocate(8);
-        buf.order(ByteOrder.LITTLE_ENDIAN);
-        buf.putLong(value);
-        return hash3_x64_128(buf, 0, 8, seed);
+        long h1 = seed;
+        long h2 = seed;
+
+        long k1 = value;
+        k1 *= C1; k1 = rotl64(k1,31); k1 *= C2; h1 ^= k1;
+
+        h1 ^= 8; h2 ^= 8;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+
+        h1 += h2;
+
+        return (int)(h1 >>> 32);
+    }
+
+    protected static long getblock(byte[] key, int offset, int index)
+    {
+        int blockOffset = offset + (index << 3);
+        return ((long) key[blockOffset + 0] & 0xFFL) + (((long) key[blockOffset + 1] & 0xFFL) << 8) +
+               (((long) key[blockOffset + 2] & 0xFFL) << 16) + (((long) key[blockOffset + 3] & 0xFFL) << 24) +
+               (((long) key[blockOffset + 4] & 0xFFL) << 32) + (((long) key[blockOffset + 5] & 0xFFL) << 40) +
+               (((long) key[blockOffset + 6] & 0xFFL) << 48) + (((long) key[blockOffset + 7] & 0xFFL) << 56);
+    }
+
+    /**
+     * Array version of {@link #hash3_x64_128(ByteBuffer, int, int, long)} that
+     * reads the key directly instead of through a wrapping buffer.
+     */
+    public static int hash3_x64_128(byte[] key, int offset, int length, long seed)
+    {
+        final int nblocks = length >> 4; // Process as 128-bit blocks.
+
+        long h1 = seed;
+        long h2 = seed;
+
+        //----------
+        // body
+
+        for(int i = 0; i < nblocks; i++)
+        {
+            long k1 = getblock(key, offset, i*2+0);
+            long k2 = getblock(key, offset, i*2+1);
+
+            k1 *= C1; k1 = rotl64(k1,31); k1 *= C2; h1 ^= k1;
+
+            h1 = rotl64(h1,27); h1 += h2; h1 = h1*5+0x52dce729;
+
+            k2 *= C2; k2  = rotl64(k2,33); k2 *= C1; h2 ^= k2;
+
+            h2 = rotl64(h2,31); h2 += h1; h2 = h2*5+0x38495ab5;
+        }
+
+        //----------
+        // tail
+
+        // Advance offset to the unprocessed tail of the data.
+        offset += nblocks * 16;
+
+        long k1 = 0;
+        long k2 = 0;
+
+        switch(length & 15)
+        {
+            case 15: k2 ^= ((long) (key[offset+14] & 0xFF)) << 48;
+            case 14: k2 ^= ((long) (key[offset+13] & 0xFF)) << 40;
+            case 13: k2 ^= ((long) (key[offset+12] & 0xFF)) << 32;
+            case 12: k2 ^= ((long) (key[offset+11] & 0xFF)) << 24;
+            case 11: k2 ^= ((long) (key[offset+10] & 0xFF)) << 16;
+            case 10: k2 ^= ((long) (key[offset+9] & 0xFF)) << 8;
+            case  9: k2 ^= ((long) (key[offset+8] & 0xFF)) << 0;
+                k2 *= C2; k2  = rotl64(k2,33); k2 *= C1; h2 ^= k2;
+
+            case  8: k1 ^= ((long) (key[offset+7] & 0xFF)) << 56;
+            case  7: k1 ^= ((long) (key[offset+6] & 0xFF)) << 48;
+            case  6: k1 ^= ((long) (key[offset+5] & 0xFF)) << 40;
+            case  5: k1 ^= ((long) (key[offset+4] & 0xFF)) << 32;
+            case  4: k1 ^= ((long) (key[offset+3] & 0xFF)) << 24;
+            case  3: k1 ^= ((long) (key[offset+2] & 0xFF)) << 16;
+            case  2: k1 ^= ((long) (key[offset+1] & 0xFF)) << 8;
+            case  1: k1 ^= ((long) (key[offset] & 0xFF));
+                k1 *= C1; k1  = rotl64(k1,31); k1 *= C2; h1 ^= k1;
+        };
+
+        //----------
+        // finalization
+
+        h1 ^= length; h2 ^= length;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+
+        h1 += h2;
+
+        return (int)(h1 >>> 32);
     }
 
     private final static long MASK = 0xFFFFFFFF00000000L;